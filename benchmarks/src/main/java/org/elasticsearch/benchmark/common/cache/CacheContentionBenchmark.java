@@ -0,0 +1,119 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.common.cache;
+
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link Cache} lookups under contention, with and without access buffering. Keys follow a skewed
+ * distribution so that most lookups are hits on a small set of hot entries, like cached aggregations behind dashboards.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class CacheContentionBenchmark {
+
+    private static final int NUM_KEYS = 1 << 16;
+
+    @Param({ "lru", "buffered", "buffered_admission" })
+    private String policy;
+
+    // the percentage of operations that insert an entry rather than look one up
+    @Param({ "0", "10" })
+    private int writePercentage;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup
+    public void setUp() {
+        CacheBuilder<Integer, Integer> builder = CacheBuilder.<Integer, Integer>builder().setMaximumWeight(NUM_KEYS / 2);
+        switch (policy) {
+            case "lru":
+                break;
+            case "buffered":
+                builder.setAccessBuffering(true);
+                break;
+            case "buffered_admission":
+                builder.setAccessBuffering(true).setFrequencyAdmission(true);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown policy [" + policy + "]");
+        }
+        cache = builder.build();
+        // a zipf-like distribution of keys: low keys are drawn much more often than high keys
+        Random random = new Random(42);
+        keys = new Integer[NUM_KEYS];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (int) Math.floor(Math.pow(NUM_KEYS, random.nextDouble())) - 1;
+        }
+        for (int i = 0; i < NUM_KEYS / 2; i++) {
+            cache.put(keys[i], i);
+        }
+    }
+
+    private Integer operation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(NUM_KEYS)];
+        if (random.nextInt(100) < writePercentage) {
+            cache.put(key, key);
+            return key;
+        }
+        return cache.get(key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Integer cache_01() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Integer cache_08() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Integer cache_32() {
+        return operation();
+    }
+}
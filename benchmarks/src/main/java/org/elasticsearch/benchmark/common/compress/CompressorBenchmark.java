@@ -0,0 +1,192 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.common.compress;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.Compressor;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput of the available {@link Compressor}s on payloads that resemble bulk requests and search responses.
+ * The {@code compressPayload} benchmark also reports how many bytes it compressed and how many bytes that produced, whose ratio
+ * is the compression ratio of each combination.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class CompressorBenchmark {
+
+    private static final String[] LEVELS = new String[] { "INFO", "WARN", "ERROR", "DEBUG" };
+    private static final String[] HOSTS = new String[] { "web-01", "web-02", "web-03", "db-01", "cache-01" };
+
+    @Param({ "deflate", "lz4" })
+    private String scheme;
+
+    @Param({ "bulk", "search" })
+    private String payload;
+
+    @Param({ "1000" })
+    private int numDocs;
+
+    private Compressor compressor;
+    private BytesReference uncompressed;
+    private BytesReference compressed;
+    private final byte[] readBuffer = new byte[8192];
+
+    @Setup
+    public void setUp() throws IOException {
+        compressor = CompressorFactory.compressorForScheme(scheme);
+        Random random = new Random(42);
+        switch (payload) {
+            case "bulk":
+                uncompressed = bulkPayload(random);
+                break;
+            case "search":
+                uncompressed = searchPayload(random);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown payload [" + payload + "]");
+        }
+        compressed = compress();
+    }
+
+    private BytesReference bulkPayload(Random random) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            for (int i = 0; i < numDocs; i++) {
+                try (XContentBuilder action = XContentFactory.jsonBuilder()) {
+                    action.startObject().startObject("index").field("_index", "logs-2018.12.01").field("_type", "_doc").endObject()
+                        .endObject();
+                    BytesReference.bytes(action).writeTo(out);
+                }
+                out.writeByte((byte) '\n');
+                try (XContentBuilder doc = XContentFactory.jsonBuilder()) {
+                    logDocument(doc, random);
+                    BytesReference.bytes(doc).writeTo(out);
+                }
+                out.writeByte((byte) '\n');
+            }
+            return out.bytes();
+        }
+    }
+
+    private BytesReference searchPayload(Random random) throws IOException {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("took", 12).field("timed_out", false);
+            builder.startObject("hits").field("total", numDocs * 100L).field("max_score", 1.0f);
+            builder.startArray("hits");
+            for (int i = 0; i < numDocs; i++) {
+                builder.startObject();
+                builder.field("_index", "logs-2018.12.01").field("_type", "_doc").field("_id", Long.toString(random.nextLong(), 36));
+                builder.field("_score", random.nextFloat());
+                builder.field("_source");
+                logDocument(builder, random);
+                builder.endObject();
+            }
+            builder.endArray();
+            builder.endObject();
+            builder.endObject();
+            return BytesReference.bytes(builder);
+        }
+    }
+
+    private static void logDocument(XContentBuilder builder, Random random) throws IOException {
+        builder.startObject();
+        builder.field("@timestamp", 1543622400000L + random.nextInt(86400000));
+        builder.field("level", LEVELS[random.nextInt(LEVELS.length)]);
+        builder.field("host", HOSTS[random.nextInt(HOSTS.length)]);
+        builder.field("pid", random.nextInt(65536));
+        builder.field("duration_ms", random.nextDouble() * 1000);
+        builder.field("message", "GET /api/v1/orders/" + random.nextInt(100000) + " returned " + (200 + random.nextInt(4) * 100)
+            + " for user " + Integer.toHexString(random.nextInt()));
+        builder.startObject("client").field("ip", "10.0." + random.nextInt(256) + "." + random.nextInt(256))
+            .field("agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)").endObject();
+        builder.endObject();
+    }
+
+    private BytesReference compress() throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput(uncompressed.length());
+        try (StreamOutput compressedOut = compressor.streamOutput(out)) {
+            uncompressed.writeTo(compressedOut);
+        }
+        return out.bytes();
+    }
+
+    /**
+     * Counts the bytes that go in and out of the compressor, reported by JMH next to the throughput of each iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CompressedBytes {
+        public long uncompressedBytes;
+        public long compressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uncompressedBytes = 0;
+            compressedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public BytesReference compressPayload(CompressedBytes counters) throws IOException {
+        final BytesReference result = compress();
+        counters.uncompressedBytes += uncompressed.length();
+        counters.compressedBytes += result.length();
+        return result;
+    }
+
+    @Benchmark
+    public long uncompressPayload() throws IOException {
+        long total = 0;
+        try (StreamInput in = compressor.streamInput(compressed.streamInput())) {
+            int read;
+            while ((read = in.read(readBuffer, 0, readBuffer.length)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.common.rounding;
+
+import org.elasticsearch.common.rounding.DateTimeUnit;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.unit.TimeValue;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rounding of the dates of a shard by a {@link Rounding}, like a date_histogram does, with the rounding prepared for the
+ * range of these dates, which computes the offset transitions of the time zone once.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class RoundingBenchmark {
+
+    private static final int NUM_DATES = 10000;
+
+    @Param({ "UTC", "Europe/Amsterdam", "America/New_York" })
+    private String timeZone;
+
+    @Param({ "hour", "day", "month", "90m" })
+    private String interval;
+
+    // the range of the dates of the shard
+    @Param({ "1d", "365d" })
+    private String range;
+
+    private long[] dates;
+    private Rounding rounding;
+    private Rounding.Prepared prepared;
+
+    @Setup
+    public void setUp() {
+        final DateTimeZone zone = DateTimeZone.forID(timeZone);
+        switch (interval) {
+            case "hour":
+                rounding = Rounding.builder(DateTimeUnit.HOUR_OF_DAY).timeZone(zone).build();
+                break;
+            case "day":
+                rounding = Rounding.builder(DateTimeUnit.DAY_OF_MONTH).timeZone(zone).build();
+                break;
+            case "month":
+                rounding = Rounding.builder(DateTimeUnit.MONTH_OF_YEAR).timeZone(zone).build();
+                break;
+            default:
+                rounding = Rounding.builder(TimeValue.parseTimeValue(interval, "interval")).timeZone(zone).build();
+                break;
+        }
+        // 2018-01-01T00:00:00Z
+        final long min = 1514764800000L;
+        final long max = min + TimeValue.parseTimeValue(range, "range").millis();
+        final Random random = new Random(42);
+        // the dates of documents are read in the order of the documents, not sorted
+        dates = new long[NUM_DATES];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = min + (long) (random.nextDouble() * (max - min));
+        }
+        prepared = rounding.prepare(Arrays.stream(dates).min().getAsLong(), Arrays.stream(dates).max().getAsLong());
+    }
+
+    @Benchmark
+    public void round(Blackhole bh) {
+        for (long date : dates) {
+            bh.consume(rounding.round(date));
+        }
+    }
+
+    @Benchmark
+    public void prepared(Blackhole bh) {
+        for (long date : dates) {
+            bh.consume(prepared.round(date));
+        }
+    }
+}
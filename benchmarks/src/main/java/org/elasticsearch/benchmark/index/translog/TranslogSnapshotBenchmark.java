@@ -0,0 +1,129 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.index.translog;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogConfig;
+import org.elasticsearch.index.translog.TranslogDeletionPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast a snapshot of the translog reads all the operations of several immutable generations, like peer recoveries and
+ * shard changes requests do, with positional reads and with memory-mapped generations. The files are likely in the page cache, so
+ * this measures the cost of copying and deserializing operations rather than disk throughput.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class TranslogSnapshotBenchmark {
+
+    private static final int NUM_GENERATIONS = 8;
+
+    @Param({ "false", "true" })
+    private boolean mmap;
+
+    @Param({ "1000", "100000" })
+    private int numOperations;
+
+    // the size of the source of each indexed document
+    @Param({ "128", "4096" })
+    private int sourceSize;
+
+    private Path path;
+    private Translog translog;
+
+    @Setup
+    public void setUp() throws IOException {
+        path = Files.createTempDirectory("translog");
+        final ShardId shardId = new ShardId(new Index("benchmark", "_na_"), 0);
+        final IndexMetaData indexMetaData = IndexMetaData.builder(shardId.getIndexName())
+            .settings(Settings.builder()
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_INDEX_UUID, shardId.getIndex().getUUID())
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(IndexSettings.INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING.getKey(), mmap))
+            .build();
+        final IndexSettings indexSettings = new IndexSettings(indexMetaData, Settings.EMPTY);
+        final TranslogConfig config = new TranslogConfig(shardId, path, indexSettings, BigArrays.NON_RECYCLING_INSTANCE);
+        final String translogUUID = Translog.createEmptyTranslog(path, SequenceNumbers.NO_OPS_PERFORMED, shardId, 1L);
+        translog = new Translog(config, translogUUID, new TranslogDeletionPolicy(-1, -1),
+            () -> SequenceNumbers.NO_OPS_PERFORMED, () -> 1L);
+        final Random random = new Random(42);
+        final byte[] source = new byte[sourceSize];
+        for (int seqNo = 0; seqNo < numOperations; seqNo++) {
+            random.nextBytes(source);
+            translog.add(new Translog.Index("_doc", Integer.toString(seqNo), seqNo, 1L, source));
+            if ((seqNo + 1) % (numOperations / NUM_GENERATIONS) == 0) {
+                translog.rollGeneration();
+            }
+        }
+        translog.rollGeneration();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        translog.close();
+        IOUtils.rm(path);
+    }
+
+    @Benchmark
+    public int readSnapshot(Blackhole bh) throws IOException {
+        int count = 0;
+        try (Translog.Snapshot snapshot = translog.newSnapshot()) {
+            Translog.Operation operation;
+            while ((operation = snapshot.next()) != null) {
+                bh.consume(operation);
+                count++;
+            }
+        }
+        return count;
+    }
+}
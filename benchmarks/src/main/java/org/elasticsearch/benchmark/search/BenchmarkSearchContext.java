@@ -0,0 +1,649 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search;
+
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+import org.apache.lucene.util.Counter;
+import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.ObjectMapper;
+import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.search.SearchExtBuilder;
+import org.elasticsearch.search.SearchService;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.collapse.CollapseContext;
+import org.elasticsearch.search.dfs.DfsSearchResult;
+import org.elasticsearch.search.fetch.FetchPhase;
+import org.elasticsearch.search.fetch.FetchSearchResult;
+import org.elasticsearch.search.fetch.StoredFieldsContext;
+import org.elasticsearch.search.fetch.subphase.DocValueFieldsContext;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.fetch.subphase.ScriptFieldsContext;
+import org.elasticsearch.search.fetch.subphase.highlight.SearchContextHighlight;
+import org.elasticsearch.search.internal.AliasFilter;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.ScrollContext;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.internal.ShardSearchLocalRequest;
+import org.elasticsearch.search.internal.ShardSearchRequest;
+import org.elasticsearch.search.lookup.SearchLookup;
+import org.elasticsearch.search.profile.Profilers;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.elasticsearch.search.rescore.RescoreContext;
+import org.elasticsearch.search.sort.SortAndFormats;
+import org.elasticsearch.search.suggest.SuggestionSearchContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link SearchContext} for a query, and the top hits that it fetches, on the shard of a {@link LogsIndex}. Like
+ * {@code TestSearchContext} it keeps whatever its setters are given, so that benchmarks can configure any part of the request
+ * without going through the {@link SearchService}. Scripts are not supported since the index has no script service.
+ */
+final class BenchmarkSearchContext extends SearchContext {
+
+    private final LogsIndex index;
+    private final ContextIndexSearcher searcher;
+    private final ShardSearchRequest request;
+    private final SearchShardTarget shardTarget;
+    private final SearchLookup lookup;
+    private final QueryShardContext queryShardContext;
+    private final Map<Class<?>, Collector> queryCollectors = new HashMap<>();
+    private final Counter timeEstimateCounter = Counter.newCounter();
+    private final QuerySearchResult queryResult = new QuerySearchResult();
+    private final FetchSearchResult fetchResult = new FetchSearchResult();
+    private final long originNanoTime = System.nanoTime();
+    private final Map<String, SearchExtBuilder> searchExtBuilders = new HashMap<>();
+    private final List<RescoreContext> rescore = new ArrayList<>();
+    private ScrollContext scrollContext;
+    private SearchContextAggregations aggregations;
+    private SearchContextHighlight highlight;
+    private SuggestionSearchContext suggest;
+    private ParsedQuery query;
+    private ParsedQuery postFilter;
+    private int from;
+    private int size;
+    private SortAndFormats sort;
+    private FieldDoc searchAfter;
+    private CollapseContext collapse;
+    private Float minimumScore;
+    private boolean trackScores;
+    private boolean trackTotalHits = true;
+    private TimeValue timeout = SearchService.NO_TIMEOUT;
+    private int terminateAfter = DEFAULT_TERMINATE_AFTER;
+    private boolean explain;
+    private boolean version;
+    private List<String> groupStats;
+    private FetchSourceContext fetchSourceContext;
+    private StoredFieldsContext storedFieldsContext;
+    private DocValueFieldsContext docValueFieldsContext;
+    private int[] docIdsToLoad;
+    private int docIdsToLoadFrom;
+    private int docIdsToLoadSize;
+    private SearchTask task;
+    private long keepAlive;
+    private long lastAccessTime;
+
+    BenchmarkSearchContext(LogsIndex index) {
+        this.index = index;
+        final IndexSearcher indexSearcher = new IndexSearcher(index.reader);
+        this.searcher = new ContextIndexSearcher(new Engine.Searcher("benchmark", indexSearcher, () -> {}),
+            indexSearcher.getQueryCache(), new UsageTrackingQueryCachingPolicy());
+        this.request = new ShardSearchLocalRequest(index.shard.shardId(), Strings.EMPTY_ARRAY, 0L, AliasFilter.EMPTY);
+        this.shardTarget = new SearchShardTarget("benchmark", index.shard.shardId(), null, null);
+        this.lookup = new SearchLookup(mapperService(), this::getForField, null);
+        this.queryShardContext = new QueryShardContext(index.shard.shardId().id(), index.shard.indexSettings(),
+            index.bitsetFilterCache, (fieldType, fullyQualifiedIndexName) -> getForField(fieldType), mapperService(),
+            index.similarityService, null, NamedXContentRegistry.EMPTY, new NamedWriteableRegistry(Collections.emptyList()), null,
+            index.reader, System::currentTimeMillis, null);
+        setTask(new SearchTask(1L, "benchmark", "indices:data/read/search", "", null, Collections.emptyMap()));
+    }
+
+    @Override
+    public void preProcess(boolean rewrite) {
+    }
+
+    @Override
+    public Query buildFilteredQuery(Query query) {
+        return query;
+    }
+
+    @Override
+    public long id() {
+        return 0;
+    }
+
+    @Override
+    public String source() {
+        return "benchmark";
+    }
+
+    @Override
+    public ShardSearchRequest request() {
+        return request;
+    }
+
+    @Override
+    public SearchType searchType() {
+        return SearchType.QUERY_THEN_FETCH;
+    }
+
+    @Override
+    public SearchShardTarget shardTarget() {
+        return shardTarget;
+    }
+
+    @Override
+    public int numberOfShards() {
+        return 1;
+    }
+
+    @Override
+    public float queryBoost() {
+        return 1f;
+    }
+
+    @Override
+    public long getOriginNanoTime() {
+        return originNanoTime;
+    }
+
+    @Override
+    public ScrollContext scrollContext() {
+        return scrollContext;
+    }
+
+    @Override
+    public SearchContext scrollContext(ScrollContext scrollContext) {
+        this.scrollContext = scrollContext;
+        return this;
+    }
+
+    @Override
+    public SearchContextAggregations aggregations() {
+        return aggregations;
+    }
+
+    @Override
+    public SearchContext aggregations(SearchContextAggregations aggregations) {
+        this.aggregations = aggregations;
+        return this;
+    }
+
+    @Override
+    public void addSearchExt(SearchExtBuilder searchExtBuilder) {
+        searchExtBuilders.put(searchExtBuilder.getWriteableName(), searchExtBuilder);
+    }
+
+    @Override
+    public SearchExtBuilder getSearchExt(String name) {
+        return searchExtBuilders.get(name);
+    }
+
+    @Override
+    public SearchContextHighlight highlight() {
+        return highlight;
+    }
+
+    @Override
+    public void highlight(SearchContextHighlight highlight) {
+        this.highlight = highlight;
+    }
+
+    @Override
+    public SuggestionSearchContext suggest() {
+        return suggest;
+    }
+
+    @Override
+    public void suggest(SuggestionSearchContext suggest) {
+        this.suggest = suggest;
+    }
+
+    @Override
+    public List<RescoreContext> rescore() {
+        return rescore;
+    }
+
+    @Override
+    public void addRescore(RescoreContext rescore) {
+        this.rescore.add(rescore);
+    }
+
+    @Override
+    public boolean hasScriptFields() {
+        return false;
+    }
+
+    @Override
+    public ScriptFieldsContext scriptFields() {
+        return null;
+    }
+
+    @Override
+    public boolean sourceRequested() {
+        return fetchSourceContext != null && fetchSourceContext.fetchSource();
+    }
+
+    @Override
+    public boolean hasFetchSourceContext() {
+        return fetchSourceContext != null;
+    }
+
+    @Override
+    public FetchSourceContext fetchSourceContext() {
+        return fetchSourceContext;
+    }
+
+    @Override
+    public SearchContext fetchSourceContext(FetchSourceContext fetchSourceContext) {
+        this.fetchSourceContext = fetchSourceContext;
+        return this;
+    }
+
+    @Override
+    public DocValueFieldsContext docValueFieldsContext() {
+        return docValueFieldsContext;
+    }
+
+    @Override
+    public SearchContext docValueFieldsContext(DocValueFieldsContext docValueFieldsContext) {
+        this.docValueFieldsContext = docValueFieldsContext;
+        return this;
+    }
+
+    @Override
+    public ContextIndexSearcher searcher() {
+        return searcher;
+    }
+
+    @Override
+    public IndexShard indexShard() {
+        return index.shard;
+    }
+
+    @Override
+    public MapperService mapperService() {
+        return index.shard.mapperService();
+    }
+
+    @Override
+    public SimilarityService similarityService() {
+        return index.similarityService;
+    }
+
+    @Override
+    public BigArrays bigArrays() {
+        return BigArrays.NON_RECYCLING_INSTANCE;
+    }
+
+    @Override
+    public BitsetFilterCache bitsetFilterCache() {
+        return index.bitsetFilterCache;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <IFD extends IndexFieldData<?>> IFD getForField(MappedFieldType fieldType) {
+        return (IFD) fieldType.fielddataBuilder(index.shard.shardId().getIndexName()).build(index.shard.indexSettings(), fieldType,
+            new IndexFieldDataCache.None(), new NoneCircuitBreakerService(), mapperService());
+    }
+
+    @Override
+    public TimeValue timeout() {
+        return timeout;
+    }
+
+    @Override
+    public void timeout(TimeValue timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int terminateAfter() {
+        return terminateAfter;
+    }
+
+    @Override
+    public void terminateAfter(int terminateAfter) {
+        this.terminateAfter = terminateAfter;
+    }
+
+    @Override
+    public boolean lowLevelCancellation() {
+        return false;
+    }
+
+    @Override
+    public SearchContext minimumScore(float minimumScore) {
+        this.minimumScore = minimumScore;
+        return this;
+    }
+
+    @Override
+    public Float minimumScore() {
+        return minimumScore;
+    }
+
+    @Override
+    public SearchContext sort(SortAndFormats sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    @Override
+    public SortAndFormats sort() {
+        return sort;
+    }
+
+    @Override
+    public SearchContext trackScores(boolean trackScores) {
+        this.trackScores = trackScores;
+        return this;
+    }
+
+    @Override
+    public boolean trackScores() {
+        return trackScores;
+    }
+
+    @Override
+    public SearchContext trackTotalHits(boolean trackTotalHits) {
+        this.trackTotalHits = trackTotalHits;
+        return this;
+    }
+
+    @Override
+    public boolean trackTotalHits() {
+        return trackTotalHits;
+    }
+
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        this.searchAfter = searchAfter;
+        return this;
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return searchAfter;
+    }
+
+    @Override
+    public SearchContext collapse(CollapseContext collapse) {
+        this.collapse = collapse;
+        return this;
+    }
+
+    @Override
+    public CollapseContext collapse() {
+        return collapse;
+    }
+
+    @Override
+    public SearchContext parsedPostFilter(ParsedQuery postFilter) {
+        this.postFilter = postFilter;
+        return this;
+    }
+
+    @Override
+    public ParsedQuery parsedPostFilter() {
+        return postFilter;
+    }
+
+    @Override
+    public Query aliasFilter() {
+        return null;
+    }
+
+    @Override
+    public SearchContext parsedQuery(ParsedQuery query) {
+        this.query = query;
+        return this;
+    }
+
+    @Override
+    public ParsedQuery parsedQuery() {
+        return query;
+    }
+
+    @Override
+    public Query query() {
+        return query.query();
+    }
+
+    @Override
+    public int from() {
+        return from;
+    }
+
+    @Override
+    public SearchContext from(int from) {
+        this.from = from;
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public SearchContext size(int size) {
+        this.size = size;
+        return this;
+    }
+
+    @Override
+    public boolean hasStoredFields() {
+        return storedFieldsContext != null && storedFieldsContext.fieldNames() != null;
+    }
+
+    @Override
+    public boolean hasStoredFieldsContext() {
+        return storedFieldsContext != null;
+    }
+
+    @Override
+    public boolean storedFieldsRequested() {
+        return storedFieldsContext == null || storedFieldsContext.fetchFields();
+    }
+
+    @Override
+    public StoredFieldsContext storedFieldsContext() {
+        return storedFieldsContext;
+    }
+
+    @Override
+    public SearchContext storedFieldsContext(StoredFieldsContext storedFieldsContext) {
+        this.storedFieldsContext = storedFieldsContext;
+        return this;
+    }
+
+    @Override
+    public boolean explain() {
+        return explain;
+    }
+
+    @Override
+    public void explain(boolean explain) {
+        this.explain = explain;
+    }
+
+    @Override
+    public List<String> groupStats() {
+        return groupStats;
+    }
+
+    @Override
+    public void groupStats(List<String> groupStats) {
+        this.groupStats = groupStats;
+    }
+
+    @Override
+    public boolean version() {
+        return version;
+    }
+
+    @Override
+    public void version(boolean version) {
+        this.version = version;
+    }
+
+    @Override
+    public int[] docIdsToLoad() {
+        return docIdsToLoad;
+    }
+
+    @Override
+    public int docIdsToLoadFrom() {
+        return docIdsToLoadFrom;
+    }
+
+    @Override
+    public int docIdsToLoadSize() {
+        return docIdsToLoadSize;
+    }
+
+    @Override
+    public SearchContext docIdsToLoad(int[] docIdsToLoad, int docsIdsToLoadFrom, int docsIdsToLoadSize) {
+        this.docIdsToLoad = docIdsToLoad;
+        this.docIdsToLoadFrom = docsIdsToLoadFrom;
+        this.docIdsToLoadSize = docsIdsToLoadSize;
+        return this;
+    }
+
+    @Override
+    public void accessed(long accessTime) {
+        this.lastAccessTime = accessTime;
+    }
+
+    @Override
+    public long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    @Override
+    public long keepAlive() {
+        return keepAlive;
+    }
+
+    @Override
+    public void keepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public DfsSearchResult dfsResult() {
+        return null;
+    }
+
+    @Override
+    public QuerySearchResult queryResult() {
+        return queryResult;
+    }
+
+    @Override
+    public FetchPhase fetchPhase() {
+        return null;
+    }
+
+    @Override
+    public FetchSearchResult fetchResult() {
+        return fetchResult;
+    }
+
+    @Override
+    public MappedFieldType smartNameFieldType(String name) {
+        return mapperService().fullName(name);
+    }
+
+    @Override
+    public ObjectMapper getObjectMapper(String name) {
+        return mapperService().getObjectMapper(name);
+    }
+
+    @Override
+    public SearchLookup lookup() {
+        return lookup;
+    }
+
+    @Override
+    public void doClose() {
+    }
+
+    @Override
+    public Counter timeEstimateCounter() {
+        return timeEstimateCounter;
+    }
+
+    @Override
+    public Profilers getProfilers() {
+        return null;
+    }
+
+    @Override
+    public Map<Class<?>, Collector> queryCollectors() {
+        return queryCollectors;
+    }
+
+    @Override
+    public QueryShardContext getQueryShardContext() {
+        return queryShardContext;
+    }
+
+    @Override
+    public void setTask(SearchTask task) {
+        this.task = task;
+    }
+
+    @Override
+    public SearchTask getTask() {
+        return task;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return task.isCancelled();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.fetch.FetchPhase;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.fetch.subphase.FetchSourceSubPhase;
+import org.elasticsearch.search.query.QueryPhase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-hit work of the {@link FetchPhase}: loading stored fields, filtering {@code _source} through the
+ * {@link FetchSourceSubPhase} and serializing the resulting hits, both on the transport and as a REST response.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class FetchSourceBenchmark {
+
+    @Param({ "10", "100" })
+    private int size;
+
+    @Param({ "none", "includes", "excludes", "wildcard" })
+    private String filter;
+
+    private LogsIndex index;
+    private BenchmarkSearchContext context;
+    private SearchHits hits;
+    private final FetchPhase fetchPhase = new FetchPhase(Collections.singletonList(new FetchSourceSubPhase()));
+
+    @Setup
+    public void setUp() throws IOException {
+        index = new LogsIndex(10000, 1, Settings.EMPTY);
+        context = new BenchmarkSearchContext(index);
+        context.parsedQuery(new ParsedQuery(new MatchAllDocsQuery()));
+        context.size(size);
+        context.fetchSourceContext(fetchSourceContext());
+        new QueryPhase().execute(context);
+        ScoreDoc[] scoreDocs = context.queryResult().topDocs().topDocs.scoreDocs;
+        int[] docIds = new int[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            docIds[i] = scoreDocs[i].doc;
+        }
+        context.docIdsToLoad(docIds, 0, docIds.length);
+        hits = fetchSource();
+    }
+
+    private FetchSourceContext fetchSourceContext() {
+        switch (filter) {
+            case "none":
+                return new FetchSourceContext(true);
+            case "includes":
+                return new FetchSourceContext(true, new String[] { "@timestamp", "level", "message" }, Strings.EMPTY_ARRAY);
+            case "excludes":
+                return new FetchSourceContext(true, Strings.EMPTY_ARRAY, new String[] { "client", "request.duration_ms" });
+            case "wildcard":
+                return new FetchSourceContext(true, new String[] { "request.*", "cl*" }, new String[] { "*.agent" });
+            default:
+                throw new IllegalArgumentException("unknown filter [" + filter + "]");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        index.close();
+    }
+
+    @Benchmark
+    public SearchHits fetchSource() {
+        fetchPhase.execute(context);
+        return context.fetchResult().hits();
+    }
+
+    @Benchmark
+    public BytesReference writeHits() throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            hits.writeTo(out);
+            return out.bytes();
+        }
+    }
+
+    @Benchmark
+    public BytesReference renderHits() throws IOException {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            hits.toXContent(builder, ToXContent.EMPTY_PARAMS);
+            builder.endObject();
+            return BytesReference.bytes(builder);
+        }
+    }
+}
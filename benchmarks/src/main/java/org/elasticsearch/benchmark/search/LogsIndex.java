@@ -0,0 +1,225 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.RecoverySource;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.UnassignedInfo;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.env.ShardLock;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AnalyzerScope;
+import org.elasticsearch.index.analysis.IndexAnalyzers;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.cache.IndexCache;
+import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
+import org.elasticsearch.index.cache.query.DisabledQueryCache;
+import org.elasticsearch.index.engine.InternalEngineFactory;
+import org.elasticsearch.index.mapper.IdFieldMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.SourceFieldMapper;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardPath;
+import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.IndicesModule;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory index of log-like documents, indexed the way its mappings would index them: {@code level} and {@code host} as
+ * keywords, {@code @timestamp} as a date, {@code status} as a long, {@code message} as text and the whole document as
+ * {@code _source}.
+ * <p>
+ * The documents are written with a plain {@link IndexWriter} to keep the setup of the benchmarks short, but the index comes with
+ * the {@link IndexShard} and {@link MapperService} that the search phases expect from a node. The shard is never recovered: it
+ * only provides the index settings and the thread pool of the search phases.
+ */
+final class LogsIndex implements Closeable {
+
+    static final long START_TIMESTAMP = 1543622400000L;
+    static final long TIMESTAMP_RANGE = 86400000L;
+    static final String[] LEVELS = new String[] { "INFO", "WARN", "ERROR", "DEBUG" };
+    static final String[] HOSTS = new String[] { "web-01", "web-02", "web-03", "db-01", "cache-01" };
+
+    private static final String MAPPING = "{\"_doc\":{\"properties\":{"
+        + "\"@timestamp\":{\"type\":\"date\"},"
+        + "\"level\":{\"type\":\"keyword\"},"
+        + "\"host\":{\"type\":\"keyword\"},"
+        + "\"status\":{\"type\":\"long\"},"
+        + "\"message\":{\"type\":\"text\"}}}}";
+
+    private final Path path;
+    private final ThreadPool threadPool;
+    private final Store store;
+    final SimilarityService similarityService;
+    final BitsetFilterCache bitsetFilterCache;
+    final IndexShard shard;
+    final DirectoryReader reader;
+
+    LogsIndex(int numDocs, int numSegments, Settings settings) throws IOException {
+        path = Files.createTempDirectory("logs");
+        threadPool = new ThreadPool(Settings.builder().put(Node.NODE_NAME_SETTING.getKey(), "benchmark").build());
+        final ShardId shardId = new ShardId(new Index("logs", UUIDs.randomBase64UUID()), 0);
+        final IndexMetaData indexMetaData = IndexMetaData.builder(shardId.getIndexName())
+            .settings(Settings.builder()
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_INDEX_UUID, shardId.getIndex().getUUID())
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(settings))
+            .build();
+        final IndexSettings indexSettings = new IndexSettings(indexMetaData, Settings.EMPTY);
+        similarityService = new SimilarityService(indexSettings, null, Collections.emptyMap());
+        bitsetFilterCache = new BitsetFilterCache(indexSettings, new BitsetFilterCache.Listener() {
+            @Override
+            public void onCache(ShardId shardId, Accountable accountable) {
+            }
+
+            @Override
+            public void onRemoval(ShardId shardId, Accountable accountable) {
+            }
+        });
+        final MapperService mapperService = mapperService(indexSettings, similarityService);
+        final Directory directory = new RAMDirectory();
+        store = new Store(shardId, indexSettings, directory, new ShardLock(shardId) {
+            @Override
+            protected void closeInternal() {
+            }
+        });
+        final Path shardPath = path.resolve(shardId.getIndex().getUUID()).resolve(Integer.toString(shardId.id()));
+        final ShardRouting shardRouting = ShardRouting.newUnassigned(shardId, true, RecoverySource.EmptyStoreRecoverySource.INSTANCE,
+            new UnassignedInfo(UnassignedInfo.Reason.INDEX_CREATED, null)).initialize("benchmark", null, -1);
+        shard = new IndexShard(shardRouting, indexSettings, new ShardPath(false, shardPath, shardPath, shardId), store, () -> null,
+            new IndexCache(indexSettings, new DisabledQueryCache(indexSettings), bitsetFilterCache), mapperService,
+            similarityService, new InternalEngineFactory(), new IndexEventListener() {}, null, threadPool,
+            BigArrays.NON_RECYCLING_INSTANCE, searcher -> {}, Collections.emptyList(), Collections.emptyList(), () -> {},
+            new NoneCircuitBreakerService());
+
+        Random random = new Random(42);
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < numDocs; i++) {
+                writer.addDocument(document(Integer.toString(i), random));
+            }
+            writer.forceMerge(numSegments);
+        }
+        reader = DirectoryReader.open(directory);
+    }
+
+    private static MapperService mapperService(IndexSettings indexSettings, SimilarityService similarityService) throws IOException {
+        final NamedAnalyzer standard = new NamedAnalyzer("default", AnalyzerScope.INDEX, new StandardAnalyzer());
+        final IndexAnalyzers indexAnalyzers = new IndexAnalyzers(indexSettings, standard, standard, standard,
+            Collections.singletonMap("default", standard), Collections.emptyMap(), Collections.emptyMap());
+        final MapperService mapperService = new MapperService(indexSettings, indexAnalyzers, NamedXContentRegistry.EMPTY,
+            similarityService, new IndicesModule(Collections.emptyList()).getMapperRegistry(), () -> null);
+        mapperService.merge("_doc", new CompressedXContent(MAPPING), MapperService.MergeReason.MAPPING_UPDATE);
+        return mapperService;
+    }
+
+    private static Document document(String id, Random random) throws IOException {
+        final long timestamp = START_TIMESTAMP + (long) (random.nextDouble() * TIMESTAMP_RANGE);
+        final String level = LEVELS[random.nextInt(LEVELS.length)];
+        final String host = HOSTS[random.nextInt(HOSTS.length)];
+        final long status = 200 + random.nextInt(4) * 100;
+        final String message = "GET /api/v1/orders/" + random.nextInt(100000) + " returned " + status
+            + " for user " + Integer.toHexString(random.nextInt());
+        final BytesReference source;
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            builder.field("@timestamp", timestamp);
+            builder.field("level", level);
+            builder.field("host", host);
+            builder.field("status", status);
+            builder.field("message", message);
+            builder.startObject("client");
+            builder.field("ip", "10.0." + random.nextInt(256) + "." + random.nextInt(256));
+            builder.field("agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)");
+            builder.endObject();
+            builder.startObject("request");
+            builder.field("method", "GET");
+            builder.field("bytes", random.nextInt(1 << 20));
+            builder.field("duration_ms", random.nextDouble() * 1000);
+            builder.endObject();
+            builder.endObject();
+            source = BytesReference.bytes(builder);
+        }
+        Document doc = new Document();
+        doc.add(new StoredField(IdFieldMapper.NAME, Uid.encodeId(id)));
+        doc.add(new LongPoint("@timestamp", timestamp));
+        doc.add(new NumericDocValuesField("@timestamp", timestamp));
+        doc.add(new StringField("level", level, Field.Store.NO));
+        doc.add(new SortedSetDocValuesField("level", new BytesRef(level)));
+        doc.add(new StringField("host", host, Field.Store.NO));
+        doc.add(new SortedSetDocValuesField("host", new BytesRef(host)));
+        doc.add(new LongPoint("status", status));
+        doc.add(new NumericDocValuesField("status", status));
+        doc.add(new TextField("message", message, Field.Store.NO));
+        doc.add(new StoredField(SourceFieldMapper.NAME, source.toBytesRef()));
+        return doc;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            IOUtils.close(reader, () -> shard.close("benchmark finished", false), bitsetFilterCache, store);
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+            IOUtils.rm(path);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.search.query.QueryPhase;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the shard-level {@link QueryPhase} on an in-memory index of log documents, for a few typical query shapes, with and
+ * without collecting the segments of the shard in concurrent slices.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class QueryPhaseBenchmark {
+
+    @Param({ "100000" })
+    private int numDocs;
+
+    @Param({ "1", "10" })
+    private int numSegments;
+
+    @Param({ "match_all", "term", "range", "bool" })
+    private String query;
+
+    @Param({ "10", "100" })
+    private int size;
+
+    @Param({ "1", "4" })
+    private int maxConcurrentSlices;
+
+    private LogsIndex index;
+    private BenchmarkSearchContext context;
+    private final QueryPhase queryPhase = new QueryPhase();
+
+    @Setup
+    public void setUp() throws IOException {
+        index = new LogsIndex(numDocs, numSegments, Settings.builder()
+            .put(IndexSettings.MAX_CONCURRENT_SEARCH_SLICES_SETTING.getKey(), maxConcurrentSlices)
+            .build());
+        context = new BenchmarkSearchContext(index);
+        context.parsedQuery(new ParsedQuery(query()));
+        context.size(size);
+    }
+
+    private Query query() {
+        // roughly the last hour of the indexed day
+        final Query lastHour = LongPoint.newRangeQuery("@timestamp",
+            LogsIndex.START_TIMESTAMP + LogsIndex.TIMESTAMP_RANGE * 23 / 24, LogsIndex.START_TIMESTAMP + LogsIndex.TIMESTAMP_RANGE);
+        switch (query) {
+            case "match_all":
+                return new MatchAllDocsQuery();
+            case "term":
+                return new TermQuery(new Term("level", "ERROR"));
+            case "range":
+                return lastHour;
+            case "bool":
+                return new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("message", "orders")), BooleanClause.Occur.MUST)
+                    .add(new TermQuery(new Term("level", "ERROR")), BooleanClause.Occur.FILTER)
+                    .add(lastHour, BooleanClause.Occur.FILTER)
+                    .build();
+            default:
+                throw new IllegalArgumentException("unknown query [" + query + "]");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        index.close();
+    }
+
+    @Benchmark
+    public QuerySearchResult executeQueryPhase() {
+        queryPhase.execute(context);
+        return context.queryResult();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchPhaseController;
+import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the coordinating node's reduction of the query phase, {@link SearchPhaseController#reducedQueryPhase}, which merges
+ * the top hits and a {@code terms} aggregation of every shard. Reducing consumes the shard results so they are set up again before
+ * each invocation.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class ReducedQueryPhaseBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    private int numShards;
+
+    @Param({ "10", "100" })
+    private int size;
+
+    // the number of buckets each shard returns for the terms aggregation
+    @Param({ "0", "100", "1000" })
+    private int numBuckets;
+
+    private final SearchPhaseController controller =
+        new SearchPhaseController(() -> isFinalReduce -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null,
+            isFinalReduce));
+    private TopDocsAndMaxScore[] shardTopDocs;
+    private InternalAggregations[] shardAggregations;
+    private List<QuerySearchResult> results;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Index index = new Index("logs", "_na_");
+        shardTopDocs = new TopDocsAndMaxScore[numShards];
+        shardAggregations = new InternalAggregations[numShards];
+        results = new ArrayList<>(numShards);
+        for (int shard = 0; shard < numShards; shard++) {
+            ScoreDoc[] scoreDocs = new ScoreDoc[size];
+            float score = 10f * random.nextFloat();
+            for (int i = 0; i < size; i++) {
+                score -= random.nextFloat() / size;
+                scoreDocs[i] = new ScoreDoc(random.nextInt(1000000), score);
+            }
+            TotalHits totalHits = new TotalHits(size + random.nextInt(100000), TotalHits.Relation.EQUAL_TO);
+            shardTopDocs[shard] = new TopDocsAndMaxScore(new TopDocs(totalHits, scoreDocs), scoreDocs.length == 0 ? Float.NaN
+                : scoreDocs[0].score);
+            if (numBuckets > 0) {
+                shardAggregations[shard] = new InternalAggregations(Collections.singletonList(terms(random)));
+            }
+            QuerySearchResult result = new QuerySearchResult(shard, new SearchShardTarget("node", index, shard, null));
+            result.setShardIndex(shard);
+            result.from(0);
+            result.size(size);
+            results.add(result);
+        }
+    }
+
+    private LongTerms terms(Random random) {
+        // shards see overlapping but different sets of terms, like a terms aggregation on a high cardinality field
+        long[] terms = new long[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            terms[i] = random.nextInt(numBuckets * 4);
+        }
+        terms = Arrays.stream(terms).distinct().toArray();
+        List<LongTerms.Bucket> buckets = new ArrayList<>(terms.length);
+        for (long term : terms) {
+            buckets.add(new LongTerms.Bucket(term, 1 + random.nextInt(1000), InternalAggregations.EMPTY, false, 0, DocValueFormat.RAW));
+        }
+        buckets.sort((a, b) -> Long.compare(b.getDocCount(), a.getDocCount()));
+        return new LongTerms("terms", BucketOrder.count(false), 10, 1, Collections.emptyList(), null, DocValueFormat.RAW,
+            numBuckets, false, 0, buckets, 0);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetResults() {
+        for (int shard = 0; shard < numShards; shard++) {
+            QuerySearchResult result = results.get(shard);
+            result.topDocs(shardTopDocs[shard], null);
+            result.aggregations(shardAggregations[shard]);
+        }
+    }
+
+    @Benchmark
+    public SearchPhaseController.ReducedQueryPhase reduce() {
+        return controller.reducedQueryPhase(results, false);
+    }
+}
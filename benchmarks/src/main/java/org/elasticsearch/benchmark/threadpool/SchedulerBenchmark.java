@@ -0,0 +1,117 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.threadpool;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.TimerWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap based scheduler of the thread pool with the timer wheel on the pattern of request timeouts: a timeout is scheduled
+ * for every request and cancelled as soon as the response comes back, while many other timeouts are pending.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class SchedulerBenchmark {
+
+    private static final Runnable NOOP = () -> {};
+
+    @Param({ "heap", "timer_wheel" })
+    private String type;
+
+    // the number of timers that are pending while timers are scheduled and cancelled
+    @Param({ "0", "10000", "100000" })
+    private int pendingTimers;
+
+    private ScheduledThreadPoolExecutor heapScheduler;
+    private TimerWheel timerWheel;
+
+    @Setup
+    public void setUp() {
+        final Settings settings = Settings.builder().put("node.name", "benchmark").build();
+        switch (type) {
+            case "heap":
+                heapScheduler = Scheduler.initScheduler(settings);
+                break;
+            case "timer_wheel":
+                timerWheel = new TimerWheel(EsExecutors.daemonThreadFactory(settings, "scheduler"), TimeValue.timeValueMillis(10), 512);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown type [" + type + "]");
+        }
+        for (int i = 0; i < pendingTimers; i++) {
+            // spread the pending timers over several minutes so that none of them expires during the benchmark
+            schedule(TimeUnit.SECONDS.toMillis(600) + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (heapScheduler != null) {
+            Scheduler.terminate(heapScheduler, 10, TimeUnit.SECONDS);
+        }
+        if (timerWheel != null) {
+            timerWheel.shutdown();
+            timerWheel.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private ScheduledFuture<?> schedule(long delayMillis) {
+        if (heapScheduler != null) {
+            return heapScheduler.schedule(NOOP, delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            return timerWheel.schedule(NOOP, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        return schedule(TimeUnit.SECONDS.toMillis(30)).cancel(false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean scheduleAndCancelConcurrently() {
+        return schedule(TimeUnit.SECONDS.toMillis(30)).cancel(false);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.translog.Translog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the on-heap {@link LiveVersionMap} with the compact one backed by {@link BigArrays} on an update-heavy workload, where
+ * every indexing operation has to be recorded in the version map. The memory used by each map before it is refreshed is printed at
+ * the end of each iteration.
+ * <p>
+ * This benchmark lives in the package of the engine because the version map is not part of its public API.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class LiveVersionMapBenchmark {
+
+    @Param({ "heap", "compact" })
+    private String type;
+
+    // the number of distinct documents that are updated between two refreshes
+    @Param({ "10000", "1000000" })
+    private int numUids;
+
+    private BytesRef[] uids;
+    private LiveVersionMap map;
+    private long version;
+    private int current;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        uids = new BytesRef[numUids];
+        for (int i = 0; i < uids.length; i++) {
+            // random ids like the ones generated for documents that are routinely updated by their external id
+            uids[i] = new BytesRef(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpMap() throws IOException {
+        switch (type) {
+            case "heap":
+                map = new LiveVersionMap();
+                break;
+            case "compact":
+                map = new LiveVersionMap(BigArrays.NON_RECYCLING_INSTANCE);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown type [" + type + "]");
+        }
+        // updates require the version map to be accessed safely
+        map.enforceSafeAccess();
+        // fill the map so that lookups and updates hit existing entries
+        for (BytesRef uid : uids) {
+            put(uid);
+        }
+        current = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownMap() throws IOException {
+        map.beforeRefresh();
+        map.afterRefresh(true);
+    }
+
+    private BytesRef nextUid() {
+        final BytesRef uid = uids[current];
+        current = current + 1 == uids.length ? 0 : current + 1;
+        return uid;
+    }
+
+    private void put(BytesRef uid) {
+        try (Releasable ignored = map.acquireLock(uid)) {
+            map.putIndexUnderLock(uid, new IndexVersionValue(new Translog.Location(1, version * 100, 100), ++version, version, 1));
+        }
+    }
+
+    @Benchmark
+    public VersionValue update() {
+        final BytesRef uid = nextUid();
+        try (Releasable ignored = map.acquireLock(uid)) {
+            final VersionValue previous = map.getUnderLock(uid);
+            map.putIndexUnderLock(uid, new IndexVersionValue(new Translog.Location(1, version * 100, 100), ++version, version, 1));
+            return previous;
+        }
+    }
+
+    @Benchmark
+    public VersionValue get() {
+        final BytesRef uid = nextUid();
+        try (Releasable ignored = map.acquireLock(uid)) {
+            return map.getUnderLock(uid);
+        }
+    }
+}
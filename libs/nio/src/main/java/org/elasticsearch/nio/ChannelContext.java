@@ -48,6 +48,7 @@ public abstract class ChannelContext<S extends SelectableChannel & NetworkChanne
 
     protected void register() throws IOException {
         doSelectorRegister();
+        getSelector().onChannelRegistered();
     }
 
     // Package private for testing
@@ -72,6 +73,9 @@ public abstract class ChannelContext<S extends SelectableChannel & NetworkChanne
      */
     public void closeFromSelector() throws IOException {
         if (isOpen()) {
+            if (selectionKey != null) {
+                getSelector().onChannelClosed();
+            }
             try {
                 rawChannel.close();
                 closeContext.complete(null);
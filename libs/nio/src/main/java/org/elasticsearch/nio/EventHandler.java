@@ -77,6 +77,22 @@ public class EventHandler {
         }
     }
 
+    /**
+     * This method is called when a connected NioSocketChannel that was migrated from another selector is being
+     * registered with its new selector.
+     *
+     * @param context that was migrated
+     */
+    protected void handleMigration(SocketChannelContext context) throws IOException {
+        context.registerAfterMigration();
+        SelectionKey selectionKey = context.getSelectionKey();
+        selectionKey.attach(context);
+        SelectionKeyUtils.setReadInterested(selectionKey);
+        if (context.readyForFlush()) {
+            SelectionKeyUtils.setWriteInterested(selectionKey);
+        }
+    }
+
     /**
      * This method is called when an attempt to register a channel throws an exception.
      *
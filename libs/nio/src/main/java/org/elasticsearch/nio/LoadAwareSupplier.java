@@ -0,0 +1,67 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.nio;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Assigns new channels to lightly loaded selectors. Each call compares the selector that is next in round-robin order
+ * with another selector picked at random and returns the one that was less busy over its last measurement window,
+ * or the one with fewer channels if their loads are within a few percent of each other. Comparing two candidates
+ * rather than always picking the least loaded selector keeps a burst of new channels from landing on the same
+ * selector before its load is updated.
+ */
+final class LoadAwareSupplier extends RoundRobinSupplier<NioSelector> {
+
+    // differences in load below this are noise, for instance between mostly idle selectors
+    private static final double LOAD_TOLERANCE = 0.05d;
+
+    LoadAwareSupplier() {
+        super();
+    }
+
+    LoadAwareSupplier(NioSelector[] selectors) {
+        super(selectors);
+    }
+
+    @Override
+    public NioSelector get() {
+        NioSelector first = super.get();
+        NioSelector[] selectors = selectors();
+        if (selectors.length == 1) {
+            return first;
+        }
+        int index = ThreadLocalRandom.current().nextInt(selectors.length);
+        NioSelector second = selectors[index];
+        if (second == first) {
+            second = selectors[(index + 1) % selectors.length];
+        }
+        return compare(second, first) < 0 ? second : first;
+    }
+
+    static int compare(NioSelector a, NioSelector b) {
+        double loadA = a.getLoad();
+        double loadB = b.getLoad();
+        if (Math.abs(loadA - loadB) > LOAD_TOLERANCE) {
+            return Double.compare(loadA, loadB);
+        }
+        return Integer.compare(a.getChannelCount(), b.getChannelCount());
+    }
+}
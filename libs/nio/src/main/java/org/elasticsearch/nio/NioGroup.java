@@ -41,6 +41,12 @@ import java.util.stream.Stream;
  * <p>
  * The logic specific to a particular channel is provided by the {@link ChannelFactory} passed to the method
  * when the channel is created. This is what allows an NioGroup to support different channel types.
+ * <p>
+ * By default new channels are assigned to the selectors in round-robin order. A group can instead be created with
+ * load-aware assignment, in which case new channels go to selectors that were less busy recently, see
+ * {@link LoadAwareSupplier}. With load-aware assignment, a selector that stays much busier than the others also hands
+ * its busiest connected channel over to the least loaded selector, see {@link NioSelector#migrateChannel}. Otherwise
+ * channels stay with the selector they were assigned to for their whole life.
  */
 public class NioGroup implements AutoCloseable {
 
@@ -81,13 +87,30 @@ public class NioGroup implements AutoCloseable {
      */
     public NioGroup(ThreadFactory acceptorThreadFactory, int dedicatedAcceptorCount, ThreadFactory selectorThreadFactory, int selectorCount,
                     Function<Supplier<NioSelector>, EventHandler> eventHandlerFunction) throws IOException {
+        this(acceptorThreadFactory, dedicatedAcceptorCount, selectorThreadFactory, selectorCount, eventHandlerFunction, false);
+    }
+
+    /**
+     * This will create an NioGroup with dedicated acceptors if the dedicated acceptor count is greater than zero.
+     *
+     * @param acceptorThreadFactory factory to create acceptor selector threads
+     * @param dedicatedAcceptorCount the number of dedicated acceptor selectors to be created
+     * @param selectorThreadFactory factory to create non-acceptor selector threads
+     * @param selectorCount the number of non-acceptor selectors to be created
+     * @param eventHandlerFunction function for creating event handlers
+     * @param loadAwareAssignment whether new channels are assigned to the least loaded selectors rather than in round-robin order
+     *                            and channels are migrated away from busy selectors
+     * @throws IOException occurs if there is a problem while opening a java.nio.Selector
+     */
+    public NioGroup(ThreadFactory acceptorThreadFactory, int dedicatedAcceptorCount, ThreadFactory selectorThreadFactory, int selectorCount,
+                    Function<Supplier<NioSelector>, EventHandler> eventHandlerFunction, boolean loadAwareAssignment) throws IOException {
         dedicatedAcceptors = new ArrayList<>(dedicatedAcceptorCount);
         selectors = new ArrayList<>(selectorCount);
 
         try {
             List<RoundRobinSupplier<NioSelector>> suppliersToSet = new ArrayList<>(selectorCount);
             for (int i = 0; i < selectorCount; ++i) {
-                RoundRobinSupplier<NioSelector> supplier = new RoundRobinSupplier<>();
+                RoundRobinSupplier<NioSelector> supplier = loadAwareAssignment ? new LoadAwareSupplier() : new RoundRobinSupplier<>();
                 suppliersToSet.add(supplier);
                 NioSelector selector = new NioSelector(eventHandlerFunction.apply(supplier));
                 selectors.add(selector);
@@ -96,9 +119,17 @@ public class NioGroup implements AutoCloseable {
                 supplierToSet.setSelectors(selectors.toArray(new NioSelector[0]));
                 assert supplierToSet.count() == selectors.size() : "Supplier should have same count as selector list.";
             }
+            if (loadAwareAssignment) {
+                NioSelector[] migrationTargets = selectors.toArray(new NioSelector[0]);
+                for (NioSelector selector : selectors) {
+                    selector.setMigrationTargets(migrationTargets);
+                }
+            }
 
             for (int i = 0; i < dedicatedAcceptorCount; ++i) {
-                RoundRobinSupplier<NioSelector> supplier = new RoundRobinSupplier<>(selectors.toArray(new NioSelector[0]));
+                NioSelector[] selectorArray = selectors.toArray(new NioSelector[0]);
+                RoundRobinSupplier<NioSelector> supplier = loadAwareAssignment ? new LoadAwareSupplier(selectorArray) :
+                    new RoundRobinSupplier<>(selectorArray);
                 NioSelector acceptor = new NioSelector(eventHandlerFunction.apply(supplier));
                 dedicatedAcceptors.add(acceptor);
             }
@@ -108,7 +139,8 @@ public class NioGroup implements AutoCloseable {
             } else {
                 acceptorSupplier = new RoundRobinSupplier<>(selectors.toArray(new NioSelector[0]));
             }
-            selectorSupplier = new RoundRobinSupplier<>(selectors.toArray(new NioSelector[0]));
+            NioSelector[] selectorArray = selectors.toArray(new NioSelector[0]);
+            selectorSupplier = loadAwareAssignment ? new LoadAwareSupplier(selectorArray) : new RoundRobinSupplier<>(selectorArray);
             assert selectorCount == selectors.size() : "We need to have created all the selectors at this point.";
             assert dedicatedAcceptorCount == dedicatedAcceptors.size() : "We need to have created all the acceptors at this point.";
 
@@ -135,6 +167,13 @@ public class NioGroup implements AutoCloseable {
         return factory.openNioChannel(address, selectorSupplier);
     }
 
+    /**
+     * Returns the stats of the selectors that handle the channels of this group, not including the dedicated acceptors.
+     */
+    public List<SelectorStats> getSelectorStats() {
+        return selectors.stream().map(NioSelector::getStats).collect(Collectors.toList());
+    }
+
     @Override
     public void close() throws IOException {
         if (isOpen.compareAndSet(true, false)) {
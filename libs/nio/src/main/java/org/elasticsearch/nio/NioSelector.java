@@ -26,13 +26,17 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
@@ -43,12 +47,25 @@ import java.util.stream.Collectors;
  * {@link #runLoop()}, the selector will run until {@link #close()} is called. This instance handles closing
  * of channels. Users should call {@link #queueChannelClose(NioChannel)} to schedule a channel for close by
  * this selector.
+ * <p>
+ * The selector keeps track of the time its thread spends handling events rather than waiting for them and of the
+ * bytes its channels read and write. The load over the last measurement window is used to assign new channels to
+ * the least loaded selectors and is exposed, along with the totals, through {@link #getStats()}.
+ * <p>
+ * If migration targets were set, a selector that stays busy while another one is mostly idle hands its busiest
+ * channel over to the least loaded target once per measurement window, see {@link #setMigrationTargets(NioSelector[])}.
  */
 public class NioSelector implements Closeable {
 
+    private static final long LOAD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // a selector only gives channels away if it was at least this busy and this much busier than the target
+    private static final double MIN_MIGRATION_LOAD = 0.5d;
+    private static final double MIN_MIGRATION_LOAD_GAP = 0.25d;
+
     private final ConcurrentLinkedQueue<WriteOperation> queuedWrites = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<ChannelContext<?>> channelsToClose = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<ChannelContext<?>> channelsToRegister = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<SocketChannelContext> channelsToMigrate = new ConcurrentLinkedQueue<>();
     private final EventHandler eventHandler;
     private final Selector selector;
 
@@ -58,6 +75,21 @@ public class NioSelector implements Closeable {
     private final CompletableFuture<Void> isRunningFuture = new CompletableFuture<>();
     private final AtomicReference<Thread> thread = new AtomicReference<>(null);
 
+    // the following counters are only updated by the selector thread, the volatile ones are read by other threads
+    private final AtomicInteger queuedWriteCount = new AtomicInteger(0);
+    private volatile int channelCount;
+    private volatile long busyTimeNanos;
+    private volatile long bytesRead;
+    private volatile long bytesWritten;
+    private volatile double load;
+    private volatile long bytesPerSecond;
+    private long lastSelectReturned = System.nanoTime();
+    private long windowStart = lastSelectReturned;
+    private long windowBusyNanos;
+    private long windowBytes;
+    private volatile NioSelector[] migrationTargets;
+    private boolean migrationDue;
+
     public NioSelector(EventHandler eventHandler) throws IOException {
         this(eventHandler, Selector.open());
     }
@@ -132,7 +164,9 @@ public class NioSelector implements Closeable {
             closePendingChannels();
             preSelect();
 
+            onSelect(System.nanoTime());
             int ready = selector.select(300);
+            lastSelectReturned = System.nanoTime();
             if (ready > 0) {
                 Set<SelectionKey> selectionKeys = selector.selectedKeys();
                 Iterator<SelectionKey> keyIterator = selectionKeys.iterator();
@@ -165,6 +199,8 @@ public class NioSelector implements Closeable {
         cleanupPendingWrites();
         channelsToClose.addAll(channelsToRegister);
         channelsToRegister.clear();
+        channelsToClose.addAll(channelsToMigrate);
+        channelsToMigrate.clear();
         channelsToClose.addAll(selector.keys().stream().map(sk -> (ChannelContext<?>) sk.attachment()).collect(Collectors.toList()));
         closePendingChannels();
     }
@@ -227,8 +263,13 @@ public class NioSelector implements Closeable {
      * a selection key.
      */
     void preSelect() {
+        setUpMigratedChannels();
         setUpNewChannels();
         handleQueuedWrites();
+        if (migrationDue) {
+            migrationDue = false;
+            migrateBusiestChannel();
+        }
     }
 
     /**
@@ -238,10 +279,12 @@ public class NioSelector implements Closeable {
      * @param writeOperation to be queued
      */
     public void queueWrite(WriteOperation writeOperation) {
+        queuedWriteCount.incrementAndGet();
         queuedWrites.offer(writeOperation);
         if (isOpen() == false) {
             boolean wasRemoved = queuedWrites.remove(writeOperation);
             if (wasRemoved) {
+                queuedWriteCount.decrementAndGet();
                 writeOperation.getListener().accept(null, new ClosedSelectorException());
             }
         } else {
@@ -270,6 +313,54 @@ public class NioSelector implements Closeable {
         wakeup();
     }
 
+    /**
+     * Schedules a connected channel that another selector handed over to be registered with this selector. The channel
+     * will be registered next time through the event loop, before any queued writes are handled.
+     *
+     * @param context of the migrated channel
+     */
+    void scheduleForMigration(SocketChannelContext context) {
+        assert context.getSelector() == this : "The channel must have been handed over to this selector";
+        channelsToMigrate.add(context);
+        ensureSelectorOpenForEnqueuing(channelsToMigrate, context);
+        wakeup();
+    }
+
+    /**
+     * Sets the selectors that this selector may hand its channels over to when it is much busier than them. This
+     * selector is ignored if it is one of the targets. Must be called before the selector is started.
+     *
+     * @param targets the selectors that may take over channels
+     */
+    void setMigrationTargets(NioSelector[] targets) {
+        this.migrationTargets = targets;
+    }
+
+    /**
+     * Hands a channel over to another selector. The selection key is cancelled and the channel is registered with the
+     * target selector by its own thread. Writes and closes that other threads queue with this selector in the meantime
+     * are forwarded to the target. The target may see writes for the channel before the channel itself, as the channel
+     * is published to other threads before it is queued with the target, so it holds them back until the channel is
+     * registered. This can only be called from the current selector thread.
+     *
+     * @param context of the channel to migrate
+     * @param target  the selector that takes over the channel
+     */
+    void migrateChannel(SocketChannelContext context, NioSelector target) {
+        assertOnSelectorThread();
+        assert context.getSelector() == this : "Can only migrate channels registered with this selector";
+        context.getSelectionKey().cancel();
+        onChannelClosed();
+        context.migrateTo(target);
+        try {
+            target.scheduleForMigration(context);
+        } catch (IllegalStateException e) {
+            // the target is closed, which only happens when the whole group is closing, so close the channel here
+            context.migrateTo(this);
+            eventHandler.handleClose(context);
+        }
+    }
+
     /**
      * Queues a write operation directly in a channel's buffer. If this channel does not have pending writes
      * already, the channel will be flushed. Channel buffers are only safe to be accessed by the selector
@@ -330,9 +421,70 @@ public class NioSelector implements Closeable {
         }
     }
 
+    /**
+     * Returns a snapshot of the activity of this selector. This can be called by any thread.
+     */
+    public SelectorStats getStats() {
+        Thread thread = this.thread.get();
+        return new SelectorStats(thread == null ? null : thread.getName(), channelCount, queuedWriteCount.get(), busyTimeNanos, load,
+            bytesRead, bytesWritten, bytesPerSecond);
+    }
+
+    /**
+     * The fraction of the last measurement window that this selector spent handling events, between 0 and 1.
+     */
+    public double getLoad() {
+        return load;
+    }
+
+    /**
+     * The number of channels registered with this selector.
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    void onChannelRegistered() {
+        channelCount++;
+    }
+
+    void onChannelClosed() {
+        channelCount--;
+    }
+
+    void onBytesRead(int bytes) {
+        bytesRead += bytes;
+        windowBytes += bytes;
+    }
+
+    void onBytesWritten(int bytes) {
+        bytesWritten += bytes;
+        windowBytes += bytes;
+    }
+
+    /**
+     * Called right before the selector thread waits for events. Everything the thread did since the previous wait
+     * returned counts as busy time.
+     */
+    void onSelect(long now) {
+        long busyNanos = Math.max(0, now - lastSelectReturned);
+        busyTimeNanos += busyNanos;
+        windowBusyNanos += busyNanos;
+        long windowNanos = now - windowStart;
+        if (windowNanos >= LOAD_WINDOW_NANOS) {
+            load = Math.min(1.0d, (double) windowBusyNanos / windowNanos);
+            bytesPerSecond = (long) (windowBytes * ((double) TimeUnit.SECONDS.toNanos(1) / windowNanos));
+            windowStart = now;
+            windowBusyNanos = 0;
+            windowBytes = 0;
+            migrationDue = migrationTargets != null;
+        }
+    }
+
     private void cleanupPendingWrites() {
         WriteOperation op;
         while ((op = queuedWrites.poll()) != null) {
+            queuedWriteCount.decrementAndGet();
             executeFailedListener(op.getListener(), new ClosedSelectorException());
         }
     }
@@ -388,22 +540,90 @@ public class NioSelector implements Closeable {
         }
     }
 
+    private void setUpMigratedChannels() {
+        SocketChannelContext migratedChannel;
+        while ((migratedChannel = channelsToMigrate.poll()) != null) {
+            // a migrated channel might have been closed by this selector before it could be registered
+            if (migratedChannel.isOpen()) {
+                try {
+                    eventHandler.handleMigration(migratedChannel);
+                } catch (Exception e) {
+                    eventHandler.registrationException(migratedChannel, e);
+                }
+            }
+        }
+    }
+
+    private void migrateBusiestChannel() {
+        SocketChannelContext busiestChannel = null;
+        long busiestChannelBytes = 0;
+        for (SelectionKey selectionKey : selector.keys()) {
+            if (selectionKey.isValid() && selectionKey.attachment() instanceof SocketChannelContext) {
+                SocketChannelContext context = (SocketChannelContext) selectionKey.attachment();
+                long bytes = context.getAndResetWindowBytes();
+                if (bytes > busiestChannelBytes && context.isConnectComplete() && context.selectorShouldClose() == false) {
+                    busiestChannel = context;
+                    busiestChannelBytes = bytes;
+                }
+            }
+        }
+        // moving the only channel of a selector just moves the load along with it
+        if (busiestChannel == null || channelCount < 2 || load < MIN_MIGRATION_LOAD) {
+            return;
+        }
+        NioSelector target = null;
+        for (NioSelector candidate : migrationTargets) {
+            if (candidate != this && candidate.isOpen() && (target == null || LoadAwareSupplier.compare(candidate, target) < 0)) {
+                target = candidate;
+            }
+        }
+        if (target != null && load - target.getLoad() >= MIN_MIGRATION_LOAD_GAP) {
+            migrateChannel(busiestChannel, target);
+        }
+    }
+
     private void closePendingChannels() {
         ChannelContext<?> channelContext;
         while ((channelContext = channelsToClose.poll()) != null) {
-            eventHandler.handleClose(channelContext);
+            NioSelector channelSelector = channelContext.getSelector();
+            if (channelSelector != this) {
+                // the channel was migrated, if its new selector is already closed it closed the channel itself
+                try {
+                    channelSelector.queueChannelClose(channelContext.getChannel());
+                } catch (IllegalStateException e) {
+                    assert channelSelector.isOpen() == false : "Should only fail to queue the close with a closed selector";
+                }
+            } else {
+                eventHandler.handleClose(channelContext);
+            }
         }
     }
 
     private void handleQueuedWrites() {
+        List<WriteOperation> pendingMigrationWrites = null;
         WriteOperation writeOperation;
         while ((writeOperation = queuedWrites.poll()) != null) {
-            if (writeOperation.getChannel().isOpen()) {
-                writeToChannel(writeOperation);
-            } else {
+            queuedWriteCount.decrementAndGet();
+            NioSelector channelSelector = writeOperation.getChannel().getSelector();
+            if (channelSelector != this) {
+                // the channel was migrated after the write was queued with this selector
+                channelSelector.queueWrite(writeOperation);
+            } else if (writeOperation.getChannel().isOpen() == false) {
                 executeFailedListener(writeOperation.getListener(), new ClosedChannelException());
+            } else if (writeOperation.getChannel().isMigrating()) {
+                // the channel was handed over to this selector but is not queued for registration yet, queuing it wakes us up again
+                if (pendingMigrationWrites == null) {
+                    pendingMigrationWrites = new ArrayList<>();
+                }
+                pendingMigrationWrites.add(writeOperation);
+            } else {
+                writeToChannel(writeOperation);
             }
         }
+        if (pendingMigrationWrites != null) {
+            queuedWriteCount.addAndGet(pendingMigrationWrites.size());
+            queuedWrites.addAll(pendingMigrationWrites);
+        }
     }
 
     /**
@@ -23,7 +23,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
-final class RoundRobinSupplier<S> implements Supplier<S> {
+class RoundRobinSupplier<S> implements Supplier<S> {
 
     private final AtomicBoolean selectorsSet = new AtomicBoolean(false);
     private volatile S[] selectors;
@@ -55,4 +55,8 @@ final class RoundRobinSupplier<S> implements Supplier<S> {
     int count() {
         return selectors.length;
     }
+
+    S[] selectors() {
+        return selectors;
+    }
 }
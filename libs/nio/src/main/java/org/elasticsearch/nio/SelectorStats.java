@@ -0,0 +1,98 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.nio;
+
+/**
+ * A point in time snapshot of the activity of a {@link NioSelector}. The busy time and the transferred bytes are totals since the
+ * selector was started, while the load and the bytes per second are measured over the last completed measurement window.
+ */
+public final class SelectorStats {
+
+    private final String threadName;
+    private final int channels;
+    private final int queuedWrites;
+    private final long busyTimeNanos;
+    private final double load;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long bytesPerSecond;
+
+    public SelectorStats(String threadName, int channels, int queuedWrites, long busyTimeNanos, double load, long bytesRead,
+                         long bytesWritten, long bytesPerSecond) {
+        this.threadName = threadName;
+        this.channels = channels;
+        this.queuedWrites = queuedWrites;
+        this.busyTimeNanos = busyTimeNanos;
+        this.load = load;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * The name of the thread running the selector, or {@code null} if the selector was not started.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * The number of channels registered with the selector.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * The number of write operations that were queued by other threads and that the selector did not pick up yet.
+     */
+    public int getQueuedWrites() {
+        return queuedWrites;
+    }
+
+    /**
+     * The total time the selector spent handling events rather than waiting for them.
+     */
+    public long getBusyTimeNanos() {
+        return busyTimeNanos;
+    }
+
+    /**
+     * The fraction of the last measurement window that the selector spent handling events, between 0 and 1.
+     */
+    public double getLoad() {
+        return load;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * The number of bytes read and written per second over the last measurement window.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
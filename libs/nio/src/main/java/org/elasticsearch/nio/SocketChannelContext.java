@@ -51,11 +51,15 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
     protected final AtomicBoolean isClosing = new AtomicBoolean(false);
     private final ReadWriteHandler readWriteHandler;
     private final Predicate<NioSocketChannel> allowChannelPredicate;
-    private final NioSelector selector;
+    // only changes when the selector hands the channel over to another selector, see NioSelector#migrateChannel
+    private volatile NioSelector selector;
+    // set while the channel is handed over to another selector, until that selector registered it
+    private volatile boolean migrating;
     private final CompletableContext<Void> connectContext = new CompletableContext<>();
     private final LinkedList<FlushOperation> pendingFlushes = new LinkedList<>();
     private boolean closeNow;
     private Exception connectException;
+    private long windowBytes;
 
     protected SocketChannelContext(NioSocketChannel channel, NioSelector selector, Consumer<Exception> exceptionHandler,
                                    ReadWriteHandler readWriteHandler, InboundChannelBuffer channelBuffer,
@@ -135,7 +139,7 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
         WriteOperation writeOperation = readWriteHandler.createWriteOperation(this, message, listener);
 
         NioSelector selector = getSelector();
-        if (selector.isOnCurrentThread() == false) {
+        if (selector.isOnCurrentThread() == false || migrating) {
             selector.queueWrite(writeOperation);
             return;
         }
@@ -160,6 +164,8 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
     protected void currentFlushOperationComplete() {
         FlushOperation flushOperation = pendingFlushes.pollFirst();
         getSelector().executeListener(flushOperation.getListener(), null);
+        // Some protocols might produce messages to flush once a message was sent, like the next chunk of a chunked http response.
+        pendingFlushes.addAll(readWriteHandler.pollFlushOperations());
     }
 
     protected FlushOperation getPendingFlush() {
@@ -174,6 +180,44 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
         }
     }
 
+    /**
+     * Hands this channel over to another selector. Must only be called by the current selector thread once the selection
+     * key was cancelled, the new selector registers the channel again before handling any more of its events.
+     */
+    void migrateTo(NioSelector newSelector) {
+        setSelectionKey(null);
+        this.migrating = true;
+        this.selector = newSelector;
+    }
+
+    /**
+     * Returns whether this channel was handed over to its current selector but not registered with it yet. Writes for
+     * the channel must wait for the registration, see {@link NioSelector#migrateChannel}.
+     */
+    boolean isMigrating() {
+        return migrating;
+    }
+
+    /**
+     * Registers a migrated channel with its new selector. Unlike {@link #register()}, the channel is not checked against
+     * the predicate again as it was already accepted.
+     */
+    void registerAfterMigration() throws IOException {
+        getSelector().assertOnSelectorThread();
+        doSelectorRegister();
+        getSelector().onChannelRegistered();
+        migrating = false;
+    }
+
+    /**
+     * Returns the number of bytes read from and written to this channel since the last call.
+     */
+    long getAndResetWindowBytes() {
+        long bytes = windowBytes;
+        windowBytes = 0;
+        return bytes;
+    }
+
     @Override
     public void closeFromSelector() throws IOException {
         getSelector().assertOnSelectorThread();
@@ -241,6 +285,8 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
                 closeNow = true;
                 bytesRead = 0;
             }
+            selector.onBytesRead(bytesRead);
+            windowBytes += bytesRead;
             return bytesRead;
         } catch (IOException e) {
             closeNow = true;
@@ -255,6 +301,8 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
                 closeNow = true;
                 bytesRead = 0;
             }
+            selector.onBytesRead(bytesRead);
+            windowBytes += bytesRead;
             return bytesRead;
         } catch (IOException e) {
             closeNow = true;
@@ -264,7 +312,10 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
 
     protected int flushToChannel(ByteBuffer buffer) throws IOException {
         try {
-            return rawChannel.write(buffer);
+            int bytesWritten = rawChannel.write(buffer);
+            selector.onBytesWritten(bytesWritten);
+            windowBytes += bytesWritten;
+            return bytesWritten;
         } catch (IOException e) {
             closeNow = true;
             throw e;
@@ -273,7 +324,10 @@ public abstract class SocketChannelContext extends ChannelContext<SocketChannel>
 
     protected int flushToChannel(ByteBuffer[] buffers) throws IOException {
         try {
-            return (int) rawChannel.write(buffers);
+            int bytesWritten = (int) rawChannel.write(buffers);
+            selector.onBytesWritten(bytesWritten);
+            windowBytes += bytesWritten;
+            return bytesWritten;
         } catch (IOException e) {
             closeNow = true;
             throw e;
@@ -148,6 +148,23 @@ public class EventHandlerTests extends ESTestCase {
         assertEquals(SelectionKey.OP_READ | SelectionKey.OP_CONNECT | SelectionKey.OP_WRITE, context.getSelectionKey().interestOps());
     }
 
+    public void testMigrationAddsOP_READInterestAndAttachment() throws IOException {
+        SocketChannelContext context = mock(SocketChannelContext.class);
+        when(context.getSelectionKey()).thenReturn(new TestSelectionKey(0));
+        handler.handleMigration(context);
+        verify(context).registerAfterMigration();
+        assertEquals(SelectionKey.OP_READ, context.getSelectionKey().interestOps());
+        assertEquals(context, context.getSelectionKey().attachment());
+    }
+
+    public void testMigrationWithPendingWritesAddsOP_READAndOP_WRITEInterest() throws IOException {
+        SocketChannelContext context = mock(SocketChannelContext.class);
+        when(context.getSelectionKey()).thenReturn(new TestSelectionKey(0));
+        when(context.readyForFlush()).thenReturn(true);
+        handler.handleMigration(context);
+        assertEquals(SelectionKey.OP_READ | SelectionKey.OP_WRITE, context.getSelectionKey().interestOps());
+    }
+
     public void testRegistrationExceptionCallsExceptionHandler() throws IOException {
         CancelledKeyException exception = new CancelledKeyException();
         handler.registrationException(context, exception);
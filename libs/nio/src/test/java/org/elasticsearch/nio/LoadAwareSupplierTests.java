@@ -0,0 +1,74 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.nio;
+
+import org.elasticsearch.test.ESTestCase;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LoadAwareSupplierTests extends ESTestCase {
+
+    public void testPrefersLessLoadedSelector() {
+        NioSelector busy = selector(0.9d, 1);
+        NioSelector idle = selector(0.1d, 100);
+        LoadAwareSupplier supplier = new LoadAwareSupplier(randomBoolean() ? new NioSelector[] {busy, idle} :
+            new NioSelector[] {idle, busy});
+        for (int i = 0; i < 10; i++) {
+            assertSame(idle, supplier.get());
+        }
+    }
+
+    public void testPrefersFewerChannelsWhenLoadIsSimilar() {
+        NioSelector crowded = selector(0.10d, 100);
+        NioSelector empty = selector(0.12d, 2);
+        LoadAwareSupplier supplier = new LoadAwareSupplier(randomBoolean() ? new NioSelector[] {crowded, empty} :
+            new NioSelector[] {empty, crowded});
+        for (int i = 0; i < 10; i++) {
+            assertSame(empty, supplier.get());
+        }
+    }
+
+    public void testNeverPicksMostLoadedSelector() {
+        int count = randomIntBetween(3, 16);
+        NioSelector[] selectors = new NioSelector[count];
+        for (int i = 0; i < count; i++) {
+            selectors[i] = selector(i / (double) count, 0);
+        }
+        LoadAwareSupplier supplier = new LoadAwareSupplier(selectors);
+        for (int i = 0; i < count * 10; i++) {
+            assertNotSame(selectors[count - 1], supplier.get());
+        }
+    }
+
+    public void testSingleSelector() {
+        NioSelector selector = selector(randomDouble(), randomIntBetween(0, 10));
+        LoadAwareSupplier supplier = new LoadAwareSupplier();
+        supplier.setSelectors(new NioSelector[] {selector});
+        assertSame(selector, supplier.get());
+    }
+
+    private static NioSelector selector(double load, int channels) {
+        NioSelector selector = mock(NioSelector.class);
+        when(selector.getLoad()).thenReturn(load);
+        when(selector.getChannelCount()).thenReturn(channels);
+        return selector;
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.nio;
 
 import org.elasticsearch.test.ESTestCase;
 import org.junit.Before;
+import org.mockito.InOrder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -29,16 +30,23 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -259,6 +267,37 @@ public class NioSelectorTests extends ESTestCase {
         assertTrue((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0);
     }
 
+    public void testStatsTrackQueuedWrites() throws Exception {
+        selector.queueWrite(new FlushReadyWrite(channelContext, buffers, listener));
+        selector.queueWrite(new FlushReadyWrite(channelContext, buffers, listener));
+        assertEquals(2, selector.getStats().getQueuedWrites());
+
+        selector.preSelect();
+
+        assertEquals(0, selector.getStats().getQueuedWrites());
+    }
+
+    public void testStatsTrackLoadAndBytes() throws Exception {
+        selector.onChannelRegistered();
+        selector.onChannelRegistered();
+        selector.onChannelClosed();
+        selector.onBytesRead(1000);
+        selector.onBytesWritten(500);
+
+        // nothing but handling events happened since the selector was created, so it was busy during the whole window
+        selector.onSelect(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+
+        SelectorStats stats = selector.getStats();
+        assertEquals(Thread.currentThread().getName(), stats.getThreadName());
+        assertEquals(1, stats.getChannels());
+        assertEquals(1000, stats.getBytesRead());
+        assertEquals(500, stats.getBytesWritten());
+        assertThat(stats.getBusyTimeNanos(), greaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(1.0d, stats.getLoad(), 0.0d);
+        assertThat(stats.getBytesPerSecond(), greaterThan(0L));
+        assertThat(stats.getBytesPerSecond(), lessThanOrEqualTo(750L));
+    }
+
     public void testQueueDirectlyInChannelBufferSuccessful() throws Exception {
         WriteOperation writeOperation = new FlushReadyWrite(channelContext, buffers, listener);
 
@@ -400,6 +439,7 @@ public class NioSelectorTests extends ESTestCase {
         NioSocketChannel unregisteredChannel = mock(NioSocketChannel.class);
         SocketChannelContext unregisteredContext = mock(SocketChannelContext.class);
         when(unregisteredChannel.getContext()).thenReturn(unregisteredContext);
+        when(unregisteredContext.getSelector()).thenReturn(selector);
 
         selector.scheduleForRegistration(channel);
 
@@ -419,6 +459,145 @@ public class NioSelectorTests extends ESTestCase {
         verify(eventHandler).handleClose(unregisteredContext);
     }
 
+    public void testMigrateChannel() throws Exception {
+        EventHandler targetEventHandler = mock(EventHandler.class);
+        NioSelector target = new NioSelector(targetEventHandler, mock(Selector.class));
+        target.setThread();
+        SelectionKey key = mock(SelectionKey.class);
+        when(channelContext.getSelectionKey()).thenReturn(key);
+        when(channelContext.getSelector()).thenReturn(selector, target);
+        selector.onChannelRegistered();
+        selector.onChannelRegistered();
+
+        selector.migrateChannel(channelContext, target);
+
+        verify(key).cancel();
+        verify(channelContext).migrateTo(target);
+        assertEquals(1, selector.getChannelCount());
+
+        target.preSelect();
+
+        verify(targetEventHandler).handleMigration(channelContext);
+    }
+
+    public void testMigrationToClosedSelectorClosesChannel() throws Exception {
+        NioSelector target = new NioSelector(mock(EventHandler.class), mock(Selector.class));
+        target.close();
+        when(channelContext.getSelectionKey()).thenReturn(mock(SelectionKey.class));
+        when(channelContext.getSelector()).thenReturn(selector, target);
+
+        selector.migrateChannel(channelContext, target);
+
+        verify(channelContext).migrateTo(target);
+        verify(channelContext).migrateTo(selector);
+        verify(eventHandler).handleClose(channelContext);
+    }
+
+    public void testMigratedChannelIsRegisteredBeforeQueuedWrites() throws Exception {
+        WriteOperation writeOperation = new FlushReadyWrite(channelContext, buffers, listener);
+        selector.scheduleForMigration(channelContext);
+        selector.queueWrite(writeOperation);
+
+        selector.preSelect();
+
+        InOrder inOrder = inOrder(eventHandler, channelContext);
+        inOrder.verify(eventHandler).handleMigration(channelContext);
+        inOrder.verify(channelContext).queueWriteOperation(writeOperation);
+    }
+
+    public void testWriteQueuedBeforeMigratedChannelIsHeldBack() throws Exception {
+        // another thread saw the channel handed over to this selector and queued a write before the channel was queued here
+        WriteOperation writeOperation = new FlushReadyWrite(channelContext, buffers, listener);
+        when(channelContext.isMigrating()).thenReturn(true);
+        selector.queueWrite(writeOperation);
+
+        selector.preSelect();
+
+        verify(channelContext, never()).queueWriteOperation(any());
+        verify(listener, never()).accept(any(), any());
+        assertEquals(1, selector.getStats().getQueuedWrites());
+
+        selector.scheduleForMigration(channelContext);
+        when(channelContext.isMigrating()).thenReturn(false);
+        selector.preSelect();
+
+        InOrder inOrder = inOrder(eventHandler, channelContext);
+        inOrder.verify(eventHandler).handleMigration(channelContext);
+        inOrder.verify(channelContext).queueWriteOperation(writeOperation);
+        assertEquals(0, selector.getStats().getQueuedWrites());
+    }
+
+    public void testQueuedWriteIsForwardedAfterMigration() throws Exception {
+        NioSelector target = new NioSelector(mock(EventHandler.class), mock(Selector.class));
+        selector.queueWrite(new FlushReadyWrite(channelContext, buffers, listener));
+        when(channelContext.getSelector()).thenReturn(target);
+
+        selector.preSelect();
+
+        verify(channelContext, never()).queueWriteOperation(any());
+        assertEquals(0, selector.getStats().getQueuedWrites());
+        assertEquals(1, target.getStats().getQueuedWrites());
+    }
+
+    public void testCloseIsForwardedAfterMigration() throws Exception {
+        EventHandler targetEventHandler = mock(EventHandler.class);
+        NioSelector target = new NioSelector(targetEventHandler, mock(Selector.class));
+        target.setThread();
+        when(channelContext.getChannel()).thenReturn(channel);
+        when(channelContext.getSelector()).thenReturn(selector, target);
+
+        selector.queueChannelClose(channel);
+        selector.singleLoop();
+
+        verify(eventHandler, never()).handleClose(channelContext);
+
+        target.singleLoop();
+
+        verify(targetEventHandler).handleClose(channelContext);
+    }
+
+    public void testBusySelectorMigratesBusiestChannel() throws Exception {
+        NioSelector target = new NioSelector(mock(EventHandler.class), mock(Selector.class));
+        selector.setMigrationTargets(new NioSelector[] {selector, target});
+        SocketChannelContext quietContext = mock(SocketChannelContext.class);
+        when(quietContext.isConnectComplete()).thenReturn(true);
+        when(quietContext.getAndResetWindowBytes()).thenReturn(10L);
+        when(channelContext.getAndResetWindowBytes()).thenReturn(1000L);
+        when(channelContext.getSelectionKey()).thenReturn(mock(SelectionKey.class));
+        when(channelContext.getSelector()).thenReturn(selector, target);
+        TestSelectionKey quietKey = new TestSelectionKey(0);
+        quietKey.attach(quietContext);
+        TestSelectionKey busyKey = new TestSelectionKey(0);
+        busyKey.attach(channelContext);
+        when(rawSelector.keys()).thenReturn(new HashSet<>(Arrays.asList(quietKey, busyKey)));
+        selector.onChannelRegistered();
+        selector.onChannelRegistered();
+
+        // the selector was busy during the whole window while the target did nothing
+        selector.onSelect(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+        selector.preSelect();
+
+        verify(channelContext).migrateTo(target);
+        verify(quietContext, never()).migrateTo(any());
+        assertEquals(1, selector.getChannelCount());
+    }
+
+    public void testSelectorWithSingleChannelDoesNotMigrate() throws Exception {
+        NioSelector target = new NioSelector(mock(EventHandler.class), mock(Selector.class));
+        selector.setMigrationTargets(new NioSelector[] {selector, target});
+        when(channelContext.getAndResetWindowBytes()).thenReturn(1000L);
+        TestSelectionKey busyKey = new TestSelectionKey(0);
+        busyKey.attach(channelContext);
+        when(rawSelector.keys()).thenReturn(new HashSet<>(Collections.singletonList(busyKey)));
+        selector.onChannelRegistered();
+
+        selector.onSelect(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+        selector.preSelect();
+
+        verify(channelContext, never()).migrateTo(any());
+        assertEquals(1, selector.getChannelCount());
+    }
+
     public void testExecuteListenerWillHandleException() throws Exception {
         RuntimeException exception = new RuntimeException();
         doThrow(exception).when(listener).accept(null, null);
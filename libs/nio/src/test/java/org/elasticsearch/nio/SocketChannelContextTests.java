@@ -41,6 +41,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -193,6 +194,18 @@ public class SocketChannelContextTests extends ESTestCase {
         assertSame(writeOperation, writeOp);
     }
 
+    public void testSendMessageToMigratingChannelIsQueuedWithSelector() {
+        context.migrateTo(selector);
+
+        ByteBuffer[] buffers = {ByteBuffer.wrap(createMessage(10))};
+        WriteOperation writeOperation = mock(WriteOperation.class);
+        when(readWriteHandler.createWriteOperation(context, buffers, listener)).thenReturn(writeOperation);
+        context.sendMessage(buffers, listener);
+
+        verify(selector).queueWrite(writeOperation);
+        verify(selector, never()).writeToChannel(any());
+    }
+
     public void testWriteIsQueuedInChannel() {
         assertFalse(context.readyForFlush());
 
@@ -212,6 +225,19 @@ public class SocketChannelContextTests extends ESTestCase {
         assertTrue(context.readyForFlush());
     }
 
+    public void testCompletedFlushWillCheckForNewFlushOperations() {
+        ByteBuffer[] buffer = {ByteBuffer.allocate(10)};
+        FlushReadyWrite writeOperation = new FlushReadyWrite(context, buffer, listener);
+        when(readWriteHandler.writeToBytes(writeOperation)).thenReturn(Collections.singletonList(writeOperation));
+        context.queueWriteOperation(writeOperation);
+        assertTrue(context.readyForFlush());
+
+        when(readWriteHandler.pollFlushOperations()).thenReturn(Collections.singletonList(mock(FlushOperation.class)));
+        context.currentFlushOperationComplete();
+        verify(selector).executeListener(listener, null);
+        assertTrue(context.readyForFlush());
+    }
+
     @SuppressWarnings({"unchecked", "varargs"})
     public void testFlushOpsClearedOnClose() throws Exception {
         try (SocketChannel realChannel = SocketChannel.open()) {
@@ -115,7 +115,8 @@ public final class ParentIdFieldMapper extends FieldMapper {
         @Override
         public IndexFieldData.Builder fielddataBuilder(String fullyQualifiedIndexName) {
             failIfNoDocValues();
-            return new DocValuesIndexFieldData.Builder();
+            // has_child queries need a Lucene ordinal map of the global ordinals of this field
+            return new DocValuesIndexFieldData.Builder().ordinalMapRequired(true);
         }
 
         @Override
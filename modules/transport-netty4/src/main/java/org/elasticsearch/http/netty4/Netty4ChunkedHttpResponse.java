@@ -0,0 +1,70 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import org.elasticsearch.http.HttpPipelinedMessage;
+import org.elasticsearch.http.HttpResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * A response whose body is sent with chunked transfer encoding. The {@link Netty4HttpPipeliningHandler} writes the headers of the
+ * response and then encodes and writes the chunks of the body as the channel becomes writable.
+ */
+public class Netty4ChunkedHttpResponse extends DefaultHttpResponse implements HttpResponse, HttpPipelinedMessage {
+
+    private final int sequence;
+    private final Netty4HttpRequest request;
+    private final ChunkedRestResponseBody body;
+
+    Netty4ChunkedHttpResponse(Netty4HttpRequest request, RestStatus status, ChunkedRestResponseBody body) {
+        super(request.nettyRequest().protocolVersion(), HttpResponseStatus.valueOf(status.getStatus()));
+        HttpUtil.setTransferEncodingChunked(this, true);
+        this.sequence = request.sequence();
+        this.request = request;
+        this.body = body;
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers().add(name, value);
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers().contains(name);
+    }
+
+    @Override
+    public int getSequence() {
+        return sequence;
+    }
+
+    public Netty4HttpRequest getRequest() {
+        return request;
+    }
+
+    public ChunkedRestResponseBody getBody() {
+        return body;
+    }
+}
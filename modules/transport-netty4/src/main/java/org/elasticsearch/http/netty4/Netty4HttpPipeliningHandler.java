@@ -22,22 +22,42 @@ package org.elasticsearch.http.netty4;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.http.HttpPipelinedMessage;
 import org.elasticsearch.http.HttpPipelinedRequest;
 import org.elasticsearch.http.HttpPipeliningAggregator;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
+import org.elasticsearch.transport.netty4.Netty4Utils;
 
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Implements HTTP pipelining ordering, ensuring that responses are completely served in the same order as their corresponding requests.
+ * <p>
+ * The chunks of a {@link Netty4ChunkedHttpResponse} are encoded and written while the channel is writable. Once the channel becomes
+ * unwritable, the remaining chunks are encoded when it becomes writable again so that slow clients do not make the node buffer whole
+ * responses. The responses that are ready to be written in the meantime wait for the last chunk of the response.
  */
 public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
 
+    private static final int CHUNK_SIZE_HINT = PageCacheRecycler.BYTE_PAGE_SIZE;
+
     private final Logger logger;
-    private final HttpPipeliningAggregator<Netty4HttpResponse, ChannelPromise> aggregator;
+    private final BigArrays bigArrays;
+    private final HttpPipeliningAggregator<HttpPipelinedMessage, ChannelPromise> aggregator;
+    private final ArrayDeque<Tuple<HttpPipelinedMessage, ChannelPromise>> readyResponses = new ArrayDeque<>();
+    // the chunked response that is being written, if any
+    private Tuple<Netty4ChunkedHttpResponse, ChannelPromise> currentChunkedResponse;
 
     /**
      * Construct a new pipelining handler; this handler should be used downstream of HTTP decoding/aggregation.
@@ -47,7 +67,20 @@ public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
      *                      required as events cannot queue up indefinitely
      */
     public Netty4HttpPipeliningHandler(Logger logger, final int maxEventsHeld) {
+        this(logger, maxEventsHeld, BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    /**
+     * Construct a new pipelining handler; this handler should be used downstream of HTTP decoding/aggregation.
+     *
+     * @param logger        for logging unexpected errors
+     * @param maxEventsHeld the maximum number of channel events that will be retained prior to aborting the channel connection; this is
+     *                      required as events cannot queue up indefinitely
+     * @param bigArrays     to allocate the pages that the chunks of chunked responses are encoded to
+     */
+    public Netty4HttpPipeliningHandler(Logger logger, final int maxEventsHeld, BigArrays bigArrays) {
         this.logger = logger;
+        this.bigArrays = bigArrays;
         this.aggregator = new HttpPipeliningAggregator<>(maxEventsHeld);
     }
 
@@ -60,14 +93,12 @@ public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
 
     @Override
     public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
-        assert msg instanceof Netty4HttpResponse : "Invalid message type: " + msg.getClass();
-        Netty4HttpResponse response = (Netty4HttpResponse) msg;
+        assert msg instanceof Netty4HttpResponse || msg instanceof Netty4ChunkedHttpResponse : "Invalid message type: " + msg.getClass();
+        HttpPipelinedMessage response = (HttpPipelinedMessage) msg;
         boolean success = false;
         try {
-            List<Tuple<Netty4HttpResponse, ChannelPromise>> readyResponses = aggregator.write(response, promise);
-            for (Tuple<Netty4HttpResponse, ChannelPromise> readyResponse : readyResponses) {
-                ctx.write(readyResponse.v1(), readyResponse.v2());
-            }
+            readyResponses.addAll(aggregator.write(response, promise));
+            writeReadyResponses(ctx);
             success = true;
         } catch (IllegalStateException e) {
             ctx.channel().close();
@@ -79,19 +110,80 @@ public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
     }
 
     @Override
-    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
-        List<Tuple<Netty4HttpResponse, ChannelPromise>> inflightResponses = aggregator.removeAllInflightResponses();
-
-        if (inflightResponses.isEmpty() == false) {
-            ClosedChannelException closedChannelException = new ClosedChannelException();
-            for (Tuple<Netty4HttpResponse, ChannelPromise> inflightResponse : inflightResponses) {
-                try {
-                    inflightResponse.v2().setFailure(closedChannelException);
-                } catch (RuntimeException e) {
-                    logger.error("unexpected error while releasing pipelined http responses", e);
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (currentChunkedResponse != null && ctx.channel().isWritable()) {
+            writeChunks(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // the rest of a chunked response will never be written, release it
+        failPendingResponses(new ClosedChannelException());
+        super.channelInactive(ctx);
+    }
+
+    private void writeReadyResponses(ChannelHandlerContext ctx) {
+        Tuple<HttpPipelinedMessage, ChannelPromise> readyResponse;
+        while (currentChunkedResponse == null && (readyResponse = readyResponses.poll()) != null) {
+            if (readyResponse.v1() instanceof Netty4ChunkedHttpResponse) {
+                Netty4ChunkedHttpResponse response = (Netty4ChunkedHttpResponse) readyResponse.v1();
+                currentChunkedResponse = new Tuple<>(response, readyResponse.v2());
+                // writes the headers of the response
+                ctx.write(response);
+                writeChunks(ctx);
+            } else {
+                ctx.write(readyResponse.v1(), readyResponse.v2());
+            }
+        }
+    }
+
+    private void writeChunks(ChannelHandlerContext ctx) {
+        final ChunkedRestResponseBody body = currentChunkedResponse.v1().getBody();
+        final ChannelPromise promise = currentChunkedResponse.v2();
+        try {
+            while (ctx.channel().isWritable()) {
+                if (body.isDone()) {
+                    currentChunkedResponse = null;
+                    ctx.write(LastHttpContent.EMPTY_LAST_CONTENT, promise);
+                    writeReadyResponses(ctx);
+                    break;
                 }
+                final ReleasableBytesReference chunk = body.encodeChunk(CHUNK_SIZE_HINT, bigArrays);
+                ctx.write(new DefaultHttpContent(Netty4Utils.toByteBuf(chunk))).addListener(f -> chunk.close());
+            }
+        } catch (Exception e) {
+            // the status and headers of the response are already written, all we can do is to close the channel
+            logger.warn("failed to encode a chunk of an http response", e);
+            currentChunkedResponse = null;
+            promise.tryFailure(e);
+            ctx.channel().close();
+        }
+        ctx.flush();
+    }
+
+    private void failPendingResponses(ClosedChannelException closedChannelException) {
+        List<Tuple<HttpPipelinedMessage, ChannelPromise>> inflightResponses = new ArrayList<>(aggregator.removeAllInflightResponses());
+        inflightResponses.addAll(readyResponses);
+        readyResponses.clear();
+        if (currentChunkedResponse != null) {
+            inflightResponses.add(new Tuple<>(currentChunkedResponse.v1(), currentChunkedResponse.v2()));
+            currentChunkedResponse = null;
+        }
+
+        for (Tuple<HttpPipelinedMessage, ChannelPromise> inflightResponse : inflightResponses) {
+            try {
+                inflightResponse.v2().tryFailure(closedChannelException);
+            } catch (RuntimeException e) {
+                logger.error("unexpected error while releasing pipelined http responses", e);
             }
         }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        failPendingResponses(new ClosedChannelException());
         ctx.close(promise);
     }
 }
@@ -31,6 +31,7 @@ import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.http.HttpRequest;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.transport.netty4.Netty4Utils;
@@ -155,6 +156,11 @@ public class Netty4HttpRequest implements HttpRequest {
         return new Netty4HttpResponse(this, status, content);
     }
 
+    @Override
+    public Netty4ChunkedHttpResponse createChunkedResponse(RestStatus status, ChunkedRestResponseBody body) {
+        return new Netty4ChunkedHttpResponse(this, status, body);
+    }
+
     public FullHttpRequest nettyRequest() {
         return request;
     }
@@ -31,6 +31,7 @@ import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.http.HttpHandlingSettings;
+import org.elasticsearch.http.HttpPipelinedMessage;
 import org.elasticsearch.http.HttpPipelinedRequest;
 import org.elasticsearch.http.nio.cors.NioCorsConfig;
 import org.elasticsearch.http.nio.cors.NioCorsHandler;
@@ -70,7 +71,7 @@ public class HttpReadWriteHandler implements ReadWriteHandler {
         if (settings.isCorsEnabled()) {
             handlers.add(new NioCorsHandler(corsConfig));
         }
-        handlers.add(new NioHttpPipeliningHandler(transport.getLogger(), settings.getPipeliningMaxEvents()));
+        handlers.add(new NioHttpPipeliningHandler(transport.getLogger(), settings.getPipeliningMaxEvents(), transport.getBigArrays()));
 
         adaptor = new NettyAdaptor(handlers.toArray(new ChannelHandler[0]));
         adaptor.addCloseListener((v, e) -> nioHttpChannel.close());
@@ -89,9 +90,10 @@ public class HttpReadWriteHandler implements ReadWriteHandler {
 
     @Override
     public WriteOperation createWriteOperation(SocketChannelContext context, Object message, BiConsumer<Void, Exception> listener) {
-        assert message instanceof NioHttpResponse : "This channel only supports messages that are of type: "
-            + NioHttpResponse.class + ". Found type: " + message.getClass() + ".";
-        return new HttpWriteOperation(context, (NioHttpResponse) message, listener);
+        assert message instanceof NioHttpResponse || message instanceof NioChunkedHttpResponse
+            : "This channel only supports messages that are of type: " + NioHttpResponse.class + " or " + NioChunkedHttpResponse.class
+            + ". Found type: " + message.getClass() + ".";
+        return new HttpWriteOperation(context, (HttpPipelinedMessage) message, listener);
     }
 
     @Override
@@ -22,22 +22,41 @@ package org.elasticsearch.http.nio;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.http.HttpPipelinedMessage;
 import org.elasticsearch.http.HttpPipelinedRequest;
 import org.elasticsearch.http.HttpPipeliningAggregator;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Implements HTTP pipelining ordering, ensuring that responses are completely served in the same order as their corresponding requests.
+ * <p>
+ * The chunks of a {@link NioChunkedHttpResponse} are encoded one at a time: the next chunk is only encoded once the previous one has
+ * been written to the socket, so that slow clients do not make the node buffer whole responses. The responses that are ready to be
+ * written in the meantime wait for the last chunk of the response.
  */
 public class NioHttpPipeliningHandler extends ChannelDuplexHandler {
 
+    private static final int CHUNK_SIZE_HINT = PageCacheRecycler.BYTE_PAGE_SIZE;
+
     private final Logger logger;
-    private final HttpPipeliningAggregator<NioHttpResponse, NettyListener> aggregator;
+    private final BigArrays bigArrays;
+    private final HttpPipeliningAggregator<HttpPipelinedMessage, NettyListener> aggregator;
+    private final ArrayDeque<Tuple<HttpPipelinedMessage, NettyListener>> readyResponses = new ArrayDeque<>();
+    // the chunked response that is being written, if any
+    private Tuple<NioChunkedHttpResponse, NettyListener> currentChunkedResponse;
 
     /**
      * Construct a new pipelining handler; this handler should be used downstream of HTTP decoding/aggregation.
@@ -47,7 +66,20 @@ public class NioHttpPipeliningHandler extends ChannelDuplexHandler {
      *                      required as events cannot queue up indefinitely
      */
     public NioHttpPipeliningHandler(Logger logger, final int maxEventsHeld) {
+        this(logger, maxEventsHeld, BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    /**
+     * Construct a new pipelining handler; this handler should be used downstream of HTTP decoding/aggregation.
+     *
+     * @param logger        for logging unexpected errors
+     * @param maxEventsHeld the maximum number of channel events that will be retained prior to aborting the channel connection; this is
+     *                      required as events cannot queue up indefinitely
+     * @param bigArrays     to allocate the pages that the chunks of chunked responses are encoded to
+     */
+    public NioHttpPipeliningHandler(Logger logger, final int maxEventsHeld, BigArrays bigArrays) {
         this.logger = logger;
+        this.bigArrays = bigArrays;
         this.aggregator = new HttpPipeliningAggregator<>(maxEventsHeld);
     }
 
@@ -60,16 +92,14 @@ public class NioHttpPipeliningHandler extends ChannelDuplexHandler {
 
     @Override
     public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
-        assert msg instanceof NioHttpResponse : "Invalid message type: " + msg.getClass();
-        NioHttpResponse response = (NioHttpResponse) msg;
+        assert msg instanceof NioHttpResponse || msg instanceof NioChunkedHttpResponse : "Invalid message type: " + msg.getClass();
+        HttpPipelinedMessage response = (HttpPipelinedMessage) msg;
         boolean success = false;
         try {
             NettyListener listener = NettyListener.fromChannelPromise(promise);
-            List<Tuple<NioHttpResponse, NettyListener>> readyResponses = aggregator.write(response, listener);
+            readyResponses.addAll(aggregator.write(response, listener));
             success = true;
-            for (Tuple<NioHttpResponse, NettyListener> responseToWrite : readyResponses) {
-                ctx.write(responseToWrite.v1(), responseToWrite.v2());
-            }
+            writeReadyResponses(ctx);
         } catch (IllegalStateException e) {
             ctx.channel().close();
         } finally {
@@ -79,13 +109,63 @@ public class NioHttpPipeliningHandler extends ChannelDuplexHandler {
         }
     }
 
+    private void writeReadyResponses(ChannelHandlerContext ctx) {
+        Tuple<HttpPipelinedMessage, NettyListener> readyResponse;
+        while (currentChunkedResponse == null && (readyResponse = readyResponses.poll()) != null) {
+            if (readyResponse.v1() instanceof NioChunkedHttpResponse) {
+                NioChunkedHttpResponse response = (NioChunkedHttpResponse) readyResponse.v1();
+                currentChunkedResponse = new Tuple<>(response, readyResponse.v2());
+                // writes the headers of the response, they are flushed with the first chunk
+                ctx.write(response);
+                writeNextChunk(ctx);
+            } else {
+                ctx.write(readyResponse.v1(), readyResponse.v2());
+            }
+        }
+    }
+
+    private void writeNextChunk(ChannelHandlerContext ctx) {
+        final ChunkedRestResponseBody body = currentChunkedResponse.v1().getBody();
+        final NettyListener listener = currentChunkedResponse.v2();
+        try {
+            if (body.isDone()) {
+                currentChunkedResponse = null;
+                ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT, listener);
+                writeReadyResponses(ctx);
+            } else {
+                final ReleasableBytesReference chunk = body.encodeChunk(CHUNK_SIZE_HINT, bigArrays);
+                final ChannelPromise chunkPromise = ctx.newPromise();
+                chunkPromise.addListener(f -> {
+                    chunk.close();
+                    // the pending responses are failed if the channel is closed
+                    if (f.isSuccess() && currentChunkedResponse != null && currentChunkedResponse.v2() == listener) {
+                        writeNextChunk(ctx);
+                    }
+                });
+                ctx.writeAndFlush(new DefaultHttpContent(ByteBufUtils.toByteBuf(chunk)), chunkPromise);
+            }
+        } catch (Exception e) {
+            // the status and headers of the response are already written, all we can do is to close the channel
+            logger.warn("failed to encode a chunk of an http response", e);
+            currentChunkedResponse = null;
+            listener.tryFailure(e);
+            ctx.channel().close();
+        }
+    }
+
     @Override
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
-        List<Tuple<NioHttpResponse, NettyListener>> inflightResponses = aggregator.removeAllInflightResponses();
+        List<Tuple<HttpPipelinedMessage, NettyListener>> inflightResponses = new ArrayList<>(aggregator.removeAllInflightResponses());
+        inflightResponses.addAll(readyResponses);
+        readyResponses.clear();
+        if (currentChunkedResponse != null) {
+            inflightResponses.add(new Tuple<>(currentChunkedResponse.v1(), currentChunkedResponse.v2()));
+            currentChunkedResponse = null;
+        }
 
         if (inflightResponses.isEmpty() == false) {
             ClosedChannelException closedChannelException = new ClosedChannelException();
-            for (Tuple<NioHttpResponse, NettyListener> inflightResponse : inflightResponses) {
+            for (Tuple<HttpPipelinedMessage, NettyListener> inflightResponse : inflightResponses) {
                 try {
                     inflightResponse.v2().setFailure(closedChannelException);
                 } catch (RuntimeException e) {
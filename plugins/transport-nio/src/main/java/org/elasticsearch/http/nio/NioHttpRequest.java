@@ -31,6 +31,7 @@ import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.http.HttpRequest;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
 
@@ -155,6 +156,11 @@ public class NioHttpRequest implements HttpRequest {
         return new NioHttpResponse(this, status, content);
     }
 
+    @Override
+    public NioChunkedHttpResponse createChunkedResponse(RestStatus status, ChunkedRestResponseBody body) {
+        return new NioChunkedHttpResponse(this, status, body);
+    }
+
     public FullHttpRequest nettyRequest() {
         return request;
     }
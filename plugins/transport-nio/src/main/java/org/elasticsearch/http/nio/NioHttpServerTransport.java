@@ -23,6 +23,7 @@ import io.netty.handler.codec.http.HttpMethod;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.network.EventLoopStats;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.recycler.Recycler;
 import org.elasticsearch.common.settings.Setting;
@@ -56,10 +57,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
+import static org.elasticsearch.common.settings.Setting.boolSetting;
 import static org.elasticsearch.common.settings.Setting.intSetting;
 import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_CORS_ALLOW_CREDENTIALS;
@@ -87,6 +92,8 @@ public class NioHttpServerTransport extends AbstractHttpServerTransport {
         new Setting<>("http.nio.worker_count",
             (s) -> Integer.toString(EsExecutors.numberOfProcessors(s) * 2),
             (s) -> Setting.parseInt(s, 1, "http.nio.worker_count"), Setting.Property.NodeScope);
+    public static final Setting<Boolean> NIO_HTTP_LOAD_AWARE_ASSIGNMENT =
+        boolSetting("http.nio.load_aware_assignment", false, Setting.Property.NodeScope);
 
     protected final PageCacheRecycler pageCacheRecycler;
     protected final NioCorsConfig corsConfig;
@@ -97,7 +104,7 @@ public class NioHttpServerTransport extends AbstractHttpServerTransport {
     protected final int tcpSendBufferSize;
     protected final int tcpReceiveBufferSize;
 
-    private NioGroup nioGroup;
+    private volatile NioGroup nioGroup;
     private ChannelFactory<NioHttpServerChannel, NioHttpChannel> channelFactory;
 
     public NioHttpServerTransport(Settings settings, NetworkService networkService, BigArrays bigArrays,
@@ -128,6 +135,10 @@ public class NioHttpServerTransport extends AbstractHttpServerTransport {
         return logger;
     }
 
+    public BigArrays getBigArrays() {
+        return bigArrays;
+    }
+
     @Override
     protected void doStart() {
         boolean success = false;
@@ -136,7 +147,7 @@ public class NioHttpServerTransport extends AbstractHttpServerTransport {
             int workerCount = NIO_HTTP_WORKER_COUNT.get(settings);
             nioGroup = new NioGroup(daemonThreadFactory(this.settings, HTTP_SERVER_ACCEPTOR_THREAD_NAME_PREFIX), acceptorCount,
                 daemonThreadFactory(this.settings, HTTP_SERVER_WORKER_THREAD_NAME_PREFIX), workerCount,
-                (s) -> new EventHandler(this::onNonChannelException, s));
+                (s) -> new EventHandler(this::onNonChannelException, s), NIO_HTTP_LOAD_AWARE_ASSIGNMENT.get(settings));
             channelFactory = channelFactory();
             bindServer();
             success = true;
@@ -158,6 +169,18 @@ public class NioHttpServerTransport extends AbstractHttpServerTransport {
         }
     }
 
+    @Override
+    protected List<EventLoopStats> getEventLoopStats() {
+        NioGroup nioGroup = this.nioGroup;
+        if (nioGroup == null) {
+            return Collections.emptyList();
+        }
+        return nioGroup.getSelectorStats().stream()
+            .map(s -> new EventLoopStats(s.getThreadName(), s.getChannels(), s.getQueuedWrites(), s.getBusyTimeNanos(), s.getLoad(),
+                s.getBytesRead(), s.getBytesWritten(), s.getBytesPerSecond()))
+            .collect(Collectors.toList());
+    }
+
     @Override
     protected HttpServerChannel bind(InetSocketAddress socketAddress) throws IOException {
         return nioGroup.bindServerChannel(socketAddress, channelFactory);
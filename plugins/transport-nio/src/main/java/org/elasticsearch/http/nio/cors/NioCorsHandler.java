@@ -25,6 +25,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
@@ -32,6 +33,7 @@ import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.http.nio.NioChunkedHttpResponse;
 import org.elasticsearch.http.nio.NioHttpResponse;
 
 import java.util.regex.Pattern;
@@ -90,10 +92,17 @@ public class NioCorsHandler extends ChannelDuplexHandler {
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        assert msg instanceof NioHttpResponse : "Invalid message type: " + msg.getClass();
-        NioHttpResponse response = (NioHttpResponse) msg;
-        setCorsResponseHeaders(response.getRequest().nettyRequest(), response, config);
-        ctx.write(response, promise);
+        if (msg instanceof NioHttpResponse) {
+            NioHttpResponse response = (NioHttpResponse) msg;
+            setCorsResponseHeaders(response.getRequest().nettyRequest(), response, config);
+        } else if (msg instanceof NioChunkedHttpResponse) {
+            NioChunkedHttpResponse response = (NioChunkedHttpResponse) msg;
+            setCorsResponseHeaders(response.getRequest().nettyRequest(), response, config);
+        } else {
+            // the chunks of a chunked response
+            assert msg instanceof HttpContent : "Invalid message type: " + msg.getClass();
+        }
+        ctx.write(msg, promise);
     }
 
     public static void setCorsResponseHeaders(HttpRequest request, HttpResponse resp, NioCorsConfig config) {
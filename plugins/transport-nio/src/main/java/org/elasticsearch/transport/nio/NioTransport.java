@@ -23,6 +23,7 @@ import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.network.EventLoopStats;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.recycler.Recycler;
 import org.elasticsearch.common.settings.Setting;
@@ -47,9 +48,12 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
 import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
@@ -60,6 +64,8 @@ public class NioTransport extends TcpTransport {
         new Setting<>("transport.nio.worker_count",
             (s) -> Integer.toString(EsExecutors.numberOfProcessors(s) * 2),
             (s) -> Setting.parseInt(s, 1, "transport.nio.worker_count"), Setting.Property.NodeScope);
+    public static final Setting<Boolean> NIO_LOAD_AWARE_ASSIGNMENT =
+        Setting.boolSetting("transport.nio.load_aware_assignment", false, Setting.Property.NodeScope);
 
     protected final PageCacheRecycler pageCacheRecycler;
     private final ConcurrentMap<String, TcpChannelFactory> profileToChannelFactory = newConcurrentMap();
@@ -90,8 +96,9 @@ public class NioTransport extends TcpTransport {
     protected void doStart() {
         boolean success = false;
         try {
-            nioGroup = new NioGroup(daemonThreadFactory(this.settings, TcpTransport.TRANSPORT_WORKER_THREAD_NAME_PREFIX),
-                NioTransport.NIO_WORKER_COUNT.get(settings), (s) -> new EventHandler(this::onNonChannelException, s));
+            nioGroup = new NioGroup(null, 0, daemonThreadFactory(this.settings, TcpTransport.TRANSPORT_WORKER_THREAD_NAME_PREFIX),
+                NioTransport.NIO_WORKER_COUNT.get(settings), (s) -> new EventHandler(this::onNonChannelException, s),
+                NioTransport.NIO_LOAD_AWARE_ASSIGNMENT.get(settings));
 
             ProfileSettings clientProfileSettings = new ProfileSettings(settings, "default");
             clientChannelFactory = channelFactory(clientProfileSettings, true);
@@ -127,6 +134,18 @@ public class NioTransport extends TcpTransport {
         profileToChannelFactory.clear();
     }
 
+    @Override
+    protected List<EventLoopStats> getEventLoopStats() {
+        NioGroup nioGroup = this.nioGroup;
+        if (nioGroup == null) {
+            return Collections.emptyList();
+        }
+        return nioGroup.getSelectorStats().stream()
+            .map(s -> new EventLoopStats(s.getThreadName(), s.getChannels(), s.getQueuedWrites(), s.getBusyTimeNanos(), s.getLoad(),
+                s.getBytesRead(), s.getBytesWritten(), s.getBytesPerSecond()))
+            .collect(Collectors.toList());
+    }
+
     protected void acceptChannel(NioSocketChannel channel) {
         serverAcceptedChannel((NioTcpChannel) channel);
     }
@@ -51,7 +51,9 @@ public class NioTransportPlugin extends Plugin implements NetworkPlugin {
         return Arrays.asList(
             NioHttpServerTransport.NIO_HTTP_ACCEPTOR_COUNT,
             NioHttpServerTransport.NIO_HTTP_WORKER_COUNT,
-            NioTransport.NIO_WORKER_COUNT
+            NioHttpServerTransport.NIO_HTTP_LOAD_AWARE_ASSIGNMENT,
+            NioTransport.NIO_WORKER_COUNT,
+            NioTransport.NIO_LOAD_AWARE_ASSIGNMENT
         );
     }
 
@@ -16,15 +16,16 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.elasticsearch.transport.nio;
 
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.nio.BytesWriteHandler;
 import org.elasticsearch.nio.InboundChannelBuffer;
 import org.elasticsearch.transport.TcpTransport;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class TcpReadWriteHandler extends BytesWriteHandler {
 
@@ -38,7 +39,21 @@ public class TcpReadWriteHandler extends BytesWriteHandler {
 
     @Override
     public int consumeReads(InboundChannelBuffer channelBuffer) throws IOException {
-        BytesReference bytesReference = BytesReference.fromByteBuffers(channelBuffer.sliceBuffersTo(channelBuffer.getIndex()));
-        return transport.consumeNetworkReads(channel, bytesReference);
+        // the pages are retained so that requests can keep slices of them instead of copying their payloads, they go back to the
+        // recycler once the channel buffer and all such requests have released them
+        final InboundChannelBuffer.Page[] pages = channelBuffer.sliceAndRetainPagesTo(channelBuffer.getIndex());
+        final ByteBuffer[] buffers = new ByteBuffer[pages.length];
+        long pinnedBytes = 0;
+        for (int i = 0; i < pages.length; i++) {
+            buffers[i] = pages[i].getByteBuffer();
+            pinnedBytes += buffers[i].capacity();
+        }
+        try (ReleasableBytesReference bytesReference = new ReleasableBytesReference(BytesReference.fromByteBuffers(buffers), () -> {
+            for (InboundChannelBuffer.Page page : pages) {
+                page.close();
+            }
+        }, pinnedBytes)) {
+            return transport.consumeNetworkReads(channel, bytesReference);
+        }
     }
 }
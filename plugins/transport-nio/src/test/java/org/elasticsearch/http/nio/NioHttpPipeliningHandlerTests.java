@@ -27,6 +27,7 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.LastHttpContent;
@@ -34,7 +35,10 @@ import io.netty.handler.codec.http.QueryStringDecoder;
 import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.http.HttpPipelinedRequest;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.test.ESTestCase;
 import org.junit.After;
@@ -42,6 +46,7 @@ import org.junit.After;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -51,11 +56,15 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 
 public class NioHttpPipeliningHandlerTests extends ESTestCase {
@@ -207,6 +216,64 @@ public class NioHttpPipeliningHandlerTests extends ESTestCase {
         }
     }
 
+    public void testChunkedResponsesAreWrittenInOrder() {
+        final EmbeddedChannel embeddedChannel = new EmbeddedChannel(new NioHttpPipeliningHandler(logger, 10,
+            BigArrays.NON_RECYCLING_INSTANCE));
+        embeddedChannel.writeInbound(createHttpRequest("/0"));
+        embeddedChannel.writeInbound(createHttpRequest("/1"));
+        final HttpPipelinedRequest<FullHttpRequest> first = embeddedChannel.readInbound();
+        final HttpPipelinedRequest<FullHttpRequest> second = embeddedChannel.readInbound();
+
+        // each chunk is encoded once the previous one is written
+        final int numChunks = randomIntBetween(0, 200);
+        final AtomicInteger releasedChunks = new AtomicInteger();
+        final ChunkedRestResponseBody body = new ChunkedRestResponseBody() {
+            private int chunk = 0;
+
+            @Override
+            public boolean isDone() {
+                return chunk == numChunks;
+            }
+
+            @Override
+            public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) {
+                final byte[] bytes = new byte[1024];
+                Arrays.fill(bytes, (byte) chunk++);
+                return new ReleasableBytesReference(new BytesArray(bytes), releasedChunks::incrementAndGet);
+            }
+
+            @Override
+            public String getResponseContentTypeString() {
+                return "application/octet-stream";
+            }
+        };
+
+        // the second response is held until the last chunk of the first one is written
+        final ChannelPromise secondPromise = embeddedChannel.newPromise();
+        final BytesReference content = new BytesArray("1".getBytes(StandardCharsets.UTF_8));
+        embeddedChannel.write(new NioHttpRequest(second.getRequest(), second.getSequence()).createResponse(RestStatus.OK, content),
+            secondPromise);
+        assertFalse(secondPromise.isDone());
+        final ChannelPromise firstPromise = embeddedChannel.newPromise();
+        embeddedChannel.writeAndFlush(new NioHttpRequest(first.getRequest(), first.getSequence())
+            .createChunkedResponse(RestStatus.OK, body), firstPromise);
+        embeddedChannel.flush();
+
+        assertTrue(firstPromise.isSuccess());
+        assertTrue(secondPromise.isSuccess());
+        assertThat(releasedChunks.get(), is(numChunks));
+        assertThat(embeddedChannel.readOutbound(), instanceOf(NioChunkedHttpResponse.class));
+        for (int i = 0; i < numChunks; i++) {
+            final HttpContent chunk = embeddedChannel.readOutbound();
+            assertThat(chunk, not(instanceOf(LastHttpContent.class)));
+            assertThat(chunk.content().readableBytes(), is(1024));
+            assertThat(chunk.content().getByte(0), is((byte) i));
+        }
+        assertThat(embeddedChannel.readOutbound(), sameInstance(LastHttpContent.EMPTY_LAST_CONTENT));
+        assertReadHttpMessageHasContent(embeddedChannel, "1");
+        assertTrue(embeddedChannel.isOpen());
+    }
+
     private void assertReadHttpMessageHasContent(EmbeddedChannel embeddedChannel, String expectedContent) {
         FullHttpResponse response = (FullHttpResponse) embeddedChannel.outboundMessages().poll();
         assertNotNull("Expected response to exist, maybe you did not wait long enough?", response);
@@ -24,6 +24,7 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.network.NetworkModule;
@@ -110,10 +111,11 @@ public class NioTransportIT extends NioIntegTestCase {
 
         @Override
         protected String handleRequest(TcpChannel channel, String profileName,
-                                       StreamInput stream, long requestId, int messageLengthBytes, Version version,
-                                       InetSocketAddress remoteAddress, byte status) throws IOException {
-            String action = super.handleRequest(channel, profileName, stream, requestId, messageLengthBytes, version,
-                    remoteAddress, status);
+                                       StreamInput stream, ReleasableBytesReference releasableRequest, long requestId,
+                                       int messageLengthBytes, Version version, InetSocketAddress remoteAddress,
+                                       byte status) throws IOException {
+            String action = super.handleRequest(channel, profileName, stream, releasableRequest, requestId, messageLengthBytes,
+                    version, remoteAddress, status);
             channelProfileName = TcpTransport.DEFAULT_PROFILE;
             return action;
         }
@@ -22,14 +22,19 @@ package org.elasticsearch.action.bulk;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.replication.ReplicationResponse;
 import org.elasticsearch.action.support.replication.TransportWriteAction;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.translog.Translog;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * This is a utility class that holds the per request state needed to perform bulk operations on the primary.
@@ -167,6 +172,35 @@ class BulkPrimaryExecutionContext {
     }
 
 
+    /**
+     * returns the index requests, starting with the current one, that index documents with auto-generated ids for the first time and
+     * can therefore be executed as one batch. Stops at the first item that isn't such a request.
+     */
+    public List<IndexRequest> getAppendOnlyRequestsAhead() {
+        assert assertInvariants(ItemProcessingState.INITIAL);
+        final List<IndexRequest> requests = new ArrayList<>();
+        for (int i = currentIndex; i < request.items().length; i = findNextNonAborted(i + 1)) {
+            final BulkItemRequest item = request.items()[i];
+            if (item.getPrimaryResponse() != null || isAppendOnly(item.request()) == false) {
+                break;
+            }
+            requests.add((IndexRequest) item.request());
+        }
+        return requests;
+    }
+
+    private static boolean isAppendOnly(DocWriteRequest<?> request) {
+        if (request instanceof IndexRequest) {
+            final IndexRequest indexRequest = (IndexRequest) request;
+            return indexRequest.opType() == DocWriteRequest.OpType.INDEX
+                && indexRequest.getAutoGeneratedTimestamp() != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP
+                && indexRequest.isRetry() == false
+                && indexRequest.version() == Versions.MATCH_ANY
+                && indexRequest.versionType() == VersionType.INTERNAL;
+        }
+        return false;
+    }
+
     /** returns the name of the index the current request used */
     public String getConcreteIndex() {
         return getCurrentItem().index();
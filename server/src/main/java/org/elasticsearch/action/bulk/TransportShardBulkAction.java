@@ -70,6 +70,8 @@ import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -103,6 +105,11 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         return BulkAction.INSTANCE.transportOptions(settings);
     }
 
+    @Override
+    protected boolean supportsReplicaBatching() {
+        return true;
+    }
+
     @Override
     protected BulkShardResponse newResponseInstance() {
         return new BulkShardResponse();
@@ -158,13 +165,46 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         MappingUpdatePerformer mappingUpdater, CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
 
         while (context.hasMoreOperationsToExecute()) {
-            executeBulkItemRequest(context, updateHelper, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+            if (executeAppendOnlyRequestsOnPrimary(context) == false) {
+                executeBulkItemRequest(context, updateHelper, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+            }
             assert context.isInitial(); // either completed and moved to next or reset
         }
         return new WritePrimaryResult<>(context.getBulkShardRequest(), context.buildShardResponse(), context.getLocationToSync(),
             null, context.getPrimary(), logger);
     }
 
+    /**
+     * Executes the current item and the items that follow it as a single batch on the primary, as long as they index documents with
+     * auto-generated ids for the first time. Such documents can be appended to the shard without looking up existing documents.
+     * Execution stops before the first document that requires a mapping update, which is left to {@link #executeBulkItemRequest}.
+     *
+     * @return whether any item was executed
+     */
+    static boolean executeAppendOnlyRequestsOnPrimary(BulkPrimaryExecutionContext context) throws IOException {
+        final List<IndexRequest> requests = context.getAppendOnlyRequestsAhead();
+        if (requests.size() < 2) {
+            return false;
+        }
+        final List<SourceToParse> sourcesToParse = new ArrayList<>(requests.size());
+        final long[] autoGeneratedTimestamps = new long[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            final IndexRequest request = requests.get(i);
+            sourcesToParse.add(SourceToParse.source(request.index(), request.type(), request.id(), request.source(),
+                request.getContentType()).routing(request.routing()));
+            autoGeneratedTimestamps[i] = request.getAutoGeneratedTimestamp();
+        }
+        final List<Engine.IndexResult> results =
+            context.getPrimary().applyAppendOnlyIndexOperationsOnPrimary(sourcesToParse, autoGeneratedTimestamps);
+        for (int i = 0; i < results.size(); i++) {
+            assert context.getCurrent() == requests.get(i) : "expected [" + requests.get(i) + "] but was [" + context.getCurrent() + "]";
+            context.setRequestToExecute(context.getCurrent());
+            context.markOperationAsExecuted(results.get(i));
+            finalizePrimaryOperationOnCompletion(context, DocWriteRequest.OpType.INDEX, null);
+        }
+        return results.isEmpty() == false;
+    }
+
     /** Executes bulk item requests and handles request execution exceptions */
     static void executeBulkItemRequest(BulkPrimaryExecutionContext context, UpdateHelper updateHelper, LongSupplier nowInMillisSupplier,
                                        MappingUpdatePerformer mappingUpdater, CheckedRunnable<Exception> waitForMappingUpdate)
@@ -33,6 +33,7 @@ import org.elasticsearch.index.get.GetResult;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
@@ -48,9 +49,10 @@ public class TransportGetAction extends TransportSingleShardAction<GetRequest, G
     @Inject
     public TransportGetAction(ClusterService clusterService, TransportService transportService,
                               IndicesService indicesService, ThreadPool threadPool, ActionFilters actionFilters,
-                              IndexNameExpressionResolver indexNameExpressionResolver) {
+                              IndexNameExpressionResolver indexNameExpressionResolver,
+                              ResponseCollectorService responseCollectorService) {
         super(GetAction.NAME, threadPool, clusterService, transportService, actionFilters, indexNameExpressionResolver,
-                GetRequest::new, ThreadPool.Names.GET);
+                GetRequest::new, ThreadPool.Names.GET, responseCollectorService);
         this.indicesService = indicesService;
     }
 
@@ -63,7 +65,7 @@ public class TransportGetAction extends TransportSingleShardAction<GetRequest, G
     protected ShardIterator shards(ClusterState state, InternalRequest request) {
         return clusterService.operationRouting()
                 .getShards(clusterService.state(), request.concreteIndex(), request.request().id(), request.request().routing(),
-                    request.request().preference());
+                    request.request().preference(), responseCollectorService);
     }
 
     @Override
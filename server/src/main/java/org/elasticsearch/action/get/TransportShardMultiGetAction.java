@@ -33,6 +33,7 @@ import org.elasticsearch.index.get.GetResult;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
@@ -45,9 +46,10 @@ public class TransportShardMultiGetAction extends TransportSingleShardAction<Mul
     @Inject
     public TransportShardMultiGetAction(ClusterService clusterService, TransportService transportService,
                                         IndicesService indicesService, ThreadPool threadPool, ActionFilters actionFilters,
-                                        IndexNameExpressionResolver indexNameExpressionResolver) {
+                                        IndexNameExpressionResolver indexNameExpressionResolver,
+                                        ResponseCollectorService responseCollectorService) {
         super(ACTION_NAME, threadPool, clusterService, transportService, actionFilters, indexNameExpressionResolver,
-                MultiGetShardRequest::new, ThreadPool.Names.GET);
+                MultiGetShardRequest::new, ThreadPool.Names.GET, responseCollectorService);
         this.indicesService = indicesService;
     }
 
@@ -69,7 +71,8 @@ public class TransportShardMultiGetAction extends TransportSingleShardAction<Mul
     @Override
     protected ShardIterator shards(ClusterState state, InternalRequest request) {
         return clusterService.operationRouting()
-                .getShards(state, request.request().index(), request.request().shardId(), request.request().preference());
+                .getShards(state, request.request().index(), request.request().shardId(), request.request().preference(),
+                    responseCollectorService);
     }
 
     @Override
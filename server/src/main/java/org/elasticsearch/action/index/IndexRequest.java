@@ -521,7 +521,8 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
             in.readOptionalString(); // timestamp
             in.readOptionalTimeValue(); // ttl
         }
-        source = in.readBytesReference();
+        // the source may stay backed by the network buffers of the transport request, which are retained until it is responded to
+        source = in.readReleasableBytesReference();
         opType = OpType.fromId(in.readByte());
         version = in.readLong();
         versionType = VersionType.fromValue(in.readByte());
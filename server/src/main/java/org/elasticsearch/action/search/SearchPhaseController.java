@@ -66,6 +66,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -73,14 +74,15 @@ public final class SearchPhaseController {
 
     private static final ScoreDoc[] EMPTY_DOCS = new ScoreDoc[0];
 
-    private final Function<Boolean, ReduceContext> reduceContextFunction;
+    private final Supplier<Function<Boolean, ReduceContext>> reduceContextFunctionSupplier;
 
     /**
      * Constructor.
-     * @param reduceContextFunction A function that builds a context for the reduce of an {@link InternalAggregation}
+     * @param reduceContextFunctionSupplier Supplies, once per search request, a function that builds a context for each reduce of an
+     *                                      {@link InternalAggregation} of the request
      */
-    public SearchPhaseController(Function<Boolean, ReduceContext> reduceContextFunction) {
-        this.reduceContextFunction = reduceContextFunction;
+    public SearchPhaseController(Supplier<Function<Boolean, ReduceContext>> reduceContextFunctionSupplier) {
+        this.reduceContextFunctionSupplier = reduceContextFunctionSupplier;
     }
 
     public AggregatedDfs aggregateDfs(Collection<DfsSearchResult> results) {
@@ -417,7 +419,8 @@ public final class SearchPhaseController {
      * @param queryResults a list of non-null query shard results
      */
     public ReducedQueryPhase reducedQueryPhase(Collection<? extends SearchPhaseResult> queryResults, boolean isScrollRequest, boolean trackTotalHits) {
-        return reducedQueryPhase(queryResults, null, new ArrayList<>(), new TopDocsStats(trackTotalHits), 0, isScrollRequest);
+        return reducedQueryPhase(queryResults, null, new ArrayList<>(), new TopDocsStats(trackTotalHits), 0, isScrollRequest,
+            reduceContextFunctionSupplier.get());
     }
 
 
@@ -429,12 +432,14 @@ public final class SearchPhaseController {
      * @param bufferedTopDocs a list of pre-collected / buffered top docs. if this list is non-null all top docs have been consumed
      *                    from all non-null query results.
      * @param numReducePhases the number of non-final reduce phases applied to the query results.
+     * @param reduceContextFunction builds the context of the final reduce, the same function built those of the non-final ones
      * @see QuerySearchResult#consumeAggs()
      * @see QuerySearchResult#consumeProfileResult()
      */
     private ReducedQueryPhase reducedQueryPhase(Collection<? extends SearchPhaseResult> queryResults,
                                                 List<InternalAggregations> bufferedAggs, List<TopDocs> bufferedTopDocs,
-                                                TopDocsStats topDocsStats, int numReducePhases, boolean isScrollRequest) {
+                                                TopDocsStats topDocsStats, int numReducePhases, boolean isScrollRequest,
+                                                Function<Boolean, ReduceContext> reduceContextFunction) {
         assert numReducePhases >= 0 : "num reduce phases must be >= 0 but was: " + numReducePhases;
         numReducePhases++; // increment for this phase
         boolean timedOut = false;
@@ -515,7 +520,8 @@ public final class SearchPhaseController {
      * Performs an intermediate reduce phase on the aggregations. For instance with this reduce phase never prune information
      * that relevant for the final reduce step. For final reduce see {@link #reduceAggs(List, List, ReduceContext)}
      */
-    private InternalAggregations reduceAggsIncrementally(List<InternalAggregations> aggregationsList) {
+    private InternalAggregations reduceAggsIncrementally(List<InternalAggregations> aggregationsList,
+                                                         Function<Boolean, ReduceContext> reduceContextFunction) {
         ReduceContext reduceContext = reduceContextFunction.apply(false);
         return aggregationsList.isEmpty() ? null : reduceAggs(aggregationsList,
             null, reduceContext);
@@ -623,18 +629,20 @@ public final class SearchPhaseController {
         private final int bufferSize;
         private int index;
         private final SearchPhaseController controller;
+        private final Function<Boolean, ReduceContext> reduceContextFunction;
         private int numReducePhases = 0;
         private final TopDocsStats topDocsStats = new TopDocsStats();
 
         /**
          * Creates a new {@link QueryPhaseResultConsumer}
          * @param controller a controller instance to reduce the query response objects
+         * @param reduceContextFunction builds the contexts of all the reduce phases of the request
          * @param expectedResultSize the expected number of query results. Corresponds to the number of shards queried
          * @param bufferSize the size of the reduce buffer. if the buffer size is smaller than the number of expected results
          *                   the buffer is used to incrementally reduce aggregation results before all shards responded.
          */
-        private QueryPhaseResultConsumer(SearchPhaseController controller, int expectedResultSize, int bufferSize,
-                                         boolean hasTopDocs, boolean hasAggs) {
+        private QueryPhaseResultConsumer(SearchPhaseController controller, Function<Boolean, ReduceContext> reduceContextFunction,
+                                         int expectedResultSize, int bufferSize, boolean hasTopDocs, boolean hasAggs) {
             super(expectedResultSize);
             if (expectedResultSize != 1 && bufferSize < 2) {
                 throw new IllegalArgumentException("buffer size must be >= 2 if there is more than one expected result");
@@ -646,6 +654,7 @@ public final class SearchPhaseController {
                 throw new IllegalArgumentException("either aggs or top docs must be present");
             }
             this.controller = controller;
+            this.reduceContextFunction = reduceContextFunction;
             // no need to buffer anything if we have less expected results. in this case we don't consume any results ahead of time.
             this.aggsBuffer = new InternalAggregations[hasAggs ? bufferSize : 0];
             this.topDocsBuffer = new TopDocs[hasTopDocs ? bufferSize : 0];
@@ -665,7 +674,7 @@ public final class SearchPhaseController {
         private synchronized void consumeInternal(QuerySearchResult querySearchResult) {
             if (index == bufferSize) {
                 if (hasAggs) {
-                    InternalAggregations reducedAggs = controller.reduceAggsIncrementally(Arrays.asList(aggsBuffer));
+                    InternalAggregations reducedAggs = controller.reduceAggsIncrementally(Arrays.asList(aggsBuffer), reduceContextFunction);
                     Arrays.fill(aggsBuffer, null);
                     aggsBuffer[0] = reducedAggs;
                 }
@@ -703,7 +712,7 @@ public final class SearchPhaseController {
         @Override
         public ReducedQueryPhase reduce() {
             return controller.reducedQueryPhase(results.asList(), getRemainingAggs(), getRemainingTopDocs(), topDocsStats,
-                numReducePhases, false);
+                numReducePhases, false, reduceContextFunction);
         }
 
         /**
@@ -730,7 +739,8 @@ public final class SearchPhaseController {
             // no incremental reduce if scroll is used - we only hit a single shard or sometimes more...
             if (request.getBatchedReduceSize() < numShards) {
                 // only use this if there are aggs and if there are more shards than we should reduce at once
-                return new QueryPhaseResultConsumer(this, numShards, request.getBatchedReduceSize(), hasTopDocs, hasAggs);
+                return new QueryPhaseResultConsumer(this, reduceContextFunctionSupplier.get(), numShards, request.getBatchedReduceSize(),
+                    hasTopDocs, hasAggs);
             }
         }
         return new InitialSearchPhase.ArraySearchPhaseResults(numShards) {
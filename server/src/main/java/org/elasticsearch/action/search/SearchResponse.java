@@ -28,6 +28,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ChunkedToXContent;
 import org.elasticsearch.common.xcontent.StatusToXContentObject;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -44,6 +45,7 @@ import org.elasticsearch.search.suggest.Suggest;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,7 +57,7 @@ import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpect
 /**
  * A response of a search request.
  */
-public class SearchResponse extends ActionResponse implements StatusToXContentObject {
+public class SearchResponse extends ActionResponse implements StatusToXContentObject, ChunkedToXContent {
 
     private static final ParseField SCROLL_ID = new ParseField("_scroll_id");
     private static final ParseField TOOK = new ParseField("took");
@@ -224,6 +226,24 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
     }
 
     public XContentBuilder innerToXContent(XContentBuilder builder, Params params) throws IOException {
+        headerToXContent(builder, params);
+        internalResponse.toXContent(builder, params);
+        return builder;
+    }
+
+    /**
+     * Renders the hits of the response one by one, so that large responses can be sent to the client while they are being rendered.
+     */
+    @Override
+    public Iterator<ToXContent> toXContentChunked() {
+        final List<ToXContent> chunks = new ArrayList<>();
+        chunks.add((builder, params) -> headerToXContent(builder.startObject(), params));
+        chunks.addAll(internalResponse.toXContentChunks());
+        chunks.add((builder, params) -> builder.endObject());
+        return chunks.iterator();
+    }
+
+    private XContentBuilder headerToXContent(XContentBuilder builder, Params params) throws IOException {
         if (scrollId != null) {
             builder.field(SCROLL_ID.getPreferredName(), scrollId);
         }
@@ -238,7 +258,6 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         RestActions.buildBroadcastShardsHeader(builder, params, getTotalShards(), getSuccessfulShards(), getSkippedShards(),
             getFailedShards(), getShardFailures());
         clusters.toXContent(builder, params);
-        internalResponse.toXContent(builder, params);
         return builder;
     }
 
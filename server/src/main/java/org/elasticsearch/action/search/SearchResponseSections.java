@@ -20,6 +20,7 @@
 package org.elasticsearch.action.search;
 
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.SearchHits;
@@ -30,6 +31,7 @@ import org.elasticsearch.search.suggest.Suggest;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -104,6 +106,20 @@ public class SearchResponseSections implements ToXContentFragment {
     @Override
     public final XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         hits.toXContent(builder, params);
+        return sectionsToXContent(builder, params);
+    }
+
+    /**
+     * Returns the fragments of the x-content of these sections, one per hit followed by the other sections, so that they can be sent
+     * to the client in chunks.
+     */
+    public final List<ToXContent> toXContentChunks() {
+        final List<ToXContent> chunks = hits.toXContentChunks();
+        chunks.add(this::sectionsToXContent);
+        return chunks;
+    }
+
+    private XContentBuilder sectionsToXContent(XContentBuilder builder, Params params) throws IOException {
         if (aggregations != null) {
             aggregations.toXContent(builder, params);
         }
@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.support.replication;
+
+import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ConcreteReplicaRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Several replica requests for the same shard copy that are sent to its node in a single message, see {@link ReplicaRequestBatcher}.
+ * The batch is an {@link IndicesRequest} over the indices of its requests so that it is authorized like the requests it holds.
+ */
+final class BatchedReplicaRequest<R extends ReplicationRequest<R>> extends TransportRequest implements IndicesRequest {
+
+    private final Supplier<R> requestSupplier;
+    private List<ConcreteReplicaRequest<R>> requests;
+
+    BatchedReplicaRequest(Supplier<R> requestSupplier) {
+        this.requestSupplier = requestSupplier;
+        this.requests = Collections.emptyList();
+    }
+
+    BatchedReplicaRequest(List<ConcreteReplicaRequest<R>> requests) {
+        this.requestSupplier = null;
+        this.requests = requests;
+    }
+
+    List<ConcreteReplicaRequest<R>> requests() {
+        return requests;
+    }
+
+    @Override
+    public String[] indices() {
+        final Set<String> indices = new LinkedHashSet<>();
+        for (ConcreteReplicaRequest<R> request : requests) {
+            Collections.addAll(indices, request.getRequest().indices());
+        }
+        return indices.toArray(new String[indices.size()]);
+    }
+
+    @Override
+    public IndicesOptions indicesOptions() {
+        return IndicesOptions.strictSingleIndexNoExpandForbidClosed();
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        final int size = in.readVInt();
+        requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final ConcreteReplicaRequest<R> request = new ConcreteReplicaRequest<>(requestSupplier);
+            request.readFrom(in);
+            requests.add(request);
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(requests.size());
+        for (ConcreteReplicaRequest<R> request : requests) {
+            request.writeTo(out);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "batch of [" + requests.size() + "] replica requests";
+    }
+
+    @Override
+    public String toString() {
+        return "BatchedReplicaRequest{requests=" + requests + '}';
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.support.replication;
+
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ReplicaResponse;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportResponse;
+
+import java.io.IOException;
+
+/**
+ * The outcome of each of the requests of a {@link BatchedReplicaRequest}, in the order of the requests: either the response of the
+ * replica or the failure of the request.
+ */
+final class BatchedReplicaResponse extends TransportResponse {
+
+    private ReplicaResponse[] responses;
+    private Exception[] failures;
+
+    BatchedReplicaResponse() {
+    }
+
+    BatchedReplicaResponse(ReplicaResponse[] responses, Exception[] failures) {
+        assert responses.length == failures.length;
+        this.responses = responses;
+        this.failures = failures;
+    }
+
+    int size() {
+        return responses.length;
+    }
+
+    @Nullable
+    ReplicaResponse getResponse(int index) {
+        return responses[index];
+    }
+
+    @Nullable
+    Exception getFailure(int index) {
+        return failures[index];
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        final int size = in.readVInt();
+        responses = new ReplicaResponse[size];
+        failures = new Exception[size];
+        for (int i = 0; i < size; i++) {
+            if (in.readBoolean()) {
+                responses[i] = new ReplicaResponse();
+                responses[i].readFrom(in);
+            } else {
+                failures[i] = in.readException();
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(responses.length);
+        for (int i = 0; i < responses.length; i++) {
+            if (failures[i] == null) {
+                out.writeBoolean(true);
+                responses[i].writeTo(out);
+            } else {
+                out.writeBoolean(false);
+                out.writeException(failures[i]);
+            }
+        }
+    }
+}
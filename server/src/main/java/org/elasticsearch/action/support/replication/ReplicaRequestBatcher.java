@@ -0,0 +1,239 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.support.replication;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.action.support.ContextPreservingActionListener;
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ConcreteReplicaRequest;
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ReplicaResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.RemoteTransportException;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the replica requests of a {@link TransportWriteAction} that target the same shard copy into a single
+ * {@link BatchedReplicaRequest}. The first request for a shard copy opens a batch that is sent once the batch window elapsed or
+ * once it holds the maximum number of requests, whichever comes first. The replica then handles all the requests of the batch
+ * from a single message and syncs its translog once for all of them.
+ * <p>
+ * Each request is acknowledged individually: the listener of every request is notified with the response of the replica for
+ * that request, or with its failure, exactly like when requests are sent one by one. A batch that holds a single request when
+ * it is sent is sent as a regular replica request.
+ * <p>
+ * Only the requests that were added with the same request headers, which carry the identity of the user on the wire, and the same
+ * system context flag are batched together, and the batch is sent in the thread context of its first request. The replica thus
+ * sees the same headers for a batched request as for a request that is sent on its own.
+ */
+final class ReplicaRequestBatcher<R extends ReplicatedWriteRequest<R>> {
+
+    private final TransportService transportService;
+    private final ThreadPool threadPool;
+    private final String replicaAction;
+    private final String batchAction;
+    private final TransportRequestOptions transportOptions;
+    private final TimeValue window;
+    private final int maxRequests;
+
+    private final Map<BatchKey, Batch> pendingBatches = new HashMap<>();
+
+    ReplicaRequestBatcher(TransportService transportService, ThreadPool threadPool, String replicaAction, String batchAction,
+                          TransportRequestOptions transportOptions, TimeValue window, int maxRequests) {
+        assert window.nanos() > 0 : "batching replica requests requires a positive window but was " + window;
+        this.transportService = transportService;
+        this.threadPool = threadPool;
+        this.replicaAction = replicaAction;
+        this.batchAction = batchAction;
+        this.transportOptions = transportOptions;
+        this.window = window;
+        this.maxRequests = maxRequests;
+    }
+
+    void add(DiscoveryNode node, ConcreteReplicaRequest<R> request, ActionListener<ReplicationOperation.ReplicaResponse> listener) {
+        final ThreadContext threadContext = threadPool.getThreadContext();
+        final Supplier<ThreadContext.StoredContext> context = threadContext.newRestorableContext(false);
+        final PendingRequest<R> pendingRequest = new PendingRequest<>(request, context,
+            new ContextPreservingActionListener<>(context, listener));
+        final BatchKey key = new BatchKey(node.getId(), request.getTargetAllocationID(), threadContext.getHeaders(),
+            threadContext.isSystemContext());
+        final Batch newBatch;
+        final Batch fullBatch;
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(key, node);
+                pendingBatches.put(key, batch);
+                newBatch = batch;
+            } else {
+                newBatch = null;
+            }
+            batch.requests.add(pendingRequest);
+            if (batch.requests.size() >= maxRequests) {
+                pendingBatches.remove(key);
+                fullBatch = batch;
+            } else {
+                fullBatch = null;
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        } else if (newBatch != null) {
+            threadPool.schedule(window, ThreadPool.Names.GENERIC, () -> flush(newBatch));
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (pendingBatches) {
+            if (pendingBatches.get(batch.key) != batch) {
+                // the batch was sent because it was full
+                return;
+            }
+            pendingBatches.remove(batch.key);
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        final List<PendingRequest<R>> requests = batch.requests;
+        if (requests.size() == 1) {
+            final PendingRequest<R> request = requests.get(0);
+            // a single request is sent in the context it was added in, like when batching is disabled
+            try (ThreadContext.StoredContext ignore = request.context.get()) {
+                transportService.sendRequest(batch.node, replicaAction, request.request, transportOptions,
+                    new ActionListenerResponseHandler<>(request.listener, in -> {
+                        final ReplicaResponse replicaResponse = new ReplicaResponse();
+                        replicaResponse.readFrom(in);
+                        return replicaResponse;
+                    }));
+            }
+            return;
+        }
+
+        final List<ConcreteReplicaRequest<R>> concreteRequests = new ArrayList<>(requests.size());
+        for (PendingRequest<R> request : requests) {
+            concreteRequests.add(request.request);
+        }
+        final ActionListener<BatchedReplicaResponse> batchListener = new ActionListener<BatchedReplicaResponse>() {
+            @Override
+            public void onResponse(BatchedReplicaResponse response) {
+                assert response.size() == requests.size() :
+                    "expected [" + requests.size() + "] responses but got [" + response.size() + "]";
+                for (int i = 0; i < requests.size(); i++) {
+                    final Exception failure = response.getFailure(i);
+                    if (failure == null) {
+                        requests.get(i).listener.onResponse(response.getResponse(i));
+                    } else {
+                        requests.get(i).listener.onFailure(
+                            new RemoteTransportException(batch.node.getName(), batch.node.getAddress(), replicaAction, failure));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                for (PendingRequest<R> request : requests) {
+                    request.listener.onFailure(e);
+                }
+            }
+        };
+        // all the requests of a batch were added with the same headers, see BatchKey
+        try (ThreadContext.StoredContext ignore = requests.get(0).context.get()) {
+            transportService.sendRequest(batch.node, batchAction, new BatchedReplicaRequest<>(concreteRequests), transportOptions,
+                new ActionListenerResponseHandler<>(batchListener, in -> {
+                    final BatchedReplicaResponse batchedResponse = new BatchedReplicaResponse();
+                    batchedResponse.readFrom(in);
+                    return batchedResponse;
+                }));
+        }
+    }
+
+    private static final class PendingRequest<R extends ReplicatedWriteRequest<R>> {
+        final ConcreteReplicaRequest<R> request;
+        final Supplier<ThreadContext.StoredContext> context;
+        final ActionListener<ReplicationOperation.ReplicaResponse> listener;
+
+        PendingRequest(ConcreteReplicaRequest<R> request, Supplier<ThreadContext.StoredContext> context,
+                       ActionListener<ReplicationOperation.ReplicaResponse> listener) {
+            this.request = request;
+            this.context = context;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Identifies the batch of a request: the node id and allocation id of the target shard copy, and the thread context the request
+     * is sent in.
+     */
+    private static final class BatchKey {
+        final String nodeId;
+        final String allocationId;
+        final Map<String, String> headers;
+        final boolean systemContext;
+
+        BatchKey(String nodeId, String allocationId, Map<String, String> headers, boolean systemContext) {
+            this.nodeId = nodeId;
+            this.allocationId = allocationId;
+            this.headers = headers;
+            this.systemContext = systemContext;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final BatchKey batchKey = (BatchKey) o;
+            return systemContext == batchKey.systemContext &&
+                Objects.equals(nodeId, batchKey.nodeId) &&
+                Objects.equals(allocationId, batchKey.allocationId) &&
+                Objects.equals(headers, batchKey.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeId, allocationId, headers, systemContext);
+        }
+    }
+
+    private final class Batch {
+        final BatchKey key;
+        final DiscoveryNode node;
+        final List<PendingRequest<R>> requests = new ArrayList<>();
+
+        Batch(BatchKey key, DiscoveryNode node) {
+            this.key = key;
+            this.node = node;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.translog.Translog;
 
 import java.io.IOException;
 
@@ -36,6 +37,10 @@ import java.io.IOException;
 public abstract class ReplicatedWriteRequest<R extends ReplicatedWriteRequest<R>> extends ReplicationRequest<R> implements WriteRequest<R> {
     private RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
 
+    // only used on replicas that apply this request as part of a batch, and never serialized
+    private volatile boolean translogSyncDeferred = false;
+    private volatile Translog.Location deferredSyncLocation = null;
+
     /**
      * Constructor for deserialization.
      */
@@ -58,6 +63,29 @@ public abstract class ReplicatedWriteRequest<R extends ReplicatedWriteRequest<R>
         return refreshPolicy;
     }
 
+    /**
+     * Marks this request as part of a batch of replica requests whose translog is synced once after all of them were applied,
+     * so the sync that usually follows applying it is skipped and its location is recorded instead.
+     */
+    void deferTranslogSync() {
+        this.translogSyncDeferred = true;
+    }
+
+    boolean isTranslogSyncDeferred() {
+        return translogSyncDeferred;
+    }
+
+    void setDeferredSyncLocation(Translog.Location location) {
+        this.deferredSyncLocation = location;
+    }
+
+    /**
+     * The translog location that must be synced for this request to be durable, or {@code null} if there is nothing to sync.
+     */
+    Translog.Location getDeferredSyncLocation() {
+        return deferredSyncLocation;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -529,18 +529,26 @@ public abstract class TransportReplicationAction<
                 final TransportChannel channel,
                 final Task task)
             throws Exception {
-            new AsyncReplicaAction(
-                    replicaRequest.getRequest(),
-                    replicaRequest.getTargetAllocationID(),
-                    replicaRequest.getPrimaryTerm(),
-                    replicaRequest.getGlobalCheckpoint(),
-                    replicaRequest.getMaxSeqNoOfUpdatesOrDeletes(),
-                    channel,
-                    (ReplicationTask) task).run();
+            performOnReplica(replicaRequest, channel, (ReplicationTask) task);
         }
 
     }
 
+    /**
+     * Performs the operation of the given request on the replica and sends the response, or the failure, to the given channel.
+     */
+    protected void performOnReplica(ConcreteReplicaRequest<ReplicaRequest> replicaRequest, TransportChannel channel,
+                                    @Nullable ReplicationTask task) {
+        new AsyncReplicaAction(
+                replicaRequest.getRequest(),
+                replicaRequest.getTargetAllocationID(),
+                replicaRequest.getPrimaryTerm(),
+                replicaRequest.getGlobalCheckpoint(),
+                replicaRequest.getMaxSeqNoOfUpdatesOrDeletes(),
+                channel,
+                task).run();
+    }
+
     public static class RetryOnReplicaException extends ElasticsearchException {
 
         public RetryOnReplicaException(ShardId shardId, String msg) {
@@ -21,6 +21,7 @@ package org.elasticsearch.action.support.replication;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.TransportActions;
@@ -29,10 +30,15 @@ import org.elasticsearch.action.support.WriteResponse;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.block.ClusterBlockLevel;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.CountDown;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.shard.IndexShard;
@@ -40,10 +46,14 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.Translog.Location;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportRequestHandler;
 import org.elasticsearch.transport.TransportResponse;
 import org.elasticsearch.transport.TransportService;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -60,12 +70,55 @@ public abstract class TransportWriteAction<
             Response extends ReplicationResponse & WriteResponse
         > extends TransportReplicationAction<Request, ReplicaRequest, Response> {
 
+    /**
+     * How long the replica requests of actions that support batching wait for other requests to the same shard copy before they are
+     * sent together in a single message. Defaults to {@code 0}, which disables batching.
+     */
+    public static final Setting<TimeValue> REPLICA_BATCH_WINDOW_SETTING =
+        Setting.timeSetting("indices.replication.replica_batch.window", TimeValue.ZERO, TimeValue.ZERO, Property.NodeScope);
+
+    /**
+     * The maximum number of replica requests that are sent in a single message. A batch is sent as soon as it holds that many
+     * requests, even if the batch window did not elapse yet.
+     */
+    public static final Setting<Integer> REPLICA_BATCH_MAX_REQUESTS_SETTING =
+        Setting.intSetting("indices.replication.replica_batch.max_requests", 64, 1, Property.NodeScope);
+
+    protected final String transportReplicaBatchAction;
+
+    @Nullable
+    private final ReplicaRequestBatcher<ReplicaRequest> replicaRequestBatcher;
+
     protected TransportWriteAction(Settings settings, String actionName, TransportService transportService,
             ClusterService clusterService, IndicesService indicesService, ThreadPool threadPool, ShardStateAction shardStateAction,
             ActionFilters actionFilters, IndexNameExpressionResolver indexNameExpressionResolver, Supplier<Request> request,
                                    Supplier<ReplicaRequest> replicaRequest, String executor) {
         super(settings, actionName, transportService, clusterService, indicesService, threadPool, shardStateAction, actionFilters,
                 indexNameExpressionResolver, request, replicaRequest, executor, true);
+        this.transportReplicaBatchAction = transportReplicaAction + "[batch]";
+        final TimeValue batchWindow = REPLICA_BATCH_WINDOW_SETTING.get(settings);
+        if (supportsReplicaBatching()) {
+            // batches are accepted even if this node does not send any, like all replica requests they must never be rejected
+            transportService.registerRequestHandler(transportReplicaBatchAction,
+                () -> new BatchedReplicaRequest<>(replicaRequest),
+                executor, true, true,
+                new ReplicaBatchTransportHandler());
+        }
+        if (supportsReplicaBatching() && batchWindow.nanos() > 0) {
+            this.replicaRequestBatcher = new ReplicaRequestBatcher<>(transportService, threadPool, transportReplicaAction,
+                transportReplicaBatchAction, transportOptions, batchWindow, REPLICA_BATCH_MAX_REQUESTS_SETTING.get(settings));
+        } else {
+            this.replicaRequestBatcher = null;
+        }
+    }
+
+    /**
+     * Whether the replica requests of this action can be sent in batches, see {@link #REPLICA_BATCH_WINDOW_SETTING}. Replica requests
+     * are only batched if waiting for other requests is cheaper than sending them one by one, which is the case of actions that are
+     * executed many times concurrently for the same shard, like shard bulk requests.
+     */
+    protected boolean supportsReplicaBatching() {
+        return false;
     }
 
     /** Syncs operation result to the translog or throws a shard not available failure */
@@ -308,7 +361,12 @@ public abstract class TransportWriteAction<
             this.waitUntilRefresh = waitUntilRefresh;
             this.respond = respond;
             this.location = location;
-            if ((sync = indexShard.getTranslogDurability() == Translog.Durability.REQUEST && location != null)) {
+            final boolean syncNeeded = indexShard.getTranslogDurability() == Translog.Durability.REQUEST && location != null;
+            if (syncNeeded && request instanceof ReplicatedWriteRequest && ((ReplicatedWriteRequest<?>) request).isTranslogSyncDeferred()) {
+                // the request is part of a batch of replica requests, which syncs the translog once for all of them
+                ((ReplicatedWriteRequest<?>) request).setDeferredSyncLocation(location);
+                sync = false;
+            } else if ((sync = syncNeeded)) {
                 pendingOps.incrementAndGet();
             }
             this.logger = logger;
@@ -359,6 +417,162 @@ public abstract class TransportWriteAction<
         }
     }
 
+    @Override
+    protected void sendReplicaRequest(final ConcreteReplicaRequest<ReplicaRequest> replicaRequest, final DiscoveryNode node,
+                                      final ActionListener<ReplicationOperation.ReplicaResponse> listener) {
+        if (replicaRequestBatcher != null && node.getVersion().onOrAfter(Version.V_7_0_0)) {
+            replicaRequestBatcher.add(node, replicaRequest, listener);
+        } else {
+            super.sendReplicaRequest(replicaRequest, node, listener);
+        }
+    }
+
+    /**
+     * Syncs the translog of the given shard up to the given location on behalf of a whole batch of replica requests.
+     */
+    // visible for testing
+    void syncTranslog(IndexShard indexShard, Translog.Location location, Consumer<Exception> syncListener) {
+        indexShard.sync(location, syncListener);
+    }
+
+    /**
+     * Handles a batch of replica requests: performs every request of the batch on its replica and then syncs the translog once for
+     * all of them before responding, rather than once per request.
+     */
+    class ReplicaBatchTransportHandler implements TransportRequestHandler<BatchedReplicaRequest<ReplicaRequest>> {
+
+        @Override
+        public void messageReceived(final BatchedReplicaRequest<ReplicaRequest> batchRequest,
+                                    final TransportChannel channel, final Task task) throws Exception {
+            new AsyncReplicaBatchAction(batchRequest.requests(), channel).run();
+        }
+    }
+
+    private final class AsyncReplicaBatchAction {
+        private final List<ConcreteReplicaRequest<ReplicaRequest>> requests;
+        private final TransportChannel channel;
+        private final TransportReplicationAction.ReplicaResponse[] responses;
+        private final Exception[] failures;
+        private final CountDown countDown;
+
+        AsyncReplicaBatchAction(List<ConcreteReplicaRequest<ReplicaRequest>> requests, TransportChannel channel) {
+            this.requests = requests;
+            this.channel = channel;
+            this.responses = new TransportReplicationAction.ReplicaResponse[requests.size()];
+            this.failures = new Exception[requests.size()];
+            this.countDown = new CountDown(requests.size());
+        }
+
+        void run() {
+            if (requests.isEmpty()) {
+                respond();
+                return;
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                final ConcreteReplicaRequest<ReplicaRequest> request = requests.get(i);
+                final EntryChannel entryChannel = new EntryChannel(i);
+                try {
+                    request.getRequest().deferTranslogSync();
+                    performOnReplica(request, entryChannel, null);
+                } catch (Exception e) {
+                    entryChannel.sendResponse(e);
+                }
+            }
+        }
+
+        private void onEntryDone() {
+            if (countDown.countDown() == false) {
+                return;
+            }
+            Translog.Location maxLocation = null;
+            for (int i = 0; i < requests.size(); i++) {
+                if (responses[i] != null) {
+                    final Translog.Location location = requests.get(i).getRequest().getDeferredSyncLocation();
+                    if (location != null && (maxLocation == null || location.compareTo(maxLocation) > 0)) {
+                        maxLocation = location;
+                    }
+                }
+            }
+            if (maxLocation == null) {
+                respond();
+            } else {
+                // all the operations of the batch went to the same shard, syncing up to the highest location syncs them all
+                final ShardId shardId = requests.get(0).getRequest().shardId();
+                try {
+                    syncTranslog(getIndexShard(shardId), maxLocation, syncFailure -> {
+                        if (syncFailure != null) {
+                            failSuccessfulEntries(syncFailure);
+                        }
+                        respond();
+                    });
+                } catch (Exception e) {
+                    failSuccessfulEntries(e);
+                    respond();
+                }
+            }
+        }
+
+        private void failSuccessfulEntries(Exception e) {
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] != null) {
+                    responses[i] = null;
+                    failures[i] = e;
+                }
+            }
+        }
+
+        private void respond() {
+            try {
+                channel.sendResponse(new BatchedReplicaResponse(responses, failures));
+            } catch (Exception e) {
+                logger.warn(() -> new ParameterizedMessage("failed to send response for action [{}]", transportReplicaBatchAction), e);
+            }
+        }
+
+        /**
+         * Collects the response of a single request of the batch, which shares the version and profile of the batch channel.
+         */
+        private final class EntryChannel implements TransportChannel {
+            private final int slot;
+            private final AtomicBoolean responded = new AtomicBoolean();
+
+            EntryChannel(int slot) {
+                this.slot = slot;
+            }
+
+            @Override
+            public String getProfileName() {
+                return channel.getProfileName();
+            }
+
+            @Override
+            public String getChannelType() {
+                return channel.getChannelType();
+            }
+
+            @Override
+            public Version getVersion() {
+                return channel.getVersion();
+            }
+
+            @Override
+            public void sendResponse(TransportResponse response) {
+                if (responded.compareAndSet(false, true)) {
+                    responses[slot] = (TransportReplicationAction.ReplicaResponse) response;
+                    onEntryDone();
+                }
+            }
+
+            @Override
+            public void sendResponse(Exception exception) {
+                if (responded.compareAndSet(false, true)) {
+                    failures[slot] = exception;
+                    onEntryDone();
+                }
+            }
+        }
+    }
+
     /**
      * A proxy for <b>write</b> operations that need to be performed on the
      * replicas, where a failure to execute the operation should fail
@@ -39,8 +39,11 @@ import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.logging.LoggerMessageFormat;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.FutureUtils;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportChannel;
@@ -50,6 +53,8 @@ import org.elasticsearch.transport.TransportResponseHandler;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import static org.elasticsearch.action.support.TransportActions.isShardNotAvailableException;
@@ -66,6 +71,8 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
     protected final ClusterService clusterService;
     protected final TransportService transportService;
     protected final IndexNameExpressionResolver indexNameExpressionResolver;
+    @Nullable
+    protected final ResponseCollectorService responseCollectorService;
 
     private final String transportShardAction;
     private final String executor;
@@ -74,11 +81,24 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
                                          TransportService transportService, ActionFilters actionFilters,
                                          IndexNameExpressionResolver indexNameExpressionResolver, Supplier<Request> request,
                                          String executor) {
+        this(actionName, threadPool, clusterService, transportService, actionFilters, indexNameExpressionResolver, request, executor,
+            null);
+    }
+
+    /**
+     * Creates an action that records the response times of the shard copies it reads from in the given collector, which makes it
+     * possible to rank the copies in {@link #shards(ClusterState, InternalRequest)} and to send hedged reads.
+     */
+    protected TransportSingleShardAction(String actionName, ThreadPool threadPool, ClusterService clusterService,
+                                         TransportService transportService, ActionFilters actionFilters,
+                                         IndexNameExpressionResolver indexNameExpressionResolver, Supplier<Request> request,
+                                         String executor, @Nullable ResponseCollectorService responseCollectorService) {
         super(actionName, actionFilters, transportService.getTaskManager());
         this.threadPool = threadPool;
         this.clusterService = clusterService;
         this.transportService = transportService;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
+        this.responseCollectorService = responseCollectorService;
 
         this.transportShardAction = actionName + "[s]";
         this.executor = executor;
@@ -148,6 +168,11 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
         private final InternalRequest internalRequest;
         private final DiscoveryNodes nodes;
         private volatile Exception lastFailure;
+        // set once a response is passed to the listener, later responses of hedged reads are ignored
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // the number of shard copies a request was sent to that haven't responded yet, guarded by this
+        private int pendingCopies;
+        private volatile ScheduledFuture<?> hedge;
 
         private AsyncSingleAction(Request request, ActionListener<Response> listener) {
             this.listener = listener;
@@ -216,16 +241,38 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
                 logger.trace(() -> new ParameterizedMessage("{}: failed to execute [{}]", shardRouting,
                     internalRequest.request()), e);
             }
+            synchronized (this) {
+                if (completed.get()) {
+                    return;
+                }
+                pendingCopies--;
+            }
             perform(e);
         }
 
+        /**
+         * Sends the request to the next shard copy, or fails the listener if there are none left. The next step is decided under the
+         * lock, but the request is sent and the listener notified after releasing it.
+         */
         private void perform(@Nullable final Exception currentFailure) {
-            Exception lastFailure = this.lastFailure;
-            if (lastFailure == null || TransportActions.isReadOverrideException(currentFailure)) {
-                lastFailure = currentFailure;
-                this.lastFailure = currentFailure;
+            final ShardRouting shardRouting;
+            final Exception lastFailure;
+            synchronized (this) {
+                if (this.lastFailure == null || TransportActions.isReadOverrideException(currentFailure)) {
+                    this.lastFailure = currentFailure;
+                }
+                lastFailure = this.lastFailure;
+                if (pendingCopies > 0) {
+                    // a hedged read is still in flight on another copy, wait for it before trying the next copy
+                    return;
+                }
+                shardRouting = shardIt.nextOrNull();
+                if (shardRouting != null) {
+                    pendingCopies++;
+                } else if (completed.compareAndSet(false, true) == false) {
+                    return;
+                }
             }
-            final ShardRouting shardRouting = shardIt.nextOrNull();
             if (shardRouting == null) {
                 Exception failure = lastFailure;
                 if (failure == null || isShardNotAvailableException(failure)) {
@@ -238,10 +285,68 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
                 listener.onFailure(failure);
                 return;
             }
+            sendToCopy(shardRouting);
+        }
+
+        /**
+         * Sends the request to the next shard copy if the copies it was sent to haven't responded yet.
+         */
+        private void sendHedgedRead() {
+            final ShardRouting shardRouting;
+            synchronized (this) {
+                if (completed.get() || pendingCopies == 0) {
+                    return;
+                }
+                shardRouting = shardIt.nextOrNull();
+                if (shardRouting == null) {
+                    return;
+                }
+                pendingCopies++;
+            }
+            logger.trace("sending hedged read [{}] to [{}]", internalRequest.request(), shardRouting);
+            sendToCopy(shardRouting);
+        }
+
+        /**
+         * Schedules a hedged read after the given percentile of the response times of the copy the request was just sent to. The hedged
+         * read runs on the generic pool, in the thread context of the request.
+         */
+        private synchronized void maybeScheduleHedgedRead(ShardRouting shardRouting) {
+            if (responseCollectorService == null || hedge != null || shardIt.remaining() == 0) {
+                return;
+            }
+            final double percentile = clusterService.operationRouting().getHedgedReadsPercentile();
+            if (percentile > 0) {
+                final long delayNanos =
+                    responseCollectorService.getShardCopyResponseTime(shardRouting.shardId(), shardRouting.currentNodeId(), percentile);
+                if (delayNanos > 0) {
+                    hedge = threadPool.schedule(TimeValue.timeValueNanos(delayNanos), ThreadPool.Names.GENERIC,
+                        threadPool.getThreadContext().preserveContext(this::sendHedgedRead));
+                }
+            }
+        }
+
+        private void onResponse(ShardRouting shardRouting, long startNanos, Response response) {
+            if (responseCollectorService != null) {
+                responseCollectorService.addShardCopyResponseTime(shardRouting.shardId(), shardRouting.currentNodeId(),
+                    System.nanoTime() - startNanos);
+            }
+            if (completed.compareAndSet(false, true)) {
+                FutureUtils.cancel(hedge);
+                listener.onResponse(response);
+            }
+        }
+
+        /**
+         * Sends the request to a shard copy that was already counted in {@link #pendingCopies}. Must not be called under the lock.
+         */
+        private void sendToCopy(final ShardRouting shardRouting) {
+            assert Thread.holdsLock(this) == false : "must not send requests or notify the listener under the lock";
             DiscoveryNode node = nodes.get(shardRouting.currentNodeId());
             if (node == null) {
                 onFailure(shardRouting, new NoShardAvailableActionException(shardRouting.shardId()));
             } else {
+                final long startNanos = System.nanoTime();
                 internalRequest.request().internalShardId = shardRouting.shardId();
                 if (logger.isTraceEnabled()) {
                     logger.trace(
@@ -268,7 +373,7 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
 
                         @Override
                         public void handleResponse(final Response response) {
-                            listener.onResponse(response);
+                            AsyncSingleAction.this.onResponse(shardRouting, startNanos, response);
                         }
 
                         @Override
@@ -276,6 +381,7 @@ public abstract class TransportSingleShardAction<Request extends SingleShardRequ
                             onFailure(shardRouting, exp);
                         }
                 });
+                maybeScheduleHedgedRead(shardRouting);
             }
         }
     }
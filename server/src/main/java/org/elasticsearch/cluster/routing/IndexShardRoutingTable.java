@@ -263,15 +263,15 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         final int seed = shuffler.nextSeed();
         if (allInitializingShards.isEmpty()) {
             return new PlainShardIterator(shardId,
-                    rankShardsAndUpdateStats(shuffler.shuffle(activeShards, seed), collector, nodeSearchCounts));
+                    rankShardsAndUpdateStats(shardId, shuffler.shuffle(activeShards, seed), collector, nodeSearchCounts));
         }
 
         ArrayList<ShardRouting> ordered = new ArrayList<>(activeShards.size() + allInitializingShards.size());
         List<ShardRouting> rankedActiveShards =
-                rankShardsAndUpdateStats(shuffler.shuffle(activeShards, seed), collector, nodeSearchCounts);
+                rankShardsAndUpdateStats(shardId, shuffler.shuffle(activeShards, seed), collector, nodeSearchCounts);
         ordered.addAll(rankedActiveShards);
         List<ShardRouting> rankedInitializingShards =
-                rankShardsAndUpdateStats(allInitializingShards, collector, nodeSearchCounts);
+                rankShardsAndUpdateStats(shardId, allInitializingShards, collector, nodeSearchCounts);
         ordered.addAll(rankedInitializingShards);
         return new PlainShardIterator(shardId, ordered);
     }
@@ -294,14 +294,23 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         return nodeStats;
     }
 
-    private static Map<String, Double> rankNodes(final Map<String, Optional<ResponseCollectorService.ComputedNodeStats>> nodeStats,
+    private static Map<String, Double> rankNodes(final ShardId shardId,
+                                                 final Map<String, Optional<ResponseCollectorService.ComputedNodeStats>> nodeStats,
+                                                 final ResponseCollectorService collector,
                                                  final Map<String, Long> nodeSearchCounts) {
         final Map<String, Double> nodeRanks = new HashMap<>(nodeStats.size());
         for (Map.Entry<String, Optional<ResponseCollectorService.ComputedNodeStats>> entry : nodeStats.entrySet()) {
             Optional<ResponseCollectorService.ComputedNodeStats> maybeStats = entry.getValue();
             maybeStats.ifPresent(stats -> {
                 final String nodeId = entry.getKey();
-                nodeRanks.put(nodeId, stats.rank(nodeSearchCounts.getOrDefault(nodeId, 1L)));
+                final long outstandingRequests = nodeSearchCounts.getOrDefault(nodeId, 1L);
+                // prefer the median response time of this shard's copy on the node, a copy may be slow while the node isn't
+                final long shardCopyResponseTime = collector.getShardCopyResponseTime(shardId, nodeId, 50);
+                if (shardCopyResponseTime > 0) {
+                    nodeRanks.put(nodeId, stats.rank(outstandingRequests, shardCopyResponseTime));
+                } else {
+                    nodeRanks.put(nodeId, stats.rank(outstandingRequests));
+                }
             });
         }
         return nodeRanks;
@@ -337,7 +346,8 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         }
     }
 
-    private static List<ShardRouting> rankShardsAndUpdateStats(List<ShardRouting> shards, final ResponseCollectorService collector,
+    private static List<ShardRouting> rankShardsAndUpdateStats(final ShardId shardId, List<ShardRouting> shards,
+                                                               final ResponseCollectorService collector,
                                                                final Map<String, Long> nodeSearchCounts) {
         if (collector == null || nodeSearchCounts == null || shards.size() <= 1) {
             return shards;
@@ -348,7 +358,7 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         final Map<String, Optional<ResponseCollectorService.ComputedNodeStats>> nodeStats = getNodeStats(nodeIds, collector);
 
         // Retrieve all the nodes the shards exist on
-        final Map<String, Double> nodeRanks = rankNodes(nodeStats, nodeSearchCounts);
+        final Map<String, Double> nodeRanks = rankNodes(shardId, nodeStats, collector, nodeSearchCounts);
 
         // sort all shards based on the shard rank
         ArrayList<ShardRouting> sortedShards = new ArrayList<>(shards);
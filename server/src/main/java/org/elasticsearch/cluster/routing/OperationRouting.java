@@ -38,6 +38,7 @@ import org.elasticsearch.node.ResponseCollectorService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -50,8 +51,23 @@ public class OperationRouting extends AbstractComponent {
             Setting.boolSetting("cluster.routing.use_adaptive_replica_selection", true,
                     Setting.Property.Dynamic, Setting.Property.NodeScope);
 
+    /**
+     * Enables hedged reads for get and multi-get requests: when the shard copy that a request was sent to takes longer to respond
+     * than {@link #HEDGED_READS_PERCENTILE_SETTING} of its recent response times, the request is also sent to the next copy and the
+     * first response wins.
+     */
+    public static final Setting<Boolean> HEDGED_READS_ENABLED_SETTING =
+            Setting.boolSetting("cluster.routing.hedged_reads.enabled", false,
+                    Setting.Property.Dynamic, Setting.Property.NodeScope);
+
+    public static final Setting<Double> HEDGED_READS_PERCENTILE_SETTING =
+            Setting.doubleSetting("cluster.routing.hedged_reads.percentile", 95.0, 50.0, 100.0,
+                    Setting.Property.Dynamic, Setting.Property.NodeScope);
+
     private List<String> awarenessAttributes;
     private boolean useAdaptiveReplicaSelection;
+    private volatile boolean hedgedReadsEnabled;
+    private volatile double hedgedReadsPercentile;
 
     public OperationRouting(Settings settings, ClusterSettings clusterSettings) {
         this.awarenessAttributes = AwarenessAllocationDecider.CLUSTER_ROUTING_ALLOCATION_AWARENESS_ATTRIBUTE_SETTING.get(settings);
@@ -59,6 +75,27 @@ public class OperationRouting extends AbstractComponent {
         clusterSettings.addSettingsUpdateConsumer(AwarenessAllocationDecider.CLUSTER_ROUTING_ALLOCATION_AWARENESS_ATTRIBUTE_SETTING,
             this::setAwarenessAttributes);
         clusterSettings.addSettingsUpdateConsumer(USE_ADAPTIVE_REPLICA_SELECTION_SETTING, this::setUseAdaptiveReplicaSelection);
+        this.hedgedReadsEnabled = HEDGED_READS_ENABLED_SETTING.get(settings);
+        this.hedgedReadsPercentile = HEDGED_READS_PERCENTILE_SETTING.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(HEDGED_READS_ENABLED_SETTING, this::setHedgedReadsEnabled);
+        clusterSettings.addSettingsUpdateConsumer(HEDGED_READS_PERCENTILE_SETTING, this::setHedgedReadsPercentile);
+    }
+
+    private void setHedgedReadsEnabled(boolean hedgedReadsEnabled) {
+        this.hedgedReadsEnabled = hedgedReadsEnabled;
+    }
+
+    private void setHedgedReadsPercentile(double hedgedReadsPercentile) {
+        this.hedgedReadsPercentile = hedgedReadsPercentile;
+    }
+
+    /**
+     * Returns the percentile of the recent response times of a shard copy after which a read is also sent to another copy, or
+     * {@code -1} if hedged reads are disabled. Hedged reads are also disabled while adaptive replica selection is turned off, as
+     * copies are then picked in a round robin fashion and the next copy may well be the slow one.
+     */
+    public double getHedgedReadsPercentile() {
+        return hedgedReadsEnabled && useAdaptiveReplicaSelection ? hedgedReadsPercentile : -1;
     }
 
     void setUseAdaptiveReplicaSelection(boolean useAdaptiveReplicaSelection) {
@@ -75,14 +112,28 @@ public class OperationRouting extends AbstractComponent {
 
     public ShardIterator getShards(ClusterState clusterState, String index, String id, @Nullable String routing,
                                    @Nullable String preference) {
+        return getShards(clusterState, index, id, routing, preference, null);
+    }
+
+    /**
+     * Returns the copies of the shard that holds the given document, ranked by adaptive replica selection using the statistics of
+     * the given collector if it is enabled and no preference is given.
+     */
+    public ShardIterator getShards(ClusterState clusterState, String index, String id, @Nullable String routing,
+                                   @Nullable String preference, @Nullable ResponseCollectorService collectorService) {
         return preferenceActiveShardIterator(shards(clusterState, index, id, routing), clusterState.nodes().getLocalNodeId(),
-            clusterState.nodes(), preference, null, null);
+            clusterState.nodes(), preference, collectorService, collectorService == null ? null : new HashMap<>());
     }
 
     public ShardIterator getShards(ClusterState clusterState, String index, int shardId, @Nullable String preference) {
+        return getShards(clusterState, index, shardId, preference, null);
+    }
+
+    public ShardIterator getShards(ClusterState clusterState, String index, int shardId, @Nullable String preference,
+                                   @Nullable ResponseCollectorService collectorService) {
         final IndexShardRoutingTable indexShard = clusterState.getRoutingTable().shardRoutingTable(index, shardId);
         return preferenceActiveShardIterator(indexShard, clusterState.nodes().getLocalNodeId(), clusterState.nodes(),
-            preference, null, null);
+            preference, collectorService, collectorService == null ? null : new HashMap<>());
     }
 
     public GroupShardsIterator<ShardIterator> searchShards(ClusterState clusterState,
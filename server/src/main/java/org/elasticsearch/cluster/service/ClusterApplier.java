@@ -39,6 +39,11 @@ public interface ClusterApplier {
      */
     void onNewClusterState(String source, Supplier<ClusterState> clusterStateSupplier, ClusterApplyListener listener);
 
+    /**
+     * Returns statistics about the time spent applying cluster states
+     */
+    ClusterApplierStats stats();
+
     /**
      * Listener for results of cluster state application
      */
@@ -46,13 +46,17 @@ import org.elasticsearch.common.util.concurrent.PrioritizedEsThreadPoolExecutor;
 import org.elasticsearch.common.util.iterable.Iterables;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -95,6 +99,9 @@ public class ClusterApplierService extends AbstractLifecycleComponent implements
 
     private final AtomicReference<ClusterState> state; // last applied state
 
+    // the time spent in each applier and listener, by class name
+    private final ConcurrentMap<String, TimeRecorder> recorders = ConcurrentCollections.newConcurrentMap();
+
     private final String nodeName;
 
     private NodeConnectionsService nodeConnectionsService;
@@ -476,26 +483,68 @@ public class ClusterApplierService extends AbstractLifecycleComponent implements
 
     private void callClusterStateAppliers(ClusterChangedEvent clusterChangedEvent) {
         clusterStateAppliers.forEach(applier -> {
+            final long startTimeNS = currentTimeInNanos();
             try {
                 logger.trace("calling [{}] with change to version [{}]", applier, clusterChangedEvent.state().version());
                 applier.applyClusterState(clusterChangedEvent);
             } catch (Exception ex) {
                 logger.warn("failed to notify ClusterStateApplier", ex);
+            } finally {
+                recordTime(applier, startTimeNS);
             }
         });
     }
 
     private void callClusterStateListeners(ClusterChangedEvent clusterChangedEvent) {
         Stream.concat(clusterStateListeners.stream(), timeoutClusterStateListeners.stream()).forEach(listener -> {
+            final long startTimeNS = currentTimeInNanos();
             try {
                 logger.trace("calling [{}] with change to version [{}]", listener, clusterChangedEvent.state().version());
                 listener.clusterChanged(clusterChangedEvent);
             } catch (Exception ex) {
                 logger.warn("failed to notify ClusterStateListener", ex);
+            } finally {
+                recordTime(listener, startTimeNS);
             }
         });
     }
 
+    private void recordTime(Object applierOrListener, long startTimeNS) {
+        // keyed by class rather than by instance, so that short-lived listeners like the ones of cluster state observers add up
+        final String name = applierOrListener.getClass().getName();
+        recorders.computeIfAbsent(name, k -> new TimeRecorder()).record(Math.max(0, currentTimeInNanos() - startTimeNS));
+    }
+
+    /**
+     * Returns the time spent in each cluster state applier and listener, the slowest first.
+     */
+    @Override
+    public ClusterApplierStats stats() {
+        final List<ClusterApplierStats.Recording> recordings = new ArrayList<>();
+        for (Map.Entry<String, TimeRecorder> entry : recorders.entrySet()) {
+            recordings.add(entry.getValue().toRecording(entry.getKey()));
+        }
+        recordings.sort(Comparator.comparing(ClusterApplierStats.Recording::getTotalTime).reversed()
+            .thenComparing(ClusterApplierStats.Recording::getName));
+        return new ClusterApplierStats(recordings);
+    }
+
+    private static class TimeRecorder {
+        private long count;
+        private long totalTimeNanos;
+        private long maxTimeNanos;
+
+        synchronized void record(long timeNanos) {
+            count++;
+            totalTimeNanos += timeNanos;
+            maxTimeNanos = Math.max(maxTimeNanos, timeNanos);
+        }
+
+        synchronized ClusterApplierStats.Recording toRecording(String name) {
+            return new ClusterApplierStats.Recording(name, count, totalTimeNanos, maxTimeNanos);
+        }
+    }
+
     private static class SafeClusterApplyListener implements ClusterApplyListener {
         private final ClusterApplyListener listener;
         private final Logger logger;
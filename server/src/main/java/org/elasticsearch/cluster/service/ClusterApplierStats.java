@@ -0,0 +1,194 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.service;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Statistics about the time that the {@link ClusterApplierService} spends in each cluster state applier and listener while applying
+ * cluster states, which shows which of them slow down the application of cluster states on a node.
+ */
+public class ClusterApplierStats implements Writeable, ToXContentFragment {
+
+    private final List<Recording> recordings;
+
+    public ClusterApplierStats(List<Recording> recordings) {
+        this.recordings = Collections.unmodifiableList(recordings);
+    }
+
+    public ClusterApplierStats(StreamInput in) throws IOException {
+        recordings = Collections.unmodifiableList(in.readList(Recording::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeList(recordings);
+    }
+
+    /**
+     * The time spent in each applier and listener, the slowest first.
+     */
+    public List<Recording> getRecordings() {
+        return recordings;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.CLUSTER_APPLIER);
+        builder.startArray(Fields.RECORDINGS);
+        for (Recording recording : recordings) {
+            recording.toXContent(builder, params);
+        }
+        builder.endArray();
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final String CLUSTER_APPLIER = "cluster_applier";
+        static final String RECORDINGS = "recordings";
+        static final String NAME = "name";
+        static final String COUNT = "count";
+        static final String TOTAL_TIME = "total_time";
+        static final String TOTAL_TIME_IN_MILLIS = "total_time_in_millis";
+        static final String MAX_TIME = "max_time";
+        static final String MAX_TIME_IN_MILLIS = "max_time_in_millis";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ClusterApplierStats that = (ClusterApplierStats) o;
+        return recordings.equals(that.recordings);
+    }
+
+    @Override
+    public int hashCode() {
+        return recordings.hashCode();
+    }
+
+    /**
+     * The number of times an applier or a listener was called and how long it took.
+     */
+    public static class Recording implements Writeable, ToXContentObject {
+
+        private final String name;
+        private final long count;
+        private final long totalTimeNanos;
+        private final long maxTimeNanos;
+
+        public Recording(String name, long count, long totalTimeNanos, long maxTimeNanos) {
+            this.name = name;
+            this.count = count;
+            this.totalTimeNanos = totalTimeNanos;
+            this.maxTimeNanos = maxTimeNanos;
+        }
+
+        public Recording(StreamInput in) throws IOException {
+            name = in.readString();
+            count = in.readVLong();
+            totalTimeNanos = in.readVLong();
+            maxTimeNanos = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(name);
+            out.writeVLong(count);
+            out.writeVLong(totalTimeNanos);
+            out.writeVLong(maxTimeNanos);
+        }
+
+        /**
+         * The name of the class of the applier or listener.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The number of cluster states that the applier or listener was called with.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The sum of the time the applier or listener took to handle each cluster state.
+         */
+        public TimeValue getTotalTime() {
+            return TimeValue.timeValueNanos(totalTimeNanos);
+        }
+
+        /**
+         * The longest time the applier or listener took to handle a cluster state.
+         */
+        public TimeValue getMaxTime() {
+            return TimeValue.timeValueNanos(maxTimeNanos);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(Fields.NAME, name);
+            builder.field(Fields.COUNT, count);
+            builder.humanReadableField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, getTotalTime());
+            builder.humanReadableField(Fields.MAX_TIME_IN_MILLIS, Fields.MAX_TIME, getMaxTime());
+            builder.endObject();
+            return builder;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Recording that = (Recording) o;
+            return count == that.count &&
+                totalTimeNanos == that.totalTimeNanos &&
+                maxTimeNanos == that.maxTimeNanos &&
+                Objects.equals(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, count, totalTimeNanos, maxTimeNanos);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.bytes;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+
+import java.io.IOException;
+
+/**
+ * A {@link BytesReference} over buffers that have to be released, typically pages of a network buffer that are recycled. The
+ * buffers are reference counted: slices obtained with {@link #retainedSlice(int, int)} and the releasables returned by
+ * {@link #retain()} keep them from being released until all of them are closed.
+ * <p>
+ * {@link #slicingStreamInput()} returns a stream whose {@link StreamInput#readReleasableBytesReference()} returns slices of these
+ * bytes instead of copies. Such slices are only valid as long as these bytes are retained, see {@link #hasSlices()}.
+ */
+public final class ReleasableBytesReference extends BytesReference implements Releasable {
+
+    private final BytesReference delegate;
+    private final RefCountedReleasable refCounted;
+    private final long pinnedBytes;
+    private boolean sliced;
+
+    public ReleasableBytesReference(BytesReference delegate, Releasable releasable) {
+        this(delegate, releasable, delegate.length());
+    }
+
+    /**
+     * @param pinnedBytes the size of the buffers that the releasable releases, which may be larger than the delegate when it only
+     *                    uses part of them
+     */
+    public ReleasableBytesReference(BytesReference delegate, Releasable releasable, long pinnedBytes) {
+        this(delegate, new RefCountedReleasable(releasable), pinnedBytes);
+    }
+
+    private ReleasableBytesReference(BytesReference delegate, RefCountedReleasable refCounted, long pinnedBytes) {
+        this.delegate = delegate;
+        this.refCounted = refCounted;
+        this.pinnedBytes = pinnedBytes;
+    }
+
+    /**
+     * Returns a slice of these bytes that keeps the underlying buffers from being released until it is closed.
+     */
+    public ReleasableBytesReference retainedSlice(int from, int length) {
+        refCounted.incRef();
+        return new ReleasableBytesReference(delegate.slice(from, length), refCounted, pinnedBytes);
+    }
+
+    /**
+     * Returns the size of the underlying buffers, all of which are kept from being released by {@link #retain()} and by slices
+     * obtained with {@link #retainedSlice(int, int)}, however small these slices are.
+     */
+    public long pinnedBytes() {
+        return pinnedBytes;
+    }
+
+    /**
+     * Keeps the underlying buffers from being released until the returned releasable is closed.
+     */
+    public Releasable retain() {
+        refCounted.incRef();
+        return Releasables.releaseOnce(refCounted::decRef);
+    }
+
+    /**
+     * Whether {@link StreamInput#readReleasableBytesReference()} returned slices of these bytes from a stream that was obtained with
+     * {@link #slicingStreamInput()}. The caller that owns these bytes must {@link #retain()} them for as long as those slices are used.
+     */
+    public boolean hasSlices() {
+        return sliced;
+    }
+
+    @Override
+    public void close() {
+        refCounted.decRef();
+    }
+
+    @Override
+    public byte get(int index) {
+        return delegate.get(index);
+    }
+
+    @Override
+    public int length() {
+        return delegate.length();
+    }
+
+    @Override
+    public BytesReference slice(int from, int length) {
+        return delegate.slice(from, length);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return delegate.ramBytesUsed();
+    }
+
+    @Override
+    public BytesRef toBytesRef() {
+        return delegate.toBytesRef();
+    }
+
+    @Override
+    public BytesRefIterator iterator() {
+        return delegate.iterator();
+    }
+
+    /**
+     * Returns a stream over these bytes whose {@link StreamInput#readReleasableBytesReference()} returns slices of these bytes rather
+     * than copies. {@link #streamInput()} copies like for any other bytes reference.
+     */
+    public StreamInput slicingStreamInput() throws IOException {
+        return new BytesReferenceStreamInput(delegate.iterator(), delegate.length()) {
+            @Override
+            protected BytesReference readReleasableBytesReference(int length) throws IOException {
+                if (length == 0) {
+                    return BytesArray.EMPTY;
+                }
+                final int offset = getOffset();
+                skip(length);
+                sliced = true;
+                return delegate.slice(offset, length);
+            }
+        };
+    }
+
+    private static final class RefCountedReleasable extends AbstractRefCounted {
+
+        private final Releasable releasable;
+
+        private RefCountedReleasable(Releasable releasable) {
+            super("bytes reference");
+            this.releasable = releasable;
+        }
+
+        @Override
+        protected void closeInternal() {
+            releasable.close();
+        }
+    }
+}
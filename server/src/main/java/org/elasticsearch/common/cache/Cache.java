@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -61,6 +63,13 @@ import java.util.function.ToLongBiFunction;
  * <li>Locks on the list could be taken per node being modified instead of globally.</li>
  * </ol>
  * <p>
+ * A variant of the first option can be enabled with {@link CacheBuilder#setAccessBuffering(boolean)}: cache hits are then recorded in
+ * striped, lossy buffers and applied to the LRU list in batches by whichever thread manages to acquire the LRU lock, so
+ * that hits do not contend on the LRU lock. The LRU order is then approximate. Additionally,
+ * {@link CacheBuilder#setFrequencyAdmission(boolean)} makes weight-based evictions frequency-aware: an inserted entry is
+ * only admitted if it is estimated to be accessed at least as often as the least-recently used entry it would displace,
+ * otherwise the inserted entry itself is evicted.
+ * <p>
  * Evictions only occur after a mutation to the cache (meaning an entry promotion, a cache insertion, or a manual
  * invalidation) or an explicit call to {@link #refresh()}.
  *
@@ -97,6 +106,12 @@ public class Cache<K, V> {
     private RemovalListener<K, V> removalListener = notification -> {
     };
 
+    // non-null if accesses are recorded in read buffers rather than promoted immediately
+    private ReadBuffer<K, V>[] readBuffers;
+
+    // non-null if inserted entries must be accessed at least as frequently as the entries they evict
+    private FrequencySketch frequencySketch;
+
     // use CacheBuilder to construct
     Cache() {
     }
@@ -144,6 +159,32 @@ public class Cache<K, V> {
         this.removalListener = removalListener;
     }
 
+    @SuppressWarnings("unchecked")
+    void setAccessBuffering(boolean accessBuffering) {
+        if (accessBuffering) {
+            readBuffers = new ReadBuffer[NUMBER_OF_READ_BUFFERS];
+            for (int i = 0; i < readBuffers.length; i++) {
+                readBuffers[i] = new ReadBuffer<>();
+            }
+        } else {
+            readBuffers = null;
+        }
+    }
+
+    // pkg-private for testing
+    boolean isAccessBuffering() {
+        return readBuffers != null;
+    }
+
+    void setFrequencyAdmission(boolean frequencyAdmission) {
+        this.frequencySketch = frequencyAdmission ? new FrequencySketch() : null;
+    }
+
+    // pkg-private for testing
+    boolean isFrequencyAdmission() {
+        return frequencySketch != null;
+    }
+
     /**
      * The relative time used to track time-based evictions.
      *
@@ -335,6 +376,72 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * A lossy ring buffer of accessed entries that are waiting to be promoted in the LRU list. Slots are claimed by readers
+     * with a CAS on the write count, accesses are dropped rather than waiting if the buffer is full or contended.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    private static class ReadBuffer<K, V> {
+        private final AtomicReferenceArray<Entry<K, V>> entries = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writeCount = new AtomicLong();
+        // only modified while holding the LRU lock
+        private volatile long readCount;
+
+        /**
+         * record an access to an entry
+         *
+         * @param entry the accessed entry
+         * @return true if the buffer is full and should be drained
+         */
+        boolean offer(Entry<K, V> entry) {
+            final long head = readCount;
+            final long tail = writeCount.get();
+            final long size = tail - head;
+            if (size >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (writeCount.compareAndSet(tail, tail + 1)) {
+                entries.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), entry);
+                return size + 1 >= READ_BUFFER_SIZE;
+            }
+            return false;
+        }
+
+        /**
+         * apply the recorded accesses, must be called while holding the LRU lock
+         *
+         * @param consumer a callback for each recorded access
+         */
+        void drain(Consumer<Entry<K, V>> consumer) {
+            long head = readCount;
+            final long tail = writeCount.get();
+            for (; head < tail; head++) {
+                final int index = (int) (head & (READ_BUFFER_SIZE - 1));
+                final Entry<K, V> entry = entries.get(index);
+                if (entry == null) {
+                    // the slot was claimed but the entry has not been published yet
+                    break;
+                }
+                entries.lazySet(index, null);
+                consumer.accept(entry);
+            }
+            readCount = head;
+        }
+
+        /**
+         * @return the number of recorded accesses that have not been drained yet
+         */
+        long size() {
+            return writeCount.get() - readCount;
+        }
+    }
+
+    // must be powers of two
+    private static final int NUMBER_OF_READ_BUFFERS = 32;
+    private static final int READ_BUFFER_SIZE = 32;
+
     public static final int NUMBER_OF_SEGMENTS = 256;
     @SuppressWarnings("unchecked") private final CacheSegment<K, V>[] segments = new CacheSegment[NUMBER_OF_SEGMENTS];
 
@@ -366,11 +473,66 @@ public class Cache<K, V> {
         if (entry == null) {
             return null;
         } else {
-            promote(entry, now);
+            if (readBuffers != null) {
+                recordAccess(entry, now);
+            } else {
+                promote(entry, now);
+            }
             return entry.value;
         }
     }
 
+    private void recordAccess(Entry<K, V> entry, long now) {
+        final ReadBuffer<K, V> readBuffer = readBuffers[(int) Thread.currentThread().getId() & (NUMBER_OF_READ_BUFFERS - 1)];
+        if (readBuffer.offer(entry)) {
+            // drain the buffers unless another thread is already mutating the LRU list, it will pick up our accesses later
+            try (ReleasableLock locked = lruLock.tryAcquire()) {
+                if (locked != null) {
+                    drainReadBuffers();
+                    evict(now);
+                }
+            }
+        }
+    }
+
+    private void drainReadBuffers() {
+        assert lruLock.isHeldByCurrentThread();
+
+        if (readBuffers != null) {
+            for (ReadBuffer<K, V> readBuffer : readBuffers) {
+                readBuffer.drain(drainConsumer);
+            }
+        }
+    }
+
+    /**
+     * @return the number of recorded accesses that have not been applied to the LRU list yet
+     */
+    long bufferedAccesses() {
+        long size = 0;
+        if (readBuffers != null) {
+            for (ReadBuffer<K, V> readBuffer : readBuffers) {
+                size += readBuffer.size();
+            }
+        }
+        return size;
+    }
+
+    private final Consumer<Entry<K, V>> drainConsumer = entry -> {
+        if (entry.state == State.EXISTING) {
+            relinkAtHead(entry);
+            recordFrequency(entry);
+        }
+    };
+
+    private void recordFrequency(Entry<K, V> entry) {
+        assert lruLock.isHeldByCurrentThread();
+
+        if (frequencySketch != null) {
+            frequencySketch.increment(entry.key.hashCode());
+        }
+    }
+
     /**
      * If the specified key is not already associated with a value (or is mapped to null), attempts to compute its
      * value using the given mapping function and enters it into this map unless null. The load method for a given key
@@ -495,6 +657,8 @@ public class Cache<K, V> {
             Entry<K, V> entry = f.get();
             try (ReleasableLock ignored = lruLock.acquire()) {
                 delete(entry, RemovalNotification.RemovalReason.INVALIDATED);
+                // release the references that the read buffers may hold to the invalidated entry
+                drainReadBuffers();
             }
         } catch (ExecutionException e) {
             // ok
@@ -551,6 +715,8 @@ public class Cache<K, V> {
                 head = tail = null;
                 count = 0;
                 weight = 0;
+                // release the references to the invalidated entries, they are all marked as deleted now
+                drainReadBuffers();
             }
         } finally {
             for (int i = NUMBER_OF_SEGMENTS - 1; i >= 0; i--) {
@@ -571,6 +737,7 @@ public class Cache<K, V> {
     public void refresh() {
         long now = now();
         try (ReleasableLock ignored = lruLock.acquire()) {
+            drainReadBuffers();
             evict(now);
         }
     }
@@ -679,6 +846,8 @@ public class Cache<K, V> {
                 try (ReleasableLock ignored = lruLock.acquire()) {
                     current = null;
                     delete(entry, RemovalNotification.RemovalReason.INVALIDATED);
+                    // release the references that the read buffers may hold to the removed entry
+                    drainReadBuffers();
                 }
             }
         }
@@ -728,7 +897,10 @@ public class Cache<K, V> {
 
     private boolean promote(Entry<K, V> entry, long now) {
         boolean promoted = true;
+        boolean inserted = false;
         try (ReleasableLock ignored = lruLock.acquire()) {
+            // apply the buffered accesses first so that they do not overtake this promotion
+            drainReadBuffers();
             switch (entry.state) {
                 case DELETED:
                     promoted = false;
@@ -738,10 +910,17 @@ public class Cache<K, V> {
                     break;
                 case NEW:
                     linkAtHead(entry);
+                    inserted = true;
                     break;
             }
             if (promoted) {
-                evict(now);
+                recordFrequency(entry);
+                if (inserted && frequencySketch != null) {
+                    frequencySketch.ensureCapacity(count);
+                    evict(now, entry);
+                } else {
+                    evict(now);
+                }
             }
         }
         return promoted;
@@ -755,6 +934,27 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * evict entries, rejecting the given candidate instead of the least-recently used entry if the candidate is accessed
+     * less frequently than the entry it would displace
+     *
+     * @param now       the access time
+     * @param candidate the entry that was just inserted
+     */
+    private void evict(long now, Entry<K, V> candidate) {
+        assert lruLock.isHeldByCurrentThread();
+
+        while (tail != null && shouldPrune(tail, now)) {
+            final Entry<K, V> victim = tail;
+            if (candidate.state == State.EXISTING && candidate != victim && isExpired(victim, now) == false
+                && frequencySketch.frequency(candidate.key.hashCode()) < frequencySketch.frequency(victim.key.hashCode())) {
+                evictEntry(candidate);
+            } else {
+                evictEntry(victim);
+            }
+        }
+    }
+
     private void evictEntry(Entry<K, V> entry) {
         assert lruLock.isHeldByCurrentThread();
 
@@ -30,6 +30,8 @@ public class CacheBuilder<K, V> {
     private long expireAfterWriteNanos = -1;
     private ToLongBiFunction<K, V> weigher;
     private RemovalListener<K, V> removalListener;
+    private boolean accessBuffering;
+    private boolean frequencyAdmission;
 
     public static <K, V> CacheBuilder<K, V> builder() {
         return new CacheBuilder<>();
@@ -90,6 +92,24 @@ public class CacheBuilder<K, V> {
         return this;
     }
 
+    /**
+     * Sets whether cache hits are recorded in buffers that are applied to the LRU list in batches, rather than promoting the entry
+     * under a global lock on every hit. This reduces contention on read-heavy caches at the cost of an approximate LRU order.
+     */
+    public CacheBuilder<K, V> setAccessBuffering(boolean accessBuffering) {
+        this.accessBuffering = accessBuffering;
+        return this;
+    }
+
+    /**
+     * Sets whether inserted entries are only admitted if they are estimated to be accessed at least as frequently as the entries
+     * they would evict. This protects frequently accessed entries from being evicted by a burst of entries that are used once.
+     */
+    public CacheBuilder<K, V> setFrequencyAdmission(boolean frequencyAdmission) {
+        this.frequencyAdmission = frequencyAdmission;
+        return this;
+    }
+
     public Cache<K, V> build() {
         Cache<K, V> cache = new Cache<>();
         if (maximumWeight != -1) {
@@ -107,6 +127,12 @@ public class CacheBuilder<K, V> {
         if (removalListener != null) {
             cache.setRemovalListener(removalListener);
         }
+        if (accessBuffering) {
+            cache.setAccessBuffering(true);
+        }
+        if (frequencyAdmission) {
+            cache.setFrequencyAdmission(true);
+        }
         return cache;
     }
 }
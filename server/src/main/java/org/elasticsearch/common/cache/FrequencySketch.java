@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.cache;
+
+/**
+ * A count-min sketch estimating how often keys were accessed recently.
+ * <p>
+ * Each key is mapped to four 4-bit counters spread over a table of longs, and its frequency is the minimum of these
+ * counters, so the estimate can be too high but never too low. Once the number of recorded accesses reaches ten times
+ * the size of the table all counters are halved, so that the sketch favours recent accesses over old ones.
+ * <p>
+ * This class is not thread-safe, {@link Cache} only uses it while holding the LRU lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = new long[] { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MIN_TABLE_SIZE = 1 << 8;
+    private static final int MAX_TABLE_SIZE = 1 << 20;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch() {
+        allocate(MIN_TABLE_SIZE);
+    }
+
+    private void allocate(int tableSize) {
+        table = new long[tableSize];
+        tableMask = tableSize - 1;
+        sampleSize = 10 * tableSize;
+        size = 0;
+    }
+
+    /**
+     * Grows the sketch so that it can accurately track the given number of keys. Growing discards the recorded frequencies.
+     */
+    void ensureCapacity(int expectedKeys) {
+        if (expectedKeys > table.length && table.length < MAX_TABLE_SIZE) {
+            final int tableSize = Math.min(MAX_TABLE_SIZE, Integer.highestOneBit(expectedKeys - 1) << 1);
+            allocate(tableSize);
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent accesses to the key with the given hash code, between {@code 0} and {@code 15}.
+     */
+    int frequency(int hashCode) {
+        final int hash = spread(hashCode);
+        final int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final int index = indexOf(hash, i);
+            final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access to the key with the given hash code.
+     */
+    void increment(int hashCode) {
+        final int hash = spread(hashCode);
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xFL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int oddCounters = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCounters += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (oddCounters >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
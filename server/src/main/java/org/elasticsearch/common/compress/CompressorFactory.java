@@ -34,19 +34,40 @@ public class CompressorFactory {
 
     public static final Compressor COMPRESSOR = new DeflateCompressor();
 
+    public static final Compressor LZ4_COMPRESSOR = new LZ4Compressor();
+
+    private static final Compressor[] COMPRESSORS = new Compressor[] { COMPRESSOR, LZ4_COMPRESSOR };
+
+    /**
+     * Returns the compressor for the given scheme name, either {@code deflate} or {@code lz4}.
+     * @throws IllegalArgumentException if the scheme is unknown
+     */
+    public static Compressor compressorForScheme(String scheme) {
+        switch (scheme) {
+            case "deflate":
+                return COMPRESSOR;
+            case "lz4":
+                return LZ4_COMPRESSOR;
+            default:
+                throw new IllegalArgumentException("unknown compression scheme [" + scheme + "], must be one of [deflate, lz4]");
+        }
+    }
+
     public static boolean isCompressed(BytesReference bytes) {
         return compressor(bytes) != null;
     }
 
     @Nullable
     public static Compressor compressor(BytesReference bytes) {
-            if (COMPRESSOR.isCompressed(bytes)) {
+        for (Compressor compressor : COMPRESSORS) {
+            if (compressor.isCompressed(bytes)) {
                 // bytes should be either detected as compressed or as xcontent,
                 // if we have bytes that can be either detected as compressed or
                 // as a xcontent, we have a problem
                 assert XContentHelper.xContentType(bytes) == null;
-                return COMPRESSOR;
+                return compressor;
             }
+        }
 
         XContentType contentType = XContentHelper.xContentType(bytes);
         if (contentType == null) {
@@ -0,0 +1,214 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure-java implementation of the LZ4 block format. This favours speed over compression ratio: matches are
+ * found through a single-entry hash table and literals are copied as-is, which makes it considerably cheaper
+ * on CPU than DEFLATE at the cost of larger outputs.
+ */
+final class LZ4 {
+
+    static final int MIN_MATCH = 4;
+    static final int HASH_LOG = 12;
+    static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+    static final int MAX_DISTANCE = (1 << 16) - 1;
+    // the last match must start at least MF_LIMIT bytes before the end of the input
+    private static final int MF_LIMIT = 12;
+    // the last LAST_LITERALS bytes of the input are always encoded as literals
+    private static final int LAST_LITERALS = 5;
+
+    private LZ4() {}
+
+    /**
+     * Returns the maximum number of bytes that compressing {@code length} bytes may produce.
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    private static int readInt(byte[] buf, int i) {
+        return ((buf[i] & 0xFF) << 24) | ((buf[i + 1] & 0xFF) << 16) | ((buf[i + 2] & 0xFF) << 8) | (buf[i + 3] & 0xFF);
+    }
+
+    private static int hash(int i) {
+        return (i * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    /**
+     * Compresses {@code len} bytes of {@code src} starting at {@code off} into {@code dest} which must have room for
+     * at least {@link #maxCompressedLength(int)} bytes. The {@code hashTable} must have {@link #HASH_TABLE_SIZE} entries
+     * and may be reused across calls. Returns the number of bytes written to {@code dest}.
+     */
+    static int compress(byte[] src, int off, int len, byte[] dest, int dOff, int[] hashTable) {
+        final int end = off + len;
+        int sOff = off;
+        int anchor = off;
+        int d = dOff;
+        if (len > MF_LIMIT) {
+            Arrays.fill(hashTable, -1);
+            final int limit = end - MF_LIMIT;
+            final int matchLimit = end - LAST_LITERALS;
+            while (sOff < limit) {
+                final int h = hash(readInt(src, sOff));
+                int ref = hashTable[h];
+                hashTable[h] = sOff;
+                if (ref < off || sOff - ref > MAX_DISTANCE || readInt(src, ref) != readInt(src, sOff)) {
+                    ++sOff;
+                    continue;
+                }
+                // extend the match backwards as long as this doesn't eat into the previous sequence
+                while (sOff > anchor && ref > off && src[sOff - 1] == src[ref - 1]) {
+                    --sOff;
+                    --ref;
+                }
+                int matchLen = MIN_MATCH;
+                while (sOff + matchLen < matchLimit && src[ref + matchLen] == src[sOff + matchLen]) {
+                    ++matchLen;
+                }
+                d = writeSequence(src, anchor, sOff - anchor, sOff - ref, matchLen, dest, d);
+                sOff += matchLen;
+                anchor = sOff;
+            }
+        }
+        d = writeLastLiterals(src, anchor, end - anchor, dest, d);
+        return d - dOff;
+    }
+
+    private static int writeLength(int length, byte[] dest, int d) {
+        while (length >= 0xFF) {
+            dest[d++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        dest[d++] = (byte) length;
+        return d;
+    }
+
+    private static int writeSequence(byte[] src, int anchor, int literalLen, int offset, int matchLen, byte[] dest, int d) {
+        final int tokenOff = d++;
+        int token;
+        if (literalLen >= 0x0F) {
+            token = 0x0F << 4;
+            d = writeLength(literalLen - 0x0F, dest, d);
+        } else {
+            token = literalLen << 4;
+        }
+        System.arraycopy(src, anchor, dest, d, literalLen);
+        d += literalLen;
+        dest[d++] = (byte) offset;
+        dest[d++] = (byte) (offset >>> 8);
+        final int extraMatchLen = matchLen - MIN_MATCH;
+        if (extraMatchLen >= 0x0F) {
+            token |= 0x0F;
+            d = writeLength(extraMatchLen - 0x0F, dest, d);
+        } else {
+            token |= extraMatchLen;
+        }
+        dest[tokenOff] = (byte) token;
+        return d;
+    }
+
+    private static int writeLastLiterals(byte[] src, int anchor, int literalLen, byte[] dest, int d) {
+        if (literalLen >= 0x0F) {
+            dest[d++] = (byte) (0x0F << 4);
+            d = writeLength(literalLen - 0x0F, dest, d);
+        } else {
+            dest[d++] = (byte) (literalLen << 4);
+        }
+        System.arraycopy(src, anchor, dest, d, literalLen);
+        return d + literalLen;
+    }
+
+    /**
+     * Decompresses {@code len} bytes of {@code src} starting at {@code off} into {@code dest}, which has room for
+     * {@code destLen} bytes starting at {@code dOff}. Returns the number of decompressed bytes.
+     *
+     * @throws IOException if the compressed data is corrupt
+     */
+    static int decompress(byte[] src, int off, int len, byte[] dest, int dOff, int destLen) throws IOException {
+        final int sEnd = off + len;
+        final int dEnd = dOff + destLen;
+        int s = off;
+        int d = dOff;
+        while (s < sEnd) {
+            final int token = src[s++] & 0xFF;
+            int literalLen = token >>> 4;
+            if (literalLen == 0x0F) {
+                int b;
+                do {
+                    if (s >= sEnd) {
+                        throw new CorruptedLZ4Exception("truncated literal length");
+                    }
+                    b = src[s++] & 0xFF;
+                    literalLen += b;
+                } while (b == 0xFF);
+            }
+            if (literalLen > sEnd - s || literalLen > dEnd - d) {
+                throw new CorruptedLZ4Exception("literals out of bounds");
+            }
+            System.arraycopy(src, s, dest, d, literalLen);
+            s += literalLen;
+            d += literalLen;
+            if (s == sEnd) {
+                // the last sequence only has literals
+                break;
+            }
+            if (sEnd - s < 2) {
+                throw new CorruptedLZ4Exception("truncated match offset");
+            }
+            final int offset = (src[s++] & 0xFF) | ((src[s++] & 0xFF) << 8);
+            int matchLen = token & 0x0F;
+            if (matchLen == 0x0F) {
+                int b;
+                do {
+                    if (s >= sEnd) {
+                        throw new CorruptedLZ4Exception("truncated match length");
+                    }
+                    b = src[s++] & 0xFF;
+                    matchLen += b;
+                } while (b == 0xFF);
+            }
+            matchLen += MIN_MATCH;
+            final int ref = d - offset;
+            if (offset == 0 || ref < dOff || matchLen > dEnd - d) {
+                throw new CorruptedLZ4Exception("match out of bounds");
+            }
+            if (offset >= matchLen) {
+                System.arraycopy(dest, ref, dest, d, matchLen);
+            } else {
+                // overlapping copy, needs to be done byte by byte
+                for (int i = 0; i < matchLen; ++i) {
+                    dest[d + i] = dest[ref + i];
+                }
+            }
+            d += matchLen;
+        }
+        return d - dOff;
+    }
+
+    static final class CorruptedLZ4Exception extends IOException {
+        CorruptedLZ4Exception(String message) {
+            super("corrupted LZ4 block: " + message);
+        }
+    }
+}
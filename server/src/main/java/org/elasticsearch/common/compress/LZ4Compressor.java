@@ -0,0 +1,276 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.compress;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * {@link Compressor} implementation based on the LZ4 block format. It compresses less than {@link DeflateCompressor}
+ * but is several times cheaper on CPU, which makes it a better fit for latency-sensitive paths like the transport layer.
+ *
+ * The stream is made of the header followed by a sequence of blocks of at most {@link #BLOCK_SIZE} uncompressed bytes.
+ * Each block starts with its uncompressed and stored lengths as big-endian ints. Blocks that do not compress are stored
+ * as-is, in which case both lengths are equal. A block with an uncompressed length of {@code 0} marks the end of the stream.
+ */
+public class LZ4Compressor implements Compressor {
+
+    // An arbitrary header that we use to identify compressed streams
+    // It needs to be different from other compressors and to not be specific
+    // enough so that no stream starting with these bytes could be detected as
+    // a XContent
+    private static final byte[] HEADER = new byte[]{'L', 'Z', '4', '\0'};
+    // Large enough to find matches across typical documents, small enough to
+    // keep the per-stream buffers cheap
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    @Override
+    public boolean isCompressed(BytesReference bytes) {
+        if (bytes.length() < HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < HEADER.length; ++i) {
+            if (bytes.get(i) != HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public StreamInput streamInput(StreamInput in) throws IOException {
+        final byte[] headerBytes = new byte[HEADER.length];
+        final int len = Streams.readFully(in, headerBytes, 0, headerBytes.length);
+        if (len != HEADER.length || Arrays.equals(headerBytes, HEADER) == false) {
+            throw new IllegalArgumentException("Input stream is not compressed with LZ4!");
+        }
+        return new InputStreamStreamInput(new LZ4BlockInputStream(in));
+    }
+
+    @Override
+    public StreamOutput streamOutput(StreamOutput out) throws IOException {
+        out.writeBytes(HEADER);
+        return new OutputStreamStreamOutput(new LZ4BlockOutputStream(out));
+    }
+
+    private static final class LZ4BlockOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[LZ4.maxCompressedLength(BLOCK_SIZE)];
+        private final int[] hashTable = new int[LZ4.HASH_TABLE_SIZE];
+        private int count;
+        private boolean closed;
+
+        LZ4BlockOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeBlock();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeBlock();
+                }
+                final int toCopy = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, toCopy);
+                count += toCopy;
+                off += toCopy;
+                len -= toCopy;
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            final int compressedLength = LZ4.compress(buffer, 0, count, compressed, 0, hashTable);
+            writeInt(count);
+            if (compressedLength < count) {
+                writeInt(compressedLength);
+                out.write(compressed, 0, compressedLength);
+            } else {
+                // not worth compressing, store the raw bytes
+                writeInt(count);
+                out.write(buffer, 0, count);
+            }
+            count = 0;
+        }
+
+        private void writeInt(int i) throws IOException {
+            out.write(i >>> 24);
+            out.write(i >>> 16);
+            out.write(i >>> 8);
+            out.write(i);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeBlock();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeBlock();
+                // end of stream marker
+                writeInt(0);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static final class LZ4BlockInputStream extends InputStream {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[LZ4.maxCompressedLength(BLOCK_SIZE)];
+        private int position;
+        private int limit;
+        private boolean eos;
+
+        LZ4BlockInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && readBlock() == false) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && readBlock() == false) {
+                return -1;
+            }
+            final int toCopy = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, toCopy);
+            position += toCopy;
+            return toCopy;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                if (position == limit && readBlock() == false) {
+                    break;
+                }
+                final int toSkip = (int) Math.min(n - skipped, limit - position);
+                position += toSkip;
+                skipped += toSkip;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        private boolean readBlock() throws IOException {
+            if (eos) {
+                return false;
+            }
+            final int first = in.read();
+            if (first == -1) {
+                // the writer always ends the stream with a marker, so the stream was truncated right after a block
+                throw new EOFException("unexpected end of LZ4 stream, missing end of stream marker");
+            }
+            final int length = (first << 24) | readInt(3);
+            if (length == 0) {
+                eos = true;
+                return false;
+            }
+            if (length < 0 || length > BLOCK_SIZE) {
+                throw new LZ4.CorruptedLZ4Exception("invalid block length [" + length + "]");
+            }
+            final int storedLength = readInt(4);
+            if (storedLength <= 0 || storedLength > length) {
+                throw new LZ4.CorruptedLZ4Exception("invalid stored length [" + storedLength + "] for block of [" + length + "] bytes");
+            }
+            if (storedLength == length) {
+                readFully(buffer, storedLength);
+            } else {
+                readFully(compressed, storedLength);
+                final int decompressed = LZ4.decompress(compressed, 0, storedLength, buffer, 0, length);
+                if (decompressed != length) {
+                    throw new LZ4.CorruptedLZ4Exception("expected [" + length + "] bytes but got [" + decompressed + "]");
+                }
+            }
+            position = 0;
+            limit = length;
+            return true;
+        }
+
+        private int readInt(int numBytes) throws IOException {
+            int i = 0;
+            for (int j = 0; j < numBytes; ++j) {
+                final int b = in.read();
+                if (b == -1) {
+                    throw new EOFException("unexpected end of LZ4 stream");
+                }
+                i = (i << 8) | b;
+            }
+            return i;
+        }
+
+        private void readFully(byte[] b, int len) throws IOException {
+            if (Streams.readFully(in, b, 0, len) != len) {
+                throw new EOFException("unexpected end of LZ4 stream");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
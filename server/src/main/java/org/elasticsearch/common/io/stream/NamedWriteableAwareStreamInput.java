@@ -19,6 +19,8 @@
 
 package org.elasticsearch.common.io.stream;
 
+import org.elasticsearch.common.bytes.BytesReference;
+
 import java.io.IOException;
 
 /**
@@ -52,4 +54,10 @@ public class NamedWriteableAwareStreamInput extends FilterStreamInput {
             + "] than it was read from [" + name + "].";
         return c;
     }
+
+    @Override
+    public BytesReference readReleasableBytesReference() throws IOException {
+        // this stream doesn't transform the bytes it reads, so slices of the delegate's buffers are safe to return
+        return delegate.readReleasableBytesReference();
+    }
 }
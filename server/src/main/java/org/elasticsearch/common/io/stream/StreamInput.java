@@ -147,6 +147,24 @@ public abstract class StreamInput extends InputStream {
         return readBytesReference(length);
     }
 
+    /**
+     * Reads a bytes reference from this stream that may be a slice of the buffers this stream reads from rather than a copy, if the stream
+     * supports it. Such a slice is only valid as long as the owner of these buffers retains them, for instance until the response to the
+     * transport request it was read from is sent, so this must only be used by objects that don't outlive this owner. By default the
+     * bytes are copied like {@link #readBytesReference()} does.
+     */
+    public BytesReference readReleasableBytesReference() throws IOException {
+        int length = readArraySize();
+        return readReleasableBytesReference(length);
+    }
+
+    /**
+     * Reads a bytes reference of the given length, see {@link #readReleasableBytesReference()}.
+     */
+    protected BytesReference readReleasableBytesReference(int length) throws IOException {
+        return readBytesReference(length);
+    }
+
     /**
      * Reads an optional bytes reference from this stream. It might hold an actual reference to the underlying bytes of the stream. Use this
      * only if you must differentiate null from empty. Use {@link StreamInput#readBytesReference()} and
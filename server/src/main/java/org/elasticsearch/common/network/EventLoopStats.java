@@ -0,0 +1,166 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.network;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The activity of one of the event loop threads of a network transport, so that a thread that handles more than its
+ * share of the traffic can be spotted. The busy time and the transferred bytes are totals since the transport was
+ * started, while the busy percentage and the bytes per second are measured over the last second or so.
+ */
+public class EventLoopStats implements Writeable, ToXContentObject {
+
+    private final String name;
+    private final int channels;
+    private final int queuedWrites;
+    private final long busyTimeNanos;
+    private final double load;
+    private final long rxSize;
+    private final long txSize;
+    private final long bytesPerSecond;
+
+    public EventLoopStats(@Nullable String name, int channels, int queuedWrites, long busyTimeNanos, double load, long rxSize,
+                          long txSize, long bytesPerSecond) {
+        this.name = name;
+        this.channels = channels;
+        this.queuedWrites = queuedWrites;
+        this.busyTimeNanos = busyTimeNanos;
+        this.load = load;
+        this.rxSize = rxSize;
+        this.txSize = txSize;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public EventLoopStats(StreamInput in) throws IOException {
+        name = in.readOptionalString();
+        channels = in.readVInt();
+        queuedWrites = in.readVInt();
+        busyTimeNanos = in.readVLong();
+        load = in.readDouble();
+        rxSize = in.readVLong();
+        txSize = in.readVLong();
+        bytesPerSecond = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeOptionalString(name);
+        out.writeVInt(channels);
+        out.writeVInt(queuedWrites);
+        out.writeVLong(busyTimeNanos);
+        out.writeDouble(load);
+        out.writeVLong(rxSize);
+        out.writeVLong(txSize);
+        out.writeVLong(bytesPerSecond);
+    }
+
+    /**
+     * The name of the event loop thread.
+     */
+    @Nullable
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of channels that the event loop handles.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * The number of writes that are waiting to be picked up by the event loop.
+     */
+    public int getQueuedWrites() {
+        return queuedWrites;
+    }
+
+    /**
+     * The total time the event loop spent handling events rather than waiting for them.
+     */
+    public TimeValue getBusyTime() {
+        return new TimeValue(busyTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The fraction of the last second that the event loop spent handling events, between 0 and 1.
+     */
+    public double getLoad() {
+        return load;
+    }
+
+    public ByteSizeValue getRxSize() {
+        return new ByteSizeValue(rxSize);
+    }
+
+    public ByteSizeValue getTxSize() {
+        return new ByteSizeValue(txSize);
+    }
+
+    /**
+     * The number of bytes received and sent per second over the last second.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        if (name != null) {
+            builder.field(Fields.NAME, name);
+        }
+        builder.field(Fields.CHANNELS, channels);
+        builder.field(Fields.QUEUED_WRITES, queuedWrites);
+        builder.humanReadableField(Fields.BUSY_TIME_IN_MILLIS, Fields.BUSY_TIME, getBusyTime());
+        builder.field(Fields.BUSY_PERCENT, Math.round(load * 100));
+        builder.humanReadableField(Fields.RX_SIZE_IN_BYTES, Fields.RX_SIZE, getRxSize());
+        builder.humanReadableField(Fields.TX_SIZE_IN_BYTES, Fields.TX_SIZE, getTxSize());
+        builder.field(Fields.BYTES_PER_SECOND, bytesPerSecond);
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final String NAME = "name";
+        static final String CHANNELS = "channels";
+        static final String QUEUED_WRITES = "queued_writes";
+        static final String BUSY_TIME = "busy_time";
+        static final String BUSY_TIME_IN_MILLIS = "busy_time_in_millis";
+        static final String BUSY_PERCENT = "busy_percent";
+        static final String RX_SIZE = "rx_size";
+        static final String RX_SIZE_IN_BYTES = "rx_size_in_bytes";
+        static final String TX_SIZE = "tx_size";
+        static final String TX_SIZE_IN_BYTES = "tx_size_in_bytes";
+        static final String BYTES_PER_SECOND = "bytes_per_second";
+    }
+}
@@ -28,6 +28,7 @@ import org.joda.time.DateTimeZone;
 import org.joda.time.IllegalInstantException;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -54,6 +55,28 @@ public abstract class Rounding implements Writeable {
      */
     public abstract long nextRoundingValue(long value);
 
+    /**
+     * Prepares a rounding of the values between {@code minUtcMillis} and {@code maxUtcMillis}, usually the minimum and maximum
+     * values of a field on a shard. The prepared rounding returns the same values as {@link #round(long)}, but the offset
+     * transitions of the time zone in the range are computed once rather than for every value, so that most values are rounded
+     * with a constant offset. Values outside of the range are rounded with {@link #round(long)}.
+     */
+    public Prepared prepare(long minUtcMillis, long maxUtcMillis) {
+        return this::round;
+    }
+
+    /**
+     * A rounding that is prepared for a range of values, see {@link #prepare(long, long)}.
+     */
+    @FunctionalInterface
+    public interface Prepared {
+
+        /**
+         * Rounds the given value.
+         */
+        long round(long utcMillis);
+    }
+
     @Override
     public abstract boolean equals(Object obj);
 
@@ -106,6 +129,98 @@ public abstract class Rounding implements Writeable {
         }
     }
 
+    /**
+     * @return The latest timestamp T which is strictly before utcMillis
+     * and such that timeZone.getOffset(T) != timeZone.getOffset(utcMillis).
+     * If there is no such T, returns Long.MAX_VALUE.
+     */
+    static long previousOffsetTransition(DateTimeZone timeZone, long utcMillis) {
+        final int offsetAtInputTime = timeZone.getOffset(utcMillis);
+        do {
+            // Some timezones have transitions that do not change the offset, so we have to
+            // repeatedly call previousTransition until a nontrivial transition is found.
+
+            long previousTransition = timeZone.previousTransition(utcMillis);
+            if (previousTransition == utcMillis) {
+                // There are no earlier transitions
+                return Long.MAX_VALUE;
+            }
+            assert previousTransition < utcMillis; // Progress was made
+            utcMillis = previousTransition;
+        } while (timeZone.getOffset(utcMillis) == offsetAtInputTime);
+
+        return utcMillis;
+    }
+
+    /**
+     * The periods of constant offset of a time zone that overlap a range of values, sorted by start.
+     */
+    static final class OffsetPeriods {
+
+        // a range of values that has more offset changes than this is not prepared
+        static final int MAX_PERIODS = 1024;
+
+        // starts[i] is the first timestamp with offsets[i], the offset of the period ends at starts[i + 1]
+        final long[] starts;
+        final int[] offsets;
+        // the offset before the first period
+        final int offsetBefore;
+
+        private OffsetPeriods(long[] starts, int[] offsets, int offsetBefore) {
+            this.starts = starts;
+            this.offsets = offsets;
+            this.offsetBefore = offsetBefore;
+        }
+
+        /**
+         * Returns the periods of constant offset that overlap the given range, or <code>null</code> if there are too many.
+         */
+        static OffsetPeriods build(DateTimeZone timeZone, long minUtcMillis, long maxUtcMillis) {
+            final long[] starts = new long[MAX_PERIODS];
+            final int[] offsets = new int[MAX_PERIODS];
+            final long previousTransition = previousOffsetTransition(timeZone, minUtcMillis);
+            starts[0] = previousTransition == Long.MAX_VALUE ? Long.MIN_VALUE : previousTransition + 1;
+            offsets[0] = timeZone.getOffset(minUtcMillis);
+            final int offsetBefore = previousTransition == Long.MAX_VALUE ? offsets[0] : timeZone.getOffset(previousTransition);
+            int count = 1;
+            long utcMillis = minUtcMillis;
+            while (true) {
+                final long nextTransition = timeZone.nextTransition(utcMillis);
+                if (nextTransition <= utcMillis || nextTransition > maxUtcMillis) {
+                    break;
+                }
+                utcMillis = nextTransition;
+                final int offset = timeZone.getOffset(nextTransition);
+                if (offset == offsets[count - 1]) {
+                    // some transitions only change the name of the time zone
+                    continue;
+                }
+                if (count == MAX_PERIODS) {
+                    return null;
+                }
+                starts[count] = nextTransition;
+                offsets[count] = offset;
+                count++;
+            }
+            return new OffsetPeriods(Arrays.copyOf(starts, count), Arrays.copyOf(offsets, count), offsetBefore);
+        }
+
+        /**
+         * Returns the index of the period that contains the given timestamp, which must not be before the start of the first period.
+         */
+        int indexOf(long utcMillis) {
+            if (starts.length == 1) {
+                return 0;
+            }
+            final int index = Arrays.binarySearch(starts, utcMillis);
+            return index >= 0 ? index : -2 - index;
+        }
+
+        int previousOffset(int index) {
+            return index == 0 ? offsetBefore : offsets[index - 1];
+        }
+    }
+
     static class TimeUnitRounding extends Rounding {
 
         static final byte ID = 1;
@@ -134,27 +249,8 @@ public abstract class Rounding implements Writeable {
             return ID;
         }
 
-        /**
-         * @return The latest timestamp T which is strictly before utcMillis
-         * and such that timeZone.getOffset(T) != timeZone.getOffset(utcMillis).
-         * If there is no such T, returns Long.MAX_VALUE.
-         */
         private long previousTransition(long utcMillis) {
-            final int offsetAtInputTime = timeZone.getOffset(utcMillis);
-            do {
-                // Some timezones have transitions that do not change the offset, so we have to
-                // repeatedly call previousTransition until a nontrivial transition is found.
-
-                long previousTransition = timeZone.previousTransition(utcMillis);
-                if (previousTransition == utcMillis) {
-                    // There are no earlier transitions
-                    return Long.MAX_VALUE;
-                }
-                assert previousTransition < utcMillis; // Progress was made
-                utcMillis = previousTransition;
-            } while (timeZone.getOffset(utcMillis) == offsetAtInputTime);
-
-            return utcMillis;
+            return previousOffsetTransition(timeZone, utcMillis);
         }
 
         @Override
@@ -232,6 +328,36 @@ public abstract class Rounding implements Writeable {
             }
         }
 
+        @Override
+        public Prepared prepare(long minUtcMillis, long maxUtcMillis) {
+            if (timeZone.isFixed() || minUtcMillis > maxUtcMillis) {
+                return this::round;
+            }
+            final long minRounded = round(minUtcMillis);
+            final OffsetPeriods periods = OffsetPeriods.build(timeZone, minRounded, maxUtcMillis);
+            if (periods == null) {
+                return this::round;
+            }
+            final DateTimeField utcField = unit.field(DateTimeZone.UTC);
+            return utcMillis -> {
+                if (utcMillis < minRounded || utcMillis > maxUtcMillis) {
+                    return round(utcMillis);
+                }
+                final int index = periods.indexOf(utcMillis);
+                final int offset = periods.offsets[index];
+                final long rounded = utcField.roundFloor(utcMillis + offset) - offset;
+                if (rounded < periods.starts[index]) {
+                    // the rounded value is before the last offset transition
+                    return round(utcMillis);
+                }
+                if (unitRoundsToMidnight && rounded + offset - periods.previousOffset(index) < periods.starts[index]) {
+                    // the day has two midnights and the earlier one has the previous offset, see round()
+                    return round(utcMillis);
+                }
+                return rounded;
+            };
+        }
+
         @Override
         public long nextRoundingValue(long utcMillis) {
             long floor = round(utcMillis);
@@ -324,6 +450,31 @@ public abstract class Rounding implements Writeable {
             return roundedUTC;
         }
 
+        @Override
+        public Prepared prepare(long minUtcMillis, long maxUtcMillis) {
+            if (timeZone.isFixed() || minUtcMillis > maxUtcMillis) {
+                return this::round;
+            }
+            final long minRounded = round(minUtcMillis);
+            final OffsetPeriods periods = OffsetPeriods.build(timeZone, minRounded, maxUtcMillis);
+            if (periods == null) {
+                return this::round;
+            }
+            return utcMillis -> {
+                if (utcMillis < minRounded || utcMillis > maxUtcMillis) {
+                    return round(utcMillis);
+                }
+                final int index = periods.indexOf(utcMillis);
+                final int offset = periods.offsets[index];
+                final long rounded = roundKey(utcMillis + offset, interval) * interval - offset;
+                if (rounded < periods.starts[index]) {
+                    // the rounded value is before the last offset transition
+                    return round(utcMillis);
+                }
+                return rounded;
+            };
+        }
+
         private static long roundKey(long value, long interval) {
             if (value < 0) {
                 return (value - interval + 1) / interval;
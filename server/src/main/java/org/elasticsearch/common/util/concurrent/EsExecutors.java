@@ -25,6 +25,12 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.node.Node;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
@@ -192,6 +198,25 @@ public class EsExecutors {
         return new EsThreadFactory(namePrefix);
     }
 
+    /**
+     * Returns {@code true} if this JVM can run tasks on virtual threads, see {@link #virtualThreadFactory(String)}.
+     */
+    public static boolean supportsVirtualThreads() {
+        return VirtualThreadFactory.FACTORY != null;
+    }
+
+    /**
+     * Returns a factory of virtual threads, which are scheduled by the JVM on a small number of carrier threads and are cheap to block
+     * on I/O, or {@code null} if this JVM does not support virtual threads. The threads are named like the ones of
+     * {@link #daemonThreadFactory(String)} and run their tasks with the permissions of the caller of this method.
+     */
+    public static ThreadFactory virtualThreadFactory(String namePrefix) {
+        if (supportsVirtualThreads() == false) {
+            return null;
+        }
+        return new VirtualThreadFactory(namePrefix, AccessController.getContext());
+    }
+
     static class EsThreadFactory implements ThreadFactory {
 
         final ThreadGroup group;
@@ -216,6 +241,56 @@ public class EsExecutors {
 
     }
 
+    static class VirtualThreadFactory implements ThreadFactory {
+
+        // Thread.ofVirtual().factory(), looked up reflectively as virtual threads require a newer JVM than the one we compile against
+        private static final MethodHandle FACTORY = lookupVirtualThreadFactory();
+
+        private static MethodHandle lookupVirtualThreadFactory() {
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                final Class<?> virtualBuilderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                final MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(virtualBuilderClass));
+                final MethodHandle factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+                final MethodHandle virtualThreadFactory = MethodHandles.filterReturnValue(ofVirtual,
+                    factory.asType(MethodType.methodType(ThreadFactory.class, virtualBuilderClass)));
+                // JVMs that only preview virtual threads refuse to create them unless previews are enabled
+                ((ThreadFactory) virtualThreadFactory.invoke()).newThread(() -> {});
+                return virtualThreadFactory;
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        final String namePrefix;
+        final ThreadFactory delegate;
+        final AccessControlContext context;
+
+        VirtualThreadFactory(String namePrefix, AccessControlContext context) {
+            this.namePrefix = namePrefix;
+            this.context = context;
+            try {
+                this.delegate = (ThreadFactory) FACTORY.invoke();
+            } catch (Throwable t) {
+                throw new IllegalStateException("failed to create a factory of virtual threads", t);
+            }
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            // virtual threads do not inherit the permissions of the thread that creates them, unlike platform threads
+            final Thread t = delegate.newThread(() -> AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                r.run();
+                return null;
+            }, context));
+            t.setName(namePrefix + "[V#" + threadNumber.getAndIncrement() + "]");
+            return t;
+        }
+
+    }
+
     /**
      * Cannot instantiate.
      */
@@ -0,0 +1,35 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent;
+
+import java.util.Iterator;
+
+/**
+ * An object that can render its x-content one fragment at a time, so that a large response can be sent to the client while it is
+ * being rendered instead of being rendered in full first. Rendering all the fragments in order to the same builder produces the same
+ * x-content as rendering the whole object at once.
+ */
+public interface ChunkedToXContent {
+
+    /**
+     * Returns the fragments that make up the x-content of this object, in the order in which they must be rendered.
+     */
+    Iterator<? extends ToXContent> toXContentChunked();
+}
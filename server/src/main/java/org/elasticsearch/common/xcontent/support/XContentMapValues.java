@@ -25,11 +25,15 @@ import org.apache.lucene.util.automaton.CharacterRunAutomaton;
 import org.apache.lucene.util.automaton.Operations;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.common.Booleans;
+import org.elasticsearch.common.CheckedBiConsumer;
 import org.elasticsearch.common.Numbers;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -37,6 +41,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
+import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
+
 public class XContentMapValues {
 
     /**
@@ -164,16 +170,55 @@ public class XContentMapValues {
      */
     public static Function<Map<String, ?>, Map<String, Object>> filter(String[] includes, String[] excludes) {
         CharacterRunAutomaton matchAllAutomaton = new CharacterRunAutomaton(Automata.makeAnyString());
+        CharacterRunAutomaton include = includeAutomaton(includes, matchAllAutomaton);
+        CharacterRunAutomaton exclude = excludeAutomaton(excludes);
+
+        // NOTE: We cannot use Operations.minus because of the special case that
+        // we want all sub properties to match as soon as an object matches
+
+        return (map) -> filter(map,
+            include, 0,
+            exclude, 0,
+            matchAllAutomaton);
+    }
+
+    /**
+     * Returns a function that filters the object a parser is positioned on, or about to read, based on the given include and
+     * exclude rules and writes the result to a builder. This applies the same rules as {@link #filter(Map, String[], String[])}
+     * but walks the parser's token stream rather than a map, so that properties are written in their original order and nothing
+     * is materialized for the properties that are filtered out. Objects and arrays that are entirely included are copied
+     * straight from the parser to the builder.
+     */
+    public static CheckedBiConsumer<XContentParser, XContentBuilder, IOException> streamingFilter(String[] includes, String[] excludes) {
+        CharacterRunAutomaton matchAllAutomaton = new CharacterRunAutomaton(Automata.makeAnyString());
+        CharacterRunAutomaton include = includeAutomaton(includes, matchAllAutomaton);
+        CharacterRunAutomaton exclude = excludeAutomaton(excludes);
 
-        CharacterRunAutomaton include;
+        return (parser, builder) -> {
+            XContentParser.Token token = parser.currentToken();
+            if (token == null) {
+                token = parser.nextToken();
+            }
+            ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser::getTokenLocation);
+            builder.startObject();
+            filter(parser, new PendingStarts(builder),
+                include, 0,
+                exclude, 0,
+                matchAllAutomaton);
+            builder.endObject();
+        };
+    }
+
+    private static CharacterRunAutomaton includeAutomaton(String[] includes, CharacterRunAutomaton matchAllAutomaton) {
         if (includes == null || includes.length == 0) {
-            include = matchAllAutomaton;
-        } else {
-            Automaton includeA = Regex.simpleMatchToAutomaton(includes);
-            includeA = makeMatchDotsInFieldNames(includeA);
-            include = new CharacterRunAutomaton(includeA);
+            return matchAllAutomaton;
         }
+        Automaton includeA = Regex.simpleMatchToAutomaton(includes);
+        includeA = makeMatchDotsInFieldNames(includeA);
+        return new CharacterRunAutomaton(includeA);
+    }
 
+    private static CharacterRunAutomaton excludeAutomaton(String[] excludes) {
         Automaton excludeA;
         if (excludes == null || excludes.length == 0) {
             excludeA = Automata.makeEmpty();
@@ -181,15 +226,7 @@ public class XContentMapValues {
             excludeA = Regex.simpleMatchToAutomaton(excludes);
             excludeA = makeMatchDotsInFieldNames(excludeA);
         }
-        CharacterRunAutomaton exclude = new CharacterRunAutomaton(excludeA);
-
-        // NOTE: We cannot use Operations.minus because of the special case that
-        // we want all sub properties to match as soon as an object matches
-
-        return (map) -> filter(map,
-            include, 0,
-            exclude, 0,
-            matchAllAutomaton);
+        return new CharacterRunAutomaton(excludeA);
     }
 
     /** Make matches on objects also match dots in field names.
@@ -314,6 +351,199 @@ public class XContentMapValues {
         return filtered;
     }
 
+    /**
+     * Streaming counterpart of {@link #filter(Map, CharacterRunAutomaton, int, CharacterRunAutomaton, int, CharacterRunAutomaton)},
+     * the parser must be positioned on the {@code START_OBJECT} token of the object to filter and is left on its {@code END_OBJECT}.
+     */
+    private static void filter(XContentParser parser, PendingStarts out,
+            CharacterRunAutomaton includeAutomaton, int initialIncludeState,
+            CharacterRunAutomaton excludeAutomaton, int initialExcludeState,
+            CharacterRunAutomaton matchAllAutomaton) throws IOException {
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            ensureExpectedToken(XContentParser.Token.FIELD_NAME, token, parser::getTokenLocation);
+            String key = parser.currentName();
+            token = parser.nextToken();
+
+            int includeState = step(includeAutomaton, key, initialIncludeState);
+            if (includeState == -1) {
+                parser.skipChildren();
+                continue;
+            }
+
+            int excludeState = step(excludeAutomaton, key, initialExcludeState);
+            if (excludeState != -1 && excludeAutomaton.isAccept(excludeState)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            CharacterRunAutomaton subIncludeAutomaton = includeAutomaton;
+            int subIncludeState = includeState;
+            if (includeAutomaton.isAccept(includeState)) {
+                if (excludeState == -1 || excludeAutomaton.step(excludeState, '.') == -1) {
+                    // the exclude has no chances to match inner properties
+                    out.field(key).copyCurrentStructure(parser);
+                    continue;
+                } else {
+                    // the object matched, so consider that the include matches every inner property
+                    // we only care about excludes now
+                    subIncludeAutomaton = matchAllAutomaton;
+                    subIncludeState = 0;
+                }
+            }
+
+            if (token == XContentParser.Token.START_OBJECT) {
+
+                subIncludeState = subIncludeAutomaton.step(subIncludeState, '.');
+                if (subIncludeState == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (excludeState != -1) {
+                    excludeState = excludeAutomaton.step(excludeState, '.');
+                }
+
+                out.startObject(key);
+                if (includeAutomaton.isAccept(includeState)) {
+                    // the object is kept even if all its properties are filtered out
+                    out.flush();
+                }
+                filter(parser, out,
+                        subIncludeAutomaton, subIncludeState, excludeAutomaton, excludeState, matchAllAutomaton);
+                out.end();
+
+            } else if (token == XContentParser.Token.START_ARRAY) {
+
+                out.startArray(key);
+                filterArray(parser, out,
+                        subIncludeAutomaton, subIncludeState, excludeAutomaton, excludeState, matchAllAutomaton);
+                out.end();
+
+            } else if (includeAutomaton.isAccept(includeState)) {
+
+                // leaf property
+                out.field(key).copyCurrentStructure(parser);
+
+            }
+        }
+    }
+
+    /**
+     * Streaming counterpart of {@link #filter(Iterable, CharacterRunAutomaton, int, CharacterRunAutomaton, int, CharacterRunAutomaton)},
+     * the parser must be positioned on the {@code START_ARRAY} token of the array to filter and is left on its {@code END_ARRAY}.
+     */
+    private static void filterArray(XContentParser parser, PendingStarts out,
+            CharacterRunAutomaton includeAutomaton, int initialIncludeState,
+            CharacterRunAutomaton excludeAutomaton, int initialExcludeState,
+            CharacterRunAutomaton matchAllAutomaton) throws IOException {
+        boolean isInclude = includeAutomaton.isAccept(initialIncludeState);
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token == XContentParser.Token.START_OBJECT) {
+                int includeState = includeAutomaton.step(initialIncludeState, '.');
+                if (includeState == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int excludeState = initialExcludeState;
+                if (excludeState != -1) {
+                    excludeState = excludeAutomaton.step(excludeState, '.');
+                }
+                out.startObject(null);
+                filter(parser, out,
+                        includeAutomaton, includeState, excludeAutomaton, excludeState, matchAllAutomaton);
+                out.end();
+            } else if (token == XContentParser.Token.START_ARRAY) {
+                out.startArray(null);
+                filterArray(parser, out,
+                        includeAutomaton, initialIncludeState, excludeAutomaton, initialExcludeState, matchAllAutomaton);
+                out.end();
+            } else if (isInclude) {
+                // #22557: only accept this array value if the key we are on is accepted:
+                out.value().copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    /**
+     * Objects and arrays that have been read from the parser but not written to the builder yet. Objects and arrays are only
+     * written once one of their inner values passes the filter, so that the ones that are left empty by the filter can be
+     * omitted like {@link #filter(Map, String[], String[])} does.
+     */
+    private static final class PendingStarts {
+
+        private final XContentBuilder builder;
+        // the field names of the pending objects and arrays, null for values of arrays
+        private final List<String> names = new ArrayList<>();
+        private final List<XContentParser.Token> tokens = new ArrayList<>();
+        // the open objects and arrays that have been written, not counting the root object
+        private final List<XContentParser.Token> written = new ArrayList<>();
+
+        PendingStarts(XContentBuilder builder) {
+            this.builder = builder;
+        }
+
+        void startObject(String name) {
+            names.add(name);
+            tokens.add(XContentParser.Token.START_OBJECT);
+        }
+
+        void startArray(String name) {
+            names.add(name);
+            tokens.add(XContentParser.Token.START_ARRAY);
+        }
+
+        /**
+         * Writes all pending objects and arrays.
+         */
+        void flush() throws IOException {
+            for (int i = 0; i < tokens.size(); i++) {
+                final String name = names.get(i);
+                if (name != null) {
+                    builder.field(name);
+                }
+                if (tokens.get(i) == XContentParser.Token.START_OBJECT) {
+                    builder.startObject();
+                } else {
+                    builder.startArray();
+                }
+                written.add(tokens.get(i));
+            }
+            names.clear();
+            tokens.clear();
+        }
+
+        /**
+         * Closes the innermost object or array, which is dropped if nothing was written to it.
+         */
+        void end() throws IOException {
+            if (tokens.isEmpty() == false) {
+                names.remove(names.size() - 1);
+                tokens.remove(tokens.size() - 1);
+            } else if (written.remove(written.size() - 1) == XContentParser.Token.START_OBJECT) {
+                builder.endObject();
+            } else {
+                builder.endArray();
+            }
+        }
+
+        /**
+         * Writes all pending objects and arrays followed by the given field name, and returns the builder to write its value.
+         */
+        XContentBuilder field(String name) throws IOException {
+            flush();
+            return builder.field(name);
+        }
+
+        /**
+         * Writes all pending objects and arrays, and returns the builder to write a value of the current array.
+         */
+        XContentBuilder value() throws IOException {
+            flush();
+            return builder;
+        }
+    }
+
     public static boolean isObject(Object node) {
         return node instanceof Map;
     }
@@ -20,6 +20,7 @@
 package org.elasticsearch.discovery;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.cluster.service.ClusterApplierStats;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -34,10 +35,13 @@ public class DiscoveryStats implements Writeable, ToXContentFragment {
 
     private final PendingClusterStateStats queueStats;
     private final PublishClusterStateStats publishStats;
+    private final ClusterApplierStats applierStats;
 
-    public DiscoveryStats(PendingClusterStateStats queueStats, PublishClusterStateStats publishStats) {
+    public DiscoveryStats(PendingClusterStateStats queueStats, PublishClusterStateStats publishStats,
+                          ClusterApplierStats applierStats) {
         this.queueStats = queueStats;
         this.publishStats = publishStats;
+        this.applierStats = applierStats;
     }
 
     public DiscoveryStats(StreamInput in) throws IOException {
@@ -48,6 +52,12 @@ public class DiscoveryStats implements Writeable, ToXContentFragment {
         } else {
             publishStats = null;
         }
+
+        if (in.getVersion().onOrAfter(Version.V_7_0_0)) {
+            applierStats = in.readOptionalWriteable(ClusterApplierStats::new);
+        } else {
+            applierStats = null;
+        }
     }
 
     @Override
@@ -57,6 +67,10 @@ public class DiscoveryStats implements Writeable, ToXContentFragment {
         if (out.getVersion().onOrAfter(Version.V_6_1_0)) {
             out.writeOptionalWriteable(publishStats);
         }
+
+        if (out.getVersion().onOrAfter(Version.V_7_0_0)) {
+            out.writeOptionalWriteable(applierStats);
+        }
     }
 
     @Override
@@ -68,6 +82,9 @@ public class DiscoveryStats implements Writeable, ToXContentFragment {
         if (publishStats != null) {
             publishStats.toXContent(builder, params);
         }
+        if (applierStats != null) {
+            applierStats.toXContent(builder, params);
+        }
         builder.endObject();
         return builder;
     }
@@ -83,4 +100,8 @@ public class DiscoveryStats implements Writeable, ToXContentFragment {
     public PublishClusterStateStats getPublishStats() {
         return publishStats;
     }
+
+    public ClusterApplierStats getApplierStats() {
+        return applierStats;
+    }
 }
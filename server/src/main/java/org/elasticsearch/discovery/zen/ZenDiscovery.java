@@ -406,7 +406,7 @@ public class ZenDiscovery extends AbstractLifecycleComponent implements Discover
 
     @Override
     public DiscoveryStats stats() {
-        return new DiscoveryStats(pendingStatesQueue.stats(), publishClusterState.stats());
+        return new DiscoveryStats(pendingStatesQueue.stats(), publishClusterState.stats(), clusterApplier.stats());
     }
 
     public DiscoverySettings getDiscoverySettings() {
@@ -22,18 +22,23 @@ package org.elasticsearch.http;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.network.CloseableChannel;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.rest.AbstractRestChannel;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -58,15 +63,25 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
     private final HttpHandlingSettings settings;
     private final ThreadContext threadContext;
     private final HttpChannel httpChannel;
+    private final CounterMetric responseBytes;
+    private final CounterMetric recycledResponseBytes;
 
     DefaultRestChannel(HttpChannel httpChannel, HttpRequest httpRequest, RestRequest request, BigArrays bigArrays,
                        HttpHandlingSettings settings, ThreadContext threadContext) {
+        this(httpChannel, httpRequest, request, bigArrays, settings, threadContext, new CounterMetric(), new CounterMetric());
+    }
+
+    DefaultRestChannel(HttpChannel httpChannel, HttpRequest httpRequest, RestRequest request, BigArrays bigArrays,
+                       HttpHandlingSettings settings, ThreadContext threadContext, CounterMetric responseBytes,
+                       CounterMetric recycledResponseBytes) {
         super(request, settings.getDetailedErrorsEnabled());
         this.httpChannel = httpChannel;
         this.httpRequest = httpRequest;
         this.bigArrays = bigArrays;
         this.settings = settings;
         this.threadContext = threadContext;
+        this.responseBytes = responseBytes;
+        this.recycledResponseBytes = recycledResponseBytes;
     }
 
     @Override
@@ -76,12 +91,14 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
 
     @Override
     public void sendResponse(RestResponse restResponse) {
-        HttpResponse httpResponse;
+        // the body that is sent, responses to HEAD requests have none
+        final BytesReference body;
         if (RestRequest.Method.HEAD == request.method()) {
-            httpResponse = httpRequest.createResponse(restResponse.status(), BytesArray.EMPTY);
+            body = BytesArray.EMPTY;
         } else {
-            httpResponse = httpRequest.createResponse(restResponse.status(), restResponse.content());
+            body = restResponse.content();
         }
+        HttpResponse httpResponse = httpRequest.createResponse(restResponse.status(), body);
 
         // TODO: Ideally we should move the setting of Cors headers into :server
         // NioCorsHandler.setCorsResponseHeaders(nettyRequest, resp, corsConfig);
@@ -106,8 +123,11 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
 
             addCookies(httpResponse);
 
+            responseBytes.inc(body.length());
             BytesReference content = restResponse.content();
             if (content instanceof Releasable) {
+                // the content was written to pages of the channel's bytes output, they are recycled once the response is written
+                recycledResponseBytes.inc(body.length());
                 toClose.add((Releasable) content);
             }
             BytesStreamOutput bytesStreamOutput = bytesOutputOrNull();
@@ -130,6 +150,54 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
 
     }
 
+    @Override
+    public void sendChunkedResponse(RestStatus status, ChunkedRestResponseBody body) throws IOException {
+        // responses to HEAD requests have no body and HTTP/1.0 clients do not support chunked transfer encoding
+        final HttpResponse httpResponse;
+        if (RestRequest.Method.HEAD == request.method() || isHttp10()) {
+            httpResponse = null;
+        } else {
+            httpResponse = httpRequest.createChunkedResponse(status, new CountingChunkedRestResponseBody(body));
+        }
+        if (httpResponse == null) {
+            super.sendChunkedResponse(status, body);
+            return;
+        }
+
+        String opaque = request.header(X_OPAQUE_ID);
+        if (opaque != null) {
+            setHeaderField(httpResponse, X_OPAQUE_ID, opaque);
+        }
+        addCustomHeaders(httpResponse, threadContext.getResponseHeaders());
+
+        ArrayList<Releasable> toClose = new ArrayList<>(2);
+
+        boolean success = false;
+        try {
+            // the content-length is unknown, the transport sets the transfer-encoding header instead
+            setHeaderField(httpResponse, CONTENT_TYPE, body.getResponseContentTypeString(), false);
+
+            addCookies(httpResponse);
+
+            BytesStreamOutput bytesStreamOutput = bytesOutputOrNull();
+            if (bytesStreamOutput instanceof ReleasableBytesStreamOutput) {
+                toClose.add((Releasable) bytesStreamOutput);
+            }
+
+            if (isCloseConnection()) {
+                toClose.add(() -> CloseableChannel.closeChannel(httpChannel));
+            }
+
+            ActionListener<Void> listener = ActionListener.wrap(() -> Releasables.close(toClose));
+            httpChannel.sendResponse(httpResponse, listener);
+            success = true;
+        } finally {
+            if (success == false) {
+                Releasables.close(toClose);
+            }
+        }
+    }
+
     private void setHeaderField(HttpResponse response, String headerField, String value) {
         setHeaderField(response, headerField, value, true);
     }
@@ -171,4 +239,34 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
     private boolean isHttp10() {
         return request.getHttpRequest().protocolVersion() == HttpRequest.HttpVersion.HTTP_1_0;
     }
+
+    /**
+     * Counts the bytes of the chunks of a response in the http stats. Chunks are always written to pages of the channel's big arrays.
+     */
+    private class CountingChunkedRestResponseBody implements ChunkedRestResponseBody {
+
+        private final ChunkedRestResponseBody delegate;
+
+        CountingChunkedRestResponseBody(ChunkedRestResponseBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isDone() {
+            return delegate.isDone();
+        }
+
+        @Override
+        public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException {
+            final ReleasableBytesReference chunk = delegate.encodeChunk(sizeHint, bigArrays);
+            responseBytes.inc(chunk.length());
+            recycledResponseBytes.inc(chunk.length());
+            return chunk;
+        }
+
+        @Override
+        public String getResponseContentTypeString() {
+            return delegate.getResponseContentTypeString();
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package org.elasticsearch.http;
 
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
 
@@ -62,4 +63,12 @@ public interface HttpRequest {
      */
     HttpResponse createResponse(RestStatus status, BytesReference content);
 
+    /**
+     * Create an http response from this request and the supplied status that sends the supplied body with chunked transfer encoding,
+     * or {@code null} if the transport does not support chunked responses.
+     */
+    default HttpResponse createChunkedResponse(RestStatus status, ChunkedRestResponseBody body) {
+        return null;
+    }
+
 }
@@ -19,33 +19,66 @@
 
 package org.elasticsearch.http;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.network.EventLoopStats;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class HttpStats implements Writeable, ToXContentFragment {
 
     private final long serverOpen;
     private final long totalOpen;
+    private final long responseSize;
+    private final long recycledResponseSize;
+    private final List<EventLoopStats> eventLoops;
 
     public HttpStats(long serverOpen, long totalOpened) {
+        this(serverOpen, totalOpened, 0, 0);
+    }
+
+    public HttpStats(long serverOpen, long totalOpened, long responseSize, long recycledResponseSize) {
+        this(serverOpen, totalOpened, responseSize, recycledResponseSize, Collections.emptyList());
+    }
+
+    public HttpStats(long serverOpen, long totalOpened, long responseSize, long recycledResponseSize, List<EventLoopStats> eventLoops) {
         this.serverOpen = serverOpen;
         this.totalOpen = totalOpened;
+        this.responseSize = responseSize;
+        this.recycledResponseSize = recycledResponseSize;
+        this.eventLoops = eventLoops;
     }
 
     public HttpStats(StreamInput in) throws IOException {
         serverOpen = in.readVLong();
         totalOpen = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0)) {
+            responseSize = in.readVLong();
+            recycledResponseSize = in.readVLong();
+            eventLoops = in.readList(EventLoopStats::new);
+        } else {
+            responseSize = 0;
+            recycledResponseSize = 0;
+            eventLoops = Collections.emptyList();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(serverOpen);
         out.writeVLong(totalOpen);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0)) {
+            out.writeVLong(responseSize);
+            out.writeVLong(recycledResponseSize);
+            out.writeList(eventLoops);
+        }
     }
 
     public long getServerOpen() {
@@ -56,10 +89,36 @@ public class HttpStats implements Writeable, ToXContentFragment {
         return this.totalOpen;
     }
 
+    /**
+     * The total size of the content of the responses that were sent.
+     */
+    public long getResponseSize() {
+        return responseSize;
+    }
+
+    /**
+     * The size of the content of the responses that were written to recycled pages rather than to freshly allocated arrays.
+     */
+    public long getRecycledResponseSize() {
+        return recycledResponseSize;
+    }
+
+    /**
+     * The activity of each of the event loop threads of the http transport, empty if the transport does not track it.
+     */
+    public List<EventLoopStats> getEventLoops() {
+        return eventLoops;
+    }
+
     static final class Fields {
         static final String HTTP = "http";
         static final String CURRENT_OPEN = "current_open";
         static final String TOTAL_OPENED = "total_opened";
+        static final String RESPONSE_SIZE = "response_size";
+        static final String RESPONSE_SIZE_IN_BYTES = "response_size_in_bytes";
+        static final String RECYCLED_RESPONSE_SIZE = "recycled_response_size";
+        static final String RECYCLED_RESPONSE_SIZE_IN_BYTES = "recycled_response_size_in_bytes";
+        static final String EVENT_LOOPS = "event_loops";
     }
 
     @Override
@@ -67,6 +126,16 @@ public class HttpStats implements Writeable, ToXContentFragment {
         builder.startObject(Fields.HTTP);
         builder.field(Fields.CURRENT_OPEN, serverOpen);
         builder.field(Fields.TOTAL_OPENED, totalOpen);
+        builder.humanReadableField(Fields.RESPONSE_SIZE_IN_BYTES, Fields.RESPONSE_SIZE, new ByteSizeValue(responseSize));
+        builder.humanReadableField(Fields.RECYCLED_RESPONSE_SIZE_IN_BYTES, Fields.RECYCLED_RESPONSE_SIZE,
+            new ByteSizeValue(recycledResponseSize));
+        if (eventLoops.isEmpty() == false) {
+            builder.startArray(Fields.EVENT_LOOPS);
+            for (EventLoopStats eventLoop : eventLoops) {
+                eventLoop.toXContent(builder, params);
+            }
+            builder.endArray();
+        }
         builder.endObject();
         return builder;
     }
@@ -439,6 +439,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                         // ignore
                     }
                 }
+                indexFieldData.clearGlobalOrdinalsHistories(sId);
                 // call this before we close the store, so we can release resources for it
                 listener.afterIndexShardClosed(sId, indexShard, indexSettings);
             }
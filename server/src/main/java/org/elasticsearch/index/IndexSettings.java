@@ -228,6 +228,15 @@ public final class IndexSettings {
                     new ByteSizeValue(Long.MAX_VALUE, ByteSizeUnit.BYTES),
                     Property.Dynamic, Property.IndexScope);
 
+    /**
+     * Controls whether snapshots of the translog, used by peer recoveries and to read the history of a shard, read the operations of
+     * immutable translog generations from a memory-mapped view of the file rather than with positional reads. Mapping is never used
+     * on Windows where mapped files can't be deleted until they are unmapped. Mappings are not unmapped explicitly when the translog
+     * is closed, their pages are released once they are garbage collected.
+     */
+    public static final Setting<Boolean> INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING =
+        Setting.boolSetting("index.translog.mmap_snapshots", false, Property.Dynamic, Property.IndexScope);
+
     /**
      * Index setting to enable / disable deletes garbage collection.
      * This setting is realtime updateable
@@ -263,6 +272,13 @@ public final class IndexSettings {
     public static final Setting<Integer> MAX_SLICES_PER_SCROLL = Setting.intSetting("index.max_slices_per_scroll",
         1024, 1, Property.Dynamic, Property.IndexScope);
 
+    /**
+     * The maximum number of slices of segments that the query phase of a search request collects concurrently on a shard.
+     * The default of 1 collects all segments of a shard on the search thread.
+     */
+    public static final Setting<Integer> MAX_CONCURRENT_SEARCH_SLICES_SETTING = Setting.intSetting("index.search.max_concurrent_slices",
+        1, 1, 64, Property.Dynamic, Property.IndexScope);
+
     /**
      * The maximum length of regex string allowed in a regexp query.
      */
@@ -304,6 +320,7 @@ public final class IndexSettings {
     private volatile TimeValue translogRetentionAge;
     private volatile ByteSizeValue translogRetentionSize;
     private volatile ByteSizeValue generationThresholdSize;
+    private volatile boolean translogMmapSnapshots;
     private final MergeSchedulerConfig mergeSchedulerConfig;
     private final MergePolicyConfig mergePolicyConfig;
     private final IndexSortConfig indexSortConfig;
@@ -336,6 +353,11 @@ public final class IndexSettings {
      */
     private volatile int maxSlicesPerScroll;
 
+    /**
+     * The maximum number of slices of segments that are collected concurrently by the query phase.
+     */
+    private volatile int maxConcurrentSearchSlices;
+
     /**
      * The maximum length of regex string allowed in a regexp query.
      */
@@ -422,6 +444,7 @@ public final class IndexSettings {
         translogRetentionAge = scopedSettings.get(INDEX_TRANSLOG_RETENTION_AGE_SETTING);
         translogRetentionSize = scopedSettings.get(INDEX_TRANSLOG_RETENTION_SIZE_SETTING);
         generationThresholdSize = scopedSettings.get(INDEX_TRANSLOG_GENERATION_THRESHOLD_SIZE_SETTING);
+        translogMmapSnapshots = scopedSettings.get(INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING);
         mergeSchedulerConfig = new MergeSchedulerConfig(this);
         gcDeletesInMillis = scopedSettings.get(INDEX_GC_DELETES_SETTING).getMillis();
         softDeleteEnabled = version.onOrAfter(Version.V_6_5_0) && scopedSettings.get(INDEX_SOFT_DELETES_SETTING);
@@ -438,6 +461,7 @@ public final class IndexSettings {
         maxShingleDiff = scopedSettings.get(MAX_SHINGLE_DIFF_SETTING);
         maxRefreshListeners = scopedSettings.get(MAX_REFRESH_LISTENERS_PER_SHARD);
         maxSlicesPerScroll = scopedSettings.get(MAX_SLICES_PER_SCROLL);
+        maxConcurrentSearchSlices = scopedSettings.get(MAX_CONCURRENT_SEARCH_SLICES_SETTING);
         maxAnalyzedOffset = scopedSettings.get(MAX_ANALYZED_OFFSET_SETTING);
         maxTermsCount = scopedSettings.get(MAX_TERMS_COUNT_SETTING);
         maxRegexLength = scopedSettings.get(MAX_REGEX_LENGTH_SETTING);
@@ -474,6 +498,7 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(
                 INDEX_TRANSLOG_GENERATION_THRESHOLD_SIZE_SETTING,
                 this::setGenerationThresholdSize);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING, this::setTranslogMmapSnapshots);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_AGE_SETTING, this::setTranslogRetentionAge);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_SIZE_SETTING, this::setTranslogRetentionSize);
         scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_INTERVAL_SETTING, this::setRefreshInterval);
@@ -481,6 +506,7 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(MAX_ANALYZED_OFFSET_SETTING, this::setHighlightMaxAnalyzedOffset);
         scopedSettings.addSettingsUpdateConsumer(MAX_TERMS_COUNT_SETTING, this::setMaxTermsCount);
         scopedSettings.addSettingsUpdateConsumer(MAX_SLICES_PER_SCROLL, this::setMaxSlicesPerScroll);
+        scopedSettings.addSettingsUpdateConsumer(MAX_CONCURRENT_SEARCH_SLICES_SETTING, this::setMaxConcurrentSearchSlices);
         scopedSettings.addSettingsUpdateConsumer(DEFAULT_FIELD_SETTING, this::setDefaultFields);
         scopedSettings.addSettingsUpdateConsumer(INDEX_SEARCH_IDLE_AFTER, this::setSearchIdleAfter);
         scopedSettings.addSettingsUpdateConsumer(MAX_REGEX_LENGTH_SETTING, this::setMaxRegexLength);
@@ -507,6 +533,10 @@ public final class IndexSettings {
         this.generationThresholdSize = generationThresholdSize;
     }
 
+    private void setTranslogMmapSnapshots(boolean translogMmapSnapshots) {
+        this.translogMmapSnapshots = translogMmapSnapshots;
+    }
+
     private void setGCDeletes(TimeValue timeValue) {
         this.gcDeletesInMillis = timeValue.getMillis();
     }
@@ -691,6 +721,13 @@ public final class IndexSettings {
         return generationThresholdSize;
     }
 
+    /**
+     * Returns <code>true</code> if translog snapshots should read immutable generations from a memory-mapped view of the file.
+     */
+    public boolean isTranslogMmapSnapshots() {
+        return translogMmapSnapshots;
+    }
+
     /**
      * Returns the {@link MergeSchedulerConfig}
      */
@@ -842,6 +879,17 @@ public final class IndexSettings {
         this.maxSlicesPerScroll = value;
     }
 
+    /**
+     * The maximum number of slices of segments that the query phase collects concurrently on a shard.
+     */
+    public int getMaxConcurrentSearchSlices() {
+        return maxConcurrentSearchSlices;
+    }
+
+    private void setMaxConcurrentSearchSlices(int value) {
+        this.maxConcurrentSearchSlices = value;
+    }
+
     /**
      * The maximum length of regex string allowed in a regexp query.
      */
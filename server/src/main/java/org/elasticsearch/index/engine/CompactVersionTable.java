@@ -0,0 +1,258 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hash table from _uid to the {@link IndexVersionValue} of the last operation on the document, used by {@link LiveVersionMap}
+ * instead of a concurrent hash map on indices with many updates. Uids and versions are stored in pages allocated from
+ * {@link BigArrays} rather than as a handful of objects per entry, which makes the table several times smaller and keeps it out of
+ * the sight of the garbage collector. Its memory is accounted on the circuit breaker of the big arrays.
+ * <p>
+ * The table is split into segments that are each guarded by their own lock, so lookups are slower than on a concurrent hash map.
+ * Entries are never physically removed: removing a uid only marks its entry, and memory is released when the table is closed, which
+ * the version map does on refresh. Reads and writes that race with closing the table act as if the table was empty.
+ */
+final class CompactVersionTable extends AbstractRefCounted {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    // the values of an entry are stored in consecutive slots of a LongArray
+    private static final int VERSION = 0;
+    private static final int SEQ_NO = 1;
+    private static final int TERM = 2;
+    private static final int TRANSLOG_GENERATION = 3;
+    private static final int TRANSLOG_LOCATION = 4;
+    private static final int TRANSLOG_SIZE = 5;
+    private static final int STRIDE = 6;
+
+    // marks removed entries in the version slot, versions are never negative except for the constants in Versions
+    private static final long REMOVED = Long.MIN_VALUE;
+    // marks entries without a translog location in the generation slot
+    private static final long NO_LOCATION = -1;
+
+    private final BigArrays bigArrays;
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong ramBytesUsed = new AtomicLong();
+
+    CompactVersionTable(BigArrays bigArrays) {
+        super("compact_version_table");
+        this.bigArrays = bigArrays;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment segment(BytesRef uid) {
+        // BytesRefHash picks buckets using the low bits of the mixed hash code, use the high bits of the raw hash code here
+        return segments[uid.hashCode() >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    /**
+     * Returns the version of the given uid, or {@code null} if the table has no entry for it.
+     */
+    IndexVersionValue get(BytesRef uid) {
+        if (tryIncRef() == false) {
+            return null;
+        }
+        try {
+            return segment(uid).get(uid);
+        } finally {
+            decRef();
+        }
+    }
+
+    /**
+     * Sets the version of the given uid, replacing any previous version.
+     */
+    void put(BytesRef uid, IndexVersionValue version) {
+        if (tryIncRef() == false) {
+            return;
+        }
+        try {
+            segment(uid).put(uid, version);
+        } finally {
+            decRef();
+        }
+    }
+
+    /**
+     * Removes the entry of the given uid, if any.
+     */
+    void remove(BytesRef uid) {
+        if (tryIncRef() == false) {
+            return;
+        }
+        try {
+            segment(uid).remove(uid);
+        } finally {
+            decRef();
+        }
+    }
+
+    /** Returns the number of uids that have a version in this table. */
+    int size() {
+        return size.get();
+    }
+
+    /** Returns the number of bytes allocated by this table. */
+    long ramBytesUsed() {
+        return ramBytesUsed.get();
+    }
+
+    /**
+     * Returns a copy of the entries of this table, this is expensive and meant for tests and assertions.
+     */
+    Map<BytesRef, VersionValue> toMap() {
+        final Map<BytesRef, VersionValue> map = new HashMap<>();
+        if (tryIncRef()) {
+            try {
+                for (Segment segment : segments) {
+                    segment.copyTo(map);
+                }
+            } finally {
+                decRef();
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Releases the memory of this table once no reads or writes are in flight.
+     */
+    void close() {
+        decRef();
+    }
+
+    @Override
+    protected void closeInternal() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private final class Segment {
+
+        private BytesRefHash uids;
+        private LongArray values;
+        private final BytesRef spare = new BytesRef();
+
+        synchronized IndexVersionValue get(BytesRef uid) {
+            if (uids == null) {
+                return null;
+            }
+            final long id = uids.find(uid);
+            if (id < 0) {
+                return null;
+            }
+            final long offset = id * STRIDE;
+            final long version = values.get(offset + VERSION);
+            if (version == REMOVED) {
+                return null;
+            }
+            final long generation = values.get(offset + TRANSLOG_GENERATION);
+            final Translog.Location location = generation == NO_LOCATION ? null :
+                new Translog.Location(generation, values.get(offset + TRANSLOG_LOCATION), (int) values.get(offset + TRANSLOG_SIZE));
+            return new IndexVersionValue(location, version, values.get(offset + SEQ_NO), values.get(offset + TERM));
+        }
+
+        synchronized void put(BytesRef uid, IndexVersionValue version) {
+            final long bytesBefore = ramBytesUsed();
+            if (uids == null) {
+                uids = new BytesRefHash(INITIAL_SEGMENT_CAPACITY, bigArrays);
+                values = bigArrays.newLongArray(INITIAL_SEGMENT_CAPACITY * STRIDE, false);
+            }
+            long id = uids.add(uid);
+            if (id < 0) {
+                id = -1 - id;
+                if (values.get(id * STRIDE + VERSION) == REMOVED) {
+                    size.incrementAndGet();
+                }
+            } else {
+                values = bigArrays.grow(values, (id + 1) * STRIDE);
+                size.incrementAndGet();
+            }
+            final long offset = id * STRIDE;
+            values.set(offset + VERSION, version.version);
+            values.set(offset + SEQ_NO, version.seqNo);
+            values.set(offset + TERM, version.term);
+            final Translog.Location location = version.getLocation();
+            if (location == null) {
+                values.set(offset + TRANSLOG_GENERATION, NO_LOCATION);
+            } else {
+                values.set(offset + TRANSLOG_GENERATION, location.generation);
+                values.set(offset + TRANSLOG_LOCATION, location.translogLocation);
+                values.set(offset + TRANSLOG_SIZE, location.size);
+            }
+            final long delta = ramBytesUsed() - bytesBefore;
+            if (delta != 0) {
+                CompactVersionTable.this.ramBytesUsed.addAndGet(delta);
+            }
+        }
+
+        synchronized void remove(BytesRef uid) {
+            if (uids == null) {
+                return;
+            }
+            final long id = uids.find(uid);
+            if (id >= 0 && values.get(id * STRIDE + VERSION) != REMOVED) {
+                values.set(id * STRIDE + VERSION, REMOVED);
+                size.decrementAndGet();
+            }
+        }
+
+        synchronized void copyTo(Map<BytesRef, VersionValue> map) {
+            if (uids == null) {
+                return;
+            }
+            for (long id = 0; id < uids.size(); id++) {
+                final BytesRef uid = BytesRef.deepCopyOf(uids.get(id, spare));
+                final IndexVersionValue version = get(uid);
+                if (version != null) {
+                    map.put(uid, version);
+                }
+            }
+        }
+
+        private long ramBytesUsed() {
+            return uids == null ? 0 : uids.ramBytesUsed() + values.ramBytesUsed();
+        }
+
+        synchronized void close() {
+            Releasables.close(uids, values);
+            uids = null;
+            values = null;
+        }
+    }
+}
@@ -85,6 +85,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Comparator;
@@ -371,6 +372,22 @@ public abstract class Engine implements Closeable {
      */
     public abstract IndexResult index(Index index) throws IOException;
 
+    /**
+     * Perform several document index operations on the engine. Engines may apply operations on documents with auto-generated ids
+     * as a single batch, the default implementation performs them one after the other.
+     * @param operations the operations to perform
+     * @return the {@link IndexResult}s of the operations, in the same order as the operations
+     *
+     * Note: engine level failures (i.e. persistent engine failures) are thrown
+     */
+    public List<IndexResult> index(List<Index> operations) throws IOException {
+        final List<IndexResult> results = new ArrayList<>(operations.size());
+        for (Index operation : operations) {
+            results.add(index(operation));
+        }
+        return results;
+    }
+
     /**
      * Perform document delete operation on the engine
      * @param delete operation to perform
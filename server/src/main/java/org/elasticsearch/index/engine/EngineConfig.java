@@ -111,6 +111,15 @@ public final class EngineConfig {
     public static final Setting<Boolean> INDEX_OPTIMIZE_AUTO_GENERATED_IDS = Setting.boolSetting("index.optimize_auto_generated_id", true,
         Property.IndexScope, Property.Dynamic);
 
+    /**
+     * Configures an index to keep the versions of recently indexed documents in compact tables allocated from big arrays, rather than
+     * in a hash map of objects on the heap. This makes the version map much smaller on indices with a high rate of updates at the cost
+     * of slower version lookups. The memory of compact tables is accounted on the circuit breaker. Changes to this setting are applied
+     * when the engine is restarted. The default is <code>false</code>
+     */
+    public static final Setting<Boolean> INDEX_COMPACT_VERSION_MAP = Setting.boolSetting("index.compact_version_map", false,
+        Property.IndexScope);
+
     private final TranslogConfig translogConfig;
 
     /**
@@ -339,6 +348,13 @@ public final class EngineConfig {
         return indexSettings.getValue(INDEX_OPTIMIZE_AUTO_GENERATED_IDS);
     }
 
+    /**
+     * returns true if the engine should keep document versions in compact tables allocated from big arrays
+     */
+    public boolean isCompactVersionMapEnabled() {
+        return indexSettings.getValue(INDEX_COMPACT_VERSION_MAP);
+    }
+
     /**
      * Return the sort order of this index, or null if the index has no sort.
      */
@@ -52,6 +52,7 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.lucene.LoggerInfoStream;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
@@ -87,6 +88,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -126,7 +128,7 @@ public class InternalEngine extends Engine {
 
     // A uid (in the form of BytesRef) to the version map
     // we use the hashed variant since we iterate over it and check removal and additions on existing keys
-    private final LiveVersionMap versionMap = new LiveVersionMap();
+    private final LiveVersionMap versionMap;
 
     private volatile SegmentInfos lastCommittedSegmentInfos;
 
@@ -182,6 +184,12 @@ public class InternalEngine extends Engine {
         ExternalSearcherManager externalSearcherManager = null;
         SearcherManager internalSearcherManager = null;
         EngineMergeScheduler scheduler = null;
+        if (engineConfig.isCompactVersionMapEnabled()) {
+            // the big arrays of the shard, which account for their memory on the circuit breaker
+            versionMap = new LiveVersionMap(engineConfig.getTranslogConfig().getBigArrays());
+        } else {
+            versionMap = new LiveVersionMap();
+        }
         boolean success = false;
         try {
             this.lastDeleteVersionPruneTimeMSec = engineConfig.getThreadPool().relativeTimeInMillis();
@@ -233,6 +241,8 @@ public class InternalEngine extends Engine {
         } finally {
             if (success == false) {
                 IOUtils.closeWhileHandlingException(writer, translog, internalSearcherManager, externalSearcherManager, scheduler);
+                // releases the big arrays of the compact version tables
+                versionMap.clear();
                 if (isClosed.get() == false) {
                     // failure we need to dec the store reference
                     store.decRef();
@@ -834,42 +844,116 @@ public class InternalEngine extends Engine {
                  *  updateDocument.
                  */
                 final IndexingStrategy plan = indexingStrategyForOperation(index);
+                return indexWithPlan(index, plan);
+            }
+        } catch (RuntimeException | IOException e) {
+            try {
+                maybeFailEngine("index", e);
+            } catch (Exception inner) {
+                e.addSuppressed(inner);
+            }
+            throw e;
+        }
+    }
 
-                final IndexResult indexResult;
-                if (plan.earlyResultOnPreFlightError.isPresent()) {
-                    indexResult = plan.earlyResultOnPreFlightError.get();
-                    assert indexResult.getResultType() == Result.Type.FAILURE : indexResult.getResultType();
-                } else if (plan.indexIntoLucene || plan.addStaleOpToLucene) {
-                    indexResult = indexIntoLucene(index, plan);
-                } else {
-                    indexResult = new IndexResult(
-                            plan.versionForIndexing, getPrimaryTerm(), plan.seqNoForIndexing, plan.currentNotFoundOrDeleted);
-                }
-                if (index.origin().isFromTranslog() == false) {
-                    final Translog.Location location;
-                    if (indexResult.getResultType() == Result.Type.SUCCESS) {
-                        location = translog.add(new Translog.Index(index, indexResult));
-                    } else if (indexResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
-                        // if we have document failure, record it as a no-op in the translog and Lucene with the generated seq_no
-                        final NoOp noOp = new NoOp(indexResult.getSeqNo(), index.primaryTerm(), index.origin(),
-                            index.startTime(), indexResult.getFailure().toString());
-                        location = innerNoOp(noOp).getTranslogLocation();
-                    } else {
-                        location = null;
-                    }
-                    indexResult.setTranslogLocation(location);
-                }
-                if (plan.indexIntoLucene && indexResult.getResultType() == Result.Type.SUCCESS) {
-                    final Translog.Location translogLocation = trackTranslogLocation.get() ? indexResult.getTranslogLocation() : null;
-                    versionMap.maybePutIndexUnderLock(index.uid().bytes(),
-                        new IndexVersionValue(translogLocation, plan.versionForIndexing, plan.seqNoForIndexing, index.primaryTerm()));
+    private IndexResult indexWithPlan(Index index, IndexingStrategy plan) throws IOException {
+        final IndexResult indexResult;
+        if (plan.earlyResultOnPreFlightError.isPresent()) {
+            indexResult = plan.earlyResultOnPreFlightError.get();
+            assert indexResult.getResultType() == Result.Type.FAILURE : indexResult.getResultType();
+        } else if (plan.indexIntoLucene || plan.addStaleOpToLucene) {
+            indexResult = indexIntoLucene(index, plan);
+        } else {
+            indexResult = new IndexResult(
+                    plan.versionForIndexing, getPrimaryTerm(), plan.seqNoForIndexing, plan.currentNotFoundOrDeleted);
+        }
+        if (index.origin().isFromTranslog() == false) {
+            final Translog.Location location;
+            if (indexResult.getResultType() == Result.Type.SUCCESS) {
+                location = translog.add(new Translog.Index(index, indexResult));
+            } else if (indexResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
+                // if we have document failure, record it as a no-op in the translog and Lucene with the generated seq_no
+                final NoOp noOp = new NoOp(indexResult.getSeqNo(), index.primaryTerm(), index.origin(),
+                    index.startTime(), indexResult.getFailure().toString());
+                location = innerNoOp(noOp).getTranslogLocation();
+            } else {
+                location = null;
+            }
+            indexResult.setTranslogLocation(location);
+        }
+        if (plan.indexIntoLucene && indexResult.getResultType() == Result.Type.SUCCESS) {
+            final Translog.Location translogLocation = trackTranslogLocation.get() ? indexResult.getTranslogLocation() : null;
+            versionMap.maybePutIndexUnderLock(index.uid().bytes(),
+                new IndexVersionValue(translogLocation, plan.versionForIndexing, plan.seqNoForIndexing, index.primaryTerm()));
+        }
+        if (indexResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
+            localCheckpointTracker.markSeqNoAsCompleted(indexResult.getSeqNo());
+        }
+        indexResult.setTook(System.nanoTime() - index.startTime());
+        indexResult.freeze();
+        return indexResult;
+    }
+
+    /**
+     * Indexes operations on documents with auto-generated ids in batches: consecutive operations that can be appended without looking
+     * up existing documents are added to Lucene with a single {@link IndexWriter#addDocuments(Iterable)} call and to the translog with
+     * a single write. Other operations are indexed one by one.
+     */
+    @Override
+    public List<IndexResult> index(List<Index> operations) throws IOException {
+        final List<IndexResult> results = new ArrayList<>(operations.size());
+        int start = 0;
+        while (start < operations.size()) {
+            int end = start;
+            while (end < operations.size() && canIndexInBatch(operations.get(end))) {
+                end++;
+            }
+            if (end - start > 1) {
+                results.addAll(indexInBatch(operations.subList(start, end)));
+                start = end;
+            } else {
+                results.add(index(operations.get(start)));
+                start++;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns whether the operation can be indexed as part of a batch. This is only the case for first attempts at indexing documents
+     * with auto-generated ids on the primary, since they are very likely to be appended without ever looking up the existing document.
+     */
+    private boolean canIndexInBatch(Index index) {
+        return index.origin() == Operation.Origin.PRIMARY && index.isRetry() == false && canOptimizeAddDocument(index);
+    }
+
+    private List<IndexResult> indexInBatch(List<Index> operations) throws IOException {
+        final BytesRef[] uids = new BytesRef[operations.size()];
+        for (int i = 0; i < uids.length; i++) {
+            assert Objects.equals(operations.get(i).uid().field(), IdFieldMapper.NAME) : operations.get(i).uid().field();
+            uids[i] = operations.get(i).uid().bytes();
+        }
+        // the locks of all documents are held while the batch is processed, take them in a consistent order to prevent deadlocks
+        Arrays.sort(uids);
+        for (int i = 1; i < uids.length; i++) {
+            if (uids[i].equals(uids[i - 1])) {
+                // the same document can't be added twice in one batch, fall back to processing operations one by one
+                return super.index(operations);
+            }
+        }
+        final boolean doThrottle = operations.get(0).origin().isRecovery() == false;
+        final Releasable[] uidLocks = new Releasable[uids.length];
+        try (ReleasableLock releasableLock = readLock.acquire()) {
+            ensureOpen();
+            try {
+                for (int i = 0; i < uids.length; i++) {
+                    uidLocks[i] = versionMap.acquireLock(uids[i]);
                 }
-                if (indexResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
-                    localCheckpointTracker.markSeqNoAsCompleted(indexResult.getSeqNo());
+                try (Releasable indexThrottle = doThrottle ? () -> {} : throttle.acquireThrottle()) {
+                    return indexInBatchUnderLock(operations);
                 }
-                indexResult.setTook(System.nanoTime() - index.startTime());
-                indexResult.freeze();
-                return indexResult;
+            } finally {
+                Releasables.close(uidLocks);
             }
         } catch (RuntimeException | IOException e) {
             try {
@@ -881,6 +965,98 @@ public class InternalEngine extends Engine {
         }
     }
 
+    private List<IndexResult> indexInBatchUnderLock(List<Index> operations) throws IOException {
+        final IndexingStrategy[] plans = new IndexingStrategy[operations.size()];
+        final IndexResult[] results = new IndexResult[operations.size()];
+        final List<ParseContext.Document> docs = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            final Index index = operations.get(i);
+            assert assertIncomingSequenceNumber(index.origin(), index.seqNo());
+            lastWriteNanos = index.startTime();
+            // see the note about append only optimizations in #index(Index)
+            plans[i] = indexingStrategyForOperation(index);
+            if (isAppendOnly(plans[i])) {
+                index.parsedDoc().updateSeqID(plans[i].seqNoForIndexing, index.primaryTerm());
+                index.parsedDoc().version().setLongValue(plans[i].versionForIndexing);
+                assert assertDocDoesNotExist(index, false);
+                docs.addAll(index.docs());
+            } else {
+                // the document may have been indexed before
+                results[i] = indexWithPlan(index, plans[i]);
+            }
+        }
+        if (docs.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        try {
+            indexWriter.addDocuments(docs);
+            numDocAppends.inc(docs.size());
+            for (int i = 0; i < plans.length; i++) {
+                if (isAppendOnly(plans[i])) {
+                    results[i] = new IndexResult(
+                        plans[i].versionForIndexing, getPrimaryTerm(), plans[i].seqNoForIndexing, plans[i].currentNotFoundOrDeleted);
+                }
+            }
+        } catch (Exception ex) {
+            if (indexWriter.getTragicException() != null) {
+                throw ex;
+            }
+            // a document failure rejects all documents of the call, add them one by one so that only the failing documents are rejected
+            for (int i = 0; i < plans.length; i++) {
+                if (isAppendOnly(plans[i])) {
+                    results[i] = indexIntoLucene(operations.get(i), plans[i]);
+                }
+            }
+        }
+
+        final List<Translog.Operation> translogOperations = new ArrayList<>(operations.size());
+        final List<IndexResult> translogResults = new ArrayList<>(operations.size());
+        for (int i = 0; i < plans.length; i++) {
+            final Index index = operations.get(i);
+            assert index.origin().isFromTranslog() == false : "batches are only indexed on the primary";
+            if (isAppendOnly(plans[i])) {
+                final IndexResult indexResult = results[i];
+                if (indexResult.getResultType() == Result.Type.SUCCESS) {
+                    translogOperations.add(new Translog.Index(index, indexResult));
+                    translogResults.add(indexResult);
+                } else if (indexResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
+                    // if we have document failure, record it as a no-op in the translog and Lucene with the generated seq_no
+                    final NoOp noOp = new NoOp(indexResult.getSeqNo(), index.primaryTerm(), index.origin(),
+                        index.startTime(), indexResult.getFailure().toString());
+                    indexResult.setTranslogLocation(innerNoOp(noOp).getTranslogLocation());
+                }
+            }
+        }
+        final List<Translog.Location> locations = translog.add(translogOperations);
+        for (int i = 0; i < locations.size(); i++) {
+            translogResults.get(i).setTranslogLocation(locations.get(i));
+        }
+
+        for (int i = 0; i < plans.length; i++) {
+            if (isAppendOnly(plans[i]) == false) {
+                continue;
+            }
+            final Index index = operations.get(i);
+            final IndexResult indexResult = results[i];
+            if (indexResult.getResultType() == Result.Type.SUCCESS) {
+                final Translog.Location translogLocation = trackTranslogLocation.get() ? indexResult.getTranslogLocation() : null;
+                versionMap.maybePutIndexUnderLock(index.uid().bytes(),
+                    new IndexVersionValue(translogLocation, plans[i].versionForIndexing, plans[i].seqNoForIndexing, index.primaryTerm()));
+            }
+            if (indexResult.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
+                localCheckpointTracker.markSeqNoAsCompleted(indexResult.getSeqNo());
+            }
+            indexResult.setTook(System.nanoTime() - index.startTime());
+            indexResult.freeze();
+        }
+        return Arrays.asList(results);
+    }
+
+    private static boolean isAppendOnly(IndexingStrategy plan) {
+        return plan.earlyResultOnPreFlightError.isPresent() == false && plan.indexIntoLucene && plan.useLuceneUpdateDocument == false
+            && plan.addStaleOpToLucene == false;
+    }
+
     protected final IndexingStrategy planIndexingAsNonPrimary(Index index) throws IOException {
         assertNonPrimaryOrigin(index);
         final IndexingStrategy plan;
@@ -23,7 +23,9 @@ import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.KeyedLock;
 
@@ -33,7 +35,10 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
-/** Maps _uid value to its version information. */
+/**
+ * Maps _uid value to its version information. Versions of indexed documents are kept in concurrent hash maps by default, or in
+ * {@link CompactVersionTable}s allocated from {@link BigArrays} when the map is built with big arrays.
+ */
 final class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
     private final KeyedLock<BytesRef> keyedLock = new KeyedLock<>();
@@ -41,11 +46,14 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
     private static final class VersionLookup {
 
         /** Tracks bytes used by current map, i.e. what is freed on refresh. For deletes, which are also added to tombstones, we only account
-         *  for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not clear this RAM. */
-        final AtomicLong ramBytesUsed = new AtomicLong();
+         *  for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not clear this RAM.
+         *  Compact tables account for their own memory instead. */
+        final AtomicLong mapRamBytesUsed = new AtomicLong();
 
-        private static final VersionLookup EMPTY = new VersionLookup(Collections.emptyMap());
+        private static final VersionLookup EMPTY = new VersionLookup(Collections.emptyMap(), null);
+        // exactly one of map and table is set
         private final Map<BytesRef, VersionValue> map;
+        private final CompactVersionTable table;
 
         // each version map has a notion of safe / unsafe which allows us to apply certain optimization in the auto-generated ID usecase
         // where we know that documents can't have any duplicates so we can skip the version map entirely. This reduces
@@ -63,24 +71,63 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // the tombstone
         private final AtomicLong minDeleteTimestamp = new AtomicLong(Long.MAX_VALUE);
 
-        private VersionLookup(Map<BytesRef, VersionValue> map) {
+        private VersionLookup(Map<BytesRef, VersionValue> map, CompactVersionTable table) {
+            assert (map == null) != (table == null) : "either a map or a table is required";
             this.map = map;
+            this.table = table;
+        }
+
+        static VersionLookup newLookup(@Nullable BigArrays bigArrays, int expectedSize) {
+            if (bigArrays != null) {
+                return new VersionLookup(null, new CompactVersionTable(bigArrays));
+            } else if (expectedSize > 0) {
+                return new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(expectedSize), null);
+            } else {
+                return new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(), null);
+            }
+        }
+
+        boolean isCompact() {
+            return table != null;
         }
 
         VersionValue get(BytesRef key) {
-            return map.get(key);
+            return table == null ? map.get(key) : table.get(key);
         }
 
+        /**
+         * Puts the given value and returns the previous one. Compact lookups don't return the previous value.
+         */
         VersionValue put(BytesRef key, VersionValue value) {
-            return map.put(key, value);
+            if (table == null) {
+                return map.put(key, value);
+            }
+            assert value instanceof IndexVersionValue : "only index versions are kept in compact tables, got " + value;
+            table.put(key, (IndexVersionValue) value);
+            return null;
         }
 
         boolean isEmpty() {
-            return map.isEmpty();
+            return size() == 0;
         }
 
         int size() {
-            return map.size();
+            return table == null ? map.size() : table.size();
+        }
+
+        long ramBytesUsed() {
+            return table == null ? mapRamBytesUsed.get() : table.ramBytesUsed();
+        }
+
+        Map<BytesRef, VersionValue> getAll() {
+            return table == null ? map : table.toMap();
+        }
+
+        /** releases the memory of compact tables, the lookup must not be used afterwards */
+        void close() {
+            if (table != null) {
+                table.close();
+            }
         }
 
         boolean isUnsafe() {
@@ -91,8 +138,15 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
             unsafe = true;
         }
 
+        /**
+         * Removes the value of the given uid and returns it. Compact lookups don't return the removed value.
+         */
         public VersionValue remove(BytesRef uid) {
-            return map.remove(uid);
+            if (table == null) {
+                return map.remove(uid);
+            }
+            table.remove(uid);
+            return null;
         }
 
         public void updateMinDeletedTimestamp(DeleteVersionValue delete) {
@@ -115,15 +169,19 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         boolean needsSafeAccess;
         final boolean previousMapsNeededSafeAccess;
 
+        // if set, new lookups are compact tables allocated from these big arrays
+        @Nullable
+        final BigArrays bigArrays;
 
-        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess) {
+        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess, @Nullable BigArrays bigArrays) {
             this.current = current;
             this.old = old;
             this.previousMapsNeededSafeAccess = previousMapsNeededSafeAccess;
+            this.bigArrays = bigArrays;
         }
 
-        Maps() {
-            this(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency()), VersionLookup.EMPTY, false);
+        Maps(@Nullable BigArrays bigArrays) {
+            this(VersionLookup.newLookup(bigArrays, 0), VersionLookup.EMPTY, false, bigArrays);
         }
 
         boolean isSafeAccessMode() {
@@ -141,18 +199,22 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
          * Builds a new map for the refresh transition this should be called in beforeRefresh()
          */
         Maps buildTransitionMap() {
-            return new Maps(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(current.size())), current,
-                shouldInheritSafeAccess());
+            return new Maps(VersionLookup.newLookup(bigArrays, current.size()), current, shouldInheritSafeAccess(), bigArrays);
         }
 
         /**
          * builds a new map that invalidates the old map but maintains the current. This should be called in afterRefresh()
          */
         Maps invalidateOldMap() {
-            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess);
+            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess, bigArrays);
         }
 
         void put(BytesRef uid, VersionValue version) {
+            if (current.isCompact()) {
+                // compact tables account for their memory themselves
+                current.put(uid, version);
+                return;
+            }
             long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
             long ramAccounting = BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed;
             VersionValue previousValue = current.put(uid, version);
@@ -162,7 +224,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
         void adjustRam(long value) {
             if (value != 0) {
-                long v = current.ramBytesUsed.addAndGet(value);
+                long v = current.mapRamBytesUsed.addAndGet(value);
                 assert v >= 0 : "bytes=" + v;
             }
         }
@@ -189,10 +251,25 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
     // All deletes also go here, and delete "tombstones" are retained after refresh:
     private final Map<BytesRef, DeleteVersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
-    private volatile Maps maps = new Maps();
+    @Nullable
+    private final BigArrays bigArrays;
+
+    private volatile Maps maps;
     // we maintain a second map that only receives the updates that we skip on the actual map (unsafe ops)
     // this map is only maintained if assertions are enabled
-    private volatile Maps unsafeKeysMap = new Maps();
+    private volatile Maps unsafeKeysMap = new Maps(null);
+
+    LiveVersionMap() {
+        this(null);
+    }
+
+    /**
+     * @param bigArrays if set, versions of indexed documents are kept in {@link CompactVersionTable}s allocated from these big arrays
+     */
+    LiveVersionMap(@Nullable BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        this.maps = new Maps(bigArrays);
+    }
 
     /**
      * Bytes consumed for each BytesRef UID:
@@ -255,8 +332,11 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // reopen, and so any concurrent indexing requests can still sneak in a few additions to that current map that are in fact reflected
         // in the previous reader.   We don't touch tombstones here: they expire on their own index.gc_deletes timeframe:
 
+        final VersionLookup old = maps.old;
         maps = maps.invalidateOldMap();
         assert (unsafeKeysMap = unsafeKeysMap.invalidateOldMap()) != null;
+        // lookups that are still in flight on the old map keep it alive until they are done
+        old.close();
 
     }
 
@@ -413,7 +493,10 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Called when this index is closed.
      */
     synchronized void clear() {
-        maps = new Maps();
+        final Maps previous = maps;
+        maps = new Maps(bigArrays);
+        previous.current.close();
+        previous.old.close();
         tombstones.clear();
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip.  Presumably it's fine if our ramBytesUsedTombstones is non-zero after clear since the index
@@ -423,7 +506,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
     @Override
     public long ramBytesUsed() {
-        return maps.current.ramBytesUsed.get() + ramBytesUsedTombstones.get();
+        return maps.current.ramBytesUsed() + ramBytesUsedTombstones.get();
     }
 
     /**
@@ -431,7 +514,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * don't clear on refresh.
      */
     long ramBytesUsedForRefresh() {
-        return maps.current.ramBytesUsed.get();
+        return maps.current.ramBytesUsed();
     }
 
     /**
@@ -439,7 +522,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * except does not include tombstones because they don't clear on refresh.
      */
     long getRefreshingBytes() {
-        return maps.old.ramBytesUsed.get();
+        return maps.old.ramBytesUsed();
     }
 
     @Override
@@ -452,7 +535,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Returns the current internal versions as a point in time snapshot
      */
     Map<BytesRef, VersionValue> getAllCurrent() {
-        return maps.current.map;
+        return maps.current.getAll();
     }
 
     /** Iterates over all deleted versions, including new ones (not yet exposed via reader) and old ones (exposed via reader but not yet GC'd). */
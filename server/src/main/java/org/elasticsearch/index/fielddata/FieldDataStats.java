@@ -19,12 +19,14 @@
 
 package org.elasticsearch.index.fielddata;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.FieldMemoryStats;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
@@ -38,8 +40,16 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
     private static final String MEMORY_SIZE_IN_BYTES = "memory_size_in_bytes";
     private static final String EVICTIONS = "evictions";
     private static final String FIELDS = "fields";
+    private static final String GLOBAL_ORDINALS = "global_ordinals";
+    private static final String BUILD_TIME = "build_time";
+    private static final String BUILD_TIME_IN_MILLIS = "build_time_in_millis";
+    private static final String SEGMENTS = "segments";
+    private static final String REUSED_SEGMENTS = "reused_segments";
     long memorySize;
     long evictions;
+    long globalOrdinalsBuildTimeInMillis;
+    long globalOrdinalsSegments;
+    long globalOrdinalsReusedSegments;
     @Nullable
     FieldMemoryStats fields;
 
@@ -48,14 +58,25 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
     }
 
     public FieldDataStats(long memorySize, long evictions, @Nullable FieldMemoryStats fields) {
+        this(memorySize, evictions, fields, 0, 0, 0);
+    }
+
+    public FieldDataStats(long memorySize, long evictions, @Nullable FieldMemoryStats fields, long globalOrdinalsBuildTimeInMillis,
+                          long globalOrdinalsSegments, long globalOrdinalsReusedSegments) {
         this.memorySize = memorySize;
         this.evictions = evictions;
         this.fields = fields;
+        this.globalOrdinalsBuildTimeInMillis = globalOrdinalsBuildTimeInMillis;
+        this.globalOrdinalsSegments = globalOrdinalsSegments;
+        this.globalOrdinalsReusedSegments = globalOrdinalsReusedSegments;
     }
 
     public void add(FieldDataStats stats) {
         this.memorySize += stats.memorySize;
         this.evictions += stats.evictions;
+        this.globalOrdinalsBuildTimeInMillis += stats.globalOrdinalsBuildTimeInMillis;
+        this.globalOrdinalsSegments += stats.globalOrdinalsSegments;
+        this.globalOrdinalsReusedSegments += stats.globalOrdinalsReusedSegments;
         if (stats.fields != null) {
             if (fields == null) {
                 fields = stats.fields.copy();
@@ -82,11 +103,49 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         return fields;
     }
 
+    /**
+     * The total time spent building global ordinals.
+     */
+    public TimeValue getGlobalOrdinalsBuildTime() {
+        return new TimeValue(globalOrdinalsBuildTimeInMillis);
+    }
+
+    public long getGlobalOrdinalsBuildTimeInMillis() {
+        return globalOrdinalsBuildTimeInMillis;
+    }
+
+    /**
+     * The total number of segments with values that global ordinals were built over.
+     */
+    public long getGlobalOrdinalsSegments() {
+        return globalOrdinalsSegments;
+    }
+
+    /**
+     * The total number of segments whose ordinals were reused from the previous global ordinals of their field rather than
+     * merged again.
+     */
+    public long getGlobalOrdinalsReusedSegments() {
+        return globalOrdinalsReusedSegments;
+    }
+
+    /**
+     * The ratio of the segments whose ordinals were reused when building global ordinals, or 0 if none were built.
+     */
+    public double getGlobalOrdinalsReuseRatio() {
+        return globalOrdinalsSegments == 0 ? 0 : (double) globalOrdinalsReusedSegments / globalOrdinalsSegments;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         memorySize = in.readVLong();
         evictions = in.readVLong();
         fields = in.readOptionalWriteable(FieldMemoryStats::new);
+        if (in.getVersion().onOrAfter(Version.V_7_0_0)) {
+            globalOrdinalsBuildTimeInMillis = in.readVLong();
+            globalOrdinalsSegments = in.readVLong();
+            globalOrdinalsReusedSegments = in.readVLong();
+        }
     }
 
     @Override
@@ -94,6 +153,11 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         out.writeVLong(memorySize);
         out.writeVLong(evictions);
         out.writeOptionalWriteable(fields);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0)) {
+            out.writeVLong(globalOrdinalsBuildTimeInMillis);
+            out.writeVLong(globalOrdinalsSegments);
+            out.writeVLong(globalOrdinalsReusedSegments);
+        }
     }
 
     @Override
@@ -101,6 +165,11 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         builder.startObject(FIELDDATA);
         builder.humanReadableField(MEMORY_SIZE_IN_BYTES, MEMORY_SIZE, getMemorySize());
         builder.field(EVICTIONS, getEvictions());
+        builder.startObject(GLOBAL_ORDINALS);
+        builder.humanReadableField(BUILD_TIME_IN_MILLIS, BUILD_TIME, getGlobalOrdinalsBuildTime());
+        builder.field(SEGMENTS, globalOrdinalsSegments);
+        builder.field(REUSED_SEGMENTS, globalOrdinalsReusedSegments);
+        builder.endObject();
         if (fields != null) {
             fields.toXContent(builder, FIELDS, MEMORY_SIZE_IN_BYTES, MEMORY_SIZE);
         }
@@ -115,11 +184,15 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         FieldDataStats that = (FieldDataStats) o;
         return memorySize == that.memorySize &&
             evictions == that.evictions &&
+            globalOrdinalsBuildTimeInMillis == that.globalOrdinalsBuildTimeInMillis &&
+            globalOrdinalsSegments == that.globalOrdinalsSegments &&
+            globalOrdinalsReusedSegments == that.globalOrdinalsReusedSegments &&
             Objects.equals(fields, that.fields);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(memorySize, evictions, fields);
+        return Objects.hash(memorySize, evictions, fields, globalOrdinalsBuildTimeInMillis, globalOrdinalsSegments,
+            globalOrdinalsReusedSegments);
     }
 }
@@ -22,6 +22,7 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Accountable;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsBuilder;
 import org.elasticsearch.index.shard.ShardId;
 
 /**
@@ -44,6 +45,20 @@ public interface IndexFieldDataCache {
      */
     void clear(String fieldName);
 
+    /**
+     * Returns the history of the global ordinals of this field on the shard of the provided reader, which lets the global
+     * ordinals of the next reader of that shard reuse the ordinals of its unchanged segments.
+     */
+    default GlobalOrdinalsBuilder.History getGlobalOrdinalsHistory(DirectoryReader indexReader) {
+        return new GlobalOrdinalsBuilder.History();
+    }
+
+    /**
+     * Forgets the history of the global ordinals of this field on the provided shard, which was closed on this node.
+     */
+    default void clearGlobalOrdinalsHistory(ShardId shardId) {
+    }
+
     interface Listener {
 
         /**
@@ -106,6 +106,15 @@ public class IndexFieldDataService extends AbstractIndexComponent implements Clo
         ExceptionsHelper.maybeThrowRuntimeAndSuppress(exceptions);
     }
 
+    /**
+     * Forgets the history of the global ordinals of all fields on a shard that was closed on this node.
+     */
+    public synchronized void clearGlobalOrdinalsHistories(ShardId shardId) {
+        for (IndexFieldDataCache cache : fieldDataCaches.values()) {
+            cache.clearGlobalOrdinalsHistory(shardId);
+        }
+    }
+
     public <IFD extends IndexFieldData<?>> IFD getForField(MappedFieldType fieldType) {
         return getForField(fieldType, index().getName());
     }
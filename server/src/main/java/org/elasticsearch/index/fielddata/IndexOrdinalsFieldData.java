@@ -21,7 +21,9 @@ package org.elasticsearch.index.fielddata;
 
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.util.LongValues;
 
 
 /**
@@ -45,6 +47,15 @@ public interface IndexOrdinalsFieldData extends IndexFieldData.Global<AtomicOrdi
     /**
      * Returns the underlying {@link OrdinalMap} for this fielddata
      * or null if global ordinals are not needed (constant value or single segment).
+     * Global ordinals are only built with an {@link OrdinalMap} for the fields that require one, this throws an
+     * {@link IllegalStateException} for the global ordinals of other fields: prefer
+     * {@link #getGlobalOrdinalsMapping(LeafReaderContext)} to map segment ordinals to global ordinals.
      */
     OrdinalMap getOrdinalMap();
+
+    /**
+     * Returns the mapping from the ordinals of the provided segment to global ordinals
+     * or null if global ordinals are not needed (constant value or single segment).
+     */
+    LongValues getGlobalOrdinalsMapping(LeafReaderContext context);
 }
@@ -25,6 +25,7 @@ import org.elasticsearch.common.FieldMemoryStats;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.shard.ShardId;
 
 import java.util.Map;
@@ -34,6 +35,9 @@ public class ShardFieldData implements IndexFieldDataCache.Listener {
 
     private final CounterMetric evictionsMetric = new CounterMetric();
     private final CounterMetric totalMetric = new CounterMetric();
+    private final CounterMetric globalOrdinalsBuildTimeMetric = new CounterMetric();
+    private final CounterMetric globalOrdinalsSegmentsMetric = new CounterMetric();
+    private final CounterMetric globalOrdinalsReusedSegmentsMetric = new CounterMetric();
     private final ConcurrentMap<String, CounterMetric> perFieldTotals = ConcurrentCollections.newConcurrentMap();
 
     public FieldDataStats stats(String... fields) {
@@ -47,7 +51,8 @@ public class ShardFieldData implements IndexFieldDataCache.Listener {
             }
         }
         return new FieldDataStats(totalMetric.count(), evictionsMetric.count(), fieldTotals == null ? null :
-            new FieldMemoryStats(fieldTotals));
+            new FieldMemoryStats(fieldTotals), globalOrdinalsBuildTimeMetric.count(), globalOrdinalsSegmentsMetric.count(),
+            globalOrdinalsReusedSegmentsMetric.count());
     }
 
     @Override
@@ -64,6 +69,12 @@ public class ShardFieldData implements IndexFieldDataCache.Listener {
                 prev.inc(ramUsage.ramBytesUsed());
             }
         }
+        if (ramUsage instanceof GlobalOrdinalsIndexFieldData) {
+            GlobalOrdinalsIndexFieldData globalOrdinals = (GlobalOrdinalsIndexFieldData) ramUsage;
+            globalOrdinalsBuildTimeMetric.inc(globalOrdinals.getBuildTimeInMillis());
+            globalOrdinalsSegmentsMetric.inc(globalOrdinals.getSegments());
+            globalOrdinalsReusedSegmentsMetric.inc(globalOrdinals.getReusedSegments());
+        }
     }
 
     @Override
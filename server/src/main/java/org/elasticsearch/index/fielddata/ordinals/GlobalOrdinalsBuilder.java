@@ -36,6 +36,7 @@ import org.elasticsearch.index.fielddata.plain.AbstractAtomicOrdinalsFieldData;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
@@ -48,34 +49,52 @@ public enum GlobalOrdinalsBuilder {
     ;
 
     /**
-     * Build global ordinals for the provided {@link IndexReader}.
+     * Build global ordinals for the provided {@link IndexReader}, reusing the ordinals of the segments that are still present
+     * in the global ordinals that were last built for this field, if any. If {@code ordinalMapRequired} is set, global ordinals
+     * are instead built from scratch with a Lucene {@link OrdinalMap}, which is then returned by
+     * {@link IndexOrdinalsFieldData#getOrdinalMap()}.
      */
     public static IndexOrdinalsFieldData build(final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData,
             IndexSettings indexSettings, CircuitBreakerService breakerService, Logger logger,
-            Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) throws IOException {
+            Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction, History history,
+            boolean ordinalMapRequired) throws IOException {
         assert indexReader.leaves().size() > 1;
         long startTimeNS = System.nanoTime();
 
         final AtomicOrdinalsFieldData[] atomicFD = new AtomicOrdinalsFieldData[indexReader.leaves().size()];
         final SortedSetDocValues[] subs = new SortedSetDocValues[indexReader.leaves().size()];
+        final Object[] segmentKeys = new Object[indexReader.leaves().size()];
         for (int i = 0; i < indexReader.leaves().size(); ++i) {
             atomicFD[i] = indexFieldData.load(indexReader.leaves().get(i));
             subs[i] = atomicFD[i].getOrdinalsValues();
+            segmentKeys[i] = IncrementalOrdinalMap.segmentKey(indexReader.leaves().get(i).reader(), indexFieldData.getFieldName());
         }
-        final OrdinalMap ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
-        final long memorySizeInBytes = ordinalMap.ramBytesUsed();
+        final OrdinalMap ordinalMap;
+        final IncrementalOrdinalMap globalOrdinals;
+        if (ordinalMapRequired) {
+            ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+            globalOrdinals = IncrementalOrdinalMap.wrap(segmentKeys, subs, ordinalMap);
+        } else {
+            ordinalMap = null;
+            globalOrdinals = IncrementalOrdinalMap.build(segmentKeys, subs, history.getLast());
+        }
+        history.setLast(globalOrdinals);
+        final long memorySizeInBytes = globalOrdinals.ramBytesUsed();
         breakerService.getBreaker(CircuitBreaker.FIELDDATA).addWithoutBreaking(memorySizeInBytes);
+        final long tookInNanos = System.nanoTime() - startTimeNS;
 
         if (logger.isDebugEnabled()) {
             logger.debug(
-                    "global-ordinals [{}][{}] took [{}]",
+                    "global-ordinals [{}][{}] took [{}], reused [{}] out of [{}] segments",
                     indexFieldData.getFieldName(),
-                    ordinalMap.getValueCount(),
-                    new TimeValue(System.nanoTime() - startTimeNS, TimeUnit.NANOSECONDS)
+                    globalOrdinals.getValueCount(),
+                    new TimeValue(tookInNanos, TimeUnit.NANOSECONDS),
+                    globalOrdinals.getReusedSegments(),
+                    globalOrdinals.getSegments()
             );
         }
         return new GlobalOrdinalsIndexFieldData(indexSettings, indexFieldData.getFieldName(),
-                atomicFD, ordinalMap, memorySizeInBytes, scriptFunction
+                atomicFD, globalOrdinals, ordinalMap, memorySizeInBytes, TimeUnit.NANOSECONDS.toMillis(tookInNanos), scriptFunction
         );
     }
 
@@ -109,9 +128,30 @@ public enum GlobalOrdinalsBuilder {
             subs[i] = atomicFD[i].getOrdinalsValues();
         }
         final OrdinalMap ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+        final IncrementalOrdinalMap globalOrdinals = IncrementalOrdinalMap.wrap(new Object[subs.length], subs, ordinalMap);
         return new GlobalOrdinalsIndexFieldData(indexSettings, indexFieldData.getFieldName(),
-                atomicFD, ordinalMap, 0, AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION
+                atomicFD, globalOrdinals, ordinalMap, 0, 0, AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION
         );
     }
 
+    /**
+     * Remembers the global ordinals that were last built for a field on a shard so that the next build only needs to merge in
+     * the terms of the new segments. It is kept by the {@link org.elasticsearch.index.fielddata.IndexFieldDataCache} of the
+     * field since field data is built again for every request. Only a weak reference is kept: the previous global ordinals
+     * are typically still referenced by the reader that is being refreshed when the global ordinals of the new reader are
+     * built, and they should not be retained once that reader is closed since their memory is no longer accounted for.
+     */
+    public static final class History {
+
+        private volatile WeakReference<IncrementalOrdinalMap> last = new WeakReference<>(null);
+
+        IncrementalOrdinalMap getLast() {
+            return last.get();
+        }
+
+        void setLast(IncrementalOrdinalMap globalOrdinals) {
+            last = new WeakReference<>(globalOrdinals);
+        }
+    }
+
 }
@@ -24,6 +24,7 @@ import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LongValues;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.IndexSettings;
@@ -46,22 +47,29 @@ public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent impleme
 
     private final String fieldName;
     private final long memorySizeInBytes;
+    private final long buildTimeInMillis;
 
+    private final IncrementalOrdinalMap globalOrdinals;
+    // only set if the field requires a Lucene ordinal map, it is then part of memorySizeInBytes
+    @Nullable
     private final OrdinalMap ordinalMap;
     private final Atomic[] atomicReaders;
     private final Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction;
 
 
     protected GlobalOrdinalsIndexFieldData(IndexSettings indexSettings, String fieldName, AtomicOrdinalsFieldData[] segmentAfd,
-                                           OrdinalMap ordinalMap, long memorySizeInBytes, Function<SortedSetDocValues,
-                                           ScriptDocValues<?>> scriptFunction) {
+                                           IncrementalOrdinalMap globalOrdinals, @Nullable OrdinalMap ordinalMap,
+                                           long memorySizeInBytes, long buildTimeInMillis,
+                                           Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) {
         super(indexSettings);
         this.fieldName = fieldName;
         this.memorySizeInBytes = memorySizeInBytes;
+        this.buildTimeInMillis = buildTimeInMillis;
+        this.globalOrdinals = globalOrdinals;
         this.ordinalMap = ordinalMap;
         this.atomicReaders = new Atomic[segmentAfd.length];
         for (int i = 0; i < segmentAfd.length; i++) {
-            atomicReaders[i] = new Atomic(segmentAfd[i], ordinalMap, i);
+            atomicReaders[i] = new Atomic(segmentAfd[i], globalOrdinals, i);
         }
         this.scriptFunction = scriptFunction;
     }
@@ -114,16 +122,45 @@ public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent impleme
 
     @Override
     public OrdinalMap getOrdinalMap() {
+        if (ordinalMap == null) {
+            throw new IllegalStateException("global ordinals of field [" + fieldName + "] are not built with an ordinal map");
+        }
         return ordinalMap;
     }
 
+    @Override
+    public LongValues getGlobalOrdinalsMapping(LeafReaderContext context) {
+        return globalOrdinals.getGlobalOrds(context.ord);
+    }
+
+    /**
+     * Returns how long it took to build these global ordinals.
+     */
+    public long getBuildTimeInMillis() {
+        return buildTimeInMillis;
+    }
+
+    /**
+     * Returns the number of segments with values that these global ordinals were built over.
+     */
+    public int getSegments() {
+        return globalOrdinals.getSegments();
+    }
+
+    /**
+     * Returns the number of segments whose ordinals were reused from the previous global ordinals of this field.
+     */
+    public int getReusedSegments() {
+        return globalOrdinals.getReusedSegments();
+    }
+
     private final class Atomic extends AbstractAtomicOrdinalsFieldData {
 
         private final AtomicOrdinalsFieldData afd;
-        private final OrdinalMap ordinalMap;
+        private final IncrementalOrdinalMap ordinalMap;
         private final int segmentIndex;
 
-        private Atomic(AtomicOrdinalsFieldData afd, OrdinalMap ordinalMap, int segmentIndex) {
+        private Atomic(AtomicOrdinalsFieldData afd, IncrementalOrdinalMap ordinalMap, int segmentIndex) {
             super(scriptFunction);
             this.afd = afd;
             this.ordinalMap = ordinalMap;
@@ -0,0 +1,436 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+import org.apache.lucene.util.packed.PagedMutable;
+import org.elasticsearch.common.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maps the ordinals of the segments of a reader to global ordinals, like Lucene's {@link OrdinalMap}, but can be built
+ * incrementally from the map of a previous reader: the mappings of the segments that are still present are remapped from
+ * the previous global ordinals without comparing their terms again, and only the terms of the new segments are merged
+ * in. Global ordinals are the same as the ones of {@link OrdinalMap}, ie. the rank of each term in the union of the terms
+ * of all segments.
+ */
+public final class IncrementalOrdinalMap implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(IncrementalOrdinalMap.class);
+    private static final int PAGE_SIZE = 1 << 15;
+
+    // identifies the ordinals of each segment, null if the ordinals of a segment can't be reused
+    private final Object[] segmentKeys;
+    private final long[] segmentValueCounts;
+    private final LongValues[] segmentToGlobalOrds;
+    private final long[] segmentRamBytesUsed;
+    private final LongValues firstSegments;
+    private final LongValues firstSegmentOrds;
+    private final long valueCount;
+    private final int segments;
+    private final int reusedSegments;
+    private final long ramBytesUsed;
+
+    private IncrementalOrdinalMap(Object[] segmentKeys, long[] segmentValueCounts, LongValues[] segmentToGlobalOrds,
+                                  long[] segmentRamBytesUsed, LongValues firstSegments, LongValues firstSegmentOrds,
+                                  long firstSegmentsRamBytesUsed, long valueCount, int reusedSegments) {
+        this.segmentKeys = segmentKeys;
+        this.segmentValueCounts = segmentValueCounts;
+        this.segmentToGlobalOrds = segmentToGlobalOrds;
+        this.segmentRamBytesUsed = segmentRamBytesUsed;
+        this.firstSegments = firstSegments;
+        this.firstSegmentOrds = firstSegmentOrds;
+        this.valueCount = valueCount;
+        int segments = 0;
+        long ramBytesUsed = BASE_RAM_BYTES_USED + firstSegmentsRamBytesUsed + RamUsageEstimator.sizeOf(segmentValueCounts)
+            + RamUsageEstimator.sizeOf(segmentRamBytesUsed) + RamUsageEstimator.shallowSizeOf(segmentKeys)
+            + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds);
+        for (int i = 0; i < segmentValueCounts.length; i++) {
+            if (segmentValueCounts[i] > 0) {
+                segments++;
+            }
+            ramBytesUsed += segmentRamBytesUsed[i];
+        }
+        this.segments = segments;
+        this.reusedSegments = reusedSegments;
+        this.ramBytesUsed = ramBytesUsed;
+    }
+
+    /**
+     * Returns the key that identifies the ordinals of {@code field} in the provided segment across readers, or {@code null}
+     * if they can't be identified.
+     */
+    @Nullable
+    static Object segmentKey(LeafReader reader, String field) {
+        final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+        final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (cacheHelper == null || fieldInfo == null) {
+            return null;
+        }
+        // doc values updates change the ordinals of a segment without changing its core
+        return new SegmentKey(cacheHelper.getKey(), fieldInfo.getDocValuesGen());
+    }
+
+    /**
+     * Wraps a Lucene {@link OrdinalMap} that has been built over {@code subs}.
+     */
+    static IncrementalOrdinalMap wrap(Object[] segmentKeys, SortedSetDocValues[] subs, OrdinalMap ordinalMap) {
+        final long[] segmentValueCounts = new long[subs.length];
+        final LongValues[] segmentToGlobalOrds = new LongValues[subs.length];
+        for (int i = 0; i < subs.length; i++) {
+            segmentValueCounts[i] = subs[i].getValueCount();
+            segmentToGlobalOrds[i] = ordinalMap.getGlobalOrds(i);
+        }
+        final LongValues firstSegments = new LongValues() {
+            @Override
+            public long get(long globalOrd) {
+                return ordinalMap.getFirstSegmentNumber(globalOrd);
+            }
+        };
+        final LongValues firstSegmentOrds = new LongValues() {
+            @Override
+            public long get(long globalOrd) {
+                return ordinalMap.getFirstSegmentOrd(globalOrd);
+            }
+        };
+        // the memory of the segment mappings is part of the memory of the ordinal map
+        return new IncrementalOrdinalMap(segmentKeys, segmentValueCounts, segmentToGlobalOrds, new long[subs.length], firstSegments,
+            firstSegmentOrds, ordinalMap.ramBytesUsed(), ordinalMap.getValueCount(), 0);
+    }
+
+    /**
+     * Builds the global ordinals of {@code subs}, reusing the mappings of {@code previous} for the segments whose keys did not
+     * change. Terms are only compared when merging in the terms of the segments that are not part of {@code previous}.
+     */
+    static IncrementalOrdinalMap build(Object[] segmentKeys, SortedSetDocValues[] subs,
+                                       @Nullable IncrementalOrdinalMap previous) throws IOException {
+        assert segmentKeys.length == subs.length;
+        final long[] segmentValueCounts = new long[subs.length];
+        // the index of each segment in the previous map, or -1 if its ordinals need to be merged in
+        final int[] previousSegments = new int[subs.length];
+        final Map<Object, Integer> previousSegmentsByKey = new HashMap<>();
+        if (previous != null) {
+            for (int j = 0; j < previous.segmentKeys.length; j++) {
+                if (previous.segmentKeys[j] != null && previous.segmentValueCounts[j] > 0) {
+                    previousSegmentsByKey.put(previous.segmentKeys[j], j);
+                }
+            }
+        }
+        int reusedSegments = 0;
+        long maxSegmentValueCount = 0;
+        for (int i = 0; i < subs.length; i++) {
+            segmentValueCounts[i] = subs[i].getValueCount();
+            maxSegmentValueCount = Math.max(maxSegmentValueCount, segmentValueCounts[i]);
+            final Integer j = segmentKeys[i] == null || segmentValueCounts[i] == 0 ? null : previousSegmentsByKey.get(segmentKeys[i]);
+            if (j != null && previous.segmentValueCounts[j] == segmentValueCounts[i]) {
+                previousSegments[i] = j;
+                reusedSegments++;
+            } else {
+                previousSegments[i] = -1;
+            }
+        }
+
+        // 1. find the previous global ordinals that are still used by the reused segments, and the first of these segments
+        // that contains each of them so that their terms can be looked up
+        final long previousValueCount = reusedSegments == 0 ? 0 : previous.valueCount;
+        final LongBitSet alive = new LongBitSet(previousValueCount);
+        final PagedMutable aliveSegments = new PagedMutable(previousValueCount, PAGE_SIZE,
+            PackedInts.bitsRequired(subs.length), PackedInts.COMPACT);
+        final PagedMutable aliveSegmentOrds = new PagedMutable(previousValueCount, PAGE_SIZE,
+            PackedInts.bitsRequired(maxSegmentValueCount), PackedInts.COMPACT);
+        for (int i = 0; i < subs.length; i++) {
+            if (previousSegments[i] == -1) {
+                continue;
+            }
+            final LongValues segmentToPreviousGlobalOrds = previous.segmentToGlobalOrds[previousSegments[i]];
+            for (long segmentOrd = 0; segmentOrd < segmentValueCounts[i]; segmentOrd++) {
+                final long previousGlobalOrd = segmentToPreviousGlobalOrds.get(segmentOrd);
+                if (alive.getAndSet(previousGlobalOrd) == false) {
+                    aliveSegments.set(previousGlobalOrd, i);
+                    aliveSegmentOrds.set(previousGlobalOrd, segmentOrd);
+                }
+            }
+        }
+        final long aliveCount = alive.cardinality();
+        // the rank of each live previous global ordinal among the live ones, null if they are all live
+        final PagedMutable aliveRanks;
+        if (aliveCount == previousValueCount) {
+            aliveRanks = null;
+        } else {
+            aliveRanks = new PagedMutable(previousValueCount, PAGE_SIZE, PackedInts.bitsRequired(aliveCount), PackedInts.COMPACT);
+            long rank = 0;
+            for (long previousGlobalOrd = 0; previousGlobalOrd < previousValueCount; previousGlobalOrd++) {
+                if (alive.get(previousGlobalOrd)) {
+                    aliveRanks.set(previousGlobalOrd, rank);
+                    // compact in place, the rank is never greater than the ordinal
+                    aliveSegments.set(rank, aliveSegments.get(previousGlobalOrd));
+                    aliveSegmentOrds.set(rank, aliveSegmentOrds.get(previousGlobalOrd));
+                    rank++;
+                }
+            }
+            assert rank == aliveCount;
+        }
+
+        // 2. merge the terms of the new segments into the live terms of the previous global ordinals
+        final PackedLongValues.Builder[] newSegmentToGlobalOrds = new PackedLongValues.Builder[subs.length];
+        final SegmentTermsQueue queue = new SegmentTermsQueue(subs.length);
+        for (int i = 0; i < subs.length; i++) {
+            if (previousSegments[i] == -1 && segmentValueCounts[i] > 0) {
+                newSegmentToGlobalOrds[i] = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+                final TermsEnum termsEnum = subs[i].termsEnum();
+                if (termsEnum.next() != null) {
+                    queue.add(new SegmentTerms(i, termsEnum));
+                }
+            }
+        }
+        // the terms that are not part of the live previous global ordinals, with the number of live terms that are smaller
+        final PackedLongValues.Builder newTermPositions = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder newTermSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder newTermSegmentOrds = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        final BytesRefBuilder term = new BytesRefBuilder();
+        long newTermCount = 0;
+        long position = 0;
+        while (queue.size() != 0) {
+            final SegmentTerms top = queue.top();
+            term.copyBytes(top.termsEnum.term());
+            // terms come in order so the position of this term can't be before the position of the previous one
+            position = searchLiveTerm(subs, aliveSegments, aliveSegmentOrds, position, aliveCount, term.get());
+            final long globalOrd = position + newTermCount;
+            if (position == aliveCount || compareLiveTerm(subs, aliveSegments, aliveSegmentOrds, position, term.get()) != 0) {
+                newTermPositions.add(position);
+                newTermSegments.add(top.segment);
+                newTermSegmentOrds.add(top.termsEnum.ord());
+                newTermCount++;
+            }
+            while (queue.size() != 0 && queue.top().termsEnum.term().equals(term.get())) {
+                final SegmentTerms segmentTerms = queue.top();
+                newSegmentToGlobalOrds[segmentTerms.segment].add(globalOrd);
+                if (segmentTerms.termsEnum.next() == null) {
+                    queue.pop();
+                } else {
+                    queue.updateTop();
+                }
+            }
+        }
+        final PackedLongValues newTermPositionValues = newTermPositions.build();
+        final PackedLongValues newTermSegmentValues = newTermSegments.build();
+        final PackedLongValues newTermSegmentOrdValues = newTermSegmentOrds.build();
+
+        // 3. interleave the live previous global ordinals and the new terms to number the new global ordinals
+        final long valueCount = aliveCount + newTermCount;
+        final PackedLongValues.Builder firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder firstSegmentOrds = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        long newTerm = 0;
+        for (long rank = 0; rank <= aliveCount; rank++) {
+            while (newTerm < newTermCount && newTermPositionValues.get(newTerm) <= rank) {
+                firstSegments.add(newTermSegmentValues.get(newTerm));
+                firstSegmentOrds.add(newTermSegmentOrdValues.get(newTerm));
+                newTerm++;
+            }
+            if (rank < aliveCount) {
+                firstSegments.add(aliveSegments.get(rank));
+                firstSegmentOrds.add(aliveSegmentOrds.get(rank));
+            }
+        }
+        assert newTerm == newTermCount;
+
+        // 4. remap the reused segments, whose mappings can be shared when the previous global ordinals did not change, unless
+        // they are backed by a Lucene ordinal map
+        final boolean sameGlobalOrds = aliveRanks == null && newTermCount == 0;
+        final LongValues[] segmentToGlobalOrds = new LongValues[subs.length];
+        final long[] segmentRamBytesUsed = new long[subs.length];
+        for (int i = 0; i < subs.length; i++) {
+            if (previousSegments[i] != -1) {
+                final LongValues segmentToPreviousGlobalOrds = previous.segmentToGlobalOrds[previousSegments[i]];
+                if (sameGlobalOrds && segmentToPreviousGlobalOrds instanceof PackedLongValues) {
+                    segmentToGlobalOrds[i] = segmentToPreviousGlobalOrds;
+                    segmentRamBytesUsed[i] = previous.segmentRamBytesUsed[previousSegments[i]];
+                    continue;
+                }
+                final PackedLongValues.Builder builder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+                // the global ordinals of a segment increase with its ordinals so the new terms before them can be counted as we go
+                long newTermsBefore = 0;
+                for (long segmentOrd = 0; segmentOrd < segmentValueCounts[i]; segmentOrd++) {
+                    final long previousGlobalOrd = segmentToPreviousGlobalOrds.get(segmentOrd);
+                    final long rank = aliveRanks == null ? previousGlobalOrd : aliveRanks.get(previousGlobalOrd);
+                    while (newTermsBefore < newTermCount && newTermPositionValues.get(newTermsBefore) <= rank) {
+                        newTermsBefore++;
+                    }
+                    builder.add(rank + newTermsBefore);
+                }
+                final PackedLongValues values = builder.build();
+                segmentToGlobalOrds[i] = values;
+                segmentRamBytesUsed[i] = values.ramBytesUsed();
+            } else if (newSegmentToGlobalOrds[i] != null) {
+                final PackedLongValues values = newSegmentToGlobalOrds[i].build();
+                assert values.size() == segmentValueCounts[i];
+                segmentToGlobalOrds[i] = values;
+                segmentRamBytesUsed[i] = values.ramBytesUsed();
+            } else {
+                segmentToGlobalOrds[i] = LongValues.IDENTITY; // no values
+            }
+        }
+        final PackedLongValues firstSegmentValues = firstSegments.build();
+        final PackedLongValues firstSegmentOrdValues = firstSegmentOrds.build();
+        return new IncrementalOrdinalMap(segmentKeys, segmentValueCounts, segmentToGlobalOrds, segmentRamBytesUsed,
+            firstSegmentValues, firstSegmentOrdValues, firstSegmentValues.ramBytesUsed() + firstSegmentOrdValues.ramBytesUsed(),
+            valueCount, reusedSegments);
+    }
+
+    /**
+     * Returns the smallest rank in {@code [from, aliveCount)} of the live previous terms that is greater than or equal to
+     * {@code term}, or {@code aliveCount} if there is none.
+     */
+    private static long searchLiveTerm(SortedSetDocValues[] subs, PagedMutable aliveSegments, PagedMutable aliveSegmentOrds,
+                                       long from, long aliveCount, BytesRef term) throws IOException {
+        long low = from;
+        long high = aliveCount;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (compareLiveTerm(subs, aliveSegments, aliveSegmentOrds, mid, term) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compareLiveTerm(SortedSetDocValues[] subs, PagedMutable aliveSegments, PagedMutable aliveSegmentOrds,
+                                       long rank, BytesRef term) throws IOException {
+        return subs[(int) aliveSegments.get(rank)].lookupOrd(aliveSegmentOrds.get(rank)).compareTo(term);
+    }
+
+    /**
+     * Returns the number of global ordinals.
+     */
+    public long getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Returns the mapping from the ordinals of the segment at {@code segmentIndex} to global ordinals.
+     */
+    public LongValues getGlobalOrds(int segmentIndex) {
+        return segmentToGlobalOrds[segmentIndex];
+    }
+
+    /**
+     * Returns the index of a segment that contains the term of {@code globalOrd}.
+     */
+    public int getFirstSegmentNumber(long globalOrd) {
+        return (int) firstSegments.get(globalOrd);
+    }
+
+    /**
+     * Returns the ordinal of the term of {@code globalOrd} in the segment returned by {@link #getFirstSegmentNumber(long)}.
+     */
+    public long getFirstSegmentOrd(long globalOrd) {
+        return firstSegmentOrds.get(globalOrd);
+    }
+
+    /**
+     * Returns the number of segments that have values.
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns the number of segments whose ordinals were reused from the previous map rather than merged in.
+     */
+    public int getReusedSegments() {
+        return reusedSegments;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed;
+    }
+
+    private static final class SegmentKey {
+
+        private final Object coreKey;
+        private final long docValuesGen;
+
+        private SegmentKey(Object coreKey, long docValuesGen) {
+            this.coreKey = coreKey;
+            this.docValuesGen = docValuesGen;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final SegmentKey that = (SegmentKey) o;
+            return docValuesGen == that.docValuesGen && coreKey.equals(that.coreKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(coreKey, docValuesGen);
+        }
+    }
+
+    private static final class SegmentTerms {
+
+        private final int segment;
+        private final TermsEnum termsEnum;
+
+        private SegmentTerms(int segment, TermsEnum termsEnum) {
+            this.segment = segment;
+            this.termsEnum = termsEnum;
+        }
+    }
+
+    private static final class SegmentTermsQueue extends PriorityQueue<SegmentTerms> {
+
+        private SegmentTermsQueue(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected boolean lessThan(SegmentTerms a, SegmentTerms b) {
+            final int cmp = a.termsEnum.term().compareTo(b.termsEnum.term());
+            return cmp != 0 ? cmp < 0 : a.segment < b.segment;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
@@ -58,6 +59,11 @@ public abstract class AbstractIndexOrdinalsFieldData extends AbstractIndexFieldD
         return null;
     }
 
+    @Override
+    public LongValues getGlobalOrdinalsMapping(LeafReaderContext context) {
+        return null;
+    }
+
     @Override
     public IndexOrdinalsFieldData loadGlobal(DirectoryReader indexReader) {
         if (indexReader.leaves().size() <= 1) {
@@ -96,7 +102,7 @@ public abstract class AbstractIndexOrdinalsFieldData extends AbstractIndexFieldD
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
         return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger,
-                AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION);
+                AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION, cache.getGlobalOrdinalsHistory(indexReader), false);
     }
 
     @Override
@@ -71,6 +71,7 @@ public abstract class DocValuesIndexFieldData {
 
         private NumericType numericType;
         private Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction = AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION;
+        private boolean ordinalMapRequired = false;
 
         public Builder numericType(NumericType type) {
             this.numericType = type;
@@ -82,6 +83,14 @@ public abstract class DocValuesIndexFieldData {
             return this;
         }
 
+        /**
+         * Build global ordinals with a Lucene {@link org.apache.lucene.index.OrdinalMap}, for fields whose consumers need it.
+         */
+        public Builder ordinalMapRequired(boolean ordinalMapRequired) {
+            this.ordinalMapRequired = ordinalMapRequired;
+            return this;
+        }
+
         @Override
         public IndexFieldData<?> build(IndexSettings indexSettings, MappedFieldType fieldType, IndexFieldDataCache cache,
                                        CircuitBreakerService breakerService, MapperService mapperService) {
@@ -93,7 +102,8 @@ public abstract class DocValuesIndexFieldData {
             } else if (numericType != null) {
                 return new SortedNumericDVIndexFieldData(indexSettings.getIndex(), fieldName, numericType);
             } else {
-                return new SortedSetDVOrdinalsIndexFieldData(indexSettings, cache, fieldName, breakerService, scriptFunction);
+                return new SortedSetDVOrdinalsIndexFieldData(indexSettings, cache, fieldName, breakerService, scriptFunction,
+                    ordinalMapRequired);
             }
         }
 
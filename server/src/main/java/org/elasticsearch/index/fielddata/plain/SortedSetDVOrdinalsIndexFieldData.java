@@ -28,6 +28,7 @@ import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.SortedSetSelector;
 import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.util.LongValues;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.index.IndexSettings;
@@ -50,15 +51,27 @@ public class SortedSetDVOrdinalsIndexFieldData extends DocValuesIndexFieldData i
     private final IndexFieldDataCache cache;
     private final CircuitBreakerService breakerService;
     private final Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction;
+    private final boolean ordinalMapRequired;
     private static final Logger logger = LogManager.getLogger(SortedSetDVOrdinalsIndexFieldData.class);
 
     public SortedSetDVOrdinalsIndexFieldData(IndexSettings indexSettings, IndexFieldDataCache cache, String fieldName,
             CircuitBreakerService breakerService, Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) {
+        this(indexSettings, cache, fieldName, breakerService, scriptFunction, false);
+    }
+
+    /**
+     * @param ordinalMapRequired whether global ordinals should be built with a Lucene {@link OrdinalMap}, which is
+     *                           required to call {@link IndexOrdinalsFieldData#getOrdinalMap()} on them
+     */
+    public SortedSetDVOrdinalsIndexFieldData(IndexSettings indexSettings, IndexFieldDataCache cache, String fieldName,
+            CircuitBreakerService breakerService, Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction,
+            boolean ordinalMapRequired) {
         super(indexSettings.getIndex(), fieldName);
         this.indexSettings = indexSettings;
         this.cache = cache;
         this.breakerService = breakerService;
         this.scriptFunction = scriptFunction;
+        this.ordinalMapRequired = ordinalMapRequired;
     }
 
     @Override
@@ -127,11 +140,17 @@ public class SortedSetDVOrdinalsIndexFieldData extends DocValuesIndexFieldData i
 
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
-        return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger, scriptFunction);
+        return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger, scriptFunction,
+                cache.getGlobalOrdinalsHistory(indexReader), ordinalMapRequired);
     }
 
     @Override
     public OrdinalMap getOrdinalMap() {
         return null;
     }
+
+    @Override
+    public LongValues getGlobalOrdinalsMapping(LeafReaderContext context) {
+        return null;
+    }
 }
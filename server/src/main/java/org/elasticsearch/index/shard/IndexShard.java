@@ -41,6 +41,7 @@ import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.flush.FlushRequest;
 import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
 import org.elasticsearch.action.admin.indices.upgrade.post.UpgradeRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
@@ -55,6 +56,7 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.Settings;
@@ -139,6 +141,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -680,6 +683,53 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse);
     }
 
+    /**
+     * Indexes documents with auto-generated ids on the primary, letting the engine index them as a single batch. Documents are parsed
+     * in order and the batch ends before the first document that requires a mapping update, so the returned results are those of the
+     * first documents only and the remaining ones need to be indexed once the mapping is updated. Documents that fail to parse get a
+     * failure result.
+     *
+     * @param sourcesToParse          the documents to index
+     * @param autoGeneratedTimestamps the timestamps at which the ids of the documents were generated
+     */
+    public List<Engine.IndexResult> applyAppendOnlyIndexOperationsOnPrimary(List<SourceToParse> sourcesToParse,
+                                                                           long[] autoGeneratedTimestamps) throws IOException {
+        assert sourcesToParse.size() == autoGeneratedTimestamps.length;
+        ensureWriteAllowed(Engine.Operation.Origin.PRIMARY);
+        final List<Engine.IndexResult> results = new ArrayList<>(sourcesToParse.size());
+        final List<Engine.Index> operations = new ArrayList<>(sourcesToParse.size());
+        for (int i = 0; i < sourcesToParse.size(); i++) {
+            final SourceToParse sourceToParse = sourcesToParse.get(i);
+            assert autoGeneratedTimestamps[i] != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP : "document [" + sourceToParse.id()
+                + "] doesn't have an auto-generated id";
+            try {
+                final Engine.Index operation = prepareIndex(docMapper(sourceToParse.type()), indexSettings.getIndexVersionCreated(),
+                    sourceToParse, UNASSIGNED_SEQ_NO, operationPrimaryTerm, Versions.MATCH_ANY, VersionType.INTERNAL,
+                    Engine.Operation.Origin.PRIMARY, autoGeneratedTimestamps[i], false);
+                if (operation.parsedDoc().dynamicMappingsUpdate() != null) {
+                    break;
+                }
+                operations.add(operation);
+                // filled in with the result of the engine below
+                results.add(null);
+            } catch (Exception e) {
+                // a document level failure, see #applyIndexOperation
+                verifyNotClosed(e);
+                results.add(new Engine.IndexResult(e, Versions.MATCH_ANY, operationPrimaryTerm, UNASSIGNED_SEQ_NO));
+            }
+        }
+        if (operations.isEmpty() == false) {
+            final Iterator<Engine.IndexResult> engineResults = index(getEngine(), operations).iterator();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, engineResults.next());
+                }
+            }
+            assert engineResults.hasNext() == false;
+        }
+        return results;
+    }
+
     public Engine.IndexResult applyIndexOperationOnReplica(long seqNo, long version, long autoGeneratedTimeStamp,
                                                            boolean isRetry, SourceToParse sourceToParse)
         throws IOException {
@@ -744,6 +794,29 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return result;
     }
 
+    private List<Engine.IndexResult> index(Engine engine, List<Engine.Index> operations) throws IOException {
+        active.set(true);
+        final List<Engine.IndexResult> results;
+        for (int i = 0; i < operations.size(); i++) {
+            operations.set(i, indexingOperationListeners.preIndex(shardId, operations.get(i)));
+        }
+        try {
+            if (logger.isTraceEnabled()) {
+                logger.trace("index batch of [{}] operations", operations.size());
+            }
+            results = engine.index(operations);
+        } catch (Exception e) {
+            for (Engine.Index operation : operations) {
+                indexingOperationListeners.postIndex(shardId, operation, e);
+            }
+            throw e;
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            indexingOperationListeners.postIndex(shardId, operations.get(i), results.get(i));
+        }
+        return results;
+    }
+
     public Engine.NoOpResult markSeqNoAsNoop(long seqNo, String reason) throws IOException {
         return markSeqNoAsNoop(seqNo, operationPrimaryTerm, reason, Engine.Operation.Origin.REPLICA);
     }
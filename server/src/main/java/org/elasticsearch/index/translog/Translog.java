@@ -22,6 +22,7 @@ package org.elasticsearch.index.translog;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.Constants;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesArray;
@@ -502,24 +503,11 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     public Location add(final Operation operation) throws IOException {
         final ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(bigArrays);
         try {
-            final long start = out.position();
-            out.skip(Integer.BYTES);
-            writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
-            final long end = out.position();
-            final int operationSize = (int) (end - Integer.BYTES - start);
-            out.seek(start);
-            out.writeInt(operationSize);
-            out.seek(end);
+            writeOperationWithSize(out, operation);
             final ReleasablePagedBytesReference bytes = out.bytes();
             try (ReleasableLock ignored = readLock.acquire()) {
                 ensureOpen();
-                if (operation.primaryTerm() > current.getPrimaryTerm()) {
-                    assert false :
-                        "Operation term is newer than the current term; "
-                            + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]";
-                    throw new IllegalArgumentException("Operation term is newer than the current term; "
-                        + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]");
-                }
+                ensureTermIsNotNewerThanCurrent(operation);
                 return current.add(bytes, operation.seqNo());
             }
         } catch (final AlreadyClosedException | IOException ex) {
@@ -533,6 +521,65 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         }
     }
 
+    /**
+     * Adds several operations to the transaction log at once. The operations are serialized into a single buffer which is
+     * written with one call to the current writer, so this is cheaper than adding them one by one.
+     *
+     * @param operations the operations to add
+     * @return the locations of the operations in the translog, in the same order as the operations
+     * @throws IOException if adding the operations to the translog resulted in an I/O exception
+     */
+    public List<Location> add(final List<? extends Operation> operations) throws IOException {
+        final ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(bigArrays);
+        try {
+            final int[] ends = new int[operations.size()];
+            final long[] seqNos = new long[operations.size()];
+            for (int i = 0; i < ends.length; i++) {
+                final Operation operation = operations.get(i);
+                writeOperationWithSize(out, operation);
+                ends[i] = Math.toIntExact(out.position());
+                seqNos[i] = operation.seqNo();
+            }
+            final ReleasablePagedBytesReference bytes = out.bytes();
+            try (ReleasableLock ignored = readLock.acquire()) {
+                ensureOpen();
+                for (Operation operation : operations) {
+                    ensureTermIsNotNewerThanCurrent(operation);
+                }
+                return current.add(bytes, ends, seqNos);
+            }
+        } catch (final AlreadyClosedException | IOException ex) {
+            closeOnTragicEvent(ex);
+            throw ex;
+        } catch (final Exception ex) {
+            closeOnTragicEvent(ex);
+            throw new TranslogException(shardId, "Failed to write [" + operations.size() + "] operations", ex);
+        } finally {
+            Releasables.close(out);
+        }
+    }
+
+    private static void writeOperationWithSize(final ReleasableBytesStreamOutput out, final Operation operation) throws IOException {
+        final long start = out.position();
+        out.skip(Integer.BYTES);
+        writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+        final long end = out.position();
+        final int operationSize = (int) (end - Integer.BYTES - start);
+        out.seek(start);
+        out.writeInt(operationSize);
+        out.seek(end);
+    }
+
+    private void ensureTermIsNotNewerThanCurrent(final Operation operation) {
+        if (operation.primaryTerm() > current.getPrimaryTerm()) {
+            assert false :
+                "Operation term is newer than the current term; "
+                    + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]";
+            throw new IllegalArgumentException("Operation term is newer than the current term; "
+                + "current term[" + current.getPrimaryTerm() + "], operation term[" + operation + "]");
+        }
+    }
+
     /**
      * Tests whether or not the translog generation should be rolled to a new generation. This test
      * is based on the size of the current generation compared to the configured generation
@@ -592,7 +639,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             }
             TranslogSnapshot[] snapshots = Stream.concat(readers.stream(), Stream.of(current))
                 .filter(reader -> reader.getGeneration() >= fromFileGen && reader.getCheckpoint().minSeqNo <= upToSeqNo)
-                .map(BaseTranslogReader::newSnapshot).toArray(TranslogSnapshot[]::new);
+                .map(this::newSnapshot).toArray(TranslogSnapshot[]::new);
             final Snapshot snapshot = newMultiSnapshot(snapshots);
             if (upToSeqNo == Long.MAX_VALUE) {
                 return snapshot;
@@ -635,12 +682,20 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     public Snapshot newSnapshotFromMinSeqNo(long minSeqNo) throws IOException {
         try (ReleasableLock ignored = readLock.acquire()) {
             ensureOpen();
-            TranslogSnapshot[] snapshots = readersAboveMinSeqNo(minSeqNo).map(BaseTranslogReader::newSnapshot)
+            TranslogSnapshot[] snapshots = readersAboveMinSeqNo(minSeqNo).map(this::newSnapshot)
                 .toArray(TranslogSnapshot[]::new);
             return newMultiSnapshot(snapshots);
         }
     }
 
+    private TranslogSnapshot newSnapshot(BaseTranslogReader reader) {
+        // mapped files can't be deleted on Windows until the mapping is garbage collected
+        if (reader instanceof TranslogReader && indexSettings.isTranslogMmapSnapshots() && Constants.WINDOWS == false) {
+            return ((TranslogReader) reader).newMappedSnapshot();
+        }
+        return reader.newSnapshot();
+    }
+
     private Snapshot newMultiSnapshot(TranslogSnapshot[] snapshots) throws IOException {
         final Closeable onClose;
         if (snapshots.length == 0) {
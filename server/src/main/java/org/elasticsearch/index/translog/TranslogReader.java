@@ -28,6 +28,7 @@ import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -43,6 +44,7 @@ public class TranslogReader extends BaseTranslogReader implements Closeable {
     private final int totalOperations;
     private final Checkpoint checkpoint;
     protected final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile MappedByteBuffer mapped;
 
     /**
      * Create a translog writer against the specified translog file channel.
@@ -121,6 +123,34 @@ public class TranslogReader extends BaseTranslogReader implements Closeable {
         return checkpoint;
     }
 
+    /**
+     * Returns a snapshot that reads operations from a memory-mapped view of this generation, which is immutable up to the offset
+     * of its checkpoint. Operations are deserialized straight from the mapped pages instead of being copied to the heap with a
+     * positional read each. The mapping is created on the first call and shared by later snapshots of this reader. Falls back to
+     * a regular snapshot if the generation is too large to be mapped in a single buffer or if mapping fails.
+     */
+    TranslogSnapshot newMappedSnapshot() {
+        if (length > Integer.MAX_VALUE) {
+            return newSnapshot();
+        }
+        MappedByteBuffer buffer = mapped;
+        if (buffer == null) {
+            synchronized (this) {
+                buffer = mapped;
+                if (buffer == null) {
+                    try {
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                    } catch (IOException e) {
+                        // for instance if the process ran out of virtual memory areas, positional reads still work
+                        return newSnapshot();
+                    }
+                    mapped = buffer;
+                }
+            }
+        }
+        return new TranslogSnapshot(this, length, buffer);
+    }
+
     /**
      * reads an operation at the given position into the given buffer.
      */
@@ -137,6 +167,8 @@ public class TranslogReader extends BaseTranslogReader implements Closeable {
     @Override
     public final void close() throws IOException {
         if (closed.compareAndSet(false, true)) {
+            // the pages are unmapped once the buffer and the snapshots using it are garbage collected
+            mapped = null;
             channel.close();
         }
     }
@@ -19,6 +19,7 @@
 package org.elasticsearch.index.translog;
 
 import org.elasticsearch.common.io.Channels;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 
 import java.io.EOFException;
@@ -32,6 +33,8 @@ final class TranslogSnapshot extends BaseTranslogReader {
     protected final long length;
 
     private final ByteBuffer reusableBuffer;
+    // a memory-mapped view of the generation that operations are read from without copying, or null to use positional reads
+    private final ByteBuffer mapped;
     private long position;
     private int skippedOperations;
     private int readOperations;
@@ -41,11 +44,22 @@ final class TranslogSnapshot extends BaseTranslogReader {
      * Create a snapshot of translog file channel.
      */
     TranslogSnapshot(final BaseTranslogReader reader, final long length) {
+        this(reader, length, null);
+    }
+
+    /**
+     * Create a snapshot of translog file channel that reads operations from the given memory-mapped view of the first
+     * {@code length} bytes of the file.
+     */
+    TranslogSnapshot(final BaseTranslogReader reader, final long length, final ByteBuffer mapped) {
         super(reader.generation, reader.channel, reader.path, reader.header);
+        assert mapped == null || mapped.capacity() == length : "mapped [" + mapped + "] doesn't match length [" + length + "]";
         this.length = length;
         this.totalOperations = reader.totalOperations();
         this.checkpoint = reader.getCheckpoint();
-        this.reusableBuffer = ByteBuffer.allocate(1024);
+        this.reusableBuffer = mapped == null ? ByteBuffer.allocate(1024) : null;
+        // the mapping is shared with other snapshots of the same reader, each snapshot moves the position of its own duplicate
+        this.mapped = mapped == null ? null : mapped.duplicate();
         this.readOperations = 0;
         this.position = reader.getFirstOperationOffset();
         this.reuse = null;
@@ -77,8 +91,23 @@ final class TranslogSnapshot extends BaseTranslogReader {
     }
 
     protected Translog.Operation readOperation() throws IOException {
-        final int opSize = readSize(reusableBuffer, position);
-        reuse = checksummedStream(reusableBuffer, position, opSize, reuse);
+        final int opSize;
+        if (mapped == null) {
+            opSize = readSize(reusableBuffer, position);
+            reuse = checksummedStream(reusableBuffer, position, opSize, reuse);
+        } else {
+            if (position + Integer.BYTES > length) {
+                throw new EOFException("read requested past EOF. pos [" + position + "] end: [" + length + "], generation: [" +
+                    getGeneration() + "], path: [" + path + "]");
+            }
+            // the previous operation narrowed the limit to its own end, open it up again before reading the size of the next one.
+            // the mapping is at most Integer.MAX_VALUE bytes long so positions within it fit in an int
+            mapped.limit(mapped.capacity());
+            opSize = checkSize(mapped.getInt((int) position), position);
+            mapped.limit((int) position + opSize);
+            mapped.position((int) position);
+            reuse = new BufferedChecksumStreamInput(new ByteBufferStreamInput(mapped), path.toString(), reuse);
+        }
         Translog.Operation op = read(reuse);
         position += opSize;
         readOperations++;
@@ -111,6 +140,7 @@ final class TranslogSnapshot extends BaseTranslogReader {
                 ", length=" + length +
                 ", generation=" + generation +
                 ", reusableBuffer=" + reusableBuffer +
+                ", mapped=" + (mapped != null) +
                 '}';
     }
 }
@@ -38,7 +38,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -183,6 +185,43 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         return new Translog.Location(generation, offset, data.length());
     }
 
+    /**
+     * Add the given operations, serialized back to back, to the translog with a single write; returns the locations the
+     * operations were written to.
+     *
+     * @param data   the bytes to write
+     * @param ends   the offset in {@code data} at which each operation ends
+     * @param seqNos the sequence numbers associated with the operations
+     * @return the locations the operations were written to, in the same order as the operations
+     * @throws IOException if writing to the translog resulted in an I/O exception
+     */
+    public synchronized List<Translog.Location> add(final BytesReference data, final int[] ends, final long[] seqNos) throws IOException {
+        assert ends.length == seqNos.length : "got [" + ends.length + "] operations but [" + seqNos.length + "] sequence numbers";
+        assert ends.length == 0 || ends[ends.length - 1] == data.length() : "operations don't cover all bytes";
+        ensureOpen();
+        final long offset = totalOffset;
+        try {
+            data.writeTo(outputStream);
+        } catch (final Exception ex) {
+            closeWithTragicEvent(ex);
+            throw ex;
+        }
+        totalOffset += data.length();
+
+        final List<Translog.Location> locations = new ArrayList<>(ends.length);
+        int start = 0;
+        for (int i = 0; i < ends.length; i++) {
+            minSeqNo = SequenceNumbers.min(minSeqNo, seqNos[i]);
+            maxSeqNo = SequenceNumbers.max(maxSeqNo, seqNos[i]);
+            operationCounter++;
+            final int length = ends[i] - start;
+            assert assertNoSeqNumberConflict(seqNos[i], data.slice(start, length));
+            locations.add(new Translog.Location(generation, offset + start, length));
+            start = ends[i];
+        }
+        return locations;
+    }
+
     private synchronized boolean assertNoSeqNumberConflict(long seqNo, BytesReference data) throws IOException {
         if (seqNo == SequenceNumbers.UNASSIGNED_SEQ_NO) {
             // nothing to do
@@ -78,6 +78,8 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         Setting.memorySizeSetting("indices.requests.cache.size", "1%", Property.NodeScope);
     public static final Setting<TimeValue> INDICES_CACHE_QUERY_EXPIRE =
         Setting.positiveTimeSetting("indices.requests.cache.expire", new TimeValue(0), Property.NodeScope);
+    public static final Setting<Boolean> INDICES_CACHE_QUERY_ACCESS_BUFFERING =
+        Setting.boolSetting("indices.requests.cache.access_buffering", false, Property.NodeScope);
 
     private static final Logger LOGGER = LogManager.getLogger(IndicesRequestCache.class);
 
@@ -96,6 +98,9 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         if (expire != null) {
             cacheBuilder.setExpireAfterAccess(expire);
         }
+        if (INDICES_CACHE_QUERY_ACCESS_BUFFERING.get(settings)) {
+            cacheBuilder.setAccessBuffering(true).setFrequencyAdmission(true);
+        }
         cache = cacheBuilder.build();
     }
 
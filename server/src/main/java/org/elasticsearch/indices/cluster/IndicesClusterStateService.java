@@ -19,6 +19,7 @@
 
 package org.elasticsearch.indices.cluster;
 
+import com.carrotsearch.hppc.cursors.ObjectCursor;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.lucene.store.LockObtainFailedException;
@@ -34,6 +35,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.AllocationId;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
 import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.RecoverySource.Type;
 import org.elasticsearch.cluster.routing.RoutingNode;
@@ -80,6 +82,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -87,6 +90,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -120,6 +124,11 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
     private final PrimaryReplicaSyncer primaryReplicaSyncer;
     private final Consumer<ShardId> globalCheckpointSyncer;
 
+    // the last cluster state that was fully applied by this service, the next state only needs to be applied to the indices it changed
+    private ClusterState lastAppliedState;
+    // indices whose local shards were removed outside of cluster state application, and that the next application has to visit
+    private final Set<Index> indicesToRevisit = new HashSet<>();
+
     @Inject
     public IndicesClusterStateService(Settings settings,
                                       IndicesService indicesService,
@@ -212,24 +221,119 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
                 indicesService.removeIndex(indexService.index(), NO_LONGER_ASSIGNED,
                     "cleaning index (disabled block persistence)"); // also cleans shards
             }
+            lastAppliedState = null;
             return;
         }
 
+        // only visit the indices that this state changes, unless the state changes something that concerns all indices
+        final Set<Index> changedIndices = changedIndices(event);
+        final Predicate<Index> visit = changedIndices == null ? index -> true : changedIndices::contains;
+        final Map<ShardId, ShardRouting> localShards = localShardRoutings(state, changedIndices);
+        if (changedIndices != null) {
+            logger.trace("applying cluster state version [{}] to changed indices {}", state.version(), changedIndices);
+        }
+
         updateFailedShardsCache(state);
 
         deleteIndices(event); // also deletes shards of deleted indices
 
-        removeUnallocatedIndices(event); // also removes shards of removed indices
+        removeUnallocatedIndices(event, localShards, visit); // also removes shards of removed indices
+
+        failMissingShards(state, localShards);
 
-        failMissingShards(state);
+        removeShards(localShards, visit);   // removes any local shards that doesn't match what the master expects
 
-        removeShards(state);   // removes any local shards that doesn't match what the master expects
+        updateIndices(event, localShards, visit); // can also fail shards, but these are then guaranteed to be in failedShardsCache
 
-        updateIndices(event); // can also fail shards, but these are then guaranteed to be in failedShardsCache
+        createIndices(state, localShards);
 
-        createIndices(state);
+        createOrUpdateShards(state, localShards);
+
+        lastAppliedState = state;
+    }
+
+    /**
+     * Returns the indices whose metadata or routing table differ between the previously applied cluster state and the new one, or
+     * {@code null} if the new state has to be applied to all indices. Cluster states that are received as diffs share the
+     * {@link IndexMetaData} and {@link IndexRoutingTable} instances of the indices that they leave unchanged with the previous state,
+     * so comparing references finds the indices that a diff touched without walking their shards.
+     *
+     * @param event the cluster changed event
+     */
+    @Nullable
+    private Set<Index> changedIndices(final ClusterChangedEvent event) {
+        final ClusterState previousState = event.previousState();
+        final ClusterState state = event.state();
+        if (previousState != lastAppliedState
+            || event.isNewCluster()
+            // nodes changes may resolve recovery sources, elect a new master to resend shard state changes to or change versions
+            || previousState.nodes() != state.nodes()
+            || previousState.blocks() != state.blocks()
+            // failed shards are re-sent and cleared on each cluster state
+            || failedShardsCache.isEmpty() == false) {
+            indicesToRevisit.clear();
+            return null;
+        }
+        final Set<Index> changedIndices = new HashSet<>(indicesToRevisit);
+        indicesToRevisit.clear();
+        if (previousState.metaData() != state.metaData()) {
+            for (ObjectCursor<IndexMetaData> cursor : state.metaData().indices().values()) {
+                final IndexMetaData indexMetaData = cursor.value;
+                if (previousState.metaData().index(indexMetaData.getIndex()) != indexMetaData) {
+                    changedIndices.add(indexMetaData.getIndex());
+                }
+            }
+        }
+        if (previousState.routingTable() != state.routingTable()) {
+            for (IndexRoutingTable indexRoutingTable : state.routingTable()) {
+                if (previousState.routingTable().index(indexRoutingTable.getIndex()) != indexRoutingTable) {
+                    changedIndices.add(indexRoutingTable.getIndex());
+                }
+            }
+            for (IndexRoutingTable indexRoutingTable : previousState.routingTable()) {
+                if (state.routingTable().hasIndex(indexRoutingTable.getIndex()) == false) {
+                    changedIndices.add(indexRoutingTable.getIndex());
+                }
+            }
+        }
+        return changedIndices;
+    }
 
-        createOrUpdateShards(state);
+    /**
+     * Returns the shard routings that are assigned to the local node, like {@link RoutingNode} does, restricted to the given indices
+     * unless they are {@code null}.
+     *
+     * @param state   new cluster state
+     * @param indices the indices to return the local shards of, or {@code null} for all indices
+     */
+    private static Map<ShardId, ShardRouting> localShardRoutings(final ClusterState state, @Nullable final Set<Index> indices) {
+        final String localNodeId = state.nodes().getLocalNodeId();
+        final Map<ShardId, ShardRouting> localShards = new LinkedHashMap<>();
+        if (indices == null) {
+            final RoutingNode localRoutingNode = state.getRoutingNodes().node(localNodeId);
+            if (localRoutingNode != null) { // null e.g. if we are not a data node
+                for (ShardRouting shardRouting : localRoutingNode) {
+                    localShards.put(shardRouting.shardId(), shardRouting);
+                }
+            }
+            return localShards;
+        }
+        for (Index index : indices) {
+            final IndexRoutingTable indexRoutingTable = state.routingTable().index(index);
+            if (indexRoutingTable == null || indexRoutingTable.getIndex().equals(index) == false) {
+                continue;
+            }
+            for (IndexShardRoutingTable indexShardRoutingTable : indexRoutingTable) {
+                for (ShardRouting shardRouting : indexShardRoutingTable) {
+                    if (localNodeId.equals(shardRouting.currentNodeId())) {
+                        localShards.put(shardRouting.shardId(), shardRouting);
+                    } else if (shardRouting.relocating() && localNodeId.equals(shardRouting.relocatingNodeId())) {
+                        localShards.put(shardRouting.shardId(), shardRouting.getTargetRelocatingShard());
+                    }
+                }
+            }
+        }
+        return localShards;
     }
 
     /**
@@ -240,6 +344,9 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
      * @param state new cluster state
      */
     private void updateFailedShardsCache(final ClusterState state) {
+        if (failedShardsCache.isEmpty()) {
+            return;
+        }
         RoutingNode localRoutingNode = state.getRoutingNodes().node(state.nodes().getLocalNodeId());
         if (localRoutingNode == null) {
             failedShardsCache.clear();
@@ -334,24 +441,24 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
      * Removes indices that have no shards allocated to this node. This does not delete the shard data as we wait for enough
      * shard copies to exist in the cluster before deleting shard data (triggered by {@link org.elasticsearch.indices.store.IndicesStore}).
      *
-     * @param event the cluster changed event
+     * @param event       the cluster changed event
+     * @param localShards the shards that are assigned to the local node in the visited indices
+     * @param visit       whether an index has to be visited
      */
-    private void removeUnallocatedIndices(final ClusterChangedEvent event) {
+    private void removeUnallocatedIndices(final ClusterChangedEvent event, final Map<ShardId, ShardRouting> localShards,
+                                          final Predicate<Index> visit) {
         final ClusterState state = event.state();
         final String localNodeId = state.nodes().getLocalNodeId();
         assert localNodeId != null;
 
         Set<Index> indicesWithShards = new HashSet<>();
-        RoutingNode localRoutingNode = state.getRoutingNodes().node(localNodeId);
-        if (localRoutingNode != null) { // null e.g. if we are not a data node
-            for (ShardRouting shardRouting : localRoutingNode) {
-                indicesWithShards.add(shardRouting.index());
-            }
+        for (ShardRouting shardRouting : localShards.values()) {
+            indicesWithShards.add(shardRouting.index());
         }
 
         for (AllocatedIndex<? extends Shard> indexService : indicesService) {
             Index index = indexService.index();
-            if (indicesWithShards.contains(index) == false) {
+            if (visit.test(index) && indicesWithShards.contains(index) == false) {
                 // if the cluster change indicates a brand new cluster, we only want
                 // to remove the in-memory structures for the index and not delete the
                 // contents on disk because the index will later be re-imported as a
@@ -371,14 +478,11 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
     /**
      * Notifies master about shards that don't exist but are supposed to be active on this node.
      *
-     * @param state new cluster state
+     * @param state       new cluster state
+     * @param localShards the shards that are assigned to the local node in the visited indices
      */
-    private void failMissingShards(final ClusterState state) {
-        RoutingNode localRoutingNode = state.getRoutingNodes().node(state.nodes().getLocalNodeId());
-        if (localRoutingNode == null) {
-            return;
-        }
-        for (final ShardRouting shardRouting : localRoutingNode) {
+    private void failMissingShards(final ClusterState state, final Map<ShardId, ShardRouting> localShards) {
+        for (final ShardRouting shardRouting : localShards.values()) {
             ShardId shardId = shardRouting.shardId();
             if (shardRouting.initializing() == false &&
                 failedShardsCache.containsKey(shardId) == false &&
@@ -394,19 +498,19 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
      * Removes shards that are currently loaded by indicesService but have disappeared from the routing table of the current node.
      * This method does not delete the shard data.
      *
-     * @param state new cluster state
+     * @param localShards the shards that are assigned to the local node in the visited indices
+     * @param visit       whether an index has to be visited
      */
-    private void removeShards(final ClusterState state) {
-        final String localNodeId = state.nodes().getLocalNodeId();
-        assert localNodeId != null;
-
+    private void removeShards(final Map<ShardId, ShardRouting> localShards, final Predicate<Index> visit) {
         // remove shards based on routing nodes (no deletion of data)
-        RoutingNode localRoutingNode = state.getRoutingNodes().node(localNodeId);
         for (AllocatedIndex<? extends Shard> indexService : indicesService) {
+            if (visit.test(indexService.index()) == false) {
+                continue;
+            }
             for (Shard shard : indexService) {
                 ShardRouting currentRoutingEntry = shard.routingEntry();
                 ShardId shardId = currentRoutingEntry.shardId();
-                ShardRouting newShardRouting = localRoutingNode == null ? null : localRoutingNode.getByShardId(shardId);
+                ShardRouting newShardRouting = localShards.get(shardId);
                 if (newShardRouting == null) {
                     // we can just remove the shard without cleaning it locally, since we will clean it in IndicesStore
                     // once all shards are allocated
@@ -433,15 +537,11 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
         }
     }
 
-    private void createIndices(final ClusterState state) {
+    private void createIndices(final ClusterState state, final Map<ShardId, ShardRouting> localShards) {
         // we only create indices for shards that are allocated
-        RoutingNode localRoutingNode = state.getRoutingNodes().node(state.nodes().getLocalNodeId());
-        if (localRoutingNode == null) {
-            return;
-        }
         // create map of indices to create with shards to fail if index creation fails
         final Map<Index, List<ShardRouting>> indicesToCreate = new HashMap<>();
-        for (ShardRouting shardRouting : localRoutingNode) {
+        for (ShardRouting shardRouting : localShards.values()) {
             if (failedShardsCache.containsKey(shardRouting.shardId()) == false) {
                 final Index index = shardRouting.index();
                 if (indicesService.indexService(index) == null) {
@@ -479,13 +579,16 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
         }
     }
 
-    private void updateIndices(ClusterChangedEvent event) {
+    private void updateIndices(ClusterChangedEvent event, final Map<ShardId, ShardRouting> localShards, final Predicate<Index> visit) {
         if (!event.metaDataChanged()) {
             return;
         }
         final ClusterState state = event.state();
         for (AllocatedIndex<? extends Shard> indexService : indicesService) {
             final Index index = indexService.index();
+            if (visit.test(index) == false) {
+                continue;
+            }
             final IndexMetaData currentIndexMetaData = indexService.getIndexSettings().getIndexMetaData();
             final IndexMetaData newIndexMetaData = state.metaData().index(index);
             assert newIndexMetaData != null : "index " + index + " should have been removed by deleteIndices";
@@ -502,12 +605,9 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
                     indicesService.removeIndex(indexService.index(), FAILURE, "removing index (mapping update failed)");
 
                     // fail shards that would be created or updated by createOrUpdateShards
-                    RoutingNode localRoutingNode = state.getRoutingNodes().node(state.nodes().getLocalNodeId());
-                    if (localRoutingNode != null) {
-                        for (final ShardRouting shardRouting : localRoutingNode) {
-                            if (shardRouting.index().equals(index) && failedShardsCache.containsKey(shardRouting.shardId()) == false) {
-                                sendFailShard(shardRouting, "failed to update mapping for index", e, state);
-                            }
+                    for (final ShardRouting shardRouting : localShards.values()) {
+                        if (shardRouting.index().equals(index) && failedShardsCache.containsKey(shardRouting.shardId()) == false) {
+                            sendFailShard(shardRouting, "failed to update mapping for index", e, state);
                         }
                     }
                 }
@@ -515,16 +615,11 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
         }
     }
 
-    private void createOrUpdateShards(final ClusterState state) {
-        RoutingNode localRoutingNode = state.getRoutingNodes().node(state.nodes().getLocalNodeId());
-        if (localRoutingNode == null) {
-            return;
-        }
-
+    private void createOrUpdateShards(final ClusterState state, final Map<ShardId, ShardRouting> localShards) {
         DiscoveryNodes nodes = state.nodes();
         RoutingTable routingTable = state.routingTable();
 
-        for (final ShardRouting shardRouting : localRoutingNode) {
+        for (final ShardRouting shardRouting : localShards.values()) {
             ShardId shardId = shardRouting.shardId();
             if (failedShardsCache.containsKey(shardId) == false) {
                 AllocatedIndex<? extends Shard> indexService = indicesService.indexService(shardId.getIndex());
@@ -667,6 +762,8 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
 
     private void failAndRemoveShard(ShardRouting shardRouting, boolean sendShardFailure, String message, @Nullable Exception failure,
                                     ClusterState state) {
+        // the master may still expect the shard on this node, which the next cluster state has to find out
+        indicesToRevisit.add(shardRouting.index());
         try {
             AllocatedIndex<? extends Shard> indexService = indicesService.indexService(shardRouting.shardId().getIndex());
             if (indexService != null) {
@@ -38,16 +38,19 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.fielddata.AtomicFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsBuilder;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.ToLongBiFunction;
 
 public class IndicesFieldDataCache extends AbstractComponent implements RemovalListener<IndicesFieldDataCache.Key, Accountable>, Releasable{
@@ -117,6 +120,9 @@ public class IndicesFieldDataCache extends AbstractComponent implements RemovalL
         final String fieldName;
         private final Cache<Key, Accountable> cache;
         private final Listener[] listeners;
+        // the field data of a field is built again for every request, so the history of its global ordinals is kept here
+        private final ConcurrentMap<ShardId, GlobalOrdinalsBuilder.History> globalOrdinalsHistories =
+            ConcurrentCollections.newConcurrentMap();
 
         IndexFieldCache(Logger logger,final Cache<Key, Accountable> cache, Index index, String fieldName, Listener... listeners) {
             this.logger = logger;
@@ -180,6 +186,21 @@ public class IndicesFieldDataCache extends AbstractComponent implements RemovalL
             return (IFD) accountable;
         }
 
+        @Override
+        public GlobalOrdinalsBuilder.History getGlobalOrdinalsHistory(DirectoryReader indexReader) {
+            final ShardId shardId = ShardUtils.extractShardId(indexReader);
+            if (shardId == null) {
+                // readers of different shards can't be told apart
+                return new GlobalOrdinalsBuilder.History();
+            }
+            return globalOrdinalsHistories.computeIfAbsent(shardId, k -> new GlobalOrdinalsBuilder.History());
+        }
+
+        @Override
+        public void clearGlobalOrdinalsHistory(ShardId shardId) {
+            globalOrdinalsHistories.remove(shardId);
+        }
+
         @Override
         public void onClose(CacheKey key) throws IOException {
             cache.invalidate(new Key(this, key, null));
@@ -193,6 +214,7 @@ public class IndicesFieldDataCache extends AbstractComponent implements RemovalL
                     cache.invalidate(key);
                 }
             }
+            globalOrdinalsHistories.clear();
             // force eviction
             cache.refresh();
         }
@@ -206,6 +228,9 @@ public class IndicesFieldDataCache extends AbstractComponent implements RemovalL
                     }
                 }
             }
+            if (this.fieldName.equals(fieldName)) {
+                globalOrdinalsHistories.clear();
+            }
             // we call refresh because this is a manual operation, should happen
             // rarely and probably means the user wants to see memory returned as
             // soon as possible
@@ -20,6 +20,7 @@
 package org.elasticsearch.indices.recovery;
 
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.Version;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractComponent;
@@ -30,6 +31,10 @@ import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.repositories.Repository;
+import org.elasticsearch.repositories.RepositoryMissingException;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportChannel;
@@ -58,6 +63,8 @@ public class PeerRecoverySourceService extends AbstractComponent implements Inde
     private final IndicesService indicesService;
     private final RecoverySettings recoverySettings;
 
+    private volatile RepositoriesService repositoriesService;
+
     final OngoingRecoveries ongoingRecoveries = new OngoingRecoveries();
 
     @Inject
@@ -69,6 +76,14 @@ public class PeerRecoverySourceService extends AbstractComponent implements Inde
         transportService.registerRequestHandler(Actions.START_RECOVERY, StartRecoveryRequest::new, ThreadPool.Names.GENERIC, new StartRecoveryTransportRequestHandler());
     }
 
+    /**
+     * Sets the service used to look up the repository that recovery targets restore files from. The repositories service is created
+     * after this service so it can't be injected into the constructor.
+     */
+    public void setRepositoriesService(RepositoriesService repositoriesService) {
+        this.repositoriesService = repositoriesService;
+    }
+
     @Override
     public void beforeIndexShardClosed(ShardId shardId, @Nullable IndexShard indexShard,
                                        Settings indexSettings) {
@@ -172,9 +187,34 @@ public class PeerRecoverySourceService extends AbstractComponent implements Inde
                 final RemoteRecoveryTargetHandler recoveryTarget =
                     new RemoteRecoveryTargetHandler(request.recoveryId(), request.shardId(), transportService,
                         request.targetNode(), recoverySettings, throttleTime -> shard.recoveryStats().addThrottleTime(throttleTime));
-                handler = new RecoverySourceHandler(shard, recoveryTarget, request, recoverySettings.getChunkSize().bytesAsInt());
+                // targets before 7.0.0 can only write the chunks of a file in order, so they receive one chunk at a time
+                final boolean concurrentChunks = request.targetNode().getVersion().onOrAfter(Version.V_7_0_0);
+                handler = new RecoverySourceHandler(shard, recoveryTarget, request, recoverySettings.getChunkSize().bytesAsInt(),
+                    concurrentChunks ? recoverySettings.getMaxConcurrentFileChunks() : 1,
+                    concurrentChunks ? recoverySettings.getMaxConcurrentFiles() : 1,
+                    getSnapshotRepository(request), recoverySettings.getMaxConcurrentSnapshotFileDownloads());
                 return handler;
             }
+
+            /**
+             * Returns the repository that the target can restore the files of the latest snapshot of the shard from, if any.
+             */
+            @Nullable
+            private BlobStoreRepository getSnapshotRepository(StartRecoveryRequest request) {
+                final String name = recoverySettings.getSnapshotRepository();
+                final RepositoriesService repositoriesService = PeerRecoverySourceService.this.repositoriesService;
+                if (name.isEmpty() || repositoriesService == null || request.targetNode().getVersion().before(Version.V_7_0_0)) {
+                    return null;
+                }
+                final Repository repository;
+                try {
+                    repository = repositoriesService.repository(name);
+                } catch (RepositoryMissingException e) {
+                    logger.debug("repository [{}] to restore recovery files from is missing", name);
+                    return null;
+                }
+                return repository instanceof BlobStoreRepository ? (BlobStoreRepository) repository : null;
+            }
         }
     }
 }
@@ -28,6 +28,8 @@ import org.apache.lucene.store.RateLimiter;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchTimeoutException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.HandledTransportAction;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.ClusterStateObserver;
@@ -56,6 +58,11 @@ import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogCorruptedException;
 import org.elasticsearch.indices.recovery.RecoveriesCollection.RecoveryRef;
 import org.elasticsearch.node.NodeClosedException;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.repositories.Repository;
+import org.elasticsearch.repositories.RepositoryException;
+import org.elasticsearch.repositories.RepositoryMissingException;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.ConnectTransportException;
@@ -90,6 +97,7 @@ public class PeerRecoveryTargetService extends AbstractComponent implements Inde
         public static final String FINALIZE = "internal:index/shard/recovery/finalize";
         public static final String WAIT_CLUSTERSTATE = "internal:index/shard/recovery/wait_clusterstate";
         public static final String HANDOFF_PRIMARY_CONTEXT = "internal:index/shard/recovery/handoff_primary_context";
+        public static final String RESTORE_FILE_FROM_SNAPSHOT = "internal:index/shard/recovery/restore_file_from_snapshot";
     }
 
     private final ThreadPool threadPool;
@@ -101,6 +109,8 @@ public class PeerRecoveryTargetService extends AbstractComponent implements Inde
 
     private final RecoveriesCollection onGoingRecoveries;
 
+    private volatile RepositoriesService repositoriesService;
+
     public PeerRecoveryTargetService(ThreadPool threadPool, TransportService transportService,
             RecoverySettings recoverySettings, ClusterService clusterService) {
         this.threadPool = threadPool;
@@ -128,6 +138,16 @@ public class PeerRecoveryTargetService extends AbstractComponent implements Inde
                 RecoveryHandoffPrimaryContextRequest::new,
                 ThreadPool.Names.GENERIC,
                 new HandoffPrimaryContextRequestHandler());
+        transportService.registerRequestHandler(Actions.RESTORE_FILE_FROM_SNAPSHOT, RecoveryRestoreFileFromSnapshotRequest::new,
+            ThreadPool.Names.GENERIC, new RestoreFileFromSnapshotRequestHandler());
+    }
+
+    /**
+     * Sets the service used to look up the repositories that recoveries restore files from. The repositories service is created after
+     * this service so it can't be injected into the constructor.
+     */
+    public void setRepositoriesService(RepositoriesService repositoriesService) {
+        this.repositoriesService = repositoriesService;
     }
 
     @Override
@@ -554,6 +574,40 @@ public class PeerRecoveryTargetService extends AbstractComponent implements Inde
         }
     }
 
+    class RestoreFileFromSnapshotRequestHandler implements TransportRequestHandler<RecoveryRestoreFileFromSnapshotRequest> {
+
+        @Override
+        public void messageReceived(RecoveryRestoreFileFromSnapshotRequest request, TransportChannel channel,
+                                    Task task) throws Exception {
+            try (RecoveryRef recoveryRef = onGoingRecoveries.getRecoverySafe(request.recoveryId(), request.shardId())) {
+                final Repository repository = getRepository(request.repository());
+                if (repository instanceof BlobStoreRepository == false) {
+                    // the source sends the file if this node can't read it from the repository
+                    throw new RepositoryException(request.repository(), "cannot restore recovery files from this repository");
+                }
+                final ActionListener<TransportResponse> listener =
+                    new HandledTransportAction.ChannelActionListener<>(channel, Actions.RESTORE_FILE_FROM_SNAPSHOT, request);
+                recoveryRef.target().restoreFileFromSnapshot((BlobStoreRepository) repository, request.indexId(), request.file(),
+                    request.totalTranslogOps(),
+                    ActionListener.wrap(r -> listener.onResponse(TransportResponse.Empty.INSTANCE), listener::onFailure));
+            }
+        }
+
+        @Nullable
+        private Repository getRepository(String name) {
+            final RepositoriesService repositoriesService = PeerRecoveryTargetService.this.repositoriesService;
+            if (repositoriesService == null) {
+                return null;
+            }
+            try {
+                return repositoriesService.repository(name);
+            } catch (RepositoryMissingException e) {
+                logger.debug("repository [{}] to restore recovery files from is missing", name);
+                return null;
+            }
+        }
+    }
+
     class CleanFilesRequestHandler implements TransportRequestHandler<RecoveryCleanFilesRequest> {
 
         @Override
@@ -593,11 +647,13 @@ public class PeerRecoveryTargetService extends AbstractComponent implements Inde
                     }
                 }
 
+                final ActionListener<TransportResponse> listener =
+                    new HandledTransportAction.ChannelActionListener<>(channel, Actions.FILE_CHUNK, request);
                 recoveryTarget.writeFileChunk(request.metadata(), request.position(), request.content(),
-                        request.lastChunk(), request.totalTranslogOps()
+                        request.lastChunk(), request.totalTranslogOps(),
+                        ActionListener.wrap(r -> listener.onResponse(TransportResponse.Empty.INSTANCE), listener::onFailure)
                 );
             }
-            channel.sendResponse(TransportResponse.Empty.INSTANCE);
         }
     }
 
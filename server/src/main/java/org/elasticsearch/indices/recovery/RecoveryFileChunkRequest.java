@@ -101,7 +101,8 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
         position = in.readVLong();
         long length = in.readVLong();
         String checksum = in.readString();
-        content = in.readBytesReference();
+        // the chunk is written to its file before the request is responded to, so it doesn't need to be copied off the network buffers
+        content = in.readReleasableBytesReference();
         Version writtenBy = Lucene.parseVersionLenient(in.readString(), null);
         assert writtenBy != null;
         metaData = new StoreFileMetaData(name, length, checksum, writtenBy);
@@ -0,0 +1,103 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.recovery;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.repositories.IndexId;
+import org.elasticsearch.transport.TransportRequest;
+
+import java.io.IOException;
+
+public class RecoveryRestoreFileFromSnapshotRequest extends TransportRequest {
+
+    private long recoveryId;
+    private ShardId shardId;
+    private String repository;
+    private IndexId indexId;
+    private BlobStoreIndexShardSnapshot.FileInfo file;
+    private int totalTranslogOps = RecoveryState.Translog.UNKNOWN;
+
+    public RecoveryRestoreFileFromSnapshotRequest() {
+    }
+
+    RecoveryRestoreFileFromSnapshotRequest(long recoveryId, ShardId shardId, String repository, IndexId indexId,
+                                           BlobStoreIndexShardSnapshot.FileInfo file, int totalTranslogOps) {
+        this.recoveryId = recoveryId;
+        this.shardId = shardId;
+        this.repository = repository;
+        this.indexId = indexId;
+        this.file = file;
+        this.totalTranslogOps = totalTranslogOps;
+    }
+
+    public long recoveryId() {
+        return this.recoveryId;
+    }
+
+    public ShardId shardId() {
+        return shardId;
+    }
+
+    public String repository() {
+        return repository;
+    }
+
+    public IndexId indexId() {
+        return indexId;
+    }
+
+    public BlobStoreIndexShardSnapshot.FileInfo file() {
+        return file;
+    }
+
+    public int totalTranslogOps() {
+        return totalTranslogOps;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        recoveryId = in.readLong();
+        shardId = ShardId.readShardId(in);
+        repository = in.readString();
+        indexId = new IndexId(in);
+        file = new BlobStoreIndexShardSnapshot.FileInfo(in.readString(), new StoreFileMetaData(in),
+            in.readOptionalWriteable(ByteSizeValue::new));
+        totalTranslogOps = in.readVInt();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeLong(recoveryId);
+        shardId.writeTo(out);
+        out.writeString(repository);
+        indexId.writeTo(out);
+        out.writeString(file.name());
+        file.metadata().writeTo(out);
+        out.writeOptionalWriteable(file.partSize());
+        out.writeVInt(totalTranslogOps);
+    }
+}
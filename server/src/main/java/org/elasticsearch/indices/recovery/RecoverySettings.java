@@ -72,6 +72,32 @@ public class RecoverySettings extends AbstractComponent {
             INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING::get, TimeValue.timeValueSeconds(0),
             Property.Dynamic, Property.NodeScope);
 
+    /**
+     * the maximum number of file chunk requests that a recovery source sends to the target without waiting for their responses.
+     */
+    public static final Setting<Integer> INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS_SETTING =
+        Setting.intSetting("indices.recovery.max_concurrent_file_chunks", 2, 1, 8, Property.Dynamic, Property.NodeScope);
+
+    /**
+     * the maximum number of files that a recovery source sends to the target at the same time; several small files can then be in
+     * transit while waiting for the responses to their chunks.
+     */
+    public static final Setting<Integer> INDICES_RECOVERY_MAX_CONCURRENT_FILES_SETTING =
+        Setting.intSetting("indices.recovery.max_concurrent_files", 2, 1, 8, Property.Dynamic, Property.NodeScope);
+
+    /**
+     * the name of a snapshot repository from which recovery targets fetch the files that are identical to the ones of the latest
+     * snapshot of the shard, rather than receiving them from the recovery source. Disabled when empty.
+     */
+    public static final Setting<String> INDICES_RECOVERY_SNAPSHOT_REPOSITORY_SETTING =
+        Setting.simpleString("indices.recovery.snapshot_repository", Property.Dynamic, Property.NodeScope);
+
+    /**
+     * the maximum number of files that a recovery target downloads from the snapshot repository at the same time.
+     */
+    public static final Setting<Integer> INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_FILE_DOWNLOADS_SETTING =
+        Setting.intSetting("indices.recovery.max_concurrent_snapshot_file_downloads", 4, 1, 32, Property.Dynamic, Property.NodeScope);
+
     public static final ByteSizeValue DEFAULT_CHUNK_SIZE = new ByteSizeValue(512, ByteSizeUnit.KB);
 
     private volatile ByteSizeValue maxBytesPerSec;
@@ -81,6 +107,10 @@ public class RecoverySettings extends AbstractComponent {
     private volatile TimeValue activityTimeout;
     private volatile TimeValue internalActionTimeout;
     private volatile TimeValue internalActionLongTimeout;
+    private volatile int maxConcurrentFileChunks;
+    private volatile int maxConcurrentFiles;
+    private volatile String snapshotRepository;
+    private volatile int maxConcurrentSnapshotFileDownloads;
 
     private volatile ByteSizeValue chunkSize = DEFAULT_CHUNK_SIZE;
 
@@ -100,6 +130,10 @@ public class RecoverySettings extends AbstractComponent {
         } else {
             rateLimiter = new SimpleRateLimiter(maxBytesPerSec.getMbFrac());
         }
+        this.maxConcurrentFileChunks = INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS_SETTING.get(settings);
+        this.maxConcurrentFiles = INDICES_RECOVERY_MAX_CONCURRENT_FILES_SETTING.get(settings);
+        this.snapshotRepository = INDICES_RECOVERY_SNAPSHOT_REPOSITORY_SETTING.get(settings);
+        this.maxConcurrentSnapshotFileDownloads = INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_FILE_DOWNLOADS_SETTING.get(settings);
 
 
         logger.debug("using max_bytes_per_sec[{}]", maxBytesPerSec);
@@ -110,6 +144,11 @@ public class RecoverySettings extends AbstractComponent {
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_INTERNAL_ACTION_TIMEOUT_SETTING, this::setInternalActionTimeout);
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING, this::setInternalActionLongTimeout);
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_ACTIVITY_TIMEOUT_SETTING, this::setActivityTimeout);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS_SETTING, this::setMaxConcurrentFileChunks);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_CONCURRENT_FILES_SETTING, this::setMaxConcurrentFiles);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_SNAPSHOT_REPOSITORY_SETTING, this::setSnapshotRepository);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_CONCURRENT_SNAPSHOT_FILE_DOWNLOADS_SETTING,
+            this::setMaxConcurrentSnapshotFileDownloads);
     }
 
     public RateLimiter rateLimiter() {
@@ -136,6 +175,25 @@ public class RecoverySettings extends AbstractComponent {
         return internalActionLongTimeout;
     }
 
+    public int getMaxConcurrentFileChunks() {
+        return maxConcurrentFileChunks;
+    }
+
+    public int getMaxConcurrentFiles() {
+        return maxConcurrentFiles;
+    }
+
+    /**
+     * Returns the name of the repository to fetch unchanged files from, or an empty string if recoveries do not use snapshots.
+     */
+    public String getSnapshotRepository() {
+        return snapshotRepository;
+    }
+
+    public int getMaxConcurrentSnapshotFileDownloads() {
+        return maxConcurrentSnapshotFileDownloads;
+    }
+
     public ByteSizeValue getChunkSize() { return chunkSize; }
 
     public void setChunkSize(ByteSizeValue chunkSize) { // only settable for tests
@@ -166,6 +224,22 @@ public class RecoverySettings extends AbstractComponent {
         this.internalActionLongTimeout = internalActionLongTimeout;
     }
 
+    private void setMaxConcurrentFileChunks(int maxConcurrentFileChunks) {
+        this.maxConcurrentFileChunks = maxConcurrentFileChunks;
+    }
+
+    private void setMaxConcurrentFiles(int maxConcurrentFiles) {
+        this.maxConcurrentFiles = maxConcurrentFiles;
+    }
+
+    private void setSnapshotRepository(String snapshotRepository) {
+        this.snapshotRepository = snapshotRepository;
+    }
+
+    private void setMaxConcurrentSnapshotFileDownloads(int maxConcurrentSnapshotFileDownloads) {
+        this.maxConcurrentSnapshotFileDownloads = maxConcurrentSnapshotFileDownloads;
+    }
+
     private void setMaxBytesPerSec(ByteSizeValue maxBytesPerSec) {
         this.maxBytesPerSec = maxBytesPerSec;
         if (maxBytesPerSec.getBytes() <= 0) {
@@ -36,15 +36,16 @@ import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.lucene.store.InputStreamIndexInput;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.CancellableThreads;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.FutureUtils;
 import org.elasticsearch.core.internal.io.IOUtils;
-import org.elasticsearch.core.internal.io.Streams;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.RecoveryEngineException;
 import org.elasticsearch.index.seqno.LocalCheckpointTracker;
@@ -53,24 +54,39 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardClosedException;
 import org.elasticsearch.index.shard.IndexShardRelocatedException;
 import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
+import org.elasticsearch.index.snapshots.blobstore.SnapshotFiles;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.repositories.IndexId;
+import org.elasticsearch.repositories.RepositoryData;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
+import org.elasticsearch.snapshots.SnapshotId;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteTransportException;
+import org.elasticsearch.transport.TransportException;
 
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 /**
@@ -93,6 +109,12 @@ public class RecoverySourceHandler {
     // Request containing source and target node information
     private final StartRecoveryRequest request;
     private final int chunkSizeInBytes;
+    private final int maxConcurrentFileChunks;
+    private final int maxConcurrentFiles;
+    // the repository that the target restores the files of the latest snapshot from, or null if the source sends all files
+    @Nullable
+    private final BlobStoreRepository snapshotRepository;
+    private final int maxConcurrentSnapshotFileDownloads;
     private final RecoveryTargetHandler recoveryTarget;
 
     protected final RecoveryResponse response;
@@ -116,12 +138,29 @@ public class RecoverySourceHandler {
     public RecoverySourceHandler(final IndexShard shard, RecoveryTargetHandler recoveryTarget,
                                  final StartRecoveryRequest request,
                                  final int fileChunkSizeInBytes) {
+        this(shard, recoveryTarget, request, fileChunkSizeInBytes, 1, 1);
+    }
+
+    public RecoverySourceHandler(final IndexShard shard, RecoveryTargetHandler recoveryTarget,
+                                 final StartRecoveryRequest request,
+                                 final int fileChunkSizeInBytes, final int maxConcurrentFileChunks, final int maxConcurrentFiles) {
+        this(shard, recoveryTarget, request, fileChunkSizeInBytes, maxConcurrentFileChunks, maxConcurrentFiles, null, 1);
+    }
+
+    public RecoverySourceHandler(final IndexShard shard, RecoveryTargetHandler recoveryTarget,
+                                 final StartRecoveryRequest request,
+                                 final int fileChunkSizeInBytes, final int maxConcurrentFileChunks, final int maxConcurrentFiles,
+                                 @Nullable final BlobStoreRepository snapshotRepository, final int maxConcurrentSnapshotFileDownloads) {
         this.shard = shard;
         this.recoveryTarget = recoveryTarget;
         this.request = request;
         this.shardId = this.request.shardId().id();
         this.logger = Loggers.getLogger(getClass(), request.shardId(), "recover to " + request.targetNode().getName());
         this.chunkSizeInBytes = fileChunkSizeInBytes;
+        this.maxConcurrentFileChunks = maxConcurrentFileChunks;
+        this.maxConcurrentFiles = maxConcurrentFiles;
+        this.snapshotRepository = snapshotRepository;
+        this.maxConcurrentSnapshotFileDownloads = maxConcurrentSnapshotFileDownloads;
         this.response = new RecoveryResponse();
     }
 
@@ -364,10 +403,8 @@ public class RecoverySourceHandler {
                 cancellableThreads.execute(() ->
                         recoveryTarget.receiveFileInfo(response.phase1FileNames, response.phase1FileSizes, response.phase1ExistingFileNames,
                                 response.phase1ExistingFileSizes, translogOps.get()));
-                // How many bytes we've copied since we last called RateLimiter.pause
-                final Function<StoreFileMetaData, OutputStream> outputStreamFactories =
-                        md -> new BufferedOutputStream(new RecoveryOutputStream(md, translogOps), chunkSizeInBytes);
-                sendFiles(store, phase1Files.toArray(new StoreFileMetaData[phase1Files.size()]), outputStreamFactories);
+                final List<StoreFileMetaData> filesToSend = restoreFilesFromSnapshot(phase1Files, translogOps);
+                sendFiles(store, filesToSend.toArray(new StoreFileMetaData[filesToSend.size()]), translogOps);
                 // Send the CLEAN_FILES request, which takes all of the files that
                 // were transferred and renames them from their temporary file
                 // names to the actual file names. It also writes checksums for
@@ -634,76 +671,247 @@ public class RecoverySourceHandler {
                 '}';
     }
 
-
-    final class RecoveryOutputStream extends OutputStream {
-        private final StoreFileMetaData md;
-        private final Supplier<Integer> translogOps;
-        private long position = 0;
-
-        RecoveryOutputStream(StoreFileMetaData md, Supplier<Integer> translogOps) {
-            this.md = md;
-            this.translogOps = translogOps;
+    /**
+     * Lets the target restore the files that are identical in the latest snapshot of the shard from the snapshot repository, which
+     * takes load off this node and its network. Returns the files that the target could not restore, which have to be sent.
+     */
+    List<StoreFileMetaData> restoreFilesFromSnapshot(List<StoreFileMetaData> files, Supplier<Integer> translogOps) throws IOException {
+        if (snapshotRepository == null || files.isEmpty()) {
+            return files;
+        }
+        final IndexId indexId;
+        final List<BlobStoreIndexShardSnapshot.FileInfo> snapshotFiles = new ArrayList<>();
+        final Map<String, StoreFileMetaData> filesToSend = new LinkedHashMap<>();
+        for (StoreFileMetaData md : files) {
+            filesToSend.put(md.name(), md);
+        }
+        try {
+            final RepositoryData repositoryData = snapshotRepository.getRepositoryData();
+            indexId = repositoryData.getIndices().get(request.shardId().getIndexName());
+            if (indexId == null) {
+                return files;
+            }
+            final Set<String> snapshotNames = repositoryData.getSnapshots(indexId).stream()
+                .map(SnapshotId::getName)
+                .collect(Collectors.toSet());
+            final SnapshotFiles latestSnapshot = snapshotRepository.getLatestShardSnapshotFiles(indexId, request.shardId(), snapshotNames);
+            if (latestSnapshot == null) {
+                return files;
+            }
+            for (StoreFileMetaData md : files) {
+                final BlobStoreIndexShardSnapshot.FileInfo fileInfo = latestSnapshot.findPhysicalIndexFile(md.name());
+                if (fileInfo != null && fileInfo.isSame(md)) {
+                    snapshotFiles.add(fileInfo);
+                }
+            }
+        } catch (Exception e) {
+            logger.debug(() -> new ParameterizedMessage("failed to read the latest snapshot of {} from repository [{}]",
+                request.shardId(), snapshotRepository.getMetadata().name()), e);
+            return files;
+        }
+        if (snapshotFiles.isEmpty()) {
+            return files;
+        }
+        logger.trace("recovery [phase1]: restoring [{}] files from snapshot repository [{}]",
+            snapshotFiles.size(), snapshotRepository.getMetadata().name());
+        final SnapshotFileRestores restores = new SnapshotFileRestores(indexId, snapshotFiles, translogOps.get());
+        restores.start();
+        cancellableThreads.execute(restores.done::await);
+        for (String restoredFile : restores.restoredFiles) {
+            filesToSend.remove(restoredFile);
         }
+        if (restores.restoredFiles.size() < snapshotFiles.size()) {
+            logger.debug("recovery [phase1]: [{}] files could not be restored from snapshot, sending them instead",
+                snapshotFiles.size() - restores.restoredFiles.size());
+        }
+        return new ArrayList<>(filesToSend.values());
+    }
 
-        @Override
-        public void write(int b) throws IOException {
-            throw new UnsupportedOperationException("we can't send single bytes over the wire");
+    /**
+     * Asks the target to restore files from the snapshot repository, one request per file and up to
+     * {@code maxConcurrentSnapshotFileDownloads} files at a time. A file that the target fails to restore is sent instead. A request
+     * that fails in transport or times out leaves the outcome of the restore unknown, so no more files are restored and all the files
+     * that are not known to be restored are sent instead.
+     */
+    private final class SnapshotFileRestores {
+        private final IndexId indexId;
+        private final Queue<BlobStoreIndexShardSnapshot.FileInfo> pending;
+        private final int totalTranslogOps;
+        private final Set<String> restoredFiles = ConcurrentCollections.newConcurrentSet();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private final CountDownLatch done;
+
+        SnapshotFileRestores(IndexId indexId, List<BlobStoreIndexShardSnapshot.FileInfo> files, int totalTranslogOps) {
+            this.indexId = indexId;
+            this.pending = ConcurrentCollections.newQueue();
+            this.pending.addAll(files);
+            this.totalTranslogOps = totalTranslogOps;
+            this.done = new CountDownLatch(Math.min(maxConcurrentSnapshotFileDownloads, files.size()));
         }
 
-        @Override
-        public void write(byte[] b, int offset, int length) throws IOException {
-            sendNextChunk(position, new BytesArray(b, offset, length), md.length() == position + length);
-            position += length;
-            assert md.length() >= position : "length: " + md.length() + " but positions was: " + position;
+        void start() {
+            for (long i = done.getCount(); i > 0; i--) {
+                restoreNext();
+            }
         }
 
-        private void sendNextChunk(long position, BytesArray content, boolean lastChunk) throws IOException {
-            // Actually send the file chunk to the target node, waiting for it to complete
-            cancellableThreads.executeIO(() ->
-                    recoveryTarget.writeFileChunk(md, position, content, lastChunk, translogOps.get())
-            );
-            if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
-                throw new IndexShardClosedException(request.shardId());
+        private void restoreNext() {
+            final BlobStoreIndexShardSnapshot.FileInfo fileInfo =
+                stopped.get() || cancellableThreads.isCancelled() ? null : pending.poll();
+            if (fileInfo == null) {
+                done.countDown();
+                return;
+            }
+            final ActionListener<Void> listener = ActionListener.wrap(
+                r -> {
+                    restoredFiles.add(fileInfo.physicalName());
+                    restoreNext();
+                },
+                e -> {
+                    if (ExceptionsHelper.unwrapCause(e) instanceof TransportException) {
+                        logger.debug(() -> new ParameterizedMessage("recovery [phase1]: failed to restore [{}] from snapshot, " +
+                            "sending all remaining files instead", fileInfo.physicalName()), e);
+                        stopped.set(true);
+                    } else {
+                        logger.debug(() -> new ParameterizedMessage("recovery [phase1]: failed to restore [{}] from snapshot",
+                            fileInfo.physicalName()), e);
+                    }
+                    restoreNext();
+                });
+            try {
+                recoveryTarget.restoreFileFromSnapshot(snapshotRepository, indexId, fileInfo, totalTranslogOps, listener);
+            } catch (Exception e) {
+                listener.onFailure(e);
             }
         }
     }
 
-    void sendFiles(Store store, StoreFileMetaData[] files, Function<StoreFileMetaData, OutputStream> outputStreamFactory) throws Exception {
+    /**
+     * Sends the given files to the target, smallest first. Up to {@code maxConcurrentFileChunks} file chunk requests, spread over at
+     * most {@code maxConcurrentFiles} files, are in flight at once so that the copy does not stall on the round trip of every chunk.
+     */
+    void sendFiles(Store store, StoreFileMetaData[] files, Supplier<Integer> translogOps) throws Exception {
         store.incRef();
         try {
             ArrayUtil.timSort(files, Comparator.comparingLong(StoreFileMetaData::length)); // send smallest first
-            for (int i = 0; i < files.length; i++) {
-                final StoreFileMetaData md = files[i];
-                try (IndexInput indexInput = store.directory().openInput(md.name(), IOContext.READONCE)) {
-                    // it's fine that we are only having the indexInput in the try/with block. The copy methods handles
-                    // exceptions during close correctly and doesn't hide the original exception.
-                    Streams.copy(new InputStreamIndexInput(indexInput, md.length()), outputStreamFactory.apply(md));
-                } catch (Exception e) {
-                    final IOException corruptIndexException;
-                    if ((corruptIndexException = ExceptionsHelper.unwrapCorruption(e)) != null) {
-                        if (store.checkIntegrityNoException(md) == false) { // we are corrupted on the primary -- fail!
-                            logger.warn("{} Corrupted file detected {} checksum mismatch", shardId, md);
-                            failEngine(corruptIndexException);
-                            throw corruptIndexException;
-                        } else { // corruption has happened on the way to replica
-                            RemoteTransportException exception = new RemoteTransportException("File corruption occurred on recovery but " +
-                                    "checksums are ok", null);
-                            exception.addSuppressed(e);
-                            logger.warn(() -> new ParameterizedMessage(
-                                    "{} Remote file corruption on node {}, recovering {}. local checksum OK",
-                                    shardId, request.targetNode(), md), corruptIndexException);
-                            throw exception;
+            // file chunk requests are numbered in the order they are sent, a request can only be sent once the responses of all requests
+            // but the last maxConcurrentFileChunks ones have been received
+            final LocalCheckpointTracker requestSeqIdTracker = new LocalCheckpointTracker(SequenceNumbers.NO_OPS_PERFORMED,
+                SequenceNumbers.NO_OPS_PERFORMED);
+            // a file holds a permit from when its first chunk is sent until all its chunks are acknowledged
+            final Semaphore filePermits = new Semaphore(maxConcurrentFiles);
+            final AtomicReference<Tuple<StoreFileMetaData, Exception>> error = new AtomicReference<>();
+            for (final StoreFileMetaData md : files) {
+                cancellableThreads.execute(filePermits::acquire);
+                if (error.get() != null) {
+                    break;
+                }
+                // one reference for each chunk in flight plus one that is released once the whole file is sent
+                final AtomicInteger fileRefs = new AtomicInteger(1);
+                final Runnable releaseFileRef = () -> {
+                    if (fileRefs.decrementAndGet() == 0) {
+                        filePermits.release();
+                    }
+                };
+                try (IndexInput indexInput = store.directory().openInput(md.name(), IOContext.READONCE);
+                     InputStream in = new InputStreamIndexInput(indexInput, md.length())) {
+                    long position = 0;
+                    boolean lastChunk = false;
+                    while (lastChunk == false && error.get() == null) {
+                        // every chunk gets its own buffer as the content of the requests that are in flight must not change
+                        final byte[] buffer = new byte[chunkSizeInBytes];
+                        final int bytesRead = in.read(buffer, 0, buffer.length);
+                        if (bytesRead == -1) {
+                            break;
                         }
-                    } else {
-                        throw e;
+                        final BytesArray content = new BytesArray(buffer, 0, bytesRead);
+                        lastChunk = position + bytesRead == md.length();
+                        fileRefs.incrementAndGet();
+                        sendFileChunk(md, position, content, lastChunk, translogOps.get(), requestSeqIdTracker, releaseFileRef, error);
+                        position += bytesRead;
+                        assert md.length() >= position : "length: " + md.length() + " but positions was: " + position;
                     }
+                } catch (Exception e) {
+                    error.compareAndSet(null, Tuple.tuple(md, e));
+                } finally {
+                    releaseFileRef.run();
+                }
+                if (error.get() != null) {
+                    break;
                 }
             }
+            // when a request failed we do not wait for the ones that are still in flight as their responses are not used anyway
+            if (error.get() == null) {
+                cancellableThreads.execute(() -> requestSeqIdTracker.waitForOpsToComplete(requestSeqIdTracker.getMaxSeqNo()));
+            }
+            if (error.get() != null) {
+                handleErrorOnSendFiles(store, error.get().v1(), error.get().v2());
+            }
         } finally {
             store.decRef();
         }
     }
 
+    private void sendFileChunk(StoreFileMetaData md, long position, BytesArray content, boolean lastChunk, int totalTranslogOps,
+                               LocalCheckpointTracker requestSeqIdTracker, Runnable onChunkDone,
+                               AtomicReference<Tuple<StoreFileMetaData, Exception>> error) {
+        final long requestSeqId = requestSeqIdTracker.generateSeqNo();
+        final ActionListener<Void> listener = new ActionListener<Void>() {
+            @Override
+            public void onResponse(Void aVoid) {
+                requestSeqIdTracker.markSeqNoAsCompleted(requestSeqId);
+                onChunkDone.run();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                error.compareAndSet(null, Tuple.tuple(md, e));
+                requestSeqIdTracker.markSeqNoAsCompleted(requestSeqId);
+                onChunkDone.run();
+            }
+        };
+        boolean sent = false;
+        try {
+            cancellableThreads.execute(() -> requestSeqIdTracker.waitForOpsToComplete(requestSeqId - maxConcurrentFileChunks));
+            if (error.get() == null) {
+                // Actually send the file chunk to the target node, the response is handled asynchronously
+                cancellableThreads.executeIO(() ->
+                    recoveryTarget.writeFileChunk(md, position, content, lastChunk, totalTranslogOps, listener));
+                sent = true;
+            }
+        } finally {
+            if (sent == false) {
+                // the chunk is not in flight, mark it as done so that neither the tracker nor the file permits wait for it
+                requestSeqIdTracker.markSeqNoAsCompleted(requestSeqId);
+                onChunkDone.run();
+            }
+        }
+        if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
+            throw new IndexShardClosedException(request.shardId());
+        }
+    }
+
+    private void handleErrorOnSendFiles(Store store, StoreFileMetaData md, Exception e) throws Exception {
+        final IOException corruptIndexException;
+        if ((corruptIndexException = ExceptionsHelper.unwrapCorruption(e)) != null) {
+            if (store.checkIntegrityNoException(md) == false) { // we are corrupted on the primary -- fail!
+                logger.warn("{} Corrupted file detected {} checksum mismatch", shardId, md);
+                failEngine(corruptIndexException);
+                throw corruptIndexException;
+            } else { // corruption has happened on the way to replica
+                RemoteTransportException exception = new RemoteTransportException("File corruption occurred on recovery but " +
+                        "checksums are ok", null);
+                exception.addSuppressed(e);
+                logger.warn(() -> new ParameterizedMessage(
+                        "{} Remote file corruption on node {}, recovering {}. local checksum OK",
+                        shardId, request.targetNode(), md), corruptIndexException);
+                throw exception;
+            }
+        } else {
+            throw e;
+        }
+    }
+
     protected void failEngine(IOException cause) {
         shard.failShard("recovery", cause);
     }
@@ -577,6 +577,11 @@ public class RecoveryState implements ToXContentFragment, Streamable {
             recovered += bytes;
         }
 
+        void resetRecoveredBytes() {
+            assert reused == false : "file is marked as reused, can't reset recovered bytes";
+            recovered = 0;
+        }
+
         /**
          * file name *
          */
@@ -699,6 +704,14 @@ public class RecoveryState implements ToXContentFragment, Streamable {
             file.addRecoveredBytes(bytes);
         }
 
+        /**
+         * Resets the recovered bytes of a file that is recovered again from scratch.
+         */
+        public synchronized void resetRecoveredBytesOfFile(String name) {
+            File file = fileDetails.get(name);
+            file.resetRecoveredBytes();
+        }
+
         public synchronized long version() {
             return this.version;
         }
@@ -31,14 +31,18 @@ import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRunnable;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.util.CancellableThreads;
 import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.mapper.MapperException;
 import org.elasticsearch.index.seqno.ReplicationTracker;
@@ -47,18 +51,26 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardNotRecoveringException;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.repositories.IndexId;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -77,6 +89,9 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
 
     private static final String RECOVERY_PREFIX = "recovery.";
 
+    // the size of the buffer used to copy files that are restored from a snapshot
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final ShardId shardId;
     private final long recoveryId;
     private final IndexShard indexShard;
@@ -89,6 +104,8 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
     private final AtomicBoolean finished = new AtomicBoolean();
 
     private final ConcurrentMap<String, IndexOutput> openIndexOutputs = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<String, FileChunkWriter> fileChunkWriters = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<String, SnapshotFileDownload> snapshotFileDownloads = ConcurrentCollections.newConcurrentMap();
     private final CancellableThreads cancellableThreads;
 
     // last time this status was accessed
@@ -333,6 +350,11 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
                 }
                 iterator.remove();
             }
+            // chunks that still wait for the chunks before them are never going to be written
+            for (FileChunkWriter writer : fileChunkWriters.values()) {
+                writer.failPendingChunks(new ElasticsearchException("recovery [{}] of shard {} is closed", recoveryId, shardId));
+            }
+            fileChunkWriters.clear();
             // trash temporary files
             for (String file : tempFileNames.keySet()) {
                 logger.trace("cleaning temporary file [{}]", file);
@@ -489,13 +511,79 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
 
     @Override
     public void writeFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content,
-                               boolean lastChunk, int totalTranslogOps) throws IOException {
+                               boolean lastChunk, int totalTranslogOps, ActionListener<Void> listener) {
+        try {
+            state().getTranslog().totalOperations(totalTranslogOps);
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        final FileChunkWriter writer = fileChunkWriters.computeIfAbsent(fileMetaData.name(), name -> new FileChunkWriter());
+        writer.writeChunk(new FileChunk(fileMetaData, position, content, lastChunk, listener));
+    }
+
+    @Override
+    public void restoreFileFromSnapshot(BlobStoreRepository repository, IndexId indexId, BlobStoreIndexShardSnapshot.FileInfo file,
+                                        int totalTranslogOps, ActionListener<Void> listener) {
+        state().getTranslog().totalOperations(totalTranslogOps);
+        // the download outlives the request that started it, so it holds its own reference to make sure that the files of this
+        // recovery are not cleaned up underneath it
+        incRef();
+        indexShard.getThreadPool().executor(ThreadPool.Names.SNAPSHOT).execute(new ActionRunnable<Void>(listener) {
+            @Override
+            protected void doRun() throws Exception {
+                cancellableThreads.checkForCancel();
+                restoreFileFromSnapshot(repository, indexId, file);
+                listener.onResponse(null);
+            }
+
+            @Override
+            public void onAfter() {
+                decRef();
+            }
+        });
+    }
+
+    private void restoreFileFromSnapshot(BlobStoreRepository repository, IndexId indexId,
+                                         BlobStoreIndexShardSnapshot.FileInfo fileInfo) throws IOException {
+        final StoreFileMetaData fileMetaData = fileInfo.metadata();
+        final SnapshotFileDownload download = new SnapshotFileDownload(fileMetaData);
+        if (snapshotFileDownloads.putIfAbsent(fileMetaData.name(), download) != null) {
+            throw new IllegalStateException("file [" + fileMetaData.name() + "] is already being restored from the snapshot");
+        }
+        boolean success = false;
+        try {
+            download.open();
+            try (InputStream stream = repository.openShardSnapshotFile(indexId, shardId, fileInfo)) {
+                final byte[] buffer = new byte[Math.toIntExact(Math.min(fileMetaData.length(), BUFFER_SIZE))];
+                int length;
+                while ((length = stream.read(buffer)) > 0) {
+                    // files can be large, stop downloading as soon as the recovery is cancelled
+                    cancellableThreads.checkForCancel();
+                    download.write(buffer, length);
+                }
+            }
+            download.complete();
+            success = true;
+        } finally {
+            if (success == false) {
+                download.fail();
+            }
+        }
+    }
+
+    private void innerWriteFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content,
+                                     boolean lastChunk) throws IOException {
         final Store store = store();
         final String name = fileMetaData.name();
-        state().getTranslog().totalOperations(totalTranslogOps);
         final RecoveryState.Index indexState = state().getIndex();
         IndexOutput indexOutput;
         if (position == 0) {
+            final SnapshotFileDownload download = snapshotFileDownloads.remove(name);
+            if (download != null) {
+                // the source gave up on restoring the file from the snapshot, eg. because the restore timed out, and sends it instead
+                download.supersede();
+            }
             indexOutput = openAndPutIndexOutput(name, fileMetaData, store);
         } else {
             indexOutput = getOpenIndexOutput(name);
@@ -522,6 +610,175 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
         }
     }
 
+    private static final class FileChunk {
+        final StoreFileMetaData md;
+        final long position;
+        final BytesReference content;
+        final boolean lastChunk;
+        final ActionListener<Void> listener;
+
+        FileChunk(StoreFileMetaData md, long position, BytesReference content, boolean lastChunk, ActionListener<Void> listener) {
+            this.md = md;
+            this.position = position;
+            this.content = content;
+            this.lastChunk = lastChunk;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * A file that is restored from a snapshot. The source of the recovery sends the file itself if it gives up on the restore, in which
+     * case the first chunk of the file supersedes the download: all traces of the download are removed, even if it completed, so that the
+     * chunks can be written from scratch. This does not wait for the download to notice, which may take long if the repository is slow,
+     * since the download only holds the lock while writing a buffer and stops at its next write.
+     */
+    private final class SnapshotFileDownload {
+        private final StoreFileMetaData metaData;
+        // the output of the file, only set once the download created it
+        private IndexOutput indexOutput;
+        private boolean completed;
+        private boolean superseded;
+
+        private SnapshotFileDownload(StoreFileMetaData metaData) {
+            this.metaData = metaData;
+        }
+
+        synchronized void open() throws IOException {
+            ensureNotSuperseded();
+            indexOutput = openAndPutIndexOutput(metaData.name(), metaData, store());
+        }
+
+        synchronized void write(byte[] buffer, int length) throws IOException {
+            ensureNotSuperseded();
+            indexOutput.writeBytes(buffer, 0, length);
+        }
+
+        synchronized void complete() throws IOException {
+            ensureNotSuperseded();
+            try {
+                Store.verify(indexOutput);
+            } finally {
+                indexOutput.close();
+            }
+            store().directory().sync(Collections.singleton(getTempNameForFile(metaData.name())));
+            removeOpenIndexOutputs(metaData.name());
+            state().getIndex().addRecoveredBytesToFile(metaData.name(), metaData.length());
+            completed = true;
+        }
+
+        /**
+         * Called by the download if it failed, leaves no trace of the file so that the source can send it from scratch.
+         */
+        synchronized void fail() {
+            snapshotFileDownloads.remove(metaData.name(), this);
+            if (superseded == false && indexOutput != null) {
+                deleteFile();
+            }
+        }
+
+        /**
+         * Called when the source starts sending the file.
+         */
+        synchronized void supersede() {
+            superseded = true;
+            if (indexOutput != null) {
+                deleteFile();
+                if (completed) {
+                    state().getIndex().resetRecoveredBytesOfFile(metaData.name());
+                }
+            }
+        }
+
+        private void ensureNotSuperseded() {
+            if (superseded) {
+                throw new IllegalStateException("file [" + metaData.name() + "] is sent by the source of the recovery instead of being " +
+                    "restored from the snapshot");
+            }
+        }
+
+        private void deleteFile() {
+            assert Thread.holdsLock(this);
+            final String tempFileName = getTempNameForFile(metaData.name());
+            removeOpenIndexOutputs(metaData.name());
+            IOUtils.closeWhileHandlingException(indexOutput);
+            store().deleteQuiet(tempFileName);
+            tempFileNames.remove(tempFileName);
+        }
+    }
+
+    /**
+     * Writes the chunks of a file at their position. The source sends several chunks of a file concurrently so they can arrive out of
+     * order, but an {@link IndexOutput} can only be appended to: chunks that are ahead of the current end of the file are buffered
+     * until the chunks before them have been written. A chunk is only acknowledged once it is written, so the source never has more
+     * than {@code indices.recovery.max_concurrent_file_chunks} chunks of a file in flight or buffered here.
+     */
+    private final class FileChunkWriter {
+        // chunks that were received ahead of the end of the file, by position
+        private final PriorityQueue<FileChunk> pendingChunks = new PriorityQueue<>(Comparator.comparingLong(chunk -> chunk.position));
+        private long lastPosition = 0;
+
+        void writeChunk(FileChunk chunk) {
+            final List<FileChunk> writtenChunks = new ArrayList<>();
+            final List<FileChunk> failedChunks = new ArrayList<>();
+            Exception failure = null;
+            synchronized (this) {
+                if (chunk.position != lastPosition) {
+                    assert chunk.position > lastPosition :
+                        "chunk at [" + chunk.position + "] was already written, file is at [" + lastPosition + "]";
+                    // the content of the request is only valid until the request is handled, so we keep a copy of it
+                    final BytesReference content = new BytesArray(chunk.content.toBytesRef(), true);
+                    pendingChunks.add(new FileChunk(chunk.md, chunk.position, content, chunk.lastChunk, chunk.listener));
+                    return;
+                }
+                FileChunk next = chunk;
+                try {
+                    while (true) {
+                        write(next);
+                        writtenChunks.add(next);
+                        next = pendingChunks.peek();
+                        if (next == null || next.position != lastPosition) {
+                            break;
+                        }
+                        pendingChunks.poll();
+                    }
+                } catch (Exception e) {
+                    // the file can't be completed, fail the chunks that waited for this one as well
+                    failure = e;
+                    failedChunks.add(next);
+                    failedChunks.addAll(pendingChunks);
+                    pendingChunks.clear();
+                }
+            }
+            // respond outside of the lock, the responses are sent on the network
+            for (FileChunk writtenChunk : writtenChunks) {
+                writtenChunk.listener.onResponse(null);
+            }
+            for (FileChunk failedChunk : failedChunks) {
+                failedChunk.listener.onFailure(failure);
+            }
+        }
+
+        void failPendingChunks(Exception failure) {
+            final List<FileChunk> failedChunks;
+            synchronized (this) {
+                failedChunks = new ArrayList<>(pendingChunks);
+                pendingChunks.clear();
+            }
+            for (FileChunk failedChunk : failedChunks) {
+                failedChunk.listener.onFailure(failure);
+            }
+        }
+
+        private void write(FileChunk chunk) throws IOException {
+            innerWriteFileChunk(chunk.md, chunk.position, chunk.content, chunk.lastChunk);
+            lastPosition += chunk.content.length();
+            if (chunk.lastChunk) {
+                assert pendingChunks.isEmpty() : "chunks were received past the end of [" + chunk.md.name() + "]";
+                fileChunkWriters.remove(chunk.md.name());
+            }
+        }
+    }
+
     Path translogLocation() {
         return indexShard().shardPath().resolveTranslog();
     }
@@ -18,11 +18,15 @@
  */
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.seqno.ReplicationTracker;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.repositories.IndexId;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
 
 import java.io.IOException;
 import java.util.List;
@@ -88,8 +92,27 @@ public interface RecoveryTargetHandler {
      */
     void cleanFiles(int totalTranslogOps, Store.MetadataSnapshot sourceMetaData) throws IOException;
 
-    /** writes a partial file chunk to the target store */
+    /**
+     * Restores a file of the latest snapshot of the shard straight from the snapshot repository, rather than receiving it from the
+     * source. If the file cannot be restored the listener is notified of the failure, no trace of the file is left and the source
+     * sends the file instead.
+     *
+     * @param repository       the repository the snapshot is in
+     * @param indexId          the id of the index in the repository
+     * @param file             the file to restore, its content is identical to the file of the source
+     * @param totalTranslogOps an update number of translog operations that will be replayed later on
+     * @param listener         notified once the file is restored
+     */
+    void restoreFileFromSnapshot(BlobStoreRepository repository, IndexId indexId, BlobStoreIndexShardSnapshot.FileInfo file,
+                                 int totalTranslogOps, ActionListener<Void> listener);
+
+    /**
+     * writes a partial file chunk to the target store. Several chunks of a file may be in flight at the same time, so they can be
+     * received out of order. The listener is notified once the chunk is written, which for a chunk received ahead of the end of the
+     * file only happens once the chunks before it are written. The target thus buffers at most as many chunks of a file as the source
+     * has in flight.
+     */
     void writeFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content,
-                        boolean lastChunk, int totalTranslogOps) throws IOException;
+                        boolean lastChunk, int totalTranslogOps, ActionListener<Void> listener) throws IOException;
 
 }
@@ -132,6 +132,7 @@ import org.elasticsearch.plugins.RepositoryPlugin;
 import org.elasticsearch.plugins.ScriptPlugin;
 import org.elasticsearch.plugins.SearchPlugin;
 import org.elasticsearch.repositories.RepositoriesModule;
+import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.script.ScriptModule;
 import org.elasticsearch.script.ScriptService;
@@ -527,7 +528,8 @@ public class Node implements Closeable {
                     b.bind(MetaDataCreateIndexService.class).toInstance(metaDataCreateIndexService);
                     b.bind(SearchService.class).toInstance(searchService);
                     b.bind(SearchTransportService.class).toInstance(searchTransportService);
-                    b.bind(SearchPhaseController.class).toInstance(new SearchPhaseController(searchService::createReduceContext));
+                    b.bind(ResponseCollectorService.class).toInstance(responseCollectorService);
+                    b.bind(SearchPhaseController.class).toInstance(new SearchPhaseController(searchService::newReduceContextFunction));
                     b.bind(Transport.class).toInstance(transport);
                     b.bind(TransportService.class).toInstance(transportService);
                     b.bind(NetworkService.class).toInstance(networkService);
@@ -555,6 +557,10 @@ public class Node implements Closeable {
 
             // TODO hack around circular dependencies problems in AllocationService
             clusterModule.getAllocationService().setGatewayAllocator(injector.getInstance(GatewayAllocator.class));
+            // the repositories service is created by the injector, after the recovery services that restore files from snapshots
+            final RepositoriesService repositoriesService = injector.getInstance(RepositoriesService.class);
+            injector.getInstance(PeerRecoverySourceService.class).setRepositoriesService(repositoriesService);
+            injector.getInstance(PeerRecoveryTargetService.class).setRepositoriesService(repositoriesService);
 
             List<LifecycleComponent> pluginLifecycleComponents = pluginComponents.stream()
                 .filter(p -> p instanceof LifecycleComponent)
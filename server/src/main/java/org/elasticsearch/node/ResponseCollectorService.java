@@ -22,15 +22,21 @@ package org.elasticsearch.node;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.ExponentiallyWeightedMovingAverage;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.shard.ShardId;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -40,7 +46,9 @@ import java.util.concurrent.ConcurrentMap;
 /**
  * Collects statistics about queue size, response time, and service time of
  * tasks executed on each node, making the EWMA of the values available to the
- * coordinating node.
+ * coordinating node. Also keeps a histogram of the recent response times of
+ * each shard copy, so that a copy that is slow while its node isn't (a merge,
+ * a cold cache) can be told apart from the other copies of the shard.
  */
 public final class ResponseCollectorService extends AbstractComponent implements ClusterStateListener {
 
@@ -48,6 +56,9 @@ public final class ResponseCollectorService extends AbstractComponent implements
 
     private final ConcurrentMap<String, NodeStatistics> nodeIdToStats = ConcurrentCollections.newConcurrentMap();
 
+    private final ConcurrentMap<Tuple<ShardId, String>, ResponseTimeHistogram> shardCopyResponseTimes =
+        ConcurrentCollections.newConcurrentMap();
+
     public ResponseCollectorService(ClusterService clusterService) {
         clusterService.addListener(this);
     }
@@ -59,10 +70,45 @@ public final class ResponseCollectorService extends AbstractComponent implements
                 removeNode(removedNode.getId());
             }
         }
+        if (event.routingTableChanged() && shardCopyResponseTimes.isEmpty() == false) {
+            // forget the copies that were relocated away or whose index was deleted, so a copy that comes back starts afresh
+            final RoutingTable routingTable = event.state().routingTable();
+            shardCopyResponseTimes.keySet().removeIf(shardCopy -> isAssigned(routingTable, shardCopy.v1(), shardCopy.v2()) == false);
+        }
+    }
+
+    private static boolean isAssigned(RoutingTable routingTable, ShardId shardId, String nodeId) {
+        final IndexShardRoutingTable shardRoutingTable = routingTable.shardRoutingTableOrNull(shardId);
+        // the index may have been deleted and created again with the same name
+        if (shardRoutingTable != null && shardRoutingTable.shardId().equals(shardId)) {
+            for (ShardRouting shardRouting : shardRoutingTable) {
+                if (nodeId.equals(shardRouting.currentNodeId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     void removeNode(String nodeId) {
         nodeIdToStats.remove(nodeId);
+        shardCopyResponseTimes.keySet().removeIf(shardCopy -> shardCopy.v2().equals(nodeId));
+    }
+
+    /**
+     * Records the time it took for the copy of the given shard on the given node to respond to a request, as seen by this node.
+     */
+    public void addShardCopyResponseTime(ShardId shardId, String nodeId, long responseTimeNanos) {
+        shardCopyResponseTimes.computeIfAbsent(new Tuple<>(shardId, nodeId), k -> new ResponseTimeHistogram()).record(responseTimeNanos);
+    }
+
+    /**
+     * Returns the given percentile of the recent response times of the copy of the given shard on the given node in nanoseconds,
+     * or {@code -1} if too few responses of this copy have been recorded.
+     */
+    public long getShardCopyResponseTime(ShardId shardId, String nodeId, double percentile) {
+        final ResponseTimeHistogram histogram = shardCopyResponseTimes.get(new Tuple<>(shardId, nodeId));
+        return histogram == null ? -1 : histogram.percentile(percentile);
     }
 
     public void addNodeStatistics(String nodeId, int queueSize, long responseTimeNanos, long avgServiceTimeNanos) {
@@ -157,7 +203,7 @@ public final class ResponseCollectorService extends AbstractComponent implements
          * Rank this copy of the data, according to the adaptive replica selection formula from the C3 paper
          * https://www.usenix.org/system/files/conference/nsdi15/nsdi15-paper-suresh.pdf
          */
-        private double innerRank(long outstandingRequests) {
+        private double innerRank(long outstandingRequests, double responseTime) {
             // the concurrency compensation is defined as the number of
             // outstanding requests from the client to the node times the number
             // of clients in the system
@@ -171,7 +217,7 @@ public final class ResponseCollectorService extends AbstractComponent implements
             double qBar = queueSize;
             double qHatS = 1 + concurrencyCompensation + qBar;
 
-            // EWMA of response time
+            // EWMA of response time, or recent response time of a specific shard copy
             double rS = responseTime / FACTOR;
             // EWMA of service time
             double muBarS = serviceTime / FACTOR;
@@ -183,11 +229,19 @@ public final class ResponseCollectorService extends AbstractComponent implements
 
         public double rank(long outstandingRequests) {
             if (cachedRank == 0) {
-                cachedRank = innerRank(outstandingRequests);
+                cachedRank = innerRank(outstandingRequests, responseTime);
             }
             return cachedRank;
         }
 
+        /**
+         * Rank a copy of the data on this node like {@link #rank(long)}, using the given response time of the copy in nanoseconds
+         * rather than the response time of the node.
+         */
+        public double rank(long outstandingRequests, double shardCopyResponseTime) {
+            return innerRank(outstandingRequests, shardCopyResponseTime);
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder("ComputedNodeStats[");
@@ -223,4 +277,69 @@ public final class ResponseCollectorService extends AbstractComponent implements
             this.serviceTime = serviceTimeEWMA;
         }
     }
+
+    /**
+     * A histogram of response times with buckets that are a quarter of a power of two wide, so percentiles are reported with an error
+     * of at most 25%. Counts are halved regularly so that the histogram reflects recent responses. This class is intended only to be
+     * used for the internal accounting of {@code ResponseCollectorService}.
+     */
+    static final class ResponseTimeHistogram {
+
+        // the number of responses to record before reporting percentiles
+        static final int MIN_SAMPLES = 10;
+        // the number of responses after which counts are halved
+        static final int DECAY_INTERVAL = 1000;
+
+        private final long[] counts = new long[bucket(Long.MAX_VALUE) + 1];
+        private long total;
+        private int sinceDecay;
+
+        static int bucket(long nanos) {
+            if (nanos < 4) {
+                return (int) Math.max(0, nanos);
+            }
+            final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            // the two bits after the highest one bit pick one of four sub-buckets
+            final int subBucket = (int) (nanos >>> (exponent - 2)) & 3;
+            return (exponent - 1) * 4 + subBucket;
+        }
+
+        /** the highest value that falls in the given bucket */
+        static long bucketUpperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            final int exponent = bucket / 4 + 1;
+            final long lowerBound = (4L + (bucket & 3)) << (exponent - 2);
+            return lowerBound + (1L << (exponent - 2)) - 1;
+        }
+
+        synchronized void record(long nanos) {
+            counts[bucket(nanos)]++;
+            total++;
+            if (++sinceDecay >= DECAY_INTERVAL) {
+                sinceDecay = 0;
+                total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] >>>= 1;
+                    total += counts[i];
+                }
+            }
+        }
+
+        synchronized long percentile(double percentile) {
+            if (total < MIN_SAMPLES) {
+                return -1;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperBound(i);
+                }
+            }
+            throw new AssertionError("total [" + total + "] doesn't match counts " + Arrays.toString(counts));
+        }
+    }
 }
@@ -882,6 +882,50 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             snapshot.incrementalSize(), snapshot.totalSize());
     }
 
+    /**
+     * Returns the files of the most recent snapshot of the given shard among the given snapshots, or {@code null} if none of them
+     * contains the shard.
+     *
+     * @param indexId       the id of the index in the repository
+     * @param shardId       the shard
+     * @param snapshotNames the names of the snapshots to consider
+     */
+    public SnapshotFiles getLatestShardSnapshotFiles(IndexId indexId, ShardId shardId, Set<String> snapshotNames) {
+        // the context is not bound to a snapshot as we only list the snapshots of the shard
+        final Context context = new Context(null, Version.CURRENT, indexId, shardId);
+        final Map<String, BlobMetaData> blobs;
+        try {
+            blobs = context.blobContainer.listBlobs();
+        } catch (IOException e) {
+            throw new IndexShardSnapshotException(shardId, "Failed to list content of gateway", e);
+        }
+        // shard snapshots are added to the index file of the shard in the order they complete
+        final List<SnapshotFiles> snapshots = context.buildBlobStoreIndexShardSnapshots(blobs).v1().snapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (snapshotNames.contains(snapshots.get(i).snapshot())) {
+                return snapshots.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens a stream over the content of a file of a shard snapshot, throttled like restores of this repository.
+     *
+     * @param indexId  the id of the index in the repository
+     * @param shardId  the shard
+     * @param fileInfo the file to read
+     */
+    public InputStream openShardSnapshotFile(IndexId indexId, ShardId shardId, BlobStoreIndexShardSnapshot.FileInfo fileInfo) {
+        final Context context = new Context(null, Version.CURRENT, indexId, shardId);
+        final InputStream stream = new PartSliceStream(context.blobContainer, fileInfo);
+        if (restoreRateLimiter == null) {
+            return stream;
+        } else {
+            return new RateLimitingInputStream(stream, restoreRateLimiter, restoreRateLimitingTimeInNanos::inc);
+        }
+    }
+
     @Override
     public void verify(String seed, DiscoveryNode localNode) {
         assertSnapshotOrGenericThread();
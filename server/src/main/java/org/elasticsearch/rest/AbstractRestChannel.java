@@ -84,6 +84,12 @@ public abstract class AbstractRestChannel implements RestChannel {
      */
     @Override
     public XContentBuilder newBuilder(@Nullable XContentType requestContentType, boolean useFiltering) throws IOException {
+        return newBuilder(requestContentType, useFiltering, Streams.flushOnCloseStream(bytesOutput()));
+    }
+
+    @Override
+    public XContentBuilder newBuilder(@Nullable XContentType requestContentType, boolean useFiltering,
+                                      OutputStream outputStream) throws IOException {
         // try to determine the response content type from the media type or the format query string parameter, with the format parameter
         // taking precedence over the Accept header
         XContentType responseContentType = XContentType.fromMediaTypeOrFormat(format);
@@ -106,9 +112,8 @@ public abstract class AbstractRestChannel implements RestChannel {
             excludes = filters.stream().filter(EXCLUDE_FILTER).map(f -> f.substring(1)).collect(toSet());
         }
 
-        OutputStream unclosableOutputStream = Streams.flushOnCloseStream(bytesOutput());
         XContentBuilder builder =
-            new XContentBuilder(XContentFactory.xContent(responseContentType), unclosableOutputStream, includes, excludes);
+            new XContentBuilder(XContentFactory.xContent(responseContentType), outputStream, includes, excludes);
         if (pretty) {
             builder.prettyPrint().lfAtEnd();
         }
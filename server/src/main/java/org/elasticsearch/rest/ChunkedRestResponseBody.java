@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.ChunkedToXContent;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * The body of a response that is sent to the client in chunks, using HTTP chunked transfer encoding. The body is encoded one chunk at
+ * a time as the network channel is ready to accept more bytes, so that the first bytes are sent before the whole body is rendered and
+ * only the chunks that are in flight are held in memory.
+ * <p>
+ * Encoding a chunk is not thread-safe: the transport encodes the chunks of a body one after the other.
+ */
+public interface ChunkedRestResponseBody {
+
+    /**
+     * Returns {@code true} once all the chunks of this body have been encoded.
+     */
+    boolean isDone();
+
+    /**
+     * Encodes the next chunk of this body into pages allocated with the given {@link BigArrays}. The chunk is at least {@code sizeHint}
+     * bytes long unless it is the last one, and may be a bit longer. The caller must release the chunk once it has been written.
+     */
+    ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException;
+
+    /**
+     * Returns the value of the content-type header of the response.
+     */
+    String getResponseContentTypeString();
+
+    /**
+     * Creates a body that renders the fragments of the given object, with the same format, filtering and pretty-printing as the
+     * builders of the given channel.
+     */
+    static ChunkedRestResponseBody fromXContent(ChunkedToXContent chunkedToXContent, ToXContent.Params params,
+                                                RestChannel channel) throws IOException {
+        return new ChunkedRestResponseBody() {
+
+            // the builder writes to the chunk that is being encoded
+            private ReleasableBytesStreamOutput target;
+
+            private final XContentBuilder builder = channel.newBuilder(channel.request().getXContentType(), true, new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target.write(b, off, len);
+                }
+            });
+
+            private final Iterator<? extends ToXContent> fragments = chunkedToXContent.toXContentChunked();
+
+            private boolean done = false;
+
+            @Override
+            public boolean isDone() {
+                return done;
+            }
+
+            @Override
+            public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException {
+                assert done == false : "all chunks have already been encoded";
+                final ReleasableBytesStreamOutput chunk = new ReleasableBytesStreamOutput(sizeHint, bigArrays);
+                boolean success = false;
+                try {
+                    target = chunk;
+                    while (fragments.hasNext() && chunk.size() < sizeHint) {
+                        fragments.next().toXContent(builder, params);
+                        builder.flush();
+                    }
+                    if (fragments.hasNext() == false) {
+                        // closing the builder writes the trailing line feed of pretty responses
+                        builder.close();
+                        done = true;
+                    }
+                    final ReleasableBytesReference result = new ReleasableBytesReference(chunk.bytes(), chunk);
+                    success = true;
+                    return result;
+                } finally {
+                    target = null;
+                    if (success == false) {
+                        chunk.close();
+                    }
+                }
+            }
+
+            @Override
+            public String getResponseContentTypeString() {
+                return builder.contentType().mediaType();
+            }
+        };
+    }
+}
@@ -20,11 +20,15 @@
 package org.elasticsearch.rest;
 
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * A channel used to construct bytes / builder based outputs, and send responses.
@@ -37,6 +41,12 @@ public interface RestChannel {
 
     XContentBuilder newBuilder(@Nullable XContentType xContentType, boolean useFiltering) throws IOException;
 
+    /**
+     * Creates a new {@link XContentBuilder} like {@link #newBuilder(XContentType, boolean)} does, but that writes to the given stream
+     * instead of the bytes output of this channel.
+     */
+    XContentBuilder newBuilder(@Nullable XContentType xContentType, boolean useFiltering, OutputStream outputStream) throws IOException;
+
     BytesStreamOutput bytesOutput();
 
     RestRequest request();
@@ -47,4 +57,18 @@ public interface RestChannel {
     boolean detailedErrorsEnabled();
 
     void sendResponse(RestResponse response);
+
+    /**
+     * Sends a response whose body is encoded in chunks as the client consumes it. Channels that cannot send chunked responses encode
+     * the whole body and send it with {@link #sendResponse(RestResponse)}.
+     */
+    default void sendChunkedResponse(RestStatus status, ChunkedRestResponseBody body) throws IOException {
+        final BytesStreamOutput out = bytesOutput();
+        while (body.isDone() == false) {
+            try (ReleasableBytesReference chunk = body.encodeChunk(PageCacheRecycler.BYTE_PAGE_SIZE, BigArrays.NON_RECYCLING_INSTANCE)) {
+                chunk.writeTo(out);
+            }
+        }
+        sendResponse(new BytesRestResponse(status, body.getResponseContentTypeString(), out.bytes()));
+    }
 }
@@ -41,6 +41,7 @@ import org.elasticsearch.usage.UsageService;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -474,6 +475,12 @@ public class RestController extends AbstractComponent implements HttpServerTrans
             return delegate.newBuilder(xContentType, useFiltering);
         }
 
+        @Override
+        public XContentBuilder newBuilder(@Nullable XContentType xContentType, boolean useFiltering,
+                                          OutputStream outputStream) throws IOException {
+            return delegate.newBuilder(xContentType, useFiltering, outputStream);
+        }
+
         @Override
         public BytesStreamOutput bytesOutput() {
             return delegate.bytesOutput();
@@ -495,6 +502,13 @@ public class RestController extends AbstractComponent implements HttpServerTrans
             delegate.sendResponse(response);
         }
 
+        @Override
+        public void sendChunkedResponse(RestStatus status, ChunkedRestResponseBody body) throws IOException {
+            // channels that do not support chunked responses may fail to render the body, in which case an error response is sent
+            delegate.sendChunkedResponse(status, body);
+            close();
+        }
+
         private void close() {
             // attempt to close once atomically
             if (closed.compareAndSet(false, true) == false) {
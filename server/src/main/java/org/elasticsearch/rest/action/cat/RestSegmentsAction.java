@@ -34,9 +34,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.engine.Segment;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
-import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.action.RestActionListener;
-import org.elasticsearch.rest.action.RestResponseListener;
 
 import java.util.List;
 import java.util.Map;
@@ -69,12 +67,12 @@ public class RestSegmentsAction extends AbstractCatAction {
             public void processResponse(final ClusterStateResponse clusterStateResponse) {
                 final IndicesSegmentsRequest indicesSegmentsRequest = new IndicesSegmentsRequest();
                 indicesSegmentsRequest.indices(indices);
-                client.admin().indices().segments(indicesSegmentsRequest, new RestResponseListener<IndicesSegmentResponse>(channel) {
+                client.admin().indices().segments(indicesSegmentsRequest, new RestActionListener<IndicesSegmentResponse>(channel) {
                     @Override
-                    public RestResponse buildResponse(final IndicesSegmentResponse indicesSegmentResponse) throws Exception {
+                    public void processResponse(final IndicesSegmentResponse indicesSegmentResponse) throws Exception {
                         final Map<String, IndexSegments> indicesSegments = indicesSegmentResponse.getIndices();
                         Table tab = buildTable(request, clusterStateResponse, indicesSegments);
-                        return RestTable.buildResponse(tab, channel);
+                        RestTable.sendChunkedResponse(tab, channel);
                     }
                 });
             }
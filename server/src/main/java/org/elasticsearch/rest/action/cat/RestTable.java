@@ -22,16 +22,21 @@ package org.elasticsearch.rest.action.cat;
 import org.elasticsearch.common.Booleans;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.Table;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.UTF8StreamWriter;
 import org.elasticsearch.common.io.stream.BytesStream;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.SizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
@@ -41,6 +46,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -85,36 +91,142 @@ public class RestTable {
 
         BytesStream bytesOut = Streams.flushOnCloseStream(channel.bytesOutput());
         UTF8StreamWriter out = new UTF8StreamWriter().setOutput(bytesOut);
-        int lastHeader = headers.size() - 1;
         if (verbose) {
-            for (int col = 0; col < headers.size(); col++) {
-                DisplayHeader header = headers.get(col);
-                boolean isLastColumn = col == lastHeader;
-                pad(new Table.Cell(header.display, table.findHeaderByName(header.name)), width[col], request, out, isLastColumn);
-                if (!isLastColumn) {
-                    out.append(" ");
-                }
-            }
-            out.append("\n");
+            writeHeaderLine(table, request, headers, width, out);
         }
 
         List<Integer> rowOrder = getRowOrder(table, request);
 
         for (Integer row: rowOrder) {
-            for (int col = 0; col < headers.size(); col++) {
-                DisplayHeader header = headers.get(col);
-                boolean isLastColumn = col == lastHeader;
-                pad(table.getAsMap().get(header.name).get(row), width[col], request, out, isLastColumn);
-                if (!isLastColumn) {
-                    out.append(" ");
-                }
-            }
-            out.append("\n");
+            writeRowLine(table, request, headers, width, out, row);
         }
         out.close();
         return new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, bytesOut.bytes());
     }
 
+    /**
+     * Sends the table to the channel in chunks, rendering its rows as the client consumes them instead of rendering the whole table
+     * before sending the first byte.
+     */
+    public static void sendChunkedResponse(Table table, RestChannel channel) throws IOException {
+        RestRequest request = channel.request();
+        XContentType xContentType = XContentType.fromMediaTypeOrFormat(request.param("format", request.header("Accept")));
+        final ChunkedRestResponseBody body;
+        if (xContentType != null) {
+            body = ChunkedRestResponseBody.fromXContent(() -> rowChunks(table, request), request, channel);
+        } else {
+            body = new TextPlainChunkedBody(table, request);
+        }
+        channel.sendChunkedResponse(RestStatus.OK, body);
+    }
+
+    private static Iterator<ToXContent> rowChunks(Table table, RestRequest request) {
+        List<DisplayHeader> displayHeaders = buildDisplayHeaders(table, request);
+        List<Integer> rowOrder = getRowOrder(table, request);
+        List<ToXContent> chunks = new ArrayList<>(rowOrder.size() + 2);
+        chunks.add((builder, params) -> builder.startArray());
+        for (Integer row : rowOrder) {
+            chunks.add((builder, params) -> {
+                builder.startObject();
+                for (DisplayHeader header : displayHeaders) {
+                    builder.field(header.display, renderValue(request, table.getAsMap().get(header.name).get(row).value));
+                }
+                return builder.endObject();
+            });
+        }
+        chunks.add((builder, params) -> builder.endArray());
+        return chunks.iterator();
+    }
+
+    private static void writeHeaderLine(Table table, RestRequest request, List<DisplayHeader> headers, int[] width,
+                                        UTF8StreamWriter out) throws IOException {
+        int lastHeader = headers.size() - 1;
+        for (int col = 0; col < headers.size(); col++) {
+            DisplayHeader header = headers.get(col);
+            boolean isLastColumn = col == lastHeader;
+            pad(new Table.Cell(header.display, table.findHeaderByName(header.name)), width[col], request, out, isLastColumn);
+            if (!isLastColumn) {
+                out.append(" ");
+            }
+        }
+        out.append("\n");
+    }
+
+    private static void writeRowLine(Table table, RestRequest request, List<DisplayHeader> headers, int[] width,
+                                     UTF8StreamWriter out, int row) throws IOException {
+        int lastHeader = headers.size() - 1;
+        for (int col = 0; col < headers.size(); col++) {
+            DisplayHeader header = headers.get(col);
+            boolean isLastColumn = col == lastHeader;
+            pad(table.getAsMap().get(header.name).get(row), width[col], request, out, isLastColumn);
+            if (!isLastColumn) {
+                out.append(" ");
+            }
+        }
+        out.append("\n");
+    }
+
+    /**
+     * Renders the rows of a table as plain text, a few rows per chunk. The widths of the columns are computed up front since they
+     * depend on all the rows.
+     */
+    private static class TextPlainChunkedBody implements ChunkedRestResponseBody {
+
+        private final Table table;
+        private final RestRequest request;
+        private final List<DisplayHeader> headers;
+        private final int[] width;
+        private final List<Integer> rowOrder;
+        private boolean writeHeaderLine;
+        private int nextRow = 0;
+
+        TextPlainChunkedBody(Table table, RestRequest request) {
+            this.table = table;
+            this.request = request;
+            boolean verbose = request.paramAsBoolean("v", false);
+            this.headers = buildDisplayHeaders(table, request);
+            this.width = buildWidths(table, request, verbose, headers);
+            this.rowOrder = getRowOrder(table, request);
+            this.writeHeaderLine = verbose;
+        }
+
+        @Override
+        public boolean isDone() {
+            return writeHeaderLine == false && nextRow == rowOrder.size();
+        }
+
+        @Override
+        public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException {
+            final ReleasableBytesStreamOutput chunk = new ReleasableBytesStreamOutput(sizeHint, bigArrays);
+            boolean success = false;
+            try {
+                // the writer is flushed but not closed, closing it would release the pages of the chunk
+                UTF8StreamWriter out = new UTF8StreamWriter().setOutput(chunk);
+                if (writeHeaderLine) {
+                    writeHeaderLine(table, request, headers, width, out);
+                    writeHeaderLine = false;
+                }
+                while (nextRow < rowOrder.size() && chunk.size() < sizeHint) {
+                    writeRowLine(table, request, headers, width, out, rowOrder.get(nextRow++));
+                    out.flush();
+                }
+                out.flush();
+                final ReleasableBytesReference result = new ReleasableBytesReference(chunk.bytes(), chunk);
+                success = true;
+                return result;
+            } finally {
+                if (success == false) {
+                    chunk.close();
+                }
+            }
+        }
+
+        @Override
+        public String getResponseContentTypeString() {
+            return BytesRestResponse.TEXT_CONTENT_TYPE;
+        }
+    }
+
     static List<Integer> getRowOrder(Table table, RestRequest request) {
         String[] columnOrdering = request.paramAsStringArray("s", null);
 
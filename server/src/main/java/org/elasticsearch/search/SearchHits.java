@@ -23,6 +23,7 @@ import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.ToXContent.Params;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -104,6 +105,27 @@ public final class SearchHits implements Streamable, ToXContentFragment, Iterabl
 
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        headerToXContent(builder, params);
+        for (SearchHit hit : hits) {
+            hit.toXContent(builder, params);
+        }
+        builder.endArray();
+        builder.endObject();
+        return builder;
+    }
+
+    /**
+     * Returns the fragments of the x-content of these hits, one per hit, so that they can be sent to the client in chunks.
+     */
+    public List<ToXContent> toXContentChunks() {
+        final List<ToXContent> chunks = new ArrayList<>(hits.length + 2);
+        chunks.add(this::headerToXContent);
+        chunks.addAll(Arrays.asList(hits));
+        chunks.add((builder, params) -> builder.endArray().endObject());
+        return chunks;
+    }
+
+    private XContentBuilder headerToXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.HITS);
         builder.field(Fields.TOTAL, totalHits);
         if (Float.isNaN(maxScore)) {
@@ -112,13 +134,7 @@ public final class SearchHits implements Streamable, ToXContentFragment, Iterabl
             builder.field(Fields.MAX_SCORE, maxScore);
         }
         builder.field(Fields.HITS);
-        builder.startArray();
-        for (SearchHit hit : hits) {
-            hit.toXContent(builder, params);
-        }
-        builder.endArray();
-        builder.endObject();
-        return builder;
+        return builder.startArray();
     }
 
     public static SearchHits fromXContent(XContentParser parser) throws IOException {
@@ -111,6 +111,7 @@ import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
@@ -142,6 +143,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     public static final Setting<Boolean> DEFAULT_ALLOW_PARTIAL_SEARCH_RESULTS =
             Setting.boolSetting("search.default_allow_partial_results", true, Property.Dynamic, Property.NodeScope);
 
+    /**
+     * Enables the streaming reduce of terms aggregations on the coordinating node. Buckets are then merged in hashes that are accounted
+     * on the request circuit breaker, and partial reductions keep only the top {@code shard_size} buckets of each terms aggregation so
+     * that the memory of the reduce phase does not grow with the number of shards.
+     */
+    public static final Setting<Boolean> STREAMING_TERMS_REDUCE_SETTING =
+        Setting.boolSetting("search.aggs.streaming_terms_reduce", false, Property.Dynamic, Property.NodeScope);
 
     private final ThreadPool threadPool;
 
@@ -171,6 +179,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private volatile boolean lowLevelCancellation;
 
+    private volatile boolean streamingTermsReduce;
+
     private final Cancellable keepAliveReaper;
 
     private final AtomicLong idGenerator = new AtomicLong();
@@ -212,6 +222,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
         lowLevelCancellation = LOW_LEVEL_CANCELLATION_SETTING.get(settings);
         clusterService.getClusterSettings().addSettingsUpdateConsumer(LOW_LEVEL_CANCELLATION_SETTING, this::setLowLevelCancellation);
+
+        streamingTermsReduce = STREAMING_TERMS_REDUCE_SETTING.get(settings);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(STREAMING_TERMS_REDUCE_SETTING, this::setStreamingTermsReduce);
     }
 
     private void validateKeepAlives(TimeValue defaultKeepAlive, TimeValue maxKeepAlive) {
@@ -228,6 +241,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         this.maxKeepAlive = maxKeepAlive.millis();
     }
 
+    private void setStreamingTermsReduce(boolean streamingTermsReduce) {
+        this.streamingTermsReduce = streamingTermsReduce;
+    }
+
     private void setDefaultSearchTimeout(TimeValue defaultSearchTimeout) {
         this.defaultSearchTimeout = defaultSearchTimeout;
     }
@@ -1093,8 +1110,14 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return indicesService;
     }
 
-    public InternalAggregation.ReduceContext createReduceContext(boolean finalReduce) {
-        return new InternalAggregation.ReduceContext(bigArrays, scriptService, multiBucketConsumerService.create(), finalReduce);
+    /**
+     * Returns a function that creates the contexts of the reduce phases of a single search request. Settings are read once so that
+     * the partial and the final reduce phases of the request use the same ones, even if they are updated in the meantime.
+     */
+    public Function<Boolean, InternalAggregation.ReduceContext> newReduceContextFunction() {
+        final boolean streamingReduce = streamingTermsReduce;
+        return finalReduce -> new InternalAggregation.ReduceContext(bigArrays, scriptService, multiBucketConsumerService.create(),
+            finalReduce, streamingReduce);
     }
 
     public static final class CanMatchResponse extends SearchPhaseResult {
@@ -75,6 +75,37 @@ public class AggregationPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Creates the aggregators that collect an additional slice of segments when the query phase collects segments concurrently and
+     * returns their collector, or {@code null} if all aggregators of the request are global. Only requests whose aggregations
+     * {@link AggregatorFactories#supportsConcurrentSlices() support concurrent slices} are collected in slices.
+     */
+    public static Collector createSliceCollector(SearchContext context) {
+        assert context.aggregations().factories().supportsConcurrentSlices() : "aggregations don't support concurrent slices";
+        List<Aggregator> collectors = new ArrayList<>();
+        try {
+            Aggregator[] aggregators = context.aggregations().factories().createTopLevelAggregators();
+            context.aggregations().addSliceAggregators(aggregators);
+            for (Aggregator aggregator : aggregators) {
+                // global aggregators collect all documents of the shard after the query phase, see execute
+                if (aggregator instanceof GlobalAggregator == false) {
+                    collectors.add(aggregator);
+                }
+            }
+            if (collectors.isEmpty()) {
+                return null;
+            }
+            Collector collector = MultiBucketCollector.wrap(collectors);
+            ((BucketCollector) collector).preCollection();
+            if (context.getProfilers() != null) {
+                collector = new InternalProfileCollector(collector, CollectorResult.REASON_AGGREGATION, Collections.emptyList());
+            }
+            return collector;
+        } catch (IOException e) {
+            throw new AggregationInitializationException("Could not initialize aggregators", e);
+        }
+    }
+
     @Override
     public void execute(SearchContext context) {
         if (context.aggregations() == null) {
@@ -132,7 +163,34 @@ public class AggregationPhase implements SearchPhase {
                 throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
             }
         }
-        context.queryResult().aggregations(new InternalAggregations(aggregations));
+        InternalAggregations internalAggregations = new InternalAggregations(aggregations);
+        if (context.aggregations().sliceAggregators().isEmpty() == false) {
+            List<InternalAggregations> slices = new ArrayList<>();
+            slices.add(internalAggregations);
+            for (Aggregator[] sliceAggregators : context.aggregations().sliceAggregators()) {
+                // the buckets of each slice are limited like the buckets of the whole shard
+                context.aggregations().resetBucketMultiConsumer();
+                List<InternalAggregation> sliceAggregations = new ArrayList<>(sliceAggregators.length);
+                for (Aggregator aggregator : sliceAggregators) {
+                    if (aggregator instanceof GlobalAggregator) {
+                        continue;
+                    }
+                    try {
+                        aggregator.postCollection();
+                        sliceAggregations.add(aggregator.buildAggregation(0));
+                    } catch (IOException e) {
+                        throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
+                    }
+                }
+                slices.add(new InternalAggregations(sliceAggregations));
+            }
+            // a partial reduce, the final one happens on the coordinating node with the results of the other shards
+            context.aggregations().resetBucketMultiConsumer();
+            InternalAggregation.ReduceContext reduceContext = new InternalAggregation.ReduceContext(context.bigArrays(),
+                context.getQueryShardContext().getScriptService(), context.aggregations().multiBucketConsumer(), false);
+            internalAggregations = InternalAggregations.reduce(slices, reduceContext);
+        }
+        context.queryResult().aggregations(internalAggregations);
         try {
             List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
             List<SiblingPipelineAggregator> siblingPipelineAggregators = new ArrayList<>(pipelineAggregators.size());
@@ -230,6 +230,19 @@ public class AggregatorFactories {
         return factories.length;
     }
 
+    /**
+     * Returns whether all the aggregations of this level and their sub-aggregations support collecting slices of segments
+     * concurrently, see {@link AggregatorFactory#supportsConcurrentSlices()}.
+     */
+    public boolean supportsConcurrentSlices() {
+        for (AggregatorFactory<?> factory : factories) {
+            if (factory.supportsConcurrentSlices() == false || factory.factories.supportsConcurrentSlices() == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return the number of pipeline aggregator factories
      */
@@ -221,6 +221,16 @@ public abstract class AggregatorFactory<AF extends AggregatorFactory<AF>> {
         return parent;
     }
 
+    /**
+     * Returns whether the aggregators of this factory can collect slices of the segments of a shard concurrently, each slice with
+     * its own aggregators, and partially reduce the results of all slices into the result of the shard. This requires the partial
+     * reduce to give the same result as a single aggregator that collects all segments, and the aggregators not to share any
+     * state while they collect. Sub-aggregations are checked separately by {@link AggregatorFactories#supportsConcurrentSlices()}.
+     */
+    protected boolean supportsConcurrentSlices() {
+        return false;
+    }
+
     /**
      * Utility method. Given an {@link AggregatorFactory} that creates
      * {@link Aggregator}s that only know how to collect bucket {@code 0}, this
@@ -46,16 +46,23 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
         private final ScriptService scriptService;
         private final IntConsumer multiBucketConsumer;
         private final boolean isFinalReduce;
+        private final boolean isStreamingReduce;
 
         public ReduceContext(BigArrays bigArrays, ScriptService scriptService, boolean isFinalReduce) {
             this(bigArrays, scriptService, (s) -> {}, isFinalReduce);
         }
 
         public ReduceContext(BigArrays bigArrays, ScriptService scriptService, IntConsumer multiBucketConsumer, boolean isFinalReduce) {
+            this(bigArrays, scriptService, multiBucketConsumer, isFinalReduce, false);
+        }
+
+        public ReduceContext(BigArrays bigArrays, ScriptService scriptService, IntConsumer multiBucketConsumer, boolean isFinalReduce,
+                             boolean isStreamingReduce) {
             this.bigArrays = bigArrays;
             this.scriptService = scriptService;
             this.multiBucketConsumer = multiBucketConsumer;
             this.isFinalReduce = isFinalReduce;
+            this.isStreamingReduce = isStreamingReduce;
         }
 
         /**
@@ -67,6 +74,15 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
             return isFinalReduce;
         }
 
+        /**
+         * Returns <code>true</code> if aggregations that support it should merge buckets in structures that are accounted on the
+         * circuit breaker of {@link #bigArrays()} and keep the result of partial reduce phases bounded, see
+         * {@code search.aggs.streaming_terms_reduce}.
+         */
+        public boolean isStreamingReduce() {
+            return isStreamingReduce;
+        }
+
         public BigArrays bigArrays() {
             return bigArrays;
         }
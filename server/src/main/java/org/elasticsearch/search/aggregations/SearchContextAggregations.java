@@ -18,6 +18,8 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntConsumer;
 
 import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
@@ -30,6 +32,7 @@ public class SearchContextAggregations {
     private final AggregatorFactories factories;
     private final MultiBucketConsumer multiBucketConsumer;
     private Aggregator[] aggregators;
+    private final List<Aggregator[]> sliceAggregators = new ArrayList<>();
 
     /**
      * Creates a new aggregation context with the parsed aggregator factories
@@ -56,6 +59,21 @@ public class SearchContextAggregations {
         this.aggregators = aggregators;
     }
 
+    /**
+     * Returns the top level aggregators of the additional slices of segments that the query phase collected concurrently.
+     */
+    public List<Aggregator[]> sliceAggregators() {
+        return sliceAggregators;
+    }
+
+    /**
+     * Registers the top level aggregators that collect an additional slice of segments, their results are partially reduced with
+     * the results of the {@link #aggregators()}.
+     */
+    public void addSliceAggregators(Aggregator[] aggregators) {
+        this.sliceAggregators.add(aggregators);
+    }
+
     /**
      * Returns a consumer for multi bucket aggregation that checks the total number of buckets
      * created in the response
@@ -0,0 +1,315 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.FutureArrays;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counts the documents of a segment per bucket from the points indexed for the field of a bucket aggregation, rather than by
+ * collecting every matching document and reading its doc values. Whole cells of the BKD tree that fall into a single bucket are
+ * counted without decoding their values.
+ * <p>
+ * This is only possible when the aggregation has no parent and no sub-aggregations, and when the query matches all documents or
+ * is a range query on the same field. A segment can only be counted if it has no deleted documents and if each of its documents
+ * has at most one value for the field, see {@link #countByKey} and {@link #countInRanges}.
+ */
+public final class PointsBucketCounter {
+
+    /**
+     * Receives the number of documents of a segment that fall into a bucket.
+     */
+    @FunctionalInterface
+    public interface CountConsumer {
+        void accept(long bucket, int count);
+    }
+
+    private final String field;
+    private final Function<byte[], Number> converter;
+    // the inclusive bounds of the range query on the field, or null if the query matches all documents
+    private final byte[] lowerPoint;
+    private final byte[] upperPoint;
+
+    private PointsBucketCounter(String field, Function<byte[], Number> converter, byte[] lowerPoint, byte[] upperPoint) {
+        this.field = field;
+        this.converter = converter;
+        this.lowerPoint = lowerPoint;
+        this.upperPoint = upperPoint;
+    }
+
+    /**
+     * Returns a counter for the field of the provided values source config if the buckets of the aggregation can be counted from
+     * points, or <code>null</code> if the matching documents must be collected.
+     *
+     * @param context The {@link SearchContext} of the aggregation.
+     * @param parent The parent aggregator.
+     * @param factories The factories of the sub-aggregations.
+     * @param config The config for the values source of the aggregation.
+     */
+    @Nullable
+    public static PointsBucketCounter createOrNull(SearchContext context, Aggregator parent, AggregatorFactories factories,
+                                                   ValuesSourceConfig<ValuesSource.Numeric> config) {
+        if (parent != null || factories.countAggregators() > 0) {
+            return null;
+        }
+        if (context.minimumScore() != null || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return null;
+        }
+        if (config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        final MappedFieldType fieldType = config.fieldContext().fieldType();
+        if (fieldType == null || fieldType.indexOptions() == IndexOptions.NONE) {
+            return null;
+        }
+        final Function<byte[], Number> converter;
+        if (fieldType instanceof NumberFieldMapper.NumberFieldType) {
+            converter = ((NumberFieldMapper.NumberFieldType) fieldType)::parsePoint;
+        } else if (fieldType.getClass() == DateFieldMapper.DateFieldType.class) {
+            converter = (in) -> LongPoint.decodeDimension(in, 0);
+        } else {
+            return null;
+        }
+        final Query query = extractQuery(context.query());
+        if (query == null || query.getClass() == MatchAllDocsQuery.class) {
+            return new PointsBucketCounter(fieldType.name(), converter, null, null);
+        } else if (query instanceof PointRangeQuery && fieldType.name().equals(((PointRangeQuery) query).getField())
+                && ((PointRangeQuery) query).getNumDims() == 1) {
+            final PointRangeQuery rangeQuery = (PointRangeQuery) query;
+            return new PointsBucketCounter(fieldType.name(), converter, rangeQuery.getLowerPoint(), rangeQuery.getUpperPoint());
+        }
+        return null;
+    }
+
+    private static Query extractQuery(Query query) {
+        if (query instanceof BoostQuery) {
+            return extractQuery(((BoostQuery) query).getQuery());
+        } else if (query instanceof ConstantScoreQuery) {
+            return extractQuery(((ConstantScoreQuery) query).getQuery());
+        } else if (query instanceof IndexOrDocValuesQuery) {
+            return extractQuery(((IndexOrDocValuesQuery) query).getIndexQuery());
+        } else if (query instanceof BooleanQuery && ((BooleanQuery) query).clauses().size() == 1) {
+            // a bool query with a single required clause, as sent for a filter on the time range
+            final BooleanClause clause = ((BooleanQuery) query).clauses().get(0);
+            if (clause.getOccur() == BooleanClause.Occur.MUST || clause.getOccur() == BooleanClause.Occur.FILTER) {
+                return extractQuery(clause.getQuery());
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Counts the matching documents of the segment per key, where the key of a document is computed from the value of the field by
+     * the provided function. The function must be monotonic, like a rounding, so that all the values of a cell of the BKD tree
+     * fall into the same key if the values at its bounds do.
+     *
+     * @return <code>false</code> if the documents of the segment cannot be counted from points and must be collected
+     */
+    public boolean countByKey(LeafReaderContext ctx, ToLongFunction<Number> keyFunction, CountConsumer consumer) throws IOException {
+        final PointValues values = ctx.reader().getPointValues(field);
+        if (canCount(ctx, values) == false) {
+            return false;
+        }
+        final KeyCountingVisitor visitor = new KeyCountingVisitor(values.getBytesPerDimension(), keyFunction, consumer);
+        values.intersect(visitor);
+        visitor.flush();
+        return true;
+    }
+
+    /**
+     * Counts the matching documents of the segment whose value is greater than or equal to <code>from[i]</code> and less than
+     * <code>to[i]</code>, for each range <code>i</code>. Ranges may overlap, a document is counted in all the ranges it matches.
+     *
+     * @return <code>false</code> if the documents of the segment cannot be counted from points and must be collected
+     */
+    public boolean countInRanges(LeafReaderContext ctx, double[] from, double[] to, CountConsumer consumer) throws IOException {
+        assert from.length == to.length;
+        final PointValues values = ctx.reader().getPointValues(field);
+        if (canCount(ctx, values) == false) {
+            return false;
+        }
+        for (int i = 0; i < from.length; i++) {
+            final RangeCountingVisitor visitor = new RangeCountingVisitor(values.getBytesPerDimension(), from[i], to[i]);
+            values.intersect(visitor);
+            if (visitor.count > 0) {
+                consumer.accept(i, visitor.count);
+            }
+        }
+        return true;
+    }
+
+    private static boolean canCount(LeafReaderContext ctx, PointValues values) {
+        if (ctx.reader().getLiveDocs() != null) {
+            // deleted documents are still indexed in the BKD tree
+            return false;
+        }
+        // the values cannot be inferred from points that are not indexed, and each document must have a single value
+        return values != null && values.size() == values.getDocCount();
+    }
+
+    private PointValues.Relation compareToQuery(byte[] minPackedValue, byte[] maxPackedValue, int bytesPerDim) {
+        if ((upperPoint != null && FutureArrays.compareUnsigned(minPackedValue, 0, bytesPerDim, upperPoint, 0, bytesPerDim) > 0) ||
+                (lowerPoint != null && FutureArrays.compareUnsigned(maxPackedValue, 0, bytesPerDim, lowerPoint, 0, bytesPerDim) < 0)) {
+            return PointValues.Relation.CELL_OUTSIDE_QUERY;
+        }
+        if ((upperPoint != null && FutureArrays.compareUnsigned(maxPackedValue, 0, bytesPerDim, upperPoint, 0, bytesPerDim) > 0) ||
+                (lowerPoint != null && FutureArrays.compareUnsigned(minPackedValue, 0, bytesPerDim, lowerPoint, 0, bytesPerDim) < 0)) {
+            return PointValues.Relation.CELL_CROSSES_QUERY;
+        }
+        return PointValues.Relation.CELL_INSIDE_QUERY;
+    }
+
+    private boolean matchesQuery(byte[] packedValue, int bytesPerDim) {
+        return compareToQuery(packedValue, packedValue, bytesPerDim) == PointValues.Relation.CELL_INSIDE_QUERY;
+    }
+
+    /**
+     * Counts the documents per key. A cell that is inside the query and whose bounds have the same key is reported as inside
+     * and its documents are visited right after, without their values, so they are counted in the key of that cell.
+     */
+    private class KeyCountingVisitor implements PointValues.IntersectVisitor {
+        final int bytesPerDim;
+        final ToLongFunction<Number> keyFunction;
+        final CountConsumer consumer;
+
+        long currentKey;
+        int count;
+
+        KeyCountingVisitor(int bytesPerDim, ToLongFunction<Number> keyFunction, CountConsumer consumer) {
+            this.bytesPerDim = bytesPerDim;
+            this.keyFunction = keyFunction;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(int docID) {
+            count++;
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+            if (matchesQuery(packedValue, bytesPerDim)) {
+                setKey(keyFunction.applyAsLong(converter.apply(packedValue)));
+                count++;
+            }
+        }
+
+        @Override
+        public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            final PointValues.Relation relation = compareToQuery(minPackedValue, maxPackedValue, bytesPerDim);
+            if (relation == PointValues.Relation.CELL_INSIDE_QUERY) {
+                final long minKey = keyFunction.applyAsLong(converter.apply(minPackedValue));
+                final long maxKey = keyFunction.applyAsLong(converter.apply(maxPackedValue));
+                if (minKey == maxKey) {
+                    setKey(minKey);
+                    return PointValues.Relation.CELL_INSIDE_QUERY;
+                }
+                return PointValues.Relation.CELL_CROSSES_QUERY;
+            }
+            return relation;
+        }
+
+        private void setKey(long key) {
+            if (key != currentKey) {
+                flush();
+                currentKey = key;
+            }
+        }
+
+        void flush() {
+            if (count > 0) {
+                consumer.accept(currentKey, count);
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Counts the documents whose value is in a range, compared as doubles like the values read from doc values.
+     */
+    private class RangeCountingVisitor implements PointValues.IntersectVisitor {
+        final int bytesPerDim;
+        final double from;
+        final double to;
+
+        int count;
+
+        RangeCountingVisitor(int bytesPerDim, double from, double to) {
+            this.bytesPerDim = bytesPerDim;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void visit(int docID) {
+            count++;
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+            if (matchesQuery(packedValue, bytesPerDim)) {
+                final double value = converter.apply(packedValue).doubleValue();
+                if (value >= from && value < to) {
+                    count++;
+                }
+            }
+        }
+
+        @Override
+        public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            final PointValues.Relation relation = compareToQuery(minPackedValue, maxPackedValue, bytesPerDim);
+            if (relation == PointValues.Relation.CELL_OUTSIDE_QUERY) {
+                return relation;
+            }
+            final double min = converter.apply(minPackedValue).doubleValue();
+            final double max = converter.apply(maxPackedValue).doubleValue();
+            if (max < from || min >= to) {
+                return PointValues.Relation.CELL_OUTSIDE_QUERY;
+            }
+            if (relation == PointValues.Relation.CELL_INSIDE_QUERY && min >= from && max < to) {
+                return PointValues.Relation.CELL_INSIDE_QUERY;
+            }
+            return PointValues.Relation.CELL_CROSSES_QUERY;
+        }
+    }
+}
@@ -49,4 +49,10 @@ public class GlobalAggregatorFactory extends AggregatorFactory<GlobalAggregatorF
         }
         return new GlobalAggregator(name, factories, context, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        // global aggregators collect all documents of the shard after the query phase, see AggregationPhase
+        return true;
+    }
 }
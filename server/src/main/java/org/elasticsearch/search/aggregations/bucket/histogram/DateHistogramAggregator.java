@@ -20,6 +20,7 @@ package org.elasticsearch.search.aggregations.bucket.histogram;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.util.CollectionUtil;
 import org.elasticsearch.common.Nullable;
@@ -35,6 +36,7 @@ import org.elasticsearch.search.aggregations.InternalOrder;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
 import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.PointsBucketCounter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.internal.SearchContext;
@@ -48,6 +50,9 @@ import java.util.Map;
 /**
  * An aggregator for date values. Every date is rounded down using a configured
  * {@link Rounding}.
+ * <p>
+ * When it is possible, the documents of each segment are counted per bucket
+ * from the points of the field rather than collected, see {@link PointsBucketCounter}.
  *
  * @see Rounding
  */
@@ -56,7 +61,7 @@ class DateHistogramAggregator extends BucketsAggregator {
     private final ValuesSource.Numeric valuesSource;
     private final DocValueFormat formatter;
     private final Rounding rounding;
-    private final Rounding shardRounding;
+    private final Rounding.Prepared shardRounding;
     private final BucketOrder order;
     private final boolean keyed;
 
@@ -66,10 +71,13 @@ class DateHistogramAggregator extends BucketsAggregator {
     private final LongHash bucketOrds;
     private long offset;
 
-    DateHistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, Rounding shardRounding,
+    @Nullable
+    private final PointsBucketCounter pointsCounter;
+
+    DateHistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, Rounding.Prepared shardRounding,
             long offset, BucketOrder order, boolean keyed,
             long minDocCount, @Nullable ExtendedBounds extendedBounds, @Nullable ValuesSource.Numeric valuesSource,
-            DocValueFormat formatter, SearchContext aggregationContext,
+            DocValueFormat formatter, @Nullable PointsBucketCounter pointsCounter, SearchContext aggregationContext,
             Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
 
         super(name, factories, aggregationContext, parent, pipelineAggregators, metaData);
@@ -82,6 +90,7 @@ class DateHistogramAggregator extends BucketsAggregator {
         this.extendedBounds = extendedBounds;
         this.valuesSource = valuesSource;
         this.formatter = formatter;
+        this.pointsCounter = pointsCounter;
 
         bucketOrds = new LongHash(1, aggregationContext.bigArrays());
     }
@@ -100,6 +109,10 @@ class DateHistogramAggregator extends BucketsAggregator {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
+        if (pointsCounter != null && pointsCounter.countByKey(ctx, this::roundPoint, this::incrementBucket)) {
+            // the documents of this segment have been counted from the points of the field, we don't need to collect hits
+            throw new CollectionTerminatedException();
+        }
         final SortedNumericDocValues values = valuesSource.longValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -132,6 +145,18 @@ class DateHistogramAggregator extends BucketsAggregator {
         };
     }
 
+    private long roundPoint(Number value) {
+        return shardRounding.round(value.longValue() - offset) + offset;
+    }
+
+    private void incrementBucket(long rounded, int count) {
+        long bucketOrd = bucketOrds.add(rounded);
+        if (bucketOrd < 0) { // already seen
+            bucketOrd = -1 - bucketOrd;
+        }
+        incrementBucketDocCount(bucketOrd, count);
+    }
+
     @Override
     public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
         assert owningBucketOrdinal == 0;
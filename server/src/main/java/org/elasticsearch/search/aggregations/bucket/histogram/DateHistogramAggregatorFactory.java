@@ -19,10 +19,17 @@
 
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.PointValues;
 import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.PointsBucketCounter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -45,6 +52,7 @@ public final class DateHistogramAggregatorFactory
     private final ExtendedBounds extendedBounds;
     private final Rounding rounding;
     private final Rounding shardRounding;
+    private Rounding.Prepared preparedShardRounding;
 
     public DateHistogramAggregatorFactory(String name, ValuesSourceConfig<Numeric> config,
             long offset, BucketOrder order, boolean keyed, long minDocCount,
@@ -76,8 +84,35 @@ public final class DateHistogramAggregatorFactory
 
     private Aggregator createAggregator(ValuesSource.Numeric valuesSource, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
-        return new DateHistogramAggregator(name, factories, rounding, shardRounding, offset, order, keyed, minDocCount, extendedBounds,
-                valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
+        final PointsBucketCounter pointsCounter = valuesSource == null ? null
+            : PointsBucketCounter.createOrNull(context, parent, factories, config);
+        return new DateHistogramAggregator(name, factories, rounding, prepareShardRounding(), offset, order, keyed, minDocCount,
+                extendedBounds, valuesSource, config.format(), pointsCounter, context, parent, pipelineAggregators, metaData);
+    }
+
+    /**
+     * Prepares the shard rounding for the range of the values of the field on this shard, so that the time zone transitions in
+     * this range are computed once rather than for every value. This is only possible if the field is indexed with points.
+     */
+    private Rounding.Prepared prepareShardRounding() throws IOException {
+        if (preparedShardRounding == null) {
+            preparedShardRounding = shardRounding::round;
+            if (config.fieldContext() != null && config.script() == null) {
+                final MappedFieldType fieldType = config.fieldContext().fieldType();
+                if (fieldType != null && fieldType.getClass() == DateFieldMapper.DateFieldType.class
+                        && fieldType.indexOptions() != IndexOptions.NONE) {
+                    final IndexReader reader = context.searcher().getIndexReader();
+                    final byte[] min = PointValues.getMinPackedValue(reader, fieldType.name());
+                    final byte[] max = PointValues.getMaxPackedValue(reader, fieldType.name());
+                    if (min != null && max != null) {
+                        // values are shifted by the offset before they are rounded
+                        preparedShardRounding = shardRounding.prepare(LongPoint.decodeDimension(min, 0) - offset,
+                            LongPoint.decodeDimension(max, 0) - offset);
+                    }
+                }
+            }
+        }
+        return preparedShardRounding;
     }
 
     @Override
@@ -85,4 +120,10 @@ public final class DateHistogramAggregatorFactory
             throws IOException {
         return createAggregator(null, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        // sub-aggregations of a multi bucket aggregation create their aggregators while they collect, see asMultiBucketAggregator
+        return parent == null && valuesSupportConcurrentSlices();
+    }
 }
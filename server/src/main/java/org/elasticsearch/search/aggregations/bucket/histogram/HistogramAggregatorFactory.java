@@ -81,4 +81,10 @@ public final class HistogramAggregatorFactory extends ValuesSourceAggregatorFact
             throws IOException {
         return createAggregator(null, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        // sub-aggregations of a multi bucket aggregation create their aggregators while they collect, see asMultiBucketAggregator
+        return parent == null && valuesSupportConcurrentSlices();
+    }
 }
@@ -19,7 +19,9 @@
 package org.elasticsearch.search.aggregations.bucket.range;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.ScoreMode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -38,6 +40,7 @@ import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
 import org.elasticsearch.search.aggregations.NonCollectingAggregator;
 import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.PointsBucketCounter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.internal.SearchContext;
@@ -225,9 +228,23 @@ public class RangeAggregator extends BucketsAggregator {
 
     final double[] maxTo;
 
+    @Nullable
+    private final PointsBucketCounter pointsCounter;
+
     public RangeAggregator(String name, AggregatorFactories factories, ValuesSource.Numeric valuesSource, DocValueFormat format,
             InternalRange.Factory rangeFactory, Range[] ranges, boolean keyed, SearchContext context,
             Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+        this(name, factories, valuesSource, format, rangeFactory, ranges, keyed, null, context, parent, pipelineAggregators, metaData);
+    }
+
+    /**
+     * Creates a range aggregator that counts the documents of each segment per range from the points of the field when the
+     * provided counter is not <code>null</code>, see {@link PointsBucketCounter}.
+     */
+    public RangeAggregator(String name, AggregatorFactories factories, ValuesSource.Numeric valuesSource, DocValueFormat format,
+            InternalRange.Factory rangeFactory, Range[] ranges, boolean keyed, @Nullable PointsBucketCounter pointsCounter,
+            SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
+            Map<String, Object> metaData) throws IOException {
 
         super(name, factories, context, parent, pipelineAggregators, metaData);
         assert valuesSource != null;
@@ -243,6 +260,7 @@ public class RangeAggregator extends BucketsAggregator {
         for (int i = 1; i < this.ranges.length; ++i) {
             maxTo[i] = Math.max(this.ranges[i].to,maxTo[i-1]);
         }
+        this.pointsCounter = pointsCounter;
 
     }
 
@@ -257,6 +275,10 @@ public class RangeAggregator extends BucketsAggregator {
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
+        if (pointsCounter != null && countFromPoints(ctx)) {
+            // the documents of this segment have been counted from the points of the field, we don't need to collect hits
+            throw new CollectionTerminatedException();
+        }
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -321,6 +343,18 @@ public class RangeAggregator extends BucketsAggregator {
         };
     }
 
+    private boolean countFromPoints(LeafReaderContext ctx) throws IOException {
+        final double[] from = new double[ranges.length];
+        final double[] to = new double[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            from[i] = ranges[i].from;
+            to[i] = ranges[i].to;
+        }
+        // there is no parent aggregator so the owning bucket ordinal is always 0
+        return pointsCounter.countInRanges(ctx, from, to,
+            (rangeOrd, count) -> incrementBucketDocCount(subBucketOrdinal(0, (int) rangeOrd), count));
+    }
+
     private long subBucketOrdinal(long owningBucketOrdinal, int rangeOrd) {
         return owningBucketOrdinal * ranges.length + rangeOrd;
     }
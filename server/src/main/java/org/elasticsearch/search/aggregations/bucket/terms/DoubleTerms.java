@@ -20,6 +20,8 @@ package org.elasticsearch.search.aggregations.bucket.terms;
 
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -148,6 +150,18 @@ public class DoubleTerms extends InternalMappedTerms<DoubleTerms, DoubleTerms.Bu
         return new Bucket[size];
     }
 
+    @Override
+    protected BucketOrds<Bucket> newBucketOrds(BigArrays bigArrays) {
+        final LongHash terms = new LongHash(1, bigArrays);
+        return new BucketOrds<Bucket>(bigArrays, terms) {
+            @Override
+            protected long addTerm(Bucket bucket) {
+                // same equality as the Double keys of the heap reduce
+                return terms.add(Double.doubleToLongBits(bucket.term));
+            }
+        };
+    }
+
     @Override
     public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
         boolean promoteToDouble = false;
@@ -29,8 +29,11 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongBitSet;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
 import org.elasticsearch.common.util.LongHash;
+import org.elasticsearch.common.util.LongLongHash;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.index.fielddata.AbstractSortedSetDocValues;
 import org.elasticsearch.search.DocValueFormat;
@@ -121,7 +124,7 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         }
     }
 
-    private SortedSetDocValues getGlobalOrds(LeafReaderContext ctx) throws IOException {
+    protected SortedSetDocValues getGlobalOrds(LeafReaderContext ctx) throws IOException {
         return acceptedGlobalOrdinals == null ?
             valuesSource.globalOrdinalsValues(ctx) : new FilteredOrdinals(valuesSource.globalOrdinalsValues(ctx), acceptedGlobalOrdinals);
     }
@@ -216,7 +219,13 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
                 }
             }
         }
+        return buildResult(ordered, otherDocCount);
+    }
 
+    /**
+     * Builds the terms of the top buckets in {@code ordered}, given the sum of the doc counts of all the candidate buckets.
+     */
+    protected final StringTerms buildResult(BucketPriorityQueue<OrdBucket> ordered, long otherDocCount) throws IOException {
         // Get the top buckets
         final StringTerms.Bucket[] list = new StringTerms.Bucket[ordered.size()];
         long survivingBucketOrds[] = new long[ordered.size()];
@@ -391,6 +400,177 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         }
     }
 
+    /**
+     * Variant of {@link GlobalOrdinalsStringTermsAggregator} that collects from all the buckets of its parent at once, instead of
+     * having one aggregator per owning bucket. Buckets are keyed on (owning bucket, global ordinal) pairs: low cardinality fields
+     * index their buckets in dense arrays, the buckets of the owning bucket {@code o} starting at {@code o * valueCount}, while
+     * other fields remap the pairs that have been seen through a {@link LongLongHash} so that the number of buckets grows with the
+     * number of distinct pairs rather than with the number of owning buckets times the number of terms.
+     */
+    static class FromManyBuckets extends GlobalOrdinalsStringTermsAggregator {
+
+        /**
+         * The maximum number of global ordinals of fields whose buckets are indexed in dense arrays rather than remapped.
+         */
+        static final long MAX_DENSE_VALUE_COUNT = 128;
+
+        private final LongLongHash bucketOrdPairs;
+        private long maxOwningBucketOrd = -1;
+        // the bucket ords of each owning bucket, built on the first call to buildAggregation when remapping
+        private LongArray ownedBucketOrdOffsets;
+        private LongArray ownedBucketOrds;
+
+        FromManyBuckets(String name,
+                        AggregatorFactories factories,
+                        ValuesSource.Bytes.WithOrdinals valuesSource,
+                        BucketOrder order,
+                        DocValueFormat format,
+                        BucketCountThresholds bucketCountThresholds,
+                        IncludeExclude.OrdinalsFilter includeExclude,
+                        SearchContext context,
+                        Aggregator parent,
+                        boolean remapGlobalOrds,
+                        SubAggCollectionMode collectionMode,
+                        boolean showTermDocCountError,
+                        List<PipelineAggregator> pipelineAggregators,
+                        Map<String, Object> metaData) throws IOException {
+            super(name, factories, valuesSource, order, format, bucketCountThresholds, includeExclude, context, parent, false,
+                collectionMode, showTermDocCountError, pipelineAggregators, metaData);
+            // deferred collection can only be replayed once, not once per owning bucket
+            assert collectionMode == SubAggCollectionMode.DEPTH_FIRST || factories == AggregatorFactories.EMPTY;
+            this.bucketOrdPairs = remapGlobalOrds ? new LongLongHash(1, context.bigArrays()) : null;
+        }
+
+        @Override
+        boolean remapGlobalOrds() {
+            return bucketOrdPairs != null;
+        }
+
+        private void collectGlobalOrd(int doc, long owningBucketOrd, long globalOrd, LeafBucketCollector sub) throws IOException {
+            if (bucketOrdPairs == null) {
+                collectBucket(sub, doc, owningBucketOrd * valueCount + globalOrd);
+            } else {
+                long bucketOrd = bucketOrdPairs.add(owningBucketOrd, globalOrd);
+                if (bucketOrd < 0) {
+                    bucketOrd = -1 - bucketOrd;
+                    collectExistingBucket(sub, doc, bucketOrd);
+                } else {
+                    maxOwningBucketOrd = Math.max(maxOwningBucketOrd, owningBucketOrd);
+                    collectBucket(sub, doc, bucketOrd);
+                }
+            }
+        }
+
+        @Override
+        public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
+            final SortedSetDocValues globalOrds = getGlobalOrds(ctx);
+            final SortedDocValues singleValues = DocValues.unwrapSingleton(globalOrds);
+            if (singleValues != null) {
+                return new LeafBucketCollectorBase(sub, globalOrds) {
+                    @Override
+                    public void collect(int doc, long bucket) throws IOException {
+                        if (singleValues.advanceExact(doc)) {
+                            collectGlobalOrd(doc, bucket, singleValues.ordValue(), sub);
+                        }
+                    }
+                };
+            } else {
+                return new LeafBucketCollectorBase(sub, globalOrds) {
+                    @Override
+                    public void collect(int doc, long bucket) throws IOException {
+                        if (globalOrds.advanceExact(doc)) {
+                            for (long globalOrd = globalOrds.nextOrd(); globalOrd != NO_MORE_ORDS; globalOrd = globalOrds.nextOrd()) {
+                                collectGlobalOrd(doc, bucket, globalOrd, sub);
+                            }
+                        }
+                    }
+                };
+            }
+        }
+
+        /**
+         * Groups the ids of the remapped pairs by owning bucket: the ids of the owning bucket {@code o} are stored in
+         * {@link #ownedBucketOrds} from {@code ownedBucketOrdOffsets[o]} (inclusive) to {@code ownedBucketOrdOffsets[o + 1]}.
+         */
+        private void buildOwnedBucketOrds() {
+            if (ownedBucketOrds != null) {
+                return;
+            }
+            final BigArrays bigArrays = context.bigArrays();
+            // counting sort: count the pairs of o at o + 2 so that, once summed up, o + 1 holds the position where the
+            // next id of o goes, which then becomes the end of the ids of o once they are all placed
+            ownedBucketOrdOffsets = bigArrays.newLongArray(maxOwningBucketOrd + 3, true);
+            for (long id = 0; id < bucketOrdPairs.size(); id++) {
+                ownedBucketOrdOffsets.increment(bucketOrdPairs.getKey1(id) + 2, 1);
+            }
+            for (long i = 1; i < ownedBucketOrdOffsets.size(); i++) {
+                ownedBucketOrdOffsets.increment(i, ownedBucketOrdOffsets.get(i - 1));
+            }
+            ownedBucketOrds = bigArrays.newLongArray(bucketOrdPairs.size(), false);
+            for (long id = 0; id < bucketOrdPairs.size(); id++) {
+                final long position = ownedBucketOrdOffsets.increment(bucketOrdPairs.getKey1(id) + 1, 1) - 1;
+                ownedBucketOrds.set(position, id);
+            }
+        }
+
+        @Override
+        public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+            if (valueCount == 0) { // no context in this reader
+                return buildEmptyAggregation();
+            }
+
+            final boolean needsFullScan = bucketOrdPairs == null || bucketCountThresholds.getMinDocCount() == 0;
+            long from = 0;
+            long to = 0;
+            if (needsFullScan == false && owningBucketOrdinal <= maxOwningBucketOrd) {
+                buildOwnedBucketOrds();
+                from = ownedBucketOrdOffsets.get(owningBucketOrdinal);
+                to = ownedBucketOrdOffsets.get(owningBucketOrdinal + 1);
+            }
+            final long maxId = needsFullScan ? valueCount : to - from;
+            final int size = (int) Math.min(maxId, bucketCountThresholds.getShardSize());
+            long otherDocCount = 0;
+            BucketPriorityQueue<OrdBucket> ordered = new BucketPriorityQueue<>(size, order.comparator(this));
+            OrdBucket spare = new OrdBucket(-1, 0, null, showTermDocCountError, 0);
+            for (long ord = 0; ord < maxId; ord++) {
+                final long globalOrd;
+                final long bucketOrd;
+                if (needsFullScan) {
+                    globalOrd = ord;
+                    bucketOrd = bucketOrdPairs == null ?
+                        owningBucketOrdinal * valueCount + ord : bucketOrdPairs.find(owningBucketOrdinal, ord);
+                } else {
+                    bucketOrd = ownedBucketOrds.get(from + ord);
+                    globalOrd = bucketOrdPairs.getKey2(bucketOrd);
+                }
+                if (includeExclude != null && !acceptedGlobalOrdinals.get(globalOrd)) {
+                    continue;
+                }
+                final int bucketDocCount = bucketOrd < 0 ? 0 : bucketDocCount(bucketOrd);
+                if (bucketCountThresholds.getMinDocCount() > 0 && bucketDocCount == 0) {
+                    continue;
+                }
+                otherDocCount += bucketDocCount;
+                spare.globalOrd = globalOrd;
+                spare.bucketOrd = bucketOrd;
+                spare.docCount = bucketDocCount;
+                if (bucketCountThresholds.getShardMinDocCount() <= spare.docCount) {
+                    spare = ordered.insertWithOverflow(spare);
+                    if (spare == null) {
+                        consumeBucketsAndMaybeBreak(1);
+                        spare = new OrdBucket(-1, 0, null, showTermDocCountError, 0);
+                    }
+                }
+            }
+            return buildResult(ordered, otherDocCount);
+        }
+
+        @Override
+        protected void doClose() {
+            Releasables.close(bucketOrdPairs, ownedBucketOrdOffsets, ownedBucketOrds);
+        }
+    }
+
     private static final class FilteredOrdinals extends AbstractSortedSetDocValues {
 
         private final SortedSetDocValues inner;
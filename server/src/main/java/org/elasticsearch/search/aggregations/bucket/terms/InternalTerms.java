@@ -21,6 +21,10 @@ package org.elasticsearch.search.aggregations.bucket.terms;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ObjectArray;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.AggregationExecutionException;
@@ -37,8 +41,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 
 public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends InternalTerms.Bucket<B>>
@@ -218,7 +224,17 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
 
     @Override
     public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
-        Map<Object, List<B>> buckets = new HashMap<>();
+        final BucketOrds<B> bucketOrds = reduceContext.isStreamingReduce() ?
+            newBucketOrds(reduceContext.bigArrays().withCircuitBreaking()) : null;
+        try {
+            return doReduce(aggregations, reduceContext, bucketOrds);
+        } finally {
+            Releasables.close(bucketOrds);
+        }
+    }
+
+    private InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext, BucketOrds<B> bucketOrds) {
+        final Map<Object, List<B>> buckets = bucketOrds == null ? new HashMap<>() : null;
         long sumDocCountError = 0;
         long otherDocCount = 0;
         InternalTerms<A, B> referenceTerms = null;
@@ -271,6 +287,10 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
                 // Note that if the error is unbounded (-1) this will be fixed
                 // later in this method.
                 bucket.docCountError -= thisAggDocCountError;
+                if (bucketOrds != null) {
+                    bucketOrds.add(bucket);
+                    continue;
+                }
                 List<B> bucketList = buckets.get(bucket.getKey());
                 if (bucketList == null) {
                     bucketList = new ArrayList<>();
@@ -280,9 +300,21 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
             }
         }
 
-        final int size = reduceContext.isFinalReduce() == false ? buckets.size() : Math.min(requiredSize, buckets.size());
+        final long numTerms = bucketOrds == null ? buckets.size() : bucketOrds.size();
+        final boolean prune = bucketOrds != null && reduceContext.isFinalReduce() == false && canPrunePartialReduce();
+        final int size;
+        if (reduceContext.isFinalReduce()) {
+            size = (int) Math.min(requiredSize, numTerms);
+        } else if (prune) {
+            size = (int) Math.min(getShardSize(), numTerms);
+        } else {
+            size = Math.toIntExact(numTerms);
+        }
+        // the highest doc count of the terms that a pruned partial reduce leaves out of its result
+        long maxPrunedDocCount = 0;
         final BucketPriorityQueue<B> ordered = new BucketPriorityQueue<>(size, order.comparator(null));
-        for (List<B> sameTermBuckets : buckets.values()) {
+        final Iterable<List<B>> termBuckets = bucketOrds == null ? buckets.values() : bucketOrds;
+        for (List<B> sameTermBuckets : termBuckets) {
             final B b = sameTermBuckets.get(0).reduce(sameTermBuckets, reduceContext);
             if (sumDocCountError == -1) {
                 b.docCountError = -1;
@@ -293,6 +325,7 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
                 B removed = ordered.insertWithOverflow(b);
                 if (removed != null) {
                     otherDocCount += removed.getDocCount();
+                    maxPrunedDocCount = Math.max(maxPrunedDocCount, removed.getDocCount());
                     reduceContext.consumeBucketsAndMaybeBreak(-countInnerBucket(removed));
                 } else {
                     reduceContext.consumeBucketsAndMaybeBreak(1);
@@ -309,11 +342,116 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
         if (sumDocCountError == -1) {
             docCountError = -1;
         } else {
-            docCountError = aggregations.size() == 1 ? 0 : sumDocCountError;
+            if (aggregations.size() > 1) {
+                docCountError = sumDocCountError;
+            } else if (bucketOrds != null) {
+                // the only aggregation may be the result of a pruned partial reduce rather than the exact counts of a shard
+                docCountError = ((InternalTerms<?, ?>) aggregations.get(0)).getDocCountError();
+            } else {
+                docCountError = 0;
+            }
+            if (prune && InternalOrder.isCountDesc(order)) {
+                // a term that was pruned might still make it to the top terms with the counts of the next reductions, it can't
+                // have missed more than the counts of the shards that did not return it plus its count in the pruned buckets
+                docCountError += maxPrunedDocCount;
+            }
         }
         return create(name, Arrays.asList(list), docCountError, otherDocCount);
     }
 
+    /**
+     * Returns whether a partial reduce can keep only the top {@link #getShardSize()} buckets without changing the terms of the final
+     * result more than a shard does by returning only its top buckets. This is the case for orders whose doc count error can be
+     * bounded.
+     */
+    private boolean canPrunePartialReduce() {
+        if (getShardSize() <= 0) {
+            return false;
+        }
+        // terms that don't match min_doc_count are filtered in the final reduce, after the top terms by key are selected
+        return InternalOrder.isCountDesc(order) || (InternalOrder.isKeyOrder(order) && minDocCount <= 1);
+    }
+
+    /**
+     * Creates the hash used to group the buckets of the same term when reducing with
+     * {@link ReduceContext#isStreamingReduce()}, or {@code null} if this aggregation reduces its buckets on heap.
+     */
+    protected BucketOrds<B> newBucketOrds(BigArrays bigArrays) {
+        return null;
+    }
+
+    /**
+     * Assigns ordinals to the terms of the reduced buckets in a hash backed by {@link BigArrays}, and groups the buckets by ordinal.
+     */
+    protected abstract static class BucketOrds<B extends Bucket<B>> implements Iterable<List<B>>, Releasable {
+
+        private final BigArrays bigArrays;
+        private final Releasable hash;
+        private ObjectArray<List<B>> buckets;
+        private long size;
+
+        protected BucketOrds(BigArrays bigArrays, Releasable hash) {
+            this.bigArrays = bigArrays;
+            this.hash = hash;
+            boolean success = false;
+            try {
+                this.buckets = bigArrays.newObjectArray(1);
+                success = true;
+            } finally {
+                if (success == false) {
+                    hash.close();
+                }
+            }
+        }
+
+        /**
+         * Adds the term of the given bucket to the hash and returns its ordinal if the term is new, or {@code -1 - ordinal} otherwise.
+         */
+        protected abstract long addTerm(B bucket);
+
+        final void add(B bucket) {
+            long ord = addTerm(bucket);
+            if (ord < 0) {
+                buckets.get(-1 - ord).add(bucket);
+            } else {
+                buckets = bigArrays.grow(buckets, ord + 1);
+                List<B> bucketList = new ArrayList<>();
+                bucketList.add(bucket);
+                buckets.set(ord, bucketList);
+                size = ord + 1;
+            }
+        }
+
+        final long size() {
+            return size;
+        }
+
+        @Override
+        public final Iterator<List<B>> iterator() {
+            return new Iterator<List<B>>() {
+                long ord = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return ord < size;
+                }
+
+                @Override
+                public List<B> next() {
+                    if (hasNext() == false) {
+                        throw new NoSuchElementException();
+                    }
+                    return buckets.get(ord++);
+                }
+            };
+        }
+
+        @Override
+        public final void close() {
+            Releasables.close(hash, buckets);
+        }
+    }
+
     protected abstract void setDocCountError(long docCountError);
 
     protected abstract int getShardSize();
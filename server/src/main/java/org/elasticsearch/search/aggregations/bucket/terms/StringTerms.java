@@ -21,6 +21,8 @@ package org.elasticsearch.search.aggregations.bucket.terms;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.InternalAggregations;
@@ -150,4 +152,15 @@ public class StringTerms extends InternalMappedTerms<StringTerms, StringTerms.Bu
     protected Bucket[] createBucketsArray(int size) {
         return new Bucket[size];
     }
+
+    @Override
+    protected BucketOrds<Bucket> newBucketOrds(BigArrays bigArrays) {
+        final BytesRefHash terms = new BytesRefHash(1, bigArrays);
+        return new BucketOrds<Bucket>(bigArrays, terms) {
+            @Override
+            protected long addTerm(Bucket bucket) {
+                return terms.add(bucket.termBytes);
+            }
+        };
+    }
 }
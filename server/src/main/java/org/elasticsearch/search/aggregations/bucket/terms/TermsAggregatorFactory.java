@@ -49,7 +49,7 @@ import java.util.Map;
 public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSource, TermsAggregatorFactory> {
     private static final DeprecationLogger deprecationLogger = new DeprecationLogger(LogManager.getLogger(TermsAggregatorFactory.class));
 
-    static Boolean REMAP_GLOBAL_ORDS, COLLECT_SEGMENT_ORDS;
+    static Boolean REMAP_GLOBAL_ORDS, COLLECT_SEGMENT_ORDS, COLLECT_FROM_MANY_BUCKETS;
 
     private final BucketOrder order;
     private final IncludeExclude includeExclude;
@@ -112,7 +112,7 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
     @Override
     protected Aggregator doCreateInternal(ValuesSource valuesSource, Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
-        if (collectsFromSingleBucket == false) {
+        if (collectsFromSingleBucket == false && valuesSource instanceof ValuesSource.Bytes.WithOrdinals == false) {
             return asMultiBucketAggregator(this, context, parent);
         }
         BucketCountThresholds bucketCountThresholds = new BucketCountThresholds(this.bucketCountThresholds);
@@ -152,6 +152,13 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                         + "settings as they can only be applied to string fields. Use an array of values for include/exclude clauses");
             }
 
+            if (collectsFromSingleBucket == false) {
+                if (execution == ExecutionMode.GLOBAL_ORDINALS && canCollectFromManyBuckets(cm)) {
+                    return createFromManyBuckets(valuesSource, format, bucketCountThresholds, parent, maxOrd, cm,
+                        pipelineAggregators, metaData);
+                }
+                return asMultiBucketAggregator(this, context, parent);
+            }
             return execution.create(name, factories, valuesSource, order, format, bucketCountThresholds, includeExclude, context, parent,
                     cm, showTermDocCountError, pipelineAggregators, metaData);
         }
@@ -191,6 +198,41 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                 + "]. It can only be applied to numeric or string fields.");
     }
 
+    /**
+     * Whether a global ordinals terms aggregation that collects from many owning buckets, like when it is nested under another
+     * terms or a date_histogram aggregation, can do so with a single aggregator rather than with one aggregator per owning bucket.
+     * Sub-aggregations whose collection is deferred need one aggregator per owning bucket since deferred collections are only
+     * replayed once.
+     */
+    private boolean canCollectFromManyBuckets(SubAggCollectionMode subAggCollectMode) {
+        if (factories != AggregatorFactories.EMPTY && subAggCollectMode != SubAggCollectionMode.DEPTH_FIRST) {
+            return false;
+        }
+        // We use COLLECT_FROM_MANY_BUCKETS to allow tests to force specific optimizations
+        return COLLECT_FROM_MANY_BUCKETS == null || COLLECT_FROM_MANY_BUCKETS.booleanValue();
+    }
+
+    private Aggregator createFromManyBuckets(ValuesSource valuesSource, DocValueFormat format,
+                                             BucketCountThresholds bucketCountThresholds, Aggregator parent, long maxOrd,
+                                             SubAggCollectionMode subAggCollectMode, List<PipelineAggregator> pipelineAggregators,
+                                             Map<String, Object> metaData) throws IOException {
+        final IncludeExclude.OrdinalsFilter filter = includeExclude == null ? null : includeExclude.convertToOrdinalsFilter(format);
+        final boolean remapGlobalOrds;
+        if (REMAP_GLOBAL_ORDS != null) {
+            // We use REMAP_GLOBAL_ORDS to allow tests to force specific optimizations
+            remapGlobalOrds = REMAP_GLOBAL_ORDS.booleanValue();
+        } else {
+            /**
+             * Low cardinality fields index their buckets in dense arrays of size (number of owning buckets * maxOrd), others only
+             * allocate buckets for the (owning bucket, term) pairs that they collect.
+             */
+            remapGlobalOrds = maxOrd > GlobalOrdinalsStringTermsAggregator.FromManyBuckets.MAX_DENSE_VALUE_COUNT;
+        }
+        return new GlobalOrdinalsStringTermsAggregator.FromManyBuckets(name, factories, (ValuesSource.Bytes.WithOrdinals) valuesSource,
+            order, format, bucketCountThresholds, filter, context, parent, remapGlobalOrds, subAggCollectMode, showTermDocCountError,
+            pipelineAggregators, metaData);
+    }
+
     // return the SubAggCollectionMode that this aggregation should use based on the expected size
     // and the cardinality of the field
     static SubAggCollectionMode subAggCollectionMode(int expectedSize, long maxOrd) {
@@ -51,4 +51,9 @@ class AvgAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSource.Nu
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new AvgAggregator(name, valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
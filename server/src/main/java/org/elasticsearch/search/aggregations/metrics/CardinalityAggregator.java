@@ -146,11 +146,9 @@ class CardinalityAggregator extends NumericMetricsAggregator.SingleValue {
         if (counts == null || owningBucketOrdinal >= counts.maxBucket() || counts.cardinality(owningBucketOrdinal) == 0) {
             return buildEmptyAggregation();
         }
-        // We need to build a copy because the returned Aggregation needs remain usable after
-        // this Aggregator (and its HLL++ counters) is released.
-        HyperLogLogPlusPlus copy = new HyperLogLogPlusPlus(precision, BigArrays.NON_RECYCLING_INSTANCE, 1);
-        copy.merge(0, counts, owningBucketOrdinal);
-        return new InternalCardinality(name, copy, pipelineAggregators(), metaData());
+        // The sketch is a copy that remains usable after this Aggregator (and its HLL++ counters) is released, and it only takes
+        // as much memory as the hashes or registers that the bucket has set.
+        return new InternalCardinality(name, counts.toSketch(owningBucketOrdinal), pipelineAggregators(), metaData());
     }
 
     @Override
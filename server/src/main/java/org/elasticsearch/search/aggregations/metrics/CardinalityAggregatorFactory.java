@@ -61,4 +61,9 @@ class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesS
                 ? HyperLogLogPlusPlus.DEFAULT_PRECISION
                 : HyperLogLogPlusPlus.precisionFromThreshold(precisionThreshold);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
@@ -55,4 +55,9 @@ class ExtendedStatsAggregatorFactory extends ValuesSourceAggregatorFactory<Value
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new ExtendedStatsAggregator(name, valuesSource, config.format(), context, parent, sigma, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
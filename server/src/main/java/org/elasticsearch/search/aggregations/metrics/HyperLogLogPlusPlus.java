@@ -22,8 +22,6 @@ package org.elasticsearch.search.aggregations.metrics;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.packed.PackedInts;
-import org.elasticsearch.common.io.stream.StreamInput;
-import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
@@ -31,7 +29,6 @@ import org.elasticsearch.common.util.ByteArray;
 import org.elasticsearch.common.util.ByteUtils;
 import org.elasticsearch.common.util.IntArray;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.HashMap;
@@ -51,6 +48,10 @@ import java.util.Set;
  * requires more space and makes hyperloglog (which is less accurate) used sooner,
  * this is also considerably faster.
  *
+ * Every bucket uses {@code 2^p} bytes while collecting, for the hash table of linear
+ * counting and then for the registers of hyperloglog. Only the copies returned by
+ * {@link #toSketch(long)} are stored sparsely.
+ *
  * Trying to understand what this class does without having read the paper is
  * considered adventurous.
  */
@@ -160,7 +161,6 @@ public final class HyperLogLogPlusPlus implements Releasable {
     private ByteArray runLens;
     private final Hashset hashSet;
     private final int p, m;
-    private final double alphaMM;
 
     public HyperLogLogPlusPlus(int precision, BigArrays bigArrays, long initialBucketCount) {
         if (precision < 4) {
@@ -175,19 +175,6 @@ public final class HyperLogLogPlusPlus implements Releasable {
         algorithm = new OpenBitSet();
         runLens = bigArrays.newByteArray(initialBucketCount << p);
         hashSet = new Hashset(initialBucketCount);
-        final double alpha;
-        switch (p) {
-        case 4:
-            alpha = 0.673;
-            break;
-        case 5:
-            alpha = 0.697;
-            break;
-        default:
-            alpha = 0.7213 / (1 + 1.079 / m);
-            break;
-        }
-        alphaMM = alpha * m * m;
     }
 
     public int precision() {
@@ -233,6 +220,28 @@ public final class HyperLogLogPlusPlus implements Releasable {
         }
     }
 
+    /**
+     * Returns a copy of the counts of {@code bucket} that remains usable after this counter is released.
+     */
+    public HyperLogLogPlusPlusSketch toSketch(long bucket) {
+        if (algorithm.get(bucket) == LINEAR_COUNTING) {
+            try (IntArray values = hashSet.values(bucket)) {
+                final int[] hashes = new int[Math.toIntExact(values.size())];
+                for (int i = 0; i < hashes.length; ++i) {
+                    hashes[i] = values.get(i);
+                }
+                return HyperLogLogPlusPlusSketch.linearCounting(p, hashes);
+            }
+        } else {
+            final byte[] registers = new byte[m];
+            final long start = bucket << p;
+            for (int i = 0; i < m; ++i) {
+                registers[i] = runLens.get(start + i);
+            }
+            return HyperLogLogPlusPlusSketch.hyperLogLog(p, registers);
+        }
+    }
+
     public void collect(long bucket, long hash) {
         ensureCapacity(bucket + 1);
         if (algorithm.get(bucket) == LINEAR_COUNTING) {
@@ -280,8 +289,15 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     private long cardinalityLc(long bucket) {
+        return cardinalityLc(hashSet.size(bucket));
+    }
+
+    /**
+     * Estimates the cardinality of a set of {@code size} distinct encoded hashes.
+     */
+    static long cardinalityLc(long size) {
         final long m = 1 << P2;
-        final long v = m - hashSet.size(bucket);
+        final long v = m - size;
         return linearCounting(m, v);
     }
 
@@ -295,21 +311,55 @@ public final class HyperLogLogPlusPlus implements Releasable {
                 ++zeros;
             }
         }
-        double e1 = alphaMM / inverseSum;
-        double e2 = e1 <= 5 * m ? e1 - estimateBias(e1) : e1;
+        return cardinalityHll(p, inverseSum, zeros);
+    }
+
+    /**
+     * Estimates the cardinality from the sum of {@code 2^-runLen} over all the registers of a bucket and its number of
+     * registers that are zero.
+     */
+    static long cardinalityHll(int p, double inverseSum, int zeros) {
+        final int m = 1 << p;
+        double e1 = alphaMM(p) / inverseSum;
+        double e2 = e1 <= 5 * m ? e1 - estimateBias(p, e1) : e1;
         long h;
         if (zeros != 0) {
             h = linearCounting(m, zeros);
         } else {
             h = Math.round(e2);
         }
-        if (h <= threshold()) {
+        if (h <= threshold(p)) {
             return h;
         } else {
             return Math.round(e2);
         }
     }
 
+    private static double alphaMM(int p) {
+        final int m = 1 << p;
+        final double alpha;
+        switch (p) {
+        case 4:
+            alpha = 0.673;
+            break;
+        case 5:
+            alpha = 0.697;
+            break;
+        default:
+            alpha = 0.7213 / (1 + 1.079 / m);
+            break;
+        }
+        return alpha * m * m;
+    }
+
+    /**
+     * The maximum number of encoded hashes that a bucket counts with linear counting.
+     */
+    static int linearCountingThreshold(int p) {
+        final int capacity = (1 << p) / 4; // because ints take 4 bytes
+        return (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
     void upgradeToHll(long bucket) {
         ensureCapacity(bucket + 1);
         final IntArray values = hashSet.values(bucket);
@@ -379,9 +429,9 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
 
-    private double estimateBias(double e) {
-        final double[] rawEstimateData = rawEstimateData();
-        final double[] biasData = biasData();
+    private static double estimateBias(int p, double e) {
+        final double[] rawEstimateData = rawEstimateData(p);
+        final double[] biasData = biasData(p);
 
         final double[] weights = new double[BIAS_K];
         int index = biasData.length - BIAS_K;
@@ -408,15 +458,15 @@ public final class HyperLogLogPlusPlus implements Releasable {
         return biasSum / weightSum;
     }
 
-    private double[] biasData() {
+    private static double[] biasData(int p) {
         return BIAS_DATA[p - 4];
     }
 
-    private double[] rawEstimateData() {
+    private static double[] rawEstimateData(int p) {
         return RAW_ESTIMATE_DATA[p - 4];
     }
 
-    private long threshold() {
+    private static long threshold(int p) {
         return THRESHOLDS[p - 4];
     }
 
@@ -474,7 +524,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
         Hashset(long initialBucketCount) {
             capacity = m / 4; // because ints take 4 bytes
-            threshold = (int) (capacity * MAX_LOAD_FACTOR);
+            threshold = linearCountingThreshold(p);
             mask = capacity - 1;
             sizes = bigArrays.newIntArray(initialBucketCount);
             readSpare = new BytesRef();
@@ -554,44 +604,6 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     }
 
-    public void writeTo(long bucket, StreamOutput out) throws IOException {
-        out.writeVInt(p);
-        if (algorithm.get(bucket) == LINEAR_COUNTING) {
-            out.writeBoolean(LINEAR_COUNTING);
-            try (IntArray hashes = hashSet.values(bucket)) {
-                out.writeVLong(hashes.size());
-                for (long i = 0; i < hashes.size(); ++i) {
-                    out.writeInt(hashes.get(i));
-                }
-            }
-        } else {
-            out.writeBoolean(HYPERLOGLOG);
-            for (long i = bucket << p, end = i + m; i < end; ++i) {
-                out.writeByte(runLens.get(i));
-            }
-        }
-    }
-
-    public static HyperLogLogPlusPlus readFrom(StreamInput in, BigArrays bigArrays) throws IOException {
-        final int precision = in.readVInt();
-        HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, bigArrays, 1);
-        final boolean algorithm = in.readBoolean();
-        if (algorithm == LINEAR_COUNTING) {
-            counts.algorithm.clear(0);
-            final long size = in.readVLong();
-            for (long i = 0; i < size; ++i) {
-                final int encoded = in.readInt();
-                counts.hashSet.add(0, encoded);
-            }
-        } else {
-            counts.algorithm.set(0);
-            for (int i = 0; i < counts.m; ++i) {
-                counts.runLens.set(i, in.readByte());
-            }
-        }
-        return counts;
-    }
-    
     /** looks and smells like the old openbitset. */
     static class OpenBitSet {
         LongBitSet impl = new LongBitSet(64);
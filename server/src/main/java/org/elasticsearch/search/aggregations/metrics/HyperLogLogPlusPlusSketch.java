@@ -0,0 +1,448 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A read-only copy of a single bucket of a {@link HyperLogLogPlusPlus} counter, which is what cardinality aggregations send to the
+ * coordinating node and reduce there.
+ *
+ * The counts are encoded in one of three ways:
+ * <ul>
+ *     <li>the encoded hashes, sorted, while the bucket uses linear counting,</li>
+ *     <li>the index and run length of the registers that are set, sorted by index, while few registers are set,</li>
+ *     <li>all the registers otherwise.</li>
+ * </ul>
+ * The encoding only depends on the counts so that equal sketches have the same encoding. Sketches are merged without ever
+ * expanding the sparse encodings to all the registers unless the merged sketch needs them, and they are sent over the wire with
+ * the sorted hashes and indices delta-encoded.
+ */
+public final class HyperLogLogPlusPlusSketch implements Writeable {
+
+    private static final byte LINEAR_COUNTING = 0;
+    private static final byte SPARSE = 1;
+    private static final byte DENSE = 2;
+
+    private final int p;
+    private final byte encoding;
+    // the encoded hashes in unsigned order if LINEAR_COUNTING, the index << 8 | runLen of the set registers in index order if SPARSE
+    private final int[] values;
+    // all the registers if DENSE
+    private final byte[] registers;
+
+    private HyperLogLogPlusPlusSketch(int p, byte encoding, int[] values, byte[] registers) {
+        if (p < HyperLogLogPlusPlus.MIN_PRECISION) {
+            throw new IllegalArgumentException("precision must be >= " + HyperLogLogPlusPlus.MIN_PRECISION);
+        }
+        if (p > HyperLogLogPlusPlus.MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be <= " + HyperLogLogPlusPlus.MAX_PRECISION);
+        }
+        this.p = p;
+        this.encoding = encoding;
+        this.values = values;
+        this.registers = registers;
+    }
+
+    /**
+     * Creates a sketch from the distinct encoded hashes of a bucket that uses linear counting. The array is sorted in place.
+     */
+    static HyperLogLogPlusPlusSketch linearCounting(int p, int[] hashes) {
+        sortUnsigned(hashes);
+        return new HyperLogLogPlusPlusSketch(p, LINEAR_COUNTING, hashes, null);
+    }
+
+    /**
+     * Creates a sketch from all the registers of a bucket that uses hyperloglog.
+     */
+    static HyperLogLogPlusPlusSketch hyperLogLog(int p, byte[] registers) {
+        int size = 0;
+        for (byte runLen : registers) {
+            if (runLen != 0) {
+                ++size;
+            }
+        }
+        if (isDense(p, size)) {
+            return new HyperLogLogPlusPlusSketch(p, DENSE, null, registers);
+        }
+        final int[] entries = new int[size];
+        int j = 0;
+        for (int i = 0; i < registers.length; ++i) {
+            if (registers[i] != 0) {
+                entries[j++] = entry(i, registers[i]);
+            }
+        }
+        return new HyperLogLogPlusPlusSketch(p, SPARSE, entries, null);
+    }
+
+    /**
+     * Whether it takes less memory to store all the registers than the {@code size} ones that are set.
+     */
+    private static boolean isDense(int p, long size) {
+        return size * Integer.BYTES >= 1 << p;
+    }
+
+    private static int entry(int index, int runLen) {
+        return index << 8 | runLen;
+    }
+
+    private static int entryIndex(int entry) {
+        return entry >>> 8;
+    }
+
+    private static int entryRunLen(int entry) {
+        return entry & 0xFF;
+    }
+
+    public HyperLogLogPlusPlusSketch(StreamInput in) throws IOException {
+        p = in.readVInt();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0)) {
+            encoding = in.readByte();
+            switch (encoding) {
+            case LINEAR_COUNTING: {
+                values = new int[in.readVInt()];
+                long hash = 0;
+                for (int i = 0; i < values.length; ++i) {
+                    hash += in.readVLong();
+                    values[i] = (int) hash;
+                }
+                registers = null;
+                break;
+            }
+            case SPARSE: {
+                values = new int[in.readVInt()];
+                int index = 0;
+                for (int i = 0; i < values.length; ++i) {
+                    index += in.readVInt();
+                    values[i] = entry(index, in.readByte());
+                }
+                registers = null;
+                break;
+            }
+            case DENSE:
+                values = null;
+                registers = new byte[1 << p];
+                in.readBytes(registers, 0, registers.length);
+                break;
+            default:
+                throw new IllegalStateException("unknown encoding [" + encoding + "]");
+            }
+        } else {
+            // older nodes send the hashes of linear counting or all the registers
+            final HyperLogLogPlusPlusSketch sketch;
+            if (in.readBoolean() == false) {
+                final int[] hashes = new int[Math.toIntExact(in.readVLong())];
+                for (int i = 0; i < hashes.length; ++i) {
+                    hashes[i] = in.readInt();
+                }
+                sketch = linearCounting(p, hashes);
+            } else {
+                final byte[] runLens = new byte[1 << p];
+                in.readBytes(runLens, 0, runLens.length);
+                sketch = hyperLogLog(p, runLens);
+            }
+            encoding = sketch.encoding;
+            values = sketch.values;
+            registers = sketch.registers;
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(p);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0)) {
+            out.writeByte(encoding);
+            switch (encoding) {
+            case LINEAR_COUNTING: {
+                out.writeVInt(values.length);
+                long previous = 0;
+                for (int value : values) {
+                    final long hash = Integer.toUnsignedLong(value);
+                    out.writeVLong(hash - previous);
+                    previous = hash;
+                }
+                break;
+            }
+            case SPARSE: {
+                out.writeVInt(values.length);
+                int previous = 0;
+                for (int entry : values) {
+                    out.writeVInt(entryIndex(entry) - previous);
+                    out.writeByte((byte) entryRunLen(entry));
+                    previous = entryIndex(entry);
+                }
+                break;
+            }
+            case DENSE:
+                out.writeBytes(registers);
+                break;
+            default:
+                throw new IllegalStateException("unknown encoding [" + encoding + "]");
+            }
+        } else {
+            out.writeBoolean(isLinearCounting() == false);
+            if (isLinearCounting()) {
+                out.writeVLong(values.length);
+                for (int hash : values) {
+                    out.writeInt(hash);
+                }
+            } else {
+                out.writeBytes(registers());
+            }
+        }
+    }
+
+    public int precision() {
+        return p;
+    }
+
+    boolean isLinearCounting() {
+        return encoding == LINEAR_COUNTING;
+    }
+
+    /**
+     * All the registers of a sketch that uses hyperloglog.
+     */
+    byte[] registers() {
+        assert isLinearCounting() == false;
+        if (encoding == DENSE) {
+            return registers;
+        }
+        final byte[] expanded = new byte[1 << p];
+        for (int entry : values) {
+            expanded[entryIndex(entry)] = (byte) entryRunLen(entry);
+        }
+        return expanded;
+    }
+
+    public long cardinality() {
+        if (isLinearCounting()) {
+            return HyperLogLogPlusPlus.cardinalityLc(values.length);
+        }
+        // sum registers in the same order as HyperLogLogPlusPlus so that both return the same estimate
+        double inverseSum = 0;
+        int zeros = 0;
+        for (int i = 0, j = 0, m = 1 << p; i < m; ++i) {
+            final int runLen;
+            if (encoding == DENSE) {
+                runLen = registers[i];
+            } else if (j < values.length && entryIndex(values[j]) == i) {
+                runLen = entryRunLen(values[j++]);
+            } else {
+                runLen = 0;
+            }
+            inverseSum += 1. / (1L << runLen);
+            if (runLen == 0) {
+                ++zeros;
+            }
+        }
+        return HyperLogLogPlusPlus.cardinalityHll(p, inverseSum, zeros);
+    }
+
+    /**
+     * Merges sketches of the same precision. The merged sketch uses linear counting if all the sketches do and the union of
+     * their hashes is small enough, like it would if their hashes were collected into the same {@link HyperLogLogPlusPlus} bucket.
+     */
+    public static HyperLogLogPlusPlusSketch merge(List<HyperLogLogPlusPlusSketch> sketches) {
+        final int p = sketches.get(0).p;
+        for (HyperLogLogPlusPlusSketch sketch : sketches) {
+            if (sketch.p != p) {
+                throw new IllegalArgumentException("cannot merge sketches of precisions [" + p + "] and [" + sketch.p + "]");
+            }
+        }
+        if (sketches.size() == 1) {
+            return sketches.get(0);
+        }
+
+        int[] hashes = new int[0];
+        boolean linearCounting = true;
+        final int threshold = HyperLogLogPlusPlus.linearCountingThreshold(p);
+        for (HyperLogLogPlusPlusSketch sketch : sketches) {
+            if (sketch.isLinearCounting() == false) {
+                linearCounting = false;
+                break;
+            }
+            hashes = union(hashes, sketch.values);
+            if (hashes.length > threshold) {
+                linearCounting = false;
+                break;
+            }
+        }
+        if (linearCounting) {
+            return new HyperLogLogPlusPlusSketch(p, LINEAR_COUNTING, hashes, null);
+        }
+
+        // merge the set registers until so many are set that it is cheaper to merge all registers
+        int[] entries = new int[0];
+        byte[] registers = null;
+        for (HyperLogLogPlusPlusSketch sketch : sketches) {
+            if (registers == null && sketch.encoding != DENSE) {
+                entries = maxRunLens(entries, sketch.isLinearCounting() ? toEntries(p, sketch.values) : sketch.values);
+                if (isDense(p, entries.length)) {
+                    registers = new HyperLogLogPlusPlusSketch(p, SPARSE, entries, null).registers();
+                }
+            } else {
+                if (registers == null) {
+                    registers = new HyperLogLogPlusPlusSketch(p, SPARSE, entries, null).registers();
+                }
+                sketch.collectInto(registers);
+            }
+        }
+        if (registers == null) {
+            return new HyperLogLogPlusPlusSketch(p, SPARSE, entries, null);
+        }
+        return new HyperLogLogPlusPlusSketch(p, DENSE, null, registers);
+    }
+
+    private void collectInto(byte[] merged) {
+        switch (encoding) {
+        case LINEAR_COUNTING:
+            for (int hash : values) {
+                final int index = HyperLogLogPlusPlus.decodeIndex(hash, p);
+                merged[index] = (byte) Math.max(merged[index], HyperLogLogPlusPlus.decodeRunLen(hash, p));
+            }
+            break;
+        case SPARSE:
+            for (int entry : values) {
+                final int index = entryIndex(entry);
+                merged[index] = (byte) Math.max(merged[index], entryRunLen(entry));
+            }
+            break;
+        case DENSE:
+            for (int i = 0; i < merged.length; ++i) {
+                merged[i] = (byte) Math.max(merged[i], registers[i]);
+            }
+            break;
+        default:
+            throw new IllegalStateException("unknown encoding [" + encoding + "]");
+        }
+    }
+
+    /**
+     * Returns the registers that the provided encoded hashes set, in index order.
+     */
+    private static int[] toEntries(int p, int[] hashes) {
+        final int[] entries = new int[hashes.length];
+        for (int i = 0; i < hashes.length; ++i) {
+            entries[i] = entry(HyperLogLogPlusPlus.decodeIndex(hashes[i], p), HyperLogLogPlusPlus.decodeRunLen(hashes[i], p));
+        }
+        // the run length is in the low bits so the maximum run length of an index sorts last
+        Arrays.sort(entries);
+        int size = 0;
+        for (int i = 0; i < entries.length; ++i) {
+            if (i + 1 == entries.length || entryIndex(entries[i]) != entryIndex(entries[i + 1])) {
+                entries[size++] = entries[i];
+            }
+        }
+        return Arrays.copyOf(entries, size);
+    }
+
+    /**
+     * Merges registers sorted by index, keeping the maximum run length of each index.
+     */
+    private static int[] maxRunLens(int[] a, int[] b) {
+        final int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length && j < b.length) {
+            final int cmp = Integer.compare(entryIndex(a[i]), entryIndex(b[j]));
+            if (cmp < 0) {
+                merged[size++] = a[i++];
+            } else if (cmp > 0) {
+                merged[size++] = b[j++];
+            } else {
+                merged[size++] = entryRunLen(a[i]) >= entryRunLen(b[j]) ? a[i] : b[j];
+                ++i;
+                ++j;
+            }
+        }
+        while (i < a.length) {
+            merged[size++] = a[i++];
+        }
+        while (j < b.length) {
+            merged[size++] = b[j++];
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Merges hashes sorted in unsigned order, removing duplicates.
+     */
+    private static int[] union(int[] a, int[] b) {
+        final int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length && j < b.length) {
+            final int cmp = Integer.compareUnsigned(a[i], b[j]);
+            if (cmp < 0) {
+                merged[size++] = a[i++];
+            } else if (cmp > 0) {
+                merged[size++] = b[j++];
+            } else {
+                merged[size++] = a[i];
+                ++i;
+                ++j;
+            }
+        }
+        while (i < a.length) {
+            merged[size++] = a[i++];
+        }
+        while (j < b.length) {
+            merged[size++] = b[j++];
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static void sortUnsigned(int[] values) {
+        // flipping the sign bit maps unsigned order to signed order
+        for (int i = 0; i < values.length; ++i) {
+            values[i] ^= Integer.MIN_VALUE;
+        }
+        Arrays.sort(values);
+        for (int i = 0; i < values.length; ++i) {
+            values[i] ^= Integer.MIN_VALUE;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        HyperLogLogPlusPlusSketch other = (HyperLogLogPlusPlusSketch) obj;
+        return p == other.p &&
+            encoding == other.encoding &&
+            Arrays.equals(values, other.values) &&
+            Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(p, encoding, Arrays.hashCode(values), Arrays.hashCode(registers));
+    }
+}
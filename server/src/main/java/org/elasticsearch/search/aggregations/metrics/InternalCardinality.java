@@ -21,20 +21,21 @@ package org.elasticsearch.search.aggregations.metrics;
 
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
-import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public final class InternalCardinality extends InternalNumericMetricsAggregation.SingleValue implements Cardinality {
-    private final HyperLogLogPlusPlus counts;
+    private final HyperLogLogPlusPlusSketch counts;
 
-    InternalCardinality(String name, HyperLogLogPlusPlus counts, List<PipelineAggregator> pipelineAggregators,
+    InternalCardinality(String name, HyperLogLogPlusPlusSketch counts, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) {
         super(name, pipelineAggregators, metaData);
         this.counts = counts;
@@ -46,22 +47,13 @@ public final class InternalCardinality extends InternalNumericMetricsAggregation
     public InternalCardinality(StreamInput in) throws IOException {
         super(in);
         format = in.readNamedWriteable(DocValueFormat.class);
-        if (in.readBoolean()) {
-            counts = HyperLogLogPlusPlus.readFrom(in, BigArrays.NON_RECYCLING_INSTANCE);
-        } else {
-            counts = null;
-        }
+        counts = in.readOptionalWriteable(HyperLogLogPlusPlusSketch::new);
     }
 
     @Override
     protected void doWriteTo(StreamOutput out) throws IOException {
         out.writeNamedWriteable(format);
-        if (counts != null) {
-            out.writeBoolean(true);
-            counts.writeTo(0, out);
-        } else {
-            out.writeBoolean(false);
-        }
+        out.writeOptionalWriteable(counts);
     }
 
     @Override
@@ -76,35 +68,26 @@ public final class InternalCardinality extends InternalNumericMetricsAggregation
 
     @Override
     public long getValue() {
-        return counts == null ? 0 : counts.cardinality(0);
+        return counts == null ? 0 : counts.cardinality();
     }
 
     @Override
     public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
-        InternalCardinality reduced = null;
+        final List<HyperLogLogPlusPlusSketch> sketches = new ArrayList<>(aggregations.size());
         for (InternalAggregation aggregation : aggregations) {
             final InternalCardinality cardinality = (InternalCardinality) aggregation;
             if (cardinality.counts != null) {
-                if (reduced == null) {
-                    reduced = new InternalCardinality(name, new HyperLogLogPlusPlus(cardinality.counts.precision(),
-                            BigArrays.NON_RECYCLING_INSTANCE, 1), pipelineAggregators(), getMetaData());
-                }
-                reduced.merge(cardinality);
+                sketches.add(cardinality.counts);
             }
         }
 
-        if (reduced == null) { // all empty
+        if (sketches.isEmpty()) { // all empty
             return aggregations.get(0);
         } else {
-            return reduced;
+            return new InternalCardinality(name, HyperLogLogPlusPlusSketch.merge(sketches), pipelineAggregators(), getMetaData());
         }
     }
 
-    public void merge(InternalCardinality other) {
-        assert counts != null && other != null;
-        counts.merge(0, other.counts, 0);
-    }
-
     @Override
     public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
         final long cardinality = getValue();
@@ -114,16 +97,16 @@ public final class InternalCardinality extends InternalNumericMetricsAggregation
 
     @Override
     protected int doHashCode() {
-        return counts.hashCode(0);
+        return Objects.hashCode(counts);
     }
 
     @Override
     protected boolean doEquals(Object obj) {
         InternalCardinality other = (InternalCardinality) obj;
-        return counts.equals(0, other.counts);
+        return Objects.equals(counts, other.counts);
     }
 
-    HyperLogLogPlusPlus getState() {
+    HyperLogLogPlusPlusSketch getState() {
         return counts;
     }
 }
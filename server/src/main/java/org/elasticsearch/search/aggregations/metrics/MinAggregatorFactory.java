@@ -51,4 +51,9 @@ class MinAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSource.Nu
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new MinAggregator(name, config, valuesSource, context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
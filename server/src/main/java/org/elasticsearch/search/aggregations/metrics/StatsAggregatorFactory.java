@@ -51,4 +51,9 @@ class StatsAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSource.
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new StatsAggregator(name, valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
@@ -51,4 +51,9 @@ class SumAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSource.Nu
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new SumAggregator(name, valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
@@ -50,4 +50,9 @@ class ValueCountAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSo
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new ValueCountAggregator(name, valuesSource, context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    protected boolean supportsConcurrentSlices() {
+        return valuesSupportConcurrentSlices();
+    }
 }
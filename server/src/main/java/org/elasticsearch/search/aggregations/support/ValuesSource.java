@@ -22,7 +22,6 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.IndexSearcher;
@@ -156,12 +155,11 @@ public abstract class ValuesSource {
                 @Override
                 public LongUnaryOperator globalOrdinalsMapping(LeafReaderContext context) throws IOException {
                     final IndexOrdinalsFieldData global = indexFieldData.loadGlobal((DirectoryReader)context.parent.reader());
-                    final OrdinalMap map = global.getOrdinalMap();
-                    if (map == null) {
+                    final org.apache.lucene.util.LongValues segmentToGlobalOrd = global.getGlobalOrdinalsMapping(context);
+                    if (segmentToGlobalOrd == null) {
                         // segments and global ordinals are the same
                         return LongUnaryOperator.identity();
                     }
-                    final org.apache.lucene.util.LongValues segmentToGlobalOrd = map.getGlobalOrds(context.ord);
                     return segmentToGlobalOrd::get;
                 }
             }
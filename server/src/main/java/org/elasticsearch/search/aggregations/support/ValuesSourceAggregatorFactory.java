@@ -50,6 +50,14 @@ public abstract class ValuesSourceAggregatorFactory<VS extends ValuesSource, AF
         return doCreateInternal(vs, parent, collectsFromSingleBucket, pipelineAggregators, metaData);
     }
 
+    /**
+     * Returns whether the values of this factory can be read by aggregators that collect slices of segments concurrently, see
+     * {@link #supportsConcurrentSlices()}. Scripts read documents through the source lookup of the request, which is not thread-safe.
+     */
+    protected final boolean valuesSupportConcurrentSlices() {
+        return config.script() == null;
+    }
+
     protected abstract Aggregator createUnmapped(Aggregator parent,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException;
 
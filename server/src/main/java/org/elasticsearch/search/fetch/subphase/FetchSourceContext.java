@@ -20,6 +20,7 @@
 package org.elasticsearch.search.fetch.subphase;
 
 import org.elasticsearch.common.Booleans;
+import org.elasticsearch.common.CheckedBiConsumer;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.ParsingException;
 import org.elasticsearch.common.Strings;
@@ -53,6 +54,7 @@ public class FetchSourceContext implements Writeable, ToXContentObject {
     private final String[] includes;
     private final String[] excludes;
     private Function<Map<String, ?>, Map<String, Object>> filter;
+    private CheckedBiConsumer<XContentParser, XContentBuilder, IOException> streamingFilter;
 
     public FetchSourceContext(boolean fetchSource, String[] includes, String[] excludes) {
         this.fetchSource = fetchSource;
@@ -234,4 +236,15 @@ public class FetchSourceContext implements Writeable, ToXContentObject {
         }
         return filter;
     }
+
+    /**
+     * Returns a filter that reads the source from a parser and writes the filtered source to a builder.
+     * @see XContentMapValues#streamingFilter(String[], String[])
+     */
+    public CheckedBiConsumer<XContentParser, XContentBuilder, IOException> getStreamingFilter() {
+        if (streamingFilter == null) {
+            streamingFilter = XContentMapValues.streamingFilter(includes, excludes);
+        }
+        return streamingFilter;
+    }
 }
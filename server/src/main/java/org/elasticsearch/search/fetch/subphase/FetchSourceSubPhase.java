@@ -22,7 +22,11 @@ package org.elasticsearch.search.fetch.subphase;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.fetch.FetchSubPhase;
 import org.elasticsearch.search.internal.SearchContext;
@@ -51,6 +55,11 @@ public final class FetchSourceSubPhase implements FetchSubPhase {
                 throw new IllegalArgumentException("unable to fetch fields from _source field: _source is disabled in the mappings " +
                         "for index [" + context.indexShard().shardId().getIndexName() + "]");
             }
+            if (source.source() == null) {
+                // the source hasn't been parsed yet, so filter it while parsing it rather than going through a map
+                hitContext.hit().sourceRef(filterWhileParsing(source.internalSourceRef(), fetchSourceContext));
+                return;
+            }
         }
 
         Object value = source.filter(fetchSourceContext);
@@ -79,6 +88,18 @@ public final class FetchSourceSubPhase implements FetchSubPhase {
         }
     }
 
+    private static BytesReference filterWhileParsing(BytesReference source, FetchSourceContext fetchSourceContext) {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source)) {
+            BytesStreamOutput streamOutput = new BytesStreamOutput(Math.min(1024, source.length()));
+            XContentBuilder builder = new XContentBuilder(parser.contentType().xContent(), streamOutput);
+            fetchSourceContext.getStreamingFilter().accept(parser, builder);
+            return BytesReference.bytes(builder);
+        } catch (IOException e) {
+            throw new ElasticsearchException("Error filtering source", e);
+        }
+    }
+
     private Map<String, Object> getNestedSource(Map<String, Object> sourceAsMap, HitContext hitContext) {
         for (SearchHit.NestedIdentity o = hitContext.hit().getNestedIdentity(); o != null; o = o.getChild()) {
             sourceAsMap = (Map<String, Object>) sourceAsMap.get(o.getField().string());
@@ -35,7 +35,9 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.search.dfs.AggregatedDfs;
 import org.elasticsearch.search.profile.Timer;
@@ -47,6 +49,10 @@ import org.elasticsearch.search.profile.query.QueryTimingType;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Context-aware extension of {@link IndexSearcher}.
@@ -177,6 +183,86 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
         super.search(leaves, cancellableWeight, collector);
     }
 
+    /**
+     * Searches the given slices of the leaves of this searcher, each with its own collector. The first slice is collected by the
+     * calling thread and the other ones are submitted to the given executor. Slices that the executor rejects or did not start yet
+     * once the calling thread is done with the first slice are collected by the calling thread too. If collecting a slice fails, the
+     * slices that did not start are skipped and the failure is rethrown once all slices that started are done.
+     */
+    public void search(Query query, List<List<LeafReaderContext>> slices, List<Collector> collectors,
+                       Executor executor) throws IOException {
+        assert slices.size() == collectors.size() : "got [" + slices.size() + "] slices but [" + collectors.size() + "] collectors";
+        assert collectors.stream().map(Collector::scoreMode).distinct().count() == 1 : "slices must be collected with the same score mode";
+        final Weight weight = createWeight(rewrite(query), collectors.get(0).scoreMode(), 1);
+        final SliceCollection[] collections = new SliceCollection[slices.size()];
+        final CountDownLatch latch = new CountDownLatch(slices.size());
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        for (int i = 0; i < collections.length; i++) {
+            collections[i] = new SliceCollection(slices.get(i), weight, collectors.get(i), latch, failure);
+        }
+        for (int i = 1; i < collections.length; i++) {
+            try {
+                executor.execute(collections[i]);
+            } catch (EsRejectedExecutionException e) {
+                // collected by this thread below
+            }
+        }
+        for (SliceCollection collection : collections) {
+            collection.run();
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ThreadInterruptedException(e);
+        }
+        final Exception e = failure.get();
+        if (e != null) {
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private final class SliceCollection implements Runnable {
+
+        private final List<LeafReaderContext> leaves;
+        private final Weight weight;
+        private final Collector collector;
+        private final CountDownLatch latch;
+        private final AtomicReference<Exception> failure;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private SliceCollection(List<LeafReaderContext> leaves, Weight weight, Collector collector,
+                                CountDownLatch latch, AtomicReference<Exception> failure) {
+            this.leaves = leaves;
+            this.weight = weight;
+            this.collector = collector;
+            this.latch = latch;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true) == false) {
+                // already collected by the calling thread or by the executor
+                return;
+            }
+            try {
+                if (failure.get() == null) {
+                    search(leaves, weight, collector);
+                }
+            } catch (Exception e) {
+                if (failure.compareAndSet(null, e) == false) {
+                    failure.get().addSuppressed(e);
+                }
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
     @Override
     public Explanation explain(Query query, int doc) throws IOException {
         if (aggregatedDfs != null) {
@@ -52,6 +52,7 @@ import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.profile.ProfileShardResult;
 import org.elasticsearch.search.profile.SearchProfileShardResults;
+import org.elasticsearch.search.profile.query.CollectorResult;
 import org.elasticsearch.search.profile.query.InternalProfileCollector;
 import org.elasticsearch.search.rescore.RescorePhase;
 import org.elasticsearch.search.sort.SortAndFormats;
@@ -59,7 +60,11 @@ import org.elasticsearch.search.suggest.SuggestPhase;
 import org.elasticsearch.tasks.TaskCancelledException;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import static org.elasticsearch.search.query.QueryCollectorContext.createCancellableCollectorContext;
@@ -199,9 +204,13 @@ public class QueryPhase implements SearchPhase {
                 // this collector can filter documents during the collection
                 hasFilterCollector = true;
             }
+            final QueryCollectorContext multiCollectorContext;
             if (searchContext.queryCollectors().isEmpty() == false) {
                 // plug in additional collectors, like aggregations
-                collectors.add(createMultiCollectorContext(searchContext.queryCollectors().values()));
+                multiCollectorContext = createMultiCollectorContext(searchContext.queryCollectors().values());
+                collectors.add(multiCollectorContext);
+            } else {
+                multiCollectorContext = null;
             }
             if (searchContext.minimumScore() != null) {
                 // apply the minimum score after multi collector so we filter aggs as well
@@ -264,17 +273,46 @@ public class QueryPhase implements SearchPhase {
             // add the top docs collector, the first collector context in the chain
             collectors.addFirst(topDocsFactory);
 
+            final List<List<LeafReaderContext>> slices = concurrentSlices(searchContext, searcher, topDocsFactory);
+            // the collector contexts of each slice, the first slice is collected with the collector contexts of the whole shard
+            final List<List<QueryCollectorContext>> sliceContexts = new ArrayList<>();
+            sliceContexts.add(collectors);
+            for (int i = 1; slices != null && i < slices.size(); i++) {
+                sliceContexts.add(createSliceContexts(searchContext, collectors, topDocsFactory, multiCollectorContext));
+            }
+
+            final List<Collector> sliceCollectors = new ArrayList<>(sliceContexts.size());
             final Collector queryCollector;
             if (doProfile) {
-                InternalProfileCollector profileCollector = QueryCollectorContext.createQueryCollectorWithProfiler(collectors);
+                final List<InternalProfileCollector> profileCollectors = new ArrayList<>(sliceContexts.size());
+                for (List<QueryCollectorContext> contexts : sliceContexts) {
+                    profileCollectors.add(QueryCollectorContext.createQueryCollectorWithProfiler(contexts));
+                }
+                sliceCollectors.addAll(profileCollectors);
+                final InternalProfileCollector profileCollector;
+                if (slices == null) {
+                    profileCollector = profileCollectors.get(0);
+                } else {
+                    profileCollector = new InternalProfileCollector(new SlicesCollector(slices, profileCollectors),
+                        CollectorResult.REASON_SEARCH_SLICES, profileCollectors);
+                }
                 searchContext.getProfilers().getCurrentQueryProfiler().setCollector(profileCollector);
                 queryCollector = profileCollector;
             } else {
-               queryCollector = QueryCollectorContext.createQueryCollector(collectors);
+                for (List<QueryCollectorContext> contexts : sliceContexts) {
+                    sliceCollectors.add(QueryCollectorContext.createQueryCollector(contexts));
+                }
+                queryCollector = sliceCollectors.get(0);
             }
 
             try {
-                searcher.search(query, queryCollector);
+                if (slices == null || doProfile) {
+                    // profiled requests collect their slices one after the other, see SlicesCollector
+                    searcher.search(query, queryCollector);
+                } else {
+                    final Executor executor = searchContext.indexShard().getThreadPool().executor(ThreadPool.Names.SEARCH_SLICE);
+                    ((ContextIndexSearcher) searcher).search(query, slices, sliceCollectors, executor);
+                }
             } catch (EarlyTerminatingCollector.EarlyTerminationException e) {
                 queryResult.terminatedEarly(true);
             } catch (TimeExceededException e) {
@@ -310,6 +348,89 @@ public class QueryPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Returns the slices of leaves that can be collected concurrently for the provided <code>searchContext</code>, or
+     * <code>null</code> if all leaves must be collected by a single collector.
+     */
+    static List<List<LeafReaderContext>> concurrentSlices(SearchContext searchContext, IndexSearcher searcher,
+                                                          TopDocsCollectorContext topDocsFactory) {
+        final int maxSlices = searchContext.indexShard().indexSettings().getMaxConcurrentSearchSlices();
+        final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        if (maxSlices <= 1 || leaves.size() <= 1 || searcher instanceof ContextIndexSearcher == false) {
+            return null;
+        }
+        if (searchContext.scrollContext() != null || searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            // these requests rely on collecting documents in index order
+            return null;
+        }
+        if (searchContext.queryCollectors().keySet().stream().anyMatch(key -> key != AggregationPhase.class)) {
+            // we only know how to create the aggregation collectors of each slice
+            return null;
+        }
+        if (searchContext.aggregations() != null && searchContext.aggregations().factories().supportsConcurrentSlices() == false) {
+            // some aggregations, like terms and significant_terms, apply shard-level sizes or statistics that a partial reduce of
+            // the results of each slice can't reproduce
+            return null;
+        }
+        if (topDocsFactory.createSliceContext() == null) {
+            return null;
+        }
+        return sliceLeaves(leaves, maxSlices);
+    }
+
+    /**
+     * Splits the provided <code>leaves</code> into at most <code>maxSlices</code> slices of consecutive leaves with roughly the same
+     * number of documents.
+     */
+    static List<List<LeafReaderContext>> sliceLeaves(List<LeafReaderContext> leaves, int maxSlices) {
+        final int numSlices = Math.min(maxSlices, leaves.size());
+        long remainingDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            remainingDocs += leaf.reader().maxDoc();
+        }
+        final List<List<LeafReaderContext>> slices = new ArrayList<>(numSlices);
+        int next = 0;
+        for (int i = 0; i < numSlices; i++) {
+            final int remainingSlices = numSlices - i;
+            final long targetDocs = remainingDocs / remainingSlices;
+            final List<LeafReaderContext> slice = new ArrayList<>();
+            long sliceDocs = 0;
+            // the last slice takes all remaining leaves, the other ones leave at least one leaf to each of the next slices
+            while (next < leaves.size() && (slice.isEmpty() || remainingSlices == 1
+                    || (sliceDocs < targetDocs && leaves.size() - next >= remainingSlices))) {
+                final LeafReaderContext leaf = leaves.get(next++);
+                slice.add(leaf);
+                sliceDocs += leaf.reader().maxDoc();
+            }
+            remainingDocs -= sliceDocs;
+            slices.add(slice);
+        }
+        return slices;
+    }
+
+    /**
+     * Creates the collector contexts of an additional slice of leaves from the collector contexts of the first slice. Top docs and
+     * aggregations are collected by new collectors for each slice while the other collectors of the chain only filter documents.
+     */
+    private static List<QueryCollectorContext> createSliceContexts(SearchContext searchContext, List<QueryCollectorContext> collectors,
+                                                                   TopDocsCollectorContext topDocsFactory,
+                                                                   QueryCollectorContext multiCollectorContext) {
+        final List<QueryCollectorContext> sliceCollectors = new ArrayList<>(collectors.size());
+        for (QueryCollectorContext ctx : collectors) {
+            if (ctx == topDocsFactory) {
+                sliceCollectors.add(topDocsFactory.createSliceContext());
+            } else if (ctx == multiCollectorContext) {
+                final Collector aggsCollector = AggregationPhase.createSliceCollector(searchContext);
+                if (aggsCollector != null) {
+                    sliceCollectors.add(createMultiCollectorContext(Collections.singletonList(aggsCollector)));
+                }
+            } else {
+                sliceCollectors.add(ctx);
+            }
+        }
+        return sliceCollectors;
+    }
+
     /**
      * Returns true if the provided <code>query</code> returns docs in index order (internal doc ids).
      * @param query The query to execute
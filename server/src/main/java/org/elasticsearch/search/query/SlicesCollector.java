@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.ScoreMode;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Collector that collects each slice of the leaves of a reader with the collector of that slice, like when the slices are
+ * collected concurrently. Profiled requests collect their slices with this collector on a single thread because query and
+ * collector timings are not thread-safe.
+ */
+final class SlicesCollector implements Collector {
+    // the collector of each leaf, by leaf ord
+    private final Collector[] leafCollectors;
+    private final ScoreMode scoreMode;
+
+    /**
+     * Constructor
+     * @param slices the slices of consecutive leaves that cover all leaves of the reader
+     * @param collectors the collector of each slice
+     */
+    SlicesCollector(List<List<LeafReaderContext>> slices, List<? extends Collector> collectors) {
+        assert slices.size() == collectors.size() : "got [" + slices.size() + "] slices but [" + collectors.size() + "] collectors";
+        this.leafCollectors = new Collector[slices.stream().mapToInt(List::size).sum()];
+        for (int i = 0; i < slices.size(); i++) {
+            for (LeafReaderContext leaf : slices.get(i)) {
+                leafCollectors[leaf.ord] = collectors.get(i);
+            }
+        }
+        this.scoreMode = collectors.get(0).scoreMode();
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        return leafCollectors[context.ord].getLeafCollector(context);
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return scoreMode;
+    }
+}
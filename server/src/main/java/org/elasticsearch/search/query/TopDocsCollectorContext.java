@@ -35,6 +35,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.TotalHits;
@@ -53,6 +54,8 @@ import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Supplier;
 
@@ -84,9 +87,19 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         return false;
     }
 
+    /**
+     * Returns a context that creates the top docs collector of an additional slice of the leaves of the reader, or {@code null} if
+     * this context can only collect all leaves with a single collector. The hits of all slices are merged by {@link #postProcess}.
+     */
+    QueryCollectorContext createSliceContext() {
+        return null;
+    }
+
     static class EmptyTopDocsCollectorContext extends TopDocsCollectorContext {
         private final Collector collector;
         private final Supplier<TotalHits> hitCountSupplier;
+        // the hit count collectors of all slices if hits are counted by collecting them
+        private final List<TotalHitCountCollector> hitCountCollectors = new ArrayList<>();
 
         /**
          * Ctr
@@ -104,7 +117,9 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                 int hitCount =  hasFilterCollector ? -1 : shortcutTotalHitCount(reader, query);
                 if (hitCount == -1) {
                     this.collector = hitCountCollector;
-                    this.hitCountSupplier = () -> new TotalHits(hitCountCollector.getTotalHits(), TotalHits.Relation.EQUAL_TO);
+                    this.hitCountCollectors.add(hitCountCollector);
+                    this.hitCountSupplier = () -> new TotalHits(
+                        hitCountCollectors.stream().mapToLong(TotalHitCountCollector::getTotalHits).sum(), TotalHits.Relation.EQUAL_TO);
                 } else {
                     this.collector = new EarlyTerminatingCollector(hitCountCollector, 0, false);
                     this.hitCountSupplier = () -> new TotalHits(hitCount, TotalHits.Relation.EQUAL_TO);
@@ -121,6 +136,23 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             return collector;
         }
 
+        @Override
+        QueryCollectorContext createSliceContext() {
+            return new QueryCollectorContext(REASON_SEARCH_COUNT) {
+                @Override
+                Collector create(Collector in) {
+                    assert in == null;
+                    if (hitCountCollectors.isEmpty()) {
+                        // the hit count is known upfront or not tracked
+                        return new EarlyTerminatingCollector(new TotalHitCountCollector(), 0, false);
+                    }
+                    final TotalHitCountCollector hitCountCollector = new TotalHitCountCollector();
+                    hitCountCollectors.add(hitCountCollector);
+                    return hitCountCollector;
+                }
+            };
+        }
+
         @Override
         void postProcess(QuerySearchResult result) {
             final TotalHits totalHitCount = hitCountSupplier.get();
@@ -185,10 +217,16 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         }
 
         private final @Nullable SortAndFormats sortAndFormats;
+        private final @Nullable ScoreDoc searchAfter;
+        private final int hitCountThreshold;
+        private final boolean trackMaxScore;
         private final Collector collector;
         private final Supplier<TotalHits> totalHitsSupplier;
         private final Supplier<TopDocs> topDocsSupplier;
         private final Supplier<Float> maxScoreSupplier;
+        // the collectors of all slices, starting with the ones created by this context
+        private final List<TopDocsCollector<?>> topDocsCollectors = new ArrayList<>();
+        private final List<MaxScoreCollector> maxScoreCollectors = new ArrayList<>();
 
         /**
          * Ctr
@@ -211,17 +249,20 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                                               boolean hasFilterCollector) throws IOException {
             super(REASON_SEARCH_TOP_HITS, numHits);
             this.sortAndFormats = sortAndFormats;
+            this.searchAfter = searchAfter;
+            this.trackMaxScore = trackMaxScore;
 
             // implicit total hit counts are valid only when there is no filter collector in the chain
             final int hitCount = hasFilterCollector ? -1 : shortcutTotalHitCount(reader, query);
             final TopDocsCollector<?> topDocsCollector;
+            topDocsSupplier = new CachedSupplier<>(this::mergeTopDocs);
             if (hitCount == -1 && trackTotalHits) {
-                topDocsCollector = createCollector(sortAndFormats, numHits, searchAfter, Integer.MAX_VALUE);
-                topDocsSupplier = new CachedSupplier<>(topDocsCollector::topDocs);
+                hitCountThreshold = Integer.MAX_VALUE;
+                topDocsCollector = createCollector(sortAndFormats, numHits, searchAfter, hitCountThreshold);
                 totalHitsSupplier = () -> topDocsSupplier.get().totalHits;
             } else {
-                topDocsCollector = createCollector(sortAndFormats, numHits, searchAfter, 1); // don't compute hit counts via the collector
-                topDocsSupplier = new CachedSupplier<>(topDocsCollector::topDocs);
+                hitCountThreshold = 1; // don't compute hit counts via the collector
+                topDocsCollector = createCollector(sortAndFormats, numHits, searchAfter, hitCountThreshold);
                 if (hitCount == -1) {
                     assert trackTotalHits == false;
                     totalHitsSupplier = () -> new TotalHits(0, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
@@ -241,10 +282,21 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                 };
             } else if (trackMaxScore) {
                 maxScoreCollector = new MaxScoreCollector();
-                maxScoreSupplier = maxScoreCollector::getMaxScore;
+                maxScoreCollectors.add(maxScoreCollector);
+                maxScoreSupplier = () -> {
+                    float maxScore = Float.NaN;
+                    for (MaxScoreCollector sliceCollector : maxScoreCollectors) {
+                        final float sliceMaxScore = sliceCollector.getMaxScore();
+                        if (Float.isNaN(maxScore) || sliceMaxScore > maxScore) {
+                            maxScore = sliceMaxScore;
+                        }
+                    }
+                    return maxScore;
+                };
             } else {
                 maxScoreSupplier = () -> Float.NaN;
             }
+            this.topDocsCollectors.add(topDocsCollector);
             this.collector = MultiCollector.wrap(topDocsCollector, maxScoreCollector);
         }
 
@@ -254,6 +306,53 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             return collector;
         }
 
+        @Override
+        QueryCollectorContext createSliceContext() {
+            return new QueryCollectorContext(REASON_SEARCH_TOP_HITS) {
+                @Override
+                Collector create(Collector in) {
+                    assert in == null;
+                    final TopDocsCollector<?> topDocsCollector = createCollector(sortAndFormats, numHits, searchAfter, hitCountThreshold);
+                    topDocsCollectors.add(topDocsCollector);
+                    MaxScoreCollector maxScoreCollector = null;
+                    if (maxScoreCollectors.isEmpty() == false) {
+                        maxScoreCollector = new MaxScoreCollector();
+                        maxScoreCollectors.add(maxScoreCollector);
+                    }
+                    return MultiCollector.wrap(topDocsCollector, maxScoreCollector);
+                }
+            };
+        }
+
+        /**
+         * Merges the top docs of all slices. Slices hold consecutive leaves, so ties are broken in index order like when all leaves
+         * are collected by a single collector.
+         */
+        private TopDocs mergeTopDocs() {
+            if (topDocsCollectors.size() == 1) {
+                return topDocsCollectors.get(0).topDocs();
+            }
+            final TopDocs merged;
+            if (sortAndFormats == null) {
+                final TopDocs[] slices = new TopDocs[topDocsCollectors.size()];
+                for (int i = 0; i < slices.length; i++) {
+                    slices[i] = topDocsCollectors.get(i).topDocs();
+                }
+                merged = TopDocs.merge(0, numHits, slices, true);
+            } else {
+                final TopFieldDocs[] slices = new TopFieldDocs[topDocsCollectors.size()];
+                for (int i = 0; i < slices.length; i++) {
+                    slices[i] = (TopFieldDocs) topDocsCollectors.get(i).topDocs();
+                }
+                merged = TopDocs.merge(sortAndFormats.sort, 0, numHits, slices, true);
+            }
+            // the slice index is only used to break ties, shard indices are set by the coordinating node
+            for (ScoreDoc scoreDoc : merged.scoreDocs) {
+                scoreDoc.shardIndex = -1;
+            }
+            return merged;
+        }
+
         @Override
         void postProcess(QuerySearchResult result) throws IOException {
             final TopDocs topDocs = topDocsSupplier.get();
@@ -281,6 +380,12 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             this.numberOfShards = numberOfShards;
         }
 
+        @Override
+        QueryCollectorContext createSliceContext() {
+            // scrolls collect all leaves at once so that the last emitted doc of each round is known
+            return null;
+        }
+
         @Override
         void postProcess(QuerySearchResult result) throws IOException {
             super.postProcess(result);
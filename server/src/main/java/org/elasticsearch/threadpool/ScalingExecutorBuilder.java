@@ -19,6 +19,8 @@
 
 package org.elasticsearch.threadpool;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
@@ -38,9 +40,13 @@ import java.util.concurrent.TimeUnit;
  */
 public final class ScalingExecutorBuilder extends ExecutorBuilder<ScalingExecutorBuilder.ScalingExecutorSettings> {
 
+    private static final Logger logger = LogManager.getLogger(ScalingExecutorBuilder.class);
+
     private final Setting<Integer> coreSetting;
     private final Setting<Integer> maxSetting;
     private final Setting<TimeValue> keepAliveSetting;
+    private final Setting<Boolean> virtualThreadsSetting;
+    private final Setting<Integer> virtualMaxSetting;
 
     /**
      * Construct a scaling executor builder; the settings will have the
@@ -68,16 +74,50 @@ public final class ScalingExecutorBuilder extends ExecutorBuilder<ScalingExecuto
      * @param prefix    the prefix for the settings keys
      */
     public ScalingExecutorBuilder(final String name, final int core, final int max, final TimeValue keepAlive, final String prefix) {
+        this(name, core, max, keepAlive, prefix, -1);
+    }
+
+    /**
+     * Construct a scaling executor builder for tasks that mostly block on I/O; the settings will have the key prefix "thread_pool."
+     * followed by the executor name. If the setting "virtual_threads" is enabled and the JVM supports virtual threads, the executor
+     * runs its tasks on virtual threads, which are cheap to block, and may use up to "virtual_max" of them rather than "max" platform
+     * threads. Otherwise the executor is a regular scaling executor.
+     *
+     * @param name       the name of the executor
+     * @param core       the minimum number of threads in the pool
+     * @param max        the maximum number of platform threads in the pool
+     * @param keepAlive  the time that spare threads above {@code core}
+     *                   threads will be kept alive
+     * @param virtualMax the maximum number of virtual threads in the pool
+     */
+    public ScalingExecutorBuilder(final String name, final int core, final int max, final TimeValue keepAlive, final int virtualMax) {
+        this(name, core, max, keepAlive, "thread_pool." + name, virtualMax);
+    }
+
+    private ScalingExecutorBuilder(final String name, final int core, final int max, final TimeValue keepAlive, final String prefix,
+                                   final int virtualMax) {
         super(name);
         this.coreSetting =
             Setting.intSetting(settingsKey(prefix, "core"), core, Setting.Property.NodeScope);
         this.maxSetting = Setting.intSetting(settingsKey(prefix, "max"), max, Setting.Property.NodeScope);
         this.keepAliveSetting =
             Setting.timeSetting(settingsKey(prefix, "keep_alive"), keepAlive, Setting.Property.NodeScope);
+        if (virtualMax > 0) {
+            this.virtualThreadsSetting =
+                Setting.boolSetting(settingsKey(prefix, "virtual_threads"), false, Setting.Property.NodeScope);
+            this.virtualMaxSetting =
+                Setting.intSetting(settingsKey(prefix, "virtual_max"), virtualMax, 1, Setting.Property.NodeScope);
+        } else {
+            this.virtualThreadsSetting = null;
+            this.virtualMaxSetting = null;
+        }
     }
 
     @Override
     public List<Setting<?>> getRegisteredSettings() {
+        if (virtualThreadsSetting != null) {
+            return Arrays.asList(coreSetting, maxSetting, keepAliveSetting, virtualThreadsSetting, virtualMaxSetting);
+        }
         return Arrays.asList(coreSetting, maxSetting, keepAliveSetting);
     }
 
@@ -87,15 +127,30 @@ public final class ScalingExecutorBuilder extends ExecutorBuilder<ScalingExecuto
         final int coreThreads = coreSetting.get(settings);
         final int maxThreads = maxSetting.get(settings);
         final TimeValue keepAlive = keepAliveSetting.get(settings);
-        return new ScalingExecutorSettings(nodeName, coreThreads, maxThreads, keepAlive);
+        final boolean virtualThreads = virtualThreadsSetting != null && virtualThreadsSetting.get(settings);
+        final int virtualMaxThreads = virtualMaxSetting != null ? virtualMaxSetting.get(settings) : -1;
+        return new ScalingExecutorSettings(nodeName, coreThreads, maxThreads, keepAlive, virtualThreads, virtualMaxThreads);
     }
 
     ThreadPool.ExecutorHolder build(final ScalingExecutorSettings settings, final ThreadContext threadContext) {
         TimeValue keepAlive = settings.keepAlive;
         int core = settings.core;
         int max = settings.max;
+        final String threadName = EsExecutors.threadName(settings.nodeName, name());
+        ThreadFactory threadFactory = null;
+        if (settings.virtualThreads) {
+            threadFactory = EsExecutors.virtualThreadFactory(threadName);
+            if (threadFactory == null) {
+                logger.warn("[{}] is enabled but this JVM does not support virtual threads, thread pool [{}] uses platform threads",
+                    virtualThreadsSetting.getKey(), name());
+            } else {
+                max = Math.max(core, settings.virtualMax);
+            }
+        }
+        if (threadFactory == null) {
+            threadFactory = EsExecutors.daemonThreadFactory(threadName);
+        }
         final ThreadPool.Info info = new ThreadPool.Info(name(), ThreadPool.ThreadPoolType.SCALING, core, max, keepAlive, null);
-        final ThreadFactory threadFactory = EsExecutors.daemonThreadFactory(EsExecutors.threadName(settings.nodeName, name()));
         final ExecutorService executor =
             EsExecutors.newScaling(
                     settings.nodeName + "/" + name(),
@@ -124,12 +179,17 @@ public final class ScalingExecutorBuilder extends ExecutorBuilder<ScalingExecuto
         private final int core;
         private final int max;
         private final TimeValue keepAlive;
+        private final boolean virtualThreads;
+        private final int virtualMax;
 
-        ScalingExecutorSettings(final String nodeName, final int core, final int max, final TimeValue keepAlive) {
+        ScalingExecutorSettings(final String nodeName, final int core, final int max, final TimeValue keepAlive,
+                                final boolean virtualThreads, final int virtualMax) {
             super(nodeName);
             this.core = core;
             this.max = max;
             this.keepAlive = keepAlive;
+            this.virtualThreads = virtualThreads;
+            this.virtualMax = virtualMax;
         }
     }
 
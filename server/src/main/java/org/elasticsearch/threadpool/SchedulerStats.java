@@ -0,0 +1,147 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.threadpool;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Statistics about the commands scheduled on the {@link ThreadPool}: how many are pending and how late they ran compared to the delay
+ * they were scheduled with.
+ */
+public class SchedulerStats implements Writeable, ToXContentFragment {
+
+    private final String type;
+    private final long pending;
+    private final long completed;
+    private final long totalLatenessNanos;
+    private final long maxLatenessNanos;
+
+    public SchedulerStats(String type, long pending, long completed, long totalLatenessNanos, long maxLatenessNanos) {
+        this.type = type;
+        this.pending = pending;
+        this.completed = completed;
+        this.totalLatenessNanos = totalLatenessNanos;
+        this.maxLatenessNanos = maxLatenessNanos;
+    }
+
+    public SchedulerStats(StreamInput in) throws IOException {
+        type = in.readString();
+        pending = in.readVLong();
+        completed = in.readVLong();
+        totalLatenessNanos = in.readVLong();
+        maxLatenessNanos = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(type);
+        out.writeVLong(pending);
+        out.writeVLong(completed);
+        out.writeVLong(totalLatenessNanos);
+        out.writeVLong(maxLatenessNanos);
+    }
+
+    /**
+     * The type of the scheduler, see {@link ThreadPool#SCHEDULER_TYPE_SETTING}.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * The number of scheduled commands that did not run yet and were not cancelled.
+     */
+    public long getPending() {
+        return pending;
+    }
+
+    /**
+     * The number of scheduled commands that ran.
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * The sum of the time between the moment each command was due and the moment it actually ran.
+     */
+    public TimeValue getTotalLateness() {
+        return TimeValue.timeValueNanos(totalLatenessNanos);
+    }
+
+    /**
+     * The longest time a command ran after it was due.
+     */
+    public TimeValue getMaxLateness() {
+        return TimeValue.timeValueNanos(maxLatenessNanos);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.SCHEDULER);
+        builder.field(Fields.TYPE, type);
+        builder.field(Fields.PENDING, pending);
+        builder.field(Fields.COMPLETED, completed);
+        builder.humanReadableField(Fields.TOTAL_LATENESS_IN_MILLIS, Fields.TOTAL_LATENESS, getTotalLateness());
+        builder.humanReadableField(Fields.MAX_LATENESS_IN_MILLIS, Fields.MAX_LATENESS, getMaxLateness());
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final String SCHEDULER = "scheduler";
+        static final String TYPE = "type";
+        static final String PENDING = "pending";
+        static final String COMPLETED = "completed";
+        static final String TOTAL_LATENESS = "total_lateness";
+        static final String TOTAL_LATENESS_IN_MILLIS = "total_lateness_in_millis";
+        static final String MAX_LATENESS = "max_lateness";
+        static final String MAX_LATENESS_IN_MILLIS = "max_lateness_in_millis";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SchedulerStats that = (SchedulerStats) o;
+        return pending == that.pending &&
+            completed == that.completed &&
+            totalLatenessNanos == that.totalLatenessNanos &&
+            maxLatenessNanos == that.maxLatenessNanos &&
+            Objects.equals(type, that.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, pending, completed, totalLatenessNanos, maxLatenessNanos);
+    }
+}
@@ -27,6 +27,7 @@ import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.SizeValue;
@@ -57,6 +58,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.unmodifiableMap;
@@ -72,6 +74,7 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         public static final String WRITE = "write";
         public static final String SEARCH = "search";
         public static final String SEARCH_THROTTLED = "search_throttled";
+        public static final String SEARCH_SLICE = "search_slice";
         public static final String MANAGEMENT = "management";
         public static final String FLUSH = "flush";
         public static final String REFRESH = "refresh";
@@ -137,6 +140,7 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         map.put(Names.FETCH_SHARD_STARTED, ThreadPoolType.SCALING);
         map.put(Names.FETCH_SHARD_STORE, ThreadPoolType.SCALING);
         map.put(Names.SEARCH_THROTTLED, ThreadPoolType.FIXED_AUTO_QUEUE_SIZE);
+        map.put(Names.SEARCH_SLICE, ThreadPoolType.FIXED);
         THREAD_POOL_TYPES = Collections.unmodifiableMap(map);
     }
 
@@ -161,6 +165,37 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
     public static Setting<TimeValue> ESTIMATED_TIME_INTERVAL_SETTING =
         Setting.timeSetting("thread_pool.estimated_time_interval", TimeValue.timeValueMillis(200), Setting.Property.NodeScope);
 
+    static final String HEAP_SCHEDULER = "heap";
+    static final String TIMER_WHEEL_SCHEDULER = "timer_wheel";
+
+    /**
+     * The implementation of the scheduler behind {@link #schedule(TimeValue, String, Runnable)}: either {@code heap}, a scheduled
+     * thread pool executor whose queue is a heap, or {@code timer_wheel}, a {@link TimerWheel} that adds and cancels commands in
+     * constant time but runs them up to {@link #SCHEDULER_TICK_SETTING} after they are due.
+     */
+    public static final Setting<String> SCHEDULER_TYPE_SETTING =
+        new Setting<>("thread_pool.scheduler.type", HEAP_SCHEDULER, value -> {
+            if (HEAP_SCHEDULER.equals(value) || TIMER_WHEEL_SCHEDULER.equals(value)) {
+                return value;
+            }
+            throw new IllegalArgumentException("unknown scheduler type [" + value + "], must be one of [" + HEAP_SCHEDULER + ", "
+                + TIMER_WHEEL_SCHEDULER + "]");
+        }, Setting.Property.NodeScope);
+
+    /**
+     * The duration of a tick of the timer wheel, if the scheduler is a timer wheel.
+     */
+    public static final Setting<TimeValue> SCHEDULER_TICK_SETTING = Setting.timeSetting("thread_pool.scheduler.tick",
+        TimeValue.timeValueMillis(10), TimeValue.timeValueMillis(1), Setting.Property.NodeScope);
+
+    // enough for the most common timeouts to expire within a single revolution of the wheel with the default tick of 10ms
+    static final int TICKS_PER_WHEEL = 512;
+
+    @Nullable
+    private final TimerWheel timerWheel;
+    private final MeanMetric schedulerLateness = new MeanMetric();
+    private final AtomicLong maxSchedulerLateness = new AtomicLong();
+
     public ThreadPool(final Settings settings, final ExecutorBuilder<?>... customBuilders) {
         assert Node.NODE_NAME_SETTING.exists(settings);
 
@@ -169,7 +204,9 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         final int halfProcMaxAt5 = halfNumberOfProcessorsMaxFive(availableProcessors);
         final int halfProcMaxAt10 = halfNumberOfProcessorsMaxTen(availableProcessors);
         final int genericThreadPoolMax = boundedBy(4 * availableProcessors, 128, 512);
-        builders.put(Names.GENERIC, new ScalingExecutorBuilder(Names.GENERIC, 4, genericThreadPoolMax, TimeValue.timeValueSeconds(30)));
+        // the generic and snapshot thread pools mostly block on network and disk I/O, they may run their tasks on virtual threads
+        builders.put(Names.GENERIC,
+            new ScalingExecutorBuilder(Names.GENERIC, 4, genericThreadPoolMax, TimeValue.timeValueSeconds(30), 1024));
         builders.put(Names.WRITE, new FixedExecutorBuilder(settings, Names.WRITE, availableProcessors, 200));
         builders.put(Names.GET, new FixedExecutorBuilder(settings, Names.GET, availableProcessors, 1000));
         builders.put(Names.ANALYZE, new FixedExecutorBuilder(settings, Names.ANALYZE, 1, 16));
@@ -177,6 +214,8 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
                         Names.SEARCH, searchThreadPoolSize(availableProcessors), 1000, 1000, 1000, 2000));
         builders.put(Names.SEARCH_THROTTLED, new AutoQueueAdjustingExecutorBuilder(settings,
             Names.SEARCH_THROTTLED, 1, 100, 100, 100, 200));
+        // slices that are rejected are collected by the search thread that submitted them
+        builders.put(Names.SEARCH_SLICE, new FixedExecutorBuilder(settings, Names.SEARCH_SLICE, availableProcessors, 1000));
         builders.put(Names.MANAGEMENT, new ScalingExecutorBuilder(Names.MANAGEMENT, 1, 5, TimeValue.timeValueMinutes(5)));
         // no queue as this means clients will need to handle rejections on listener queue even if the operation succeeded
         // the assumption here is that the listeners should be very lightweight on the listeners side
@@ -184,7 +223,7 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         builders.put(Names.FLUSH, new ScalingExecutorBuilder(Names.FLUSH, 1, halfProcMaxAt5, TimeValue.timeValueMinutes(5)));
         builders.put(Names.REFRESH, new ScalingExecutorBuilder(Names.REFRESH, 1, halfProcMaxAt10, TimeValue.timeValueMinutes(5)));
         builders.put(Names.WARMER, new ScalingExecutorBuilder(Names.WARMER, 1, halfProcMaxAt5, TimeValue.timeValueMinutes(5)));
-        builders.put(Names.SNAPSHOT, new ScalingExecutorBuilder(Names.SNAPSHOT, 1, halfProcMaxAt5, TimeValue.timeValueMinutes(5)));
+        builders.put(Names.SNAPSHOT, new ScalingExecutorBuilder(Names.SNAPSHOT, 1, halfProcMaxAt5, TimeValue.timeValueMinutes(5), 256));
         builders.put(Names.FETCH_SHARD_STARTED, new ScalingExecutorBuilder(Names.FETCH_SHARD_STARTED, 1, 2 * availableProcessors, TimeValue.timeValueMinutes(5)));
         builders.put(Names.FORCE_MERGE, new FixedExecutorBuilder(settings, Names.FORCE_MERGE, 1, -1));
         builders.put(Names.FETCH_SHARD_STORE, new ScalingExecutorBuilder(Names.FETCH_SHARD_STORE, 1, 2 * availableProcessors, TimeValue.timeValueMinutes(5)));
@@ -221,6 +260,14 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
                         .collect(Collectors.toList());
         this.threadPoolInfo = new ThreadPoolInfo(infos);
         this.scheduler = Scheduler.initScheduler(settings);
+        if (TIMER_WHEEL_SCHEDULER.equals(SCHEDULER_TYPE_SETTING.get(settings))) {
+            // named apart from the thread of the heap scheduler, but still a scheduler thread for assertNotScheduleThread
+            final String threadName = EsExecutors.threadName(settings, "scheduler") + "[timer_wheel]";
+            this.timerWheel = new TimerWheel(EsExecutors.daemonThreadFactory(threadName), SCHEDULER_TICK_SETTING.get(settings),
+                TICKS_PER_WHEEL);
+        } else {
+            this.timerWheel = null;
+        }
         TimeValue estimatedTimeInterval = ESTIMATED_TIME_INTERVAL_SETTING.get(settings);
         this.cachedTimeThread = new CachedTimeThread(EsExecutors.threadName(settings, "[timer]"), estimatedTimeInterval.millis());
         this.cachedTimeThread.start();
@@ -291,7 +338,20 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
             }
             stats.add(new ThreadPoolStats.Stats(name, threads, queue, active, rejected, largest, completed));
         }
-        return new ThreadPoolStats(stats);
+        return new ThreadPoolStats(stats, schedulerStats());
+    }
+
+    SchedulerStats schedulerStats() {
+        final String type;
+        final long pending;
+        if (timerWheel != null) {
+            type = TIMER_WHEEL_SCHEDULER;
+            pending = timerWheel.getPendingTimers();
+        } else {
+            type = HEAP_SCHEDULER;
+            pending = scheduler.getQueue().size();
+        }
+        return new SchedulerStats(type, pending, schedulerLateness.count(), schedulerLateness.sum(), maxSchedulerLateness.get());
     }
 
     /**
@@ -345,7 +405,11 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         if (!Names.SAME.equals(executor)) {
             command = new ThreadedRunnable(command, executor(executor));
         }
-        return scheduler.schedule(new ThreadPool.LoggingRunnable(command), delay.millis(), TimeUnit.MILLISECONDS);
+        final LoggingRunnable runnable = new LoggingRunnable(command, System.nanoTime() + delay.nanos());
+        if (timerWheel != null) {
+            return timerWheel.schedule(runnable, delay.nanos(), TimeUnit.NANOSECONDS);
+        }
+        return scheduler.schedule(runnable, delay.millis(), TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -370,6 +434,9 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         cachedTimeThread.running = false;
         cachedTimeThread.interrupt();
         scheduler.shutdown();
+        if (timerWheel != null) {
+            timerWheel.shutdown();
+        }
         for (ExecutorHolder executor : executors.values()) {
             if (executor.executor() instanceof ThreadPoolExecutor) {
                 executor.executor().shutdown();
@@ -381,6 +448,9 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         cachedTimeThread.running = false;
         cachedTimeThread.interrupt();
         scheduler.shutdownNow();
+        if (timerWheel != null) {
+            timerWheel.shutdown();
+        }
         for (ExecutorHolder executor : executors.values()) {
             if (executor.executor() instanceof ThreadPoolExecutor) {
                 executor.executor().shutdownNow();
@@ -390,6 +460,9 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
 
     public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
         boolean result = scheduler.awaitTermination(timeout, unit);
+        if (timerWheel != null) {
+            result &= timerWheel.awaitTermination(timeout, unit);
+        }
         for (ExecutorHolder executor : executors.values()) {
             if (executor.executor() instanceof ThreadPoolExecutor) {
                 result &= executor.executor().awaitTermination(timeout, unit);
@@ -436,13 +509,18 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
     class LoggingRunnable implements Runnable {
 
         private final Runnable runnable;
+        private final long deadlineNanos;
 
-        LoggingRunnable(Runnable runnable) {
+        LoggingRunnable(Runnable runnable, long deadlineNanos) {
             this.runnable = runnable;
+            this.deadlineNanos = deadlineNanos;
         }
 
         @Override
         public void run() {
+            final long lateness = Math.max(0L, System.nanoTime() - deadlineNanos);
+            schedulerLateness.inc(lateness);
+            maxSchedulerLateness.accumulateAndGet(lateness, Math::max);
             try {
                 runnable.run();
             } catch (Exception e) {
@@ -19,6 +19,8 @@
 
 package org.elasticsearch.threadpool;
 
+import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -146,19 +148,42 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
     }
 
     private List<Stats> stats;
+    @Nullable
+    private final SchedulerStats schedulerStats;
 
     public ThreadPoolStats(List<Stats> stats) {
+        this(stats, null);
+    }
+
+    public ThreadPoolStats(List<Stats> stats, @Nullable SchedulerStats schedulerStats) {
         Collections.sort(stats);
         this.stats = stats;
+        this.schedulerStats = schedulerStats;
     }
 
     public ThreadPoolStats(StreamInput in) throws IOException {
         stats = in.readList(Stats::new);
+        if (in.getVersion().onOrAfter(Version.V_7_0_0)) {
+            schedulerStats = in.readOptionalWriteable(SchedulerStats::new);
+        } else {
+            schedulerStats = null;
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeList(stats);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0)) {
+            out.writeOptionalWriteable(schedulerStats);
+        }
+    }
+
+    /**
+     * The statistics of the scheduler of the thread pool, or {@code null} if they are not available.
+     */
+    @Nullable
+    public SchedulerStats getSchedulerStats() {
+        return schedulerStats;
     }
 
     @Override
@@ -182,6 +207,9 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
         for (Stats stat : stats) {
             stat.toXContent(builder, params);
         }
+        if (schedulerStats != null) {
+            schedulerStats.toXContent(builder, params);
+        }
         builder.endObject();
         return builder;
     }
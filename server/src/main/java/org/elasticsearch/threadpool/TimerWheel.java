@@ -0,0 +1,400 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.threadpool;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hashed timer wheel that runs one-shot commands after a delay, on a single thread. Unlike a {@link
+ * java.util.concurrent.ScheduledThreadPoolExecutor} whose queue is a heap, adding and cancelling a timer are constant time operations:
+ * new and cancelled timers are handed over to the timer thread through lock-free queues, and the timer thread links each new timer
+ * into the bucket of the wheel of the tick it expires in. Timers whose delay spans more than one revolution of the wheel stay in
+ * their bucket for as many rounds as needed.
+ * <p>
+ * The price is precision: the timer thread only wakes up once per tick, so timers run up to one tick after their deadline. This
+ * suits timeouts, keep-alives and periodic background tasks which make up most of what is scheduled on a node.
+ */
+public final class TimerWheel {
+
+    private static final Logger logger = LogManager.getLogger(TimerWheel.class);
+
+    // the maximum number of new timers that are added to the wheel on each tick, so that a burst does not delay expirations
+    private static final int MAX_TIMERS_ADDED_PER_TICK = 100_000;
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int TERMINATED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Queue<Timer> newTimers = new ConcurrentLinkedQueue<>();
+    private final Queue<Timer> cancelledTimers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingTimers = new AtomicLong();
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final Thread thread;
+
+    // only accessed by the timer thread
+    private long tick;
+
+    /**
+     * Creates and starts a timer wheel.
+     *
+     * @param threadFactory the factory of the timer thread
+     * @param tickDuration  the duration of a tick, which is the precision of the timers
+     * @param ticksPerWheel the number of buckets of the wheel, rounded up to the next power of two
+     */
+    public TimerWheel(ThreadFactory threadFactory, TimeValue tickDuration, int ticksPerWheel) {
+        if (tickDuration.nanos() <= 0) {
+            throw new IllegalArgumentException("tick duration must be positive but was [" + tickDuration + "]");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 20) {
+            throw new IllegalArgumentException("ticks per wheel must be in [1, " + (1 << 20) + "] but was [" + ticksPerWheel + "]");
+        }
+        this.tickNanos = tickDuration.nanos();
+        final int size = ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.thread = threadFactory.newThread(this::runTimerThread);
+        this.thread.start();
+    }
+
+    /**
+     * Schedules the given command to run on the timer thread once the given delay elapsed.
+     *
+     * @return a future that completes once the command ran and that cancels the command if it is cancelled before it ran
+     * @throws EsRejectedExecutionException if this timer wheel is shut down
+     */
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        if (state.get() != RUNNING) {
+            throw new EsRejectedExecutionException("timer wheel is shut down", true);
+        }
+        final long delayNanos = Math.max(0L, unit.toNanos(delay));
+        final long now = System.nanoTime() - startTime;
+        // guard against overflows for very long delays
+        final long deadline = delayNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delayNanos;
+        final Timer timer = new Timer(command, deadline);
+        pendingTimers.incrementAndGet();
+        newTimers.add(timer);
+        return timer;
+    }
+
+    /**
+     * The number of timers that neither ran nor were cancelled yet.
+     */
+    public long getPendingTimers() {
+        return pendingTimers.get();
+    }
+
+    /**
+     * The duration of a tick of this wheel, in nanoseconds.
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Stops accepting new timers. The pending timers are dropped and never run, like the ones of the scheduler of the thread pool.
+     */
+    public void shutdown() {
+        if (state.compareAndSet(RUNNING, SHUTDOWN)) {
+            thread.interrupt();
+        }
+    }
+
+    public boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    public boolean isTerminated() {
+        return state.get() == TERMINATED;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private void runTimerThread() {
+        try {
+            while (state.get() == RUNNING) {
+                final long now = waitForNextTick();
+                if (now < 0) {
+                    break;
+                }
+                removeCancelledTimers();
+                addNewTimers();
+                wheel[(int) (tick & mask)].expireTimers(now);
+                tick++;
+            }
+        } finally {
+            for (Bucket bucket : wheel) {
+                bucket.cancelAll();
+            }
+            Timer timer;
+            while ((timer = newTimers.poll()) != null) {
+                timer.cancel(false);
+            }
+            cancelledTimers.clear();
+            state.set(TERMINATED);
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick and returns the time relative to the start of the wheel, or {@code -1} if the wheel
+     * was shut down in the meantime.
+     */
+    private long waitForNextTick() {
+        final long deadline = tickNanos * (tick + 1);
+        while (true) {
+            final long now = System.nanoTime() - startTime;
+            final long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (state.get() != RUNNING) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelledTimers() {
+        Timer timer;
+        while ((timer = cancelledTimers.poll()) != null) {
+            if (timer.bucket != null) {
+                timer.bucket.remove(timer);
+            }
+        }
+    }
+
+    private void addNewTimers() {
+        for (int i = 0; i < MAX_TIMERS_ADDED_PER_TICK; i++) {
+            final Timer timer = newTimers.poll();
+            if (timer == null) {
+                return;
+            }
+            if (timer.isCancelled()) {
+                continue;
+            }
+            final long expirationTick = timer.deadline / tickNanos;
+            timer.remainingRounds = (expirationTick - tick) / wheel.length;
+            // timers whose deadline passed while they were queued expire on the current tick
+            final long bucketTick = Math.max(expirationTick, tick);
+            wheel[(int) (bucketTick & mask)].add(timer);
+        }
+    }
+
+    /**
+     * A doubly linked list of the timers that expire on a given tick of the wheel, accessed by the timer thread only.
+     */
+    private static final class Bucket {
+        private Timer head;
+        private Timer tail;
+
+        void add(Timer timer) {
+            assert timer.bucket == null;
+            timer.bucket = this;
+            if (head == null) {
+                head = tail = timer;
+            } else {
+                tail.next = timer;
+                timer.prev = tail;
+                tail = timer;
+            }
+        }
+
+        void remove(Timer timer) {
+            assert timer.bucket == this;
+            if (timer.prev != null) {
+                timer.prev.next = timer.next;
+            } else {
+                head = timer.next;
+            }
+            if (timer.next != null) {
+                timer.next.prev = timer.prev;
+            } else {
+                tail = timer.prev;
+            }
+            timer.prev = null;
+            timer.next = null;
+            timer.bucket = null;
+        }
+
+        void expireTimers(long now) {
+            Timer timer = head;
+            while (timer != null) {
+                final Timer next = timer.next;
+                if (timer.remainingRounds <= 0) {
+                    remove(timer);
+                    assert timer.deadline <= now : "timer expires at [" + timer.deadline + "] but it is only [" + now + "]";
+                    timer.expire();
+                } else if (timer.isCancelled()) {
+                    remove(timer);
+                } else {
+                    timer.remainingRounds--;
+                }
+                timer = next;
+            }
+        }
+
+        void cancelAll() {
+            Timer timer;
+            while ((timer = head) != null) {
+                remove(timer);
+                timer.cancel(false);
+            }
+        }
+    }
+
+    private final class Timer implements ScheduledFuture<Object> {
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Runnable command;
+        private final long deadline;
+        private final AtomicInteger timerState = new AtomicInteger(PENDING);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable failure;
+
+        // only accessed by the timer thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timer prev;
+        private Timer next;
+
+        Timer(Runnable command, long deadline) {
+            this.command = command;
+            this.deadline = deadline;
+        }
+
+        void expire() {
+            if (timerState.compareAndSet(PENDING, EXPIRED) == false) {
+                return;
+            }
+            pendingTimers.decrementAndGet();
+            try {
+                command.run();
+            } catch (Exception e) {
+                failure = e;
+                logger.warn(() -> new ParameterizedMessage("failed to run scheduled command [{}]", command), e);
+            } catch (Error e) {
+                failure = e;
+                // the timer thread keeps expiring the other timers, the error goes to the uncaught exception handler
+                ExceptionsHelper.maybeDieOnAnotherThread(e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (timerState.compareAndSet(PENDING, CANCELLED) == false) {
+                return false;
+            }
+            pendingTimers.decrementAndGet();
+            done.countDown();
+            if (state.get() == RUNNING) {
+                cancelledTimers.add(this);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return timerState.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (done.await(timeout, unit) == false) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private Object result() throws ExecutionException {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return null;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - (System.nanoTime() - startTime), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public String toString() {
+            return "timer of [" + command + "]";
+        }
+    }
+}
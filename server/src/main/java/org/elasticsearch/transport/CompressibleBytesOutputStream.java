@@ -21,6 +21,7 @@ package org.elasticsearch.transport;
 
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.stream.BytesStream;
@@ -31,7 +32,7 @@ import java.util.zip.DeflaterOutputStream;
 
 /**
  * This class exists to provide a stream with optional compression. This is useful as using compression
- * requires that the underlying {@link DeflaterOutputStream} be closed to write EOS bytes. However, the
+ * requires that the underlying compressed stream (e.g. a {@link DeflaterOutputStream}) be closed to write EOS bytes. However, the
  * {@link BytesStream} should not be closed yet, as we have not used the bytes. This class handles these
  * intricacies.
  *
@@ -49,10 +50,14 @@ final class CompressibleBytesOutputStream extends StreamOutput {
     private final boolean shouldCompress;
 
     CompressibleBytesOutputStream(BytesStream bytesStreamOutput, boolean shouldCompress) throws IOException {
+        this(bytesStreamOutput, shouldCompress, CompressorFactory.COMPRESSOR);
+    }
+
+    CompressibleBytesOutputStream(BytesStream bytesStreamOutput, boolean shouldCompress, Compressor compressor) throws IOException {
         this.bytesStreamOutput = bytesStreamOutput;
         this.shouldCompress = shouldCompress;
         if (shouldCompress) {
-            this.stream = CompressorFactory.COMPRESSOR.streamOutput(Streams.flushOnCloseStream(bytesStreamOutput));
+            this.stream = compressor.streamOutput(Streams.flushOnCloseStream(bytesStreamOutput));
         } else {
             this.stream = bytesStreamOutput;
         }
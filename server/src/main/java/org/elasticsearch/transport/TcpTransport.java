@@ -28,11 +28,13 @@ import org.elasticsearch.action.NotifyOnceListener;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Booleans;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.component.Lifecycle;
@@ -47,6 +49,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.network.CloseableChannel;
+import org.elasticsearch.common.network.EventLoopStats;
 import org.elasticsearch.common.network.NetworkAddress;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.network.NetworkUtils;
@@ -195,6 +198,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     // connections while no connect operations is going on
     private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
     protected final boolean compressResponses;
+    private final Compressor compressor;
     private volatile BoundTransportAddress boundAddress;
     private final String transportName;
 
@@ -219,6 +223,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         this.circuitBreakerService = circuitBreakerService;
         this.namedWriteableRegistry = namedWriteableRegistry;
         this.compressResponses = Transport.TRANSPORT_TCP_COMPRESS.get(settings);
+        this.compressor = Transport.TRANSPORT_TCP_COMPRESSION_SCHEME.get(settings);
         this.networkService = networkService;
         this.transportName = transportName;
         this.transportLogger = new TransportLogger();
@@ -821,6 +826,17 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         return request instanceof BytesTransportRequest == false;
     }
 
+    /**
+     * Returns the compressor to use for messages that are serialized with the given version. The receiving side detects the
+     * compressor from the message bytes, so we only need to make sure to not use a scheme that the other node does not know.
+     */
+    private Compressor compressor(Version version) {
+        if (version.before(Version.V_7_0_0)) {
+            return CompressorFactory.COMPRESSOR;
+        }
+        return compressor;
+    }
+
     private void sendRequestToChannel(final DiscoveryNode node, final TcpChannel channel, final long requestId, final String action,
                                       final TransportRequest request, TransportRequestOptions options, Version channelVersion,
                                       byte status) throws IOException, TransportException {
@@ -829,20 +845,20 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         // the header part is compressed, and the "body" can't be extracted as compressed
         final boolean compressMessage = options.compress() && canCompress(request);
 
+        // we pick the smallest of the 2, to support both backward and forward compatibility
+        // note, this is the only place we need to do this, since from here on, we use the serialized version
+        // as the version to use also when the node receiving this request will send the response with
+        Version version = Version.min(this.version, channelVersion);
+
         status = TransportStatus.setRequest(status);
         ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
-        final CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, compressMessage);
+        final CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, compressMessage, compressor(version));
         boolean addedReleaseListener = false;
         try {
             if (compressMessage) {
                 status = TransportStatus.setCompress(status);
             }
 
-            // we pick the smallest of the 2, to support both backward and forward compatibility
-            // note, this is the only place we need to do this, since from here on, we use the serialized version
-            // as the version to use also when the node receiving this request will send the response with
-            Version version = Version.min(this.version, channelVersion);
-
             stream.setVersion(version);
             threadPool.getThreadContext().writeTo(stream);
             if (version.onOrAfter(Version.V_6_3_0)) {
@@ -944,7 +960,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
 
         status = TransportStatus.setResponse(status);
         ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
-        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, options.compress());
+        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, options.compress(), compressor(nodeVersion));
         boolean addedReleaseListener = false;
         try {
             if (options.compress()) {
@@ -1048,6 +1064,13 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
 
         if (message == null) {
             return 0;
+        } else if (bytesReference instanceof ReleasableBytesReference && message.length() != 0) {
+            // the message may be read without copying its payloads, in which case the request retains the network buffers
+            try (ReleasableBytesReference releasableMessage =
+                     ((ReleasableBytesReference) bytesReference).retainedSlice(BYTES_NEEDED_FOR_MESSAGE_SIZE, message.length())) {
+                inboundMessage(channel, releasableMessage);
+            }
+            return message.length() + BYTES_NEEDED_FOR_MESSAGE_SIZE;
         } else {
             inboundMessage(channel, message);
             return message.length() + BYTES_NEEDED_FOR_MESSAGE_SIZE;
@@ -1188,7 +1211,17 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         readBytesMetric.inc(totalMessageSize);
         // we have additional bytes to read, outside of the header
         boolean hasMessageBytesToRead = (totalMessageSize - TcpHeader.HEADER_SIZE) > 0;
-        StreamInput streamIn = reference.streamInput();
+        final ReleasableBytesReference releasableRequest;
+        StreamInput streamIn;
+        if (reference instanceof ReleasableBytesReference && TransportStatus.isRequest(reference.get(TcpHeader.REQUEST_ID_SIZE))) {
+            // requests may keep slices of the network buffers instead of copying their payloads until their response is sent, while
+            // responses are handled asynchronously without a release hook and are always copied
+            releasableRequest = (ReleasableBytesReference) reference;
+            streamIn = releasableRequest.slicingStreamInput();
+        } else {
+            releasableRequest = null;
+            streamIn = reference.streamInput();
+        }
         boolean success = false;
         try (ThreadContext.StoredContext tCtx = threadPool.getThreadContext().stashContext()) {
             long requestId = streamIn.readLong();
@@ -1219,7 +1252,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             threadPool.getThreadContext().readHeaders(streamIn);
             threadPool.getThreadContext().putTransient("_remote_address", remoteAddress);
             if (TransportStatus.isRequest(status)) {
-                handleRequest(channel, profileName, streamIn, requestId, messageLengthBytes, version, remoteAddress, status);
+                handleRequest(channel, profileName, streamIn, releasableRequest, requestId, messageLengthBytes, version, remoteAddress,
+                    status);
             } else {
                 final TransportResponseHandler<?> handler;
                 if (isHandshake) {
@@ -1324,9 +1358,15 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         });
     }
 
-    protected String handleRequest(TcpChannel channel, String profileName, final StreamInput stream, long requestId,
-                                   int messageLengthBytes, Version version, InetSocketAddress remoteAddress, byte status)
-        throws IOException {
+    /**
+     * Reads a request from the stream and dispatches it to its handler. If the request kept slices of {@code releasableRequest}, its
+     * channel retains those bytes until the response is sent, as they are released once this method returns otherwise.
+     *
+     * @param releasableRequest the bytes that the stream reads if they may be sliced, {@code null} if the stream copies everything
+     */
+    protected String handleRequest(TcpChannel channel, String profileName, final StreamInput stream,
+                                   @Nullable ReleasableBytesReference releasableRequest, long requestId, int messageLengthBytes,
+                                   Version version, InetSocketAddress remoteAddress, byte status) throws IOException {
         final Set<String> features;
         if (version.onOrAfter(Version.V_6_3_0)) {
             features = Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(stream.readStringArray())));
@@ -1335,7 +1375,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         }
         final String action = stream.readString();
         messageListener.onRequestReceived(requestId, action);
-        TransportChannel transportChannel = null;
+        TcpTransportChannel transportChannel = null;
         try {
             if (TransportStatus.isHandshake(status)) {
                 handshaker.handleHandshake(version, features, channel, requestId);
@@ -1352,6 +1392,9 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                 transportChannel = new TcpTransportChannel(this, channel, transportName, action, requestId, version, features, profileName,
                     messageLengthBytes, TransportStatus.isCompress(status));
                 final TransportRequest request = reg.newRequest(stream);
+                if (releasableRequest != null && releasableRequest.hasSlices()) {
+                    transportChannel.retainRequestBytes(releasableRequest, reg.canTripCircuitBreaker());
+                }
                 request.remoteAddress(new TransportAddress(remoteAddress));
                 // in case we throw an exception, i.e. when the limit is hit, we don't want to verify
                 validateRequest(stream, requestId, action);
@@ -1500,7 +1543,14 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     @Override
     public final TransportStats getStats() {
         return new TransportStats(acceptedChannels.size(), readBytesMetric.count(), readBytesMetric.sum(), transmittedBytesMetric.count(),
-            transmittedBytesMetric.sum());
+            transmittedBytesMetric.sum(), getEventLoopStats());
+    }
+
+    /**
+     * Returns the activity of each of the event loop threads of this transport. Transports that do not track it return an empty list.
+     */
+    protected List<EventLoopStats> getEventLoopStats() {
+        return Collections.emptyList();
     }
 
     /**
@@ -20,6 +20,9 @@
 package org.elasticsearch.transport;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 
 import java.io.IOException;
 import java.util.Set;
@@ -38,6 +41,10 @@ public final class TcpTransportChannel implements TransportChannel {
     private final String channelType;
     private final TcpChannel channel;
     private final boolean compressResponse;
+    // the network buffers the request was read from if the request holds slices of them, released along with the reserved bytes
+    private volatile Releasable requestBytes;
+    // the size of these buffers that is accounted on the in-flight requests breaker on top of the reserved bytes
+    private volatile long retainedBytes;
 
     TcpTransportChannel(TcpTransport transport, TcpChannel channel, String channelType, String action, long requestId, Version version,
                         Set<String> features, String profileName, long reservedBytes, boolean compressResponse) {
@@ -58,6 +65,23 @@ public final class TcpTransportChannel implements TransportChannel {
         return profileName;
     }
 
+    /**
+     * Keeps the network buffers that the request was read from until the response is sent, because the request holds slices of them.
+     * Whole buffers are kept, so the part of them that is not already reserved for the message is accounted on the in-flight requests
+     * breaker as well.
+     */
+    void retainRequestBytes(ReleasableBytesReference requestBytes, boolean canTripCircuitBreaker) {
+        assert this.requestBytes == null : "request bytes are already retained";
+        final long retainedBytes = Math.max(0, requestBytes.pinnedBytes() - reservedBytes);
+        if (canTripCircuitBreaker) {
+            transport.getInFlightRequestBreaker().addEstimateBytesAndMaybeBreak(retainedBytes, "<transport_request>");
+        } else {
+            transport.getInFlightRequestBreaker().addWithoutBreaking(retainedBytes);
+        }
+        this.retainedBytes = retainedBytes;
+        this.requestBytes = requestBytes.retain();
+    }
+
     @Override
     public void sendResponse(TransportResponse response) throws IOException {
         try {
@@ -87,7 +111,8 @@ public final class TcpTransportChannel implements TransportChannel {
     private void release(boolean isExceptionResponse) {
         if (released.compareAndSet(false, true)) {
             assert (releaseBy = new Exception()) != null; // easier to debug if it's already closed
-            transport.getInFlightRequestBreaker().addWithoutBreaking(-reservedBytes);
+            transport.getInFlightRequestBreaker().addWithoutBreaking(-reservedBytes - retainedBytes);
+            Releasables.close(requestBytes);
         } else if (isExceptionResponse == false) {
             // only fail if we are not sending an error - we might send the error triggered by the previous
             // sendResponse call
@@ -25,6 +25,8 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.elasticsearch.common.component.LifecycleComponent;
+import org.elasticsearch.common.compress.Compressor;
+import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.transport.BoundTransportAddress;
@@ -45,6 +47,13 @@ public interface Transport extends LifecycleComponent {
 
     Setting<Boolean> TRANSPORT_TCP_COMPRESS = Setting.boolSetting("transport.tcp.compress", false, Property.NodeScope);
 
+    /**
+     * The compression scheme used for compressed messages, {@code deflate} or {@code lz4}. Messages sent to nodes that
+     * do not support the configured scheme fall back to {@code deflate}.
+     */
+    Setting<Compressor> TRANSPORT_TCP_COMPRESSION_SCHEME = new Setting<>("transport.tcp.compression_scheme", "deflate",
+        CompressorFactory::compressorForScheme, Property.NodeScope);
+
     /**
      * Registers a new request handler
      */
@@ -19,15 +19,19 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.network.EventLoopStats;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.ToXContent.Params;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class TransportStats implements Writeable, ToXContentFragment {
 
@@ -36,13 +40,19 @@ public class TransportStats implements Writeable, ToXContentFragment {
     private final long rxSize;
     private final long txCount;
     private final long txSize;
+    private final List<EventLoopStats> eventLoops;
 
     public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize) {
+        this(serverOpen, rxCount, rxSize, txCount, txSize, Collections.emptyList());
+    }
+
+    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize, List<EventLoopStats> eventLoops) {
         this.serverOpen = serverOpen;
         this.rxCount = rxCount;
         this.rxSize = rxSize;
         this.txCount = txCount;
         this.txSize = txSize;
+        this.eventLoops = eventLoops;
     }
 
     public TransportStats(StreamInput in) throws IOException {
@@ -51,6 +61,11 @@ public class TransportStats implements Writeable, ToXContentFragment {
         rxSize = in.readVLong();
         txCount = in.readVLong();
         txSize = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0)) {
+            eventLoops = in.readList(EventLoopStats::new);
+        } else {
+            eventLoops = Collections.emptyList();
+        }
     }
 
     @Override
@@ -60,6 +75,9 @@ public class TransportStats implements Writeable, ToXContentFragment {
         out.writeVLong(rxSize);
         out.writeVLong(txCount);
         out.writeVLong(txSize);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0)) {
+            out.writeList(eventLoops);
+        }
     }
 
     public long serverOpen() {
@@ -102,6 +120,13 @@ public class TransportStats implements Writeable, ToXContentFragment {
         return txSize();
     }
 
+    /**
+     * The activity of each of the event loop threads of the transport, empty if the transport does not track it.
+     */
+    public List<EventLoopStats> getEventLoops() {
+        return eventLoops;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.TRANSPORT);
@@ -110,6 +135,13 @@ public class TransportStats implements Writeable, ToXContentFragment {
         builder.humanReadableField(Fields.RX_SIZE_IN_BYTES, Fields.RX_SIZE, new ByteSizeValue(rxSize));
         builder.field(Fields.TX_COUNT, txCount);
         builder.humanReadableField(Fields.TX_SIZE_IN_BYTES, Fields.TX_SIZE, new ByteSizeValue(txSize));
+        if (eventLoops.isEmpty() == false) {
+            builder.startArray(Fields.EVENT_LOOPS);
+            for (EventLoopStats eventLoop : eventLoops) {
+                eventLoop.toXContent(builder, params);
+            }
+            builder.endArray();
+        }
         builder.endObject();
         return builder;
     }
@@ -123,5 +155,6 @@ public class TransportStats implements Writeable, ToXContentFragment {
         static final String TX_COUNT = "tx_count";
         static final String TX_SIZE = "tx_size";
         static final String TX_SIZE_IN_BYTES = "tx_size_in_bytes";
+        static final String EVENT_LOOPS = "event_loops";
     }
 }
@@ -20,8 +20,10 @@
 package org.elasticsearch.action.admin.cluster.node.stats;
 
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterApplierStats;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.network.EventLoopStats;
 import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.discovery.zen.PendingClusterStateStats;
 import org.elasticsearch.discovery.zen.PublishClusterStateStats;
@@ -38,6 +40,7 @@ import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.script.ScriptStats;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.VersionUtils;
+import org.elasticsearch.threadpool.SchedulerStats;
 import org.elasticsearch.threadpool.ThreadPoolStats;
 import org.elasticsearch.transport.TransportStats;
 
@@ -179,6 +182,7 @@ public class NodeStatsTests extends ESTestCase {
                         assertEquals(stats.getQueue(), deserializedStats.getQueue());
                         assertEquals(stats.getRejected(), deserializedStats.getRejected());
                     }
+                    assertEquals(nodeStats.getThreadPool().getSchedulerStats(), deserializedNodeStats.getThreadPool().getSchedulerStats());
                 }
                 FsInfo fs = nodeStats.getFs();
                 FsInfo deserializedFs = deserializedNodeStats.getFs();
@@ -218,12 +222,17 @@ public class NodeStatsTests extends ESTestCase {
                     assertEquals(nodeStats.getTransport().getServerOpen(), deserializedNodeStats.getTransport().getServerOpen());
                     assertEquals(nodeStats.getTransport().getTxCount(), deserializedNodeStats.getTransport().getTxCount());
                     assertEquals(nodeStats.getTransport().getTxSize(), deserializedNodeStats.getTransport().getTxSize());
+                    assertEventLoopStats(nodeStats.getTransport().getEventLoops(), deserializedNodeStats.getTransport().getEventLoops());
                 }
                 if (nodeStats.getHttp() == null) {
                     assertNull(deserializedNodeStats.getHttp());
                 } else {
                     assertEquals(nodeStats.getHttp().getServerOpen(), deserializedNodeStats.getHttp().getServerOpen());
                     assertEquals(nodeStats.getHttp().getTotalOpen(), deserializedNodeStats.getHttp().getTotalOpen());
+                    assertEquals(nodeStats.getHttp().getResponseSize(), deserializedNodeStats.getHttp().getResponseSize());
+                    assertEquals(nodeStats.getHttp().getRecycledResponseSize(),
+                        deserializedNodeStats.getHttp().getRecycledResponseSize());
+                    assertEventLoopStats(nodeStats.getHttp().getEventLoops(), deserializedNodeStats.getHttp().getEventLoops());
                 }
                 if (nodeStats.getBreaker() == null) {
                     assertNull(deserializedNodeStats.getBreaker());
@@ -259,6 +268,7 @@ public class NodeStatsTests extends ESTestCase {
                         assertEquals(queueStats.getTotal(), deserializedDiscoveryStats.getQueueStats().getTotal());
                         assertEquals(queueStats.getPending(), deserializedDiscoveryStats.getQueueStats().getPending());
                     }
+                    assertEquals(discoveryStats.getApplierStats(), deserializedDiscoveryStats.getApplierStats());
                 }
                 IngestStats ingestStats = nodeStats.getIngestStats();
                 IngestStats deserializedIngestStats = deserializedNodeStats.getIngestStats();
@@ -315,6 +325,31 @@ public class NodeStatsTests extends ESTestCase {
         }
     }
 
+    private static void assertEventLoopStats(List<EventLoopStats> expected, List<EventLoopStats> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getChannels(), actual.get(i).getChannels());
+            assertEquals(expected.get(i).getQueuedWrites(), actual.get(i).getQueuedWrites());
+            assertEquals(expected.get(i).getBusyTime(), actual.get(i).getBusyTime());
+            assertEquals(expected.get(i).getLoad(), actual.get(i).getLoad(), 0.0d);
+            assertEquals(expected.get(i).getRxSize(), actual.get(i).getRxSize());
+            assertEquals(expected.get(i).getTxSize(), actual.get(i).getTxSize());
+            assertEquals(expected.get(i).getBytesPerSecond(), actual.get(i).getBytesPerSecond());
+        }
+    }
+
+    private static List<EventLoopStats> randomEventLoopStats() {
+        int numEventLoops = randomIntBetween(0, 5);
+        List<EventLoopStats> eventLoops = new ArrayList<>(numEventLoops);
+        for (int i = 0; i < numEventLoops; i++) {
+            eventLoops.add(new EventLoopStats(randomBoolean() ? randomAlphaOfLengthBetween(3, 10) : null, randomIntBetween(0, 1000),
+                randomIntBetween(0, 1000), randomNonNegativeLong(), randomDouble(), randomNonNegativeLong(), randomNonNegativeLong(),
+                randomNonNegativeLong()));
+        }
+        return eventLoops;
+    }
+
     private static NodeStats createNodeStats() {
         DiscoveryNode node = new DiscoveryNode("test_node", buildNewFakeTransportAddress(),
                 emptyMap(), emptySet(), VersionUtils.randomVersion(random()));
@@ -389,7 +424,9 @@ public class NodeStatsTests extends ESTestCase {
                         randomIntBetween(1, 1000), randomIntBetween(1, 1000), randomNonNegativeLong(),
                         randomIntBetween(1, 1000), randomIntBetween(1, 1000)));
             }
-            threadPoolStats = new ThreadPoolStats(threadPoolStatsList);
+            SchedulerStats schedulerStats = randomBoolean() ? null : new SchedulerStats(randomFrom("heap", "timer_wheel"),
+                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+            threadPoolStats = new ThreadPoolStats(threadPoolStatsList, schedulerStats);
         }
         FsInfo fsInfo = null;
         if (frequently()) {
@@ -413,8 +450,9 @@ public class NodeStatsTests extends ESTestCase {
             fsInfo = new FsInfo(randomNonNegativeLong(), ioStats, paths);
         }
         TransportStats transportStats = frequently() ? new TransportStats(randomNonNegativeLong(), randomNonNegativeLong(),
-                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong()) : null;
-        HttpStats httpStats = frequently() ? new HttpStats(randomNonNegativeLong(), randomNonNegativeLong()) : null;
+                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomEventLoopStats()) : null;
+        HttpStats httpStats = frequently() ? new HttpStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(),
+                randomNonNegativeLong(), randomEventLoopStats()) : null;
         AllCircuitBreakerStats allCircuitBreakerStats = null;
         if (frequently()) {
             int numCircuitBreakerStats = randomIntBetween(0, 10);
@@ -437,6 +475,9 @@ public class NodeStatsTests extends ESTestCase {
                     randomNonNegativeLong(),
                     randomNonNegativeLong(),
                     randomNonNegativeLong())
+                : null,
+                randomBoolean()
+                ? randomClusterApplierStats()
                 : null)
             : null;
         IngestStats ingestStats = null;
@@ -493,4 +534,14 @@ public class NodeStatsTests extends ESTestCase {
     private IngestStats.Stats getPipelineStats(List<IngestStats.PipelineStat> pipelineStats, String id) {
         return pipelineStats.stream().filter(p1 -> p1.getPipelineId().equals(id)).findFirst().map(p2 -> p2.getStats()).orElse(null);
     }
+
+    private static ClusterApplierStats randomClusterApplierStats() {
+        final int numRecordings = randomIntBetween(0, 10);
+        final List<ClusterApplierStats.Recording> recordings = new ArrayList<>(numRecordings);
+        for (int i = 0; i < numRecordings; i++) {
+            recordings.add(new ClusterApplierStats.Recording(randomAlphaOfLengthBetween(3, 10), randomNonNegativeLong(),
+                randomNonNegativeLong(), randomNonNegativeLong()));
+        }
+        return new ClusterApplierStats(recordings);
+    }
 }
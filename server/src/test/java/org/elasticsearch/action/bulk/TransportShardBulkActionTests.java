@@ -38,10 +38,12 @@ import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.mapper.Mapping;
 import org.elasticsearch.index.mapper.MetadataFieldMapper;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -62,6 +64,7 @@ import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.Matchers.arrayWithSize;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -253,6 +256,60 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         closeShards(shard);
     }
 
+    public void testExecuteAppendOnlyIndexRequestsInBatches() throws Exception {
+        IndexShard shard = newStartedShard(true);
+
+        final int mappingUpdateItem = randomIntBetween(2, 5);
+        final int failingItem = randomIntBetween(0, mappingUpdateItem - 1);
+        BulkItemRequest[] items = new BulkItemRequest[mappingUpdateItem + randomIntBetween(1, 5)];
+        for (int i = 0; i < items.length; i++) {
+            IndexRequest writeRequest = new IndexRequest("index", "_doc");
+            if (i == mappingUpdateItem) {
+                writeRequest.source(Requests.INDEX_CONTENT_TYPE, "foo", "bar");
+            } else if (i == failingItem) {
+                writeRequest.source("{\"foo\" : ", XContentType.JSON);
+            } else {
+                writeRequest.source(Requests.INDEX_CONTENT_TYPE);
+            }
+            // generates the id of the document, like the first attempt of a bulk request
+            writeRequest.process(Version.CURRENT, null, "index");
+            items[i] = new BulkItemRequest(i, writeRequest);
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        AtomicInteger updateCalled = new AtomicInteger();
+        WritePrimaryResult<BulkShardRequest, BulkShardResponse> result = TransportShardBulkAction.performOnPrimary(
+            bulkShardRequest, shard, null, threadPool::absoluteTimeInMillis,
+            (update, shardId, type) -> {
+                // the first batch stops before the item that requires a mapping update
+                for (int i = 0; i < items.length; i++) {
+                    assertThat("item [" + i + "]", items[i].getPrimaryResponse() != null, equalTo(i < mappingUpdateItem));
+                }
+                updateCalled.incrementAndGet();
+                updateMappings(shard, IndexMetaData.builder(shard.indexSettings().getIndexMetaData())
+                    .putMapping(type, update.toString()).build());
+            }, () -> {});
+
+        assertThat("mappings were updated once", updateCalled.get(), equalTo(1));
+        assertThat(result.finalResponseIfSuccessful.getResponses(), arrayWithSize(items.length));
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse response = result.finalResponseIfSuccessful.getResponses()[i];
+            assertThat(response.getItemId(), equalTo(i));
+            assertThat(response.getOpType(), equalTo(DocWriteRequest.OpType.INDEX));
+            if (i == failingItem) {
+                // a parse failure only fails its own item
+                assertTrue(response.isFailed());
+                assertThat(response.getFailure().getCause(), instanceOf(MapperParsingException.class));
+            } else {
+                assertFalse(response.isFailed());
+                assertThat(response.getResponse().getResult(), equalTo(DocWriteResponse.Result.CREATED));
+            }
+        }
+
+        assertDocCount(shard, items.length - 1);
+        closeShards(shard);
+    }
+
     public void testExecuteBulkIndexRequestWithMappingUpdates() throws Exception {
 
         BulkItemRequest[] items = new BulkItemRequest[1];
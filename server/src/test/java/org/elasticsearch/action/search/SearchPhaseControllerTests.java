@@ -60,6 +60,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
@@ -70,7 +71,7 @@ public class SearchPhaseControllerTests extends ESTestCase {
     @Before
     public void setup() {
         searchPhaseController = new SearchPhaseController(
-            (b) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b));
+            () -> b -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b));
     }
 
     public void testSort() throws Exception {
@@ -337,6 +338,47 @@ public class SearchPhaseControllerTests extends ESTestCase {
         assertEquals(3.0D, max.getValue(), 0.0D);
     }
 
+    public void testReduceContextsOfRequestShareSettings() {
+        // the settings of the reduce contexts change between requests, but not within a request
+        final AtomicInteger numRequests = new AtomicInteger();
+        final List<InternalAggregation.ReduceContext> reduceContexts = new ArrayList<>();
+        final SearchPhaseController controller = new SearchPhaseController(() -> {
+            final boolean streamingReduce = numRequests.incrementAndGet() % 2 == 0;
+            return b -> {
+                InternalAggregation.ReduceContext reduceContext = new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE,
+                    null, value -> {}, b, streamingReduce);
+                reduceContexts.add(reduceContext);
+                return reduceContext;
+            };
+        });
+        final int numRequestsToSend = randomIntBetween(2, 5);
+        for (int i = 0; i < numRequestsToSend; i++) {
+            reduceContexts.clear();
+            SearchRequest request = new SearchRequest();
+            request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("test")).size(0));
+            request.setBatchedReduceSize(2);
+            int numShards = randomIntBetween(3, 10);
+            InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer = controller.newSearchPhaseResults(request, numShards);
+            for (int shard = 0; shard < numShards; shard++) {
+                QuerySearchResult result = new QuerySearchResult(shard, new SearchShardTarget("node", new Index("a", "b"), shard, null));
+                result.topDocs(new TopDocsAndMaxScore(new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]),
+                    Float.NaN), new DocValueFormat[0]);
+                result.aggregations(new InternalAggregations(Collections.singletonList(new InternalMax("test", (double) shard,
+                    DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap()))));
+                result.setShardIndex(shard);
+                consumer.consumeResult(result);
+            }
+            SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+            assertEquals(numShards - 1, ((InternalMax) reduce.aggregations.asList().get(0)).getValue(), 0.0D);
+            assertEquals(i + 1, numRequests.get());
+            // the partial reduces and the final one
+            assertThat(reduceContexts.size(), greaterThan(1));
+            for (InternalAggregation.ReduceContext reduceContext : reduceContexts) {
+                assertEquals(numRequests.get() % 2 == 0, reduceContext.isStreamingReduce());
+            }
+        }
+    }
+
     public void testConsumerConcurrently() throws InterruptedException {
         int expectedNumResults = randomIntBetween(1, 100);
         int bufferSize = randomIntBetween(2, 200);
@@ -0,0 +1,320 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.support.replication;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ConcreteReplicaRequest;
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ReplicaResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.transport.CapturingTransport;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.RemoteTransportException;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportInterceptor;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.elasticsearch.transport.TransportService;
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class ReplicaRequestBatcherTests extends ESTestCase {
+
+    private static final String REPLICA_ACTION = "internal:test[r]";
+    private static final String BATCH_ACTION = "internal:test[r][batch]";
+
+    private ThreadPool threadPool;
+    private CapturingTransport transport;
+    private TransportService transportService;
+    private DiscoveryNode node;
+    // the headers of the thread context each request was sent in
+    private List<Map<String, String>> sentHeaders;
+
+    @Before
+    public void setUpTransport() {
+        threadPool = new TestThreadPool(getTestName());
+        transport = new CapturingTransport();
+        node = new DiscoveryNode("node", buildNewFakeTransportAddress(), Version.CURRENT);
+        sentHeaders = new CopyOnWriteArrayList<>();
+        final TransportInterceptor interceptor = new TransportInterceptor() {
+            @Override
+            public AsyncSender interceptSender(AsyncSender sender) {
+                return new AsyncSender() {
+                    @Override
+                    public <T extends TransportResponse> void sendRequest(Transport.Connection connection, String action,
+                                                                          TransportRequest request, TransportRequestOptions options,
+                                                                          TransportResponseHandler<T> handler) {
+                        sentHeaders.add(threadPool.getThreadContext().getHeaders());
+                        sender.sendRequest(connection, action, request, options, handler);
+                    }
+                };
+            }
+        };
+        transportService = transport.createCapturingTransportService(Settings.EMPTY, threadPool,
+            interceptor, x -> node, null, Collections.emptySet());
+        transportService.start();
+        transportService.acceptIncomingRequests();
+    }
+
+    @After
+    public void tearDownTransport() {
+        transportService.close();
+        ThreadPool.terminate(threadPool, 30, TimeUnit.SECONDS);
+    }
+
+    public void testRequestsToTheSameShardCopyAreBatched() throws Exception {
+        final int numRequests = randomIntBetween(2, 10);
+        final ReplicaRequestBatcher<TestRequest> batcher = newBatcher(TimeValue.timeValueHours(1), numRequests);
+        final List<PlainActionFuture<ReplicationOperation.ReplicaResponse>> listeners = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            final PlainActionFuture<ReplicationOperation.ReplicaResponse> listener = new PlainActionFuture<>();
+            batcher.add(node, newReplicaRequest("allocation"), listener);
+            listeners.add(listener);
+            if (i < numRequests - 1) {
+                assertThat(transport.capturedRequests(), arrayWithSize(0));
+            }
+        }
+
+        final CapturingTransport.CapturedRequest[] captures = transport.getCapturedRequestsAndClear();
+        assertThat(captures, arrayWithSize(1));
+        assertThat(captures[0].action, equalTo(BATCH_ACTION));
+        final BatchedReplicaRequest<?> batch = (BatchedReplicaRequest<?>) captures[0].request;
+        assertThat(batch.requests().size(), equalTo(numRequests));
+
+        final ReplicaResponse[] responses = new ReplicaResponse[numRequests];
+        final Exception[] failures = new Exception[numRequests];
+        for (int i = 0; i < numRequests; i++) {
+            if (randomBoolean()) {
+                responses[i] = new ReplicaResponse(randomNonNegativeLong(), randomNonNegativeLong());
+            } else {
+                failures[i] = new ElasticsearchException("simulated");
+            }
+        }
+        transport.handleResponse(captures[0].requestId, new BatchedReplicaResponse(responses, failures));
+        for (int i = 0; i < numRequests; i++) {
+            assertTrue(listeners.get(i).isDone());
+            if (responses[i] != null) {
+                assertThat(listeners.get(i).get(), equalTo(responses[i]));
+            } else {
+                final ExecutionException e = expectThrows(ExecutionException.class, listeners.get(i)::get);
+                assertThat(e.getCause(), instanceOf(RemoteTransportException.class));
+                assertThat(e.getCause().getCause(), equalTo(failures[i]));
+            }
+        }
+    }
+
+    public void testRequestsToDifferentShardCopiesAreNotBatchedTogether() {
+        final ReplicaRequestBatcher<TestRequest> batcher = newBatcher(TimeValue.timeValueHours(1), 2);
+        batcher.add(node, newReplicaRequest("first"), new PlainActionFuture<>());
+        batcher.add(node, newReplicaRequest("second"), new PlainActionFuture<>());
+        assertThat(transport.capturedRequests(), arrayWithSize(0));
+        batcher.add(node, newReplicaRequest("second"), new PlainActionFuture<>());
+        final CapturingTransport.CapturedRequest[] captures = transport.getCapturedRequestsAndClear();
+        assertThat(captures, arrayWithSize(1));
+        final BatchedReplicaRequest<?> batch = (BatchedReplicaRequest<?>) captures[0].request;
+        assertThat(batch.requests().size(), equalTo(2));
+        for (ConcreteReplicaRequest<?> request : batch.requests()) {
+            assertThat(request.getTargetAllocationID(), equalTo("second"));
+        }
+    }
+
+    public void testRequestsWithDifferentHeadersAreNotBatchedTogether() {
+        final ReplicaRequestBatcher<TestRequest> batcher = newBatcher(TimeValue.timeValueHours(1), 2);
+        final ThreadContext threadContext = threadPool.getThreadContext();
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.putHeader("user", "first");
+            batcher.add(node, newReplicaRequest("allocation"), new PlainActionFuture<>());
+        }
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.putHeader("user", "second");
+            batcher.add(node, newReplicaRequest("allocation"), new PlainActionFuture<>());
+        }
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.markAsSystemContext();
+            threadContext.putHeader("user", "second");
+            batcher.add(node, newReplicaRequest("allocation"), new PlainActionFuture<>());
+        }
+        assertThat(transport.capturedRequests(), arrayWithSize(0));
+
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.putHeader("user", "second");
+            batcher.add(node, newReplicaRequest("allocation"), new PlainActionFuture<>());
+        }
+        final CapturingTransport.CapturedRequest[] captures = transport.getCapturedRequestsAndClear();
+        assertThat(captures, arrayWithSize(1));
+        assertThat(captures[0].action, equalTo(BATCH_ACTION));
+        assertThat(((BatchedReplicaRequest<?>) captures[0].request).requests().size(), equalTo(2));
+        // the batch is sent with the headers of its requests
+        assertThat(sentHeaders, equalTo(Collections.singletonList(Collections.singletonMap("user", "second"))));
+    }
+
+    public void testBatchIsSentWithTheHeadersOfItsRequests() throws Exception {
+        final int numRequests = randomIntBetween(1, 3);
+        final ReplicaRequestBatcher<TestRequest> batcher = newBatcher(TimeValue.timeValueMillis(randomIntBetween(1, 50)), 100);
+        final ThreadContext threadContext = threadPool.getThreadContext();
+        final String user = randomAlphaOfLength(8);
+        for (int i = 0; i < numRequests; i++) {
+            try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+                threadContext.putHeader("user", user);
+                batcher.add(node, newReplicaRequest("allocation"), new PlainActionFuture<>());
+            }
+        }
+        // the batch is sent by a scheduled task once the window elapsed, still with the headers of its requests
+        assertBusy(() -> assertThat(transport.capturedRequests(), arrayWithSize(1)));
+        assertThat(sentHeaders, equalTo(Collections.singletonList(Collections.singletonMap("user", user))));
+    }
+
+    public void testBatchIsSentOnceTheWindowElapsed() throws Exception {
+        final ReplicaRequestBatcher<TestRequest> batcher = newBatcher(TimeValue.timeValueMillis(randomIntBetween(1, 50)), 100);
+        final int numRequests = randomIntBetween(1, 3);
+        final List<PlainActionFuture<ReplicationOperation.ReplicaResponse>> listeners = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            final PlainActionFuture<ReplicationOperation.ReplicaResponse> listener = new PlainActionFuture<>();
+            batcher.add(node, newReplicaRequest("allocation"), listener);
+            listeners.add(listener);
+        }
+        assertBusy(() -> assertThat(transport.capturedRequests(), arrayWithSize(1)));
+        final CapturingTransport.CapturedRequest capture = transport.getCapturedRequestsAndClear()[0];
+        if (numRequests == 1) {
+            // a batch of a single request is sent as a regular replica request
+            assertThat(capture.action, equalTo(REPLICA_ACTION));
+            assertThat(capture.request, instanceOf(ConcreteReplicaRequest.class));
+        } else {
+            assertThat(capture.action, equalTo(BATCH_ACTION));
+        }
+        transport.handleRemoteError(capture.requestId, new ElasticsearchException("simulated"));
+        for (PlainActionFuture<ReplicationOperation.ReplicaResponse> listener : listeners) {
+            final ExecutionException e = expectThrows(ExecutionException.class, listener::get);
+            assertThat(e.getCause(), instanceOf(RemoteTransportException.class));
+        }
+    }
+
+    public void testSerializeResponse() throws Exception {
+        final int numRequests = randomIntBetween(0, 10);
+        final ReplicaResponse[] responses = new ReplicaResponse[numRequests];
+        final Exception[] failures = new Exception[numRequests];
+        for (int i = 0; i < numRequests; i++) {
+            if (randomBoolean()) {
+                responses[i] = new ReplicaResponse(randomNonNegativeLong(), randomNonNegativeLong());
+            } else {
+                failures[i] = new ElasticsearchException("simulated [" + i + "]");
+            }
+        }
+        final BatchedReplicaResponse response = new BatchedReplicaResponse(responses, failures);
+        final BatchedReplicaResponse deserialized = new BatchedReplicaResponse();
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            response.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                deserialized.readFrom(in);
+            }
+        }
+        assertThat(deserialized.size(), equalTo(numRequests));
+        for (int i = 0; i < numRequests; i++) {
+            if (responses[i] != null) {
+                assertThat(deserialized.getResponse(i).localCheckpoint(), equalTo(responses[i].localCheckpoint()));
+                assertThat(deserialized.getResponse(i).globalCheckpoint(), equalTo(responses[i].globalCheckpoint()));
+                assertNull(deserialized.getFailure(i));
+            } else {
+                assertNull(deserialized.getResponse(i));
+                assertThat(deserialized.getFailure(i).getMessage(), equalTo(failures[i].getMessage()));
+            }
+        }
+    }
+
+    public void testSerializeRequest() throws Exception {
+        final int numRequests = randomIntBetween(0, 10);
+        final List<ConcreteReplicaRequest<TestRequest>> requests = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            requests.add(newReplicaRequest(randomAlphaOfLength(8)));
+        }
+        final BatchedReplicaRequest<TestRequest> deserialized = new BatchedReplicaRequest<>(TestRequest::new);
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            new BatchedReplicaRequest<>(requests).writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                deserialized.readFrom(in);
+            }
+        }
+        assertThat(deserialized.requests().size(), equalTo(numRequests));
+        for (int i = 0; i < numRequests; i++) {
+            final ConcreteReplicaRequest<TestRequest> expected = requests.get(i);
+            final ConcreteReplicaRequest<TestRequest> actual = deserialized.requests().get(i);
+            assertThat(actual.getTargetAllocationID(), equalTo(expected.getTargetAllocationID()));
+            assertThat(actual.getPrimaryTerm(), equalTo(expected.getPrimaryTerm()));
+            assertThat(actual.getGlobalCheckpoint(), equalTo(expected.getGlobalCheckpoint()));
+            assertThat(actual.getMaxSeqNoOfUpdatesOrDeletes(), equalTo(expected.getMaxSeqNoOfUpdatesOrDeletes()));
+            assertThat(actual.getRequest().shardId(), equalTo(expected.getRequest().shardId()));
+        }
+    }
+
+    public void testBatchIndices() {
+        final List<ConcreteReplicaRequest<TestRequest>> requests = new ArrayList<>();
+        for (int i = 0, numRequests = randomIntBetween(1, 10); i < numRequests; i++) {
+            requests.add(newReplicaRequest(randomAlphaOfLength(8)));
+        }
+        // a batch is authorized against the indices of its requests
+        assertThat(new BatchedReplicaRequest<>(requests).indices(), arrayContaining("test"));
+    }
+
+    private ReplicaRequestBatcher<TestRequest> newBatcher(TimeValue window, int maxRequests) {
+        return new ReplicaRequestBatcher<>(transportService, threadPool, REPLICA_ACTION, BATCH_ACTION, TransportRequestOptions.EMPTY,
+            window, maxRequests);
+    }
+
+    private static ConcreteReplicaRequest<TestRequest> newReplicaRequest(String allocationId) {
+        return new ConcreteReplicaRequest<>(new TestRequest(), allocationId, randomNonNegativeLong(), randomNonNegativeLong(),
+            randomNonNegativeLong());
+    }
+
+    private static class TestRequest extends ReplicatedWriteRequest<TestRequest> {
+        TestRequest() {
+            setShardId(new ShardId("test", "_na_", 0));
+            index("test");
+        }
+
+        @Override
+        public String toString() {
+            return "TestRequest{}";
+        }
+    }
+}
@@ -19,18 +19,22 @@
 
 package org.elasticsearch.action.support.replication;
 
+import org.apache.lucene.store.AlreadyClosedException;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.support.WriteResponse;
 import org.elasticsearch.action.support.replication.ReplicationOperation.ReplicaResponse;
+import org.elasticsearch.action.support.replication.TransportReplicationAction.ConcreteReplicaRequest;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.RoutingNode;
 import org.elasticsearch.cluster.routing.ShardRouting;
@@ -39,6 +43,7 @@ import org.elasticsearch.cluster.routing.TestShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.shard.IndexShard;
@@ -49,10 +54,12 @@ import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.node.NodeClosedException;
 import org.elasticsearch.test.ClusterServiceUtils;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
 import org.elasticsearch.test.transport.CapturingTransport;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportChannel;
 import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportResponse;
 import org.elasticsearch.transport.TransportService;
@@ -62,15 +69,23 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.elasticsearch.test.ClusterServiceUtils.createClusterService;
@@ -347,6 +362,221 @@ public class TransportWriteActionTests extends ESTestCase {
         }
     }
 
+    public void testReplicaBatchRespondsPerEntryAndSyncsTranslogOnce() throws Exception {
+        final int numRequests = randomIntBetween(1, 10);
+        final List<Translog.Location> locations = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            locations.add(new Translog.Location(1, i * 100, 50));
+        }
+        Collections.shuffle(locations, random());
+        final boolean[] failed = new boolean[numRequests];
+        final long[] globalCheckpoints = new long[numRequests];
+        final List<ConcreteReplicaRequest<TestRequest>> requests = new ArrayList<>();
+        final AtomicLong localCheckpoint = new AtomicLong(-1);
+        final AtomicLong globalCheckpoint = new AtomicLong(-1);
+        final ShardRouting replica = mockBatchReplica(localCheckpoint, globalCheckpoint);
+        final Map<TestRequest, Integer> slots = new IdentityHashMap<>();
+        for (int i = 0; i < numRequests; i++) {
+            failed[i] = rarely();
+            globalCheckpoints[i] = randomLongBetween(-1, numRequests);
+            final TestRequest request = new TestRequest();
+            slots.put(request, i);
+            requests.add(new ConcreteReplicaRequest<>(request, replica.allocationId().getId(), 1, globalCheckpoints[i], -1));
+        }
+        final AtomicReference<Consumer<Exception>> syncListener = new AtomicReference<>();
+        final AtomicReference<Translog.Location> syncLocation = new AtomicReference<>();
+        final BatchingTestAction action = newBatchingAction(new CapturingTransport(), request -> {
+            final int slot = slots.get(request);
+            if (failed[slot]) {
+                throw new ElasticsearchException("simulated");
+            }
+            localCheckpoint.incrementAndGet();
+            return locations.get(slot);
+        }, (location, listener) -> {
+            assertTrue("the translog must be synced once per batch", syncLocation.compareAndSet(null, location));
+            syncListener.set(listener);
+        });
+
+        final PlainActionFuture<BatchedReplicaResponse> listener = new PlainActionFuture<>();
+        action.new ReplicaBatchTransportHandler()
+            .messageReceived(new BatchedReplicaRequest<>(requests), createBatchChannel(listener), null);
+
+        Translog.Location maxLocation = null;
+        for (int i = 0; i < numRequests; i++) {
+            final TestRequest request = requests.get(i).getRequest();
+            assertTrue(request.isTranslogSyncDeferred());
+            if (failed[i]) {
+                assertNull(request.getDeferredSyncLocation());
+            } else {
+                assertThat(request.getDeferredSyncLocation(), equalTo(locations.get(i)));
+                if (maxLocation == null || locations.get(i).compareTo(maxLocation) > 0) {
+                    maxLocation = locations.get(i);
+                }
+            }
+        }
+        if (maxLocation == null) {
+            assertNull("a batch without successful operations has nothing to sync", syncLocation.get());
+        } else {
+            assertFalse("the batch must not respond before the translog is synced", listener.isDone());
+            assertThat(syncLocation.get(), equalTo(maxLocation));
+            syncListener.get().accept(null);
+        }
+
+        assertTrue(listener.isDone());
+        final BatchedReplicaResponse response = listener.get();
+        assertThat(response.size(), equalTo(numRequests));
+        long expectedLocalCheckpoint = -1;
+        long expectedGlobalCheckpoint = -1;
+        for (int i = 0; i < numRequests; i++) {
+            expectedGlobalCheckpoint = Math.max(expectedGlobalCheckpoint, globalCheckpoints[i]);
+            if (failed[i]) {
+                assertNull(response.getResponse(i));
+                assertThat(response.getFailure(i).getMessage(), equalTo("simulated"));
+            } else {
+                expectedLocalCheckpoint++;
+                assertNull(response.getFailure(i));
+                // every entry reports the checkpoints of the replica right after its operation
+                assertThat(response.getResponse(i).localCheckpoint(), equalTo(expectedLocalCheckpoint));
+                assertThat(response.getResponse(i).globalCheckpoint(), equalTo(expectedGlobalCheckpoint));
+            }
+        }
+    }
+
+    public void testReplicaBatchFailsSuccessfulEntriesIfTranslogSyncFails() throws Exception {
+        final int numRequests = randomIntBetween(2, 10);
+        final AtomicLong localCheckpoint = new AtomicLong(-1);
+        final AtomicLong globalCheckpoint = new AtomicLong(-1);
+        final ShardRouting replica = mockBatchReplica(localCheckpoint, globalCheckpoint);
+        final List<ConcreteReplicaRequest<TestRequest>> requests = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            requests.add(new ConcreteReplicaRequest<>(new TestRequest(), replica.allocationId().getId(), 1, -1, -1));
+        }
+        // the first request fails on its own, all the others only fail because the translog cannot be synced
+        final TestRequest failingRequest = requests.get(0).getRequest();
+        final IOException syncFailure = new IOException("simulated sync failure");
+        final boolean syncThrows = randomBoolean();
+        final AtomicInteger syncs = new AtomicInteger();
+        final BatchingTestAction action = newBatchingAction(new CapturingTransport(), request -> {
+            if (request == failingRequest) {
+                throw new ElasticsearchException("simulated");
+            }
+            return new Translog.Location(1, localCheckpoint.incrementAndGet() * 100, 50);
+        }, (location, listener) -> {
+            syncs.incrementAndGet();
+            if (syncThrows) {
+                throw new AlreadyClosedException("simulated closed translog");
+            }
+            listener.accept(syncFailure);
+        });
+
+        final PlainActionFuture<BatchedReplicaResponse> listener = new PlainActionFuture<>();
+        action.new ReplicaBatchTransportHandler()
+            .messageReceived(new BatchedReplicaRequest<>(requests), createBatchChannel(listener), null);
+
+        assertThat(syncs.get(), equalTo(1));
+        assertTrue(listener.isDone());
+        final BatchedReplicaResponse response = listener.get();
+        assertThat(response.size(), equalTo(numRequests));
+        assertNull(response.getResponse(0));
+        assertThat(response.getFailure(0).getMessage(), equalTo("simulated"));
+        for (int i = 1; i < numRequests; i++) {
+            assertNull("an operation that is not durable must not be acknowledged", response.getResponse(i));
+            if (syncThrows) {
+                assertThat(response.getFailure(i), instanceOf(AlreadyClosedException.class));
+            } else {
+                assertThat(response.getFailure(i), equalTo(syncFailure));
+            }
+        }
+    }
+
+    public void testReplicaRequestsAreOnlyBatchedForNodesThatSupportIt() throws Exception {
+        final DiscoveryNode oldNode = new DiscoveryNode("old", buildNewFakeTransportAddress(),
+            VersionUtils.randomVersionBetween(random(), Version.V_6_0_0, VersionUtils.getPreviousVersion(Version.V_7_0_0)));
+        final DiscoveryNode newNode = new DiscoveryNode("new", buildNewFakeTransportAddress(), Version.CURRENT);
+        final CapturingTransport transport = new CapturingTransport();
+        final BatchingTestAction action =
+            newBatchingAction(transport, request -> location, (location, listener) -> listener.accept(null));
+
+        final PlainActionFuture<ReplicaResponse> oldNodeListener = new PlainActionFuture<>();
+        action.sendReplicaRequest(new ConcreteReplicaRequest<>(new TestRequest(), "old", 1, -1, -1), oldNode, oldNodeListener);
+        CapturingTransport.CapturedRequest[] captures = transport.getCapturedRequestsAndClear();
+        assertThat(captures, arrayWithSize(1));
+        assertThat(captures[0].action, equalTo("internal:testAction[r]"));
+        assertThat(captures[0].request, instanceOf(ConcreteReplicaRequest.class));
+        final TransportReplicationAction.ReplicaResponse response =
+            new TransportReplicationAction.ReplicaResponse(randomLong(), randomLong());
+        transport.handleResponse(captures[0].requestId, response);
+        assertThat(oldNodeListener.get(), equalTo(response));
+
+        final PlainActionFuture<ReplicaResponse> newNodeListener = new PlainActionFuture<>();
+        action.sendReplicaRequest(new ConcreteReplicaRequest<>(new TestRequest(), "new", 1, -1, -1), newNode, newNodeListener);
+        captures = transport.getCapturedRequestsAndClear();
+        assertThat(captures, arrayWithSize(1));
+        assertThat(captures[0].action, equalTo("internal:testAction[r][batch]"));
+        assertThat(((BatchedReplicaRequest<?>) captures[0].request).requests().size(), equalTo(1));
+    }
+
+    private BatchingTestAction newBatchingAction(CapturingTransport transport, Function<TestRequest, Translog.Location> replicaOperation,
+                                                 BiConsumer<Translog.Location, Consumer<Exception>> translogSync) {
+        final Settings settings = Settings.builder()
+            .put(TransportWriteAction.REPLICA_BATCH_WINDOW_SETTING.getKey(), TimeValue.timeValueHours(1))
+            .put(TransportWriteAction.REPLICA_BATCH_MAX_REQUESTS_SETTING.getKey(), 1)
+            .build();
+        final TransportService transportService = transport.createCapturingTransportService(settings, threadPool,
+            TransportService.NOOP_TRANSPORT_INTERCEPTOR, x -> clusterService.localNode(), null, Collections.emptySet());
+        transportService.start();
+        transportService.acceptIncomingRequests();
+        final ShardStateAction shardStateAction = new ShardStateAction(clusterService, transportService, null, null, threadPool);
+        return new BatchingTestAction(settings, transportService, clusterService, shardStateAction, threadPool,
+            replicaOperation, translogSync);
+    }
+
+    /**
+     * Stubs {@link #indexShard} as a started replica that syncs its translog on every request and tracks its checkpoints in the
+     * given holders, the global checkpoint advancing with the ones that come with the replica requests.
+     */
+    private ShardRouting mockBatchReplica(AtomicLong localCheckpoint, AtomicLong globalCheckpoint) {
+        final ShardRouting routing =
+            TestShardRouting.newShardRouting(new ShardId("test", "test", 1), "node", false, ShardRoutingState.STARTED);
+        when(indexShard.shardId()).thenReturn(routing.shardId());
+        when(indexShard.routingEntry()).thenReturn(routing);
+        when(indexShard.getTranslogDurability()).thenReturn(Translog.Durability.REQUEST);
+        when(indexShard.getLocalCheckpoint()).thenAnswer(invocation -> localCheckpoint.get());
+        when(indexShard.getGlobalCheckpoint()).thenAnswer(invocation -> globalCheckpoint.get());
+        doAnswer(invocation -> {
+            globalCheckpoint.accumulateAndGet((Long) invocation.getArguments()[1], Math::max);
+            ActionListener<Releasable> callback = (ActionListener<Releasable>) invocation.getArguments()[3];
+            callback.onResponse(() -> {});
+            return null;
+        }).when(indexShard)
+            .acquireReplicaOperationPermit(anyLong(), anyLong(), anyLong(), any(ActionListener.class), anyString(), anyObject());
+        return routing;
+    }
+
+    private static TransportChannel createBatchChannel(PlainActionFuture<BatchedReplicaResponse> listener) {
+        return new TransportChannel() {
+            @Override
+            public String getProfileName() {
+                return "";
+            }
+
+            @Override
+            public String getChannelType() {
+                return "replica_batch_test";
+            }
+
+            @Override
+            public void sendResponse(TransportResponse response) {
+                listener.onResponse((BatchedReplicaResponse) response);
+            }
+
+            @Override
+            public void sendResponse(Exception exception) {
+                listener.onFailure(exception);
+            }
+        };
+    }
+
     private class TestAction extends TransportWriteAction<TestRequest, TestRequest, TestResponse> {
 
         private final boolean withDocumentFailureOnPrimary;
@@ -406,6 +636,44 @@ public class TransportWriteActionTests extends ESTestCase {
         }
     }
 
+    /**
+     * A test action that batches its replica requests and performs them on {@link #indexShard}.
+     */
+    private class BatchingTestAction extends TestAction {
+
+        private final Function<TestRequest, Translog.Location> replicaOperation;
+        private final BiConsumer<Translog.Location, Consumer<Exception>> translogSync;
+
+        BatchingTestAction(Settings settings, TransportService transportService, ClusterService clusterService,
+                           ShardStateAction shardStateAction, ThreadPool threadPool,
+                           Function<TestRequest, Translog.Location> replicaOperation,
+                           BiConsumer<Translog.Location, Consumer<Exception>> translogSync) {
+            super(settings, "internal:testAction", transportService, clusterService, shardStateAction, threadPool);
+            this.replicaOperation = replicaOperation;
+            this.translogSync = translogSync;
+        }
+
+        @Override
+        protected boolean supportsReplicaBatching() {
+            return true;
+        }
+
+        @Override
+        protected IndexShard getIndexShard(ShardId shardId) {
+            return indexShard;
+        }
+
+        @Override
+        protected WriteReplicaResult<TestRequest> shardOperationOnReplica(TestRequest request, IndexShard replica) {
+            return new WriteReplicaResult<>(request, replicaOperation.apply(request), null, replica, logger);
+        }
+
+        @Override
+        void syncTranslog(IndexShard indexShard, Translog.Location location, Consumer<Exception> syncListener) {
+            translogSync.accept(location, syncListener);
+        }
+    }
+
     final IndexService mockIndexService(final IndexMetaData indexMetaData, ClusterService clusterService) {
         final IndexService indexService = mock(IndexService.class);
         when(indexService.getShard(anyInt())).then(invocation -> {
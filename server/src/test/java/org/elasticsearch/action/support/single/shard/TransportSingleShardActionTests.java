@@ -0,0 +1,302 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.action.support.single.shard;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.replication.ClusterStateCreationUtils;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.routing.OperationRouting;
+import org.elasticsearch.cluster.routing.PlainShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.ShardsIterator;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.ResponseCollectorService;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.transport.CapturingTransport;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportInterceptor;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.elasticsearch.transport.TransportService;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.elasticsearch.test.ClusterServiceUtils.createClusterService;
+import static org.elasticsearch.test.ClusterServiceUtils.setState;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TransportSingleShardActionTests extends ESTestCase {
+
+    private static ThreadPool THREAD_POOL;
+
+    private ClusterService clusterService;
+    private CapturingTransport transport;
+    private TransportService transportService;
+    private ResponseCollectorService responseCollectorService;
+    private TestTransportSingleShardAction action;
+    private List<ShardRouting> copies;
+    // the headers of the thread context each request was sent in
+    private List<Map<String, String>> sentHeaders;
+
+    public static class Request extends SingleShardRequest<Request> {
+        public Request() {
+        }
+
+        Request(String index) {
+            super(index);
+        }
+
+        @Override
+        public ActionRequestValidationException validate() {
+            return null;
+        }
+    }
+
+    public static class Response extends ActionResponse {
+        public Response() {
+        }
+    }
+
+    class TestTransportSingleShardAction extends TransportSingleShardAction<Request, Response> {
+
+        TestTransportSingleShardAction(TransportService transportService, ResponseCollectorService responseCollectorService) {
+            super("indices:data/read/test", THREAD_POOL, TransportSingleShardActionTests.this.clusterService, transportService,
+                new ActionFilters(new HashSet<>()), new IndexNameExpressionResolver(), Request::new,
+                ThreadPool.Names.SAME, responseCollectorService);
+        }
+
+        @Override
+        protected Response shardOperation(Request request, ShardId shardId) {
+            throw new UnsupportedOperationException("Not implemented in test class");
+        }
+
+        @Override
+        protected Response newResponse() {
+            return new Response();
+        }
+
+        @Override
+        protected boolean resolveIndex(Request request) {
+            return false;
+        }
+
+        @Override
+        protected ShardsIterator shards(ClusterState state, InternalRequest request) {
+            return new PlainShardIterator(copies.get(0).shardId(), copies);
+        }
+    }
+
+    /**
+     * Records every response and failure so that tests can check that the listener is notified exactly once.
+     */
+    static class RecordingListener implements ActionListener<Response> {
+        final List<Object> results = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onResponse(Response response) {
+            results.add(response);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            results.add(e);
+        }
+    }
+
+    @BeforeClass
+    public static void startThreadPool() {
+        THREAD_POOL = new TestThreadPool(TransportSingleShardActionTests.class.getSimpleName());
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        transport = new CapturingTransport();
+        clusterService = createClusterService(THREAD_POOL);
+        sentHeaders = new CopyOnWriteArrayList<>();
+        final TransportInterceptor interceptor = new TransportInterceptor() {
+            @Override
+            public AsyncSender interceptSender(AsyncSender sender) {
+                return new AsyncSender() {
+                    @Override
+                    public <T extends TransportResponse> void sendRequest(Transport.Connection connection, String action,
+                                                                          TransportRequest request, TransportRequestOptions options,
+                                                                          TransportResponseHandler<T> handler) {
+                        sentHeaders.add(THREAD_POOL.getThreadContext().getHeaders());
+                        sender.sendRequest(connection, action, request, options, handler);
+                    }
+                };
+            }
+        };
+        transportService = transport.createCapturingTransportService(clusterService.getSettings(), THREAD_POOL,
+            interceptor, x -> clusterService.localNode(), null, Collections.emptySet());
+        transportService.start();
+        transportService.acceptIncomingRequests();
+        responseCollectorService = new ResponseCollectorService(clusterService);
+        action = new TestTransportSingleShardAction(transportService, responseCollectorService);
+
+        final ClusterState state = ClusterStateCreationUtils.state("test", false, ShardRoutingState.STARTED,
+            ShardRoutingState.STARTED, ShardRoutingState.STARTED);
+        setState(clusterService, state);
+        // two copies on remote nodes, so that all requests are captured by the transport
+        copies = state.routingTable().index("test").shard(0).shards().stream()
+            .filter(copy -> copy.currentNodeId().equals(state.nodes().getLocalNodeId()) == false)
+            .limit(2)
+            .collect(Collectors.toList());
+        assertThat(copies.size(), equalTo(2));
+        // copies usually respond within a millisecond
+        for (ShardRouting copy : copies) {
+            for (int i = 0; i < 100; i++) {
+                responseCollectorService.addShardCopyResponseTime(copy.shardId(), copy.currentNodeId(), TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        clusterService.close();
+        transportService.close();
+    }
+
+    @AfterClass
+    public static void destroyThreadPool() {
+        ThreadPool.terminate(THREAD_POOL, 30, TimeUnit.SECONDS);
+        // since static must set to null to be eligible for collection
+        THREAD_POOL = null;
+    }
+
+    private void enableHedgedReads(boolean hedgedReads, boolean adaptiveReplicaSelection) {
+        clusterService.getClusterSettings().applySettings(Settings.builder()
+            .put(OperationRouting.HEDGED_READS_ENABLED_SETTING.getKey(), hedgedReads)
+            .put(OperationRouting.USE_ADAPTIVE_REPLICA_SELECTION_SETTING.getKey(), adaptiveReplicaSelection)
+            .build());
+    }
+
+    private CapturingTransport.CapturedRequest[] sendAndAwaitHedgedRead(RecordingListener listener) throws Exception {
+        action.execute(new Request("test"), listener);
+        assertBusy(() -> assertThat(transport.capturedRequests().length, equalTo(2)));
+        final CapturingTransport.CapturedRequest[] requests = transport.capturedRequests();
+        assertThat(requests[0].node.getId(), equalTo(copies.get(0).currentNodeId()));
+        assertThat(requests[1].node.getId(), equalTo(copies.get(1).currentNodeId()));
+        assertThat(listener.results, empty());
+        return requests;
+    }
+
+    public void testHedgedReadAfterDelay() throws Exception {
+        enableHedgedReads(true, true);
+        final RecordingListener listener = new RecordingListener();
+        final CapturingTransport.CapturedRequest[] requests = sendAndAwaitHedgedRead(listener);
+        final Response response = new Response();
+        transport.handleResponse(requests[0].requestId, response);
+        assertThat(listener.results, equalTo(Collections.singletonList(response)));
+    }
+
+    public void testHedgedReadInThreadContextOfRequest() throws Exception {
+        enableHedgedReads(true, true);
+        final RecordingListener listener = new RecordingListener();
+        final ThreadContext threadContext = THREAD_POOL.getThreadContext();
+        try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+            threadContext.putHeader("test_header", "test_value");
+            sendAndAwaitHedgedRead(listener);
+        }
+        assertThat(sentHeaders.size(), equalTo(2));
+        for (Map<String, String> headers : sentHeaders) {
+            assertThat(headers.get("test_header"), equalTo("test_value"));
+        }
+    }
+
+    public void testFirstResponseWins() throws Exception {
+        enableHedgedReads(true, true);
+        final RecordingListener listener = new RecordingListener();
+        final CapturingTransport.CapturedRequest[] requests = sendAndAwaitHedgedRead(listener);
+        final Response hedgedResponse = new Response();
+        transport.handleResponse(requests[1].requestId, hedgedResponse);
+        assertThat(listener.results.size(), equalTo(1));
+        assertThat(listener.results.get(0), sameInstance(hedgedResponse));
+
+        // the late response of the first copy, or its failure, is ignored
+        if (randomBoolean()) {
+            transport.handleResponse(requests[0].requestId, new Response());
+        } else {
+            transport.handleRemoteError(requests[0].requestId, new ElasticsearchException("simulated"));
+        }
+        assertThat(listener.results.size(), equalTo(1));
+        assertThat(listener.results.get(0), sameInstance(hedgedResponse));
+        assertThat(transport.capturedRequests().length, equalTo(2));
+    }
+
+    public void testBothCopiesFail() throws Exception {
+        enableHedgedReads(true, true);
+        final RecordingListener listener = new RecordingListener();
+        final CapturingTransport.CapturedRequest[] requests = sendAndAwaitHedgedRead(listener);
+        final int firstFailure = randomIntBetween(0, 1);
+        transport.handleRemoteError(requests[firstFailure].requestId, new ElasticsearchException("simulated"));
+        // the other copy may still respond
+        assertThat(listener.results, empty());
+        transport.handleRemoteError(requests[1 - firstFailure].requestId, new ElasticsearchException("simulated"));
+        assertThat(listener.results.size(), equalTo(1));
+        assertTrue(listener.results.get(0) instanceof Exception);
+        assertThat(transport.capturedRequests().length, equalTo(2));
+    }
+
+    public void testHedgedReadsDisabled() throws Exception {
+        if (randomBoolean()) {
+            enableHedgedReads(false, true);
+        } else {
+            // hedged reads rely on the ranking of adaptive replica selection
+            enableHedgedReads(true, false);
+        }
+        final RecordingListener listener = new RecordingListener();
+        action.execute(new Request("test"), listener);
+        assertFalse(awaitBusy(() -> transport.capturedRequests().length > 1, 100, TimeUnit.MILLISECONDS));
+        final CapturingTransport.CapturedRequest[] requests = transport.capturedRequests();
+        assertThat(requests.length, equalTo(1));
+        final Response response = new Response();
+        transport.handleResponse(requests[0].requestId, response);
+        assertThat(listener.results, equalTo(Collections.singletonList(response)));
+    }
+}
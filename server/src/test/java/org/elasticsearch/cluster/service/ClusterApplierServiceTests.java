@@ -22,8 +22,11 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateApplier;
+import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.cluster.ClusterStateObserver;
 import org.elasticsearch.cluster.LocalNodeMasterListener;
 import org.elasticsearch.cluster.NodeConnectionsService;
@@ -46,6 +49,7 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -53,6 +57,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
 import static org.elasticsearch.test.ClusterServiceUtils.setState;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 
 public class ClusterApplierServiceTests extends ESTestCase {
@@ -405,6 +410,68 @@ public class ClusterApplierServiceTests extends ESTestCase {
         assertTrue(applierCalled.get());
     }
 
+    public void testRecordsTimeSpentInAppliersAndListeners() throws InterruptedException {
+        clusterApplierService.currentTimeOverride = System.nanoTime();
+        clusterApplierService.addStateApplier(new SlowApplier(TimeValue.timeValueSeconds(2)));
+        clusterApplierService.addListener(new SlowListener(TimeValue.timeValueSeconds(1)));
+
+        final int numStates = randomIntBetween(1, 5);
+        for (int i = 0; i < numStates; i++) {
+            CountDownLatch latch = new CountDownLatch(1);
+            clusterApplierService.onNewClusterState("test", () -> ClusterState.builder(clusterApplierService.state()).build(),
+                new ClusterApplyListener() {
+                    @Override
+                    public void onSuccess(String source) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(String source, Exception e) {
+                        fail();
+                    }
+                });
+            latch.await();
+        }
+
+        final List<ClusterApplierStats.Recording> recordings = clusterApplierService.stats().getRecordings();
+        final ClusterApplierStats.Recording applier = recordings.get(0);
+        assertThat(applier.getName(), equalTo(SlowApplier.class.getName()));
+        assertThat(applier.getCount(), equalTo((long) numStates));
+        assertThat(applier.getTotalTime(), equalTo(TimeValue.timeValueSeconds(2 * numStates)));
+        assertThat(applier.getMaxTime(), equalTo(TimeValue.timeValueSeconds(2)));
+        final ClusterApplierStats.Recording listener = recordings.get(1);
+        assertThat(listener.getName(), equalTo(SlowListener.class.getName()));
+        assertThat(listener.getCount(), equalTo((long) numStates));
+        assertThat(listener.getTotalTime(), equalTo(TimeValue.timeValueSeconds(numStates)));
+        assertThat(listener.getMaxTime(), equalTo(TimeValue.timeValueSeconds(1)));
+    }
+
+    private class SlowApplier implements ClusterStateApplier {
+        private final TimeValue time;
+
+        SlowApplier(TimeValue time) {
+            this.time = time;
+        }
+
+        @Override
+        public void applyClusterState(ClusterChangedEvent event) {
+            clusterApplierService.currentTimeOverride += time.nanos();
+        }
+    }
+
+    private class SlowListener implements ClusterStateListener {
+        private final TimeValue time;
+
+        SlowListener(TimeValue time) {
+            this.time = time;
+        }
+
+        @Override
+        public void clusterChanged(ClusterChangedEvent event) {
+            clusterApplierService.currentTimeOverride += time.nanos();
+        }
+    }
+
     static class TimedClusterApplierService extends ClusterApplierService {
 
         public volatile Long currentTimeOverride = null;
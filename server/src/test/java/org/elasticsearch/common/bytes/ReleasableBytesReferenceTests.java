@@ -0,0 +1,83 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.bytes;
+
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ReleasableBytesReferenceTests extends ESTestCase {
+
+    public void testReleasedOnceAllRetainersAreClosed() {
+        final AtomicInteger released = new AtomicInteger();
+        final ReleasableBytesReference reference = new ReleasableBytesReference(new BytesArray(randomByteArrayOfLength(10)),
+            released::incrementAndGet);
+        final ReleasableBytesReference slice = reference.retainedSlice(2, 5);
+        assertThat(slice.length(), equalTo(5));
+        assertThat(slice.get(0), equalTo(reference.get(2)));
+        final Releasable retained = reference.retain();
+        reference.close();
+        slice.close();
+        assertThat(released.get(), equalTo(0));
+        retained.close();
+        assertThat(released.get(), equalTo(1));
+        // releasing twice is a noop
+        retained.close();
+        assertThat(released.get(), equalTo(1));
+    }
+
+    public void testSlicingStreamInput() throws IOException {
+        final byte[] payload = randomByteArrayOfLength(randomIntBetween(1, 100));
+        final BytesStreamOutput out = new BytesStreamOutput();
+        out.writeVInt(42);
+        out.writeBytesReference(new BytesArray(payload));
+        out.writeBytesReference(BytesArray.EMPTY);
+        out.writeString("end");
+        final byte[] bytes = BytesReference.toBytes(out.bytes());
+
+        try (ReleasableBytesReference reference = new ReleasableBytesReference(new BytesArray(bytes), () -> {})) {
+            try (StreamInput in = reference.streamInput()) {
+                assertThat(in.readVInt(), equalTo(42));
+                assertThat(in.readReleasableBytesReference(), equalTo(new BytesArray(payload)));
+            }
+            assertFalse(reference.hasSlices());
+
+            try (StreamInput in = reference.slicingStreamInput()) {
+                assertThat(in.readVInt(), equalTo(42));
+                final BytesReference slice = in.readReleasableBytesReference();
+                assertThat(slice, equalTo(new BytesArray(payload)));
+                assertThat(in.readReleasableBytesReference().length(), equalTo(0));
+                assertThat(in.readString(), equalTo("end"));
+                assertTrue(reference.hasSlices());
+                // the slice shares the bytes of the reference instead of copying them
+                final int index = randomIntBetween(0, payload.length - 1);
+                final int offset = 2; // the payload follows the vint and its length
+                bytes[offset + index]++;
+                assertThat(slice.get(index), equalTo((byte) (payload[index] + 1)));
+            }
+        }
+    }
+}
@@ -47,4 +47,15 @@ public class CacheBuilderTests extends ESTestCase {
         Cache<Object, Object> cache = CacheBuilder.builder().setExpireAfterWrite(timeValue).build();
         assertEquals(timeValue.getNanos(), cache.getExpireAfterWriteNanos());
     }
+
+    public void testSettingAccessBufferingAndFrequencyAdmission() {
+        Cache<Object, Object> cache = CacheBuilder.builder().build();
+        assertFalse(cache.isAccessBuffering());
+        assertFalse(cache.isFrequencyAdmission());
+        final boolean accessBuffering = randomBoolean();
+        final boolean frequencyAdmission = randomBoolean();
+        cache = CacheBuilder.builder().setAccessBuffering(accessBuffering).setFrequencyAdmission(frequencyAdmission).build();
+        assertEquals(accessBuffering, cache.isAccessBuffering());
+        assertEquals(frequencyAdmission, cache.isFrequencyAdmission());
+    }
 }
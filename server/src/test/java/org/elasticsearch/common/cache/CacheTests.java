@@ -49,6 +49,7 @@ import java.util.stream.Collectors;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 public class CacheTests extends ESTestCase {
     private int numberOfEntries;
@@ -943,4 +944,151 @@ public class CacheTests extends ESTestCase {
             assertEquals(RemovalNotification.RemovalReason.INVALIDATED, removalNotifications.get(i).getRemovalReason());
         }
     }
+
+    // with access buffering, hits are applied to the LRU list in batches; once they are applied, the least-recently
+    // used entries must be evicted first, just like without buffering
+    public void testBufferedPromotion() {
+        int maximumWeight = 2 * randomIntBetween(1, numberOfEntries / 2);
+        List<Integer> evictedKeys = new ArrayList<>();
+        Cache<Integer, String> cache =
+                CacheBuilder.<Integer, String>builder()
+                        .setMaximumWeight(maximumWeight)
+                        .setAccessBuffering(true)
+                        .removalListener(notification -> evictedKeys.add(notification.getKey()))
+                        .build();
+        assertTrue(cache.isAccessBuffering());
+        for (int i = 0; i < maximumWeight; i++) {
+            cache.put(i, Integer.toString(i));
+        }
+        for (int i = 0; i < maximumWeight; i += 2) {
+            assertEquals(Integer.toString(i), cache.get(i));
+        }
+        cache.refresh();
+        for (int i = maximumWeight; i < maximumWeight + maximumWeight / 2; i++) {
+            cache.put(i, Integer.toString(i));
+        }
+        List<Integer> expectedEvictions = new ArrayList<>();
+        for (int i = 1; i < maximumWeight; i += 2) {
+            expectedEvictions.add(i);
+        }
+        assertEquals(expectedEvictions, evictedKeys);
+        assertEquals(maximumWeight, cache.count());
+        assertEquals(maximumWeight / 2, cache.stats().getHits());
+    }
+
+    // the read buffers must not keep invalidated or removed entries reachable until the next drain
+    public void testInvalidationDrainsReadBuffers() {
+        Cache<Integer, String> cache = CacheBuilder.<Integer, String>builder().setAccessBuffering(true).build();
+        for (int i = 0; i < 3; i++) {
+            cache.put(i, Integer.toString(i));
+        }
+        // fewer accesses than fit in a read buffer, so they are not drained on their own
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.toString(i), cache.get(i));
+        }
+        assertEquals(3, cache.bufferedAccesses());
+        if (randomBoolean()) {
+            cache.invalidate(0);
+        } else {
+            cache.invalidate(0, "0");
+        }
+        assertEquals(0, cache.bufferedAccesses());
+
+        assertEquals("1", cache.get(1));
+        Iterator<String> values = cache.values().iterator();
+        values.next();
+        values.remove();
+        assertEquals(0, cache.bufferedAccesses());
+
+        assertEquals("2", cache.get(2));
+        cache.invalidateAll();
+        assertEquals(0, cache.bufferedAccesses());
+    }
+
+    // with frequency admission, entries that are inserted once must not evict entries that are accessed frequently
+    public void testFrequencyAdmission() {
+        int maximumWeight = randomIntBetween(1, 10);
+        List<Integer> evictedKeys = new ArrayList<>();
+        Cache<Integer, String> cache =
+                CacheBuilder.<Integer, String>builder()
+                        .setMaximumWeight(maximumWeight)
+                        .setAccessBuffering(randomBoolean())
+                        .setFrequencyAdmission(true)
+                        .removalListener(notification -> evictedKeys.add(notification.getKey()))
+                        .build();
+        assertTrue(cache.isFrequencyAdmission());
+        for (int i = 0; i < maximumWeight; i++) {
+            cache.put(i, Integer.toString(i));
+        }
+        for (int access = 0; access < 10; access++) {
+            for (int i = 0; i < maximumWeight; i++) {
+                assertNotNull(cache.get(i));
+            }
+        }
+        cache.refresh();
+        Set<Integer> expectedEvictions = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            int key = maximumWeight + i;
+            cache.put(key, Integer.toString(key));
+            expectedEvictions.add(key);
+        }
+        assertEquals(expectedEvictions, new HashSet<>(evictedKeys));
+        assertEquals(maximumWeight, cache.count());
+        for (int i = 0; i < maximumWeight; i++) {
+            assertNotNull(cache.get(i));
+        }
+    }
+
+    // test that the cache is not corrupted under lots of concurrent reads and writes when accesses are buffered
+    public void testTortureWithAccessBuffering() throws BrokenBarrierException, InterruptedException {
+        int numberOfThreads = randomIntBetween(2, 32);
+        AtomicLong removals = new AtomicLong();
+        final Cache<Integer, String> cache =
+                CacheBuilder.<Integer, String>builder()
+                        .setMaximumWeight(1000)
+                        .weigher((k, v) -> 2)
+                        .setAccessBuffering(true)
+                        .setFrequencyAdmission(randomBoolean())
+                        .removalListener(notification -> removals.incrementAndGet())
+                        .build();
+
+        CyclicBarrier barrier = new CyclicBarrier(1 + numberOfThreads);
+        for (int i = 0; i < numberOfThreads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    barrier.await();
+                    Random random = new Random(random().nextLong());
+                    for (int j = 0; j < numberOfEntries; j++) {
+                        Integer key = random.nextInt(numberOfEntries);
+                        if (random.nextInt(10) == 0) {
+                            cache.put(key, Integer.toString(j));
+                        } else {
+                            cache.get(key);
+                        }
+                    }
+                    barrier.await();
+                } catch (BrokenBarrierException | InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            thread.start();
+        }
+
+        // wait for all threads to be ready
+        barrier.await();
+        // wait for all threads to finish
+        barrier.await();
+
+        cache.refresh();
+        assertThat(cache.count(), lessThanOrEqualTo(500));
+        assertEquals(2L * cache.count(), cache.weight());
+        List<Integer> keys = new ArrayList<>();
+        cache.keys().forEach(keys::add);
+        assertEquals(cache.count(), keys.size());
+        for (Integer key : keys) {
+            assertNotNull(cache.get(key));
+        }
+        cache.invalidateAll();
+        assertEquals(0, cache.count());
+    }
 }
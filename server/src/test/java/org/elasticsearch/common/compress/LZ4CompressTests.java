@@ -0,0 +1,128 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.compress;
+
+import org.apache.lucene.util.LineFileDocs;
+import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests the LZ4 stream format, see {@link DeflateCompressTests} for the streaming tests of the default compressor.
+ */
+public class LZ4CompressTests extends ESTestCase {
+
+    private final Compressor compressor = new LZ4Compressor();
+
+    public void testRoundTrip() throws IOException {
+        LineFileDocs lineFileDocs = new LineFileDocs(random());
+        for (int i = 0; i < 10; i++) {
+            // text that spans several blocks and has matches across the reads and writes of random lengths
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            int length = TestUtil.nextInt(random(), 1, 3 * LZ4Compressor.BLOCK_SIZE);
+            while (bos.size() < length) {
+                bos.write(lineFileDocs.nextDoc().get("body").getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] bytes = bos.toByteArray();
+            BytesStreamOutput compressed = new BytesStreamOutput();
+            try (StreamOutput os = compressor.streamOutput(compressed)) {
+                int offset = 0;
+                while (offset < bytes.length) {
+                    int len = Math.min(bytes.length - offset, TestUtil.nextInt(random(), 1, 70000));
+                    os.writeBytes(bytes, offset, len);
+                    offset += len;
+                }
+            }
+            ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+            try (StreamInput in = compressor.streamInput(compressed.bytes().streamInput())) {
+                byte[] buffer = new byte[TestUtil.nextInt(random(), 1, 70000)];
+                int len;
+                while ((len = in.read(buffer, 0, buffer.length)) != -1) {
+                    uncompressed.write(buffer, 0, len);
+                }
+            }
+            assertArrayEquals(bytes, uncompressed.toByteArray());
+        }
+        lineFileDocs.close();
+    }
+
+    public void testCompressorDetection() throws IOException {
+        byte[] bytes = new byte[TestUtil.nextInt(random(), 0, 1000)];
+        random().nextBytes(bytes);
+        BytesStreamOutput bos = new BytesStreamOutput();
+        try (StreamOutput os = compressor.streamOutput(bos)) {
+            os.writeBytes(bytes);
+        }
+        assertSame(CompressorFactory.LZ4_COMPRESSOR, CompressorFactory.compressor(bos.bytes()));
+        assertEquals(new BytesArray(bytes), CompressorFactory.uncompress(bos.bytes()));
+    }
+
+    public void testCorruptedInput() throws IOException {
+        byte[] bytes = new byte[TestUtil.nextInt(random(), 100, 100000)];
+        // compressible, but not trivially so
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) random().nextInt(4);
+        }
+        BytesStreamOutput bos = new BytesStreamOutput();
+        try (StreamOutput os = compressor.streamOutput(bos)) {
+            os.writeBytes(bytes);
+        }
+        // truncate the compressed stream somewhere after the header
+        byte[] compressed = BytesReference.toBytes(bos.bytes());
+        int truncatedLength = TestUtil.nextInt(random(), 5, compressed.length - 5);
+        StreamInput in = compressor.streamInput(new BytesArray(compressed, 0, truncatedLength).streamInput());
+        expectThrows(IOException.class, () -> {
+            byte[] read = new byte[bytes.length];
+            in.readBytes(read, 0, read.length);
+        });
+    }
+
+    public void testTruncatedAtBlockBoundary() throws IOException {
+        byte[] bytes = new byte[TestUtil.nextInt(random(), 1, 3 * LZ4Compressor.BLOCK_SIZE)];
+        random().nextBytes(bytes);
+        BytesStreamOutput bos = new BytesStreamOutput();
+        try (StreamOutput os = compressor.streamOutput(bos)) {
+            os.writeBytes(bytes);
+        }
+        // drop the end of stream marker, which leaves a stream that ends right after its last block
+        byte[] compressed = BytesReference.toBytes(bos.bytes());
+        StreamInput in = compressor.streamInput(new BytesArray(compressed, 0, compressed.length - 4).streamInput());
+        byte[] read = new byte[bytes.length];
+        in.readBytes(read, 0, read.length);
+        assertArrayEquals(bytes, read);
+        expectThrows(EOFException.class, in::read);
+    }
+
+    public void testSchemeNames() {
+        assertSame(CompressorFactory.COMPRESSOR, CompressorFactory.compressorForScheme("deflate"));
+        assertSame(CompressorFactory.LZ4_COMPRESSOR, CompressorFactory.compressorForScheme("lz4"));
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> CompressorFactory.compressorForScheme("lzf"));
+        assertEquals("unknown compression scheme [lzf], must be one of [deflate, lz4]", e.getMessage());
+    }
+}
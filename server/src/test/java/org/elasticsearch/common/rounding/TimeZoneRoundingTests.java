@@ -206,6 +206,55 @@ public class TimeZoneRoundingTests extends ESTestCase {
         }
     }
 
+    public void testPreparedRoundingRandom() {
+        for (int i = 0; i < 100; i++) {
+            final DateTimeZone tz = randomDateTimeZone();
+            final Rounding rounding;
+            if (randomBoolean()) {
+                rounding = new Rounding.TimeUnitRounding(randomTimeUnit(), tz);
+            } else {
+                TimeUnit unit = randomFrom(new TimeUnit[] {TimeUnit.MINUTES, TimeUnit.HOURS, TimeUnit.DAYS});
+                rounding = new Rounding.TimeIntervalRounding(unit.toMillis(randomIntBetween(1, 365)), tz);
+            }
+            final long min = Math.abs(randomLong() % (2 * (long) 10e11)); // 1970-01-01T00:00:00Z - 2033-05-18T05:33:20.000+02:00
+            final long max = min + randomLongBetween(0, TimeUnit.DAYS.toMillis(randomFrom(1, 30, 3650)));
+            final Rounding.Prepared prepared = rounding.prepare(min, max);
+            for (int j = 0; j < 100; j++) {
+                long date = randomLongBetween(min, max);
+                if (randomBoolean()) {
+                    // values around transitions are the ones that are rounded differently with a constant offset
+                    date = Math.min(max, Math.max(min, nastyDate(date, tz, TimeUnit.HOURS.toMillis(randomIntBetween(1, 48)))));
+                }
+                assertThat("prepared rounding of " + new DateTime(date, tz) + " with " + rounding + " in [" + min + ", " + max + "]",
+                    prepared.round(date), equalTo(rounding.round(date)));
+            }
+            // values outside of the range are rounded as well
+            final long outside = randomBoolean() ? min - randomLongBetween(1, TimeUnit.DAYS.toMillis(365))
+                : max + randomLongBetween(1, TimeUnit.DAYS.toMillis(365));
+            assertThat(prepared.round(outside), equalTo(rounding.round(outside)));
+        }
+    }
+
+    public void testPreparedRoundingDST() {
+        // Europe/Rome switches from +01:00 to +02:00 on 2018-03-25T02:00 local time and back on 2018-10-28T03:00 local time
+        final DateTimeZone tz = DateTimeZone.forID("Europe/Rome");
+        final long min = time("2018-01-01T00:00:00", tz);
+        final long max = time("2019-01-01T00:00:00", tz);
+        final List<Rounding> roundings = new ArrayList<>();
+        for (DateTimeUnit unit : DateTimeUnit.values()) {
+            roundings.add(new Rounding.TimeUnitRounding(unit, tz));
+        }
+        roundings.add(new Rounding.TimeIntervalRounding(TimeUnit.MINUTES.toMillis(45), tz));
+        roundings.add(new Rounding.TimeIntervalRounding(TimeUnit.HOURS.toMillis(12), tz));
+        for (Rounding rounding : roundings) {
+            final Rounding.Prepared prepared = rounding.prepare(min, max);
+            for (long date = min; date <= max; date += TimeUnit.MINUTES.toMillis(15)) {
+                assertThat("prepared rounding of " + new DateTime(date, tz) + " with " + rounding,
+                    prepared.round(date), equalTo(rounding.round(date)));
+            }
+        }
+    }
+
     /**
      * To be even more nasty, go to a transition in the selected time zone.
      * In one third of the cases stay there, otherwise go half a unit back or forth
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.common.util;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LongLongHashTests extends ESTestCase {
+
+    private LongLongHash newHash() {
+        // Test high load factors to make sure that collision resolution works fine
+        final float maxLoadFactor = 0.6f + randomFloat() * 0.39f;
+        return new LongLongHash(randomIntBetween(0, 100), maxLoadFactor,
+            new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService()));
+    }
+
+    public void testDuel() {
+        final long[][] pairs = new long[randomIntBetween(1, 10000)][];
+        for (int i = 0; i < pairs.length; ++i) {
+            // pairs that share their first or second key are the common case when keying on (owning bucket, term)
+            pairs[i] = new long[] { randomLongBetween(0, 100), randomBoolean() ? randomLongBetween(0, 100) : randomLong() };
+        }
+        final Map<List<Long>, Long> pairToId = new HashMap<>();
+        final List<long[]> idToPair = new ArrayList<>();
+        try (LongLongHash hash = newHash()) {
+            final int iters = randomInt(100000);
+            for (int i = 0; i < iters; ++i) {
+                final long[] pair = randomFrom(pairs);
+                final List<Long> key = Arrays.asList(pair[0], pair[1]);
+                final Long id = pairToId.get(key);
+                if (id != null) {
+                    assertEquals(-1 - id, hash.add(pair[0], pair[1]));
+                } else {
+                    assertEquals(pairToId.size(), hash.add(pair[0], pair[1]));
+                    pairToId.put(key, (long) pairToId.size());
+                    idToPair.add(pair);
+                }
+            }
+
+            assertEquals(pairToId.size(), hash.size());
+            for (Map.Entry<List<Long>, Long> entry : pairToId.entrySet()) {
+                assertEquals(entry.getValue().longValue(), hash.find(entry.getKey().get(0), entry.getKey().get(1)));
+            }
+            for (long id = 0; id < hash.size(); ++id) {
+                final long[] pair = idToPair.get((int) id);
+                assertEquals(pair[0], hash.getKey1(id));
+                assertEquals(pair[1], hash.getKey2(id));
+            }
+            for (long index = 0; index < hash.capacity(); ++index) {
+                final long id = hash.id(index);
+                if (id >= 0) {
+                    assertEquals(id, hash.find(hash.getKey1(id), hash.getKey2(id)));
+                }
+            }
+            // swapping the keys of a pair gives a different pair
+            for (long[] pair : idToPair) {
+                if (pair[0] != pair[1] && pairToId.containsKey(Arrays.asList(pair[1], pair[0])) == false) {
+                    assertEquals(-1, hash.find(pair[1], pair[0]));
+                }
+            }
+        }
+    }
+}
@@ -69,6 +69,9 @@ public class XContentMapValuesTests extends AbstractFilteringTestCase {
         assertEquals("Filtered map must be equal to the expected map",
                 toMap(expected, xContentType, humanReadable),
                 XContentMapValues.filter(toMap(actual, xContentType, humanReadable), sourceIncludes, sourceExcludes));
+        assertEquals("Source filtered while parsing must be equal to the expected map",
+                toMap(expected, xContentType, humanReadable),
+                filterWhileParsing(toBytes(actual, xContentType, humanReadable), xContentType, sourceIncludes, sourceExcludes));
     }
 
     @SuppressWarnings({"unchecked"})
@@ -490,8 +493,130 @@ public class XContentMapValuesTests extends AbstractFilteringTestCase {
         assertEquals(expected, filtered);
     }
 
-    private static Map<String, Object> toMap(Builder test, XContentType xContentType, boolean humanReadable) throws IOException {
+    public void testStreamingFilterDotsInFieldNames() throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .field("foo.bar", 2)
+                .startObject("foo")
+                    .field("baz", 3)
+                .endObject()
+                .field("quux", 5)
+                .endObject();
+        BytesReference source = BytesReference.bytes(builder);
+        Map<String, Object> map = convertToMap(source, true, XContentType.JSON).v2();
+
+        // dots in field names in includes
+        Map<String, Object> expected = new HashMap<>(map);
+        expected.remove("quux");
+        assertEquals(expected, filterWhileParsing(source, XContentType.JSON, new String[] {"foo"}, new String[0]));
+
+        // dots in field names in excludes
+        expected = new HashMap<>(map);
+        expected.keySet().retainAll(Collections.singleton("quux"));
+        assertEquals(expected, filterWhileParsing(source, XContentType.JSON, new String[0], new String[] {"foo"}));
+    }
+
+    public void testStreamingFilterNotOmittingObjectWithNestedExcludedObject() throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .startObject("obj1")
+                .startObject("obj2")
+                .startObject("obj3")
+                .endObject()
+                .endObject()
+                .endObject()
+                .endObject();
+        BytesReference source = BytesReference.bytes(builder);
+
+        // implicit include
+        assertEquals(Collections.singletonMap("obj1", Collections.emptyMap()),
+                filterWhileParsing(source, XContentType.JSON, Strings.EMPTY_ARRAY, new String[]{"*.obj2"}));
+        // explicit include
+        assertEquals(Collections.singletonMap("obj1", Collections.emptyMap()),
+                filterWhileParsing(source, XContentType.JSON, new String[]{"obj1"}, new String[]{"*.obj2"}));
+        // wild card include
+        assertEquals(Collections.singletonMap("obj1", Collections.singletonMap("obj2", Collections.emptyMap())),
+                filterWhileParsing(source, XContentType.JSON, new String[]{"*.obj2"}, new String[]{"*.obj3"}));
+    }
+
+    public void testStreamingFilterKeepsPropertiesOrder() throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .field("c", 1)
+                .field("b", 2)
+                .startObject("a")
+                    .field("z", 3)
+                    .field("y", 4)
+                .endObject()
+                .endObject();
+        XContentBuilder filtered = XContentFactory.jsonBuilder();
+        try (XContentParser parser = createParser(JsonXContent.jsonXContent, BytesReference.bytes(builder))) {
+            XContentMapValues.streamingFilter(Strings.EMPTY_ARRAY, new String[] {"b"}).accept(parser, filtered);
+        }
+        assertEquals("{\"c\":1,\"a\":{\"z\":3,\"y\":4}}", Strings.toString(filtered));
+    }
+
+    public void testStreamingFilterMatchesMapFilter() throws IOException {
+        final String[] fields = new String[] {"a", "b", "ab", "a.b", "c"};
+        final String[] patterns = new String[] {"a", "b", "ab", "a.b", "a.*", "*.b", "*b", "a*", "c.a", "*", "a.b.c", "b.*.a"};
+        for (int i = 0; i < 100; i++) {
+            final XContentType xContentType = randomFrom(XContentType.values());
+            XContentBuilder builder = XContentBuilder.builder(xContentType.xContent());
+            builder.startObject();
+            randomProperties(builder, fields, 4);
+            builder.endObject();
+            final BytesReference source = BytesReference.bytes(builder);
+            final String[] includes = randomSubsetOf(randomIntBetween(0, 3), patterns).toArray(Strings.EMPTY_ARRAY);
+            final String[] excludes = randomSubsetOf(randomIntBetween(0, 3), patterns).toArray(Strings.EMPTY_ARRAY);
+
+            Map<String, Object> map = convertToMap(source, true, xContentType).v2();
+            assertEquals("includes " + Arrays.toString(includes) + ", excludes " + Arrays.toString(excludes) + " on " + map,
+                    XContentMapValues.filter(map, includes, excludes), filterWhileParsing(source, xContentType, includes, excludes));
+        }
+    }
+
+    private static void randomProperties(XContentBuilder builder, String[] fields, int depth) throws IOException {
+        for (String field : randomSubsetOf(Arrays.asList(fields))) {
+            builder.field(field);
+            randomValue(builder, fields, depth);
+        }
+    }
+
+    private static void randomValue(XContentBuilder builder, String[] fields, int depth) throws IOException {
+        switch (depth > 0 ? randomIntBetween(0, 3) : randomIntBetween(0, 1)) {
+            case 0:
+                builder.value(randomAlphaOfLength(5));
+                break;
+            case 1:
+                builder.value(randomBoolean() ? null : randomInt());
+                break;
+            case 2:
+                builder.startObject();
+                randomProperties(builder, fields, depth - 1);
+                builder.endObject();
+                break;
+            default:
+                builder.startArray();
+                for (int i = randomIntBetween(0, 3); i > 0; i--) {
+                    randomValue(builder, fields, depth - 1);
+                }
+                builder.endArray();
+                break;
+        }
+    }
+
+    private Map<String, Object> filterWhileParsing(BytesReference source, XContentType xContentType,
+                                                   String[] includes, String[] excludes) throws IOException {
+        XContentBuilder filtered = XContentBuilder.builder(xContentType.xContent());
+        try (XContentParser parser = createParser(xContentType.xContent(), source)) {
+            XContentMapValues.streamingFilter(includes, excludes).accept(parser, filtered);
+        }
+        return convertToMap(BytesReference.bytes(filtered), true, xContentType).v2();
+    }
+
+    private static BytesReference toBytes(Builder test, XContentType xContentType, boolean humanReadable) throws IOException {
         ToXContentObject toXContent = (builder, params) -> test.apply(builder);
-        return convertToMap(toXContent(toXContent, xContentType, humanReadable), true, xContentType).v2();
+        return toXContent(toXContent, xContentType, humanReadable);
+    }
+
+    private static Map<String, Object> toMap(Builder test, XContentType xContentType, boolean humanReadable) throws IOException {
+        return convertToMap(toBytes(test, xContentType, humanReadable), true, xContentType).v2();
     }
 }
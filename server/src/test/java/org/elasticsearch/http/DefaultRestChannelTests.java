@@ -21,17 +21,23 @@ package org.elasticsearch.http;
 
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.MockBigArrays;
 import org.elasticsearch.common.util.MockPageCacheRecycler;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
@@ -51,12 +57,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeastOnce;
@@ -264,6 +272,155 @@ public class DefaultRestChannelTests extends ESTestCase {
         // ESTestCase#after will invoke ensureAllArraysAreReleased which will fail if the response content was not released
     }
 
+    @SuppressWarnings("unchecked")
+    public void testResponseSizeStats() throws IOException {
+        final TestRequest httpRequest = new TestRequest(HttpRequest.HttpVersion.HTTP_1_1, RestRequest.Method.GET, "/");
+        final RestRequest request = RestRequest.request(xContentRegistry(), httpRequest, httpChannel);
+        final HttpHandlingSettings handlingSettings = HttpHandlingSettings.fromSettings(Settings.EMPTY);
+        final CounterMetric responseBytes = new CounterMetric();
+        final CounterMetric recycledResponseBytes = new CounterMetric();
+
+        // a response built by the channel is written to recycled pages
+        final DefaultRestChannel channel = new DefaultRestChannel(httpChannel, httpRequest, request, bigArrays, handlingSettings,
+            threadPool.getThreadContext(), responseBytes, recycledResponseBytes);
+        final XContentBuilder builder = channel.newBuilder();
+        builder.startObject().field("field", randomAlphaOfLength(randomIntBetween(1, 100000))).endObject();
+        final BytesRestResponse recycledResponse = new BytesRestResponse(RestStatus.OK, builder);
+        assertThat(recycledResponse.content(), instanceOf(Releasable.class));
+        final long recycledLength = recycledResponse.content().length();
+        channel.sendResponse(recycledResponse);
+        assertThat(responseBytes.count(), equalTo(recycledLength));
+        assertThat(recycledResponseBytes.count(), equalTo(recycledLength));
+
+        // while a response built elsewhere is not
+        final DefaultRestChannel otherChannel = new DefaultRestChannel(httpChannel, httpRequest, request, bigArrays, handlingSettings,
+            threadPool.getThreadContext(), responseBytes, recycledResponseBytes);
+        final BytesRestResponse heapResponse = new BytesRestResponse(RestStatus.OK,
+            JsonXContent.contentBuilder().startObject().field("field", "value").endObject());
+        otherChannel.sendResponse(heapResponse);
+        assertThat(responseBytes.count(), equalTo(recycledLength + heapResponse.content().length()));
+        assertThat(recycledResponseBytes.count(), equalTo(recycledLength));
+
+        Class<ActionListener<Void>> listenerClass = (Class<ActionListener<Void>>) (Class) ActionListener.class;
+        ArgumentCaptor<ActionListener<Void>> listenerCaptor = ArgumentCaptor.forClass(listenerClass);
+        verify(httpChannel, times(2)).sendResponse(any(), listenerCaptor.capture());
+        for (ActionListener<Void> listener : listenerCaptor.getAllValues()) {
+            listener.onResponse(null);
+        }
+        // ESTestCase#after will invoke ensureAllArraysAreReleased which will fail if the response content was not released
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testHeadResponseSizeStats() throws IOException {
+        final TestRequest httpRequest = new TestRequest(HttpRequest.HttpVersion.HTTP_1_1, RestRequest.Method.HEAD, "/");
+        final RestRequest request = RestRequest.request(xContentRegistry(), httpRequest, httpChannel);
+        final HttpHandlingSettings handlingSettings = HttpHandlingSettings.fromSettings(Settings.EMPTY);
+        final CounterMetric responseBytes = new CounterMetric();
+        final CounterMetric recycledResponseBytes = new CounterMetric();
+        final DefaultRestChannel channel = new DefaultRestChannel(httpChannel, httpRequest, request, bigArrays, handlingSettings,
+            threadPool.getThreadContext(), responseBytes, recycledResponseBytes);
+        final XContentBuilder builder = channel.newBuilder();
+        builder.startObject().field("field", randomAlphaOfLength(randomIntBetween(1, 100000))).endObject();
+        final BytesRestResponse response = new BytesRestResponse(RestStatus.OK, builder);
+        channel.sendResponse(response);
+
+        // the response to a HEAD request has no body, only its content length is sent
+        ArgumentCaptor<TestResponse> responseCaptor = ArgumentCaptor.forClass(TestResponse.class);
+        Class<ActionListener<Void>> listenerClass = (Class<ActionListener<Void>>) (Class) ActionListener.class;
+        ArgumentCaptor<ActionListener<Void>> listenerCaptor = ArgumentCaptor.forClass(listenerClass);
+        verify(httpChannel).sendResponse(responseCaptor.capture(), listenerCaptor.capture());
+        assertThat(responseCaptor.getValue().content().length(), equalTo(0));
+        assertThat(responseBytes.count(), equalTo(0L));
+        assertThat(recycledResponseBytes.count(), equalTo(0L));
+        listenerCaptor.getValue().onResponse(null);
+        // ESTestCase#after will invoke ensureAllArraysAreReleased which will fail if the response content was not released
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testChunkedResponse() throws IOException {
+        final TestRequest httpRequest = new TestRequest(HttpRequest.HttpVersion.HTTP_1_1, RestRequest.Method.GET, "/");
+        httpRequest.supportsChunkedResponses = true;
+        final RestRequest request = RestRequest.request(xContentRegistry(), httpRequest, httpChannel);
+        final HttpHandlingSettings handlingSettings = HttpHandlingSettings.fromSettings(Settings.EMPTY);
+        final CounterMetric responseBytes = new CounterMetric();
+        final CounterMetric recycledResponseBytes = new CounterMetric();
+        final DefaultRestChannel channel = new DefaultRestChannel(httpChannel, httpRequest, request, bigArrays, handlingSettings,
+            threadPool.getThreadContext(), responseBytes, recycledResponseBytes);
+        final int numItems = randomIntBetween(0, 1000);
+        channel.sendChunkedResponse(RestStatus.OK, ChunkedRestResponseBody.fromXContent(() -> items(numItems), request, channel));
+
+        ArgumentCaptor<TestResponse> responseCaptor = ArgumentCaptor.forClass(TestResponse.class);
+        Class<ActionListener<Void>> listenerClass = (Class<ActionListener<Void>>) (Class) ActionListener.class;
+        ArgumentCaptor<ActionListener<Void>> listenerCaptor = ArgumentCaptor.forClass(listenerClass);
+        verify(httpChannel).sendResponse(responseCaptor.capture(), listenerCaptor.capture());
+        assertThat(responseCaptor.getValue(), instanceOf(TestChunkedResponse.class));
+        TestChunkedResponse response = (TestChunkedResponse) responseCaptor.getValue();
+        assertThat(response.headers.get(DefaultRestChannel.CONTENT_TYPE),
+            equalTo(Collections.singletonList(XContentType.JSON.mediaType())));
+        assertFalse(response.headers.containsKey(DefaultRestChannel.CONTENT_LENGTH));
+
+        // encode the chunks like the transport does
+        final BytesStreamOutput content = new BytesStreamOutput();
+        final int sizeHint = randomIntBetween(1, 1024);
+        int numChunks = 0;
+        while (response.body.isDone() == false) {
+            try (ReleasableBytesReference chunk = response.body.encodeChunk(sizeHint, bigArrays)) {
+                chunk.writeTo(content);
+            }
+            numChunks++;
+        }
+        listenerCaptor.getValue().onResponse(null);
+        assertThat(content.bytes().utf8ToString(), equalTo(Strings.toString(itemsToXContent(numItems))));
+        assertThat(numChunks, lessThanOrEqualTo(content.bytes().length() / sizeHint + 1));
+        assertThat(responseBytes.count(), equalTo((long) content.bytes().length()));
+        assertThat(recycledResponseBytes.count(), equalTo((long) content.bytes().length()));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testChunkedResponseFallsBackToFullResponse() throws IOException {
+        // the transport does not support chunked responses or the client does not support chunked transfer encoding
+        final boolean http10 = randomBoolean();
+        final TestRequest httpRequest = new TestRequest(http10 ? HttpRequest.HttpVersion.HTTP_1_0 : HttpRequest.HttpVersion.HTTP_1_1,
+            RestRequest.Method.GET, "/");
+        httpRequest.supportsChunkedResponses = http10;
+        final RestRequest request = RestRequest.request(xContentRegistry(), httpRequest, httpChannel);
+        final HttpHandlingSettings handlingSettings = HttpHandlingSettings.fromSettings(Settings.EMPTY);
+        final DefaultRestChannel channel = new DefaultRestChannel(httpChannel, httpRequest, request, bigArrays, handlingSettings,
+            threadPool.getThreadContext());
+        final int numItems = randomIntBetween(0, 1000);
+        channel.sendChunkedResponse(RestStatus.OK, ChunkedRestResponseBody.fromXContent(() -> items(numItems), request, channel));
+
+        ArgumentCaptor<TestResponse> responseCaptor = ArgumentCaptor.forClass(TestResponse.class);
+        Class<ActionListener<Void>> listenerClass = (Class<ActionListener<Void>>) (Class) ActionListener.class;
+        ArgumentCaptor<ActionListener<Void>> listenerCaptor = ArgumentCaptor.forClass(listenerClass);
+        verify(httpChannel).sendResponse(responseCaptor.capture(), listenerCaptor.capture());
+        TestResponse response = responseCaptor.getValue();
+        assertThat(response, not(instanceOf(TestChunkedResponse.class)));
+        assertThat(response.content().utf8ToString(), equalTo(Strings.toString(itemsToXContent(numItems))));
+        assertThat(response.headers.get(DefaultRestChannel.CONTENT_LENGTH),
+            equalTo(Collections.singletonList(String.valueOf(response.content().length()))));
+        listenerCaptor.getValue().onResponse(null);
+    }
+
+    private static Iterator<ToXContent> items(int numItems) {
+        List<ToXContent> chunks = new ArrayList<>();
+        chunks.add((builder, params) -> builder.startObject().startArray("items"));
+        for (int i = 0; i < numItems; i++) {
+            final int item = i;
+            chunks.add((builder, params) -> builder.startObject().field("item", item).endObject());
+        }
+        chunks.add((builder, params) -> builder.endArray().endObject());
+        return chunks.iterator();
+    }
+
+    private static XContentBuilder itemsToXContent(int numItems) throws IOException {
+        XContentBuilder builder = JsonXContent.contentBuilder();
+        for (Iterator<ToXContent> it = items(numItems); it.hasNext(); ) {
+            it.next().toXContent(builder, ToXContent.EMPTY_PARAMS);
+        }
+        return builder;
+    }
+
     @SuppressWarnings("unchecked")
     public void testConnectionClose() throws Exception {
         final Settings settings = Settings.builder().build();
@@ -333,6 +490,7 @@ public class DefaultRestChannelTests extends ESTestCase {
         private final RestRequest.Method method;
         private final String uri;
         private HashMap<String, List<String>> headers = new HashMap<>();
+        private boolean supportsChunkedResponses = false;
 
         private TestRequest(HttpVersion version, RestRequest.Method method, String uri) {
 
@@ -380,6 +538,11 @@ public class DefaultRestChannelTests extends ESTestCase {
         public HttpResponse createResponse(RestStatus status, BytesReference content) {
             return new TestResponse(status, content);
         }
+
+        @Override
+        public HttpResponse createChunkedResponse(RestStatus status, ChunkedRestResponseBody body) {
+            return supportsChunkedResponses ? new TestChunkedResponse(status, body) : null;
+        }
     }
 
     private static class TestResponse implements HttpResponse {
@@ -422,6 +585,16 @@ public class DefaultRestChannelTests extends ESTestCase {
         }
     }
 
+    private static class TestChunkedResponse extends TestResponse {
+
+        private final ChunkedRestResponseBody body;
+
+        TestChunkedResponse(RestStatus status, ChunkedRestResponseBody body) {
+            super(status, null);
+            this.body = body;
+        }
+    }
+
     private static class TestRestResponse extends RestResponse {
 
         private final BytesReference content;
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class CompactVersionTableTests extends ESTestCase {
+
+    public void testPutGetRemove() {
+        final CompactVersionTable table = new CompactVersionTable(BigArrays.NON_RECYCLING_INSTANCE);
+        final Map<BytesRef, VersionValue> expected = new HashMap<>();
+        final int iters = scaledRandomIntBetween(100, 10000);
+        for (int i = 0; i < iters; i++) {
+            final BytesRef uid = new BytesRef(TestUtil.randomSimpleString(random(), 1, 4));
+            if (rarely()) {
+                table.remove(uid);
+                expected.remove(uid);
+            } else {
+                final IndexVersionValue version = randomIndexVersionValue();
+                table.put(uid, version);
+                expected.put(uid, version);
+            }
+            assertThat(table.get(uid), equalTo(expected.get(uid)));
+            assertThat(table.size(), equalTo(expected.size()));
+        }
+        for (Map.Entry<BytesRef, VersionValue> entry : expected.entrySet()) {
+            assertThat(table.get(entry.getKey()), equalTo(entry.getValue()));
+        }
+        assertThat(table.toMap(), equalTo(expected));
+        table.close();
+    }
+
+    public void testClosedTableActsAsEmpty() {
+        final CompactVersionTable table = new CompactVersionTable(BigArrays.NON_RECYCLING_INSTANCE);
+        final BytesRef uid = new BytesRef("1");
+        table.put(uid, randomIndexVersionValue());
+        table.close();
+        assertNull(table.get(uid));
+        table.put(uid, randomIndexVersionValue());
+        table.remove(uid);
+        assertNull(table.get(uid));
+        assertTrue(table.toMap().isEmpty());
+    }
+
+    public void testAccountsOnBreaker() {
+        final HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+            Settings.builder().put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), false).build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        final CompactVersionTable table = new CompactVersionTable(new BigArrays(null, breakerService));
+        // nothing is allocated until the first put
+        assertThat(breaker.getUsed(), equalTo(0L));
+        final int numDocs = scaledRandomIntBetween(100, 10000);
+        for (int i = 0; i < numDocs; i++) {
+            table.put(new BytesRef(Integer.toString(i)), randomIndexVersionValue());
+        }
+        assertThat(table.ramBytesUsed(), greaterThan(0L));
+        assertThat(breaker.getUsed(), equalTo(table.ramBytesUsed()));
+        table.close();
+        assertThat(breaker.getUsed(), equalTo(0L));
+    }
+
+    public void testReleasedOnRefresh() throws Exception {
+        final HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+            Settings.builder().put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), false).build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        final LiveVersionMap map = new LiveVersionMap(new BigArrays(null, breakerService));
+        map.enforceSafeAccess();
+        final int numDocs = scaledRandomIntBetween(10, 1000);
+        for (int i = 0; i < numDocs; i++) {
+            final BytesRef uid = new BytesRef(Integer.toString(i));
+            try (Releasable ignored = map.acquireLock(uid)) {
+                map.putIndexUnderLock(uid, randomIndexVersionValue());
+            }
+        }
+        assertThat(map.ramBytesUsedForRefresh(), greaterThan(0L));
+        assertThat(breaker.getUsed(), equalTo(map.ramBytesUsedForRefresh()));
+        map.beforeRefresh();
+        assertThat(map.getRefreshingBytes(), equalTo(breaker.getUsed()));
+        map.afterRefresh(randomBoolean());
+        assertThat(map.getRefreshingBytes(), equalTo(0L));
+        assertThat(breaker.getUsed(), equalTo(0L));
+    }
+
+    private static IndexVersionValue randomIndexVersionValue() {
+        final Translog.Location location = randomBoolean() ? null :
+            new Translog.Location(randomNonNegativeLong(), randomNonNegativeLong(), randomInt());
+        return new IndexVersionValue(location, randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+    }
+}
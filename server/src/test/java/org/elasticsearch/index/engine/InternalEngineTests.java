@@ -32,6 +32,7 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexCommit;
@@ -3151,6 +3152,98 @@ public class InternalEngineTests extends EngineTestCase {
         }
     }
 
+    public void testIndexAppendOnlyBatch() throws IOException {
+        final int numDocs = randomIntBetween(2, 32);
+        final List<Engine.Index> operations = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            final ParsedDocument doc = testParsedDocument(Integer.toString(i), null, testDocumentWithTextField(), B_1, null);
+            operations.add(appendOnlyPrimary(doc, false, i));
+        }
+        final List<Engine.IndexResult> results = engine.index(operations);
+        assertThat(results, hasSize(numDocs));
+        assertLuceneOperations(engine, numDocs, 0, 0);
+        assertEquals(0, engine.getNumVersionLookups());
+        for (int i = 0; i < numDocs; i++) {
+            final Engine.IndexResult result = results.get(i);
+            assertThat(result.getResultType(), equalTo(Engine.Result.Type.SUCCESS));
+            assertTrue(result.isCreated());
+            assertThat(result.getSeqNo(), equalTo((long) i));
+            assertNotNull(result.getTranslogLocation());
+            if (i > 0) {
+                assertThat(result.getTranslogLocation(), greaterThan(results.get(i - 1).getTranslogLocation()));
+            }
+        }
+        assertThat(engine.getLocalCheckpoint(), equalTo((long) numDocs - 1));
+        engine.refresh("test");
+        try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+            assertEquals(numDocs, searcher.reader().numDocs());
+        }
+        assertEquals(numDocs, getTranslog(engine).stats().estimatedNumberOfOperations());
+    }
+
+    public void testIndexAppendOnlyBatchAfterRetry() throws IOException {
+        final ParsedDocument retried = testParsedDocument("0", null, testDocumentWithTextField(), B_1, null);
+        engine.index(appendOnlyPrimary(retried, true, 1));
+        assertLuceneOperations(engine, 0, 1, 0);
+        final int numDocs = randomIntBetween(2, 32);
+        final List<Engine.Index> operations = new ArrayList<>();
+        // the first operation may have been indexed before, the other ones have more recent auto-generated ids
+        operations.add(appendOnlyPrimary(retried, false, 1));
+        for (int i = 1; i < numDocs; i++) {
+            final ParsedDocument doc = testParsedDocument(Integer.toString(i), null, testDocumentWithTextField(), B_1, null);
+            operations.add(appendOnlyPrimary(doc, false, i + 1));
+        }
+        final List<Engine.IndexResult> results = engine.index(operations);
+        assertThat(results, hasSize(numDocs));
+        assertLuceneOperations(engine, numDocs - 1, 2, 0);
+        for (Engine.IndexResult result : results) {
+            assertThat(result.getResultType(), equalTo(Engine.Result.Type.SUCCESS));
+            assertNotNull(result.getTranslogLocation());
+        }
+        assertThat(engine.getLocalCheckpoint(), equalTo((long) numDocs));
+        engine.refresh("test");
+        try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+            assertEquals(numDocs, searcher.reader().numDocs());
+        }
+    }
+
+    public void testIndexAppendOnlyBatchWithDocumentFailure() throws IOException {
+        final int numDocs = randomIntBetween(2, 32);
+        final int failingDoc = randomIntBetween(0, numDocs - 1);
+        final List<Engine.Index> operations = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            final ParseContext.Document document = testDocumentWithTextField();
+            if (i == failingDoc) {
+                // a term that is too long is a document failure that rejects the whole addDocuments call
+                document.add(new StringField("immense", randomAlphaOfLength(IndexWriter.MAX_TERM_LENGTH + 1), Field.Store.NO));
+            }
+            final ParsedDocument doc = testParsedDocument(Integer.toString(i), null, document, B_1, null);
+            operations.add(appendOnlyPrimary(doc, false, i));
+        }
+        final List<Engine.IndexResult> results = engine.index(operations);
+        assertThat(results, hasSize(numDocs));
+        for (int i = 0; i < numDocs; i++) {
+            final Engine.IndexResult result = results.get(i);
+            if (i == failingDoc) {
+                assertThat(result.getResultType(), equalTo(Engine.Result.Type.FAILURE));
+                assertThat(result.getFailure(), instanceOf(IllegalArgumentException.class));
+                assertThat(result.getVersion(), equalTo(Versions.MATCH_ANY));
+            } else {
+                assertThat(result.getResultType(), equalTo(Engine.Result.Type.SUCCESS));
+                assertTrue(result.isCreated());
+            }
+            // the failure is recorded as a no-op with the sequence number of the document
+            assertThat(result.getSeqNo(), equalTo((long) i));
+            assertNotNull(result.getTranslogLocation());
+        }
+        assertThat(engine.getLocalCheckpoint(), equalTo((long) numDocs - 1));
+        engine.refresh("test");
+        try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+            assertEquals(numDocs - 1, searcher.reader().numDocs());
+        }
+        assertEquals(numDocs, getTranslog(engine).stats().estimatedNumberOfOperations());
+    }
+
     public void testDoubleDeliveryReplicaAppendingAndDeleteOnly() throws IOException {
         final ParsedDocument doc = testParsedDocument("1", null, testDocumentWithTextField(),
             new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
@@ -25,6 +25,7 @@ import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.test.ESTestCase;
 
@@ -42,6 +43,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.nullValue;
 
 public class LiveVersionMapTests extends ESTestCase {
@@ -113,7 +115,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testBasics() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         try (Releasable r = map.acquireLock(uid("test"))) {
             Translog.Location tlogLoc = randomTranslogLocation();
             map.putIndexUnderLock(uid("test"), new IndexVersionValue(tlogLoc, 1, 1, 1));
@@ -145,7 +147,7 @@ public class LiveVersionMapTests extends ESTestCase {
         List<BytesRef> keyList = new ArrayList<>(keySet);
         ConcurrentHashMap<BytesRef, VersionValue> values = new ConcurrentHashMap<>();
         ConcurrentHashMap<BytesRef, DeleteVersionValue> deletes = new ConcurrentHashMap<>();
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         int numThreads = randomIntBetween(2, 5);
 
         Thread[] threads = new Thread[numThreads];
@@ -273,7 +275,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testCarryOnSafeAccess() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         assertFalse(map.isUnsafe());
         assertFalse(map.isSafeAccessRequired());
         map.enforceSafeAccess();
@@ -305,7 +307,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testRefreshTransition() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         try (Releasable r = map.acquireLock(uid("1"))) {
             map.maybePutIndexUnderLock(uid("1"), randomIndexVersionValue());
             assertTrue(map.isUnsafe());
@@ -333,7 +335,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testAddAndDeleteRefreshConcurrently() throws IOException, InterruptedException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         int numIters = randomIntBetween(1000, 5000);
         AtomicBoolean done = new AtomicBoolean(false);
         AtomicLong version = new AtomicLong();
@@ -390,7 +392,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testPruneTombstonesWhileLocked() throws InterruptedException, IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = newLiveVersionMap();
         BytesRef uid = uid("1");
         ;
         try (Releasable ignore = map.acquireLock(uid)) {
@@ -413,7 +415,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testRandomlyIndexDeleteAndRefresh() throws Exception {
-        final LiveVersionMap versionMap = new LiveVersionMap();
+        final LiveVersionMap versionMap = newLiveVersionMap();
         final BytesRef uid = uid("1");
         final long versions = between(10, 1000);
         VersionValue latestVersion = null;
@@ -446,6 +448,27 @@ public class LiveVersionMapTests extends ESTestCase {
         }
     }
 
+    public void testCompactRamBytesUsed() throws Exception {
+        final LiveVersionMap heapMap = new LiveVersionMap();
+        final LiveVersionMap compactMap = new LiveVersionMap(BigArrays.NON_RECYCLING_INSTANCE);
+        for (int i = 0; i < 100000; ++i) {
+            final BytesRef uid = uid(TestUtil.randomSimpleString(random(), 10, 20));
+            final IndexVersionValue version = randomIndexVersionValue();
+            for (LiveVersionMap map : new LiveVersionMap[] { heapMap, compactMap }) {
+                try (Releasable r = map.acquireLock(uid)) {
+                    map.putIndexUnderLock(uid, version);
+                }
+            }
+        }
+        assertThat(compactMap.ramBytesUsed(), greaterThan(0L));
+        assertThat(compactMap.ramBytesUsed(), lessThan(heapMap.ramBytesUsed()));
+        assertThat(compactMap.getAllCurrent(), equalTo(heapMap.getAllCurrent()));
+    }
+
+    private static LiveVersionMap newLiveVersionMap() {
+        return randomBoolean() ? new LiveVersionMap() : new LiveVersionMap(BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
     IndexVersionValue randomIndexVersionValue() {
         return new IndexVersionValue(randomTranslogLocation(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
     }
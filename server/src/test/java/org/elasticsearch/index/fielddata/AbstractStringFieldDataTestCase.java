@@ -461,7 +461,9 @@ public abstract class AbstractStringFieldDataTestCase extends AbstractFieldDataI
         refreshReader();
         IndexOrdinalsFieldData ifd = getForField("string", "value", hasDocValues());
         IndexOrdinalsFieldData globalOrdinals = ifd.loadGlobal(topLevelReader);
-        assertNotNull(globalOrdinals.getOrdinalMap());
+        assertNotNull(globalOrdinals.getGlobalOrdinalsMapping(topLevelReader.leaves().get(0)));
+        // the field doesn't require a Lucene ordinal map
+        expectThrows(IllegalStateException.class, globalOrdinals::getOrdinalMap);
         assertThat(topLevelReader.leaves().size(), equalTo(3));
 
         // First segment
@@ -589,7 +591,7 @@ public abstract class AbstractStringFieldDataTestCase extends AbstractFieldDataI
         refreshReader();
         IndexOrdinalsFieldData ifd = getForField("string", "value", hasDocValues());
         IndexOrdinalsFieldData globalOrdinals = ifd.loadGlobal(topLevelReader);
-        assertNotNull(globalOrdinals.getOrdinalMap());
+        assertNotNull(globalOrdinals.getGlobalOrdinalsMapping(topLevelReader.leaves().get(0)));
         assertThat(ifd.loadGlobal(topLevelReader), sameInstance(globalOrdinals));
         // 3 b/c 1 segment level caches and 1 top level cache
         // in case of doc values, we don't cache atomic FD, so only the top-level cache is there
@@ -31,7 +31,7 @@ public class FieldDataStatsTests extends ESTestCase {
     public void testSerialize() throws IOException {
         FieldMemoryStats map = randomBoolean() ? null : FieldMemoryStatsTests.randomFieldMemoryStats();
         FieldDataStats stats = new FieldDataStats(randomNonNegativeLong(), randomNonNegativeLong(), map == null ? null :
-            map);
+            map, randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
         BytesStreamOutput out = new BytesStreamOutput();
         stats.writeTo(out);
         FieldDataStats read = new FieldDataStats();
@@ -41,5 +41,8 @@ public class FieldDataStatsTests extends ESTestCase {
         assertEquals(stats.evictions, read.evictions);
         assertEquals(stats.memorySize, read.memorySize);
         assertEquals(stats.getFields(), read.getFields());
+        assertEquals(stats.getGlobalOrdinalsBuildTimeInMillis(), read.getGlobalOrdinalsBuildTimeInMillis());
+        assertEquals(stats.getGlobalOrdinalsSegments(), read.getGlobalOrdinalsSegments());
+        assertEquals(stats.getGlobalOrdinalsReusedSegments(), read.getGlobalOrdinalsReusedSegments());
     }
 }
@@ -22,17 +22,22 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.fielddata.plain.SortedNumericDVIndexFieldData;
 import org.elasticsearch.index.fielddata.plain.SortedSetDVOrdinalsIndexFieldData;
 import org.elasticsearch.index.mapper.BooleanFieldMapper;
@@ -52,11 +57,14 @@ import org.elasticsearch.test.InternalSettingsPlugin;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 
 public class IndexFieldDataServiceTests extends ESSingleNodeTestCase {
 
@@ -248,6 +256,99 @@ public class IndexFieldDataServiceTests extends ESSingleNodeTestCase {
         }
     }
 
+    public void testGlobalOrdinalsReuseSegmentsOfThePreviousReaderOfTheShard() throws Exception {
+        final IndexService indexService = createIndex("test");
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        // copy the ifdService since we can set the listener only once.
+        final IndexFieldDataService ifdService = new IndexFieldDataService(indexService.getIndexSettings(),
+            indicesService.getIndicesFieldDataCache(), indicesService.getCircuitBreakerService(), indexService.mapperService());
+        final ShardFieldData shardFieldData = new ShardFieldData();
+        ifdService.setListener(shardFieldData);
+
+        final BuilderContext ctx = new BuilderContext(indexService.getIndexSettings().getSettings(), new ContentPath(1));
+        final MappedFieldType fieldType = new KeywordFieldMapper.Builder("field").build(ctx).fieldType();
+        final IndexWriter writer = new IndexWriter(new RAMDirectory(),
+            new IndexWriterConfig(new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+        final IndexWriter otherWriter = new IndexWriter(new RAMDirectory(),
+            new IndexWriterConfig(new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+        final int segments = randomIntBetween(2, 5);
+        for (int i = 0; i < segments; i++) {
+            addDocWithValue(writer, "value_" + i);
+            addDocWithValue(otherWriter, "other_value_" + i);
+        }
+        final DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("test", "_na_", 0));
+        final DirectoryReader otherReader =
+            ElasticsearchDirectoryReader.wrap(DirectoryReader.open(otherWriter), new ShardId("test", "_na_", 1));
+        DirectoryReader newReader = null;
+        try {
+            // field data is built again for every request, like searches and the warmer do
+            final IndexOrdinalsFieldData globalOrdinals = ifdService.<IndexOrdinalsFieldData>getForField(fieldType).loadGlobal(reader);
+            assertThat(globalOrdinals, instanceOf(GlobalOrdinalsIndexFieldData.class));
+            // the global ordinals of another shard of the same index must not replace those of the first shard
+            ifdService.<IndexOrdinalsFieldData>getForField(fieldType).loadGlobal(otherReader);
+            assertThat(shardFieldData.stats().getGlobalOrdinalsSegments(), equalTo(2L * segments));
+            assertThat(shardFieldData.stats().getGlobalOrdinalsReusedSegments(), equalTo(0L));
+
+            addDocWithValue(writer, "value_" + segments);
+            newReader = DirectoryReader.openIfChanged(reader);
+            assertNotNull(newReader);
+            assertThat(newReader.leaves().size(), equalTo(segments + 1));
+            final IndexOrdinalsFieldData newGlobalOrdinals =
+                ifdService.<IndexOrdinalsFieldData>getForField(fieldType).loadGlobal(newReader);
+            assertThat(((GlobalOrdinalsIndexFieldData) newGlobalOrdinals).getReusedSegments(), equalTo(segments));
+            assertThat(shardFieldData.stats().getGlobalOrdinalsSegments(), equalTo(3L * segments + 1));
+            assertThat(shardFieldData.stats().getGlobalOrdinalsReusedSegments(), equalTo((long) segments));
+            // the previous global ordinals must be referenced until the new ones are built, like the reader being refreshed does
+            assertThat(((GlobalOrdinalsIndexFieldData) globalOrdinals).getSegments(), equalTo(segments));
+        } finally {
+            IOUtils.close(newReader, reader, otherReader, writer, otherWriter);
+            ifdService.clear();
+        }
+    }
+
+    public void testGlobalOrdinalsHistoryIsForgottenWhenTheShardCloses() throws Exception {
+        final IndexService indexService = createIndex("test");
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        final IndexFieldDataService ifdService = new IndexFieldDataService(indexService.getIndexSettings(),
+            indicesService.getIndicesFieldDataCache(), indicesService.getCircuitBreakerService(), indexService.mapperService());
+
+        final BuilderContext ctx = new BuilderContext(indexService.getIndexSettings().getSettings(), new ContentPath(1));
+        final MappedFieldType fieldType = new KeywordFieldMapper.Builder("field").build(ctx).fieldType();
+        final IndexWriter writer = new IndexWriter(new RAMDirectory(),
+            new IndexWriterConfig(new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+        final int segments = randomIntBetween(2, 5);
+        for (int i = 0; i < segments; i++) {
+            addDocWithValue(writer, "value_" + i);
+        }
+        final ShardId shardId = new ShardId("test", "_na_", 0);
+        final DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+        DirectoryReader newReader = null;
+        try {
+            final IndexOrdinalsFieldData globalOrdinals = ifdService.<IndexOrdinalsFieldData>getForField(fieldType).loadGlobal(reader);
+            assertThat(globalOrdinals, instanceOf(GlobalOrdinalsIndexFieldData.class));
+            ifdService.clearGlobalOrdinalsHistories(shardId);
+
+            addDocWithValue(writer, "value_" + segments);
+            newReader = DirectoryReader.openIfChanged(reader);
+            assertNotNull(newReader);
+            final IndexOrdinalsFieldData newGlobalOrdinals =
+                ifdService.<IndexOrdinalsFieldData>getForField(fieldType).loadGlobal(newReader);
+            assertThat(((GlobalOrdinalsIndexFieldData) newGlobalOrdinals).getReusedSegments(), equalTo(0));
+            assertThat(((GlobalOrdinalsIndexFieldData) globalOrdinals).getSegments(), equalTo(segments));
+        } finally {
+            IOUtils.close(newReader, reader, writer);
+            ifdService.clear();
+        }
+    }
+
+    private static void addDocWithValue(IndexWriter writer, String value) throws IOException {
+        final Document doc = new Document();
+        doc.add(new SortedSetDocValuesField("field", new BytesRef(value)));
+        writer.addDocument(doc);
+        // one segment per document
+        writer.flush();
+    }
+
     private void doTestRequireDocValues(MappedFieldType ft) {
         ThreadPool threadPool = new TestThreadPool("random_threadpool_name");
         try {
@@ -19,6 +19,21 @@
 
 package org.elasticsearch.index.fielddata;
 
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LongValues;
+import org.elasticsearch.index.fielddata.plain.DocValuesIndexFieldData;
+import org.elasticsearch.index.mapper.ContentPath;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.Mapper.BuilderContext;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
 public class SortedSetDVStringFieldDataTests extends AbstractStringFieldDataTestCase {
 
     @Override
@@ -35,4 +50,24 @@ public class SortedSetDVStringFieldDataTests extends AbstractStringFieldDataTest
     protected long minRamBytesUsed() {
         return 0;
     }
+
+    public void testGlobalOrdinalsWithRequiredOrdinalMap() throws Exception {
+        fillExtendedMvSet();
+        refreshReader();
+        final BuilderContext context = new BuilderContext(indexService.getIndexSettings().getSettings(), new ContentPath(1));
+        final MappedFieldType fieldType = new KeywordFieldMapper.Builder("value").build(context).fieldType();
+        final IndexOrdinalsFieldData ifd = (IndexOrdinalsFieldData) new DocValuesIndexFieldData.Builder().ordinalMapRequired(true)
+            .build(indexService.getIndexSettings(), fieldType, new IndexFieldDataCache.None(), new NoneCircuitBreakerService(),
+                mapperService);
+        final IndexOrdinalsFieldData globalOrdinals = ifd.loadGlobal(topLevelReader);
+        final OrdinalMap ordinalMap = globalOrdinals.getOrdinalMap();
+        assertThat(((Accountable) globalOrdinals).ramBytesUsed(), greaterThanOrEqualTo(ordinalMap.ramBytesUsed()));
+        for (LeafReaderContext leaf : topLevelReader.leaves()) {
+            final LongValues mapping = globalOrdinals.getGlobalOrdinalsMapping(leaf);
+            final long valueCount = DocValues.getSortedSet(leaf.reader(), "value").getValueCount();
+            for (long ord = 0; ord < valueCount; ord++) {
+                assertThat(mapping.get(ord), equalTo(ordinalMap.getGlobalOrds(leaf.ord).get(ord)));
+            }
+        }
+    }
 }
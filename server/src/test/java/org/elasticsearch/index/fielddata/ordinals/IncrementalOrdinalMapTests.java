@@ -0,0 +1,173 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class IncrementalOrdinalMapTests extends ESTestCase {
+
+    private static final String FIELD = "field";
+
+    public void testDuelWithOrdinalMap() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(newLogMergePolicy()))) {
+            int id = 0;
+            IncrementalOrdinalMap previous = null;
+            Set<Object> previousKeys = new HashSet<>();
+            DirectoryReader reader = DirectoryReader.open(writer);
+            try {
+                final int iters = randomIntBetween(1, 10);
+                for (int iter = 0; iter < iters; iter++) {
+                    final int numDocs = randomIntBetween(0, 200);
+                    for (int i = 0; i < numDocs; i++) {
+                        writer.addDocument(randomDocument(id++));
+                    }
+                    if (id > 0 && randomBoolean()) {
+                        writer.deleteDocuments(new Term("id", Integer.toString(randomInt(id - 1))));
+                    }
+                    if (rarely()) {
+                        writer.forceMerge(randomIntBetween(1, 3));
+                    }
+                    // reopening shares the cores of the unchanged segments, like refreshes do
+                    final DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer);
+                    if (newReader != null) {
+                        reader.close();
+                        reader = newReader;
+                    }
+                    final List<LeafReaderContext> leaves = reader.leaves();
+                    final Object[] keys = new Object[leaves.size()];
+                    final SortedSetDocValues[] subs = new SortedSetDocValues[leaves.size()];
+                    int expectedReusedSegments = 0;
+                    for (int i = 0; i < leaves.size(); i++) {
+                        keys[i] = IncrementalOrdinalMap.segmentKey(leaves.get(i).reader(), FIELD);
+                        subs[i] = DocValues.getSortedSet(leaves.get(i).reader(), FIELD);
+                        if (keys[i] != null && previousKeys.contains(keys[i]) && subs[i].getValueCount() > 0) {
+                            expectedReusedSegments++;
+                        }
+                    }
+                    final IncrementalOrdinalMap map = IncrementalOrdinalMap.build(keys, subs, previous);
+                    assertOrdinalMap(leaves, map);
+                    assertThat(map.getReusedSegments(), equalTo(expectedReusedSegments));
+                    previous = map;
+                    previousKeys = new HashSet<>(Arrays.asList(keys));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    public void testNoPreviousMap() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMaxBufferedDocs(10))) {
+            final int numDocs = randomIntBetween(1, 100);
+            for (int i = 0; i < numDocs; i++) {
+                writer.addDocument(randomDocument(i));
+            }
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                final List<LeafReaderContext> leaves = reader.leaves();
+                final Object[] keys = new Object[leaves.size()];
+                final SortedSetDocValues[] subs = new SortedSetDocValues[leaves.size()];
+                for (int i = 0; i < leaves.size(); i++) {
+                    keys[i] = IncrementalOrdinalMap.segmentKey(leaves.get(i).reader(), FIELD);
+                    subs[i] = DocValues.getSortedSet(leaves.get(i).reader(), FIELD);
+                }
+                final IncrementalOrdinalMap map = IncrementalOrdinalMap.build(keys, subs, null);
+                assertOrdinalMap(leaves, map);
+                assertThat(map.getReusedSegments(), equalTo(0));
+
+                // building again over the same segments reuses all of them
+                final IncrementalOrdinalMap rebuilt = IncrementalOrdinalMap.build(keys, subs, map);
+                assertOrdinalMap(leaves, rebuilt);
+                assertThat(rebuilt.getReusedSegments(), equalTo(rebuilt.getSegments()));
+            }
+        }
+    }
+
+    private static Document randomDocument(int id) {
+        final Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(id), Field.Store.NO));
+        final int numValues = randomIntBetween(0, 3);
+        for (int j = 0; j < numValues; j++) {
+            // a skewed distribution of terms, so that segments share some of them
+            final int term = (int) Math.floor(Math.pow(1000, random().nextDouble()));
+            doc.add(new SortedSetDocValuesField(FIELD, new BytesRef(Integer.toString(term))));
+        }
+        return doc;
+    }
+
+    /**
+     * Checks that {@code map} numbers terms like a Lucene {@link OrdinalMap} built over the same segments.
+     */
+    private static void assertOrdinalMap(List<LeafReaderContext> leaves, IncrementalOrdinalMap map) throws IOException {
+        final SortedSetDocValues[] subs = new SortedSetDocValues[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++) {
+            subs[i] = DocValues.getSortedSet(leaves.get(i).reader(), FIELD);
+        }
+        final OrdinalMap expected = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+        assertThat(map.getValueCount(), equalTo(expected.getValueCount()));
+        int segments = 0;
+        for (int i = 0; i < subs.length; i++) {
+            final LongValues expectedGlobalOrds = expected.getGlobalOrds(i);
+            final LongValues globalOrds = map.getGlobalOrds(i);
+            for (long segmentOrd = 0; segmentOrd < subs[i].getValueCount(); segmentOrd++) {
+                assertThat(globalOrds.get(segmentOrd), equalTo(expectedGlobalOrds.get(segmentOrd)));
+            }
+            if (subs[i].getValueCount() > 0) {
+                segments++;
+            }
+        }
+        assertThat(map.getSegments(), equalTo(segments));
+        final SortedSetDocValues[] lookups = new SortedSetDocValues[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++) {
+            lookups[i] = DocValues.getSortedSet(leaves.get(i).reader(), FIELD);
+        }
+        for (long globalOrd = 0; globalOrd < map.getValueCount(); globalOrd++) {
+            final BytesRef term = BytesRef.deepCopyOf(
+                lookups[map.getFirstSegmentNumber(globalOrd)].lookupOrd(map.getFirstSegmentOrd(globalOrd)));
+            final BytesRef expectedTerm =
+                subs[expected.getFirstSegmentNumber(globalOrd)].lookupOrd(expected.getFirstSegmentOrd(globalOrd));
+            assertThat(term, equalTo(expectedTerm));
+        }
+    }
+}
@@ -91,6 +91,7 @@ import org.elasticsearch.index.fielddata.IndexFieldDataCache;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.SeqNoFieldMapper;
@@ -1332,6 +1333,58 @@ public class IndexShardTests extends IndexShardTestCase {
         closeShards(shard);
     }
 
+    public void testApplyAppendOnlyIndexOperationsOnPrimary() throws IOException {
+        IndexShard shard = newStartedShard(true);
+        final String indexName = shard.shardId().getIndexName();
+        final int numDocs = randomIntBetween(2, 10);
+        final int failingDoc = randomIntBetween(0, numDocs - 1);
+        final List<SourceToParse> sources = new ArrayList<>();
+        final Set<String> expectedIds = new HashSet<>();
+        for (int i = 0; i < numDocs; i++) {
+            final String source = i == failingDoc ? "{\"foo\" : " : "{}";
+            sources.add(SourceToParse.source(indexName, "_doc", "doc-" + i, new BytesArray(source), XContentType.JSON));
+            if (i != failingDoc) {
+                expectedIds.add("doc-" + i);
+            }
+        }
+        // the first document that requires a mapping update ends the batch
+        for (int i = numDocs; i < numDocs + 2; i++) {
+            final String source = i == numDocs ? "{\"foo\" : \"bar\"}" : "{}";
+            sources.add(SourceToParse.source(indexName, "_doc", "doc-" + i, new BytesArray(source), XContentType.JSON));
+            expectedIds.add("doc-" + i);
+        }
+        final long[] autoGeneratedTimestamps = new long[sources.size()];
+        Arrays.fill(autoGeneratedTimestamps, randomNonNegativeLong());
+
+        long seqNo = 0;
+        List<Engine.IndexResult> results = shard.applyAppendOnlyIndexOperationsOnPrimary(sources, autoGeneratedTimestamps);
+        assertThat(results, hasSize(numDocs));
+        for (int i = 0; i < numDocs; i++) {
+            final Engine.IndexResult result = results.get(i);
+            if (i == failingDoc) {
+                // parse failures don't fail the other documents of the batch
+                assertThat(result.getResultType(), equalTo(Engine.Result.Type.FAILURE));
+                assertThat(result.getFailure(), instanceOf(MapperParsingException.class));
+                assertThat(result.getSeqNo(), equalTo(SequenceNumbers.UNASSIGNED_SEQ_NO));
+            } else {
+                assertThat(result.getResultType(), equalTo(Engine.Result.Type.SUCCESS));
+                assertThat(result.getSeqNo(), equalTo(seqNo++));
+            }
+        }
+
+        updateMappings(shard, IndexMetaData.builder(shard.indexSettings().getIndexMetaData())
+            .putMapping("_doc", "{ \"properties\": { \"foo\": { \"type\": \"text\" } } }").build());
+        results = shard.applyAppendOnlyIndexOperationsOnPrimary(sources.subList(numDocs, sources.size()),
+            Arrays.copyOfRange(autoGeneratedTimestamps, numDocs, sources.size()));
+        assertThat(results, hasSize(2));
+        for (Engine.IndexResult result : results) {
+            assertThat(result.getResultType(), equalTo(Engine.Result.Type.SUCCESS));
+            assertThat(result.getSeqNo(), equalTo(seqNo++));
+        }
+        assertThat(getShardDocUIDs(shard), equalTo(expectedIds));
+        closeShards(shard);
+    }
+
     public void testIndexingOperationsListeners() throws IOException {
         IndexShard shard = newStartedShard(true);
         indexDoc(shard, "_doc", "0", "{\"foo\" : \"bar\"}");
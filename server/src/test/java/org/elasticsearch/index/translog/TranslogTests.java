@@ -31,6 +31,7 @@ import org.apache.lucene.mockfile.FilterFileChannel;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.MockDirectoryWrapper;
+import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.LineFileDocs;
 import org.apache.lucene.util.LuceneTestCase;
 import org.elasticsearch.Assertions;
@@ -123,6 +124,7 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isIn;
@@ -231,6 +233,7 @@ public class TranslogTests extends ESTestCase {
             // only randomize between nog age retention and a long one, so failures will have a chance of reproducing
             .put(IndexSettings.INDEX_TRANSLOG_RETENTION_AGE_SETTING.getKey(), randomBoolean() ? "-1ms" : "1h")
             .put(IndexSettings.INDEX_TRANSLOG_RETENTION_SIZE_SETTING.getKey(), randomIntBetween(-1, 2048) + "b")
+            .put(IndexSettings.INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING.getKey(), randomBoolean())
             .build();
         return getTranslogConfig(path, settings);
     }
@@ -593,6 +596,50 @@ public class TranslogTests extends ESTestCase {
         }
     }
 
+    public void testMappedSnapshot() throws IOException {
+        assumeFalse("mapped files can't be deleted on Windows", Constants.WINDOWS);
+        final Settings settings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .put(IndexSettings.INDEX_TRANSLOG_MMAP_SNAPSHOTS_SETTING.getKey(), true)
+            .build();
+        final TranslogConfig config = getTranslogConfig(createTempDir(), settings);
+        final List<Translog.Operation> ops = new ArrayList<>();
+        try (Translog translog = createTranslog(config)) {
+            final int numGenerations = randomIntBetween(1, 5);
+            int seqNo = 0;
+            for (int gen = 0; gen < numGenerations; gen++) {
+                // at least two operations per generation so that every mapped snapshot reads past its first operation
+                final int numOps = randomIntBetween(2, 100);
+                for (int i = 0; i < numOps; i++) {
+                    final byte[] source = randomByteArrayOfLength(randomIntBetween(1, 4096));
+                    addToTranslogAndList(translog, ops,
+                        new Translog.Index("test", Integer.toString(seqNo), seqNo, primaryTerm.get(), source));
+                    seqNo++;
+                }
+                translog.rollGeneration();
+            }
+            // immutable generations are mapped while the current generation is read from the channel
+            int readerOps = 0;
+            for (TranslogReader reader : translog.getReaders()) {
+                final TranslogSnapshot mappedSnapshot = reader.newMappedSnapshot();
+                assertThat(mappedSnapshot.toString(), containsString("mapped=true"));
+                for (int i = 0; i < reader.totalOperations(); i++) {
+                    assertThat(mappedSnapshot.next(), equalTo(ops.get(readerOps++)));
+                }
+                assertThat(mappedSnapshot.next(), nullValue());
+            }
+            // snapshots share the mapping of each generation but read it independently
+            try (Translog.Snapshot snapshot = translog.newSnapshot();
+                 Translog.Snapshot snapshot1 = translog.newSnapshot()) {
+                assertThat(snapshot, SnapshotMatchers.equalsTo(ops));
+                assertThat(snapshot1, SnapshotMatchers.equalsTo(ops));
+            }
+            try (Translog.Snapshot snapshot = translog.newSnapshotFromMinSeqNo(0)) {
+                assertThat(snapshot, SnapshotMatchers.equalsTo(ops));
+            }
+        }
+    }
+
     public void testReadLocation() throws IOException {
         ArrayList<Translog.Operation> ops = new ArrayList<>();
         ArrayList<Translog.Location> locs = new ArrayList<>();
@@ -606,6 +653,30 @@ public class TranslogTests extends ESTestCase {
         assertNull(translog.readOperation(new Location(100, 0, 0)));
     }
 
+    public void testAddBatch() throws IOException {
+        final int numOps = randomIntBetween(1, 32);
+        final List<Translog.Operation> ops = new ArrayList<>();
+        for (int i = 0; i < numOps; i++) {
+            ops.add(new Translog.Index("test", Integer.toString(i), i, primaryTerm.get(), new byte[]{(byte) i}));
+        }
+        final Translog.Location previous = translog.add(new Translog.NoOp(numOps, primaryTerm.get(), "test"));
+        final List<Translog.Location> locations = translog.add(ops);
+        assertThat(locations, hasSize(numOps));
+        for (int i = 0; i < numOps; i++) {
+            final Translog.Location location = locations.get(i);
+            final Translog.Location expectedPrevious = i == 0 ? previous : locations.get(i - 1);
+            assertThat(location.generation, equalTo(expectedPrevious.generation));
+            assertThat(location.translogLocation, equalTo(expectedPrevious.translogLocation + expectedPrevious.size));
+            assertEquals(ops.get(i), translog.readOperation(location));
+        }
+        assertThat(translog.stats().estimatedNumberOfOperations(), equalTo(numOps + 1));
+        final Translog.Location last = translog.add(new Translog.NoOp(numOps + 1, primaryTerm.get(), "test"));
+        assertThat(last.translogLocation, equalTo(locations.get(numOps - 1).translogLocation + locations.get(numOps - 1).size));
+        try (Translog.Snapshot snapshot = translog.newSnapshot()) {
+            assertThat(snapshot.totalOperations(), equalTo(numOps + 2));
+        }
+    }
+
     public void testSnapshotWithNewTranslog() throws IOException {
         List<Closeable> toClose = new ArrayList<>();
         try {
@@ -100,9 +100,28 @@ public class IndicesClusterStateServiceRandomUpdatesTests extends AbstractIndice
     }
 
     public void testRandomClusterStateUpdates() {
+        runRandomClusterStateUpdates(false);
+    }
+
+    /**
+     * Like {@link #testRandomClusterStateUpdates()} but each node applies states that share the unchanged nodes with the last state
+     * it applied, like cluster states that are received as diffs do. Such states are only applied to the indices that changed.
+     */
+    public void testRandomClusterStateUpdatesSharingUnchangedNodes() {
+        runRandomClusterStateUpdates(true);
+    }
+
+    /**
+     * Applies random cluster state updates on every node of the cluster and checks that each node matches the last state it applied.
+     *
+     * @param shareUnchangedNodes whether the state that a node applies shares the unchanged nodes with the last state it applied
+     */
+    private void runRandomClusterStateUpdates(boolean shareUnchangedNodes) {
         // we have an IndicesClusterStateService per node in the cluster
         final Map<DiscoveryNode, IndicesClusterStateService> clusterStateServiceMap = new HashMap<>();
         ClusterState state = randomInitialClusterState(clusterStateServiceMap, MockIndicesService::new);
+        // the last state applied on each node, which is the previous state of the next change like on a real node
+        final Map<DiscoveryNode, ClusterState> appliedLocalStates = new HashMap<>();
         // each of the following iterations represents a new cluster state update processed on all nodes
         for (int i = 0; i < 30; i++) {
             logger.info("Iteration {}", i);
@@ -122,8 +141,17 @@ public class IndicesClusterStateServiceRandomUpdatesTests extends AbstractIndice
             // apply cluster state to nodes (incl. master)
             for (DiscoveryNode node : state.nodes()) {
                 IndicesClusterStateService indicesClusterStateService = clusterStateServiceMap.get(node);
-                ClusterState localState = adaptClusterStateToLocalNode(state, node);
-                ClusterState previousLocalState = adaptClusterStateToLocalNode(previousState, node);
+                ClusterState previousLocalState = shareUnchangedNodes ? appliedLocalStates.get(node) : null;
+                final ClusterState localState;
+                if (previousLocalState != null && state.nodes() == previousState.nodes()) {
+                    localState = ClusterState.builder(state).nodes(previousLocalState.nodes()).build();
+                } else {
+                    localState = adaptClusterStateToLocalNode(state, node);
+                    if (previousLocalState == null) {
+                        previousLocalState = adaptClusterStateToLocalNode(previousState, node);
+                    }
+                }
+                appliedLocalStates.put(node, localState);
                 final ClusterChangedEvent event = new ClusterChangedEvent("simulated change " + i, localState, previousLocalState);
                 try {
                     indicesClusterStateService.applyClusterState(event);
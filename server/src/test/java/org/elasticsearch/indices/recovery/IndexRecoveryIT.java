@@ -38,20 +38,27 @@ import org.elasticsearch.cluster.routing.RecoverySource.PeerRecoverySource;
 import org.elasticsearch.cluster.routing.RecoverySource.SnapshotRecoverySource;
 import org.elasticsearch.cluster.routing.allocation.command.MoveAllocationCommand;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.recovery.RecoveryStats;
+import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.recovery.RecoveryState.Stage;
 import org.elasticsearch.node.RecoverySettingsChunkSizePlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.snapshots.Snapshot;
 import org.elasticsearch.snapshots.SnapshotState;
+import org.elasticsearch.snapshots.mockstore.MockRepository;
+import org.elasticsearch.test.CorruptionUtils;
 import org.elasticsearch.test.ESIntegTestCase;
 import org.elasticsearch.test.ESIntegTestCase.ClusterScope;
 import org.elasticsearch.test.ESIntegTestCase.Scope;
@@ -68,27 +75,35 @@ import org.elasticsearch.transport.TransportService;
 import org.junit.After;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.elasticsearch.node.RecoverySettingsChunkSizePlugin.CHUNK_SIZE_SETTING;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 
 @ClusterScope(scope = Scope.TEST, numDataNodes = 0)
 public class IndexRecoveryIT extends ESIntegTestCase {
@@ -97,6 +112,7 @@ public class IndexRecoveryIT extends ESIntegTestCase {
     private static final String INDEX_TYPE = "test-type-1";
     private static final String REPO_NAME = "test-repo-1";
     private static final String SNAP_NAME = "test-snap-1";
+    private static final String RECOVERY_REPO_NAME = "test-recovery-repo-1";
 
     private static final int MIN_DOC_COUNT = 500;
     private static final int MAX_DOC_COUNT = 1000;
@@ -106,7 +122,7 @@ public class IndexRecoveryIT extends ESIntegTestCase {
     @Override
     protected Collection<Class<? extends Plugin>> nodePlugins() {
         return Arrays.asList(MockTransportService.TestPlugin.class, MockFSIndexStore.TestPlugin.class,
-                RecoverySettingsChunkSizePlugin.class);
+                RecoverySettingsChunkSizePlugin.class, MockRepository.Plugin.class);
     }
 
     @After
@@ -246,6 +262,176 @@ public class IndexRecoveryIT extends ESIntegTestCase {
         validateIndexRecoveryState(nodeBRecoveryState.getIndex());
     }
 
+    public void testReplicaRecoveryFromSnapshot() throws Exception {
+        logger.info("--> start node A");
+        String nodeA = internalCluster().startNode();
+        long numDocs = createSnapshottedIndex(randomRepoPath());
+        useRepositoryForRecoveries(REPO_NAME);
+
+        logger.info("--> start node B");
+        String nodeB = internalCluster().startNode();
+        RecoveryRequests requests = trackRecoveryRequests(nodeA, nodeB, false);
+
+        // the files of the replica on node B are restored from the snapshot, the primary has not changed since
+        recoverReplica(nodeA, nodeB, numDocs);
+        assertThat(requests.restoreRequestedFiles, not(empty()));
+        for (String file : requests.restoreRequestedFiles) {
+            assertThat("file [" + file + "] was restored from the snapshot", requests.sentFiles, not(hasItem(file)));
+        }
+
+        useRepositoryForRecoveries(null);
+    }
+
+    public void testReplicaRecoveryFromSnapshotWithMissingOrCorruptFiles() throws Exception {
+        logger.info("--> start node A");
+        String nodeA = internalCluster().startNode();
+        Path repoPath = randomRepoPath();
+        long numDocs = createSnapshottedIndex(repoPath);
+        useRepositoryForRecoveries(REPO_NAME);
+
+        final boolean corrupt = randomBoolean();
+        logger.info("--> {} the data files of the snapshot", corrupt ? "corrupt" : "delete");
+        final List<Path> dataFiles;
+        try (Stream<Path> files = Files.walk(repoPath.resolve("indices"))) {
+            dataFiles = files.filter(file -> file.getFileName().toString().startsWith("__")).collect(Collectors.toList());
+        }
+        assertThat(dataFiles, not(empty()));
+        for (Path dataFile : dataFiles) {
+            if (corrupt) {
+                CorruptionUtils.corruptFile(random(), dataFile);
+            } else {
+                Files.delete(dataFile);
+            }
+        }
+
+        logger.info("--> start node B");
+        String nodeB = internalCluster().startNode();
+        RecoveryRequests requests = trackRecoveryRequests(nodeA, nodeB, false);
+
+        // the files that can't be restored are sent by the primary instead
+        recoverReplica(nodeA, nodeB, numDocs);
+        assertThat(requests.restoreRequestedFiles, not(empty()));
+        assertTrue("files " + requests.restoreRequestedFiles + " must be sent after failing to restore them, sent " + requests.sentFiles,
+            requests.sentFiles.containsAll(requests.restoreRequestedFiles));
+
+        useRepositoryForRecoveries(null);
+    }
+
+    public void testReplicaRecoveryFromSnapshotWithRepositoryFailures() throws Exception {
+        logger.info("--> start node A");
+        String nodeA = internalCluster().startNode();
+        Path repoPath = randomRepoPath();
+        long numDocs = createSnapshottedIndex(repoPath);
+
+        // either the repository can't be read or the requests to restore files from it do not reach the target
+        final boolean transportFailure = randomBoolean();
+        if (transportFailure) {
+            useRepositoryForRecoveries(REPO_NAME);
+        } else {
+            putRecoveryRepository(repoPath, Settings.builder()
+                .put("random_data_file_io_exception_rate", 1.0)
+                .put("max_failure_number", Long.MAX_VALUE));
+            useRepositoryForRecoveries(RECOVERY_REPO_NAME);
+        }
+
+        logger.info("--> start node B");
+        String nodeB = internalCluster().startNode();
+        RecoveryRequests requests = trackRecoveryRequests(nodeA, nodeB, transportFailure);
+
+        recoverReplica(nodeA, nodeB, numDocs);
+        assertThat(requests.restoreRequestedFiles, not(empty()));
+        assertTrue("files " + requests.restoreRequestedFiles + " must be sent after failing to restore them, sent " + requests.sentFiles,
+            requests.sentFiles.containsAll(requests.restoreRequestedFiles));
+
+        useRepositoryForRecoveries(null);
+    }
+
+    public void testCancelledReplicaRecoveryFromSnapshot() throws Exception {
+        logger.info("--> start node A");
+        String nodeA = internalCluster().startNode();
+        Path repoPath = randomRepoPath();
+        long numDocs = createSnapshottedIndex(repoPath);
+        putRecoveryRepository(repoPath, Settings.builder().put("block_on_data", true));
+        useRepositoryForRecoveries(RECOVERY_REPO_NAME);
+
+        logger.info("--> start node B");
+        String nodeB = internalCluster().startNode();
+        MockRepository repository =
+            (MockRepository) internalCluster().getInstance(RepositoriesService.class, nodeB).repository(RECOVERY_REPO_NAME);
+
+        logger.info("--> bump replica count, the replica blocks while restoring files from the snapshot");
+        client().admin().indices().prepareUpdateSettings(INDEX_NAME)
+                .setSettings(Settings.builder().put("number_of_replicas", 1)).get();
+        assertBusy(() -> assertTrue(repository.blocked()));
+
+        logger.info("--> cancel the recovery by removing the replica");
+        client().admin().indices().prepareUpdateSettings(INDEX_NAME)
+                .setSettings(Settings.builder().put("number_of_replicas", 0)).get();
+        ensureGreen();
+        IndicesService nodeBIndicesService = internalCluster().getInstance(IndicesService.class, nodeB);
+        assertBusy(() -> assertFalse(nodeBIndicesService.hasIndex(resolveIndex(INDEX_NAME))));
+
+        // the downloads stop at the next cancellation check and release the cancelled recovery
+        logger.info("--> unblock the restores and recover the replica again");
+        repository.unblock();
+        recoverReplica(nodeA, nodeB, numDocs);
+        IndexShard replica = nodeBIndicesService.indexServiceSafe(resolveIndex(INDEX_NAME)).getShard(0);
+        assertBusy(() -> {
+            for (String file : replica.store().directory().listAll()) {
+                assertThat("temporary recovery files must be cleaned up", file, not(startsWith("recovery.")));
+            }
+        });
+
+        useRepositoryForRecoveries(null);
+    }
+
+    public void testReplicaRecoveryFromSnapshotWithTimedOutRestores() throws Exception {
+        logger.info("--> start node A");
+        String nodeA = internalCluster().startNode();
+        Path repoPath = randomRepoPath();
+        long numDocs = createSnapshottedIndex(repoPath);
+        putRecoveryRepository(repoPath, Settings.builder().put("block_on_data", true));
+        useRepositoryForRecoveries(RECOVERY_REPO_NAME);
+        // the restores time out quickly, but the recovery must not be failed for a lack of activity in the meantime
+        assertAcked(client().admin().cluster().prepareUpdateSettings().setTransientSettings(Settings.builder()
+                .put(RecoverySettings.INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING.getKey(), "1s")
+                .put(RecoverySettings.INDICES_RECOVERY_ACTIVITY_TIMEOUT_SETTING.getKey(), "1m")));
+
+        logger.info("--> start node B");
+        String nodeB = internalCluster().startNode();
+        MockRepository repository =
+            (MockRepository) internalCluster().getInstance(RepositoriesService.class, nodeB).repository(RECOVERY_REPO_NAME);
+        RecoveryRequests requests = trackRecoveryRequests(nodeA, nodeB, false);
+
+        // the restores block, so the source gives up on them and sends the files while the downloads are still running
+        recoverReplica(nodeA, nodeB, numDocs);
+        assertTrue(repository.blocked());
+        assertThat(requests.restoreRequestedFiles, not(empty()));
+        assertTrue("files " + requests.restoreRequestedFiles + " must be sent after the restores timed out, sent " + requests.sentFiles,
+            requests.sentFiles.containsAll(requests.restoreRequestedFiles));
+
+        // the downloads stop at their next write and must leave the files that were sent alone
+        logger.info("--> unblock the restores");
+        repository.unblock();
+        IndexShard replica = internalCluster().getInstance(IndicesService.class, nodeB)
+            .indexServiceSafe(resolveIndex(INDEX_NAME)).getShard(0);
+        assertBusy(() -> {
+            assertFalse(repository.blocked());
+            for (String file : replica.store().directory().listAll()) {
+                assertThat("temporary recovery files must be cleaned up", file, not(startsWith("recovery.")));
+            }
+        });
+        for (StoreFileMetaData file : replica.snapshotStoreMetadata()) {
+            assertTrue("file [" + file.name() + "] is intact", Store.checkIntegrityNoException(file, replica.store().directory()));
+        }
+        assertHitCount(client(nodeB).prepareSearch(INDEX_NAME).setPreference("_local").setSize(0).get(), numDocs);
+
+        assertAcked(client().admin().cluster().prepareUpdateSettings().setTransientSettings(Settings.builder()
+                .putNull(RecoverySettings.INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING.getKey())
+                .putNull(RecoverySettings.INDICES_RECOVERY_ACTIVITY_TIMEOUT_SETTING.getKey())));
+        useRepositoryForRecoveries(null);
+    }
+
     @TestLogging(
             "_root:DEBUG,"
                     + "org.elasticsearch.cluster.service:TRACE,"
@@ -500,6 +686,88 @@ public class IndexRecoveryIT extends ESIntegTestCase {
         }
     }
 
+    /**
+     * Creates an index on the nodes of the cluster and takes a snapshot of it in a repository at the given path. Returns the number of
+     * documents in the index.
+     */
+    private long createSnapshottedIndex(Path repoPath) throws Exception {
+        logger.info("--> create repository");
+        assertAcked(client().admin().cluster().preparePutRepository(REPO_NAME)
+                .setType("fs").setSettings(Settings.builder()
+                                .put("location", repoPath)
+                                .put("compress", randomBoolean())
+                ).get());
+
+        IndicesStatsResponse stats = createAndPopulateIndex(INDEX_NAME, 1, SHARD_COUNT, REPLICA_COUNT);
+
+        logger.info("--> snapshot");
+        CreateSnapshotResponse createSnapshotResponse = client().admin().cluster().prepareCreateSnapshot(REPO_NAME, SNAP_NAME)
+                .setWaitForCompletion(true).setIndices(INDEX_NAME).get();
+        assertThat(createSnapshotResponse.getSnapshotInfo().successfulShards(), equalTo(SHARD_COUNT));
+        return stats.getPrimaries().getDocs().getCount();
+    }
+
+    /**
+     * Registers a read-only mock repository over the snapshots at the given path, which recoveries can restore files from.
+     */
+    private void putRecoveryRepository(Path repoPath, Settings.Builder settings) {
+        assertAcked(client().admin().cluster().preparePutRepository(RECOVERY_REPO_NAME)
+                .setType("mock").setVerify(false).setSettings(settings
+                                .put("location", repoPath)
+                                .put("readonly", true)
+                ).get());
+    }
+
+    private void useRepositoryForRecoveries(@Nullable String repository) {
+        assertAcked(client().admin().cluster().prepareUpdateSettings().setTransientSettings(Settings.builder()
+                .put(RecoverySettings.INDICES_RECOVERY_SNAPSHOT_REPOSITORY_SETTING.getKey(), repository)));
+    }
+
+    /**
+     * Adds a replica of the index on node B, recovered from its primary on node A, and checks the recovery and the replica.
+     */
+    private void recoverReplica(String nodeA, String nodeB, long numDocs) {
+        logger.info("--> bump replica count");
+        client().admin().indices().prepareUpdateSettings(INDEX_NAME)
+                .setSettings(Settings.builder().put("number_of_replicas", 1)).get();
+        ensureGreen();
+
+        RecoveryResponse response = client().admin().indices().prepareRecoveries(INDEX_NAME).execute().actionGet();
+        List<RecoveryState> nodeBResponses = findRecoveriesForTargetNode(nodeB, response.shardRecoveryStates().get(INDEX_NAME));
+        assertThat(nodeBResponses.size(), equalTo(1));
+        assertRecoveryState(nodeBResponses.get(0), 0, PeerRecoverySource.INSTANCE, false, Stage.DONE, nodeA, nodeB);
+        validateIndexRecoveryState(nodeBResponses.get(0).getIndex());
+
+        assertHitCount(client(nodeB).prepareSearch(INDEX_NAME).setPreference("_local").setSize(0).get(), numDocs);
+    }
+
+    /**
+     * The files that the source of a recovery asked the target to restore from a snapshot, and the files that it sent.
+     */
+    private static class RecoveryRequests {
+        final Set<String> restoreRequestedFiles = ConcurrentCollections.newConcurrentSet();
+        final Set<String> sentFiles = ConcurrentCollections.newConcurrentSet();
+    }
+
+    private RecoveryRequests trackRecoveryRequests(String sourceNode, String targetNode, boolean failRestoreRequests) {
+        final RecoveryRequests requests = new RecoveryRequests();
+        MockTransportService sourceTransportService =
+            (MockTransportService) internalCluster().getInstance(TransportService.class, sourceNode);
+        sourceTransportService.addSendBehavior(internalCluster().getInstance(TransportService.class, targetNode),
+            (connection, requestId, action, request, options) -> {
+                if (PeerRecoveryTargetService.Actions.RESTORE_FILE_FROM_SNAPSHOT.equals(action)) {
+                    requests.restoreRequestedFiles.add(((RecoveryRestoreFileFromSnapshotRequest) request).file().physicalName());
+                    if (failRestoreRequests) {
+                        throw new ConnectTransportException(connection.getNode(), "simulated restore failure");
+                    }
+                } else if (PeerRecoveryTargetService.Actions.FILE_CHUNK.equals(action)) {
+                    requests.sentFiles.add(((RecoveryFileChunkRequest) request).name());
+                }
+                connection.sendRequest(requestId, action, request, options);
+            });
+        return requests;
+    }
+
     private List<RecoveryState> findRecoveriesForTargetNode(String nodeName, List<RecoveryState> recoveryStates) {
         List<RecoveryState> nodeResponses = new ArrayList<>();
         for (RecoveryState recoveryState : recoveryStates) {
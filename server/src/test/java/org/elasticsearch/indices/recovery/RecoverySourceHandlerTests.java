@@ -32,6 +32,8 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.store.BaseDirectoryWrapper;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
@@ -40,9 +42,9 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.lease.Releasable;
-import org.elasticsearch.common.lucene.store.IndexOutputOutputStream;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
@@ -57,15 +59,19 @@ import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.SeqNoFieldMapper;
 import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.seqno.ReplicationTracker;
 import org.elasticsearch.index.seqno.SeqNoStats;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardRelocatedException;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.repositories.IndexId;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
 import org.elasticsearch.test.CorruptionUtils;
 import org.elasticsearch.test.DummyShardLock;
 import org.elasticsearch.test.ESTestCase;
@@ -78,14 +84,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyObject;
@@ -106,8 +117,9 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         final RecoverySettings recoverySettings = new RecoverySettings(settings, service);
         final StartRecoveryRequest request = getStartRecoveryRequest();
         Store store = newStore(createTempDir());
-        RecoverySourceHandler handler = new RecoverySourceHandler(null, null, request,
-            recoverySettings.getChunkSize().bytesAsInt());
+        Store targetStore = newStore(createTempDir());
+        RecoverySourceHandler handler = new RecoverySourceHandler(mock(IndexShard.class), new StoreWritingRecoveryTarget(targetStore),
+            request, recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), between(1, 8));
         Directory dir = store.directory();
         RandomIndexWriter writer = new RandomIndexWriter(random(), dir, newIndexWriterConfig());
         int numDocs = randomIntBetween(10, 100);
@@ -125,20 +137,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         for (StoreFileMetaData md : metadata) {
             metas.add(md);
         }
-        Store targetStore = newStore(createTempDir());
-        handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), (md) -> {
-            try {
-                return new IndexOutputOutputStream(targetStore.createVerifyingOutput(md.name(), md, IOContext.DEFAULT)) {
-                    @Override
-                    public void close() throws IOException {
-                        super.close();
-                        targetStore.directory().sync(Collections.singleton(md.name())); // sync otherwise MDW will mess with it
-                    }
-                };
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), () -> 0);
         Store.MetadataSnapshot targetStoreMetadata = targetStore.getMetadata(null);
         Store.RecoveryDiff recoveryDiff = targetStoreMetadata.recoveryDiff(metadata);
         assertEquals(metas.size(), recoveryDiff.identical.size());
@@ -149,6 +148,78 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         IOUtils.close(reader, store, targetStore);
     }
 
+    public void testSendFilesLimitsRequestsInFlight() throws Throwable {
+        final RecoverySettings recoverySettings = new RecoverySettings(Settings.EMPTY, service);
+        final StartRecoveryRequest request = getStartRecoveryRequest();
+        Store store = newStore(createTempDir());
+        Store targetStore = newStore(createTempDir());
+        final int maxConcurrentFileChunks = between(1, 8);
+        final int maxConcurrentFiles = between(1, 8);
+        // the chunks that the target has written but not acknowledged yet
+        final List<Tuple<String, ActionListener<Void>>> inFlight = new ArrayList<>();
+        final RecoveryTargetHandler target = new StoreWritingRecoveryTarget(targetStore) {
+            @Override
+            public void writeFileChunk(StoreFileMetaData md, long position, BytesReference content, boolean lastChunk,
+                                       int totalTranslogOps, ActionListener<Void> listener) {
+                super.writeFileChunk(md, position, content, lastChunk, totalTranslogOps, ActionListener.wrap(r -> {
+                    synchronized (inFlight) {
+                        inFlight.add(Tuple.tuple(md.name(), listener));
+                        assertThat(inFlight.size(), lessThanOrEqualTo(maxConcurrentFileChunks));
+                        assertThat(inFlight.stream().map(Tuple::v1).distinct().count(), lessThanOrEqualTo((long) maxConcurrentFiles));
+                    }
+                }, listener::onFailure));
+            }
+        };
+        RecoverySourceHandler handler = new RecoverySourceHandler(mock(IndexShard.class), target, request,
+            between(1, 8) * 1024, maxConcurrentFileChunks, maxConcurrentFiles);
+        Directory dir = store.directory();
+        RandomIndexWriter writer = new RandomIndexWriter(random(), dir, newIndexWriterConfig());
+        int numDocs = randomIntBetween(10, 100);
+        for (int i = 0; i < numDocs; i++) {
+            Document document = new Document();
+            document.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+            document.add(newField("field", randomUnicodeOfCodepointLengthBetween(1, 10), TextField.TYPE_STORED));
+            writer.addDocument(document);
+        }
+        writer.commit();
+        writer.close();
+
+        Store.MetadataSnapshot metadata = store.getMetadata(null);
+        List<StoreFileMetaData> metas = new ArrayList<>();
+        for (StoreFileMetaData md : metadata) {
+            metas.add(md);
+        }
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread sender = new Thread(() -> {
+            try {
+                handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), () -> 0);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        sender.start();
+        // acknowledge the chunks in random order while the source is sending
+        while (sender.isAlive()) {
+            final Tuple<String, ActionListener<Void>> next;
+            synchronized (inFlight) {
+                next = inFlight.isEmpty() ? null : inFlight.remove(randomInt(inFlight.size() - 1));
+            }
+            if (next != null) {
+                next.v2().onResponse(null);
+            } else {
+                Thread.yield();
+            }
+        }
+        sender.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        assertThat(inFlight, empty());
+        Store.RecoveryDiff recoveryDiff = targetStore.getMetadata(null).recoveryDiff(metadata);
+        assertEquals(metas.size(), recoveryDiff.identical.size());
+        IOUtils.close(store, targetStore);
+    }
+
     public StartRecoveryRequest getStartRecoveryRequest() throws IOException {
         Store.MetadataSnapshot metadataSnapshot = randomBoolean() ? Store.MetadataSnapshot.EMPTY :
             new Store.MetadataSnapshot(Collections.emptyMap(),
@@ -280,8 +351,9 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         Path tempDir = createTempDir();
         Store store = newStore(tempDir, false);
         AtomicBoolean failedEngine = new AtomicBoolean(false);
-        RecoverySourceHandler handler = new RecoverySourceHandler(null, null, request,
-                recoverySettings.getChunkSize().bytesAsInt()) {
+        Store targetStore = newStore(createTempDir(), false);
+        RecoverySourceHandler handler = new RecoverySourceHandler(mock(IndexShard.class), new StoreWritingRecoveryTarget(targetStore),
+                request, recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), between(1, 8)) {
             @Override
             protected void failEngine(IOException cause) {
                 assertFalse(failedEngine.get());
@@ -309,21 +381,8 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         CorruptionUtils.corruptFile(random(), FileSystemUtils.files(tempDir, (p) ->
             (p.getFileName().toString().equals("write.lock") ||
                 p.getFileName().toString().startsWith("extra")) == false));
-        Store targetStore = newStore(createTempDir(), false);
         try {
-            handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), (md) -> {
-                try {
-                    return new IndexOutputOutputStream(targetStore.createVerifyingOutput(md.name(), md, IOContext.DEFAULT)) {
-                        @Override
-                        public void close() throws IOException {
-                            super.close();
-                            store.directory().sync(Collections.singleton(md.name())); // sync otherwise MDW will mess with it
-                        }
-                    };
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+            handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), () -> 0);
             fail("corrupted index");
         } catch (IOException ex) {
             assertNotNull(ExceptionsHelper.unwrapCorruption(ex));
@@ -339,8 +398,23 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         Path tempDir = createTempDir();
         Store store = newStore(tempDir, false);
         AtomicBoolean failedEngine = new AtomicBoolean(false);
-        RecoverySourceHandler handler = new RecoverySourceHandler(null, null, request,
-                recoverySettings.getChunkSize().bytesAsInt()) {
+        final boolean throwCorruptedIndexException = randomBoolean();
+        final boolean failAsync = randomBoolean();
+        final RecoveryTargetHandler target = new StoreWritingRecoveryTarget(null) {
+            @Override
+            public void writeFileChunk(StoreFileMetaData md, long position, BytesReference content, boolean lastChunk,
+                                       int totalTranslogOps, ActionListener<Void> listener) {
+                final RuntimeException e = throwCorruptedIndexException ?
+                    new RuntimeException(new CorruptIndexException("foo", "bar")) : new RuntimeException("boom");
+                if (failAsync) {
+                    listener.onFailure(e);
+                } else {
+                    throw e;
+                }
+            }
+        };
+        RecoverySourceHandler handler = new RecoverySourceHandler(mock(IndexShard.class), target, request,
+                recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), between(1, 8)) {
             @Override
             protected void failEngine(IOException cause) {
                 assertFalse(failedEngine.get());
@@ -364,16 +438,8 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         for (StoreFileMetaData md : metadata) {
             metas.add(md);
         }
-        final boolean throwCorruptedIndexException = randomBoolean();
-        Store targetStore = newStore(createTempDir(), false);
         try {
-            handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), (md) -> {
-                if (throwCorruptedIndexException) {
-                    throw new RuntimeException(new CorruptIndexException("foo", "bar"));
-                } else {
-                    throw new RuntimeException("boom");
-                }
-            });
+            handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]), () -> 0);
             fail("exception index");
         } catch (RuntimeException ex) {
             assertNull(ExceptionsHelper.unwrapCorruption(ex));
@@ -386,7 +452,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
             fail("not expected here");
         }
         assertFalse(failedEngine.get());
-        IOUtils.close(store, targetStore);
+        IOUtils.close(store);
     }
 
     public void testThrowExceptionOnPrimaryRelocatedBeforePhase1Started() throws IOException {
@@ -469,5 +535,80 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         return new Store(shardId,  INDEX_SETTINGS, baseDirectoryWrapper, new DummyShardLock(shardId));
     }
 
+    /**
+     * A recovery target that writes the file chunks it receives, in order, to a store and acknowledges them right away.
+     */
+    private static class StoreWritingRecoveryTarget implements RecoveryTargetHandler {
+        private final Store store;
+        private final Map<String, IndexOutput> outputs = new HashMap<>();
 
+        StoreWritingRecoveryTarget(Store store) {
+            this.store = store;
+        }
+
+        @Override
+        public void prepareForTranslogOperations(boolean fileBasedRecovery, int totalTranslogOps) {
+        }
+
+        @Override
+        public void finalizeRecovery(long globalCheckpoint) {
+        }
+
+        @Override
+        public void ensureClusterStateVersion(long clusterStateVersion) {
+        }
+
+        @Override
+        public void handoffPrimaryContext(ReplicationTracker.PrimaryContext primaryContext) {
+        }
+
+        @Override
+        public long indexTranslogOperations(List<Translog.Operation> operations, int totalTranslogOps,
+                                            long maxSeenAutoIdTimestampOnPrimary, long maxSeqNoOfUpdatesOrDeletesOnPrimary) {
+            return SequenceNumbers.NO_OPS_PERFORMED;
+        }
+
+        @Override
+        public void receiveFileInfo(List<String> phase1FileNames, List<Long> phase1FileSizes, List<String> phase1ExistingFileNames,
+                                    List<Long> phase1ExistingFileSizes, int totalTranslogOps) {
+        }
+
+        @Override
+        public void cleanFiles(int totalTranslogOps, Store.MetadataSnapshot sourceMetaData) {
+        }
+
+        @Override
+        public void restoreFileFromSnapshot(BlobStoreRepository repository, IndexId indexId, BlobStoreIndexShardSnapshot.FileInfo file,
+                                            int totalTranslogOps, ActionListener<Void> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeFileChunk(StoreFileMetaData md, long position, BytesReference content, boolean lastChunk,
+                                   int totalTranslogOps, ActionListener<Void> listener) {
+            try {
+                final IndexOutput output;
+                synchronized (outputs) {
+                    if (position == 0) {
+                        outputs.put(md.name(), store.createVerifyingOutput(md.name(), md, IOContext.DEFAULT));
+                    }
+                    output = lastChunk ? outputs.remove(md.name()) : outputs.get(md.name());
+                }
+                final BytesRef bytes = content.toBytesRef();
+                output.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+                if (lastChunk) {
+                    try {
+                        Store.verify(output);
+                    } finally {
+                        output.close();
+                    }
+                    store.directory().sync(Collections.singleton(md.name())); // sync otherwise MDW will mess with it
+                }
+            } catch (Exception e) {
+                listener.onFailure(e);
+                return;
+            }
+            listener.onResponse(null);
+        }
+    }
 }
@@ -19,16 +19,28 @@
 package org.elasticsearch.indices.recovery;
 
 import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.elasticsearch.Version;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -87,4 +99,72 @@ public class RecoveryStatusTests extends ESSingleNodeTestCase {
         // we must fail the recovery because marking it as done will try to move the shard to POST_RECOVERY, which will fail because it's started
         status.fail(new RecoveryFailedException(status.state(), "end of test. OK.", null), false);
     }
+
+    public void testWriteFileChunksOutOfOrder() throws IOException {
+        IndexService service = createIndex("foo");
+
+        IndexShard indexShard = service.getShardOrNull(0);
+        DiscoveryNode node = new DiscoveryNode("foo", buildNewFakeTransportAddress(), emptyMap(), emptySet(), Version.CURRENT);
+        RecoveryTarget status = new RecoveryTarget(indexShard, node, new PeerRecoveryTargetService.RecoveryListener() {
+            @Override
+            public void onRecoveryDone(RecoveryState state) {
+            }
+
+            @Override
+            public void onRecoveryFailure(RecoveryState state, RecoveryFailedException e, boolean sendShardFailure) {
+            }
+        }, version -> {});
+        final byte[] bytes;
+        final StoreFileMetaData md;
+        try (Directory dir = newDirectory()) {
+            try (IndexOutput output = dir.createOutput("foo.bar", IOContext.DEFAULT)) {
+                CodecUtil.writeHeader(output, "foo", 0);
+                final byte[] content = randomByteArrayOfLength(randomIntBetween(1, 1 << 16));
+                output.writeBytes(content, content.length);
+                CodecUtil.writeFooter(output);
+            }
+            try (IndexInput input = dir.openInput("foo.bar", IOContext.DEFAULT)) {
+                bytes = new byte[(int) input.length()];
+                input.readBytes(bytes, 0, bytes.length);
+                md = new StoreFileMetaData("foo.bar", bytes.length, Store.digestToString(CodecUtil.retrieveChecksum(input)),
+                    MIN_SUPPORTED_LUCENE_VERSION);
+            }
+        }
+        status.state().getIndex().addFileDetail("foo.bar", bytes.length, false);
+        // the source sends several chunks of the file at once so the target may receive them in any order
+        final int chunkSize = randomIntBetween(1, 1024);
+        final List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < bytes.length; position += chunkSize) {
+            positions.add(position);
+        }
+        Collections.shuffle(positions, random());
+        // a chunk is only acknowledged once it is written, that is once all the chunks before it were received
+        final Map<Integer, PlainActionFuture<Void>> futures = new HashMap<>();
+        final Set<Integer> received = new HashSet<>();
+        int endOfFile = 0;
+        for (int position : positions) {
+            final int length = Math.min(chunkSize, bytes.length - position);
+            final PlainActionFuture<Void> future = new PlainActionFuture<>();
+            futures.put(position, future);
+            received.add(position);
+            status.writeFileChunk(md, position, new BytesArray(bytes, position, length), position + length == bytes.length, 0, future);
+            while (received.contains(endOfFile)) {
+                endOfFile += chunkSize;
+            }
+            for (Map.Entry<Integer, PlainActionFuture<Void>> entry : futures.entrySet()) {
+                assertEquals("chunk at [" + entry.getKey() + "]", entry.getKey() < endOfFile, entry.getValue().isDone());
+            }
+        }
+        for (PlainActionFuture<Void> future : futures.values()) {
+            future.actionGet();
+        }
+        assertNull(status.getOpenIndexOutput("foo.bar"));
+        try (IndexInput input = status.store().directory().openInput(status.getTempNameForFile("foo.bar"), IOContext.DEFAULT)) {
+            final byte[] written = new byte[(int) input.length()];
+            input.readBytes(written, 0, written.length);
+            assertArrayEquals(bytes, written);
+        }
+        assertEquals(bytes.length, status.state().getIndex().getFileDetails("foo.bar").recovered());
+        status.fail(new RecoveryFailedException(status.state(), "end of test. OK.", null), false);
+    }
 }
@@ -24,21 +24,32 @@ import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.TestShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.After;
 import org.junit.Before;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 public class ResponseCollectorServiceTests extends ESTestCase {
 
@@ -136,4 +147,91 @@ public class ResponseCollectorServiceTests extends ESTestCase {
         assertTrue(nodeStats.containsKey("node1"));
         assertFalse(nodeStats.containsKey("node2"));
     }
+
+    public void testShardCopyResponseTime() {
+        final ShardId shardId = new ShardId("index", "_na_", 0);
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), equalTo(-1L));
+        for (int i = 0; i < ResponseCollectorService.ResponseTimeHistogram.MIN_SAMPLES - 1; i++) {
+            collector.addShardCopyResponseTime(shardId, "node1", 1000);
+        }
+        // too few samples to report a percentile
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), equalTo(-1L));
+        collector.addShardCopyResponseTime(shardId, "node1", 1000);
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), greaterThanOrEqualTo(1000L));
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), lessThanOrEqualTo(1250L));
+        assertThat(collector.getShardCopyResponseTime(shardId, "node2", 50), equalTo(-1L));
+        assertThat(collector.getShardCopyResponseTime(new ShardId("index", "_na_", 1), "node1", 50), equalTo(-1L));
+
+        collector.removeNode("node1");
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), equalTo(-1L));
+    }
+
+    public void testShardCopyRelocationAndIndexDeletion() {
+        final ShardId shardId = new ShardId("index", "_na_", 0);
+        for (String nodeId : new String[] { "node1", "node2" }) {
+            for (int i = 0; i < ResponseCollectorService.ResponseTimeHistogram.MIN_SAMPLES; i++) {
+                collector.addShardCopyResponseTime(shardId, nodeId, 1000);
+            }
+        }
+        final ClusterState initialState = stateWithCopies(shardId, "node1", "node2");
+        final ClusterState relocatedState = stateWithCopies(shardId, "node1", "node3");
+        collector.clusterChanged(new ClusterChangedEvent("test", relocatedState, initialState));
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), greaterThan(0L));
+        assertThat(collector.getShardCopyResponseTime(shardId, "node2", 50), equalTo(-1L));
+
+        // the index is deleted and created again with the same name
+        final ClusterState recreatedState = stateWithCopies(new ShardId("index", "uuid", 0), "node1", "node3");
+        collector.clusterChanged(new ClusterChangedEvent("test", recreatedState, relocatedState));
+        assertThat(collector.getShardCopyResponseTime(shardId, "node1", 50), equalTo(-1L));
+    }
+
+    private static ClusterState stateWithCopies(ShardId shardId, String primaryNodeId, String replicaNodeId) {
+        final IndexShardRoutingTable shardRoutingTable = new IndexShardRoutingTable.Builder(shardId)
+            .addShard(TestShardRouting.newShardRouting(shardId, primaryNodeId, true, ShardRoutingState.STARTED))
+            .addShard(TestShardRouting.newShardRouting(shardId, replicaNodeId, false, ShardRoutingState.STARTED))
+            .build();
+        return ClusterState.builder(new ClusterName("cluster"))
+            .routingTable(RoutingTable.builder()
+                .add(IndexRoutingTable.builder(shardId.getIndex()).addIndexShard(shardRoutingTable))
+                .build())
+            .build();
+    }
+
+    public void testResponseTimeHistogramPercentiles() {
+        final ResponseCollectorService.ResponseTimeHistogram histogram = new ResponseCollectorService.ResponseTimeHistogram();
+        final long[] values = new long[ResponseCollectorService.ResponseTimeHistogram.DECAY_INTERVAL - 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomLongBetween(0, TimeUnit.SECONDS.toNanos(10));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        final double percentile = randomDoubleBetween(1, 100, true);
+        final long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+        // buckets are a quarter of a power of two wide
+        assertThat(histogram.percentile(percentile), greaterThanOrEqualTo(expected));
+        assertThat(histogram.percentile(percentile), lessThanOrEqualTo(expected + expected / 4));
+    }
+
+    public void testResponseTimeHistogramBuckets() {
+        for (int i = 0; i < 1000; i++) {
+            final long nanos = randomNonNegativeLong();
+            final int bucket = ResponseCollectorService.ResponseTimeHistogram.bucket(nanos);
+            assertThat(ResponseCollectorService.ResponseTimeHistogram.bucketUpperBound(bucket), greaterThanOrEqualTo(nanos));
+            if (bucket > 0) {
+                assertThat(ResponseCollectorService.ResponseTimeHistogram.bucketUpperBound(bucket - 1), lessThan(nanos));
+            }
+        }
+    }
+
+    public void testResponseTimeHistogramDecays() {
+        final ResponseCollectorService.ResponseTimeHistogram histogram = new ResponseCollectorService.ResponseTimeHistogram();
+        for (int i = 0; i < ResponseCollectorService.ResponseTimeHistogram.DECAY_INTERVAL; i++) {
+            histogram.record(1_000_000);
+        }
+        // the copy recovers: recent fast responses soon outweigh the old slow ones
+        for (int i = 0; i < 2 * ResponseCollectorService.ResponseTimeHistogram.DECAY_INTERVAL; i++) {
+            histogram.record(1_000);
+        }
+        assertThat(histogram.percentile(50), lessThanOrEqualTo(1250L));
+    }
 }
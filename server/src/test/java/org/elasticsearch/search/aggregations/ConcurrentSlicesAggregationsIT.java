@@ -0,0 +1,213 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.MergePolicyConfig;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.sampler.Sampler;
+import org.elasticsearch.search.aggregations.bucket.significant.SignificantTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.Stats;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.query.CollectorResult;
+import org.elasticsearch.test.ESIntegTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.search.aggregations.AggregationBuilders.cardinality;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.range;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.sampler;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.significantTerms;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Checks that the aggregations of an index whose shards may collect slices of segments concurrently are the same as the
+ * aggregations of the same documents in an index that collects all segments at once.
+ */
+@ESIntegTestCase.SuiteScopeTestCase
+public class ConcurrentSlicesAggregationsIT extends ESIntegTestCase {
+
+    private static final String SLICED = "sliced";
+    private static final String UNSLICED = "unsliced";
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        createIndex(SLICED, randomIntBetween(2, 8));
+        createIndex(UNSLICED, 1);
+        final int numDocs = scaledRandomIntBetween(200, 1000);
+        final int numSegments = randomIntBetween(4, 10);
+        List<IndexRequestBuilder> docs = new ArrayList<>();
+        for (int i = 0; i < numDocs; ++i) {
+            final String tag = "tag" + randomIntBetween(0, 20);
+            final String category = i % 5 == 0 ? "rare" : "common";
+            final String user = "user" + randomIntBetween(0, 200);
+            final long value = randomIntBetween(0, 1000);
+            for (String index : new String[] { SLICED, UNSLICED }) {
+                docs.add(client().prepareIndex(index, "_doc", Integer.toString(i))
+                    .setSource("tag", tag, "category", category, "user", user, "value", value));
+            }
+            if (docs.size() >= 2 * numDocs / numSegments) {
+                // one segment per batch, merges are disabled
+                indexRandom(true, false, docs);
+                docs.clear();
+            }
+        }
+        indexRandom(true, false, docs);
+    }
+
+    private void createIndex(String index, int maxConcurrentSlices) {
+        assertAcked(prepareCreate(index)
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(MergePolicyConfig.INDEX_MERGE_ENABLED, false)
+                .put(IndexSettings.MAX_CONCURRENT_SEARCH_SLICES_SETTING.getKey(), maxConcurrentSlices))
+            .addMapping("_doc", "tag", "type=keyword", "category", "type=keyword", "user", "type=keyword", "value", "type=long"));
+    }
+
+    private Aggregations search(String index, AggregationBuilder aggregation) {
+        return search(index, aggregation, false).getAggregations();
+    }
+
+    private SearchResponse search(String index, AggregationBuilder aggregation, boolean profile) {
+        SearchResponse response = client().prepareSearch(index)
+            .setQuery(QueryBuilders.termQuery("category", "rare"))
+            .addAggregation(aggregation)
+            .setProfile(profile)
+            .get();
+        assertSearchResponse(response);
+        return response;
+    }
+
+    public void testTerms() {
+        final AggregationBuilder aggregation = terms("tags").field("tag").size(randomIntBetween(1, 25));
+        final Terms expected = search(UNSLICED, aggregation).get("tags");
+        final Terms actual = search(SLICED, aggregation).get("tags");
+        assertThat(expected.getBuckets().size(), greaterThan(0));
+        assertTermsEqual(expected, actual);
+    }
+
+    public void testSignificantTerms() {
+        final AggregationBuilder aggregation = significantTerms("tags").field("tag").minDocCount(1);
+        final SignificantTerms expected = search(UNSLICED, aggregation).get("tags");
+        final SignificantTerms actual = search(SLICED, aggregation).get("tags");
+        assertThat(expected.getBuckets().size(), greaterThan(0));
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (SignificantTerms.Bucket expectedBucket : expected.getBuckets()) {
+            final SignificantTerms.Bucket actualBucket = actual.getBucketByKey(expectedBucket.getKeyAsString());
+            assertNotNull(actualBucket);
+            assertThat(actualBucket.getSubsetSize(), equalTo(expectedBucket.getSubsetSize()));
+            assertThat(actualBucket.getSupersetSize(), equalTo(expectedBucket.getSupersetSize()));
+            assertThat(actualBucket.getSubsetDf(), equalTo(expectedBucket.getSubsetDf()));
+            assertThat(actualBucket.getSupersetDf(), equalTo(expectedBucket.getSupersetDf()));
+            assertThat(actualBucket.getSignificanceScore(), equalTo(expectedBucket.getSignificanceScore()));
+        }
+    }
+
+    public void testSampler() {
+        final AggregationBuilder aggregation = sampler("sample").shardSize(randomIntBetween(1, 100))
+            .subAggregation(terms("tags").field("tag").size(25));
+        final Sampler expected = search(UNSLICED, aggregation).get("sample");
+        final Sampler actual = search(SLICED, aggregation).get("sample");
+        assertThat(actual.getDocCount(), equalTo(expected.getDocCount()));
+        assertTermsEqual(expected.getAggregations().get("tags"), actual.getAggregations().get("tags"));
+    }
+
+    public void testCardinality() {
+        final AggregationBuilder aggregation = cardinality("users").field("user");
+        final Cardinality expected = search(UNSLICED, aggregation).get("users");
+        final Cardinality actual = search(SLICED, aggregation).get("users");
+        assertThat(expected.getValue(), greaterThan(0L));
+        assertThat(actual.getValue(), equalTo(expected.getValue()));
+    }
+
+    public void testHistogram() {
+        final AggregationBuilder aggregation = histogram("values").field("value").interval(randomIntBetween(10, 200))
+            .minDocCount(randomIntBetween(0, 1))
+            .subAggregation(stats("stats").field("value"))
+            .subAggregation(cardinality("users").field("user"));
+        final Histogram expected = search(UNSLICED, aggregation).get("values");
+        final Histogram actual = search(SLICED, aggregation).get("values");
+        assertThat(expected.getBuckets().size(), greaterThan(0));
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (int i = 0; i < expected.getBuckets().size(); i++) {
+            final Histogram.Bucket expectedBucket = expected.getBuckets().get(i);
+            final Histogram.Bucket actualBucket = actual.getBuckets().get(i);
+            assertThat(actualBucket.getKey(), equalTo(expectedBucket.getKey()));
+            assertThat(actualBucket.getDocCount(), equalTo(expectedBucket.getDocCount()));
+            final Stats expectedStats = expectedBucket.getAggregations().get("stats");
+            final Stats actualStats = actualBucket.getAggregations().get("stats");
+            assertThat(actualStats.getCount(), equalTo(expectedStats.getCount()));
+            assertThat(actualStats.getMin(), equalTo(expectedStats.getMin()));
+            assertThat(actualStats.getMax(), equalTo(expectedStats.getMax()));
+            assertThat(actualStats.getSum(), equalTo(expectedStats.getSum()));
+            final Cardinality expectedUsers = expectedBucket.getAggregations().get("users");
+            final Cardinality actualUsers = actualBucket.getAggregations().get("users");
+            assertThat(actualUsers.getValue(), equalTo(expectedUsers.getValue()));
+        }
+    }
+
+    public void testRange() {
+        final AggregationBuilder aggregation = range("values").field("value").addUnboundedTo(250).addRange(250, 750).addUnboundedFrom(750);
+        final Range expected = search(UNSLICED, aggregation).get("values");
+        final Range actual = search(SLICED, aggregation).get("values");
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (int i = 0; i < expected.getBuckets().size(); i++) {
+            assertThat(actual.getBuckets().get(i).getKeyAsString(), equalTo(expected.getBuckets().get(i).getKeyAsString()));
+            assertThat(actual.getBuckets().get(i).getDocCount(), equalTo(expected.getBuckets().get(i).getDocCount()));
+        }
+    }
+
+    public void testProfiledRequestsCollectEachSliceWithItsOwnCollectors() {
+        final AggregationBuilder aggregation = cardinality("users").field("user");
+        final SearchResponse response = search(SLICED, aggregation, true);
+        final ProfileShardResult profile = response.getProfileResults().values().iterator().next();
+        final CollectorResult collector = profile.getQueryProfileResults().get(0).getCollectorResult();
+        assertThat(collector.getReason(), equalTo(CollectorResult.REASON_SEARCH_SLICES));
+        assertThat(collector.getProfiledChildren().size(), greaterThan(1));
+        final Cardinality expected = search(UNSLICED, aggregation).get("users");
+        final Cardinality actual = response.getAggregations().get("users");
+        assertThat(actual.getValue(), equalTo(expected.getValue()));
+    }
+
+    private static void assertTermsEqual(Terms expected, Terms actual) {
+        assertThat(actual.getDocCountError(), equalTo(expected.getDocCountError()));
+        assertThat(actual.getSumOfOtherDocCounts(), equalTo(expected.getSumOfOtherDocCounts()));
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (int i = 0; i < expected.getBuckets().size(); i++) {
+            assertThat(actual.getBuckets().get(i).getKeyAsString(), equalTo(expected.getBuckets().get(i).getKeyAsString()));
+            assertThat(actual.getBuckets().get(i).getDocCount(), equalTo(expected.getBuckets().get(i).getDocCount()));
+        }
+    }
+}
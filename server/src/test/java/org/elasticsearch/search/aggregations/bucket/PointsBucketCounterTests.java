@@ -0,0 +1,217 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.support.FieldContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PointsBucketCounterTests extends ESTestCase {
+
+    private static final String FIELD = "date";
+
+    public void testCreateOrNull() {
+        final ValuesSourceConfig<ValuesSource.Numeric> config = mockDateValuesSourceConfig(FIELD, true);
+        assertNotNull(PointsBucketCounter.createOrNull(mockSearchContext(null), null, AggregatorFactories.EMPTY, config));
+        assertNotNull(PointsBucketCounter.createOrNull(mockSearchContext(new MatchAllDocsQuery()), null,
+            AggregatorFactories.EMPTY, config));
+        assertNotNull(PointsBucketCounter.createOrNull(mockSearchContext(LongPoint.newRangeQuery(FIELD, 0, 100)), null,
+            AggregatorFactories.EMPTY, config));
+        final Query filter = new BooleanQuery.Builder()
+            .add(LongPoint.newRangeQuery(FIELD, 0, 100), BooleanClause.Occur.FILTER)
+            .build();
+        assertNotNull(PointsBucketCounter.createOrNull(mockSearchContext(filter), null, AggregatorFactories.EMPTY, config));
+
+        assertNull(PointsBucketCounter.createOrNull(mockSearchContext(LongPoint.newRangeQuery("other", 0, 100)), null,
+            AggregatorFactories.EMPTY, config));
+        assertNull(PointsBucketCounter.createOrNull(mockSearchContext(new TermQuery(new Term("foo", "bar"))), null,
+            AggregatorFactories.EMPTY, config));
+        assertNull(PointsBucketCounter.createOrNull(mockSearchContext(null), mock(Aggregator.class), AggregatorFactories.EMPTY, config));
+        assertNull(PointsBucketCounter.createOrNull(mockSearchContext(null), null, AggregatorFactories.EMPTY,
+            mockDateValuesSourceConfig(FIELD, false)));
+
+        final SearchContext minScoreContext = mockSearchContext(null);
+        when(minScoreContext.minimumScore()).thenReturn(1f);
+        assertNull(PointsBucketCounter.createOrNull(minScoreContext, null, AggregatorFactories.EMPTY, config));
+        final SearchContext terminateAfterContext = mockSearchContext(null);
+        when(terminateAfterContext.terminateAfter()).thenReturn(10);
+        assertNull(PointsBucketCounter.createOrNull(terminateAfterContext, null, AggregatorFactories.EMPTY, config));
+    }
+
+    public void testCountByKey() throws IOException {
+        final long lower = randomBoolean() ? Long.MIN_VALUE : randomLongBetween(0, 5000);
+        final long upper = randomBoolean() ? Long.MAX_VALUE : randomLongBetween(5000, 10000);
+        final PointsBucketCounter counter = createCounter(lower, upper);
+        final long interval = randomFrom(1L, 7L, 100L, 1000L);
+        try (Directory directory = newDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final Map<Long, Integer> expected = new HashMap<>();
+            final int numDocs = scaledRandomIntBetween(1, 10000);
+            for (int i = 0; i < numDocs; i++) {
+                final Document document = new Document();
+                // the segment needs at least one value to be counted from points
+                if (i == 0 || frequently()) {
+                    final long value = randomLongBetween(0, 10000);
+                    document.add(new LongPoint(FIELD, value));
+                    if (value >= lower && value <= upper) {
+                        expected.merge(Math.floorDiv(value, interval), 1, Integer::sum);
+                    }
+                }
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+            try (IndexReader reader = DirectoryReader.open(writer)) {
+                final Map<Long, Integer> counts = new HashMap<>();
+                assertTrue(counter.countByKey(reader.leaves().get(0), value -> Math.floorDiv(value.longValue(), interval),
+                    (key, count) -> counts.merge(key, count, Integer::sum)));
+                assertThat(counts, equalTo(expected));
+            }
+        }
+    }
+
+    public void testCountInRanges() throws IOException {
+        final long lower = randomBoolean() ? Long.MIN_VALUE : randomLongBetween(0, 5000);
+        final long upper = randomBoolean() ? Long.MAX_VALUE : randomLongBetween(5000, 10000);
+        final PointsBucketCounter counter = createCounter(lower, upper);
+        final int numRanges = randomIntBetween(1, 10);
+        final double[] from = new double[numRanges];
+        final double[] to = new double[numRanges];
+        for (int i = 0; i < numRanges; i++) {
+            from[i] = rarely() ? Double.NEGATIVE_INFINITY : randomDoubleBetween(0, 10000, true);
+            to[i] = rarely() ? Double.POSITIVE_INFINITY : randomDoubleBetween(from[i], 10000, true);
+        }
+        try (Directory directory = newDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final long[] expected = new long[numRanges];
+            final int numDocs = scaledRandomIntBetween(1, 10000);
+            for (int i = 0; i < numDocs; i++) {
+                final Document document = new Document();
+                // the segment needs at least one value to be counted from points
+                if (i == 0 || frequently()) {
+                    final long value = randomLongBetween(0, 10000);
+                    document.add(new LongPoint(FIELD, value));
+                    for (int r = 0; r < numRanges; r++) {
+                        if (value >= lower && value <= upper && value >= from[r] && value < to[r]) {
+                            expected[r]++;
+                        }
+                    }
+                }
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+            try (IndexReader reader = DirectoryReader.open(writer)) {
+                final long[] counts = new long[numRanges];
+                assertTrue(counter.countInRanges(reader.leaves().get(0), from, to, (range, count) -> counts[(int) range] += count));
+                assertArrayEquals(expected, counts);
+            }
+        }
+    }
+
+    public void testSegmentsThatMustBeCollected() throws IOException {
+        final PointsBucketCounter counter = createCounter(Long.MIN_VALUE, Long.MAX_VALUE);
+        try (Directory directory = newDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            // a segment without points for the field
+            Document document = new Document();
+            document.add(new LongPoint("other", 1L));
+            writer.addDocument(document);
+            writer.commit();
+            // a segment where a document has several values
+            document = new Document();
+            document.add(new LongPoint(FIELD, 1L));
+            document.add(new LongPoint(FIELD, 2L));
+            writer.addDocument(document);
+            writer.commit();
+            // a segment with a deleted document
+            for (int i = 0; i < 2; i++) {
+                document = new Document();
+                document.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+                document.add(new LongPoint(FIELD, i));
+                writer.addDocument(document);
+            }
+            writer.commit();
+            writer.deleteDocuments(new Term("id", "0"));
+            try (IndexReader reader = DirectoryReader.open(writer)) {
+                assertThat(reader.leaves().size(), equalTo(3));
+                for (LeafReaderContext ctx : reader.leaves()) {
+                    assertFalse(counter.countByKey(ctx, Number::longValue, (key, count) -> fail()));
+                    assertFalse(counter.countInRanges(ctx, new double[] { 0 }, new double[] { 10 }, (range, count) -> fail()));
+                }
+            }
+        }
+    }
+
+    private PointsBucketCounter createCounter(long lower, long upper) {
+        final Query query = lower == Long.MIN_VALUE && upper == Long.MAX_VALUE ? new MatchAllDocsQuery()
+            : LongPoint.newRangeQuery(FIELD, lower, upper);
+        final PointsBucketCounter counter = PointsBucketCounter.createOrNull(mockSearchContext(query), null, AggregatorFactories.EMPTY,
+            mockDateValuesSourceConfig(FIELD, true));
+        assertNotNull(counter);
+        return counter;
+    }
+
+    private SearchContext mockSearchContext(Query query) {
+        SearchContext searchContext = mock(SearchContext.class);
+        when(searchContext.query()).thenReturn(query);
+        return searchContext;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValuesSourceConfig<ValuesSource.Numeric> mockDateValuesSourceConfig(String fieldName, boolean indexed) {
+        ValuesSourceConfig<ValuesSource.Numeric> config = mock(ValuesSourceConfig.class);
+        MappedFieldType ft = new DateFieldMapper.Builder(fieldName).fieldType();
+        ft.setName(fieldName);
+        ft.setIndexOptions(indexed ? IndexOptions.DOCS : IndexOptions.NONE);
+        ft.freeze();
+        when(config.fieldContext()).thenReturn(new FieldContext(fieldName, null, ft));
+        return config;
+    }
+}
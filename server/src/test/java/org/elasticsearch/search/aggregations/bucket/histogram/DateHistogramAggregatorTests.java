@@ -20,11 +20,15 @@
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
@@ -369,6 +373,63 @@ public class DateHistogramAggregatorTests extends AggregatorTestCase {
             histogram -> {}, 5));
     }
 
+    public void testCountFromPoints() throws IOException {
+        final String field = "indexed_date";
+        final long start = asLong("2015-01-01T00:00:00");
+        final long end = asLong("2018-01-01T00:00:00");
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                final int numDocs = scaledRandomIntBetween(10, 1000);
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    document.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+                    // segments with multi-valued documents or deletions must be collected
+                    final int numValues = rarely() ? randomIntBetween(0, 3) : 1;
+                    for (int j = 0; j < numValues; j++) {
+                        final long instant = randomLongBetween(start, end);
+                        document.add(new SortedNumericDocValuesField(field, instant));
+                        document.add(new LongPoint(field, instant));
+                    }
+                    indexWriter.addDocument(document);
+                    if (rarely()) {
+                        indexWriter.deleteDocuments(new Term("id", Integer.toString(randomInt(i))));
+                    }
+                    if (rarely()) {
+                        indexWriter.commit();
+                    }
+                }
+            }
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+
+                DateFieldMapper.DateFieldType fieldType = new DateFieldMapper.Builder("_name").fieldType();
+                fieldType.setHasDocValues(true);
+                fieldType.setName(field);
+
+                // the same documents are matched by a query that can be answered from points and by one that must be collected
+                final Query pointsQuery;
+                final Query docValuesQuery;
+                if (randomBoolean()) {
+                    pointsQuery = new MatchAllDocsQuery();
+                    docValuesQuery = new DocValuesFieldExistsQuery(field);
+                } else {
+                    final long lower = randomLongBetween(start, end);
+                    final long upper = randomLongBetween(lower, end);
+                    pointsQuery = LongPoint.newRangeQuery(field, lower, upper);
+                    docValuesQuery = SortedNumericDocValuesField.newSlowRangeQuery(field, lower, upper);
+                }
+                DateHistogramAggregationBuilder aggregationBuilder = new DateHistogramAggregationBuilder("_name")
+                    .field(field)
+                    .dateHistogramInterval(randomFrom(DateHistogramInterval.DAY, DateHistogramInterval.WEEK, DateHistogramInterval.MONTH));
+
+                InternalDateHistogram fromPoints = search(indexSearcher, pointsQuery, aggregationBuilder, fieldType);
+                InternalDateHistogram collected = search(indexSearcher, docValuesQuery, aggregationBuilder, fieldType);
+                assertEquals(collected.getBuckets(), fromPoints.getBuckets());
+            }
+        }
+    }
+
     private void testSearchCase(Query query, List<String> dataset,
                                 Consumer<DateHistogramAggregationBuilder> configure,
                                 Consumer<Histogram> verify) throws IOException {
@@ -0,0 +1,192 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class StreamingTermsReduceTests extends ESTestCase {
+
+    private static final BucketOrder ORDER = BucketOrder.compound(BucketOrder.count(false), BucketOrder.key(true));
+
+    public void testFinalReduceMatchesHeapReduce() {
+        final List<Map<Long, Long>> shardCounts = randomShardCounts();
+        final int requiredSize = randomIntBetween(1, 20);
+        final int shardSize = requiredSize + randomIntBetween(0, 20);
+        final InternalAggregation heap = reduce(shardResults(shardCounts, requiredSize, shardSize, false),
+            new ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b -> {}, true, false));
+        final InternalAggregation streaming = reduce(shardResults(shardCounts, requiredSize, shardSize, false),
+            new ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b -> {}, true, true));
+        assertThat(streaming, equalTo(heap));
+
+        final InternalAggregation heapLongs = reduce(shardResults(shardCounts, requiredSize, shardSize, true),
+            new ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b -> {}, true, false));
+        final InternalAggregation streamingLongs = reduce(shardResults(shardCounts, requiredSize, shardSize, true),
+            new ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b -> {}, true, true));
+        assertThat(streamingLongs, equalTo(heapLongs));
+    }
+
+    public void testPartialReduceIsBoundedByShardSize() {
+        final List<Map<Long, Long>> shardCounts = randomShardCounts();
+        final int requiredSize = randomIntBetween(1, 10);
+        final int shardSize = requiredSize + randomIntBetween(0, 10);
+        final boolean longs = randomBoolean();
+        final List<InternalAggregation> shardResults = shardResults(shardCounts, requiredSize, shardSize, longs);
+        final Map<Object, Long> expectedCounts = new HashMap<>();
+        for (Map<Long, Long> counts : shardCounts) {
+            for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+                expectedCounts.merge(key(entry.getKey(), longs), entry.getValue(), Long::sum);
+            }
+        }
+
+        // reduce the shard results in batches, like the coordinating node does with batched_reduce_size
+        final int batchSize = randomIntBetween(2, 5);
+        List<InternalAggregation> partials = new ArrayList<>();
+        for (int i = 0; i < shardResults.size(); i += batchSize) {
+            final List<InternalAggregation> batch = new ArrayList<>(shardResults.subList(i, Math.min(i + batchSize, shardResults.size())));
+            if (partials.isEmpty() == false) {
+                batch.add(0, partials.remove(0));
+            }
+            final InternalTerms<?, ?> partial = (InternalTerms<?, ?>) reduce(batch,
+                new ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b -> {}, false, true));
+            assertThat(partial.getBuckets().size(), lessThanOrEqualTo(shardSize));
+            partials.add(partial);
+        }
+        final InternalTerms<?, ?> result = (InternalTerms<?, ?>) reduce(partials,
+            new ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, b -> {}, true, true));
+        assertThat(result.getBuckets().size(), lessThanOrEqualTo(requiredSize));
+        assertThat(result.getDocCountError(), greaterThanOrEqualTo(0L));
+        long totalDocCount = result.getSumOfOtherDocCounts();
+        for (InternalTerms.Bucket<?> bucket : result.getBuckets()) {
+            final long expected = expectedCounts.get(bucket.getKey());
+            // counts are never over-estimated and the error bounds the under-estimation
+            assertThat(bucket.getDocCount(), lessThanOrEqualTo(expected));
+            assertThat(expected - bucket.getDocCount(), lessThanOrEqualTo(result.getDocCountError()));
+            totalDocCount += bucket.getDocCount();
+        }
+        assertThat(totalDocCount, equalTo(expectedCounts.values().stream().mapToLong(Long::longValue).sum()));
+    }
+
+    public void testAccountsOnRequestBreaker() {
+        final List<Map<Long, Long>> shardCounts = randomShardCounts();
+        final HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+            Settings.builder().put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), false).build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        reduce(shardResults(shardCounts, 10, 20, randomBoolean()),
+            new ReduceContext(new BigArrays(null, breakerService), null, b -> {}, randomBoolean(), true));
+        assertThat(breaker.getUsed(), equalTo(0L));
+
+        final HierarchyCircuitBreakerService tinyBreakerService = new HierarchyCircuitBreakerService(
+            Settings.builder()
+                .put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), false)
+                .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "1b")
+                .build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        expectThrows(CircuitBreakingException.class, () -> reduce(shardResults(shardCounts, 10, 20, randomBoolean()),
+            new ReduceContext(new BigArrays(null, tinyBreakerService), null, b -> {}, randomBoolean(), true)));
+    }
+
+    private static InternalAggregation reduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
+        return aggregations.get(0).reduce(aggregations, reduceContext);
+    }
+
+    private static Object key(long term, boolean longs) {
+        return longs ? (Object) term : Long.toString(term);
+    }
+
+    /**
+     * Returns the doc counts per term of a random number of shards, with a skewed distribution of terms so that shards share their
+     * top terms.
+     */
+    private static List<Map<Long, Long>> randomShardCounts() {
+        final int numShards = randomIntBetween(2, 30);
+        final List<Map<Long, Long>> shardCounts = new ArrayList<>();
+        for (int i = 0; i < numShards; i++) {
+            final Map<Long, Long> counts = new HashMap<>();
+            final int numDocs = randomIntBetween(0, 500);
+            for (int doc = 0; doc < numDocs; doc++) {
+                final long term = (long) Math.floor(Math.pow(200, random().nextDouble()));
+                counts.merge(term, 1L, Long::sum);
+            }
+            shardCounts.add(counts);
+        }
+        return shardCounts;
+    }
+
+    /**
+     * Builds the terms aggregation that each shard returns: its top {@code shardSize} terms and the sum of the counts of the others.
+     */
+    private static List<InternalAggregation> shardResults(List<Map<Long, Long>> shardCounts, int requiredSize, int shardSize,
+                                                          boolean longs) {
+        final List<InternalAggregation> results = new ArrayList<>();
+        for (Map<Long, Long> counts : shardCounts) {
+            final List<Map.Entry<Long, Long>> entries = new ArrayList<>(counts.entrySet());
+            entries.sort((a, b) -> {
+                final int cmp = Long.compare(b.getValue(), a.getValue());
+                return cmp != 0 ? cmp : Long.toString(a.getKey()).compareTo(Long.toString(b.getKey()));
+            });
+            long otherDocCount = 0;
+            for (Map.Entry<Long, Long> entry : entries.subList(Math.min(shardSize, entries.size()), entries.size())) {
+                otherDocCount += entry.getValue();
+            }
+            final List<Map.Entry<Long, Long>> top = entries.subList(0, Math.min(shardSize, entries.size()));
+            if (longs) {
+                final List<LongTerms.Bucket> buckets = new ArrayList<>();
+                for (Map.Entry<Long, Long> entry : top) {
+                    buckets.add(new LongTerms.Bucket(entry.getKey(), entry.getValue(), InternalAggregations.EMPTY, true, 0,
+                        DocValueFormat.RAW));
+                }
+                results.add(new LongTerms("terms", ORDER, requiredSize, 1, Collections.emptyList(), null, DocValueFormat.RAW,
+                    shardSize, true, otherDocCount, buckets, 0));
+            } else {
+                final List<StringTerms.Bucket> buckets = new ArrayList<>();
+                for (Map.Entry<Long, Long> entry : top) {
+                    buckets.add(new StringTerms.Bucket(new BytesRef(Long.toString(entry.getKey())), entry.getValue(),
+                        InternalAggregations.EMPTY, true, 0, DocValueFormat.RAW));
+                }
+                results.add(new StringTerms("terms", ORDER, requiredSize, 1, Collections.emptyList(), null, DocValueFormat.RAW,
+                    shardSize, true, otherDocCount, buckets, 0));
+            }
+        }
+        return results;
+    }
+}
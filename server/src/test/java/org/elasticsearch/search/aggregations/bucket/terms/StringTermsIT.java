@@ -89,12 +89,14 @@ public class StringTermsIT extends AbstractTermsTestCase {
     public void randomizeOptimizations() {
         TermsAggregatorFactory.COLLECT_SEGMENT_ORDS = randomBoolean();
         TermsAggregatorFactory.REMAP_GLOBAL_ORDS = randomBoolean();
+        TermsAggregatorFactory.COLLECT_FROM_MANY_BUCKETS = randomBoolean();
     }
 
     @After
     public void resetOptimizations() {
         TermsAggregatorFactory.COLLECT_SEGMENT_ORDS = null;
         TermsAggregatorFactory.REMAP_GLOBAL_ORDS = null;
+        TermsAggregatorFactory.COLLECT_FROM_MANY_BUCKETS = null;
     }
 
     public static class CustomScriptPlugin extends AggregationTestScriptsPlugin {
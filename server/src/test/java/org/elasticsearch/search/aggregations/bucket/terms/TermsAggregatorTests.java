@@ -79,9 +79,11 @@ import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -91,6 +93,7 @@ import static org.elasticsearch.search.aggregations.PipelineAggregatorBuilders.b
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
 
 public class TermsAggregatorTests extends AggregatorTestCase {
 
@@ -102,11 +105,13 @@ public class TermsAggregatorTests extends AggregatorTestCase {
             if (randomizeAggregatorImpl) {
                 TermsAggregatorFactory.COLLECT_SEGMENT_ORDS = randomBoolean();
                 TermsAggregatorFactory.REMAP_GLOBAL_ORDS = randomBoolean();
+                TermsAggregatorFactory.COLLECT_FROM_MANY_BUCKETS = randomBoolean();
             }
             return super.createAggregator(aggregationBuilder, indexSearcher, fieldTypes);
         } finally {
             TermsAggregatorFactory.COLLECT_SEGMENT_ORDS = null;
             TermsAggregatorFactory.REMAP_GLOBAL_ORDS = null;
+            TermsAggregatorFactory.COLLECT_FROM_MANY_BUCKETS = null;
         }
     }
 
@@ -906,6 +911,92 @@ public class TermsAggregatorTests extends AggregatorTestCase {
         }
     }
 
+    public void testNestedTermsFromManyBuckets() throws Exception {
+        randomizeAggregatorImpl = false;
+        // low cardinality fields use dense arrays per owning bucket, others remap (owning bucket, term) pairs
+        final int numTerms2 = randomBoolean() ? randomIntBetween(1, 20) : randomIntBetween(200, 500);
+        final Map<String, Map<String, Long>> expected = new HashMap<>();
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                final int numDocs = scaledRandomIntBetween(100, 2000);
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    final String value1 = Integer.toString(randomIntBetween(0, 20));
+                    document.add(new SortedSetDocValuesField("field1", new BytesRef(value1)));
+                    final Map<String, Long> counts = expected.computeIfAbsent(value1, k -> new HashMap<>());
+                    final int numValues2 = randomIntBetween(0, 3);
+                    final List<String> values2 = new ArrayList<>();
+                    for (int j = 0; j < numValues2; j++) {
+                        final String value2 = Integer.toString(randomIntBetween(0, numTerms2 - 1));
+                        if (values2.contains(value2) == false) {
+                            values2.add(value2);
+                            document.add(new SortedSetDocValuesField("field2", new BytesRef(value2)));
+                            counts.merge(value2, 1L, Long::sum);
+                        }
+                    }
+                    indexWriter.addDocument(document);
+                }
+                final Set<String> allValues2 = new HashSet<>();
+                expected.values().forEach(counts -> allValues2.addAll(counts.keySet()));
+
+                try (IndexReader indexReader = maybeWrapReaderEs(indexWriter.getReader())) {
+                    IndexSearcher indexSearcher = newIndexSearcher(indexReader);
+                    final long minDocCount = randomFrom(0L, 1L);
+                    TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name1", ValueType.STRING)
+                        .field("field1")
+                        .size(100)
+                        .subAggregation(new TermsAggregationBuilder("_name2", ValueType.STRING)
+                            .field("field2")
+                            .size(1000)
+                            .minDocCount(minDocCount)
+                            .collectMode(Aggregator.SubAggCollectionMode.DEPTH_FIRST));
+                    MappedFieldType fieldType1 = new KeywordFieldMapper.KeywordFieldType();
+                    fieldType1.setName("field1");
+                    fieldType1.setHasDocValues(true);
+                    MappedFieldType fieldType2 = new KeywordFieldMapper.KeywordFieldType();
+                    fieldType2.setName("field2");
+                    fieldType2.setHasDocValues(true);
+
+                    final boolean fromManyBuckets = randomBoolean();
+                    final Aggregator aggregator;
+                    try {
+                        TermsAggregatorFactory.COLLECT_FROM_MANY_BUCKETS = fromManyBuckets;
+                        aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType1, fieldType2);
+                    } finally {
+                        TermsAggregatorFactory.COLLECT_FROM_MANY_BUCKETS = null;
+                    }
+                    final Aggregator subAggregator = aggregator.subAggregator("_name2");
+                    if (fromManyBuckets) {
+                        assertThat(subAggregator, instanceOf(GlobalOrdinalsStringTermsAggregator.FromManyBuckets.class));
+                        assertThat(((GlobalOrdinalsStringTermsAggregator) subAggregator).remapGlobalOrds(),
+                            equalTo(allValues2.size() > GlobalOrdinalsStringTermsAggregator.FromManyBuckets.MAX_DENSE_VALUE_COUNT));
+                    } else {
+                        assertThat(subAggregator, not(instanceOf(GlobalOrdinalsStringTermsAggregator.FromManyBuckets.class)));
+                    }
+                    aggregator.preCollection();
+                    indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                    aggregator.postCollection();
+                    Terms result = (Terms) aggregator.buildAggregation(0L);
+                    assertEquals(expected.size(), result.getBuckets().size());
+                    for (Terms.Bucket bucket : result.getBuckets()) {
+                        final Map<String, Long> counts = new HashMap<>(expected.get(bucket.getKeyAsString()));
+                        if (minDocCount == 0) {
+                            for (String value2 : allValues2) {
+                                counts.putIfAbsent(value2, 0L);
+                            }
+                        }
+                        final Terms nested = bucket.getAggregations().get("_name2");
+                        final Map<String, Long> actual = new HashMap<>();
+                        for (Terms.Bucket nestedBucket : nested.getBuckets()) {
+                            actual.put(nestedBucket.getKeyAsString(), nestedBucket.getDocCount());
+                        }
+                        assertEquals(counts, actual);
+                    }
+                }
+            }
+        }
+    }
+
     public void testMixLongAndDouble() throws Exception {
         for (TermsAggregatorFactory.ExecutionMode executionMode : TermsAggregatorFactory.ExecutionMode.values()) {
             TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name", ValueType.LONG)
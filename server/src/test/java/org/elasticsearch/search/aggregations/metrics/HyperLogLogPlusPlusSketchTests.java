@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus.MAX_PRECISION;
+import static org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus.MIN_PRECISION;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class HyperLogLogPlusPlusSketchTests extends ESTestCase {
+
+    public void testMergeMatchesCounters() {
+        final int p = randomIntBetween(MIN_PRECISION, MAX_PRECISION);
+        final HyperLogLogPlusPlus single = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 0);
+        final HyperLogLogPlusPlus multi = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 0);
+        final int numBuckets = randomIntBetween(1, 20);
+        final int maxValue = randomIntBetween(1, randomBoolean() ? 1000 : 100000);
+        for (int bucket = 0; bucket < numBuckets; ++bucket) {
+            // some buckets use linear counting and others hyperloglog
+            final int numValues = randomBoolean() ? randomIntBetween(0, 20) : randomIntBetween(0, 10000);
+            for (int i = 0; i < numValues; ++i) {
+                final long hash = BitMixer.mix64(randomInt(maxValue));
+                single.collect(0, hash);
+                multi.collect(bucket, hash);
+            }
+        }
+        final List<HyperLogLogPlusPlusSketch> sketches = new ArrayList<>();
+        for (int bucket = 0; bucket < numBuckets; ++bucket) {
+            final HyperLogLogPlusPlusSketch sketch = multi.toSketch(bucket);
+            assertThat(sketch.cardinality(), equalTo(multi.cardinality(bucket)));
+            sketches.add(sketch);
+        }
+        Collections.shuffle(sketches, random());
+        final HyperLogLogPlusPlusSketch merged = HyperLogLogPlusPlusSketch.merge(sketches);
+        assertThat(merged, equalTo(single.toSketch(0)));
+        assertThat(merged.cardinality(), equalTo(single.cardinality(0)));
+        single.close();
+        multi.close();
+    }
+
+    public void testMergeDifferentPrecisions() {
+        final HyperLogLogPlusPlusSketch sketch1 = randomSketch(MIN_PRECISION);
+        final HyperLogLogPlusPlusSketch sketch2 = randomSketch(MIN_PRECISION + 1);
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> HyperLogLogPlusPlusSketch.merge(Arrays.asList(sketch1, sketch2)));
+        assertThat(e.getMessage(), equalTo("cannot merge sketches of precisions [4] and [5]"));
+    }
+
+    public void testSerialization() throws IOException {
+        final HyperLogLogPlusPlusSketch sketch = randomSketch(randomIntBetween(MIN_PRECISION, MAX_PRECISION));
+        final NamedWriteableRegistry registry = new NamedWriteableRegistry(Collections.emptyList());
+        assertThat(copyWriteable(sketch, registry, HyperLogLogPlusPlusSketch::new), equalTo(sketch));
+        final Version version = VersionUtils.randomVersionBetween(random(), Version.V_6_0_0,
+            VersionUtils.getPreviousVersion(Version.V_7_0_0));
+        assertThat(copyWriteable(sketch, registry, HyperLogLogPlusPlusSketch::new, version), equalTo(sketch));
+    }
+
+    public void testSparseRegistersAreSmallerOnTheWire() throws IOException {
+        final int p = randomIntBetween(10, MAX_PRECISION);
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        // just enough values to use hyperloglog
+        final int numValues = HyperLogLogPlusPlus.linearCountingThreshold(p) + 1;
+        for (int i = 0; i < numValues; ++i) {
+            counts.collect(0, BitMixer.mix64(i));
+        }
+        final HyperLogLogPlusPlusSketch sketch = counts.toSketch(0);
+        counts.close();
+        assertFalse(sketch.isLinearCounting());
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            sketch.writeTo(out);
+            assertThat(out.size(), lessThan(1 << p));
+        }
+    }
+
+    private static HyperLogLogPlusPlusSketch randomSketch(int p) {
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        final int numValues = randomBoolean() ? randomIntBetween(0, 20) : randomIntBetween(0, 100000);
+        for (int i = 0; i < numValues; ++i) {
+            counts.collect(0, randomLong());
+        }
+        final HyperLogLogPlusPlusSketch sketch = counts.toSketch(0);
+        counts.close();
+        return sketch;
+    }
+}
@@ -69,7 +69,7 @@ public class InternalCardinalityTests extends InternalAggregationTestCase<Intern
         for (int i = 0; i < 100; i++) {
             hllpp.collect(0, BitMixer.mix64(randomIntBetween(1, 100)));
         }
-        return new InternalCardinality(name, hllpp, pipelineAggregators, metaData);
+        return new InternalCardinality(name, hllpp.toSketch(0), pipelineAggregators, metaData);
     }
 
     @Override
@@ -79,14 +79,17 @@ public class InternalCardinalityTests extends InternalAggregationTestCase<Intern
 
     @Override
     protected void assertReduced(InternalCardinality reduced, List<InternalCardinality> inputs) {
-        HyperLogLogPlusPlus[] algos = inputs.stream().map(InternalCardinality::getState)
-                .toArray(size -> new HyperLogLogPlusPlus[size]);
-        if (algos.length > 0) {
-            HyperLogLogPlusPlus result = algos[0];
-            for (int i = 1; i < algos.length; i++) {
-                result.merge(0, algos[i], 0);
+        HyperLogLogPlusPlusSketch[] states = inputs.stream().map(InternalCardinality::getState)
+                .toArray(size -> new HyperLogLogPlusPlusSketch[size]);
+        if (states.length > 0) {
+            HyperLogLogPlusPlus result = new HyperLogLogPlusPlus(states[0].precision(),
+                    new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService()), 1);
+            algos.add(result);
+            for (HyperLogLogPlusPlusSketch state : states) {
+                result.merge(0, state);
             }
             assertEquals(result.cardinality(0), reduced.value(), 0);
+            assertEquals(result.toSketch(0), reduced.getState());
         }
     }
 
@@ -102,7 +105,7 @@ public class InternalCardinalityTests extends InternalAggregationTestCase<Intern
     @Override
     protected InternalCardinality mutateInstance(InternalCardinality instance) {
         String name = instance.getName();
-        HyperLogLogPlusPlus state = instance.getState();
+        HyperLogLogPlusPlusSketch state = instance.getState();
         List<PipelineAggregator> pipelineAggregators = instance.pipelineAggregators();
         Map<String, Object> metaData = instance.getMetaData();
         switch (between(0, 2)) {
@@ -112,13 +115,13 @@ public class InternalCardinalityTests extends InternalAggregationTestCase<Intern
         case 1:
             HyperLogLogPlusPlus newState = new HyperLogLogPlusPlus(state.precision(),
                     new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService()), 0);
-            newState.merge(0, state, 0);
+            newState.merge(0, state);
             int extraValues = between(10, 100);
             for (int i = 0; i < extraValues; i++) {
                 newState.collect(0, BitMixer.mix64(randomIntBetween(500, 10000)));
             }
             algos.add(newState);
-            state = newState;
+            state = newState.toSketch(0);
             break;
         case 2:
             if (metaData == null) {
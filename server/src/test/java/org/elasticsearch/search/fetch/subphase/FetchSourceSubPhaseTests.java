@@ -79,6 +79,25 @@ public class FetchSourceSubPhaseTests extends ESTestCase {
         assertEquals(Collections.singletonMap("field","value"), hitContext.hit().getSourceAsMap());
     }
 
+    public void testFilteringKeepsPropertiesOrder() throws IOException {
+        XContentBuilder source = XContentFactory.jsonBuilder().startObject()
+            .field("c", "value")
+            .startObject("b")
+                .field("z", 1)
+                .field("y", 2)
+                .field("x", 3)
+            .endObject()
+            .field("a", "value")
+            .startArray("d")
+                .startObject().field("z", 1).field("y", 2).endObject()
+                .startObject().field("z", 3).endObject()
+            .endArray()
+            .endObject();
+        FetchSubPhase.HitContext hitContext = hitExecuteMultiple(source, true, new String[]{"c", "b", "d"}, new String[]{"*.y"});
+        assertEquals("{\"c\":\"value\",\"b\":{\"z\":1,\"x\":3},\"d\":[{\"z\":1},{\"z\":3}]}",
+            hitContext.hit().getSourceRef().utf8ToString());
+    }
+
     public void testNestedSource() throws IOException {
         Map<String, Object> expectedNested = Collections.singletonMap("nested2", Collections.singletonMap("field", "value0"));
         XContentBuilder source = XContentFactory.jsonBuilder().startObject()
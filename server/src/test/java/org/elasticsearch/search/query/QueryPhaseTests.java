@@ -47,15 +47,19 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.action.search.SearchTask;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.query.ParsedQuery;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
 import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.test.TestSearchContext;
@@ -63,6 +67,7 @@ import org.elasticsearch.test.TestSearchContext;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.hamcrest.Matchers.anyOf;
@@ -538,6 +543,92 @@ public class QueryPhaseTests extends IndexShardTestCase {
         dir.close();
     }
 
+    public void testConcurrentSlices() throws Exception {
+        final int maxSlices = randomIntBetween(2, 8);
+        final IndexShard shard = newShard(true,
+            Settings.builder().put(IndexSettings.MAX_CONCURRENT_SEARCH_SLICES_SETTING.getKey(), maxSlices).build());
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(100, 500);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            for (int j = randomIntBetween(0, 3); j > 0; j--) {
+                doc.add(new StringField("foo", "bar", Store.NO));
+            }
+            // few distinct values so that sorted hits have ties
+            doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 10)));
+            w.addDocument(doc);
+            if (i == numDocs / 2 || rarely()) {
+                w.commit();
+            }
+        }
+        final IndexReader reader = w.getReader();
+        w.close();
+
+        final List<List<LeafReaderContext>> expectedSlices = QueryPhase.sliceLeaves(reader.leaves(), maxSlices);
+        assertThat(expectedSlices.size(), equalTo(Math.min(maxSlices, reader.leaves().size())));
+        final List<LeafReaderContext> slicedLeaves = new ArrayList<>();
+        for (List<LeafReaderContext> slice : expectedSlices) {
+            assertFalse(slice.isEmpty());
+            slicedLeaves.addAll(slice);
+        }
+        assertThat(slicedLeaves, equalTo(reader.leaves()));
+
+        final List<List<LeafReaderContext>> collectedSlices = Collections.synchronizedList(new ArrayList<>());
+        final Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader), null);
+        final ContextIndexSearcher slicingSearcher = new ContextIndexSearcher(engineSearcher,
+                IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy()) {
+            @Override
+            protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+                collectedSlices.add(leaves);
+                super.search(leaves, weight, collector);
+            }
+        };
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final SortAndFormats sort = new SortAndFormats(new Sort(new SortField("rank", SortField.Type.INT)),
+            new DocValueFormat[] { DocValueFormat.RAW });
+        for (Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("foo", "bar")) }) {
+            for (SortAndFormats sortAndFormats : new SortAndFormats[] { null, sort }) {
+                for (int size : new int[] { 0, 1, 10, numDocs }) {
+                    collectedSlices.clear();
+                    final QuerySearchResult expected = executeQuery(shard, query, sortAndFormats, size, searcher);
+                    final QuerySearchResult actual = executeQuery(shard, query, sortAndFormats, size, slicingSearcher);
+                    if (expectedSlices.size() > 1) {
+                        assertThat(collectedSlices.size(), equalTo(expectedSlices.size()));
+                        assertThat(new HashSet<>(collectedSlices), equalTo(new HashSet<>(expectedSlices)));
+                    }
+                    final TopDocs expectedTopDocs = expected.topDocs().topDocs;
+                    final TopDocs actualTopDocs = actual.topDocs().topDocs;
+                    assertThat(actualTopDocs.totalHits.value, equalTo(expectedTopDocs.totalHits.value));
+                    assertThat(actualTopDocs.totalHits.relation, equalTo(expectedTopDocs.totalHits.relation));
+                    assertThat(actualTopDocs.scoreDocs.length, equalTo(expectedTopDocs.scoreDocs.length));
+                    for (int i = 0; i < expectedTopDocs.scoreDocs.length; i++) {
+                        assertThat(actualTopDocs.scoreDocs[i].doc, equalTo(expectedTopDocs.scoreDocs[i].doc));
+                        assertThat(actualTopDocs.scoreDocs[i].score, equalTo(expectedTopDocs.scoreDocs[i].score));
+                        assertThat(actualTopDocs.scoreDocs[i].shardIndex, equalTo(expectedTopDocs.scoreDocs[i].shardIndex));
+                    }
+                    assertThat(actual.topDocs().maxScore, equalTo(expected.topDocs().maxScore));
+                }
+            }
+        }
+        reader.close();
+        dir.close();
+        closeShards(shard);
+    }
+
+    private static QuerySearchResult executeQuery(IndexShard shard, Query query, SortAndFormats sortAndFormats, int size,
+                                                  IndexSearcher searcher) {
+        TestSearchContext context = new TestSearchContext(null, shard);
+        context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+        context.parsedQuery(new ParsedQuery(query));
+        context.setSize(size);
+        context.sort(sortAndFormats);
+        context.trackScores(true);
+        QueryPhase.execute(context, searcher, checkCancelled -> {});
+        return context.queryResult();
+    }
+
     private static IndexSearcher getAssertingEarlyTerminationSearcher(IndexReader reader, int size) {
         return new IndexSearcher(reader) {
             protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
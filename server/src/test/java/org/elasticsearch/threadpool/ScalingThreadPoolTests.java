@@ -21,18 +21,24 @@ package org.elasticsearch.threadpool;
 
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 
 public class ScalingThreadPoolTests extends ESThreadPoolTestCase {
 
@@ -179,6 +185,53 @@ public class ScalingThreadPoolTests extends ESThreadPoolTestCase {
         }));
     }
 
+    public void testVirtualThreads() throws InterruptedException {
+        final String threadPoolName = randomFrom(ThreadPool.Names.GENERIC, ThreadPool.Names.SNAPSHOT);
+        final int virtualMax = randomIntBetween(1, 2048);
+        final Settings settings = Settings.builder()
+            .put("thread_pool." + threadPoolName + ".virtual_threads", true)
+            .put("thread_pool." + threadPoolName + ".virtual_max", virtualMax)
+            .build();
+        runScalingThreadPoolTest(settings, (clusterSettings, threadPool) -> {
+            final ThreadPool.Info info = info(threadPool, threadPoolName);
+            assertThat(info.getThreadPoolType(), equalTo(ThreadPool.ThreadPoolType.SCALING));
+            if (EsExecutors.supportsVirtualThreads()) {
+                assertThat(info.getMax(), equalTo(Math.max(info.getMin(), virtualMax)));
+            } else {
+                // falls back to a scaling executor of platform threads
+                assertThat(info.getMax(), equalTo(expectedSize(threadPoolName, EsExecutors.numberOfProcessors(settings))));
+            }
+
+            final int numberOfTasks = randomIntBetween(1, 64);
+            final CountDownLatch latch = new CountDownLatch(numberOfTasks);
+            final AtomicReference<String> threadName = new AtomicReference<>();
+            final AtomicInteger missingHeaders = new AtomicInteger();
+            try (ThreadContext.StoredContext ignored = threadPool.getThreadContext().stashContext()) {
+                threadPool.getThreadContext().putHeader("test", "value");
+                for (int i = 0; i < numberOfTasks; i++) {
+                    threadPool.executor(threadPoolName).execute(() -> {
+                        if ("value".equals(threadPool.getThreadContext().getHeader("test")) == false) {
+                            missingHeaders.incrementAndGet();
+                        }
+                        threadName.set(Thread.currentThread().getName());
+                        latch.countDown();
+                    });
+                }
+            }
+            try {
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            assertThat(missingHeaders.get(), equalTo(0));
+            assertThat(threadName.get(), containsString("[" + threadPoolName + "]"));
+            if (EsExecutors.supportsVirtualThreads()) {
+                assertThat(threadName.get(), containsString("[V#"));
+            }
+            assertThat(stats(threadPool, threadPoolName).getThreads(), greaterThanOrEqualTo(1));
+        });
+    }
+
     public void runScalingThreadPoolTest(
             final Settings settings,
             final BiConsumer<ClusterSettings, ThreadPool> consumer) throws InterruptedException {
@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.threadpool;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class TimerWheelTests extends ESTestCase {
+
+    private TimerWheel newTimerWheel() {
+        // a small wheel so that the timers span several rounds
+        return new TimerWheel(EsExecutors.daemonThreadFactory("test_scheduler"), TimeValue.timeValueMillis(randomIntBetween(1, 10)),
+            randomIntBetween(1, 16));
+    }
+
+    public void testRunsTimersAfterTheirDelay() throws Exception {
+        final TimerWheel timerWheel = newTimerWheel();
+        try {
+            final int numTimers = scaledRandomIntBetween(10, 1000);
+            final CountDownLatch latch = new CountDownLatch(numTimers);
+            final AtomicInteger early = new AtomicInteger();
+            final List<ScheduledFuture<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numTimers; i++) {
+                final long delayMillis = randomIntBetween(0, 200);
+                final long start = System.nanoTime();
+                futures.add(timerWheel.schedule(() -> {
+                    if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delayMillis)) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }, delayMillis, TimeUnit.MILLISECONDS));
+            }
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+            assertThat(early.get(), equalTo(0));
+            for (ScheduledFuture<?> future : futures) {
+                assertNull(future.get(10, TimeUnit.SECONDS));
+                assertTrue(future.isDone());
+                assertFalse(future.isCancelled());
+            }
+            assertThat(timerWheel.getPendingTimers(), equalTo(0L));
+        } finally {
+            timerWheel.shutdown();
+            assertTrue(timerWheel.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testCancel() throws Exception {
+        final TimerWheel timerWheel = newTimerWheel();
+        try {
+            final AtomicBoolean ran = new AtomicBoolean();
+            final ScheduledFuture<?> future = timerWheel.schedule(() -> ran.set(true), randomIntBetween(0, 50), TimeUnit.MILLISECONDS);
+            if (future.cancel(randomBoolean())) {
+                assertTrue(future.isCancelled());
+                assertTrue(future.isDone());
+                expectThrows(CancellationException.class, future::get);
+                assertThat(timerWheel.getPendingTimers(), equalTo(0L));
+                // give the timer a chance to run if cancelling it did not work
+                final CountDownLatch latch = new CountDownLatch(1);
+                timerWheel.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                assertFalse(ran.get());
+            } else {
+                // the timer ran before it could be cancelled
+                assertNull(future.get(10, TimeUnit.SECONDS));
+                assertTrue(ran.get());
+                assertFalse(future.isCancelled());
+            }
+            assertFalse(future.cancel(randomBoolean()));
+        } finally {
+            timerWheel.shutdown();
+            assertTrue(timerWheel.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testPendingTimers() throws Exception {
+        final TimerWheel timerWheel = newTimerWheel();
+        try {
+            final int numTimers = randomIntBetween(1, 100);
+            final List<ScheduledFuture<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numTimers; i++) {
+                futures.add(timerWheel.schedule(() -> {}, 1, TimeUnit.HOURS));
+            }
+            assertThat(timerWheel.getPendingTimers(), equalTo((long) numTimers));
+            for (ScheduledFuture<?> future : futures) {
+                assertThat(future.getDelay(TimeUnit.MILLISECONDS), greaterThan(0L));
+                assertTrue(future.cancel(false));
+            }
+            assertThat(timerWheel.getPendingTimers(), equalTo(0L));
+        } finally {
+            timerWheel.shutdown();
+            assertTrue(timerWheel.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testFailure() throws Exception {
+        final TimerWheel timerWheel = newTimerWheel();
+        try {
+            final ScheduledFuture<?> future = timerWheel.schedule(() -> {
+                throw new IllegalStateException("simulated");
+            }, randomIntBetween(0, 20), TimeUnit.MILLISECONDS);
+            final ExecutionException e = expectThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            // the timer thread survives failures
+            final CountDownLatch latch = new CountDownLatch(1);
+            timerWheel.schedule(latch::countDown, 0, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            timerWheel.shutdown();
+            assertTrue(timerWheel.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testShutdown() throws Exception {
+        final TimerWheel timerWheel = newTimerWheel();
+        final ScheduledFuture<?> future = timerWheel.schedule(() -> {}, 1, TimeUnit.HOURS);
+        timerWheel.shutdown();
+        assertTrue(timerWheel.isShutdown());
+        assertTrue(timerWheel.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(timerWheel.isTerminated());
+        // pending timers are dropped on shutdown
+        assertTrue(future.isCancelled());
+        assertThat(timerWheel.getPendingTimers(), equalTo(0L));
+        final EsRejectedExecutionException e =
+            expectThrows(EsRejectedExecutionException.class, () -> timerWheel.schedule(() -> {}, 0, TimeUnit.MILLISECONDS));
+        assertTrue(e.isExecutorShutdown());
+    }
+
+    public void testThreadPoolWithTimerWheel() throws Exception {
+        final ThreadPool threadPool = new TestThreadPool(getTestName(),
+            Settings.builder().put(ThreadPool.SCHEDULER_TYPE_SETTING.getKey(), "timer_wheel").build());
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            threadPool.schedule(TimeValue.timeValueMillis(randomIntBetween(0, 50)), ThreadPool.Names.GENERIC, latch::countDown);
+            final ScheduledFuture<?> pending = threadPool.schedule(TimeValue.timeValueHours(1), ThreadPool.Names.SAME, () -> {});
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            final SchedulerStats stats = threadPool.stats().getSchedulerStats();
+            assertNotNull(stats);
+            assertThat(stats.getType(), equalTo("timer_wheel"));
+            assertThat(stats.getPending(), equalTo(1L));
+            assertThat(stats.getCompleted(), greaterThanOrEqualTo(1L));
+            assertThat(stats.getMaxLateness().nanos(), greaterThanOrEqualTo(0L));
+            assertTrue(pending.cancel(false));
+            assertThat(threadPool.stats().getSchedulerStats().getPending(), equalTo(0L));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+}
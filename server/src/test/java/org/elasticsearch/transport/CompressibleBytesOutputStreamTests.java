@@ -81,6 +81,32 @@ public class CompressibleBytesOutputStreamTests extends ESTestCase {
         }
     }
 
+    public void testStreamWithLZ4Compression() throws IOException {
+        BytesStream bStream = new ZeroOutOnCloseStream();
+        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, true, CompressorFactory.LZ4_COMPRESSOR);
+
+        byte[] expectedBytes = randomBytes(randomInt(30));
+        stream.write(expectedBytes);
+
+        BytesReference bytesRef = stream.materializeBytes();
+
+        assertFalse(CompressorFactory.COMPRESSOR.isCompressed(bytesRef));
+        assertSame(CompressorFactory.LZ4_COMPRESSOR, CompressorFactory.compressor(bytesRef));
+
+        StreamInput streamInput = CompressorFactory.LZ4_COMPRESSOR.streamInput(bytesRef.streamInput());
+        byte[] actualBytes = new byte[expectedBytes.length];
+        streamInput.readBytes(actualBytes, 0, expectedBytes.length);
+
+        assertEquals(-1, streamInput.read());
+        assertArrayEquals(expectedBytes, actualBytes);
+        stream.close();
+
+        // The bytes should be zeroed out on close
+        for (byte b : bytesRef.toBytesRef().bytes) {
+            assertEquals((byte) 0, b);
+        }
+    }
+
     public void testCompressionWithCallingMaterializeFails() throws IOException {
         BytesStream bStream = new ZeroOutOnCloseStream();
         CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, true);
@@ -19,18 +19,28 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.compress.DeflateCompressor;
+import org.elasticsearch.common.compress.LZ4Compressor;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.VersionUtils;
 import org.elasticsearch.threadpool.TestThreadPool;
@@ -38,9 +48,12 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.io.StreamCorruptedException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.Matchers.equalTo;
@@ -187,36 +200,7 @@ public class TcpTransportTests extends ESTestCase {
         ThreadPool threadPool = new TestThreadPool(TcpTransportTests.class.getName());
         AtomicReference<BytesReference> messageCaptor = new AtomicReference<>();
         try {
-            TcpTransport transport = new TcpTransport("test", Settings.EMPTY, Version.CURRENT, threadPool,
-                new BigArrays(new PageCacheRecycler(Settings.EMPTY), null), null, null, null) {
-
-                @Override
-                protected FakeChannel bind(String name, InetSocketAddress address) throws IOException {
-                    return null;
-                }
-
-                @Override
-                protected FakeChannel initiateChannel(DiscoveryNode node) throws IOException {
-                    return new FakeChannel(messageCaptor);
-                }
-
-                @Override
-                protected void stopInternal() {
-                }
-
-                @Override
-                public NodeChannels openConnection(DiscoveryNode node, ConnectionProfile connectionProfile) {
-                    if (compressed)  {
-                        assertTrue(connectionProfile.getCompressionEnabled());
-                    }
-                    int numConnections = connectionProfile.getNumConnections();
-                    ArrayList<TcpChannel> fakeChannels = new ArrayList<>(numConnections);
-                    for (int i = 0; i < numConnections; ++i) {
-                        fakeChannels.add(new FakeChannel(messageCaptor));
-                    }
-                    return new NodeChannels(node, fakeChannels, connectionProfile, Version.CURRENT);
-                }
-            };
+            TcpTransport transport = newFakeTransport(Settings.EMPTY, threadPool, messageCaptor, compressed, Version.CURRENT);
 
             DiscoveryNode node = new DiscoveryNode("foo", buildNewFakeTransportAddress(), Version.CURRENT);
             ConnectionProfile.Builder profileBuilder = new ConnectionProfile.Builder(MockTcpTransport.LIGHT_PROFILE);
@@ -258,6 +242,147 @@ public class TcpTransportTests extends ESTestCase {
         }
     }
 
+    public void testCompressionScheme() throws IOException {
+        // nodes before 7.0 only know deflate, so they get deflate whatever the configured scheme
+        final boolean preLZ4 = randomBoolean();
+        final Version channelVersion = preLZ4
+            ? VersionUtils.randomVersionBetween(random(), Version.CURRENT.minimumCompatibilityVersion(),
+                VersionUtils.getPreviousVersion(Version.V_7_0_0))
+            : Version.CURRENT;
+        final Settings settings = Settings.builder().put(Transport.TRANSPORT_TCP_COMPRESSION_SCHEME.getKey(), "lz4").build();
+        Req request = new Req(randomRealisticUnicodeOfLengthBetween(10, 100));
+        ThreadPool threadPool = new TestThreadPool(TcpTransportTests.class.getName());
+        AtomicReference<BytesReference> messageCaptor = new AtomicReference<>();
+        try {
+            TcpTransport transport = newFakeTransport(settings, threadPool, messageCaptor, true, channelVersion);
+
+            DiscoveryNode node = new DiscoveryNode("foo", buildNewFakeTransportAddress(), channelVersion);
+            ConnectionProfile.Builder profileBuilder = new ConnectionProfile.Builder(MockTcpTransport.LIGHT_PROFILE);
+            profileBuilder.setCompressionEnabled(true);
+            Transport.Connection connection = transport.openConnection(node, profileBuilder.build());
+            connection.sendRequest(42, "foobar", request, TransportRequestOptions.EMPTY);
+
+            BytesReference reference = messageCaptor.get();
+            assertNotNull(reference);
+
+            StreamInput streamIn = reference.streamInput();
+            streamIn.skip(TcpHeader.MARKER_BYTES_SIZE);
+            @SuppressWarnings("unused")
+            int len = streamIn.readInt();
+            assertEquals(42, streamIn.readLong());
+            byte status = streamIn.readByte();
+            assertEquals(channelVersion, Version.fromId(streamIn.readInt()));
+            assertTrue(TransportStatus.isCompress(status));
+            final int bytesConsumed = TcpHeader.HEADER_SIZE;
+            final Compressor compressor = CompressorFactory.compressor(reference.slice(bytesConsumed, reference.length() - bytesConsumed));
+            assertThat(compressor, instanceOf(preLZ4 ? DeflateCompressor.class : LZ4Compressor.class));
+            streamIn = compressor.streamInput(streamIn);
+            streamIn.setVersion(channelVersion);
+            threadPool.getThreadContext().readHeaders(streamIn);
+            if (channelVersion.onOrAfter(Version.V_6_3_0)) {
+                assertThat(streamIn.readStringArray(), equalTo(new String[0])); // features
+            }
+            assertEquals("foobar", streamIn.readString());
+            Req readReq = new Req("");
+            readReq.readFrom(streamIn);
+            assertEquals(request.value, readReq.value);
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Creates a transport whose connections to any node capture the last message that was sent on them.
+     */
+    private static TcpTransport newFakeTransport(Settings settings, ThreadPool threadPool, AtomicReference<BytesReference> messageCaptor,
+                                                 boolean compressed, Version channelVersion) {
+        return new TcpTransport("test", settings, Version.CURRENT, threadPool,
+            new BigArrays(new PageCacheRecycler(Settings.EMPTY), null), null, null, null) {
+
+            @Override
+            protected FakeChannel bind(String name, InetSocketAddress address) throws IOException {
+                return null;
+            }
+
+            @Override
+            protected FakeChannel initiateChannel(DiscoveryNode node) throws IOException {
+                return new FakeChannel(messageCaptor);
+            }
+
+            @Override
+            protected void stopInternal() {
+            }
+
+            @Override
+            public NodeChannels openConnection(DiscoveryNode node, ConnectionProfile connectionProfile) {
+                if (compressed)  {
+                    assertTrue(connectionProfile.getCompressionEnabled());
+                }
+                int numConnections = connectionProfile.getNumConnections();
+                ArrayList<TcpChannel> fakeChannels = new ArrayList<>(numConnections);
+                for (int i = 0; i < numConnections; ++i) {
+                    fakeChannels.add(new FakeChannel(messageCaptor));
+                }
+                return new NodeChannels(node, fakeChannels, connectionProfile, channelVersion);
+            }
+        };
+    }
+
+    public void testChannelReleasesRetainedRequestBytes() throws IOException {
+        ThreadPool threadPool = new TestThreadPool(TcpTransportTests.class.getName());
+        AtomicReference<BytesReference> messageCaptor = new AtomicReference<>();
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        try {
+            TcpTransport transport = new TcpTransport("test", Settings.EMPTY, Version.CURRENT, threadPool,
+                new BigArrays(new PageCacheRecycler(Settings.EMPTY), null), breakerService, null, null) {
+
+                @Override
+                protected FakeChannel bind(String name, InetSocketAddress address) throws IOException {
+                    return null;
+                }
+
+                @Override
+                protected FakeChannel initiateChannel(DiscoveryNode node) throws IOException {
+                    return null;
+                }
+
+                @Override
+                protected void stopInternal() {
+                }
+            };
+            CircuitBreaker breaker = transport.getInFlightRequestBreaker();
+            for (boolean failure : new boolean[] { false, true }) {
+                messageCaptor.set(null);
+                final int messageLength = randomIntBetween(1, 1 << 14);
+                // the request may share its network buffers with other messages
+                final long pinnedBytes = randomLongBetween(messageLength, 1 << 20);
+                final AtomicInteger released = new AtomicInteger();
+                final ReleasableBytesReference request =
+                    new ReleasableBytesReference(new BytesArray(new byte[messageLength]), released::incrementAndGet, pinnedBytes);
+                // like TcpTransport#handleRequest for a request that holds slices of its network buffers
+                breaker.addWithoutBreaking(messageLength);
+                TcpTransportChannel channel = new TcpTransportChannel(transport, new FakeChannel(messageCaptor), "test", "action", 42,
+                    Version.CURRENT, Collections.emptySet(), "default", messageLength, false);
+                channel.retainRequestBytes(request, randomBoolean());
+                request.close();
+                assertThat(released.get(), equalTo(0));
+                assertThat(breaker.getUsed(), equalTo(pinnedBytes));
+
+                if (failure) {
+                    channel.sendResponse(new ElasticsearchException("simulated"));
+                } else {
+                    channel.sendResponse(TransportResponse.Empty.INSTANCE);
+                }
+                assertNotNull(messageCaptor.get());
+                assertThat(released.get(), equalTo(1));
+                assertThat(breaker.getUsed(), equalTo(0L));
+            }
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
     private static final class FakeChannel implements TcpChannel, TcpServerChannel {
 
         private final AtomicReference<BytesReference> messageCaptor;
@@ -294,7 +419,8 @@ public class TcpTransportTests extends ESTestCase {
 
         @Override
         public InetSocketAddress getLocalAddress() {
-            return null;
+            // error responses report the address of the channel they are sent on
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), 9300);
         }
 
         @Override
@@ -30,6 +30,7 @@ import org.elasticsearch.action.ActionListenerResponseHandler;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.SuppressForbidden;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -605,6 +606,54 @@ public abstract class AbstractSimpleTransportTestCase extends ESTestCase {
         }
     }
 
+    public void testHelloWorldCompressedWithLZ4() throws Exception {
+        // the scheme only applies to nodes that know it, nodes before 7.0 are sent deflate
+        final Settings lz4Settings = Settings.builder().put(Transport.TRANSPORT_TCP_COMPRESSION_SCHEME.getKey(), "lz4").build();
+        final Version remoteVersion = randomFrom(CURRENT_VERSION, version0);
+        try (MockTransportService serviceC = build(lz4Settings, CURRENT_VERSION, null, true);
+             MockTransportService serviceD = build(lz4Settings, remoteVersion, null, true)) {
+            serviceC.start();
+            serviceC.acceptIncomingRequests();
+            serviceD.start();
+            serviceD.acceptIncomingRequests();
+
+            serviceD.registerRequestHandler("internal:sayHello", StringMessageRequest::new, ThreadPool.Names.GENERIC,
+                (request, channel, task) -> {
+                    assertThat(channel.getVersion(), equalTo(remoteVersion));
+                    channel.sendResponse(new StringMessageResponse("hello " + request.message));
+                });
+
+            Settings settingsWithCompress = Settings.builder().put(Transport.TRANSPORT_TCP_COMPRESS.getKey(), true).build();
+            ConnectionProfile connectionProfile = ConnectionProfile.buildDefaultConnectionProfile(settingsWithCompress);
+            serviceC.connectToNode(serviceD.getLocalDiscoNode(), connectionProfile);
+
+            TransportFuture<StringMessageResponse> res = serviceC.submitRequest(serviceD.getLocalDiscoNode(), "internal:sayHello",
+                new StringMessageRequest("moshe"), TransportRequestOptions.builder().withCompress(true).build(),
+                new TransportResponseHandler<StringMessageResponse>() {
+                    @Override
+                    public StringMessageResponse read(StreamInput in) throws IOException {
+                        return new StringMessageResponse(in);
+                    }
+
+                    @Override
+                    public String executor() {
+                        return ThreadPool.Names.GENERIC;
+                    }
+
+                    @Override
+                    public void handleResponse(StringMessageResponse response) {
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        logger.error("Unexpected failure", exp);
+                        fail("got exception instead of a response: " + exp.getMessage());
+                    }
+                });
+            assertThat(res.get().message, equalTo("hello moshe"));
+        }
+    }
+
     public void testErrorMessage() {
         serviceA.registerRequestHandler("internal:sayHelloException", StringMessageRequest::new, ThreadPool.Names.GENERIC,
             (request, channel, task) -> {
@@ -2014,11 +2063,11 @@ public abstract class AbstractSimpleTransportTestCase extends ESTestCase {
         MockTcpTransport transport = new MockTcpTransport(Settings.EMPTY, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
             new NoneCircuitBreakerService(), namedWriteableRegistry, new NetworkService(Collections.emptyList())) {
             @Override
-            protected String handleRequest(TcpChannel mockChannel, String profileName, StreamInput stream, long requestId,
-                                           int messageLengthBytes, Version version, InetSocketAddress remoteAddress, byte status)
-                throws IOException {
-                return super.handleRequest(mockChannel, profileName, stream, requestId, messageLengthBytes, version, remoteAddress,
-                    (byte) (status & ~(1 << 3))); // we flip the isHandshake bit back and act like the handler is not found
+            protected String handleRequest(TcpChannel mockChannel, String profileName, StreamInput stream,
+                                           ReleasableBytesReference releasableRequest, long requestId, int messageLengthBytes,
+                                           Version version, InetSocketAddress remoteAddress, byte status) throws IOException {
+                return super.handleRequest(mockChannel, profileName, stream, releasableRequest, requestId, messageLengthBytes, version,
+                    remoteAddress, (byte) (status & ~(1 << 3))); // we flip the isHandshake bit back and act like the handler is not found
             }
         };
 
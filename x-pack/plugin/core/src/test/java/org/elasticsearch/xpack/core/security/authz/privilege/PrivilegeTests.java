@@ -128,6 +128,11 @@ public class PrivilegeTests extends ESTestCase {
         assertThat(predicate.test("indices:admin/seq_no/global_checkpoint_sync[r]"), is(true));
         assertThat(predicate.test("indices:admin/settings/update"), is(true));
         assertThat(predicate.test("indices:admin/settings/foo"), is(false));
+        assertThat(predicate.test("indices:data/write/bulk[s][r][batch]"), is(true));
+        assertThat(predicate.test("indices:data/write/bulk[s][r]"), is(false));
+        assertThat(predicate.test("indices:data/write/bulk[s][r][foo]"), is(false));
+        assertThat(predicate.test("indices:data/write/bulk[s][p]"), is(false));
+        assertThat(predicate.test("indices:data/write/bulk"), is(false));
     }
 
     public void testManageCcrPrivilege() {